@@ -0,0 +1,74 @@
+package org.hl7.fhir.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.fhir.ucum.UcumEssenceService;
+import org.hl7.fhir.r5.context.SimpleWorkerContext;
+import org.hl7.fhir.r5.formats.JsonParser;
+import org.hl7.fhir.r5.model.Parameters;
+import org.hl7.fhir.r5.model.StructureDefinition;
+import org.hl7.fhir.r5.test.utils.TestingUtilities;
+import org.hl7.fhir.utilities.TextFile;
+
+/**
+ * Access to the fixtures the benchmarks run against. Everything comes from the classpath: the resources
+ * in /fixtures, and the R5 core package and UCUM definitions from fhir-test-cases. Nothing is fetched
+ * from the network, and there is no terminology server
+ */
+public class BenchmarkFixtures {
+
+  private static SimpleWorkerContext context;
+
+  public static byte[] load(String name) throws IOException {
+    InputStream stream = BenchmarkFixtures.class.getResourceAsStream("/fixtures/"+name);
+    if (stream == null) {
+      throw new IOException("Unable to find the fixture "+name);
+    }
+    return TextFile.streamToBytes(stream);
+  }
+
+  public static StructureDefinition loadProfile(String name) throws IOException {
+    return (StructureDefinition) new JsonParser().parse(load(name));
+  }
+
+  /**
+   * The R5 core package is large, so the context is loaded once and shared by all the benchmarks
+   * in a fork. Benchmarks that change it must work on a copy
+   */
+  public static synchronized SimpleWorkerContext getR5Context() throws IOException {
+    if (context == null) {
+      context = new SimpleWorkerContext.SimpleWorkerContextBuilder().withAllowLoadingDuplicates(true).fromPackage(TestingUtilities.loadR5CorePackage());
+      context.setUcumService(new UcumEssenceService(TestingUtilities.loadTestResourceStream("ucum", "ucum-essence.xml")));
+      context.setExpansionParameters(new Parameters());
+      context.setCanRunWithoutTerminology(true);
+      context.setNoTerminologyServer(true);
+    }
+    return context;
+  }
+
+  /**
+   * A collection Bundle (in JSON) holding count copies of the patient fixture, each with an
+   * observation fixture that refers to it
+   */
+  public static byte[] makeBundle(int count) throws IOException {
+    String patient = new String(load("patient.json"), StandardCharsets.UTF_8);
+    String observation = new String(load("observation.json"), StandardCharsets.UTF_8);
+    StringBuilder b = new StringBuilder();
+    b.append("{\"resourceType\" : \"Bundle\", \"id\" : \"benchmark\", \"type\" : \"collection\", \"entry\" : [");
+    for (int i = 0; i < count; i++) {
+      String pid = "p"+i;
+      if (i > 0) {
+        b.append(",");
+      }
+      b.append("{\"fullUrl\" : \"http://example.org/fhir/Patient/"+pid+"\", \"resource\" : ");
+      b.append(patient.replace("\"id\" : \"example\"", "\"id\" : \""+pid+"\""));
+      b.append("},{\"fullUrl\" : \"http://example.org/fhir/Observation/o"+i+"\", \"resource\" : ");
+      b.append(observation.replace("\"id\" : \"blood-pressure\"", "\"id\" : \"o"+i+"\"").replace("Patient/example", "Patient/"+pid));
+      b.append("}");
+    }
+    b.append("]}");
+    return b.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
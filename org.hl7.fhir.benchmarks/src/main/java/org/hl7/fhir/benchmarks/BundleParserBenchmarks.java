@@ -0,0 +1,53 @@
+package org.hl7.fhir.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r5.formats.JsonParser;
+import org.hl7.fhir.r5.model.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse big Bundles with the R5 JSON parser, loading the whole document into a JSON tree first
+ * (the default) or reading it entry by entry (JsonParserBase.setStreamBundleEntries). 35000 entries
+ * is about 100MB.
+ * Run with -prof gc to see the allocation rates
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class BundleParserBenchmarks {
+
+  @Param({"1000", "35000"})
+  public int entries;
+
+  private byte[] json;
+
+  @Setup
+  public void setup() throws Exception {
+    json = BenchmarkFixtures.makeBundle(entries);
+  }
+
+  @Benchmark
+  public Resource parseTree() throws Exception {
+    return new JsonParser().parse(new ByteArrayInputStream(json));
+  }
+
+  @Benchmark
+  public Resource parseBundleEntries() throws Exception {
+    return new JsonParser().setStreamBundleEntries(true).parse(new ByteArrayInputStream(json));
+  }
+}
@@ -0,0 +1,102 @@
+package org.hl7.fhir.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r5.context.IWorkerContext;
+import org.hl7.fhir.r5.elementmodel.Element;
+import org.hl7.fhir.r5.elementmodel.Manager;
+import org.hl7.fhir.r5.elementmodel.Manager.FhirFormat;
+import org.hl7.fhir.r5.elementmodel.ParserBase.ValidationPolicy;
+import org.hl7.fhir.r5.elementmodel.XmlParser;
+import org.hl7.fhir.r5.formats.IParser.OutputStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse and compose Bundles of the patient and observation fixtures with the R5 element model,
+ * which is what the validator works on. The XML parsers are also run as the validator runs them,
+ * and with the streaming (StAX) parser; use -prof gc to compare the allocation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ElementModelBenchmarks {
+
+  @Param({"10", "100"})
+  public int entries;
+
+  private IWorkerContext context;
+  private byte[] json;
+  private byte[] xml;
+  private Element bundle;
+
+  @Setup
+  public void setup() throws Exception {
+    context = BenchmarkFixtures.getR5Context();
+    json = BenchmarkFixtures.makeBundle(entries);
+    bundle = Manager.parseSingle(context, new ByteArrayInputStream(json), FhirFormat.JSON);
+    xml = compose(FhirFormat.XML);
+  }
+
+  private byte[] compose(FhirFormat format) throws Exception {
+    ByteArrayOutputStream bs = new ByteArrayOutputStream();
+    Manager.compose(context, bundle, bs, format, OutputStyle.NORMAL, null);
+    return bs.toByteArray();
+  }
+
+  @Benchmark
+  public Element parseJson() throws Exception {
+    return Manager.parseSingle(context, new ByteArrayInputStream(json), FhirFormat.JSON);
+  }
+
+  @Benchmark
+  public Element parseXml() throws Exception {
+    return Manager.parseSingle(context, new ByteArrayInputStream(xml), FhirFormat.XML);
+  }
+
+  @Benchmark
+  public Element parseXmlStreaming() throws Exception {
+    return parseXml(ValidationPolicy.NONE, true);
+  }
+
+  @Benchmark
+  public Element parseXmlValidating() throws Exception {
+    return parseXml(ValidationPolicy.EVERYTHING, false);
+  }
+
+  @Benchmark
+  public Element parseXmlValidatingStreaming() throws Exception {
+    return parseXml(ValidationPolicy.EVERYTHING, true);
+  }
+
+  private Element parseXml(ValidationPolicy policy, boolean streaming) throws Exception {
+    XmlParser xp = new XmlParser(context);
+    xp.setupValidation(policy);
+    xp.setStreaming(streaming);
+    return xp.parseSingle(new ByteArrayInputStream(xml), null);
+  }
+
+  @Benchmark
+  public byte[] composeJson() throws Exception {
+    return compose(FhirFormat.JSON);
+  }
+
+  @Benchmark
+  public byte[] composeXml() throws Exception {
+    return compose(FhirFormat.XML);
+  }
+}
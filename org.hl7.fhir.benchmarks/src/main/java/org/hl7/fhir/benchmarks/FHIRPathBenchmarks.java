@@ -0,0 +1,113 @@
+package org.hl7.fhir.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r5.elementmodel.Manager;
+import org.hl7.fhir.r5.elementmodel.Manager.FhirFormat;
+import org.hl7.fhir.r5.fhirpath.ExpressionCache;
+import org.hl7.fhir.r5.fhirpath.ExpressionNode;
+import org.hl7.fhir.r5.fhirpath.FHIRPathEngine;
+import org.hl7.fhir.r5.formats.JsonParser;
+import org.hl7.fhir.r5.model.Base;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Evaluate the invariants that the validator checks most often (from the core specification and US Core)
+ * against a Bundle of the patient and observation fixtures, held either as R5 model objects or as
+ * element model objects.
+ *
+ * parseAndEvaluate parses each expression every time, as happens when there's no expression cache;
+ * parseAndEvaluateCached uses an ExpressionCache; evaluateParsed uses expressions parsed in setup
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FHIRPathBenchmarks {
+
+  private static final String[] INVARIANTS = {
+    "hasValue() or (children().count() > id.count())", // ele-1
+    "contained.contained.empty()", // dom-2
+    "contained.where(((id.exists() and ('#'+id in (%resource.descendants().reference | %resource.descendants().ofType(canonical) | %resource.descendants().ofType(uri) | %resource.descendants().ofType(url)))) or descendants().where(reference = '#').exists() or descendants().where(ofType(canonical) = '#').exists() or descendants().where(ofType(canonical) = '#').exists()).not()).trace('unmatched', id).empty()", // dom-3
+    "contained.meta.versionId.empty() and contained.meta.lastUpdated.empty()", // dom-4
+    "contained.meta.security.empty()", // dom-5
+    "text.`div`.exists()", // dom-6
+    "entry.where(fullUrl.exists()).select(fullUrl&iif(resource.meta.versionId.exists(), resource.meta.versionId, '')).isDistinct()", // bdl-7
+    "entry.resource.ofType(Patient).all(name.where(family.exists() or given.exists()).exists())", // us-core-6
+    "entry.resource.ofType(Observation).all(dataAbsentReason.empty() or value.empty())", // obs-6
+    "entry.resource.ofType(Observation).all(value.empty() or component.code.where(coding.intersect(%resource.code.coding).exists()).empty())", // obs-7
+    "entry.resource.ofType(Observation).component.where(code.coding.where(system = 'http://loinc.org' and code = '8480-6').exists()).value.ofType(Quantity).value > 100", // a typical slice check
+  };
+
+  @Param({"model", "elementmodel"})
+  public String representation;
+
+  @Param({"10"})
+  public int entries;
+
+  private FHIRPathEngine engine;
+  private FHIRPathEngine cachingEngine;
+  private List<ExpressionNode> parsed;
+  private Base bundle;
+
+  @Setup
+  public void setup() throws Exception {
+    byte[] source = BenchmarkFixtures.makeBundle(entries);
+    if ("model".equals(representation)) {
+      bundle = new JsonParser().parse(source);
+    } else {
+      bundle = Manager.parseSingle(BenchmarkFixtures.getR5Context(), new ByteArrayInputStream(source), FhirFormat.JSON);
+    }
+    engine = new FHIRPathEngine(BenchmarkFixtures.getR5Context());
+    cachingEngine = new FHIRPathEngine(BenchmarkFixtures.getR5Context());
+    cachingEngine.setExpressionCache(new ExpressionCache());
+    parsed = new ArrayList<>();
+    for (String s : INVARIANTS) {
+      parsed.add(engine.parse(s));
+    }
+  }
+
+  @Benchmark
+  public void parseAndEvaluate(Blackhole bh) {
+    for (String s : INVARIANTS) {
+      bh.consume(engine.evaluate(null, bundle, bundle, bundle, engine.parse(s)));
+    }
+  }
+
+  @Benchmark
+  public void parseAndEvaluateCached(Blackhole bh) {
+    for (String s : INVARIANTS) {
+      bh.consume(cachingEngine.evaluate(null, bundle, bundle, bundle, cachingEngine.parse(s)));
+    }
+  }
+
+  @Benchmark
+  public void evaluateParsed(Blackhole bh) {
+    for (ExpressionNode n : parsed) {
+      bh.consume(engine.evaluate(null, bundle, bundle, bundle, n));
+    }
+  }
+
+  @Benchmark
+  public void parse(Blackhole bh) {
+    for (String s : INVARIANTS) {
+      bh.consume(engine.parse(s));
+    }
+  }
+}
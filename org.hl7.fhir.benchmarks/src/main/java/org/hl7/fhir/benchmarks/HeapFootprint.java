@@ -0,0 +1,83 @@
+package org.hl7.fhir.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hl7.fhir.r5.context.SimpleWorkerContext;
+import org.hl7.fhir.r5.elementmodel.Element;
+import org.hl7.fhir.r5.elementmodel.JsonParser;
+import org.hl7.fhir.r5.model.StringType;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+/**
+ * Reports the heap retained by the structures that there are millions of in a validator run. JMH measures
+ * time and allocation (-prof gc), but not what's retained afterwards, so this uses JOL to walk the object
+ * graph instead. It isn't a JMH benchmark; run it with
+ *
+ *   java -cp org.hl7.fhir.benchmarks/target/benchmarks.jar org.hl7.fhir.benchmarks.HeapFootprint
+ *
+ * Content that is shared with the worker context (definitions, properties) isn't counted. The figures
+ * depend on the JVM (compressed oops, alignment), which is reported first; compare them across changes
+ * on the same JVM
+ */
+public class HeapFootprint {
+
+  private static final int ENTRY_COUNT = 1000;
+  private static final String[] USER_DATA_NAMES = {"path", "source", "render.link", "slice.name", "derived.pointer", "validated"};
+
+  public static void main(String[] args) throws Exception {
+    System.out.println(VM.current().details());
+    SimpleWorkerContext context = BenchmarkFixtures.getR5Context();
+    elementModel(context);
+    userData();
+  }
+
+  /**
+   * The bytes per node of a Bundle parsed with the element model
+   */
+  private static void elementModel(SimpleWorkerContext context) throws Exception {
+    byte[] source = BenchmarkFixtures.makeBundle(ENTRY_COUNT);
+    JsonParser jp = new JsonParser(context);
+    jp.parseSingle(new ByteArrayInputStream(source), null); // so that the definitions it uses are loaded before measuring
+    Element bundle = jp.parseSingle(new ByteArrayInputStream(source), null);
+
+    long size = retained(bundle, context);
+    int nodes = bundle.countDescendents() + 1;
+    System.out.println("Element model: "+nodes+" nodes, "+size+" bytes retained, "+(size / nodes)+" bytes per node");
+  }
+
+  /**
+   * The bytes of user data per node, for nodes with 1 to 6 entries: inline in Base, as it is now, and in a 
+   * HashMap, as it was before. The names and values are shared, so they aren't counted. Nodes without user 
+   * data have a null reference either way, and Base has no other field for it (see the instance size)
+   */
+  private static void userData() {
+    System.out.println(ClassLayout.parseClass(StringType.class).toPrintable());
+    long empty = GraphLayout.parseInstance(new StringType()).totalSize();
+    for (int count = 1; count <= USER_DATA_NAMES.length; count++) {
+      StringType node = new StringType();
+      Map<String, Object> map = new HashMap<>();
+      for (int i = 0; i < count; i++) {
+        node.setUserData(USER_DATA_NAMES[i], Boolean.TRUE);
+        map.put(USER_DATA_NAMES[i], Boolean.TRUE);
+      }
+      Object[] shared = Arrays.copyOf(USER_DATA_NAMES, USER_DATA_NAMES.length + 1, Object[].class);
+      shared[USER_DATA_NAMES.length] = Boolean.TRUE;
+      GraphLayout sharedLayout = GraphLayout.parseInstance(shared);
+      long inline = GraphLayout.parseInstance(node).subtract(sharedLayout).totalSize() - empty;
+      long hashMap = GraphLayout.parseInstance(map).subtract(sharedLayout).totalSize();
+      System.out.println("User data: "+count+" entries, "+inline+" bytes inline, "+hashMap+" bytes in a HashMap, "+(hashMap - inline)+" bytes saved per node");
+    }
+  }
+
+  /**
+   * @return the bytes reachable from root that aren't reachable from the context
+   */
+  private static long retained(Object root, Object context) {
+    return GraphLayout.parseInstance(root).subtract(GraphLayout.parseInstance(context)).totalSize();
+  }
+}
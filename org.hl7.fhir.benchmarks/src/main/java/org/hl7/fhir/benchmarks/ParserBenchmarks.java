@@ -0,0 +1,67 @@
+package org.hl7.fhir.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse and compose the patient and observation fixtures, in JSON and XML, with the generated
+ * parsers of each version. The XML source is composed from the JSON fixture during setup
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmarks {
+
+  @Param({"dstu2", "dstu2016may", "dstu3", "r4", "r4b", "r5"})
+  public String version;
+
+  @Param({"patient", "observation"})
+  public String fixture;
+
+  private VersionParsers parsers;
+  private byte[] json;
+  private byte[] xml;
+  private Object resource;
+
+  @Setup
+  public void setup() throws Exception {
+    parsers = VersionParsers.forVersion(version);
+    json = BenchmarkFixtures.load(fixture+".json");
+    resource = parsers.parseJson(json);
+    xml = parsers.composeXml(resource);
+  }
+
+  @Benchmark
+  public Object parseJson() throws Exception {
+    return parsers.parseJson(json);
+  }
+
+  @Benchmark
+  public Object parseXml() throws Exception {
+    return parsers.parseXml(xml);
+  }
+
+  @Benchmark
+  public byte[] composeJson() throws Exception {
+    return parsers.composeJson(resource);
+  }
+
+  @Benchmark
+  public byte[] composeXml() throws Exception {
+    return parsers.composeXml(resource);
+  }
+}
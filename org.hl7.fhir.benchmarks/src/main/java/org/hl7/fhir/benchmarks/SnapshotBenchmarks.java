@@ -0,0 +1,66 @@
+package org.hl7.fhir.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r5.conformance.profile.ProfileUtilities;
+import org.hl7.fhir.r5.context.IWorkerContext;
+import org.hl7.fhir.r5.model.StructureDefinition;
+import org.hl7.fhir.utilities.validation.ValidationMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generate the snapshot for US Core profiles (trimmed copies of them, in /fixtures) against the R5 core
+ * definitions. Generating a snapshot changes the profile, so each invocation works on a fresh copy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class SnapshotBenchmarks {
+
+  @Param({"us-core-patient", "us-core-blood-pressure"})
+  public String profile;
+
+  private IWorkerContext context;
+  private StructureDefinition source;
+  private StructureDefinition base;
+  private StructureDefinition derived;
+  private List<ValidationMessage> messages;
+
+  @Setup
+  public void setup() throws Exception {
+    context = BenchmarkFixtures.getR5Context();
+    source = BenchmarkFixtures.loadProfile(profile+".json");
+    base = context.fetchResource(StructureDefinition.class, source.getBaseDefinition());
+    if (base == null) {
+      throw new Error("Unable to find the base definition "+source.getBaseDefinition());
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void copyProfile() {
+    derived = source.copy();
+    messages = new ArrayList<>();
+  }
+
+  @Benchmark
+  public StructureDefinition generateSnapshot() {
+    new ProfileUtilities(context, messages, null).generateSnapshot(base, derived, derived.getUrl(), "http://hl7.org/fhir/us/core", derived.getName());
+    return derived;
+  }
+}
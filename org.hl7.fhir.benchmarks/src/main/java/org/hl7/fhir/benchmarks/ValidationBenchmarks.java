@@ -0,0 +1,82 @@
+package org.hl7.fhir.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r5.conformance.profile.ProfileUtilities;
+import org.hl7.fhir.r5.context.SimpleWorkerContext;
+import org.hl7.fhir.r5.elementmodel.Manager.FhirFormat;
+import org.hl7.fhir.r5.model.StructureDefinition;
+import org.hl7.fhir.utilities.validation.ValidationMessage;
+import org.hl7.fhir.validation.instance.InstanceValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Validate, end to end (parse, then validate), a Bundle of the patient and observation fixtures
+ * against the core definitions, and the blood pressure observation against the US Core blood pressure
+ * profile. There's no terminology server, so codes are only checked against what's in the core package
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ValidationBenchmarks {
+
+  @Param({"1", "10", "100"})
+  public int entries;
+
+  private SimpleWorkerContext context;
+  private InstanceValidator validator;
+  private byte[] bundle;
+  private byte[] observation;
+  private List<StructureDefinition> profiles;
+
+  @Setup
+  public void setup() throws Exception {
+    // the profiles are added to a copy, so that the shared context isn't changed
+    context = new SimpleWorkerContext(BenchmarkFixtures.getR5Context());
+    profiles = new ArrayList<>();
+    for (String name : new String[] {"us-core-patient", "us-core-blood-pressure"}) {
+      StructureDefinition sd = BenchmarkFixtures.loadProfile(name+".json");
+      StructureDefinition base = context.fetchResource(StructureDefinition.class, sd.getBaseDefinition());
+      new ProfileUtilities(context, new ArrayList<>(), null).generateSnapshot(base, sd, sd.getUrl(), "http://hl7.org/fhir/us/core", sd.getName());
+      context.cacheResource(sd);
+      if ("us-core-blood-pressure".equals(name)) {
+        profiles.add(sd);
+      }
+    }
+    validator = new InstanceValidator(context, null, null);
+    bundle = BenchmarkFixtures.makeBundle(entries);
+    observation = BenchmarkFixtures.load("observation.json");
+  }
+
+  @Benchmark
+  public List<ValidationMessage> validateBundle() {
+    List<ValidationMessage> messages = new ArrayList<>();
+    validator.validate(null, messages, new ByteArrayInputStream(bundle), FhirFormat.JSON);
+    return messages;
+  }
+
+  @Benchmark
+  public List<ValidationMessage> validateAgainstProfile() {
+    List<ValidationMessage> messages = new ArrayList<>();
+    for (int i = 0; i < entries; i++) {
+      validator.validate(null, messages, new ByteArrayInputStream(observation), FhirFormat.JSON, profiles);
+    }
+    return messages;
+  }
+}
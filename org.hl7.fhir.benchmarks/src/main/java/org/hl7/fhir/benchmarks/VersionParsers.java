@@ -0,0 +1,187 @@
+package org.hl7.fhir.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * The JSON and XML parsers for one version of FHIR, behind a common interface, so that the
+ * same benchmark can be run against each version. Resources are passed as Object, since each
+ * version has its own Resource class
+ */
+public abstract class VersionParsers {
+
+  public abstract Object parseJson(byte[] source) throws Exception;
+
+  public abstract Object parseXml(byte[] source) throws Exception;
+
+  public abstract byte[] composeJson(Object resource) throws Exception;
+
+  public abstract byte[] composeXml(Object resource) throws Exception;
+
+  public static VersionParsers forVersion(String version) {
+    switch (version) {
+    case "dstu2": return new Dstu2();
+    case "dstu2016may": return new Dstu2016May();
+    case "dstu3": return new Dstu3();
+    case "r4": return new R4();
+    case "r4b": return new R4B();
+    case "r5": return new R5();
+    default: throw new IllegalArgumentException("Unknown version "+version);
+    }
+  }
+
+  private static class Dstu2 extends VersionParsers {
+    @Override
+    public Object parseJson(byte[] source) throws Exception {
+      return new org.hl7.fhir.dstu2.formats.JsonParser().parse(source);
+    }
+
+    @Override
+    public Object parseXml(byte[] source) throws Exception {
+      return new org.hl7.fhir.dstu2.formats.XmlParser().parse(source);
+    }
+
+    @Override
+    public byte[] composeJson(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.dstu2.formats.JsonParser().compose(bs, (org.hl7.fhir.dstu2.model.Resource) resource);
+      return bs.toByteArray();
+    }
+
+    @Override
+    public byte[] composeXml(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.dstu2.formats.XmlParser().compose(bs, (org.hl7.fhir.dstu2.model.Resource) resource);
+      return bs.toByteArray();
+    }
+  }
+
+  private static class Dstu2016May extends VersionParsers {
+    @Override
+    public Object parseJson(byte[] source) throws Exception {
+      return new org.hl7.fhir.dstu2016may.formats.JsonParser().parse(source);
+    }
+
+    @Override
+    public Object parseXml(byte[] source) throws Exception {
+      return new org.hl7.fhir.dstu2016may.formats.XmlParser().parse(source);
+    }
+
+    @Override
+    public byte[] composeJson(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.dstu2016may.formats.JsonParser().compose(bs, (org.hl7.fhir.dstu2016may.model.Resource) resource);
+      return bs.toByteArray();
+    }
+
+    @Override
+    public byte[] composeXml(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.dstu2016may.formats.XmlParser().compose(bs, (org.hl7.fhir.dstu2016may.model.Resource) resource);
+      return bs.toByteArray();
+    }
+  }
+
+  private static class Dstu3 extends VersionParsers {
+    @Override
+    public Object parseJson(byte[] source) throws Exception {
+      return new org.hl7.fhir.dstu3.formats.JsonParser().parse(source);
+    }
+
+    @Override
+    public Object parseXml(byte[] source) throws Exception {
+      return new org.hl7.fhir.dstu3.formats.XmlParser().parse(source);
+    }
+
+    @Override
+    public byte[] composeJson(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.dstu3.formats.JsonParser().compose(bs, (org.hl7.fhir.dstu3.model.Resource) resource);
+      return bs.toByteArray();
+    }
+
+    @Override
+    public byte[] composeXml(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.dstu3.formats.XmlParser().compose(bs, (org.hl7.fhir.dstu3.model.Resource) resource);
+      return bs.toByteArray();
+    }
+  }
+
+  private static class R4 extends VersionParsers {
+    @Override
+    public Object parseJson(byte[] source) throws Exception {
+      return new org.hl7.fhir.r4.formats.JsonParser().parse(source);
+    }
+
+    @Override
+    public Object parseXml(byte[] source) throws Exception {
+      return new org.hl7.fhir.r4.formats.XmlParser().parse(source);
+    }
+
+    @Override
+    public byte[] composeJson(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.r4.formats.JsonParser().compose(bs, (org.hl7.fhir.r4.model.Resource) resource);
+      return bs.toByteArray();
+    }
+
+    @Override
+    public byte[] composeXml(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.r4.formats.XmlParser().compose(bs, (org.hl7.fhir.r4.model.Resource) resource);
+      return bs.toByteArray();
+    }
+  }
+
+  private static class R4B extends VersionParsers {
+    @Override
+    public Object parseJson(byte[] source) throws Exception {
+      return new org.hl7.fhir.r4b.formats.JsonParser().parse(source);
+    }
+
+    @Override
+    public Object parseXml(byte[] source) throws Exception {
+      return new org.hl7.fhir.r4b.formats.XmlParser().parse(source);
+    }
+
+    @Override
+    public byte[] composeJson(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.r4b.formats.JsonParser().compose(bs, (org.hl7.fhir.r4b.model.Resource) resource);
+      return bs.toByteArray();
+    }
+
+    @Override
+    public byte[] composeXml(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.r4b.formats.XmlParser().compose(bs, (org.hl7.fhir.r4b.model.Resource) resource);
+      return bs.toByteArray();
+    }
+  }
+
+  private static class R5 extends VersionParsers {
+    @Override
+    public Object parseJson(byte[] source) throws Exception {
+      return new org.hl7.fhir.r5.formats.JsonParser().parse(source);
+    }
+
+    @Override
+    public Object parseXml(byte[] source) throws Exception {
+      return new org.hl7.fhir.r5.formats.XmlParser().parse(source);
+    }
+
+    @Override
+    public byte[] composeJson(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.r5.formats.JsonParser().compose(bs, (org.hl7.fhir.r5.model.Resource) resource);
+      return bs.toByteArray();
+    }
+
+    @Override
+    public byte[] composeXml(Object resource) throws Exception {
+      ByteArrayOutputStream bs = new ByteArrayOutputStream();
+      new org.hl7.fhir.r5.formats.XmlParser().compose(bs, (org.hl7.fhir.r5.model.Resource) resource);
+      return bs.toByteArray();
+    }
+  }
+}
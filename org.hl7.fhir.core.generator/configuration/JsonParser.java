@@ -160,9 +160,9 @@ public class JsonParser extends JsonParserBase {
     String t = json.get("resourceType").getAsString();
     if (Utilities.noString(t)) {
       throw new FHIRFormatError("Unable to find resource type - maybe not a FHIR resource?");
-{{parse-resource}}
-    } else {
-      throw new FHIRFormatError("Unknown.Unrecognised resource type '"+t+"' (in property 'resourceType')");
+    }
+    switch (t) {
+{{parse-resource}}      default: throw new FHIRFormatError("Unknown.Unrecognised resource type '"+t+"' (in property 'resourceType')");
     }
   }
 
@@ -299,9 +299,9 @@ public class JsonParser extends JsonParserBase {
   protected DataType parseType(JsonObject json, String type) throws IOException, FHIRFormatError {
     if (Utilities.noString(type)) {
       throw new FHIRFormatError("Unable to parse type - type not specified"); 
-{{parse-type}}
-    } else {
-      throw new FHIRFormatError("Unknown Type "+type);
+    }
+    switch (type) {
+{{parse-type}}      default: throw new FHIRFormatError("Unknown Type "+type);
     }
   }
 
@@ -352,9 +352,9 @@ public class XmlParser extends XmlParserBase {
   protected Resource parseResource(XmlPullParser xpp) throws XmlPullParserException, IOException, FHIRFormatError {
     if (xpp == null) {
       throw new IOException("xpp == null!");
-{{parse-resource}}
-    } else {
-      throw new FHIRFormatError("Unknown resource type "+xpp.getName()+"");
+    }
+    switch (xpp.getName()) {
+{{parse-resource}}      default: throw new FHIRFormatError("Unknown resource type "+xpp.getName()+"");
     }
   }
 
@@ -414,49 +414,29 @@ public class XmlParser extends XmlParserBase {
       throw new IOException("type == null!");
     } else if (xpp == null) {
       throw new IOException("xpp == null!");
-    } else if (type.equals("date")) {
-      return parseDate(xpp);
-    } else if (type.equals("dateTime")) {
-      return parseDateTime(xpp);
-    } else if (type.equals("code")) {
-      return parseCode(xpp);
-    } else if (type.equals("string")) {
-      return parseString(xpp);
-    } else if (type.equals("integer")) {
-      return parseInteger(xpp);
-    } else if (type.equals("integer64")) {
-      return parseInteger64(xpp);
-    } else if (type.equals("oid")) {
-      return parseOid(xpp);
-    } else if (type.equals("canonical")) {
-      return parseCanonical(xpp);
-    } else if (type.equals("uri")) {
-      return parseUri(xpp);
-    } else if (type.equals("uuid")) {
-      return parseUuid(xpp);
-    } else if (type.equals("url")) {
-      return parseUrl(xpp);
-    } else if (type.equals("instant")) {
-      return parseInstant(xpp);
-    } else if (type.equals("boolean")) {
-      return parseBoolean(xpp);
-    } else if (type.equals("base64Binary")) {
-      return parseBase64Binary(xpp);
-    } else if (type.equals("unsignedInt")) {
-      return parseUnsignedInt(xpp);
-    } else if (type.equals("markdown")) {
-      return parseMarkdown(xpp);
-    } else if (type.equals("time")) {
-      return parseTime(xpp);
-    } else if (type.equals("id")) {
-      return parseId(xpp);
-    } else if (type.equals("positiveInt")) {
-      return parsePositiveInt(xpp);
-    } else if (type.equals("decimal")) {
-      return parseDecimal(xpp);
-{{parse-type}}
-    } else {
-      throw new FHIRFormatError("Unknown type "+type);
+    }
+    switch (type) {
+      case "date": return parseDate(xpp);
+      case "dateTime": return parseDateTime(xpp);
+      case "code": return parseCode(xpp);
+      case "string": return parseString(xpp);
+      case "integer": return parseInteger(xpp);
+      case "integer64": return parseInteger64(xpp);
+      case "oid": return parseOid(xpp);
+      case "canonical": return parseCanonical(xpp);
+      case "uri": return parseUri(xpp);
+      case "uuid": return parseUuid(xpp);
+      case "url": return parseUrl(xpp);
+      case "instant": return parseInstant(xpp);
+      case "boolean": return parseBoolean(xpp);
+      case "base64Binary": return parseBase64Binary(xpp);
+      case "unsignedInt": return parseUnsignedInt(xpp);
+      case "markdown": return parseMarkdown(xpp);
+      case "time": return parseTime(xpp);
+      case "id": return parseId(xpp);
+      case "positiveInt": return parsePositiveInt(xpp);
+      case "decimal": return parseDecimal(xpp);
+{{parse-type}}      default: throw new FHIRFormatError("Unknown type "+type);
     }
   }
 
@@ -465,49 +445,29 @@ public class XmlParser extends XmlParserBase {
       throw new IOException("type == null!");
     } else if (xpp == null) {
       throw new IOException("xpp == null!");
-{{parse-fragment}}      
-    } else if (type.equals("date")) {
-      return parseDate(xpp);
-    } else if (type.equals("dateTime")) {
-      return parseDateTime(xpp);
-    } else if (type.equals("code")) {
-      return parseCode(xpp);
-    } else if (type.equals("string")) {
-      return parseString(xpp);
-    } else if (type.equals("integer")) {
-      return parseInteger(xpp);
-    } else if (type.equals("integer64")) {
-      return parseInteger64(xpp);
-    } else if (type.equals("oid")) {
-      return parseOid(xpp);
-    } else if (type.equals("canonical")) {
-      return parseCanonical(xpp);
-    } else if (type.equals("uri")) {
-      return parseUri(xpp);
-    } else if (type.equals("uuid")) {
-      return parseUuid(xpp);
-    } else if (type.equals("url")) {
-      return parseUrl(xpp);
-    } else if (type.equals("instant")) {
-      return parseInstant(xpp);
-    } else if (type.equals("boolean")) {
-      return parseBoolean(xpp);
-    } else if (type.equals("base64Binary")) {
-      return parseBase64Binary(xpp);
-    } else if (type.equals("unsignedInt")) {
-      return parseUnsignedInt(xpp);
-    } else if (type.equals("markdown")) {
-      return parseMarkdown(xpp);
-    } else if (type.equals("time")) {
-      return parseTime(xpp);
-    } else if (type.equals("id")) {
-      return parseId(xpp);
-    } else if (type.equals("positiveInt")) {
-      return parsePositiveInt(xpp);
-    } else if (type.equals("decimal")) {
-      return parseDecimal(xpp);
-    } else {
-      throw new FHIRFormatError("Unknown type "+type);
+    }
+    switch (type) {
+{{parse-fragment}}      case "date": return parseDate(xpp);
+      case "dateTime": return parseDateTime(xpp);
+      case "code": return parseCode(xpp);
+      case "string": return parseString(xpp);
+      case "integer": return parseInteger(xpp);
+      case "integer64": return parseInteger64(xpp);
+      case "oid": return parseOid(xpp);
+      case "canonical": return parseCanonical(xpp);
+      case "uri": return parseUri(xpp);
+      case "uuid": return parseUuid(xpp);
+      case "url": return parseUrl(xpp);
+      case "instant": return parseInstant(xpp);
+      case "boolean": return parseBoolean(xpp);
+      case "base64Binary": return parseBase64Binary(xpp);
+      case "unsignedInt": return parseUnsignedInt(xpp);
+      case "markdown": return parseMarkdown(xpp);
+      case "time": return parseTime(xpp);
+      case "id": return parseId(xpp);
+      case "positiveInt": return parsePositiveInt(xpp);
+      case "decimal": return parseDecimal(xpp);
+      default: throw new FHIRFormatError("Unknown type "+type);
     }
   }
 
@@ -64,8 +64,7 @@ public class JavaFactoryGenerator extends JavaBaseGenerator {
     for (StructureDefinition sd : definitions.getStructures().getSortedList()) {
       if (sd.getKind() == StructureDefinitionKind.RESOURCE && sd.getDerivation() == TypeDerivationRule.SPECIALIZATION && !sd.getAbstract()) {
         String tn = ((TypeInfo) sd.getUserData("java.type.info")).getName();
-        b.append("        if (\""+sd.getName()+"\".equals(name))\r\n");
-        b.append("            return new "+tn+"();\r\n");
+        b.append("        case \""+sd.getName()+"\": return new "+tn+"();\r\n");
       }
     }
     
@@ -77,8 +76,7 @@ public class JavaFactoryGenerator extends JavaBaseGenerator {
     for (StructureDefinition sd : definitions.getStructures().getSortedList()) {
       if (sd.getKind() == StructureDefinitionKind.COMPLEXTYPE && sd.getDerivation() == TypeDerivationRule.SPECIALIZATION && !sd.getAbstract()) {
         String tn = ((TypeInfo) sd.getUserData("java.type.info")).getName();
-        b.append("        if (\""+sd.getName()+"\".equals(name))\r\n");
-        b.append("            return new "+tn+"();\r\n");
+        b.append("        case \""+sd.getName()+"\": return new "+tn+"();\r\n");
       }
     }
     
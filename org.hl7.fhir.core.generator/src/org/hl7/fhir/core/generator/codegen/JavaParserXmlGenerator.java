@@ -61,15 +61,15 @@ public class JavaParserXmlGenerator extends JavaBaseGenerator {
     generateParser(analysis);
     generateComposer(analysis);
     if (!analysis.isAbstract()) {
-      pFrag.append( "    } else if (type.equals(\""+analysis.getName()+"\")) {\r\n      return parse"+analysis.getClassName()+"(xpp);\r\n");
+      pFrag.append( "      case \""+analysis.getName()+"\": return parse"+analysis.getClassName()+"(xpp);\r\n");
       pCtype.append("    } else if (xpp.getName().equals(prefix+\""+analysis.getName()+"\")) {\r\n      return true;\r\n");
       if (analysis.getStructure().getKind() == StructureDefinitionKind.COMPLEXTYPE) {
         pTP.append(   "    } else if (xpp.getName().equals(prefix+\""+analysis.getName()+"\")) {\r\n      return parse"+analysis.getClassName()+"(xpp);\r\n");
-        pT.append(    "    } else if (type.equals(\""+analysis.getName()+"\")) {\r\n      return parse"+analysis.getClassName()+"(xpp);\r\n");
+        pT.append(    "      case \""+analysis.getName()+"\": return parse"+analysis.getClassName()+"(xpp);\r\n");
         cType.append( "    } else if (type instanceof "+analysis.getClassName()+") {\r\n       compose"+analysis.getClassName()+"(prefix+\""+analysis.getName()+"\", ("+analysis.getClassName()+") type);\r\n");
       }
       if (analysis.getStructure().getKind() == StructureDefinitionKind.RESOURCE) {
-        pRes.append("    } else if (xpp.getName().equals(\""+analysis.getName()+"\")) {\r\n      return parse"+analysis.getClassName()+"(xpp);\r\n");
+        pRes.append("      case \""+analysis.getName()+"\": return parse"+analysis.getClassName()+"(xpp);\r\n");
         cRes.append("    } else if (resource instanceof "+analysis.getClassName()+") {\r\n      compose"+analysis.getClassName()+"(\""+analysis.getName()+"\", ("+analysis.getClassName()+")resource);\r\n");
         cRN.append( "    } else if (resource instanceof "+analysis.getClassName()+") {\r\n      compose"+analysis.getClassName()+"(name, ("+analysis.getClassName()+")resource);\r\n");
       }
@@ -34,6 +34,7 @@ import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.http.Header;
 import org.apache.http.HttpHost;
@@ -96,7 +97,7 @@ public class FHIRToolingClient extends FHIRBaseToolingClient {
   private int maxResultSetSize = -1;// _count
   private Conformance conf;
   private ClientUtils utils = new ClientUtils();
-  private int useCount;
+  private final AtomicInteger useCount = new AtomicInteger();
 
   // Pass enpoint for client - URI
   public FHIRToolingClient(String baseServiceUrl, String userAgent) throws URISyntaxException {
@@ -920,11 +921,11 @@ public class FHIRToolingClient extends FHIRBaseToolingClient {
   }
 
   public int getUseCount() {
-    return useCount;
+    return useCount.get();
   }
 
   private void recordUse() {
-    useCount++;    
+    useCount.incrementAndGet();
   }
 
   public Bundle search(String type, String criteria) {
@@ -8,6 +8,7 @@ import java.util.Base64;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hl7.fhir.dstu3.model.Bundle;
 import org.hl7.fhir.dstu3.model.CapabilityStatement;
@@ -79,7 +80,7 @@ public class FHIRToolingClient extends FHIRBaseToolingClient {
   private EnumSet<FhirPublication> allowedVersions;
   private String acceptLang;
   private String contentLang;
-  private int useCount;
+  private final AtomicInteger useCount = new AtomicInteger();
 
   //Pass endpoint for client - URI
   public FHIRToolingClient(String baseServiceUrl, String userAgent) throws URISyntaxException {
@@ -635,11 +636,11 @@ public class FHIRToolingClient extends FHIRBaseToolingClient {
   }
 
   public int getUseCount() {
-    return useCount;
+    return useCount.get();
   }
 
   private void recordUse() {
-    useCount++;    
+    useCount.incrementAndGet();
   }
 
   public Bundle search(String type, String criteria) {
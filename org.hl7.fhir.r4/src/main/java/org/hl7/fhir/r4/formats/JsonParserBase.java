@@ -58,15 +58,21 @@ POSSIBILITY OF SUCH DAMAGE.
 
 */
 
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.hl7.fhir.exceptions.FHIRFormatError;
 import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.DomainResource;
 import org.hl7.fhir.r4.model.Element;
 import org.hl7.fhir.r4.model.IdType;
@@ -82,8 +88,13 @@ import org.hl7.fhir.utilities.xhtml.XhtmlParser;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 
 /**
  * General parser for JSON content. You instantiate an JsonParser of these, but
@@ -114,6 +125,8 @@ public abstract class JsonParserBase extends ParserBase implements IParser {
 
   abstract protected boolean hasTypeName(JsonObject json, String prefix);
 
+  abstract protected Bundle.BundleEntryComponent parseBundleBundleEntryComponent(JsonObject json, Bundle owner) throws IOException, FHIRFormatError;
+
   abstract protected void composeResource(Resource resource) throws IOException;
 
   abstract protected void composeTypeInner(Type type) throws IOException;
@@ -127,6 +140,9 @@ public abstract class JsonParserBase extends ParserBase implements IParser {
    */
   @Override
   public Resource parse(InputStream input) throws IOException, FHIRFormatError {
+    if (streamBundleEntries && !allowComments && !allowUnknownContent) {
+      return parseStreamed(input);
+    }
     JsonObject json = loadJson(input);
     return parseResource(json);
   }
@@ -215,6 +231,244 @@ public abstract class JsonParserBase extends ParserBase implements IParser {
 
   protected JsonCreator json;
   private boolean htmlPretty;
+  private boolean streamBundleEntries;
+
+  public boolean isStreamBundleEntries() {
+    return streamBundleEntries;
+  }
+
+  /**
+   * Read Bundles entry by entry from a stream of JSON tokens, instead of loading the whole document 
+   * into a JSON tree first. The resource in each entry is read the same way (so the entries of 
+   * Bundles in Bundles are streamed too); the rest of an entry, and everything that isn't in an 
+   * entry, is read into a JSON tree and parsed as usual. So the biggest JSON tree held at a time is 
+   * the largest resource that isn't a Bundle, rather than the whole document. The entries are read 
+   * this way whether the resourceType comes before or after them. The resources that are produced 
+   * are the same either way.
+   *
+   * This only applies to parse(InputStream) (and the parse methods that call it), and not when
+   * comments or unknown content are allowed
+   */
+  public JsonParserBase setStreamBundleEntries(boolean streamBundleEntries) {
+    this.streamBundleEntries = streamBundleEntries;
+    return this;
+  }
+
+  private Resource parseStreamed(InputStream input) throws IOException, FHIRFormatError {
+    JsonReader reader = new JsonReader(new BomFilterReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+    try {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        throw new FHIRFormatError("Unable to parse JSON: the content is not an object");
+      }
+      Resource res = readResource(reader);
+      if (reader.peek() != JsonToken.END_DOCUMENT) {
+        throw new JsonSyntaxException("Did not consume the entire document.");
+      }
+      return res;
+    } catch (MalformedJsonException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  /**
+   * An entry of a Bundle: the resource, read from the stream, and the rest of the entry as JSON
+   */
+  private static class StreamedEntry {
+    private final JsonElement json;
+    private final Resource resource;
+
+    private StreamedEntry(JsonElement json, Resource resource) {
+      this.json = json;
+      this.resource = resource;
+    }
+  }
+
+  /**
+   * Read the resource that starts at the reader. If it's a Bundle (or might be, because the 
+   * resourceType hasn't been read yet), the entries are read one at a time, and so are the 
+   * resources in them
+   */
+  private Resource readResource(JsonReader reader) throws IOException, FHIRFormatError {
+    JsonObject json = new JsonObject();
+    List<StreamedEntry> entries = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      checkDuplicate(json, name, entries != null && "entry".equals(name));
+      if ("entry".equals(name) && mayBeBundle(json) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+        entries = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          if (reader.peek() == JsonToken.BOOLEAN) {
+            reader.skipValue();
+          } else {
+            entries.add(readEntry(reader));
+          }
+        }
+        reader.endArray();
+      } else {
+        json.add(name, readProperty(reader));
+      }
+    }
+    reader.endObject();
+    if (entries != null && !isBundle(json)) {
+      // the entries came before the resourceType, and it's not a Bundle after all. The resources 
+      // that were read aren't part of the other resource types, so they're left out, as in the tree
+      JsonArray array = new JsonArray();
+      for (StreamedEntry entry : entries) {
+        array.add(entry.json);
+      }
+      json.add("entry", array);
+      entries = null;
+    }
+    Resource res = parseResource(json);
+    if (entries != null) {
+      Bundle bundle = (Bundle) res;
+      for (int i = 0; i < entries.size(); i++) {
+        StreamedEntry se = entries.set(i, null);
+        // as array.get(i).getAsJsonObject()
+        Bundle.BundleEntryComponent entry = parseBundleBundleEntryComponent(se.json.getAsJsonObject(), null);
+        if (se.resource != null) {
+          entry.setResource(se.resource);
+        }
+        bundle.getEntry().add(entry);
+      }
+    }
+    return res;
+  }
+
+  private StreamedEntry readEntry(JsonReader reader) throws IOException, FHIRFormatError {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      return new StreamedEntry(readItem(reader), null);
+    }
+    JsonObject json = new JsonObject();
+    Resource resource = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      checkDuplicate(json, name, resource != null && "resource".equals(name));
+      if ("resource".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+        resource = readResource(reader);
+      } else {
+        json.add(name, readProperty(reader));
+      }
+    }
+    reader.endObject();
+    return new StreamedEntry(json, resource);
+  }
+
+  private void checkDuplicate(JsonObject json, String name, boolean streamed) throws IOException {
+    if (streamed || json.has(name)) {
+      throw new IOException("Duplicated property name: "+name);
+    }
+  }
+
+  private boolean mayBeBundle(JsonObject json) {
+    return !json.has("resourceType") || isBundle(json);
+  }
+
+  private boolean isBundle(JsonObject json) {
+    JsonElement rt = json.get("resourceType");
+    return rt != null && rt.isJsonPrimitive() && "Bundle".equals(rt.getAsString());
+  }
+
+  // these build the same tree as JsonTrackingParser: numbers keep their presentation in properties, 
+  // and booleans in arrays are dropped
+
+  private JsonElement readProperty(JsonReader reader) throws IOException {
+    switch (reader.peek()) {
+    case BEGIN_OBJECT:
+      return readObject(reader);
+    case BEGIN_ARRAY:
+      return readArray(reader);
+    case STRING:
+      return new JsonPrimitive(reader.nextString());
+    case NUMBER:
+      return new JsonPrimitive(new JsonTrackingParser().new PresentedBigDecimal(reader.nextString()));
+    case BOOLEAN:
+      return new JsonPrimitive(reader.nextBoolean());
+    case NULL:
+      reader.nextNull();
+      return JsonNull.INSTANCE;
+    default:
+      throw new IOException("Unexpected JSON token "+reader.peek());
+    }
+  }
+
+  private JsonObject readObject(JsonReader reader) throws IOException {
+    JsonObject json = new JsonObject();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      checkDuplicate(json, name, false);
+      json.add(name, readProperty(reader));
+    }
+    reader.endObject();
+    return json;
+  }
+
+  private JsonArray readArray(JsonReader reader) throws IOException {
+    JsonArray array = new JsonArray();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      JsonElement item = readItem(reader);
+      if (item != null) {
+        array.add(item);
+      }
+    }
+    reader.endArray();
+    return array;
+  }
+
+  private JsonElement readItem(JsonReader reader) throws IOException {
+    switch (reader.peek()) {
+    case NUMBER:
+      return new JsonPrimitive(new BigDecimal(reader.nextString()));
+    case BOOLEAN:
+      reader.nextBoolean();
+      return null;
+    default:
+      return readProperty(reader);
+    }
+  }
+
+  /**
+   * Drops byte order marks, as Utilities.stripBOM does for the tree
+   */
+  private static class BomFilterReader extends FilterReader {
+
+    protected BomFilterReader(Reader in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int c;
+      do {
+        c = super.read();
+      } while (c == '\uFEFF');
+      return c;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int n;
+      do {
+        n = super.read(cbuf, off, len);
+        int j = off;
+        for (int i = off; i < off + Math.max(n, 0); i++) {
+          if (cbuf[i] != '\uFEFF') {
+            cbuf[j++] = cbuf[i];
+          }
+        }
+        if (n > 0) {
+          n = j - off;
+        }
+      } while (n == 0 && len > 0);
+      return n;
+    }
+  }
+
 
   private JsonObject loadJson(InputStream input) throws JsonSyntaxException, IOException {
     return JsonTrackingParser.parse(TextFile.streamToString(input), null, allowUnknownContent, allowComments);
@@ -60,4 +60,15 @@ public class ParserFactory {
     }
   }
 
+  /**
+   * A JSON parser that reads Bundles entry by entry, rather than loading the whole document into a 
+   * JSON tree first (see JsonParserBase.setStreamBundleEntries). The XML parser already builds the 
+   * resources as it reads, so there's no equivalent for XML
+   */
+  public static JsonParser bundleEntryStreamingParser() {
+    JsonParser parser = new JsonParser();
+    parser.setStreamBundleEntries(true);
+    return parser;
+  }
+
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.r4.model.Bundle;
@@ -80,7 +81,7 @@ public class FHIRToolingClient extends FHIRBaseToolingClient {
   private String userAgent;
   private String acceptLang;
   private String contentLang;
-  private int useCount;
+  private final AtomicInteger useCount = new AtomicInteger();
   
   // Pass endpoint for client - URI
   public FHIRToolingClient(String baseServiceUrl, String userAgent) throws URISyntaxException {
@@ -639,11 +640,11 @@ public class FHIRToolingClient extends FHIRBaseToolingClient {
   }
 
   public int getUseCount() {
-    return useCount;
+    return useCount.get();
   }
 
   private void recordUse() {
-    useCount++;    
+    useCount.incrementAndGet();
   }
 
   
@@ -7,20 +7,24 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import org.fhir.ucum.UcumException;
 import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.r4.formats.IParser;
 import org.hl7.fhir.r4.formats.IParser.OutputStyle;
 import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.formats.ParserFactory;
 import org.hl7.fhir.r4.formats.XmlParser;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.ListResource;
 import org.hl7.fhir.r4.model.DomainResource;
 import org.hl7.fhir.r4.model.Resource;
 import org.hl7.fhir.r4.test.utils.TestingUtilities;
 import org.hl7.fhir.r4.utils.EOperationOutcome;
 import org.hl7.fhir.r4.utils.NarrativeGenerator;
 import org.hl7.fhir.utilities.filesystem.ManagedFileAccess;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -59,4 +63,48 @@ public class ResourceRoundTripTests {
     if (result == null)
       throw new FHIRException("Bundle was null");
   }
-}
\ No newline at end of file
+
+  private static final String NESTED_BUNDLE = "{\"resourceType\":\"Bundle\",\"type\":\"collection\",\"entry\":["
+      + "{\"fullUrl\":\"http://example.org/Observation/1\",\"resource\":{\"resourceType\":\"Observation\",\"status\":\"final\","
+      + "\"code\":{\"text\":\"weight\"},\"valueQuantity\":{\"value\":1.50,\"unit\":\"kg\"}}},"
+      + "{\"resource\":{\"resourceType\":\"Bundle\",\"type\":\"collection\",\"entry\":[{\"resource\":{\"resourceType\":\"Patient\",\"active\":true}}]},"
+      + "\"search\":{\"mode\":\"match\"}}]}";
+
+  @Test
+  public void testStreamedBundle() throws FHIRException, IOException {
+    byte[] b = NESTED_BUNDLE.getBytes(StandardCharsets.UTF_8);
+    Resource tree = new JsonParser().parse(b);
+    Bundle streamed = (Bundle) new JsonParser().setStreamBundleEntries(true).parse(b);
+    Assertions.assertEquals(new JsonParser().composeString(tree), new JsonParser().composeString(streamed));
+    Assertions.assertTrue(new JsonParser().composeString(streamed).contains("\"value\":1.50"));
+    Bundle inner = (Bundle) streamed.getEntry().get(1).getResource();
+    Assertions.assertEquals("Patient", inner.getEntryFirstRep().getResource().fhirType());
+  }
+
+  // the resourceType doesn't have to come first
+  private static final String ENTRIES_FIRST_BUNDLE = "{\"entry\":["
+      + "{\"resource\":{\"status\":\"final\",\"code\":{\"text\":\"weight\"},\"resourceType\":\"Observation\"},\"fullUrl\":\"http://example.org/Observation/1\"},"
+      + "{\"search\":{\"mode\":\"match\"},\"resource\":{\"entry\":[{\"resource\":{\"resourceType\":\"Patient\",\"active\":true}}],\"type\":\"collection\",\"resourceType\":\"Bundle\"}}],"
+      + "\"type\":\"collection\",\"resourceType\":\"Bundle\",\"id\":\"b1\"}";
+  private static final String ENTRIES_FIRST_LIST = "{\"entry\":[{\"item\":{\"reference\":\"Patient/1\"},\"resource\":{\"resourceType\":\"Patient\"}}],"
+      + "\"status\":\"current\",\"mode\":\"working\",\"resourceType\":\"List\"}";
+
+  @Test
+  public void testStreamedEntriesBeforeResourceType() throws FHIRException, IOException {
+    byte[] b = ENTRIES_FIRST_BUNDLE.getBytes(StandardCharsets.UTF_8);
+    Resource tree = new JsonParser().parse(b);
+    Bundle streamed = (Bundle) ParserFactory.bundleEntryStreamingParser().parse(b);
+    Assertions.assertEquals(new JsonParser().composeString(tree), new JsonParser().composeString(streamed));
+    Assertions.assertEquals(2, streamed.getEntry().size());
+    Bundle inner = (Bundle) streamed.getEntry().get(1).getResource();
+    Assertions.assertEquals("Patient", inner.getEntryFirstRep().getResource().fhirType());
+
+    // and when it turns out not to be a Bundle
+    b = ENTRIES_FIRST_LIST.getBytes(StandardCharsets.UTF_8);
+    tree = new JsonParser().parse(b);
+    Resource list = ParserFactory.bundleEntryStreamingParser().parse(b);
+    Assertions.assertEquals(new JsonParser().composeString(tree), new JsonParser().composeString(list));
+    Assertions.assertEquals("Patient/1", ((ListResource) list).getEntryFirstRep().getItem().getReference());
+  }
+
+}
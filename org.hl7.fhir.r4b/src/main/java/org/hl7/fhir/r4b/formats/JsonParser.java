@@ -32166,291 +32166,150 @@ public class JsonParser extends JsonParserBase {
     String t = json.get("resourceType").getAsString();
     if (Utilities.noString(t)) {
       throw new FHIRFormatError("Unable to find resource type - maybe not a FHIR resource?");
-    } else if (t.equals("Account")) {
-      return parseAccount(json);
-    } else if (t.equals("ActivityDefinition")) {
-      return parseActivityDefinition(json);
-    } else if (t.equals("AdministrableProductDefinition")) {
-      return parseAdministrableProductDefinition(json);
-    } else if (t.equals("AdverseEvent")) {
-      return parseAdverseEvent(json);
-    } else if (t.equals("AllergyIntolerance")) {
-      return parseAllergyIntolerance(json);
-    } else if (t.equals("Appointment")) {
-      return parseAppointment(json);
-    } else if (t.equals("AppointmentResponse")) {
-      return parseAppointmentResponse(json);
-    } else if (t.equals("AuditEvent")) {
-      return parseAuditEvent(json);
-    } else if (t.equals("Basic")) {
-      return parseBasic(json);
-    } else if (t.equals("Binary")) {
-      return parseBinary(json);
-    } else if (t.equals("BiologicallyDerivedProduct")) {
-      return parseBiologicallyDerivedProduct(json);
-    } else if (t.equals("BodyStructure")) {
-      return parseBodyStructure(json);
-    } else if (t.equals("Bundle")) {
-      return parseBundle(json);
-    } else if (t.equals("CapabilityStatement")) {
-      return parseCapabilityStatement(json);
-    } else if (t.equals("CarePlan")) {
-      return parseCarePlan(json);
-    } else if (t.equals("CareTeam")) {
-      return parseCareTeam(json);
-    } else if (t.equals("CatalogEntry")) {
-      return parseCatalogEntry(json);
-    } else if (t.equals("ChargeItem")) {
-      return parseChargeItem(json);
-    } else if (t.equals("ChargeItemDefinition")) {
-      return parseChargeItemDefinition(json);
-    } else if (t.equals("Citation")) {
-      return parseCitation(json);
-    } else if (t.equals("Claim")) {
-      return parseClaim(json);
-    } else if (t.equals("ClaimResponse")) {
-      return parseClaimResponse(json);
-    } else if (t.equals("ClinicalImpression")) {
-      return parseClinicalImpression(json);
-    } else if (t.equals("ClinicalUseDefinition")) {
-      return parseClinicalUseDefinition(json);
-    } else if (t.equals("CodeSystem")) {
-      return parseCodeSystem(json);
-    } else if (t.equals("Communication")) {
-      return parseCommunication(json);
-    } else if (t.equals("CommunicationRequest")) {
-      return parseCommunicationRequest(json);
-    } else if (t.equals("CompartmentDefinition")) {
-      return parseCompartmentDefinition(json);
-    } else if (t.equals("Composition")) {
-      return parseComposition(json);
-    } else if (t.equals("ConceptMap")) {
-      return parseConceptMap(json);
-    } else if (t.equals("Condition")) {
-      return parseCondition(json);
-    } else if (t.equals("Consent")) {
-      return parseConsent(json);
-    } else if (t.equals("Contract")) {
-      return parseContract(json);
-    } else if (t.equals("Coverage")) {
-      return parseCoverage(json);
-    } else if (t.equals("CoverageEligibilityRequest")) {
-      return parseCoverageEligibilityRequest(json);
-    } else if (t.equals("CoverageEligibilityResponse")) {
-      return parseCoverageEligibilityResponse(json);
-    } else if (t.equals("DetectedIssue")) {
-      return parseDetectedIssue(json);
-    } else if (t.equals("Device")) {
-      return parseDevice(json);
-    } else if (t.equals("DeviceDefinition")) {
-      return parseDeviceDefinition(json);
-    } else if (t.equals("DeviceMetric")) {
-      return parseDeviceMetric(json);
-    } else if (t.equals("DeviceRequest")) {
-      return parseDeviceRequest(json);
-    } else if (t.equals("DeviceUseStatement")) {
-      return parseDeviceUseStatement(json);
-    } else if (t.equals("DiagnosticReport")) {
-      return parseDiagnosticReport(json);
-    } else if (t.equals("DocumentManifest")) {
-      return parseDocumentManifest(json);
-    } else if (t.equals("DocumentReference")) {
-      return parseDocumentReference(json);
-    } else if (t.equals("Encounter")) {
-      return parseEncounter(json);
-    } else if (t.equals("Endpoint")) {
-      return parseEndpoint(json);
-    } else if (t.equals("EnrollmentRequest")) {
-      return parseEnrollmentRequest(json);
-    } else if (t.equals("EnrollmentResponse")) {
-      return parseEnrollmentResponse(json);
-    } else if (t.equals("EpisodeOfCare")) {
-      return parseEpisodeOfCare(json);
-    } else if (t.equals("EventDefinition")) {
-      return parseEventDefinition(json);
-    } else if (t.equals("Evidence")) {
-      return parseEvidence(json);
-    } else if (t.equals("EvidenceReport")) {
-      return parseEvidenceReport(json);
-    } else if (t.equals("EvidenceVariable")) {
-      return parseEvidenceVariable(json);
-    } else if (t.equals("ExampleScenario")) {
-      return parseExampleScenario(json);
-    } else if (t.equals("ExplanationOfBenefit")) {
-      return parseExplanationOfBenefit(json);
-    } else if (t.equals("FamilyMemberHistory")) {
-      return parseFamilyMemberHistory(json);
-    } else if (t.equals("Flag")) {
-      return parseFlag(json);
-    } else if (t.equals("Goal")) {
-      return parseGoal(json);
-    } else if (t.equals("GraphDefinition")) {
-      return parseGraphDefinition(json);
-    } else if (t.equals("Group")) {
-      return parseGroup(json);
-    } else if (t.equals("GuidanceResponse")) {
-      return parseGuidanceResponse(json);
-    } else if (t.equals("HealthcareService")) {
-      return parseHealthcareService(json);
-    } else if (t.equals("ImagingStudy")) {
-      return parseImagingStudy(json);
-    } else if (t.equals("Immunization")) {
-      return parseImmunization(json);
-    } else if (t.equals("ImmunizationEvaluation")) {
-      return parseImmunizationEvaluation(json);
-    } else if (t.equals("ImmunizationRecommendation")) {
-      return parseImmunizationRecommendation(json);
-    } else if (t.equals("ImplementationGuide")) {
-      return parseImplementationGuide(json);
-    } else if (t.equals("Ingredient")) {
-      return parseIngredient(json);
-    } else if (t.equals("InsurancePlan")) {
-      return parseInsurancePlan(json);
-    } else if (t.equals("Invoice")) {
-      return parseInvoice(json);
-    } else if (t.equals("Library")) {
-      return parseLibrary(json);
-    } else if (t.equals("Linkage")) {
-      return parseLinkage(json);
-    } else if (t.equals("List")) {
-      return parseListResource(json);
-    } else if (t.equals("Location")) {
-      return parseLocation(json);
-    } else if (t.equals("ManufacturedItemDefinition")) {
-      return parseManufacturedItemDefinition(json);
-    } else if (t.equals("Measure")) {
-      return parseMeasure(json);
-    } else if (t.equals("MeasureReport")) {
-      return parseMeasureReport(json);
-    } else if (t.equals("Media")) {
-      return parseMedia(json);
-    } else if (t.equals("Medication")) {
-      return parseMedication(json);
-    } else if (t.equals("MedicationAdministration")) {
-      return parseMedicationAdministration(json);
-    } else if (t.equals("MedicationDispense")) {
-      return parseMedicationDispense(json);
-    } else if (t.equals("MedicationKnowledge")) {
-      return parseMedicationKnowledge(json);
-    } else if (t.equals("MedicationRequest")) {
-      return parseMedicationRequest(json);
-    } else if (t.equals("MedicationStatement")) {
-      return parseMedicationStatement(json);
-    } else if (t.equals("MedicinalProductDefinition")) {
-      return parseMedicinalProductDefinition(json);
-    } else if (t.equals("MessageDefinition")) {
-      return parseMessageDefinition(json);
-    } else if (t.equals("MessageHeader")) {
-      return parseMessageHeader(json);
-    } else if (t.equals("MolecularSequence")) {
-      return parseMolecularSequence(json);
-    } else if (t.equals("NamingSystem")) {
-      return parseNamingSystem(json);
-    } else if (t.equals("NutritionOrder")) {
-      return parseNutritionOrder(json);
-    } else if (t.equals("NutritionProduct")) {
-      return parseNutritionProduct(json);
-    } else if (t.equals("Observation")) {
-      return parseObservation(json);
-    } else if (t.equals("ObservationDefinition")) {
-      return parseObservationDefinition(json);
-    } else if (t.equals("OperationDefinition")) {
-      return parseOperationDefinition(json);
-    } else if (t.equals("OperationOutcome")) {
-      return parseOperationOutcome(json);
-    } else if (t.equals("Organization")) {
-      return parseOrganization(json);
-    } else if (t.equals("OrganizationAffiliation")) {
-      return parseOrganizationAffiliation(json);
-    } else if (t.equals("PackagedProductDefinition")) {
-      return parsePackagedProductDefinition(json);
-    } else if (t.equals("Parameters")) {
-      return parseParameters(json);
-    } else if (t.equals("Patient")) {
-      return parsePatient(json);
-    } else if (t.equals("PaymentNotice")) {
-      return parsePaymentNotice(json);
-    } else if (t.equals("PaymentReconciliation")) {
-      return parsePaymentReconciliation(json);
-    } else if (t.equals("Person")) {
-      return parsePerson(json);
-    } else if (t.equals("PlanDefinition")) {
-      return parsePlanDefinition(json);
-    } else if (t.equals("Practitioner")) {
-      return parsePractitioner(json);
-    } else if (t.equals("PractitionerRole")) {
-      return parsePractitionerRole(json);
-    } else if (t.equals("Procedure")) {
-      return parseProcedure(json);
-    } else if (t.equals("Provenance")) {
-      return parseProvenance(json);
-    } else if (t.equals("Questionnaire")) {
-      return parseQuestionnaire(json);
-    } else if (t.equals("QuestionnaireResponse")) {
-      return parseQuestionnaireResponse(json);
-    } else if (t.equals("RegulatedAuthorization")) {
-      return parseRegulatedAuthorization(json);
-    } else if (t.equals("RelatedPerson")) {
-      return parseRelatedPerson(json);
-    } else if (t.equals("RequestGroup")) {
-      return parseRequestGroup(json);
-    } else if (t.equals("ResearchDefinition")) {
-      return parseResearchDefinition(json);
-    } else if (t.equals("ResearchElementDefinition")) {
-      return parseResearchElementDefinition(json);
-    } else if (t.equals("ResearchStudy")) {
-      return parseResearchStudy(json);
-    } else if (t.equals("ResearchSubject")) {
-      return parseResearchSubject(json);
-    } else if (t.equals("RiskAssessment")) {
-      return parseRiskAssessment(json);
-    } else if (t.equals("Schedule")) {
-      return parseSchedule(json);
-    } else if (t.equals("SearchParameter")) {
-      return parseSearchParameter(json);
-    } else if (t.equals("ServiceRequest")) {
-      return parseServiceRequest(json);
-    } else if (t.equals("Slot")) {
-      return parseSlot(json);
-    } else if (t.equals("Specimen")) {
-      return parseSpecimen(json);
-    } else if (t.equals("SpecimenDefinition")) {
-      return parseSpecimenDefinition(json);
-    } else if (t.equals("StructureDefinition")) {
-      return parseStructureDefinition(json);
-    } else if (t.equals("StructureMap")) {
-      return parseStructureMap(json);
-    } else if (t.equals("Subscription")) {
-      return parseSubscription(json);
-    } else if (t.equals("SubscriptionStatus")) {
-      return parseSubscriptionStatus(json);
-    } else if (t.equals("SubscriptionTopic")) {
-      return parseSubscriptionTopic(json);
-    } else if (t.equals("Substance")) {
-      return parseSubstance(json);
-    } else if (t.equals("SubstanceDefinition")) {
-      return parseSubstanceDefinition(json);
-    } else if (t.equals("SupplyDelivery")) {
-      return parseSupplyDelivery(json);
-    } else if (t.equals("SupplyRequest")) {
-      return parseSupplyRequest(json);
-    } else if (t.equals("Task")) {
-      return parseTask(json);
-    } else if (t.equals("TerminologyCapabilities")) {
-      return parseTerminologyCapabilities(json);
-    } else if (t.equals("TestReport")) {
-      return parseTestReport(json);
-    } else if (t.equals("TestScript")) {
-      return parseTestScript(json);
-    } else if (t.equals("ValueSet")) {
-      return parseValueSet(json);
-    } else if (t.equals("VerificationResult")) {
-      return parseVerificationResult(json);
-    } else if (t.equals("VisionPrescription")) {
-      return parseVisionPrescription(json);
-
-    } else {
-      throw new FHIRFormatError("Unknown.Unrecognised resource type '" + t + "' (in property 'resourceType')");
+    }
+    switch (t) {
+      case "Account": return parseAccount(json);
+      case "ActivityDefinition": return parseActivityDefinition(json);
+      case "AdministrableProductDefinition": return parseAdministrableProductDefinition(json);
+      case "AdverseEvent": return parseAdverseEvent(json);
+      case "AllergyIntolerance": return parseAllergyIntolerance(json);
+      case "Appointment": return parseAppointment(json);
+      case "AppointmentResponse": return parseAppointmentResponse(json);
+      case "AuditEvent": return parseAuditEvent(json);
+      case "Basic": return parseBasic(json);
+      case "Binary": return parseBinary(json);
+      case "BiologicallyDerivedProduct": return parseBiologicallyDerivedProduct(json);
+      case "BodyStructure": return parseBodyStructure(json);
+      case "Bundle": return parseBundle(json);
+      case "CapabilityStatement": return parseCapabilityStatement(json);
+      case "CarePlan": return parseCarePlan(json);
+      case "CareTeam": return parseCareTeam(json);
+      case "CatalogEntry": return parseCatalogEntry(json);
+      case "ChargeItem": return parseChargeItem(json);
+      case "ChargeItemDefinition": return parseChargeItemDefinition(json);
+      case "Citation": return parseCitation(json);
+      case "Claim": return parseClaim(json);
+      case "ClaimResponse": return parseClaimResponse(json);
+      case "ClinicalImpression": return parseClinicalImpression(json);
+      case "ClinicalUseDefinition": return parseClinicalUseDefinition(json);
+      case "CodeSystem": return parseCodeSystem(json);
+      case "Communication": return parseCommunication(json);
+      case "CommunicationRequest": return parseCommunicationRequest(json);
+      case "CompartmentDefinition": return parseCompartmentDefinition(json);
+      case "Composition": return parseComposition(json);
+      case "ConceptMap": return parseConceptMap(json);
+      case "Condition": return parseCondition(json);
+      case "Consent": return parseConsent(json);
+      case "Contract": return parseContract(json);
+      case "Coverage": return parseCoverage(json);
+      case "CoverageEligibilityRequest": return parseCoverageEligibilityRequest(json);
+      case "CoverageEligibilityResponse": return parseCoverageEligibilityResponse(json);
+      case "DetectedIssue": return parseDetectedIssue(json);
+      case "Device": return parseDevice(json);
+      case "DeviceDefinition": return parseDeviceDefinition(json);
+      case "DeviceMetric": return parseDeviceMetric(json);
+      case "DeviceRequest": return parseDeviceRequest(json);
+      case "DeviceUseStatement": return parseDeviceUseStatement(json);
+      case "DiagnosticReport": return parseDiagnosticReport(json);
+      case "DocumentManifest": return parseDocumentManifest(json);
+      case "DocumentReference": return parseDocumentReference(json);
+      case "Encounter": return parseEncounter(json);
+      case "Endpoint": return parseEndpoint(json);
+      case "EnrollmentRequest": return parseEnrollmentRequest(json);
+      case "EnrollmentResponse": return parseEnrollmentResponse(json);
+      case "EpisodeOfCare": return parseEpisodeOfCare(json);
+      case "EventDefinition": return parseEventDefinition(json);
+      case "Evidence": return parseEvidence(json);
+      case "EvidenceReport": return parseEvidenceReport(json);
+      case "EvidenceVariable": return parseEvidenceVariable(json);
+      case "ExampleScenario": return parseExampleScenario(json);
+      case "ExplanationOfBenefit": return parseExplanationOfBenefit(json);
+      case "FamilyMemberHistory": return parseFamilyMemberHistory(json);
+      case "Flag": return parseFlag(json);
+      case "Goal": return parseGoal(json);
+      case "GraphDefinition": return parseGraphDefinition(json);
+      case "Group": return parseGroup(json);
+      case "GuidanceResponse": return parseGuidanceResponse(json);
+      case "HealthcareService": return parseHealthcareService(json);
+      case "ImagingStudy": return parseImagingStudy(json);
+      case "Immunization": return parseImmunization(json);
+      case "ImmunizationEvaluation": return parseImmunizationEvaluation(json);
+      case "ImmunizationRecommendation": return parseImmunizationRecommendation(json);
+      case "ImplementationGuide": return parseImplementationGuide(json);
+      case "Ingredient": return parseIngredient(json);
+      case "InsurancePlan": return parseInsurancePlan(json);
+      case "Invoice": return parseInvoice(json);
+      case "Library": return parseLibrary(json);
+      case "Linkage": return parseLinkage(json);
+      case "List": return parseListResource(json);
+      case "Location": return parseLocation(json);
+      case "ManufacturedItemDefinition": return parseManufacturedItemDefinition(json);
+      case "Measure": return parseMeasure(json);
+      case "MeasureReport": return parseMeasureReport(json);
+      case "Media": return parseMedia(json);
+      case "Medication": return parseMedication(json);
+      case "MedicationAdministration": return parseMedicationAdministration(json);
+      case "MedicationDispense": return parseMedicationDispense(json);
+      case "MedicationKnowledge": return parseMedicationKnowledge(json);
+      case "MedicationRequest": return parseMedicationRequest(json);
+      case "MedicationStatement": return parseMedicationStatement(json);
+      case "MedicinalProductDefinition": return parseMedicinalProductDefinition(json);
+      case "MessageDefinition": return parseMessageDefinition(json);
+      case "MessageHeader": return parseMessageHeader(json);
+      case "MolecularSequence": return parseMolecularSequence(json);
+      case "NamingSystem": return parseNamingSystem(json);
+      case "NutritionOrder": return parseNutritionOrder(json);
+      case "NutritionProduct": return parseNutritionProduct(json);
+      case "Observation": return parseObservation(json);
+      case "ObservationDefinition": return parseObservationDefinition(json);
+      case "OperationDefinition": return parseOperationDefinition(json);
+      case "OperationOutcome": return parseOperationOutcome(json);
+      case "Organization": return parseOrganization(json);
+      case "OrganizationAffiliation": return parseOrganizationAffiliation(json);
+      case "PackagedProductDefinition": return parsePackagedProductDefinition(json);
+      case "Parameters": return parseParameters(json);
+      case "Patient": return parsePatient(json);
+      case "PaymentNotice": return parsePaymentNotice(json);
+      case "PaymentReconciliation": return parsePaymentReconciliation(json);
+      case "Person": return parsePerson(json);
+      case "PlanDefinition": return parsePlanDefinition(json);
+      case "Practitioner": return parsePractitioner(json);
+      case "PractitionerRole": return parsePractitionerRole(json);
+      case "Procedure": return parseProcedure(json);
+      case "Provenance": return parseProvenance(json);
+      case "Questionnaire": return parseQuestionnaire(json);
+      case "QuestionnaireResponse": return parseQuestionnaireResponse(json);
+      case "RegulatedAuthorization": return parseRegulatedAuthorization(json);
+      case "RelatedPerson": return parseRelatedPerson(json);
+      case "RequestGroup": return parseRequestGroup(json);
+      case "ResearchDefinition": return parseResearchDefinition(json);
+      case "ResearchElementDefinition": return parseResearchElementDefinition(json);
+      case "ResearchStudy": return parseResearchStudy(json);
+      case "ResearchSubject": return parseResearchSubject(json);
+      case "RiskAssessment": return parseRiskAssessment(json);
+      case "Schedule": return parseSchedule(json);
+      case "SearchParameter": return parseSearchParameter(json);
+      case "ServiceRequest": return parseServiceRequest(json);
+      case "Slot": return parseSlot(json);
+      case "Specimen": return parseSpecimen(json);
+      case "SpecimenDefinition": return parseSpecimenDefinition(json);
+      case "StructureDefinition": return parseStructureDefinition(json);
+      case "StructureMap": return parseStructureMap(json);
+      case "Subscription": return parseSubscription(json);
+      case "SubscriptionStatus": return parseSubscriptionStatus(json);
+      case "SubscriptionTopic": return parseSubscriptionTopic(json);
+      case "Substance": return parseSubstance(json);
+      case "SubstanceDefinition": return parseSubstanceDefinition(json);
+      case "SupplyDelivery": return parseSupplyDelivery(json);
+      case "SupplyRequest": return parseSupplyRequest(json);
+      case "Task": return parseTask(json);
+      case "TerminologyCapabilities": return parseTerminologyCapabilities(json);
+      case "TestReport": return parseTestReport(json);
+      case "TestScript": return parseTestScript(json);
+      case "ValueSet": return parseValueSet(json);
+      case "VerificationResult": return parseVerificationResult(json);
+      case "VisionPrescription": return parseVisionPrescription(json);
+      default: throw new FHIRFormatError("Unknown.Unrecognised resource type '" + t + "' (in property 'resourceType')");
     }
   }
 
@@ -32661,89 +32520,49 @@ public class JsonParser extends JsonParserBase {
   protected DataType parseType(JsonObject json, String type) throws IOException, FHIRFormatError {
     if (Utilities.noString(type)) {
       throw new FHIRFormatError("Unable to parse type - type not specified");
-    } else if (type.equals("Address")) {
-      return parseAddress(json);
-    } else if (type.equals("Age")) {
-      return parseAge(json);
-    } else if (type.equals("Annotation")) {
-      return parseAnnotation(json);
-    } else if (type.equals("Attachment")) {
-      return parseAttachment(json);
-    } else if (type.equals("CodeableConcept")) {
-      return parseCodeableConcept(json);
-    } else if (type.equals("CodeableReference")) {
-      return parseCodeableReference(json);
-    } else if (type.equals("Coding")) {
-      return parseCoding(json);
-    } else if (type.equals("ContactDetail")) {
-      return parseContactDetail(json);
-    } else if (type.equals("ContactPoint")) {
-      return parseContactPoint(json);
-    } else if (type.equals("Contributor")) {
-      return parseContributor(json);
-    } else if (type.equals("Count")) {
-      return parseCount(json);
-    } else if (type.equals("DataRequirement")) {
-      return parseDataRequirement(json);
-    } else if (type.equals("Distance")) {
-      return parseDistance(json);
-    } else if (type.equals("Dosage")) {
-      return parseDosage(json);
-    } else if (type.equals("Duration")) {
-      return parseDuration(json);
-    } else if (type.equals("ElementDefinition")) {
-      return parseElementDefinition(json);
-    } else if (type.equals("Expression")) {
-      return parseExpression(json);
-    } else if (type.equals("Extension")) {
-      return parseExtension(json);
-    } else if (type.equals("HumanName")) {
-      return parseHumanName(json);
-    } else if (type.equals("Identifier")) {
-      return parseIdentifier(json);
-    } else if (type.equals("MarketingStatus")) {
-      return parseMarketingStatus(json);
-    } else if (type.equals("Meta")) {
-      return parseMeta(json);
-    } else if (type.equals("Money")) {
-      return parseMoney(json);
-    } else if (type.equals("Narrative")) {
-      return parseNarrative(json);
-    } else if (type.equals("ParameterDefinition")) {
-      return parseParameterDefinition(json);
-    } else if (type.equals("Period")) {
-      return parsePeriod(json);
-    } else if (type.equals("Population")) {
-      return parsePopulation(json);
-    } else if (type.equals("ProdCharacteristic")) {
-      return parseProdCharacteristic(json);
-    } else if (type.equals("ProductShelfLife")) {
-      return parseProductShelfLife(json);
-    } else if (type.equals("Quantity")) {
-      return parseQuantity(json);
-    } else if (type.equals("Range")) {
-      return parseRange(json);
-    } else if (type.equals("Ratio")) {
-      return parseRatio(json);
-    } else if (type.equals("RatioRange")) {
-      return parseRatioRange(json);
-    } else if (type.equals("Reference")) {
-      return parseReference(json);
-    } else if (type.equals("RelatedArtifact")) {
-      return parseRelatedArtifact(json);
-    } else if (type.equals("SampledData")) {
-      return parseSampledData(json);
-    } else if (type.equals("Signature")) {
-      return parseSignature(json);
-    } else if (type.equals("Timing")) {
-      return parseTiming(json);
-    } else if (type.equals("TriggerDefinition")) {
-      return parseTriggerDefinition(json);
-    } else if (type.equals("UsageContext")) {
-      return parseUsageContext(json);
-
-    } else {
-      throw new FHIRFormatError("Unknown Type " + type);
+    }
+    switch (type) {
+      case "Address": return parseAddress(json);
+      case "Age": return parseAge(json);
+      case "Annotation": return parseAnnotation(json);
+      case "Attachment": return parseAttachment(json);
+      case "CodeableConcept": return parseCodeableConcept(json);
+      case "CodeableReference": return parseCodeableReference(json);
+      case "Coding": return parseCoding(json);
+      case "ContactDetail": return parseContactDetail(json);
+      case "ContactPoint": return parseContactPoint(json);
+      case "Contributor": return parseContributor(json);
+      case "Count": return parseCount(json);
+      case "DataRequirement": return parseDataRequirement(json);
+      case "Distance": return parseDistance(json);
+      case "Dosage": return parseDosage(json);
+      case "Duration": return parseDuration(json);
+      case "ElementDefinition": return parseElementDefinition(json);
+      case "Expression": return parseExpression(json);
+      case "Extension": return parseExtension(json);
+      case "HumanName": return parseHumanName(json);
+      case "Identifier": return parseIdentifier(json);
+      case "MarketingStatus": return parseMarketingStatus(json);
+      case "Meta": return parseMeta(json);
+      case "Money": return parseMoney(json);
+      case "Narrative": return parseNarrative(json);
+      case "ParameterDefinition": return parseParameterDefinition(json);
+      case "Period": return parsePeriod(json);
+      case "Population": return parsePopulation(json);
+      case "ProdCharacteristic": return parseProdCharacteristic(json);
+      case "ProductShelfLife": return parseProductShelfLife(json);
+      case "Quantity": return parseQuantity(json);
+      case "Range": return parseRange(json);
+      case "Ratio": return parseRatio(json);
+      case "RatioRange": return parseRatioRange(json);
+      case "Reference": return parseReference(json);
+      case "RelatedArtifact": return parseRelatedArtifact(json);
+      case "SampledData": return parseSampledData(json);
+      case "Signature": return parseSignature(json);
+      case "Timing": return parseTiming(json);
+      case "TriggerDefinition": return parseTriggerDefinition(json);
+      case "UsageContext": return parseUsageContext(json);
+      default: throw new FHIRFormatError("Unknown Type " + type);
     }
   }
 
@@ -517,6 +517,11 @@ public class ProfileUtilities {
         throw new DefinitionException("unable to process contentReference '"+element.getContentReference()+"' on element '"+element.getId()+"'");
       }
         
+      SnapshotIndex index = snapshotIndex(src);
+      ElementDefinition target = index == null ? null : index.getById(id);
+      if (target != null) {
+        return getChildMap(src, target);
+      }
       for (ElementDefinition e : list) {
         if (id.equals(e.getId()))
           return getChildMap(src, e);
@@ -524,17 +529,21 @@ public class ProfileUtilities {
       throw new DefinitionException(context.formatMessage(I18nConstants.UNABLE_TO_RESOLVE_NAME_REFERENCE__AT_PATH_, element.getContentReference(), element.getPath()));
 
     } else {
-      List<ElementDefinition> res = new ArrayList<ElementDefinition>();
-      List<ElementDefinition> elements = profile.getSnapshot().getElement();
-      String path = element.getPath();
-      for (int index = elements.indexOf(element) + 1; index < elements.size(); index++) {
-        ElementDefinition e = elements.get(index);
-        if (e.getPath().startsWith(path + ".")) {
-          // We only want direct children, not all descendants
-          if (!e.getPath().substring(path.length()+1).contains("."))
-            res.add(e);
-        } else
-          break;
+      SnapshotIndex snapshotIndex = snapshotIndex(profile);
+      List<ElementDefinition> res = snapshotIndex == null ? null : snapshotIndex.getChildMap(element);
+      if (res == null) {
+        res = new ArrayList<ElementDefinition>();
+        List<ElementDefinition> elements = profile.getSnapshot().getElement();
+        String path = element.getPath();
+        for (int index = elements.indexOf(element) + 1; index < elements.size(); index++) {
+          ElementDefinition e = elements.get(index);
+          if (e.getPath().startsWith(path + ".")) {
+            // We only want direct children, not all descendants
+            if (!e.getPath().substring(path.length()+1).contains("."))
+              res.add(e);
+          } else
+            break;
+        }
       }
       SourcedChildDefinitions result  = new SourcedChildDefinitions(src, res);
       childMapCache.put(cacheKey, result);
@@ -547,7 +556,12 @@ public class ProfileUtilities {
     if (!element.hasSlicing())
       throw new Error(context.formatMessage(I18nConstants.GETSLICELIST_SHOULD_ONLY_BE_CALLED_WHEN_THE_ELEMENT_HAS_SLICING));
 
-    List<ElementDefinition> res = new ArrayList<ElementDefinition>();
+    SnapshotIndex snapshotIndex = snapshotIndex(profile);
+    List<ElementDefinition> res = snapshotIndex == null ? null : snapshotIndex.getSliceList(element);
+    if (res != null) {
+      return res;
+    }
+    res = new ArrayList<ElementDefinition>();
     List<ElementDefinition> elements = profile.getSnapshot().getElement();
     String path = element.getPath();
     for (int index = elements.indexOf(element) + 1; index < elements.size(); index++) {
@@ -579,6 +593,13 @@ public class ProfileUtilities {
   }
   
   public List<ElementDefinition> getChildList(StructureDefinition profile, String path, String id, boolean diff, boolean refs) {
+    if (!diff && !refs) {
+      SnapshotIndex index = snapshotIndex(profile);
+      List<ElementDefinition> res = index == null ? null : index.getChildList(path, id);
+      if (res != null) {
+        return res;
+      }
+    }
     List<ElementDefinition> res = new ArrayList<ElementDefinition>();
 
     boolean capturing = id==null;
@@ -641,12 +662,16 @@ public class ProfileUtilities {
 
   public List<ElementDefinition> getChildList(StructureDefinition structure, ElementDefinition element) {
     if (element.hasContentReference()) {
-      ElementDefinition target = element;
-      for (ElementDefinition t : structure.getSnapshot().getElement()) {
-        if (t.getId().equals(element.getContentReference().substring(1))) {
-          target = t;
+      SnapshotIndex index = snapshotIndex(structure);
+      ElementDefinition target = index == null ? null : index.getById(element.getContentReference().substring(1));
+      if (target == null) {
+        target = element;
+        for (ElementDefinition t : structure.getSnapshot().getElement()) {
+          if (t.getId().equals(element.getContentReference().substring(1))) {
+            target = t;
+          }
         }
-      }      
+      }
       return getChildList(structure, target.getPath(), target.getId(), false);
     } else {
       return getChildList(structure, element.getPath(), element.getId(), false);
@@ -703,6 +728,7 @@ public class ProfileUtilities {
       throw new DefinitionException(context.formatMessage(I18nConstants.CIRCULAR_SNAPSHOT_REFERENCES_DETECTED_CANNOT_GENERATE_SNAPSHOT_STACK__, snapshotStack.toString()));
     }
     derived.setUserData("profileutils.snapshot.generating", true);
+    SnapshotIndex.clear(derived);
     snapshotStack.add(derived.getUrl());
     try {
 
@@ -965,6 +991,7 @@ public class ProfileUtilities {
       }
     } finally {
       derived.clearUserData("profileutils.snapshot.generating");
+      SnapshotIndex.clear(derived);
       snapshotStack.remove(derived.getUrl());
     }
     derived.setUserData("profileutils.snapshot.generated", true); // used by the publisher
@@ -1482,6 +1509,17 @@ public class ProfileUtilities {
     return sd.hasUserData("profileutils.snapshot.generating");
   }
 
+  /**
+   * The index of the snapshot of the structure, if it can be used: snapshots that are still being
+   * generated change all the time, so they're scanned instead
+   */
+  private SnapshotIndex snapshotIndex(StructureDefinition sd) {
+    if (sd == null || isGenerating(sd)) {
+      return null;
+    }
+    return SnapshotIndex.forSnapshot(sd);
+  }
+
 
   protected void checkNotGenerating(StructureDefinition sd, String role) {
     if (sd.hasUserData("profileutils.snapshot.generating")) {
@@ -3869,6 +3907,7 @@ public class ProfileUtilities {
       if (!sd.hasSnapshot())
         sd.setSnapshot(new StructureDefinitionSnapshotComponent());
       generateIds(sd.getSnapshot().getElement(), sd.getUrl(), sd.getType(), sd);
+      SnapshotIndex.clear(sd);
     }
   }
 
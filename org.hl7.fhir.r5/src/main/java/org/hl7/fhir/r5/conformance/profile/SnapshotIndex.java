@@ -0,0 +1,266 @@
+package org.hl7.fhir.r5.conformance.profile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hl7.fhir.r5.model.ElementDefinition;
+import org.hl7.fhir.r5.model.StructureDefinition;
+
+/**
+ * An immutable index of the snapshot of a StructureDefinition, so that ProfileUtilities can find the
+ * children and slices of an element without scanning the whole snapshot each time.
+ *
+ * The index is built once per snapshot and kept by the StructureDefinition (in a field of its own, not
+ * the user data, since structures are read by validators on several threads at once). It remembers
+ * the element list it was built from, and how big it was; if the snapshot is replaced, or
+ * elements are added or removed, a new index is built the next time it's asked for. Code that changes
+ * the path or id of elements in a snapshot in place should call clear() afterwards
+ *
+ * The answers are the same as the linear scans in ProfileUtilities give, for snapshots where the
+ * element ids are unique; snapshots with missing or duplicate ids aren't indexed
+ */
+public class SnapshotIndex {
+
+  private static final int[] NONE = new int[0];
+
+  private final List<ElementDefinition> source;
+  private final int size;
+  private final ElementDefinition[] elements;
+  private final String[] paths;
+  private final String[] ids;
+  private final Map<String, Integer> byId;
+  private final Map<ElementDefinition, Integer> byElement;
+  // positions, in snapshot order
+  private final Map<String, int[]> byPath;
+  private final Map<String, int[]> byParentPath;
+  // for each element: its direct children, up to the next element with the same path (same as getChildList)
+  private final int[][] children;
+  // for each element: where its descendants stop (same as getChildMap)
+  private final int[] subtreeEnd;
+  // for each element: where elements with the same path, and their descendants, stop (same as getSliceList)
+  private final int[] groupEnd;
+
+  private SnapshotIndex(List<ElementDefinition> source, Map<String, Integer> byId) {
+    this.source = source;
+    this.size = source.size();
+    this.byId = byId;
+    elements = source.toArray(new ElementDefinition[size]);
+    paths = new String[size];
+    ids = new String[size];
+    byElement = new IdentityHashMap<>(size);
+    for (int i = 0; i < size; i++) {
+      paths[i] = elements[i].getPath();
+      ids[i] = elements[i].getId();
+      byElement.put(elements[i], i);
+    }
+
+    Map<String, List<Integer>> pathLists = new HashMap<>();
+    Map<String, List<Integer>> parentLists = new HashMap<>();
+    Map<String, Integer> lastByPath = new HashMap<>();
+    List<List<Integer>> childLists = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      childLists.add(null);
+      pathLists.computeIfAbsent(paths[i], k -> new ArrayList<>()).add(i);
+      String parent = parentPath(paths[i]);
+      if (parent != null) {
+        parentLists.computeIfAbsent(parent, k -> new ArrayList<>()).add(i);
+        // ids are unique, so getChildList stops at the next element with the same path as the parent;
+        // the last element before this one with the parent's path is the only one that can claim it
+        Integer owner = lastByPath.get(parent);
+        if (owner != null) {
+          if (childLists.get(owner) == null) {
+            childLists.set(owner, new ArrayList<>());
+          }
+          childLists.get(owner).add(i);
+        }
+      }
+      lastByPath.put(paths[i], i);
+    }
+    byPath = toArrays(pathLists);
+    byParentPath = toArrays(parentLists);
+    children = new int[size][];
+    for (int i = 0; i < size; i++) {
+      children[i] = toArray(childLists.get(i));
+    }
+
+    subtreeEnd = new int[size];
+    groupEnd = new int[size];
+    computeEnds(subtreeEnd, false);
+    computeEnds(groupEnd, true);
+  }
+
+  /**
+   * Get the index of the snapshot of the structure, building it if there isn't one, or the one there is
+   * is out of date. Returns null if the structure has no snapshot, or the snapshot can't be indexed
+   */
+  public static SnapshotIndex forSnapshot(StructureDefinition sd) {
+    if (!sd.hasSnapshot()) {
+      return null;
+    }
+    List<ElementDefinition> list = sd.getSnapshot().getElement();
+    Object existing = sd.getSnapshotIndex();
+    if (existing instanceof SnapshotIndex && ((SnapshotIndex) existing).isFor(list)) {
+      return (SnapshotIndex) existing;
+    }
+    // if two threads get here at once, they each build the same index, and one of them is kept
+    SnapshotIndex index = build(list);
+    sd.setSnapshotIndex(index);
+    return index;
+  }
+
+  /**
+   * Discard the index of the snapshot of the structure (if it has one)
+   */
+  public static void clear(StructureDefinition sd) {
+    sd.setSnapshotIndex(null);
+  }
+
+  private static SnapshotIndex build(List<ElementDefinition> list) {
+    Map<String, Integer> byId = new HashMap<>(list.size() * 2);
+    for (int i = 0; i < list.size(); i++) {
+      ElementDefinition e = list.get(i);
+      if (e == null || e.getId() == null || e.getPath() == null || byId.put(e.getId(), i) != null) {
+        return null;
+      }
+    }
+    return new SnapshotIndex(list, byId);
+  }
+
+  private boolean isFor(List<ElementDefinition> list) {
+    return list == source && list.size() == size;
+  }
+
+  /**
+   * @return the element with the given id, or null if there isn't one (or it has been changed since the index was built)
+   */
+  public ElementDefinition getById(String id) {
+    Integer i = byId.get(id);
+    return i == null || !isUnchanged(i) ? null : elements[i];
+  }
+
+  /**
+   * The direct children of the element with the given path and id, as ProfileUtilities.getChildList
+   * finds them in the snapshot: if id is null, all the elements that are direct children of the path,
+   * anywhere in the snapshot; otherwise the direct children that follow the element with the id, up to
+   * the next element with the same path.
+   *
+   * Returns null if the index can't answer the question (the element with the id doesn't have the path,
+   * or an element has been changed since the index was built)
+   */
+  public List<ElementDefinition> getChildList(String path, String id) {
+    if (id == null) {
+      return checked(byParentPath.getOrDefault(path, NONE), -1, Integer.MAX_VALUE);
+    }
+    Integer i = byId.get(id);
+    if (i == null) {
+      return new ArrayList<>();
+    }
+    if (!path.equals(paths[i]) || !isUnchanged(i)) {
+      return null;
+    }
+    return checked(children[i], i, Integer.MAX_VALUE);
+  }
+
+  /**
+   * The direct children of the element, as ProfileUtilities.getChildMap finds them: the direct
+   * children among the descendants that immediately follow the element.
+   *
+   * Returns null if the element isn't in the snapshot, or has been changed since the index was built
+   */
+  public List<ElementDefinition> getChildMap(ElementDefinition element) {
+    Integer i = byElement.get(element);
+    if (i == null || !isUnchanged(i)) {
+      return null;
+    }
+    return checked(children[i], i, subtreeEnd[i]);
+  }
+
+  /**
+   * The elements with the same path as the element that follow it before the path changes, as
+   * ProfileUtilities.getSliceList finds them.
+   *
+   * Returns null if the element isn't in the snapshot, or has been changed since the index was built
+   */
+  public List<ElementDefinition> getSliceList(ElementDefinition element) {
+    Integer i = byElement.get(element);
+    if (i == null || !isUnchanged(i)) {
+      return null;
+    }
+    return checked(byPath.get(paths[i]), i, groupEnd[i]);
+  }
+
+  private boolean isUnchanged(int i) {
+    return source.get(i) == elements[i] && paths[i].equals(elements[i].getPath()) && ids[i].equals(elements[i].getId());
+  }
+
+  /**
+   * Collect the elements at the positions that are after 'after' and before 'before', checking that
+   * they're still where they were, with the path they had, when the index was built
+   */
+  private List<ElementDefinition> checked(int[] positions, int after, int before) {
+    List<ElementDefinition> res = new ArrayList<>(positions.length);
+    for (int p : positions) {
+      if (p > after) {
+        if (p >= before) {
+          break;
+        }
+        if (!isUnchanged(p)) {
+          return null;
+        }
+        res.add(elements[p]);
+      }
+    }
+    return res;
+  }
+
+  /**
+   * For each element, find the first element after it that isn't a descendant of it (or, if
+   * sameToo, the first that doesn't have the same path and isn't a descendant of one that does).
+   * Elements still open on the stack each contain all the ones above them, so this is one pass
+   */
+  private void computeEnds(int[] ends, boolean sameToo) {
+    int[] stack = new int[size];
+    int top = 0;
+    for (int j = 0; j < size; j++) {
+      while (top > 0 && !contains(paths[stack[top-1]], paths[j], sameToo)) {
+        ends[stack[--top]] = j;
+      }
+      stack[top++] = j;
+    }
+    while (top > 0) {
+      ends[stack[--top]] = size;
+    }
+  }
+
+  private static boolean contains(String path, String other, boolean sameToo) {
+    return (sameToo && other.equals(path)) || (other.length() > path.length() && other.startsWith(path) && other.charAt(path.length()) == '.');
+  }
+
+  private static String parentPath(String path) {
+    int i = path.lastIndexOf('.');
+    return i == -1 ? null : path.substring(0, i);
+  }
+
+  private static Map<String, int[]> toArrays(Map<String, List<Integer>> lists) {
+    Map<String, int[]> res = new HashMap<>(lists.size() * 2);
+    for (Map.Entry<String, List<Integer>> e : lists.entrySet()) {
+      res.put(e.getKey(), toArray(e.getValue()));
+    }
+    return Collections.unmodifiableMap(res);
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    if (list == null) {
+      return NONE;
+    }
+    int[] res = new int[list.size()];
+    for (int i = 0; i < res.length; i++) {
+      res[i] = list.get(i);
+    }
+    return res;
+  }
+}
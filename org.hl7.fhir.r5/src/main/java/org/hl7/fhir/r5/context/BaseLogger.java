@@ -1,23 +1,33 @@
 package org.hl7.fhir.r5.context;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The last id is kept for each thread, since requests made on different threads at the same time
+ * are logged at the same time
+ */
 public class BaseLogger {
 
-  private int id = 0;
-  private String lastId;
+  private final AtomicInteger id = new AtomicInteger();
+  private final ThreadLocal<String> lastId = new ThreadLocal<>();
 
   
   public String getLastId() {
-    return lastId;
+    return lastId.get();
   }
 
   protected String nextId() {
-    id++;
-    lastId = Integer.toString(id);
-    return lastId;
+    String res = Integer.toString(id.incrementAndGet());
+    lastId.set(res);
+    return res;
   }
   
   public void clearLastId() {
-    lastId = null;    
+    lastId.remove();    
+  }
+
+  public void setLastId(String id) {
+    lastId.set(id);
   }
   
 }
@@ -44,11 +44,13 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
@@ -115,6 +117,8 @@ import org.hl7.fhir.r5.model.ValueSet.ValueSetComposeComponent;
 import org.hl7.fhir.r5.profilemodel.PEBuilder.PEElementPropertiesPolicy;
 import org.hl7.fhir.r5.profilemodel.PEBuilder;
 import org.hl7.fhir.r5.renderers.OperationOutcomeRenderer;
+import org.hl7.fhir.r5.terminologies.CodeSystemConceptIndex;
+import org.hl7.fhir.r5.terminologies.ConceptMapIndex;
 import org.hl7.fhir.r5.terminologies.CodeSystemUtilities;
 import org.hl7.fhir.r5.terminologies.expansion.ValueSetExpander;
 import org.hl7.fhir.r5.terminologies.expansion.ValueSetExpansionOutcome;
@@ -130,6 +134,7 @@ import org.hl7.fhir.r5.terminologies.utilities.TerminologyCache.SourcedValueSet;
 import org.hl7.fhir.r5.terminologies.validation.VSCheckerException;
 import org.hl7.fhir.r5.terminologies.validation.ValueSetValidator;
 import org.hl7.fhir.r5.terminologies.ValueSetUtilities;
+import org.hl7.fhir.r5.terminologies.client.AsyncTerminologyClient;
 import org.hl7.fhir.r5.terminologies.client.TerminologyClientManager;
 import org.hl7.fhir.r5.terminologies.client.TerminologyClientR5;
 import org.hl7.fhir.r5.terminologies.client.TerminologyClientContext;
@@ -239,7 +244,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
   protected final TerminologyClientManager terminologyClientManager = new TerminologyClientManager(new TerminologyClientR5.TerminologyClientR5Factory(), UUID.randomUUID().toString());
   private boolean minimalMemory = false;
 
-  private Map<String, Map<String, ResourceProxy>> allResourcesById = new HashMap<String, Map<String, ResourceProxy>>();
+  private LayeredMap<String, LayeredMap<String, ResourceProxy>> allResourcesById = new LayeredMap<>();
   // all maps are to the full URI
   private CanonicalResourceManager<CodeSystem> codeSystems = new CanonicalResourceManager<CodeSystem>(false, minimalMemory);
   private final Set<String> supportedCodeSystems = new HashSet<String>();
@@ -264,11 +269,11 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
 
   
   private UcumService ucumService;
-  protected Map<String, byte[]> binaries = new HashMap<String, byte[]>();
+  protected LayeredMap<String, byte[]> binaries = new LayeredMap<>();
   protected Map<String, Set<OIDDefinition>> oidCacheManual = new HashMap<>();
   protected List<OIDSource> oidSources = new ArrayList<>();
 
-  protected Map<String, Map<String, ValidationResult>> validationCache = new HashMap<String, Map<String,ValidationResult>>();
+  protected LayeredMap<String, Map<String, ValidationResult>> validationCache = new LayeredMap<>();
   protected String name;
   private boolean allowLoadingDuplicates;
 
@@ -277,6 +282,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
   protected boolean canRunWithoutTerminology;
   protected boolean noTerminologyServer;
   private int expandCodesLimit = 1000;
+  private boolean streamingExpansions;
   protected org.hl7.fhir.r5.context.ILoggingService logger = new SystemOutLoggingService();
   protected Parameters expParameters;
   private Map<String, PackageInformation> packages = new HashMap<>();
@@ -312,13 +318,13 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
 
   protected void copy(BaseWorkerContext other) {
     synchronized (other.lock) { // tricky, because you need to lock this as well, but it's really not in use yet 
-      allResourcesById.putAll(other.allResourcesById);
+      allResourcesById.copy(other.allResourcesById);
       codeSystems.copy(other.codeSystems);
       valueSets.copy(other.valueSets);
       maps.copy(other.maps);
       transforms.copy(other.transforms);
       structures.copy(other.structures);
-      typeManager = new TypeManager(structures);
+      typeManager = new TypeManager(structures, other.typeManager);
       searchParameters.copy(other.searchParameters);
       plans.copy(other.plans);
       questionnaires.copy(other.questionnaires);
@@ -328,7 +334,9 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
       guides.copy(other.guides);
       capstmts.copy(other.capstmts);
       measures.copy(other.measures);
-      libraries.copy(libraries);
+      libraries.copy(other.libraries);
+      actors.copy(other.actors);
+      requirements.copy(other.requirements);
 
       allowLoadingDuplicates = other.allowLoadingDuplicates;
       name = other.name;
@@ -338,6 +346,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
       if (other.txCache != null)
         txCache = other.txCache; // no copy. for now?
       expandCodesLimit = other.expandCodesLimit;
+      streamingExpansions = other.streamingExpansions;
       logger = other.logger;
       expParameters = other.expParameters;
       version = other.version;
@@ -345,10 +354,10 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
       unsupportedCodeSystems.addAll(other.unsupportedCodeSystems);
       codeSystemsUsed.addAll(other.codeSystemsUsed);
       ucumService = other.ucumService;
-      binaries.putAll(other.binaries);
+      binaries.copy(other.binaries);
       oidSources.addAll(other.oidSources);
       oidCacheManual.putAll(other.oidCacheManual);
-      validationCache.putAll(other.validationCache);
+      validationCache.copy(other.validationCache);
       tlogging = other.tlogging;
       locator = other.locator;
       userAgent = other.userAgent;
@@ -356,7 +365,19 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
       cachingAllowed = other.cachingAllowed;
     }
   }
-  
+
+  /**
+   * the resources of the type, in a map that belongs to this context. After a copy, the maps
+   * are in the frozen layer that is shared with the other context, so they mustn't be changed
+   */
+  private Map<String, ResourceProxy> resourcesForUpdate(String type) {
+    LayeredMap<String, ResourceProxy> map = allResourcesById.get(type);
+    if (map == null || !allResourcesById.isLocal(type)) {
+      map = map == null ? new LayeredMap<>() : new LayeredMap<>(map);
+      allResourcesById.put(type, map);
+    }
+    return map;
+  }
   
   public void cacheResource(Resource r) throws FHIRException {
     cacheResourceFromPackage(r, null);  
@@ -371,11 +392,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
         packages.put(packageInfo.getVID(), packageInfo);
       }
       if (r.getId() != null) {
-        Map<String, ResourceProxy> map = allResourcesById.get(r.getType());
-        if (map == null) {
-          map = new HashMap<String, ResourceProxy>();
-          allResourcesById.put(r.getType(), map);
-        }
+        Map<String, ResourceProxy> map = resourcesForUpdate(r.getType());
         if ((packageInfo == null || !packageInfo.isExamplesPackage()) || !map.containsKey(r.getId())) {
           map.put(r.getId(), new ResourceProxy(r));
         }
@@ -457,11 +474,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
       }
 
       if (r.getId() != null) {
-        Map<String, ResourceProxy> map = allResourcesById.get(r.fhirType());
-        if (map == null) {
-          map = new HashMap<String, ResourceProxy>();
-          allResourcesById.put(r.fhirType(), map);
-        }
+        Map<String, ResourceProxy> map = resourcesForUpdate(r.fhirType());
         if ((packageInfo == null || !packageInfo.isExamplesPackage()) || !map.containsKey(r.getId())) {
           map.put(r.getId(), new ResourceProxy(r));
         } else {
@@ -526,6 +539,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
         } else if (r instanceof ValueSet) {
           valueSets.see((ValueSet) m, packageInfo);
         } else if (r instanceof CodeSystem) {
+          CodeSystemConceptIndex.clear((CodeSystem) r);
           CodeSystemUtilities.crossLinkCodeSystem((CodeSystem) r);
           codeSystems.see((CodeSystem) m, packageInfo);
         } else if (r instanceof ImplementationGuide) {
@@ -545,6 +559,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
         } else if (r instanceof Questionnaire) {
           questionnaires.see((Questionnaire) m, packageInfo);
         } else if (r instanceof ConceptMap) {
+          conceptMapIndexes.remove(m.getVersionedUrl());
           maps.see((ConceptMap) m, packageInfo);
         } else if (r instanceof StructureMap) {
           transforms.see((StructureMap) m, packageInfo);
@@ -884,7 +899,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
     }
 
     try {
-      ValueSet result = tc.getClient().expandValueset(vs, p);
+      ValueSet result = awaitTx(tc.getAsyncClient().expandValueset(vs, p));
       res = new ValueSetExpansionOutcome(result).setTxLink(txLog.getLastId());  
     } catch (Exception e) {
       res = new ValueSetExpansionOutcome(e.getMessage() == null ? e.getClass().getName() : e.getMessage(), TerminologyServiceErrorClass.UNKNOWN, true);
@@ -1000,7 +1015,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
     txLog("$expand on "+txCache.summary(vs)+" on "+tc.getAddress());
     
     try {
-      ValueSet result = tc.getClient().expandValueset(vs, p);
+      ValueSet result = awaitTx(tc.getAsyncClient().expandValueset(vs, p));
       if (result != null) {
         if (!result.hasUrl()) {
           result.setUrl(vs.getUrl());
@@ -1141,15 +1156,136 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
     }    
   }
 
+  /**
+   * Each code is checked in the cache and then locally exactly as validateCode would check it. The codes that
+   * need the server are sent in one batch per server, and the results are built from the responses the same
+   * way that validateCode builds them, so it doesn't matter which of the two put a result in the cache. 
+   * Any code that the batch doesn't get an answer for is sent to the server on its own  
+   * 
+   * The batches for the different servers are all sent before any of the responses are waited for, 
+   * and so are the codes that are sent on their own, so they are made in parallel when the servers
+   * allow more than one request at once (see TerminologyClientManager.setMaxConcurrentRequests)
+   */
+  @Override
+  public void prefetchValidateCode(ValidationOptions options, List<? extends CodingValidationRequest> codes, ValueSet vs) {
+    if (options == null) {
+      options = ValidationOptions.defaults();
+    }
+    Map<TerminologyClientContext, List<PendingValidation>> todo = new LinkedHashMap<>();
+    for (CodingValidationRequest t : codes) {
+      ValueSet v = vs == null ? t.getVsObj() : vs;
+      PendingValidation pv = t.isCodeableConcept() ? startValidation(options, t.getCodeableConcept(), v) : startValidation(options, "Coding", t.getCoding(), v, new ValidationContextCarrier());
+      t.setCacheToken(pv.cacheToken);
+      if (pv.result != null) {
+        t.setResult(pv.result);
+      } else {
+        pv.request = t;
+        todo.computeIfAbsent(pv.tc, k -> new ArrayList<>()).add(pv);
+      }
+    }
+    List<ServerBatch> batches = new ArrayList<>();
+    for (Map.Entry<TerminologyClientContext, List<PendingValidation>> e : todo.entrySet()) {
+      ServerBatch sb = sendToServer(e.getKey(), e.getValue());
+      if (sb != null) {
+        batches.add(sb);
+      }
+    }
+    for (ServerBatch sb : batches) {
+      finishOnServer(sb);
+    }
+  }
+
+  private static class ServerBatch {
+    private TerminologyClientContext tc;
+    private List<PendingValidation> sent = new ArrayList<>();
+    private AsyncTerminologyClient.Request<Bundle> response;
+  }
+
+  private ServerBatch sendToServer(TerminologyClientContext tc, List<PendingValidation> list) {
+    ServerBatch sb = new ServerBatch();
+    sb.tc = tc;
+    Bundle batch = new Bundle();
+    batch.setType(BundleType.BATCH);
+    Set<String> systems = new HashSet<>();
+    for (PendingValidation pv : list) {
+      try {
+        prepareServerValidation(tc, pv.vs, pv.pIn, pv.options);
+      } catch (Exception e) {
+        pv.request.setResult(finishValidation(pv, serverError(pv, e)));
+        continue;
+      }
+      BundleEntryComponent be = batch.addEntry();
+      be.setResource(pv.pIn);
+      be.getRequest().setMethod(HTTPVerb.POST);
+      be.getRequest().setUrl(pv.vs == null ? "CodeSystem/$validate-code" : "ValueSet/$validate-code");
+      systems.addAll(pv.systems);
+      sb.sent.add(pv);
+    }
+    if (sb.sent.isEmpty()) {
+      return null;
+    }
+    try {
+      sb.response = sendBatch(tc, batch, systems);
+    } catch (Exception e) {
+      // the codes are sent one at a time instead
+    }
+    return sb;
+  }
+
+  private void finishOnServer(ServerBatch sb) {
+    Bundle resp = null;
+    try {
+      if (sb.response != null) {
+        resp = finishBatch(sb.response);
+      }
+    } catch (Exception e) {
+      // the codes are sent one at a time instead
+    }
+    // the results from the batch are processed first, while the tx log still has the batch's id
+    List<AsyncTerminologyClient.Request<Parameters>> singles = new ArrayList<>();
+    for (int i = 0; i < sb.sent.size(); i++) {
+      PendingValidation pv = sb.sent.get(i);
+      singles.add(null);
+      try {
+        BundleEntryComponent r = resp != null && i < resp.getEntry().size() ? resp.getEntry().get(i) : null;
+        if (r != null && r.getResource() instanceof Parameters) {
+          ValidationResult res = processValidationResult((Parameters) r.getResource(), pv.vs == null ? null : pv.vs.getUrl(), sb.tc.getClient().getAddress());
+          pv.request.setResult(finishValidation(pv, res));
+        } else {
+          singles.set(i, sendValidateCode(sb.tc, pv.vs, pv.pIn));
+        }
+      } catch (Exception e) {
+        pv.request.setResult(finishValidation(pv, serverError(pv, e)));
+      }
+    }
+    for (int i = 0; i < sb.sent.size(); i++) {
+      if (singles.get(i) != null) {
+        PendingValidation pv = sb.sent.get(i);
+        ValidationResult res;
+        try {
+          res = finishValidateCode(sb.tc, pv.vs, singles.get(i));
+        } catch (Exception e) {
+          res = serverError(pv, e);
+        }
+        pv.request.setResult(finishValidation(pv, res));
+      }
+    }
+  }
+
   private Bundle processBatch(TerminologyClientContext tc, Bundle batch, Set<String> systems) {
+    return finishBatch(sendBatch(tc, batch, systems));
+  }
+
+  private AsyncTerminologyClient.Request<Bundle> sendBatch(TerminologyClientContext tc, Bundle batch, Set<String> systems) {
     txLog("$batch validate for "+batch.getEntry().size()+" codes on systems "+systems.toString());
     if (terminologyClientManager == null) {
       throw new FHIRException(formatMessage(I18nConstants.ATTEMPT_TO_USE_TERMINOLOGY_SERVER_WHEN_NO_TERMINOLOGY_SERVER_IS_AVAILABLE));
     }
-    if (txLog != null) {
-      txLog.clearLastId();
-    }
-    Bundle resp = tc.getClient().validateBatch(batch);
+    return tc.getAsyncClient().validateBatch(batch);
+  }
+
+  private Bundle finishBatch(AsyncTerminologyClient.Request<Bundle> request) {
+    Bundle resp = awaitTx(request);
     if (resp == null) {
       throw new FHIRException(formatMessage(I18nConstants.TX_SERVER_NO_BATCH_RESPONSE));          
     }
@@ -1279,26 +1415,75 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
   
     ValidationOptions options = optionsArg != null ? optionsArg : ValidationOptions.defaults();
     
+    PendingValidation pv = startValidation(options, path, code, vs, ctxt);
+    if (pv.result != null) {
+      return pv.result;
+    }
+    ValidationResult res;
+    try {
+      res = validateOnServer(pv.tc, vs, pv.pIn, options);
+    } catch (Exception e) {
+      res = serverError(pv, e);
+    }
+    return finishValidation(pv, res);
+  }
+
+  /**
+   * A $validate-code that the cache and the local check couldn't answer, on its way to the server. 
+   * validateCode and prefetchValidateCode both go through startValidation and finishValidation, so that
+   * they build the same result for the same code 
+   */
+  private static class PendingValidation {
+    private final ValidationOptions options;
+    private final Coding code;
+    private final CodeableConcept codeableConcept;
+    private final ValueSet vs;
+    private CacheToken cacheToken;
+    private ValidationResult result;
+    private List<OperationOutcomeIssueComponent> issues = new ArrayList<>();
+    private String localError;
+    private String localWarning;
+    private TerminologyServiceErrorClass type = TerminologyServiceErrorClass.UNKNOWN;
+    private Set<String> systems;
+    private TerminologyClientContext tc;
+    private Parameters pIn;
+    private CodingValidationRequest request;
+
+    private PendingValidation(ValidationOptions options, Coding code, CodeableConcept codeableConcept, ValueSet vs) {
+      this.options = options;
+      this.code = code;
+      this.codeableConcept = codeableConcept;
+      this.vs = vs;
+    }
+
+    private PendingValidation done(ValidationResult result) {
+      this.result = result;
+      return this;
+    }
+  }
+
+  /**
+   * @return the result, if the cache or the local check settles it. If not, the server and parameters to ask 
+   */
+  private PendingValidation startValidation(ValidationOptions options, String path, Coding code, ValueSet vs, ValidationContextCarrier ctxt) {
+    PendingValidation pv = new PendingValidation(options, code, null, vs);
     if (code.hasSystem()) {
       codeSystemsUsed.add(code.getSystem());
     }
 
-    final CacheToken cacheToken = cachingAllowed && txCache != null ? txCache.generateValidationToken(options, code, vs, expParameters) : null;
+    pv.cacheToken = cachingAllowed && txCache != null ? txCache.generateValidationToken(options, code, vs, expParameters) : null;
     ValidationResult res = null;
     if (cachingAllowed && txCache != null) {
-      res = txCache.getValidation(cacheToken);
+      res = txCache.getValidation(pv.cacheToken);
     }
     if (res != null) {
       updateUnsupportedCodeSystems(res, code, getCodeKey(code));
-      return res;
+      return pv.done(res);
     }
 
-    List<OperationOutcomeIssueComponent> issues = new ArrayList<>();
+    List<OperationOutcomeIssueComponent> issues = pv.issues;
     Set<String> unknownSystems = new HashSet<>();
     
-    String localError = null;
-    String localWarning = null;
-    TerminologyServiceErrorClass type = TerminologyServiceErrorClass.UNKNOWN;
     if (options.isUseClient()) {
       // ok, first we try to validate locally
       try {
@@ -1311,75 +1496,89 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
         if (!ValueSetUtilities.isServerSide(code.getSystem())) {
           res = vsc.validateCode(path, code.copy());
           if (txCache != null && cachingAllowed) {
-            txCache.cacheValidation(cacheToken, res, TerminologyCache.TRANSIENT);
+            txCache.cacheValidation(pv.cacheToken, res, TerminologyCache.TRANSIENT);
           }
-          return res;
+          return pv.done(res);
         }
       } catch (VSCheckerException e) {
         if (e.isWarning()) {
-          localWarning = e.getMessage();
+          pv.localWarning = e.getMessage();
         } else {  
-          localError = e.getMessage();
+          pv.localError = e.getMessage();
         }
         if (e.getIssues() != null) {
           issues.addAll(e.getIssues());
         }
-        type = e.getType();
+        pv.type = e.getType();
       } catch (TerminologyServiceProtectionException e) {
         OperationOutcomeIssueComponent iss = new OperationOutcomeIssueComponent(org.hl7.fhir.r5.model.OperationOutcome.IssueSeverity.ERROR, e.getType());
         iss.getDetails().setText(e.getMessage());
         issues.add(iss);
-        return new ValidationResult(IssueSeverity.FATAL, e.getMessage(), e.getError(), issues);
+        return pv.done(new ValidationResult(IssueSeverity.FATAL, e.getMessage(), e.getError(), issues));
       } catch (Exception e) {
 //        e.printStackTrace();
-        localError = e.getMessage();
+        pv.localError = e.getMessage();
       }
     }
+    String localError = pv.localError;
+    String localWarning = pv.localWarning;
     
     if (localError != null && !terminologyClientManager.hasClient()) {
       if (unknownSystems.size() > 0) {
-        return new ValidationResult(IssueSeverity.ERROR, localError, TerminologyServiceErrorClass.CODESYSTEM_UNSUPPORTED, issues).setUnknownSystems(unknownSystems);
+        return pv.done(new ValidationResult(IssueSeverity.ERROR, localError, TerminologyServiceErrorClass.CODESYSTEM_UNSUPPORTED, issues).setUnknownSystems(unknownSystems));
       } else {
-        return new ValidationResult(IssueSeverity.ERROR, localError, TerminologyServiceErrorClass.UNKNOWN, issues);
+        return pv.done(new ValidationResult(IssueSeverity.ERROR, localError, TerminologyServiceErrorClass.UNKNOWN, issues));
       }
     }
     if (localWarning != null && !terminologyClientManager.hasClient()) {
-      return new ValidationResult(IssueSeverity.WARNING,formatMessage(I18nConstants.UNABLE_TO_VALIDATE_CODE_WITHOUT_USING_SERVER, localWarning), TerminologyServiceErrorClass.BLOCKED_BY_OPTIONS, issues);       
+      return pv.done(new ValidationResult(IssueSeverity.WARNING,formatMessage(I18nConstants.UNABLE_TO_VALIDATE_CODE_WITHOUT_USING_SERVER, localWarning), TerminologyServiceErrorClass.BLOCKED_BY_OPTIONS, issues));       
     }
     if (!options.isUseServer()) {
       if (localWarning != null) {
-        return new ValidationResult(IssueSeverity.WARNING,formatMessage(I18nConstants.UNABLE_TO_VALIDATE_CODE_WITHOUT_USING_SERVER, localWarning), TerminologyServiceErrorClass.BLOCKED_BY_OPTIONS, issues);       
+        return pv.done(new ValidationResult(IssueSeverity.WARNING,formatMessage(I18nConstants.UNABLE_TO_VALIDATE_CODE_WITHOUT_USING_SERVER, localWarning), TerminologyServiceErrorClass.BLOCKED_BY_OPTIONS, issues));       
       } else {
-        return new ValidationResult(IssueSeverity.WARNING,formatMessage(I18nConstants.UNABLE_TO_VALIDATE_CODE_WITHOUT_USING_SERVER, localError), TerminologyServiceErrorClass.BLOCKED_BY_OPTIONS, issues);
+        return pv.done(new ValidationResult(IssueSeverity.WARNING,formatMessage(I18nConstants.UNABLE_TO_VALIDATE_CODE_WITHOUT_USING_SERVER, localError), TerminologyServiceErrorClass.BLOCKED_BY_OPTIONS, issues));
       }
     }
     String codeKey = getCodeKey(code);
     if (unsupportedCodeSystems.contains(codeKey)) {
-      return new ValidationResult(IssueSeverity.ERROR,formatMessage(I18nConstants.UNKNOWN_CODESYSTEM, code.getSystem()), TerminologyServiceErrorClass.CODESYSTEM_UNSUPPORTED, issues);      
+      return pv.done(new ValidationResult(IssueSeverity.ERROR,formatMessage(I18nConstants.UNKNOWN_CODESYSTEM, code.getSystem()), TerminologyServiceErrorClass.CODESYSTEM_UNSUPPORTED, issues));      
     }
     
     // if that failed, we try to validate on the server
     if (noTerminologyServer) {
-      return new ValidationResult(IssueSeverity.ERROR,formatMessage(I18nConstants.ERROR_VALIDATING_CODE_RUNNING_WITHOUT_TERMINOLOGY_SERVICES, code.getCode(), code.getSystem()), TerminologyServiceErrorClass.NOSERVICE, issues);
+      return pv.done(new ValidationResult(IssueSeverity.ERROR,formatMessage(I18nConstants.ERROR_VALIDATING_CODE_RUNNING_WITHOUT_TERMINOLOGY_SERVICES, code.getCode(), code.getSystem()), TerminologyServiceErrorClass.NOSERVICE, issues));
     }
 
-    Set<String> systems = findRelevantSystems(code, vs);
-    TerminologyClientContext tc = terminologyClientManager.chooseServer(vs, systems, false);
+    pv.systems = findRelevantSystems(code, vs);
+    pv.tc = terminologyClientManager.chooseServer(vs, pv.systems, false);
     
     String csumm = cachingAllowed && txCache != null ? txCache.summary(code) : null;
     if (cachingAllowed && txCache != null) {
-      txLog("$validate "+csumm+(vs == null ? "" : " for "+ txCache.summary(vs))+" on "+tc.getAddress());
+      txLog("$validate "+csumm+(vs == null ? "" : " for "+ txCache.summary(vs))+" on "+pv.tc.getAddress());
     } else {
-      txLog("$validate "+csumm+" before cache exists on "+tc.getAddress());
+      txLog("$validate "+csumm+" before cache exists on "+pv.tc.getAddress());
     }
-    try {
-      Parameters pIn = constructParameters(options, code);
-      res = validateOnServer(tc, vs, pIn, options);
-    } catch (Exception e) {
-      res = new ValidationResult(IssueSeverity.ERROR, e.getMessage() == null ? e.getClass().getName() : e.getMessage(), null).setTxLink(txLog == null ? null : txLog.getLastId()).setErrorClass(TerminologyServiceErrorClass.SERVER_ERROR);
+    pv.pIn = constructParameters(options, code);
+    return pv;
+  }
+
+  /**
+   * @return the result from the server, after it's been reconciled with the local check, and cached
+   */
+  private ValidationResult finishValidation(PendingValidation pv, ValidationResult res) {
+    if (pv.codeableConcept != null) {
+      if (cachingAllowed) {
+        txCache.cacheValidation(pv.cacheToken, res, TerminologyCache.PERMANENT);
+      }
+      return res;
     }
+    Coding code = pv.code;
+    String localError = pv.localError;
+    String localWarning = pv.localWarning;
+    String codeKey = getCodeKey(code);
     if (!res.isOk() && res.getErrorClass() == TerminologyServiceErrorClass.CODESYSTEM_UNSUPPORTED && (localError != null && !localError.equals(ValueSetValidator.NO_TRY_THE_SERVER))) {
-      res = new ValidationResult(IssueSeverity.ERROR, localError, null).setTxLink(txLog == null ? null : txLog.getLastId()).setErrorClass(type);
+      res = new ValidationResult(IssueSeverity.ERROR, localError, null).setTxLink(txLog == null ? null : txLog.getLastId()).setErrorClass(pv.type);
     } 
     if (!res.isOk() && localError != null) {
       res.setDiagnostics("Local Error: "+localError.trim()+". Server Error: "+res.getMessage());
@@ -1391,11 +1590,22 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
     }
     updateUnsupportedCodeSystems(res, code, codeKey);
     if (cachingAllowed && txCache != null) { // we never cache unsupported code systems - we always keep trying (but only once per run)
-      txCache.cacheValidation(cacheToken, res, TerminologyCache.PERMANENT);
+      txCache.cacheValidation(pv.cacheToken, res, TerminologyCache.PERMANENT);
     }
     return res;
   }
 
+  private ValidationResult serverError(PendingValidation pv, Exception e) {
+    if (pv.codeableConcept != null) {
+      pv.issues.clear();
+      OperationOutcomeIssueComponent iss = new OperationOutcomeIssueComponent(org.hl7.fhir.r5.model.OperationOutcome.IssueSeverity.ERROR, org.hl7.fhir.r5.model.OperationOutcome.IssueType.EXCEPTION);
+      iss.getDetails().setText(e.getMessage());
+      pv.issues.add(iss);
+      return new ValidationResult(IssueSeverity.ERROR, e.getMessage() == null ? e.getClass().getName() : e.getMessage(), pv.issues).setTxLink(txLog == null ? null : txLog.getLastId()).setErrorClass(TerminologyServiceErrorClass.SERVER_ERROR);
+    } else {
+      return new ValidationResult(IssueSeverity.ERROR, e.getMessage() == null ? e.getClass().getName() : e.getMessage(), null).setTxLink(txLog == null ? null : txLog.getLastId()).setErrorClass(TerminologyServiceErrorClass.SERVER_ERROR);
+    }
+  }
 
   /**
    * ask the terminology system whether parent subsumes child. 
@@ -1474,7 +1684,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
   }
 
   protected ValueSetExpander constructValueSetExpanderSimple(ValidationOptions options) {
-    return new ValueSetExpander(this, new TerminologyOperationContext(this, options, "expansion")).setDebug(logger.isDebugLogging());
+    return new ValueSetExpander(this, new TerminologyOperationContext(this, options, "expansion")).setDebug(logger.isDebugLogging()).setStreaming(streamingExpansions);
   }
 
   protected ValueSetValidator constructValueSetCheckerSimple(ValidationOptions options,  ValueSet vs,  ValidationContextCarrier ctxt) {
@@ -1568,12 +1778,27 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
 
   @Override
   public ValidationResult validateCode(ValidationOptions options, CodeableConcept code, ValueSet vs) {
-    CacheToken cacheToken = txCache.generateValidationToken(options, code, vs, expParameters);
+    PendingValidation pv = startValidation(options, code, vs);
+    if (pv.result != null) {
+      return pv.result;
+    }
+    ValidationResult res;
+    try {
+      res = validateOnServer(pv.tc, vs, pv.pIn, options);
+    } catch (Exception e) {
+      res = serverError(pv, e);
+    }
+    return finishValidation(pv, res);
+  }
+
+  private PendingValidation startValidation(ValidationOptions options, CodeableConcept code, ValueSet vs) {
+    PendingValidation pv = new PendingValidation(options, null, code, vs);
+    pv.cacheToken = txCache.generateValidationToken(options, code, vs, expParameters);
     ValidationResult res = null;
     if (cachingAllowed) {
-      res = txCache.getValidation(cacheToken);
+      res = txCache.getValidation(pv.cacheToken);
       if (res != null) {
-        return res;
+        return pv.done(res);
       }
     }
     for (Coding c : code.getCoding()) {
@@ -1583,10 +1808,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
     }
     Set<String> unknownSystems = new HashSet<>();
 
-    List<OperationOutcomeIssueComponent> issues = new ArrayList<>();
-    
-    String localError = null;
-    String localWarning = null;
+    List<OperationOutcomeIssueComponent> issues = pv.issues;
     
     if (options.isUseClient()) {
       // ok, first we try to validate locally
@@ -1596,14 +1818,14 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
         vsc.setThrowToServer(options.isUseServer() && terminologyClientManager.hasClient());
         res = vsc.validateCode("CodeableConcept", code);
         if (cachingAllowed) {
-          txCache.cacheValidation(cacheToken, res, TerminologyCache.TRANSIENT);
+          txCache.cacheValidation(pv.cacheToken, res, TerminologyCache.TRANSIENT);
         }
-        return res;
+        return pv.done(res);
       } catch (VSCheckerException e) {
         if (e.isWarning()) {
-          localWarning = e.getMessage();
+          pv.localWarning = e.getMessage();
         } else {  
-          localError = e.getMessage();
+          pv.localError = e.getMessage();
         }
         if (e.getIssues() != null) {
           issues.addAll(e.getIssues());
@@ -1612,50 +1834,38 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
         OperationOutcomeIssueComponent iss = new OperationOutcomeIssueComponent(org.hl7.fhir.r5.model.OperationOutcome.IssueSeverity.ERROR, e.getType());
         iss.getDetails().setText(e.getMessage());
         issues.add(iss);
-        return new ValidationResult(IssueSeverity.FATAL, e.getMessage(), e.getError(), issues);
+        return pv.done(new ValidationResult(IssueSeverity.FATAL, e.getMessage(), e.getError(), issues));
       } catch (Exception e) {
 //        e.printStackTrace();
-        localError = e.getMessage();
+        pv.localError = e.getMessage();
       }
     }
 
-    if (localError != null && !terminologyClientManager.hasClient()) {
+    if (pv.localError != null && !terminologyClientManager.hasClient()) {
       if (unknownSystems.size() > 0) {
-        return new ValidationResult(IssueSeverity.ERROR, localError, TerminologyServiceErrorClass.CODESYSTEM_UNSUPPORTED, issues).setUnknownSystems(unknownSystems);
+        return pv.done(new ValidationResult(IssueSeverity.ERROR, pv.localError, TerminologyServiceErrorClass.CODESYSTEM_UNSUPPORTED, issues).setUnknownSystems(unknownSystems));
       } else {
-        return new ValidationResult(IssueSeverity.ERROR, localError, TerminologyServiceErrorClass.UNKNOWN, issues);
+        return pv.done(new ValidationResult(IssueSeverity.ERROR, pv.localError, TerminologyServiceErrorClass.UNKNOWN, issues));
       }
     }
-    if (localWarning != null && !terminologyClientManager.hasClient()) {
-      return new ValidationResult(IssueSeverity.WARNING,formatMessage(I18nConstants.UNABLE_TO_VALIDATE_CODE_WITHOUT_USING_SERVER, localWarning), TerminologyServiceErrorClass.BLOCKED_BY_OPTIONS, issues);       
+    if (pv.localWarning != null && !terminologyClientManager.hasClient()) {
+      return pv.done(new ValidationResult(IssueSeverity.WARNING,formatMessage(I18nConstants.UNABLE_TO_VALIDATE_CODE_WITHOUT_USING_SERVER, pv.localWarning), TerminologyServiceErrorClass.BLOCKED_BY_OPTIONS, issues));       
     }
     
     if (!options.isUseServer()) {
-      return new ValidationResult(IssueSeverity.WARNING, "Unable to validate code without using server", TerminologyServiceErrorClass.BLOCKED_BY_OPTIONS, null);      
+      return pv.done(new ValidationResult(IssueSeverity.WARNING, "Unable to validate code without using server", TerminologyServiceErrorClass.BLOCKED_BY_OPTIONS, null));      
     }
     
     // if that failed, we try to validate on the server
     if (noTerminologyServer) {
-      return new ValidationResult(IssueSeverity.ERROR, "Error validating code: running without terminology services", TerminologyServiceErrorClass.NOSERVICE, null);
+      return pv.done(new ValidationResult(IssueSeverity.ERROR, "Error validating code: running without terminology services", TerminologyServiceErrorClass.NOSERVICE, null));
     }
-    Set<String> systems = findRelevantSystems(code, vs);
-    TerminologyClientContext tc = terminologyClientManager.chooseServer(vs, systems, false);
+    pv.systems = findRelevantSystems(code, vs);
+    pv.tc = terminologyClientManager.chooseServer(vs, pv.systems, false);
 
-    txLog("$validate "+txCache.summary(code)+" for "+ txCache.summary(vs)+" on "+tc.getAddress());
-    try {
-      Parameters pIn = constructParameters(options, code);
-      res = validateOnServer(tc, vs, pIn, options);
-    } catch (Exception e) {
-      issues.clear();
-      OperationOutcomeIssueComponent iss = new OperationOutcomeIssueComponent(org.hl7.fhir.r5.model.OperationOutcome.IssueSeverity.ERROR, org.hl7.fhir.r5.model.OperationOutcome.IssueType.EXCEPTION);
-      iss.getDetails().setText(e.getMessage());
-      issues.add(iss);
-      res = new ValidationResult(IssueSeverity.ERROR, e.getMessage() == null ? e.getClass().getName() : e.getMessage(), issues).setTxLink(txLog == null ? null : txLog.getLastId()).setErrorClass(TerminologyServiceErrorClass.SERVER_ERROR);
-    }
-    if (cachingAllowed) {
-      txCache.cacheValidation(cacheToken, res, TerminologyCache.PERMANENT);
-    }
-    return res;
+    txLog("$validate "+txCache.summary(code)+" for "+ txCache.summary(vs)+" on "+pv.tc.getAddress());
+    pv.pIn = constructParameters(options, code);
+    return pv;
   }
 
   private Set<String> findRelevantSystems(ValueSet vs) {
@@ -1726,7 +1936,11 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
   }
 
   protected ValidationResult validateOnServer(TerminologyClientContext tc, ValueSet vs, Parameters pin, ValidationOptions options) throws FHIRException {
+    prepareServerValidation(tc, vs, pin, options);
+    return callValidateCode(tc, vs, pin);
+  }
 
+  private void prepareServerValidation(TerminologyClientContext tc, ValueSet vs, Parameters pin, ValidationOptions options) {
     if (vs != null) {
       for (ConceptSetComponent inc : vs.getCompose().getInclude()) {
         codeSystemsUsed.add(inc.getSystem());
@@ -1737,22 +1951,45 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
     }
 
     addServerValidationParameters(tc, vs, pin, options);
+  }
+
+  private ValidationResult callValidateCode(TerminologyClientContext tc, ValueSet vs, Parameters pin) throws FHIRException {
+    return finishValidateCode(tc, vs, sendValidateCode(tc, vs, pin));
+  }
 
+  private AsyncTerminologyClient.Request<Parameters> sendValidateCode(TerminologyClientContext tc, ValueSet vs, Parameters pin) throws FHIRException {
     if (txLog != null) {
       txLog.clearLastId();
     }
     if (tc == null) {
       throw new FHIRException(formatMessage(I18nConstants.ATTEMPT_TO_USE_TERMINOLOGY_SERVER_WHEN_NO_TERMINOLOGY_SERVER_IS_AVAILABLE));
     }
-    Parameters pOut;
     if (vs == null) {
-      pOut = tc.getClient().validateCS(pin);
+      return tc.getAsyncClient().validateCS(pin);
     } else {
-      pOut = tc.getClient().validateVS(pin);
+      return tc.getAsyncClient().validateVS(pin);
     }
+  }
+
+  private ValidationResult finishValidateCode(TerminologyClientContext tc, ValueSet vs, AsyncTerminologyClient.Request<Parameters> request) throws FHIRException {
+    Parameters pOut = awaitTx(request);
     return processValidationResult(pOut, vs == null ? null : vs.getUrl(), tc.getClient().getAddress());
   }
 
+  /**
+   * The request was logged on the thread that made it, so its log id is made the last id here, 
+   * where the tx links of the results are set from it
+   */
+  private <T> T awaitTx(AsyncTerminologyClient.Request<T> request) {
+    try {
+      return AsyncTerminologyClient.await(request);
+    } finally {
+      if (txLog != null) {
+        txLog.setLastId(request.getLogId());
+      }
+    }
+  }
+
   protected void addServerValidationParameters(TerminologyClientContext terminologyClientContext, ValueSet vs, Parameters pin, ValidationOptions options) {
     boolean cache = false;
     if (vs != null) {
@@ -2020,6 +2257,19 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
     txCache.removeCS(url);
   }
 
+  public boolean isStreamingExpansions() {
+    return streamingExpansions;
+  }
+
+  /**
+   * if this is true, value sets that are expanded here (not on a terminology server) a page at a time 
+   * (using the offset and count parameters) only build the codes in the page; the others are just 
+   * counted. See ValueSetExpander.setStreaming
+   */
+  public void setStreamingExpansions(boolean streamingExpansions) {
+    this.streamingExpansions = streamingExpansions;
+  }
+
   public boolean isCanRunWithoutTerminology() {
     return canRunWithoutTerminology;
   }
@@ -2568,6 +2818,8 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
 
   protected IWorkerContextManager.IPackageLoadingTracker packageTracker;
   private boolean forPublication;
+  private SnapshotStore snapshotStore;
+  private final Map<String, ConceptMapIndex> conceptMapIndexes = new ConcurrentHashMap<>(); // by versioned url
   private boolean cachingAllowed = true;
   private static boolean nsFailHasFailed;
 
@@ -2727,11 +2979,7 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
   public void dropResource(String fhirType, String id) {
     synchronized (lock) {
 
-      Map<String, ResourceProxy> map = allResourcesById.get(fhirType);
-      if (map == null) {
-        map = new HashMap<String, ResourceProxy>();
-        allResourcesById.put(fhirType, map);
-      }
+      Map<String, ResourceProxy> map = resourcesForUpdate(fhirType);
       if (map.containsKey(id)) {
         map.remove(id); // this is a challenge because we might have more than one resource with this id (different versions)
       }
@@ -2750,12 +2998,14 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
       } else if (fhirType.equals("ValueSet")) {
         valueSets.drop(id);
       } else if (fhirType.equals("CodeSystem")) {
+        clearConceptIndexes(id);
         codeSystems.drop(id);
       } else if (fhirType.equals("OperationDefinition")) {
         operations.drop(id);
       } else if (fhirType.equals("Questionnaire")) {
         questionnaires.drop(id);
       } else if (fhirType.equals("ConceptMap")) {
+        conceptMapIndexes.values().removeIf(index -> id.equals(index.getMap().getId()));
         maps.drop(id);
       } else if (fhirType.equals("StructureMap")) {
         transforms.drop(id);
@@ -2770,6 +3020,15 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
     }
   }
 
+  // the concept indexes are attached to the code systems, so they have to go when the code systems do
+  private void clearConceptIndexes(String id) {
+    for (CanonicalResourceManager<CodeSystem>.CachedCanonicalResource<CodeSystem> cr : codeSystems.getCachedList()) {
+      if (cr.isLoaded() && (id == null || id.equals(cr.getId()))) {
+        CodeSystemConceptIndex.clear(cr.getResource());
+      }
+    }
+  }
+
   private <T extends CanonicalResource> void dropMetadataResource(Map<String, T> map, String id) {
     T res = map.get(id);
     if (res != null) {
@@ -2875,6 +3134,24 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
     } 
     StructureDefinition p = typeManager.fetchTypeDefinition(typeName);
     if (p != null && !p.isGeneratedSnapshot()) {
+      generateSnapshotOnFetch(p, "@5");
+    }
+    return p;
+  }
+
+  /**
+   * Generate the snapshot of a structure definition that's being fetched, if it hasn't been generated yet.
+   * 
+   * This holds the context lock, so that validators that share the context on other threads wait for 
+   * the snapshot instead of seeing it half built (or building it as well)
+   * 
+   * @param where - identifies the caller in the message if the snapshot can't be generated
+   */
+  protected void generateSnapshotOnFetch(StructureDefinition p, String where) {
+    synchronized (lock) {
+      if (p.isGeneratedSnapshot()) {
+        return;
+      }
       if (p.isGeneratingSnapshot()) {
         throw new FHIRException("Attempt to fetch the profile "+p.getVersionedUrl()+" while generating the snapshot for it");
       }
@@ -2890,13 +3167,12 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
         }
       } catch (Exception e) {
         // not sure what to do in this case?
-        System.out.println("Unable to generate snapshot @5 for "+p.getVersionedUrl()+": "+e.getMessage());
+        System.out.println("Unable to generate snapshot "+where+" for "+p.getVersionedUrl()+": "+e.getMessage());
         if (logger.isDebugLogging()) {
           e.printStackTrace();
         }
       }
     }
-    return p;
   }
   
   @Override
@@ -3106,6 +3382,16 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
         systems.size()+ actors.size()+ requirements.size();
   }
 
+  /**
+   * Like countAllCaches, but only counts the resources that belong to this context, not the ones it shares
+   * with the context it was copied from
+   */
+  public int countLocalCaches() {
+    return codeSystems.localSize() + valueSets.localSize() + maps.localSize() + transforms.localSize() + structures.localSize() + measures.localSize() + libraries.localSize() + 
+        guides.localSize() + capstmts.localSize() + searchParameters.localSize() + questionnaires.localSize() + operations.localSize() + plans.localSize() + 
+        systems.localSize()+ actors.localSize()+ requirements.localSize();
+  }
+
   public Set<String> getCodeSystemsUsed() {
     return codeSystemsUsed ;
   }
@@ -3152,6 +3438,35 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
     forPublication = value;
   }
 
+  @Override
+  public SnapshotStore getSnapshotStore() {
+    return snapshotStore;
+  }
+
+  @Override
+  public void setSnapshotStore(SnapshotStore snapshotStore) {
+    this.snapshotStore = snapshotStore;
+  }
+
+  @Override
+  public ConceptMapIndex getConceptMapIndex(ConceptMap cm) {
+    if (cm == null || !cm.hasUrl()) {
+      return null;
+    }
+    ConceptMapIndex index = conceptMapIndexes.get(cm.getVersionedUrl());
+    if (index != null && index.isCurrent(cm)) {
+      return index;
+    }
+    synchronized (lock) {
+      if (maps.get(cm.getUrl(), cm.getVersion()) != cm) {
+        return null;
+      }
+      index = ConceptMapIndex.build(cm);
+      conceptMapIndexes.put(cm.getVersionedUrl(), index);
+      return index;
+    }
+  }
+
   public boolean isCachingAllowed() {
     return cachingAllowed;
   }
@@ -3236,6 +3551,8 @@ public abstract class BaseWorkerContext extends I18nBase implements IWorkerConte
 
   public void unload() {
 
+    clearConceptIndexes(null);
+    conceptMapIndexes.clear();
     codeSystems.unload();
     valueSets.unload();
     maps.unload();
@@ -215,6 +215,13 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
       }
     }
 
+    /**
+     * @return true if the resource has been loaded (or wasn't loaded from a proxy), so getResource() won't load it
+     */
+    public boolean isLoaded() {
+      return resource != null;
+    }
+
     public void unload() {
       if (proxy != null) {
         resource = null;
@@ -271,6 +278,10 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
   private Map<String, CachedCanonicalResource<T>> map;
   private Map<String, List<CachedCanonicalResource<T>>> supplements; // general index based on CodeSystem.supplements
   private String version; // for debugging purposes
+  private CanonicalResourceManager<T> base; // a frozen layer shared with other managers - see copy()
+  private Set<CachedCanonicalResource<T>> dropped; // content in base that has been dropped from this manager
+  private int size; // the number of resources across the layers, less the dropped ones
+  private Set<String> keys; // the keys across the layers, worked out when first asked for after a change
   
   
   public CanonicalResourceManager(boolean enforceUniqueId, boolean minimalMemory) {
@@ -282,6 +293,7 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
     listForUrl = new HashMap<>();
     map = new HashMap<>();
     supplements = new HashMap<>(); // general index based on CodeSystem.supplements
+    dropped = Collections.newSetFromMap(new IdentityHashMap<>());
   }
 
   
@@ -295,11 +307,155 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
   }
 
 
+  /**
+   * Make this manager a copy of source. 
+   * 
+   * The content isn't actually copied: the content of source is frozen into a layer that is 
+   * shared by both managers, and anything either of them sees or drops afterwards is recorded 
+   * in a thin layer of its own over the shared one. So copying costs the same no matter how 
+   * much content the source has, and the copies don't hold their own copies of the indexes
+   * 
+   * @param source
+   */
   public void copy(CanonicalResourceManager<T> source) {
     list.clear();
     map.clear();
-    list.addAll(source.list);
-    map.putAll(source.map);
+    listForId.clear();
+    listForUrl.clear();
+    supplements.clear();
+    dropped.clear();
+    base = source.freeze();
+    size = base.size;
+    keys = null;
+  }
+
+  /**
+   * move all the content of this manager into a layer that will never change again, 
+   * and leave this manager as an empty layer over it
+   * 
+   * @return the frozen layer
+   */
+  private synchronized CanonicalResourceManager<T> freeze() {
+    if (base != null && list.isEmpty() && map.isEmpty() && listForUrl.isEmpty() && listForId.isEmpty() && supplements.isEmpty() && dropped.isEmpty()) {
+      return base; // nothing to freeze
+    }
+    CanonicalResourceManager<T> layer = new CanonicalResourceManager<T>(enforceUniqueId, minimalMemory);
+    layer.version = version;
+    layer.list = list;
+    layer.listForId = listForId;
+    layer.listForUrl = listForUrl;
+    layer.map = map;
+    layer.supplements = supplements;
+    layer.base = base;
+    layer.dropped = dropped;
+    layer.size = size;
+    layer.keys = keys;
+    // in this order, so the content doesn't change for anyone reading while this is happening
+    base = layer;
+    list = new ArrayList<>();
+    listForId = new HashMap<>();
+    listForUrl = new HashMap<>();
+    map = new HashMap<>();
+    supplements = new HashMap<>();
+    dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+    return layer;
+  }
+
+  private CachedCanonicalResource<T> lookup(String key) {
+    CachedCanonicalResource<T> cr = map.get(key);
+    if (cr == null && base != null) {
+      cr = base.lookup(key);
+      if (cr != null && dropped.contains(cr)) {
+        return null;
+      }
+    }
+    return cr;
+  }
+
+  /**
+   * the versions of a url, combined across the layers. If forUpdate, a list that belongs 
+   * to this layer is returned, creating it (from base, if base has the url) as necessary
+   */
+  private List<CachedCanonicalResource<T>> urlList(String url, boolean forUpdate) {
+    List<CachedCanonicalResource<T>> set = listForUrl.get(url);
+    if (set == null && base != null) {
+      List<CachedCanonicalResource<T>> bl = base.urlList(url, false);
+      if (bl != null) {
+        set = notDropped(bl);
+        if (!forUpdate) {
+          return set;
+        }
+        set = new ArrayList<>(set);
+        listForUrl.put(url, set);
+      }
+    }
+    if (set == null && forUpdate) {
+      set = new ArrayList<>();
+      listForUrl.put(url, set);
+    }
+    return set;
+  }
+
+  private List<CachedCanonicalResource<T>> idList(String id) {
+    List<CachedCanonicalResource<T>> set = listForId.get(id);
+    if (base != null) {
+      List<CachedCanonicalResource<T>> bl = base.idList(id);
+      if (bl != null) {
+        List<CachedCanonicalResource<T>> res = new ArrayList<>(notDropped(bl));
+        if (set != null) {
+          res.addAll(set);
+        }
+        return res;
+      }
+    }
+    return set;
+  }
+
+  private List<CachedCanonicalResource<T>> supplementList(String url) {
+    List<CachedCanonicalResource<T>> set = supplements.get(url);
+    if (base != null) {
+      List<CachedCanonicalResource<T>> bl = base.supplementList(url);
+      if (bl != null) {
+        List<CachedCanonicalResource<T>> res = new ArrayList<>(notDropped(bl));
+        if (set != null) {
+          res.addAll(set);
+        }
+        return res;
+      }
+    }
+    return set;
+  }
+
+  private List<CachedCanonicalResource<T>> allCached() {
+    if (base == null) {
+      return list;
+    }
+    List<CachedCanonicalResource<T>> res = new ArrayList<>(size);
+    addCached(res);
+    return res;
+  }
+
+  private void addCached(List<CachedCanonicalResource<T>> res) {
+    if (base != null) {
+      base.addCached(res);
+      if (!dropped.isEmpty()) {
+        res.removeIf(t -> dropped.contains(t)); // everything in res so far is from base 
+      }
+    }
+    res.addAll(list);
+  }
+
+  private List<CachedCanonicalResource<T>> notDropped(List<CachedCanonicalResource<T>> set) {
+    if (dropped.isEmpty()) {
+      return set;
+    }
+    List<CachedCanonicalResource<T>> res = new ArrayList<>();
+    for (CachedCanonicalResource<T> t : set) {
+      if (!dropped.contains(t)) {
+        res.add(t);
+      }
+    }
+    return res;
   }
   
   public void register(CanonicalResourceProxy r, PackageInformation packgeInfo) {
@@ -330,7 +486,7 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
       && Arrays.stream(INVALID_TERMINOLOGY_URLS).anyMatch((it)->it.equals(cr.getUrl()))) {
       return;
     }  
-    if (map.get(cr.getUrl()) != null && (cr.getPackageInfo() != null && cr.getPackageInfo().isExamplesPackage())) {
+    if (lookup(cr.getUrl()) != null && (cr.getPackageInfo() != null && cr.getPackageInfo().isExamplesPackage())) {
       return;
     }
     
@@ -340,14 +496,14 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
     }      
 
     // -- 3. deleting existing content ---------------------------------------------------------------
-    if (enforceUniqueId && map.containsKey(cr.getId())) {
+    if (enforceUniqueId && lookup(cr.getId()) != null) {
       drop(cr.getId());      
     }
     
     // special case logic for UTG support prior to version 5
     if (cr.getPackageInfo() != null && cr.getPackageInfo().getId().startsWith("hl7.terminology")) {
       List<CachedCanonicalResource<T>> toDrop = new ArrayList<>();
-      for (CachedCanonicalResource<T> n : list) {
+      for (CachedCanonicalResource<T> n : allCached()) {
         if (n.getUrl() != null && n.getUrl().equals(cr.getUrl()) && isBasePackage(n.getPackageInfo())) {
           toDrop.add(n);
         }
@@ -370,11 +526,10 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
       set.add(cr);      
     }
     list.add(cr);
-    if (!listForUrl.containsKey(cr.getUrl())) {
-      listForUrl.put(cr.getUrl(), new ArrayList<>());
-    }    
+    size++;
+    keys = null;
     addToSupplements(cr);
-    List<CachedCanonicalResource<T>> set = listForUrl.get(cr.getUrl());
+    List<CachedCanonicalResource<T>> set = urlList(cr.getUrl(), true);
     set.add(cr);
     if (set.size() > 1) {
       Collections.sort(set, new MetadataResourceVersionComparator<CachedCanonicalResource<T>>());
@@ -430,11 +585,19 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
     while (listForId.values().remove(cr)); 
     while (listForUrl.values().remove(cr)); 
     String surl = cr.supplements();
-    if (surl != null) {
+    if (surl != null && supplements.containsKey(surl)) {
       supplements.get(surl).remove(cr);
     }
-    list.remove(cr);
-    List<CachedCanonicalResource<T>> set = listForUrl.get(cr.getUrl());
+    keys = null;
+    if (list.remove(cr)) {
+      size--;
+    } else if (base != null) {
+      List<CachedCanonicalResource<T>> bl = base.urlList(cr.getUrl(), false);
+      if (bl != null && bl.contains(cr) && dropped.add(cr)) {
+        size--; // it's in the frozen layer, so hide it instead
+      }
+    }
+    List<CachedCanonicalResource<T>> set = base == null ? listForUrl.get(cr.getUrl()) : urlList(cr.getUrl(), true);
     if (set != null) { // it really should be
       boolean last = set.indexOf(cr) == set.size()-1;
       set.remove(cr);
@@ -458,12 +621,12 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
   
   public void drop(String id) {
     if (enforceUniqueId) {
-      CachedCanonicalResource<T> cr = map.get(id);
+      CachedCanonicalResource<T> cr = lookup(id);
       if (cr != null) {
         drop(cr);
       }
     } else {
-      List<CachedCanonicalResource<T>> set = listForId.get(id);
+      List<CachedCanonicalResource<T>> set = idList(id);
       if (set != null) { // it really should be
         for (CachedCanonicalResource<T> i : set) {
           drop(i);
@@ -506,32 +669,35 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
  
 
   public boolean has(String url) {
-    return map.containsKey(url);
+    return lookup(url) != null;
   }
 
   public boolean has(String system, String version) {
-    if (map.containsKey(system+"|"+version))
+    if (lookup(system+"|"+version) != null)
       return true;
     String mm = VersionUtilities.getMajMin(version);
     if (mm != null)
-      return map.containsKey(system+"|"+mm);
+      return lookup(system+"|"+mm) != null;
     else
       return false;
   }
   
   public T get(String url) {
-    return map.containsKey(url) ? map.get(url).getResource() : null;
+    CachedCanonicalResource<T> cr = lookup(url);
+    return cr != null ? cr.getResource() : null;
   }
   
   public T get(String system, String version) {
     if (version == null) {
       return get(system);
     } else {
-      if (map.containsKey(system+"|"+version))
-        return map.get(system+"|"+version).getResource();
+      CachedCanonicalResource<T> cr = lookup(system+"|"+version);
+      if (cr != null)
+        return cr.getResource();
       String mm = VersionUtilities.getMajMin(version);
-      if (mm != null && map.containsKey(system+"|"+mm))
-        return map.get(system+"|"+mm).getResource();
+      cr = mm == null ? null : lookup(system+"|"+mm);
+      if (cr != null)
+        return cr.getResource();
       else
         return null;
     }
@@ -539,7 +705,7 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
   
   public List<T> getForUrl(String url) {
     List<T> res = new ArrayList<>();
-    List<CanonicalResourceManager<T>.CachedCanonicalResource<T>> list = listForUrl.get(url);
+    List<CanonicalResourceManager<T>.CachedCanonicalResource<T>> list = urlList(url, false);
     if (list != null) {
       for (CanonicalResourceManager<T>.CachedCanonicalResource<T> t : list) {
         res.add(t.getResource());
@@ -561,11 +727,12 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
    */
   public T get(String url, List<String> pvlist) {
     for (String pv : pvlist) {
-      if (map.containsKey(pv+":"+url)) {
-        return map.get(pv+":"+url).getResource();
+      CachedCanonicalResource<T> cr = lookup(pv+":"+url);
+      if (cr != null) {
+        return cr.getResource();
       }      
     }
-    return map.containsKey(url) ? map.get(url).getResource() : null;
+    return get(url);
   }
   
   public T get(String system, String version, List<String> pvlist) {
@@ -573,22 +740,19 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
       return get(system, pvlist);
     } else {
       for (String pv : pvlist) {
-        if (map.containsKey(pv+":"+system+"|"+version))
-          return map.get(pv+":"+system+"|"+version).getResource();
+        CachedCanonicalResource<T> cr = lookup(pv+":"+system+"|"+version);
+        if (cr != null)
+          return cr.getResource();
       }
       String mm = VersionUtilities.getMajMin(version);
-      if (mm != null && map.containsKey(system+"|"+mm))
+      if (mm != null && lookup(system+"|"+mm) != null)
         for (String pv : pvlist) {
-          if (map.containsKey(pv+":"+system+"|"+mm))
-            return map.get(pv+":"+system+"|"+mm).getResource();
+          CachedCanonicalResource<T> cr = lookup(pv+":"+system+"|"+mm);
+          if (cr != null)
+            return cr.getResource();
       }
 
-      if (map.containsKey(system+"|"+version))
-        return map.get(system+"|"+version).getResource();
-      if (mm != null && map.containsKey(system+"|"+mm))
-        return map.get(system+"|"+mm).getResource();
-      else
-        return null;
+      return get(system, version);
     }
   }
   
@@ -596,13 +760,16 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
  
   public PackageInformation getPackageInfo(String system, String version) {
     if (version == null) {
-      return map.containsKey(system) ? map.get(system).getPackageInfo() : null;
+      CachedCanonicalResource<T> cr = lookup(system);
+      return cr != null ? cr.getPackageInfo() : null;
     } else {
-      if (map.containsKey(system+"|"+version))
-        return map.get(system+"|"+version).getPackageInfo();
+      CachedCanonicalResource<T> cr = lookup(system+"|"+version);
+      if (cr != null)
+        return cr.getPackageInfo();
       String mm = VersionUtilities.getMajMin(version);
-      if (mm != null && map.containsKey(system+"|"+mm))
-        return map.get(system+"|"+mm).getPackageInfo();
+      cr = mm == null ? null : lookup(system+"|"+mm);
+      if (cr != null)
+        return cr.getPackageInfo();
       else
         return null;
     }
@@ -612,19 +779,27 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
   
   
   public int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of resources in this manager's own layer, leaving out the ones it shares with other managers
+   * through the frozen base (see copy())
+   */
+  public int localSize() {
     return list.size();
   }
   
 
   
   public void listAll(List<T> result) {
-    for (CachedCanonicalResource<T>  t : list) {
+    for (CachedCanonicalResource<T>  t : allCached()) {
       result.add(t.getResource()); 
     }
   }
 
   public void listAllM(List<CanonicalResource> result) {
-    for (CachedCanonicalResource<T>  t : list) {
+    for (CachedCanonicalResource<T>  t : allCached()) {
       result.add(t.getResource()); 
     }
   }
@@ -654,7 +829,7 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
     boolean possibleMatches = false;
     List<T> res = new ArrayList<>();
     if (version != null) {
-      List<CanonicalResourceManager<T>.CachedCanonicalResource<T>> list = supplements.get(url+"|"+version);
+      List<CanonicalResourceManager<T>.CachedCanonicalResource<T>> list = supplementList(url+"|"+version);
       if (list != null) {
         for (CanonicalResourceManager<T>.CachedCanonicalResource<T> t : list) {
           possibleMatches = true;
@@ -664,7 +839,7 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
         }
       }      
     }
-    List<CanonicalResourceManager<T>.CachedCanonicalResource<T>> list = supplements.get(url);
+    List<CanonicalResourceManager<T>.CachedCanonicalResource<T>> list = supplementList(url);
     if (list != null) {
       for (CanonicalResourceManager<T>.CachedCanonicalResource<T> t : list) {
         possibleMatches = true;
@@ -683,17 +858,24 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
   public void clear() {
     list.clear();
     map.clear();
-    
+    listForId.clear();
+    listForUrl.clear();
+    supplements.clear();
+    dropped.clear();
+    base = null;
+    size = 0;
+    keys = null;
   }
 
   public List<CachedCanonicalResource<T>> getCachedList() {
-    return list;
+    return allCached();
   }
 
   public List<T> getList() {
     List<T> res = new ArrayList<>();
-    for (CachedCanonicalResource<T> t : list) {
-      if (!res.contains(t.getResource())) {
+    Set<T> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (CachedCanonicalResource<T> t : allCached()) {
+      if (seen.add(t.getResource())) {
         res.add(t.getResource());
       }
     }
@@ -707,7 +889,21 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
   }
 
   public Set<String> keys() {
-    return map.keySet();
+    if (base == null) {
+      return map.keySet();
+    }
+    Set<String> res = keys;
+    if (res == null) {
+      res = new HashSet<>(map.keySet());
+      for (String k : base.keys()) {
+        if (!res.contains(k) && lookup(k) != null) {
+          res.add(k);
+        }
+      }
+      res = Collections.unmodifiableSet(res);
+      keys = res; // the layers below never change, so this holds until this layer changes
+    }
+    return res;
   }
 
   public boolean isEnforceUniqueId() {
@@ -715,11 +911,14 @@ public class CanonicalResourceManager<T extends CanonicalResource> {
   }
 
 
+  /**
+   * Unload the resources in this layer that can be loaded again from their proxies. The frozen 
+   * layers are left alone - they are shared with the managers this one was copied from or to
+   */
   public void unload() {
     for (CachedCanonicalResource<T> t : list) {
       t.unload();
     }
-   
   }
 
 
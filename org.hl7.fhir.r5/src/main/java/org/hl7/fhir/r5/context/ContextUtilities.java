@@ -1,5 +1,6 @@
 package org.hl7.fhir.r5.context;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -261,6 +262,20 @@ public class ContextUtilities implements ProfileKnowledgeProvider {
       if (sd == null) {
         throw new DefinitionException(context.formatMessage(I18nConstants.PROFILE___BASE__COULD_NOT_BE_RESOLVED, p.getName(), p.getUrl(), p.getBaseDefinition()));
       }
+      // stored snapshots don't have the user data that the renderers use (see SnapshotStore)
+      SnapshotStore store = p.hasSnapshot() || context.isForPublication() ? null : context.getSnapshotStore();
+      String storeKey = null;
+      if (store != null) {
+        try {
+          storeKey = store.key(context, p, sd);
+        } catch (IOException e) {
+          storeKey = null;
+        }
+        if (storeKey != null && store.load(storeKey, p)) {
+          p.setGeneratedSnapshot(true);
+          return;
+        }
+      }
       List<ValidationMessage> msgs = new ArrayList<ValidationMessage>();
       List<String> errors = new ArrayList<String>();
       ProfileUtilities pu = new ProfileUtilities(context, msgs, this);
@@ -291,6 +306,9 @@ public class ContextUtilities implements ProfileKnowledgeProvider {
       if (!p.hasSnapshot())
         throw new FHIRException(context.formatMessage(I18nConstants.PROFILE___ERROR_GENERATING_SNAPSHOT, p.getName(), p.getUrl()));
       pu = null;
+      if (storeKey != null) {
+        store.save(storeKey, p);
+      }
     }
     p.setGeneratedSnapshot(true);
   }
@@ -31,6 +31,7 @@ package org.hl7.fhir.r5.context;
 
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -42,12 +43,16 @@ import org.hl7.fhir.utilities.ToolingClientLogger;
 import org.hl7.fhir.utilities.Utilities;
 import org.hl7.fhir.utilities.filesystem.ManagedFileAccess;
 
+/**
+ * Requests may be made on more than one thread at once, so each thread's request is kept until its
+ * response arrives, and then they're written to the log together
+ */
 public class HTMLClientLogger extends BaseLogger implements ToolingClientLogger {
 
   private static final boolean DEBUG = false;
   
-  private boolean req = false;
   private PrintStream file;
+  private final ThreadLocal<ByteArrayOutputStream> request = new ThreadLocal<>();
 
   public HTMLClientLogger(String log) throws IOException {
     if (log != null) {
@@ -66,24 +71,29 @@ public class HTMLClientLogger extends BaseLogger implements ToolingClientLogger
     if (file == null)
       return;
     String id = nextId();
-    file.println("<hr/><a name=\"l"+id+"\"> </a>");
-    file.println("<p>#"+id+"</p>");
-    file.println("<pre>");
-    file.println(method+" "+url+" HTTP/1.0");
+    // a request that never got a response is still logged
+    write(null);
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(buffer);
+    out.println("<hr/><a name=\"l"+id+"\"> </a>");
+    out.println("<p>#"+id+"</p>");
+    out.println("<pre>");
+    out.println(method+" "+url+" HTTP/1.0");
     if (headers != null) {
       for (String s : headers) {  
-        file.println(Utilities.escapeXml(s));
+        out.println(Utilities.escapeXml(s));
       }
     }
     if (body != null) {
-      file.println("");
+      out.println("");
       try {
-        file.println(Utilities.escapeXml(new String(body, "UTF-8")));
+        out.println(Utilities.escapeXml(new String(body, "UTF-8")));
       } catch (UnsupportedEncodingException e) {
       }
     }
-    file.println("</pre>");
-    req = true;
+    out.println("</pre>");
+    out.flush();
+    request.set(buffer);
   }
 
   @Override
@@ -94,22 +104,41 @@ public class HTMLClientLogger extends BaseLogger implements ToolingClientLogger
 
     if (file == null)
       return;
-    if (!req) {
+    if (request.get() == null) {
       System.out.println("Record Response without request");
     }
-    req = false;
-    file.println("<pre>");
-    file.println(outcome);
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(buffer);
+    out.println("<pre>");
+    out.println(outcome);
     for (String s : headers)  
-      file.println(Utilities.escapeXml(s));
+      out.println(Utilities.escapeXml(s));
     if (body != null) {
-      file.println("");
+      out.println("");
       try {
-        file.println(Utilities.escapeXml(new String(body, "UTF-8")));
+        out.println(Utilities.escapeXml(new String(body, "UTF-8")));
       } catch (UnsupportedEncodingException e) {
       }
     }
-    file.println("</pre>");
+    out.println("</pre>");
+    out.flush();
+    write(buffer);
+  }
+
+  private void write(ByteArrayOutputStream response) {
+    ByteArrayOutputStream req = request.get();
+    request.remove();
+    if (req == null && response == null) {
+      return;
+    }
+    synchronized (file) {
+      if (req != null) {
+        file.write(req.toByteArray(), 0, req.size());
+      }
+      if (response != null) {
+        file.write(response.toByteArray(), 0, response.size());
+      }
+    }
   }
 
   private String present(byte[] body) {
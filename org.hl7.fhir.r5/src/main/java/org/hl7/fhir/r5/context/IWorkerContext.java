@@ -44,6 +44,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import org.fhir.ucum.UcumService;
 import org.hl7.fhir.exceptions.DefinitionException;
@@ -71,6 +72,7 @@ import org.hl7.fhir.r5.model.ValueSet.ConceptSetComponent;
 import org.hl7.fhir.r5.profilemodel.PEDefinition;
 import org.hl7.fhir.r5.profilemodel.PEBuilder.PEElementPropertiesPolicy;
 import org.hl7.fhir.r5.profilemodel.PEBuilder;
+import org.hl7.fhir.r5.terminologies.ConceptMapIndex;
 import org.hl7.fhir.r5.terminologies.expansion.ValueSetExpansionOutcome;
 import org.hl7.fhir.r5.terminologies.utilities.CodingValidationRequest;
 import org.hl7.fhir.r5.terminologies.utilities.ValidationResult;
@@ -536,6 +538,24 @@ public interface IWorkerContext {
   String formatMessage(String theMessage, Object... theMessageArguments);
   String formatMessagePlural(Integer pluralNum, String theMessage, Object... theMessageArguments);
 
+  /**
+   * The same as formatMessage, but the message is only formatted if the supplier is called. The
+   * message is formatted in the locale that is in use now, even if the locale has changed since
+   *
+   * @param theMessage
+   * @param theMessageArguments
+   * @return
+   */
+  default Supplier<String> formatMessageLater(String theMessage, Object... theMessageArguments) {
+    String message = formatMessage(theMessage, theMessageArguments);
+    return () -> message;
+  }
+
+  default Supplier<String> formatMessagePluralLater(Integer pluralNum, String theMessage, Object... theMessageArguments) {
+    String message = formatMessagePlural(pluralNum, theMessage, theMessageArguments);
+    return () -> message;
+  }
+
   /**
    * Validation of a code - consult the terminology infrstructure and/or service 
    * to see whether it is known. If known, return a description of it
@@ -643,6 +663,17 @@ public interface IWorkerContext {
   public void validateCodeBatch(ValidationOptions options, List<? extends CodingValidationRequest> codes, ValueSet vs);
   public void validateCodeBatchByRef(ValidationOptions options, List<? extends CodingValidationRequest> codes, String vsUrl);
 
+  /**
+   * Validate a set of codes (or CodeableConcepts) ahead of time, so that validateCode finds the results in the 
+   * cache. Each result is exactly what validateCode would return, but the codes that need the server are sent 
+   * in batches. Unlike validateCodeBatch, the results don't depend on which of the two is called first
+   * 
+   * @param options
+   * @param codes
+   * @param vs - if null, the value set of each request
+   */
+  public void prefetchValidateCode(ValidationOptions options, List<? extends CodingValidationRequest> codes, ValueSet vs);
+
 
   // todo: figure these out
   public Map<String, NamingSystem> getNSUrlMap();
@@ -773,6 +804,20 @@ public interface IWorkerContext {
   public boolean isForPublication();
   public void setForPublication(boolean value);
 
+  /**
+   * Where generated snapshots are kept between runs (see SnapshotStore). null (the default) means
+   * snapshots are always generated. It isn't used when the context is for publication, since
+   * stored snapshots don't have what the renderers need
+   */
+  public SnapshotStore getSnapshotStore();
+  public void setSnapshotStore(SnapshotStore snapshotStore);
+
+  /**
+   * @return the index of the concept map (see ConceptMapIndex), which the context keeps by versioned URL
+   * until the map is dropped, or null if the map isn't one of the context's
+   */
+  public ConceptMapIndex getConceptMapIndex(ConceptMap cm);
+
   /**
    * 
    * @param oid
@@ -0,0 +1,233 @@
+package org.hl7.fhir.r5.context;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map that can be copied without copying its content - see copy(). This is used for the maps in
+ * the worker context that are copied when a context is copied, in the same way as CanonicalResourceManager
+ *
+ * The content of the source of a copy is frozen into a layer that is shared by both maps, and anything
+ * either of them puts or removes afterwards is recorded in a thin layer of its own. Keys that are removed
+ * from a map while they are in the frozen layer are hidden by a tombstone.
+ *
+ * Like HashMap, this isn't thread safe (apart from copying), and allows null values.
+ */
+public class LayeredMap<K, V> extends AbstractMap<K, V> {
+
+  private LayeredMap<K, V> base; // a frozen layer shared with other maps
+  private Map<K, V> local = new HashMap<>();
+  private Set<Object> removed = new HashSet<>(); // keys in base that have been removed from this map
+  private int size; // the number of keys across the layers, once there is a base
+
+  public LayeredMap() {
+    super();
+  }
+
+  /**
+   * A map that starts with the content of base. The caller must make sure that base never changes
+   * again (e.g. because it is in a frozen layer)
+   */
+  public LayeredMap(LayeredMap<K, V> base) {
+    super();
+    this.base = base;
+    this.size = base == null ? 0 : base.size();
+  }
+
+  /**
+   * Make this map a copy of source
+   */
+  public void copy(LayeredMap<K, V> source) {
+    local.clear();
+    removed.clear();
+    base = source.freeze();
+    size = base.size();
+  }
+
+  /**
+   * move all the content of this map into a layer that will never change again, and leave this map
+   * as an empty layer over it
+   */
+  private synchronized LayeredMap<K, V> freeze() {
+    if (base != null && local.isEmpty() && removed.isEmpty()) {
+      return base; // nothing to freeze
+    }
+    LayeredMap<K, V> layer = new LayeredMap<>(base);
+    layer.local = local;
+    layer.removed = removed;
+    layer.size = size();
+    size = layer.size;
+    // in this order, so the content doesn't change for anyone reading while this is happening
+    base = layer;
+    local = new HashMap<>();
+    removed = new HashSet<>();
+    return layer;
+  }
+
+  /**
+   * @return true if the key was put in this map since it was last copied (so the value isn't shared with other maps)
+   */
+  public boolean isLocal(Object key) {
+    return local.containsKey(key);
+  }
+
+  /**
+   * @return the number of entries that have been put in this map since it was last copied
+   */
+  public int localSize() {
+    return local.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    if (local.containsKey(key)) {
+      return true;
+    }
+    return base != null && !removed.contains(key) && base.containsKey(key);
+  }
+
+  @Override
+  public V get(Object key) {
+    V v = local.get(key);
+    if (v != null || local.containsKey(key) || base == null || removed.contains(key)) {
+      return v;
+    }
+    return base.get(key);
+  }
+
+  @Override
+  public V put(K key, V value) {
+    if (base == null) {
+      return local.put(key, value);
+    }
+    boolean had = containsKey(key);
+    V old = get(key);
+    local.put(key, value);
+    removed.remove(key);
+    if (!had) {
+      size++;
+    }
+    return old;
+  }
+
+  @Override
+  public V remove(Object key) {
+    if (base == null) {
+      return local.remove(key);
+    }
+    if (!containsKey(key)) {
+      return null;
+    }
+    V old = get(key);
+    local.remove(key);
+    if (base.containsKey(key)) {
+      removed.add(key);
+    }
+    size--;
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    local.clear();
+    removed.clear();
+    base = null;
+    size = 0;
+  }
+
+  @Override
+  public int size() {
+    return base == null ? local.size() : size;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    if (base == null) {
+      return local.entrySet();
+    }
+    return new AbstractSet<Entry<K, V>>() {
+
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        return new LayerIterator();
+      }
+
+      @Override
+      public int size() {
+        return LayeredMap.this.size();
+      }
+    };
+  }
+
+  /**
+   * the entries in this layer, and then the entries in the layers below that haven't been replaced
+   * or removed. The layers below are frozen, so they can be walked while this map changes  
+   */
+  private class LayerIterator implements Iterator<Entry<K, V>> {
+    private final Iterator<Entry<K, V>> localIt = new ArrayList<>(local.entrySet()).iterator(); // this layer can change while we iterate
+    private final Set<Object> localKeys = new HashSet<>(local.keySet());
+    private final Iterator<Entry<K, V>> baseIt = base.entrySet().iterator();
+    private Entry<K, V> next;
+    private boolean nextIsLocal;
+    private K last;
+    private boolean canRemove;
+
+    @Override
+    public boolean hasNext() {
+      if (next == null) {
+        if (localIt.hasNext()) {
+          next = localIt.next();
+          nextIsLocal = true;
+        } else {
+          while (next == null && baseIt.hasNext()) {
+            Entry<K, V> e = baseIt.next();
+            if (!localKeys.contains(e.getKey()) && !removed.contains(e.getKey())) {
+              next = e;
+              nextIsLocal = false;
+            }
+          }
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public Entry<K, V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Entry<K, V> e = next;
+      next = null;
+      last = e.getKey();
+      canRemove = true;
+      if (nextIsLocal) {
+        return e; // writes through to this layer
+      }
+      return new SimpleEntry<K, V>(e) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public V setValue(V value) {
+          put(getKey(), value);
+          return super.setValue(value);
+        }
+      };
+    }
+
+    @Override
+    public void remove() {
+      if (!canRemove) {
+        throw new IllegalStateException();
+      }
+      canRemove = false;
+      LayeredMap.this.remove(last);
+    }
+  }
+}
@@ -173,7 +173,6 @@ public class SimpleWorkerContext extends BaseWorkerContext implements IWorkerCon
   
   protected void copy(SimpleWorkerContext other) {
     super.copy(other);
-    binaries.putAll(other.binaries);
     version = other.version;
     revision = other.revision;
     date = other.date;
@@ -560,6 +559,7 @@ public class SimpleWorkerContext extends BaseWorkerContext implements IWorkerCon
 	  if (loader != null && terminologyClientManager.getFactory() == null) {
 	    terminologyClientManager.setFactory(loader.txFactory());
 	  }
+	  pi.closeIndexDatabases();
 	  return t;
 	}
 
@@ -712,14 +712,8 @@ public class SimpleWorkerContext extends BaseWorkerContext implements IWorkerCon
     T r = super.fetchResource(class_, uri);
     if (r instanceof StructureDefinition) {
       StructureDefinition p = (StructureDefinition)r;
-      try {
-        new ContextUtilities(this).generateSnapshot(p);
-      } catch (Exception e) {
-        // not sure what to do in this case?
-        System.out.println("Unable to generate snapshot @3 for "+uri+": "+e.getMessage());
-        if (logger.isDebugLogging()) {
-          e.printStackTrace();          
-        }
+      if (!p.isGeneratedSnapshot()) {
+        generateSnapshotOnFetch(p, "@3");
       }
     }
     return r;
@@ -737,26 +731,7 @@ public class SimpleWorkerContext extends BaseWorkerContext implements IWorkerCon
     if (r instanceof StructureDefinition) {
       StructureDefinition p = (StructureDefinition)r;
       if (!p.isGeneratedSnapshot()) {
-        if (p.isGeneratingSnapshot()) {
-          throw new FHIRException("Attempt to fetch the profile "+p.getVersionedUrl()+" while generating the snapshot for it");
-        }
-        try {
-          if (logger.isDebugLogging()) {
-            System.out.println("Generating snapshot for "+p.getVersionedUrl());
-          }
-          p.setGeneratingSnapshot(true);
-          try {
-            new ContextUtilities(this).generateSnapshot(p);
-          } finally {
-            p.setGeneratingSnapshot(false);      
-          }
-        } catch (Exception e) {
-          // not sure what to do in this case?
-          System.out.println("Unable to generate snapshot @4 for "+p.getVersionedUrl()+": "+e.getMessage());
-          if (logger.isDebugLogging()) {
-            e.printStackTrace();
-          }
-        }
+        generateSnapshotOnFetch(p, "@4");
       }
     }
     return r;
@@ -0,0 +1,199 @@
+package org.hl7.fhir.r5.context;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hl7.fhir.exceptions.FHIRException;
+import org.hl7.fhir.r5.formats.IParser.OutputStyle;
+import org.hl7.fhir.r5.formats.JsonParser;
+import org.hl7.fhir.r5.model.CanonicalType;
+import org.hl7.fhir.r5.model.ElementDefinition;
+import org.hl7.fhir.r5.model.ElementDefinition.TypeRefComponent;
+import org.hl7.fhir.r5.model.Resource;
+import org.hl7.fhir.r5.model.StructureDefinition;
+import org.hl7.fhir.utilities.TextFile;
+import org.hl7.fhir.utilities.Utilities;
+import org.hl7.fhir.utilities.VersionUtil;
+import org.hl7.fhir.utilities.filesystem.ManagedFileAccess;
+
+/**
+ * A folder of generated snapshots, so that profiles without snapshots don't have to have them generated
+ * again every time a context is loaded. This is opt-in: see IWorkerContext.setSnapshotStore. The folder
+ * can be shared by several processes, and can be deleted at any time
+ *
+ * A stored snapshot is found by a hash of everything that goes into generating it: the profile itself
+ * (without a snapshot), the versioned URLs (and source packages) of the structures in its base chain and
+ * of the profiles its differential refers to, the FHIR version of the context, and the version of this
+ * library. If any of those change, the key changes, and the snapshot is generated (and stored) again.
+ * Profiles whose snapshot came from the store record their key, so that profiles derived from them pick
+ * up changes to them even if their version doesn't change.
+ *
+ * Note that the snapshot generator leaves user data on the profile and the elements it generates, for
+ * the renderers and the IG publisher (ProfileUtilities.UD_DERIVATION_POINTER, UD_BASE_MODEL,
+ * UD_GENERATED_IN_SNAPSHOT, the messages from generating the snapshot, and so on). Stored snapshots
+ * don't have any of that, so a profile rendered with a snapshot from the store doesn't render the way it
+ * would with a generated one. So this is for validation, not publishing: the store isn't used when the
+ * context is for publication (see IWorkerContext.isForPublication), and a profile that got its snapshot
+ * from the store has USER_DATA_KEY, so it can be told apart (and its snapshot generated again with
+ * the store turned off) before it's rendered
+ */
+public class SnapshotStore {
+
+  public static final String USER_DATA_KEY = "snapshot.store.key";
+  private static final String FORMAT_VERSION = "1";
+
+  private final File folder;
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  public SnapshotStore(String folder) throws IOException {
+    this.folder = ManagedFileAccess.file(folder);
+    Utilities.createDirectory(this.folder.getAbsolutePath());
+  }
+
+  public File getFolder() {
+    return folder;
+  }
+
+  public int getHits() {
+    return hits.get();
+  }
+
+  public int getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Work out the key for the snapshot of the profile. The base must be the structure that the profile's
+   * baseDefinition resolves to, with its snapshot already generated
+   */
+  public String key(IWorkerContext context, StructureDefinition profile, StructureDefinition base) throws IOException {
+    MessageDigest digest = newDigest();
+    put(digest, FORMAT_VERSION);
+    put(digest, Utilities.noString(VersionUtil.getVersion()) ? "?" : VersionUtil.getVersion());
+    put(digest, context.getVersion() == null ? "?" : context.getVersion());
+    put(digest, context.isForPublication() ? "true" : "false");
+    digest.update(new JsonParser().composeBytes(profile));
+
+    Set<String> seen = new HashSet<>();
+    StructureDefinition sd = base;
+    while (sd != null && seen.add(sd.getUrl())) {
+      put(digest, describe(sd));
+      sd = sd.hasBaseDefinition() ? context.fetchResourceRaw(StructureDefinition.class, sd.getBaseDefinition()) : null;
+    }
+
+    Set<String> profiles = new HashSet<>();
+    for (ElementDefinition ed : profile.getDifferential().getElement()) {
+      for (TypeRefComponent tr : ed.getType()) {
+        for (CanonicalType ct : tr.getProfile()) {
+          if (ct.hasValue() && profiles.add(ct.getValue())) {
+            StructureDefinition p = context.fetchResourceRaw(StructureDefinition.class, ct.getValue());
+            put(digest, p == null ? "?"+ct.getValue() : describe(p));
+          }
+        }
+      }
+    }
+    StringBuilder b = new StringBuilder();
+    for (byte v : digest.digest()) {
+      b.append(Character.forDigit((v >> 4) & 0xF, 16));
+      b.append(Character.forDigit(v & 0xF, 16));
+    }
+    return b.toString();
+  }
+
+  private static void put(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) '|');
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new Error(e); // every JVM has SHA-256
+    }
+  }
+
+  private String describe(StructureDefinition sd) {
+    StringBuilder b = new StringBuilder();
+    b.append(sd.getVersionedUrl());
+    if (sd.hasSourcePackage()) {
+      b.append("@");
+      b.append(sd.getSourcePackage().getVID());
+    }
+    if (sd.hasUserData(USER_DATA_KEY)) {
+      b.append("#");
+      b.append(sd.getUserString(USER_DATA_KEY));
+    }
+    return b.toString();
+  }
+
+  /**
+   * If there's a stored snapshot for the key, give it to the profile (along with the differential as
+   * it was after the snapshot was generated - sorted, and with ids)
+   *
+   * @return true if the profile now has its snapshot
+   */
+  public boolean load(String key, StructureDefinition profile) {
+    File f = file(key);
+    if (f.exists()) {
+      try (InputStream s = new FileInputStream(f)) {
+        Resource r = new JsonParser().parse(s);
+        if (r instanceof StructureDefinition && ((StructureDefinition) r).hasSnapshot()) {
+          StructureDefinition stored = (StructureDefinition) r;
+          profile.setSnapshot(stored.getSnapshot());
+          profile.setDifferential(stored.getDifferential());
+          profile.setUserData(USER_DATA_KEY, key);
+          hits.incrementAndGet();
+          return true;
+        }
+      } catch (Exception e) {
+        // the entry is damaged; it'll be replaced when the snapshot is generated
+      }
+      f.delete();
+    }
+    misses.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Store the (just generated) snapshot of the profile. Problems writing to the store are ignored; the
+   * snapshot will just be generated again next time
+   */
+  public void save(String key, StructureDefinition profile) {
+    profile.setUserData(USER_DATA_KEY, key);
+    File f = file(key);
+    try {
+      File tmp = File.createTempFile(key, ".tmp", folder);
+      try {
+        TextFile.bytesToFile(new JsonParser().setOutputStyle(OutputStyle.NORMAL).composeBytes(profile), tmp);
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        tmp.delete();
+      }
+    } catch (IOException | FHIRException e) {
+      // see above
+    }
+  }
+
+  /**
+   * Delete all the stored snapshots
+   */
+  public void clear() throws IOException {
+    Utilities.clearDirectory(folder.getAbsolutePath());
+  }
+
+  private File file(String key) {
+    return new File(folder, key+".json");
+  }
+}
@@ -31,6 +31,7 @@ package org.hl7.fhir.r5.context;
 
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -42,9 +43,14 @@ import org.hl7.fhir.utilities.ToolingClientLogger;
 import org.hl7.fhir.utilities.Utilities;
 import org.hl7.fhir.utilities.filesystem.ManagedFileAccess;
 
+/**
+ * Requests may be made on more than one thread at once, so each thread's request is kept until its
+ * response arrives, and then they're written to the log together
+ */
 public class TextClientLogger extends BaseLogger implements ToolingClientLogger {
 
   private PrintStream file;
+  private final ThreadLocal<ByteArrayOutputStream> request = new ThreadLocal<>();
 
   public TextClientLogger(String log) throws IOException {
     if (log != null) {
@@ -60,36 +66,62 @@ public class TextClientLogger extends BaseLogger implements ToolingClientLogger
     if (file == null)
       return;
     String id = nextId();
-    file.println("\r\n--- "+id+" -----------------\r\nRequest: \r\n");
-    file.println(method+" "+url+" HTTP/1.0");
+    // a request that never got a response is still logged
+    write(null);
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(buffer);
+    out.println("\r\n--- "+id+" -----------------\r\nRequest: \r\n");
+    out.println(method+" "+url+" HTTP/1.0");
     if (headers != null) {
       for (String s : headers)  
-        file.println(s);
+        out.println(s);
     }
     if (body != null) {
-      file.println("");
+      out.println("");
       try {
-        file.println(new String(body, "UTF-8"));
+        out.println(new String(body, "UTF-8"));
       } catch (UnsupportedEncodingException e) {
       }
     }
+    out.flush();
+    request.set(buffer);
   }
 
   @Override
   public void logResponse(String outcome, List<String> headers, byte[] body, long length) {
     if (file == null)
       return;
-    file.println("\r\n\r\nResponse ("+Utilities.describeDuration(length)+"): \r\n");
-    file.println(outcome);
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(buffer);
+    out.println("\r\n\r\nResponse ("+Utilities.describeDuration(length)+"): \r\n");
+    out.println(outcome);
     for (String s : headers)  
-      file.println(s);
+      out.println(s);
     if (body != null) {
-      file.println("");
+      out.println("");
       try {
-        file.println(new String(body, "UTF-8"));
+        out.println(new String(body, "UTF-8"));
       } catch (UnsupportedEncodingException e) {
       }
     }
+    out.flush();
+    write(buffer);
+  }
+
+  private void write(ByteArrayOutputStream response) {
+    ByteArrayOutputStream req = request.get();
+    request.remove();
+    if (req == null && response == null) {
+      return;
+    }
+    synchronized (file) {
+      if (req != null) {
+        file.write(req.toByteArray(), 0, req.size());
+      }
+      if (response != null) {
+        file.write(response.toByteArray(), 0, response.size());
+      }
+    }
   }
 
-}
\ No newline at end of file
+}
@@ -29,6 +29,23 @@ public class TypeManager {
     reload();
   }
 
+  /**
+   * A type manager for a copy of the structures that other manages, which starts with
+   * the same indexes as other rather than reloading them from the structures
+   */
+  public TypeManager(CanonicalResourceManager<StructureDefinition> structures, TypeManager other) {
+    super();
+    this.structures = structures;
+    for (String t : other.typeDefinitions.keySet()) {
+      typeDefinitions.put(t, new HashSet<>(other.typeDefinitions.get(t)));
+    }
+    for (String t : other.fhirTypeDefinitions.keySet()) {
+      fhirTypeDefinitions.put(t, new HashSet<>(other.fhirTypeDefinitions.get(t)));
+    }
+    primitiveNames.addAll(other.primitiveNames);
+    dataTypeNames.addAll(other.dataTypeNames);
+  }
+
   public void reload() {
     typeDefinitions.clear();
     primitiveNames.clear();
@@ -135,34 +135,54 @@ public class Element extends Base implements NamedItem {
     }
 	}
 
-	private List<String> comments;// not relevant for production, but useful in documentation
+  /**
+   * The things that only a few elements in a tree ever have. They're kept out of line, 
+   * so that the elements that don't have any of them (nearly all of them) don't pay for them
+   */
+  private static class Extras {
+    private List<String> comments;// not relevant for production, but useful in documentation
+    private Property elementProperty; // this is used when special is set to true - it tracks the underlying element property which is used in a few places
+    private SpecialElement special;
+    private XhtmlNode xhtml; // if this is populated, then value will also hold the string representation
+    private String explicitType; // for xsi:type attribute
+    private List<ValidationMessage> messages;
+    private boolean prohibited;
+    private boolean required;
+    private boolean isNull;
+    private Base source;
+    private boolean ignorePropertyOrder;
+    private List<SliceDefinition> sliceDefinitions;
+    private boolean elided;
+    private String webPath;
+
+    private boolean hasCopiedValues() {
+      return comments != null || xhtml != null || explicitType != null || prohibited || required || isNull || source != null;
+    }
+  }
+
 	private String name;
 	private String type;
 	private String value;
 	private int index = -1;
 	private NamedItemList<Element> children;
 	private Property property;
-  private Property elementProperty; // this is used when special is set to true - it tracks the underlying element property which is used in a few places
 	private int line;
 	private int col;
-	private SpecialElement special;
-	private XhtmlNode xhtml; // if this is populated, then value will also hold the string representation
-	private String explicitType; // for xsi:type attribute
 	private Element parentForValidator;
 	private boolean hasParentForValidator;
 	private String path;
-	private List<ValidationMessage> messages;
-	private boolean prohibited;
-	private boolean required;
   private int descendentCount;
   private int instanceId;
-  private boolean isNull;
-  private Base source;
-  private boolean ignorePropertyOrder;
   private FhirFormat format;
   private Object nativeObject;
-  private List<SliceDefinition> sliceDefinitions;
-  private boolean elided;
+  private Extras extras;
+  
+  private Extras extras() {
+    if (extras == null) {
+      extras = new Extras();
+    }
+    return extras;
+  }
   
 	public Element(String name) {
 		super();
@@ -174,8 +194,10 @@ public class Element extends Base implements NamedItem {
     name = other.name;
     type = other.type;
     property = other.property;
-    elementProperty = other.elementProperty;
-    special = other.special;
+    if (other.extras != null && (other.extras.elementProperty != null || other.extras.special != null)) {
+      extras().elementProperty = other.extras.elementProperty;
+      extras.special = other.extras.special;
+    }
   }
   
   public Element(String name, Property property) {
@@ -197,12 +219,14 @@ public class Element extends Base implements NamedItem {
 
 	public void updateProperty(Property property, SpecialElement special, Property elementProperty) {
 		this.property = property;
-    this.elementProperty = elementProperty;
-		this.special = special;
+		if (extras != null || elementProperty != null || special != null) {
+      extras().elementProperty = elementProperty;
+      extras.special = special;
+		}
 	}
 
 	public SpecialElement getSpecial() {
-		return special;
+		return extras == null ? null : extras.special;
 	}
 
 	public String getName() {
@@ -231,13 +255,13 @@ public class Element extends Base implements NamedItem {
 	}
 
 	public boolean hasComments() {
-		return !(comments == null || comments.isEmpty());
+		return !(extras == null || extras.comments == null || extras.comments.isEmpty());
 	}
 
 	public List<String> getComments() {
-		if (comments == null)
-			comments = new ArrayList<String>();
-		return comments;
+		if (extras().comments == null)
+			extras.comments = new ArrayList<String>();
+		return extras.comments;
 	}
 
 	public Property getProperty() {
@@ -255,11 +279,13 @@ public class Element extends Base implements NamedItem {
 	}
 
 	public boolean isNull() {
-    return isNull;
+    return extras != null && extras.isNull;
   }
 
   public void setNull(boolean isNull) {
-    this.isNull = isNull;
+    if (isNull || extras != null) {
+      extras().isNull = isNull;
+    }
   }
 
   public boolean hasValue() {
@@ -446,7 +472,7 @@ public class Element extends Base implements NamedItem {
   @Override
   public Base setProperty(int hash, String name, Base value) throws FHIRException {
     if ("xhtml".equals(getType()) && (hash == "value".hashCode())) {
-      this.xhtml = TypeConvertor.castToXhtml(value);
+      setXhtml(TypeConvertor.castToXhtml(value));
       this.value =  TypeConvertor.castToXhtmlString(value);
       return this;
     }
@@ -518,10 +544,10 @@ public class Element extends Base implements NamedItem {
       if (childForValue.property.getName().endsWith("[x]"))
         childForValue.name = name+Utilities.capitalize(childForValue.type);
       else if (value.isResource()) {
-        if (childForValue.elementProperty == null)
-          childForValue.elementProperty = childForValue.property;
+        if (childForValue.getElementProperty() == null)
+          childForValue.extras().elementProperty = childForValue.property;
         childForValue.property = ve.property;
-        childForValue.special = SpecialElement.BUNDLE_ENTRY;
+        childForValue.extras().special = SpecialElement.BUNDLE_ENTRY;
       }
       if (ve.children != null) {
         if (childForValue.children == null)
@@ -787,11 +813,13 @@ public class Element extends Base implements NamedItem {
 
   
 	public XhtmlNode getXhtml() {
-		return xhtml;
+		return extras == null ? null : extras.xhtml;
 	}
 
 	public Element setXhtml(XhtmlNode xhtml) {
-		this.xhtml = xhtml;
+		if (xhtml != null || extras != null) {
+		  extras().xhtml = xhtml;
+		}
 		return this;
  	}
 
@@ -803,20 +831,22 @@ public class Element extends Base implements NamedItem {
 		if (value != null) {   
 			return false;
 		}
-		for (Element next : getChildren()) {
-			if (!next.isEmpty()) {
-				return false;
-			}
+		if (children != null) {
+		  for (Element next : children) {
+		    if (!next.isEmpty()) {
+		      return false;
+		    }
+		  }
 		}
 		return true;
 	}
 
   public Property getElementProperty() {
-    return elementProperty;
+    return extras == null ? null : extras.elementProperty;
   }
 
   public boolean hasElementProperty() {
-    return elementProperty != null;
+    return getElementProperty() != null;
   }
 
   public boolean hasChild(String name) {
@@ -917,15 +947,15 @@ public class Element extends Base implements NamedItem {
   }
 
   public boolean isList() {
-    if (elementProperty != null)
-      return elementProperty.isList();
+    if (getElementProperty() != null)
+      return getElementProperty().isList();
     else
       return property.isList();
   }
   
   public boolean isBaseList() {
-    if (elementProperty != null)
-      return elementProperty.isBaseList();
+    if (getElementProperty() != null)
+      return getElementProperty().isBaseList();
     else
       return property.isBaseList();
   }
@@ -975,7 +1005,7 @@ public class Element extends Base implements NamedItem {
       return Integer.compare(i0, i1);
     }
     private int find(Element e0) {
-      int i =  e0.elementProperty != null ? children.indexOf(e0.elementProperty.getDefinition()) :  children.indexOf(e0.property.getDefinition());
+      int i =  e0.getElementProperty() != null ? children.indexOf(e0.getElementProperty().getDefinition()) :  children.indexOf(e0.property.getDefinition());
       return i; 
     }
 
@@ -1077,11 +1107,13 @@ public class Element extends Base implements NamedItem {
   }
 
   public String getExplicitType() {
-    return explicitType;
+    return extras == null ? null : extras.explicitType;
   }
 
   public void setExplicitType(String explicitType) {
-    this.explicitType = explicitType;
+    if (explicitType != null || extras != null) {
+      extras().explicitType = explicitType;
+    }
   }
 
   public boolean hasDescendant(Element element) {
@@ -1172,11 +1204,13 @@ public class Element extends Base implements NamedItem {
   }
 
   public void clear() {
-    comments = null;
+    if (extras != null) {
+      extras.comments = null;
+      extras.elementProperty = null;
+      extras.xhtml = null;
+    }
     children.clear();
     property = null;
-    elementProperty = null;
-    xhtml = null;
     path = null;
   }
 
@@ -1189,18 +1223,18 @@ public class Element extends Base implements NamedItem {
   }  
   
   public void addMessage(ValidationMessage vm) {
-    if (messages == null) {
-      messages = new ArrayList<>();
+    if (extras().messages == null) {
+      extras.messages = new ArrayList<>();
     }
-    messages.add(vm);
+    extras.messages.add(vm);
   }
 
   public boolean hasMessages() {
-    return messages != null && !messages.isEmpty();
+    return extras != null && extras.messages != null && !extras.messages.isEmpty();
   }
 
   public List<ValidationMessage> getMessages() {
-    return messages;
+    return extras == null ? null : extras.messages;
   }
 
   public void removeChild(String name) {
@@ -1210,19 +1244,23 @@ public class Element extends Base implements NamedItem {
   }
 
   public boolean isProhibited() {
-    return prohibited;
+    return extras != null && extras.prohibited;
   }
 
   public void setProhibited(boolean prohibited) {
-    this.prohibited = prohibited;
+    if (prohibited || extras != null) {
+      extras().prohibited = prohibited;
+    }
   }
 
   public boolean isRequired() {
-    return required;
+    return extras != null && extras.required;
   }
 
   public void setRequired(boolean required) {
-    this.required = required;
+    if (required || extras != null) {
+      extras().required = required;
+    }
   }
 
   public int getDescendentCount() {
@@ -1258,34 +1296,36 @@ public class Element extends Base implements NamedItem {
 
   @Override
   public boolean hasValidationInfo() {
-    return hasSource() ? source.hasValidationInfo() : super.hasValidationInfo();
+    return hasSource() ? getSource().hasValidationInfo() : super.hasValidationInfo();
   }
 
   @Override
   public List<ValidationInfo> getValidationInfo() {
-    return hasSource() ? source.getValidationInfo() : super.getValidationInfo();
+    return hasSource() ? getSource().getValidationInfo() : super.getValidationInfo();
   }
 
   @Override
   public ValidationInfo addDefinition(StructureDefinition source, ElementDefinition defn, ValidationMode mode) {
-    if (this.source != null) {
-      return this.source.addDefinition(source, defn, mode);
+    if (hasSource()) {
+      return getSource().addDefinition(source, defn, mode);
     } else {
       return super.addDefinition(source, defn, mode);
     }
   }
 
   public boolean hasSource() {
-    return source != null;
+    return getSource() != null;
   }
 
   
   public Base getSource() {
-    return source;
+    return extras == null ? null : extras.source;
   }
 
   public void setSource(Base source) {
-    this.source = source;
+    if (source != null || extras != null) {
+      extras().source = source;
+    }
   }
 
   public void printToOutput() {
@@ -1299,18 +1339,20 @@ public class Element extends Base implements NamedItem {
   }
 
   private void printToOutput(PrintStream out, String indent) {
+    SpecialElement special = getSpecial();
+    String explicitType = getExplicitType();
     String s = indent+name +(index == -1 ? "" : "["+index+"]") +(special != null ? "$"+special.toHuman(): "")+ (type!= null || explicitType != null ? " : "+type+(explicitType != null ? "/'"+explicitType+"'" : "") : "");
-    if (isNull) {
+    if (isNull()) {
       s = s + " = (null)";
     } else if (value != null) {
       s = s + " = '"+value+"'";      
-    } else if (xhtml != null) {
+    } else if (getXhtml() != null) {
       s = s + " = (xhtml)";
     }
     if (property != null) {
       s = s +" {"+property.summary();
-      if (elementProperty != null) {
-        s = s +" -> "+elementProperty.summary();
+      if (getElementProperty() != null) {
+        s = s +" -> "+getElementProperty().summary();
       }
       s = s + "}";
     }
@@ -1330,7 +1372,7 @@ public class Element extends Base implements NamedItem {
     int e = 0;
     int w = 0;
     int h = 0;
-    for (ValidationMessage msg : messages) {
+    for (ValidationMessage msg : getMessages()) {
       switch (msg.getLevel()) {
       case ERROR:
         e++;
@@ -1440,11 +1482,26 @@ public class Element extends Base implements NamedItem {
     super.copyValues(dst);
     
     Element dest = (Element) dst;
-    if (comments != null) {
-      dest.comments = new ArrayList<>();
-      dest.comments.addAll(comments);
-    } else {
-      dest.comments = null;
+    if (extras != null && extras.hasCopiedValues()) {
+      Extras dx = dest.extras();
+      dx.comments = extras.comments == null ? null : new ArrayList<>(extras.comments);
+      dx.xhtml = extras.xhtml;
+      dx.explicitType = extras.explicitType;
+      dx.prohibited = extras.prohibited;
+      dx.required = extras.required;
+      dx.isNull = extras.isNull;
+      dx.source = extras.source;
+    } else if (dest.extras != null) {
+      dest.extras.comments = null;
+      dest.extras.xhtml = null;
+      dest.extras.explicitType = null;
+      dest.extras.prohibited = false;
+      dest.extras.required = false;
+      dest.extras.isNull = false;
+      dest.extras.source = null;
+    }
+    if (dest.extras != null) {
+      dest.extras.messages = null;
     }
     dest.value = value;
     if (children != null) {
@@ -1457,17 +1514,10 @@ public class Element extends Base implements NamedItem {
     }    
     dest.line = line;
     dest.col = col;
-    dest.xhtml = xhtml;
-    dest.explicitType = explicitType;
     dest.hasParentForValidator = false;
     dest.path = path;
-    dest.messages = null;
-    dest.prohibited = prohibited;
-    dest.required = required;
     dest.descendentCount = descendentCount;
     dest.instanceId = instanceId;
-    dest.isNull = isNull;
-    dest.source = source;
     dest.format = format;
   }
   
@@ -1477,11 +1527,13 @@ public class Element extends Base implements NamedItem {
   }
 
   public boolean isIgnorePropertyOrder() {
-    return ignorePropertyOrder;
+    return extras != null && extras.ignorePropertyOrder;
   }
 
   public void setIgnorePropertyOrder(boolean ignorePropertyOrder) {
-    this.ignorePropertyOrder = ignorePropertyOrder;
+    if (ignorePropertyOrder || extras != null) {
+      extras().ignorePropertyOrder = ignorePropertyOrder;
+    }
     if (children != null) {
       for (Element e : children) {
         e.setIgnorePropertyOrder(ignorePropertyOrder);
@@ -1490,15 +1542,16 @@ public class Element extends Base implements NamedItem {
   }
   
 
-  private String webPath;
   public boolean hasWebPath() {
-    return webPath != null;
+    return getWebPath() != null;
   }
   public String getWebPath() {
-    return webPath;
+    return extras == null ? null : extras.webPath;
   }
   public void setWebPath(String webPath) {
-    this.webPath = webPath;
+    if (webPath != null || extras != null) {
+      extras().webPath = webPath;
+    }
   }
 
   public String getTranslation(String lang) {
@@ -1620,15 +1673,15 @@ public class Element extends Base implements NamedItem {
   }
 
   public void addSliceDefinition(StructureDefinition profile, ElementDefinition definition, ElementDefinition slice) {
-    if (sliceDefinitions == null) {
-      sliceDefinitions = new ArrayList<>();
+    if (extras().sliceDefinitions == null) {
+      extras.sliceDefinitions = new ArrayList<>();
     }
-    sliceDefinitions.add(new SliceDefinition(profile, definition, slice));
+    extras.sliceDefinitions.add(new SliceDefinition(profile, definition, slice));
   }
 
   public boolean hasSlice(StructureDefinition sd, String sliceName) {
-    if (sliceDefinitions != null) {
-      for (SliceDefinition def : sliceDefinitions) {
+    if (extras != null && extras.sliceDefinitions != null) {
+      for (SliceDefinition def : extras.sliceDefinitions) {
         if (def.profile == sd && sliceName.equals(def.definition.getSliceName())) {
           return true;
         }
@@ -1642,11 +1695,13 @@ public class Element extends Base implements NamedItem {
   }
 
   public void setElided(boolean elided) {
-    this.elided = elided;
+    if (elided || extras != null) {
+      extras().elided = elided;
+    }
   }
 
   public boolean isElided() {
-    return this.elided;
+    return extras != null && extras.elided;
   }
   
 }
\ No newline at end of file
@@ -33,7 +33,9 @@ import java.io.ByteArrayInputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -43,7 +45,6 @@ import org.hl7.fhir.r5.conformance.profile.ProfileUtilities;
 import org.hl7.fhir.r5.context.IWorkerContext;
 import org.hl7.fhir.r5.formats.IParser.OutputStyle;
 import org.hl7.fhir.r5.formats.JsonCreator;
-import org.hl7.fhir.utilities.TextFile;
 import org.hl7.fhir.utilities.Utilities;
 import org.hl7.fhir.utilities.i18n.I18nConstants;
 import org.hl7.fhir.utilities.validation.ValidationMessage;
@@ -62,54 +63,98 @@ public class NDJsonParser extends ParserBase {
   }
   
   private ValidatedFragment processLine(int lineCount, String line) throws FHIRException, IOException {
-    List<ValidatedFragment> list = new JsonParser(context).parse(new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8)), lineCount);
+    JsonParser parser = new JsonParser(context);
+    // each line is checked as the source as a whole is, so a line that isn't valid JSON is reported, rather than stopping the parse
+    parser.setupValidation(policy);
+    List<ValidatedFragment> list = parser.parse(new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8)), lineCount);
     return list.get(0);
   }
 
+  /**
+   * Called with the fragments of an NDJSON source as they are parsed, one per line, in order
+   */
+  public interface INDJsonFragmentHandler {
+    void handle(int line, ValidatedFragment fragment) throws FHIRException, IOException;
+  }
+
   @Override
   public List<ValidatedFragment> parse(InputStream inStream) throws IOException, FHIRException {
-    String source = TextFile.streamToString(inStream);
-    int length = source.length();
-    int start = 0;
-    int cursor = start;
-    int lineCount = 0;
-
     List<ValidatedFragment> res = new ArrayList<>();
-    while (cursor < length) {
-      while (cursor < length && source.charAt(cursor) != '\n') {
-        cursor++;
+    parse(inStream, (line, fragment) -> res.add(fragment));
+    return res;
+  }
+
+  /**
+   * Parse the source line by line, handing each fragment to the handler as soon as 
+   * it's parsed. Only one line is held in memory at a time, so this can be used 
+   * for sources of any size, as long as the handler doesn't hang on to the fragments
+   * 
+   * @param inStream - the source. The caller is responsible for closing it
+   * @param handler - called with each line (0 based), and the fragment parsed from it
+   */
+  public void parse(InputStream inStream, INDJsonFragmentHandler handler) throws IOException, FHIRException {
+    LineReader reader = new LineReader(new InputStreamReader(inStream, StandardCharsets.UTF_8));
+    int lineCount = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.endsWith("\r")) {
+        line = line.substring(0, line.length()-1);
+      }
+      if (Utilities.noString(line.trim())) {
+        ValidatedFragment vf = new ValidatedFragment(ValidatedFragment.ITEM_NAME, null, null, false);
+        logError(vf.getErrors(), "2024-06-30", lineCount+1, 1, null, IssueType.INFORMATIONAL, context.formatMessage(I18nConstants.NDJSON_EMPTY_LINE_WARNING), IssueSeverity.WARNING);
+        handler.handle(lineCount, vf);
+      } else {
+        handler.handle(lineCount, processLine(lineCount, line));
       }
-      if (cursor < length) {
-        String line = source.substring(start, cursor);
-        if (line.endsWith("\r")) {
-          line = line.substring(0, line.length()-1);
+      lineCount++;
+    }
+  }
+
+  /**
+   * Reads the source a block at a time, and splits it into lines. Only \n ends a line (unlike 
+   * BufferedReader.readLine, a \r on its own doesn't); a trailing \r is left for the caller to deal with
+   */
+  private static class LineReader {
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int length;
+
+    private LineReader(Reader reader) {
+      this.reader = reader;
+    }
+
+    /**
+     * @return the text up to the next \n (which is not included), or null if there's nothing left to read
+     */
+    private String readLine() throws IOException {
+      StringBuilder b = null;
+      while (true) {
+        if (pos == length) {
+          pos = 0;
+          length = Math.max(reader.read(buffer, 0, buffer.length), 0);
+          if (length == 0) {
+            return b == null ? null : b.toString();
+          }
         }
-        if (Utilities.noString(line.trim())) {
-          ValidatedFragment vf = new ValidatedFragment(ValidatedFragment.ITEM_NAME, null, null, false);
-          logError(vf.getErrors(), "2024-06-30", lineCount+1, 1, null, IssueType.INFORMATIONAL, context.formatMessage(I18nConstants.NDJSON_EMPTY_LINE_WARNING), IssueSeverity.WARNING);
-          res.add(vf);
-        } else {
-          res.add(processLine(lineCount, line));
+        int start = pos;
+        while (pos < length && buffer[pos] != '\n') {
+          pos++;
         }
-        start = cursor+1;
-      } else if (cursor > start) {
-        String line = source.substring(start, cursor);
-        if (line.endsWith("\r")) {
-          line = line.substring(0, line.length()-1);
+        if (pos < length) {
+          pos++;
+          if (b == null) {
+            return new String(buffer, start, pos - 1 - start);
+          }
+          return b.append(buffer, start, pos - 1 - start).toString();
         }
-        if (Utilities.noString(line.trim())) {
-          ValidatedFragment vf = new ValidatedFragment(ValidatedFragment.ITEM_NAME, null, null, false);
-          logError(vf.getErrors(), "2024-06-30", lineCount+1, 1, null, IssueType.INFORMATIONAL, context.formatMessage(I18nConstants.NDJSON_EMPTY_LINE_WARNING), IssueSeverity.WARNING);
-          res.add(vf);
-        } else {
-          res.add(processLine(lineCount, line));
+        if (b == null) {
+          b = new StringBuilder();
         }
-        start = cursor+1;
+        b.append(buffer, start, pos - start);
       }
-      lineCount++;
-      cursor++;
     }
-    return res;
   }
   
   @Override
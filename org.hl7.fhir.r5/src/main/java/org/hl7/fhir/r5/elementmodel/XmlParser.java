@@ -42,9 +42,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
@@ -85,6 +91,7 @@ import org.hl7.fhir.utilities.xml.XMLUtil;
 import org.hl7.fhir.utilities.xml.XMLWriter;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
+import org.w3c.dom.Text;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXParseException;
@@ -94,6 +101,7 @@ public class XmlParser extends ParserBase {
   private boolean allowXsiLocation;
   private String version;
   private boolean elideElements;
+  private boolean streaming;
 
   public XmlParser(IWorkerContext context) {
     super(context);
@@ -117,11 +125,36 @@ public class XmlParser extends ParserBase {
     this.allowXsiLocation = allowXsiLocation;
   }
 
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  /**
+   * If streaming is true, the document is read with a StAX parser and turned into elements as it's
+   * read, instead of being loaded into a DOM first (which, when validating, also means a second pass
+   * to record where each element is). The elements and messages are the same; the elements just don't
+   * have a DOM node as their native object (except for xhtml). With the QUICK validation policy
+   * the DOM is always used, since the first error found has to be the first error in the document
+   */
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
   public List<ValidatedFragment> parse(InputStream inStream) throws FHIRFormatError, DefinitionException, FHIRException, IOException {
 
     byte[] content = TextFile.streamToBytes(inStream);
     ValidatedFragment focusFragment = new ValidatedFragment(ValidatedFragment.FOCUS_NAME, "xml", content, false);
 
+    if (streaming && policy != ValidationPolicy.QUICK) {
+      if (policy == ValidationPolicy.EVERYTHING) {
+        version = checkHeader(focusFragment.getErrors(), new ByteArrayInputStream(content));
+      }
+      focusFragment.setElement(parseStreamed(focusFragment.getErrors(), content));
+      List<ValidatedFragment> res = new ArrayList<>();
+      res.add(focusFragment);
+      return res;
+    }
+
     ByteArrayInputStream stream = new ByteArrayInputStream(content);
     Document doc = null;
     try {
@@ -682,6 +715,664 @@ public class XmlParser extends ParserBase {
     }
   }
 
+  // -- streaming -----------------------------------------------------------------------------
+
+  /*
+   * The streaming parser reads the document with StAX and builds the element model as it goes,
+   * without a DOM. It produces the same elements and messages as the DOM based code above, in the
+   * same order; where that code looks at the whole content of a node before processing it (the
+   * direct text of an element, whether an element is empty) the streaming code works it out when
+   * it gets to the end of the element, and inserts what it finds at the point the DOM code would
+   * have added it
+   */
+
+  /**
+   * A pull parser over the document, counting what it has seen so far, so that the parser can
+   * tell whether there was any text or element content between two points
+   */
+  private static class XmlCursor {
+    private final XMLStreamReader reader;
+    private long text;
+    private long elements;
+    private Document document;
+
+    private XmlCursor(XMLStreamReader reader) {
+      this.reader = reader;
+    }
+
+    private int next() throws XMLStreamException {
+      int event = reader.next();
+      switch (event) {
+      case XMLStreamConstants.START_ELEMENT:
+        elements++;
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.SPACE:
+      case XMLStreamConstants.CDATA:
+        if (!isBlank(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength())) {
+          text++;
+        }
+        break;
+      case XMLStreamConstants.DTD:
+        // the same as the DOM parser, which is set up to disallow any doctype declaration
+        throw new XMLStreamException("DOCTYPE is disallowed when the feature \""+XMLUtil.APACHE_XML_FEATURES_DISALLOW_DOCTYPE_DECL+"\" set to true.", reader.getLocation());
+      default:
+        break;
+      }
+      return event;
+    }
+
+    /**
+     * Read to the end of the current element
+     */
+    private void skip() throws XMLStreamException {
+      int depth = 1;
+      while (depth > 0) {
+        int event = next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+      }
+    }
+
+    private Document getDocument() throws FHIRException {
+      if (document == null) {
+        try {
+          DocumentBuilderFactory factory = XMLUtil.newXXEProtectedDocumentBuilderFactory();
+          factory.setNamespaceAware(true);
+          document = factory.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+          throw new FHIRException(e.getMessage(), e);
+        }
+      }
+      return document;
+    }
+
+    private static boolean isBlank(char[] chars, int start, int length) {
+      for (int i = start; i < start + length; i++) {
+        if (chars[i] > ' ') {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * What's known about an element once the parser has read its start tag
+   */
+  private static class StaxNode {
+    private String ns;
+    private String name;
+    private String nodeName;
+    private int line;
+    private int col;
+    private boolean hasAttributes;
+    // in the order a DOM NamedNodeMap has them (by name), including the namespace declarations
+    private List<StaxAttribute> attributes = new ArrayList<>();
+    private long textMark;
+    private long elementMark;
+
+    private String getAttribute(String nodeName) {
+      for (StaxAttribute a : attributes) {
+        if (a.nodeName.equals(nodeName)) {
+          return a.value;
+        }
+      }
+      return "";
+    }
+
+    private String getAttributeNS(String ns, String name) {
+      for (StaxAttribute a : attributes) {
+        if (a.name.equals(name) && ns.equals(a.ns)) {
+          return a.value;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static class StaxAttribute {
+    private final String ns;
+    private final String name;
+    private final String nodeName;
+    private final String value;
+
+    private StaxAttribute(String ns, String name, String nodeName, String value) {
+      this.ns = ns;
+      this.name = name;
+      this.nodeName = nodeName;
+      this.value = value;
+    }
+
+    private boolean isNamespaceDeclaration() {
+      return nodeName.equals("xmlns") || nodeName.startsWith("xmlns:");
+    }
+  }
+
+  private Element parseStreamed(List<ValidationMessage> errors, byte[] content) throws FHIRFormatError, DefinitionException, FHIRException, IOException {
+    int mark = errors.size();
+    try {
+      XMLStreamReader reader = XMLUtil.newXXEProtectedXMLInputFactory().createXMLStreamReader(new ByteArrayInputStream(content));
+      try {
+        XmlCursor cursor = new XmlCursor(reader);
+        List<String> comments = new ArrayList<>();
+        int instructions = 0;
+        int event = cursor.next();
+        while (event != XMLStreamConstants.START_ELEMENT) {
+          if (event == XMLStreamConstants.END_DOCUMENT) {
+            throw new XMLStreamException("Premature end of file.", reader.getLocation());
+          } else if (event == XMLStreamConstants.COMMENT) {
+            comments.add(reader.getText());
+          } else if (event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+            instructions++;
+          }
+          event = cursor.next();
+        }
+        StaxNode root = startNode(cursor);
+        Element result = parseStreamed(errors, cursor, root, comments);
+        while (reader.hasNext()) {
+          if (cursor.next() == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+            instructions++;
+          }
+        }
+        if (policy == ValidationPolicy.EVERYTHING && FormatUtilities.FHIR_NS.equals(root.ns)) {
+          List<ValidationMessage> list = new ArrayList<>();
+          for (int i = 0; i < instructions; i++) {
+            logError(list, ValidationMessage.NO_RULE_DATE, 0, 0, "(document)", IssueType.INVALID, context.formatMessage(
+                I18nConstants.NO_PROCESSING_INSTRUCTIONS_ALLOWED_IN_RESOURCES), IssueSeverity.ERROR);
+          }
+          errors.addAll(mark, list);
+        }
+        return result;
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      // the DOM parser doesn't get as far as producing anything if the XML isn't well formed
+      while (errors.size() > mark) {
+        errors.remove(errors.size() - 1);
+      }
+      String msg = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+      if (msg.contains("Message: ")) {
+        msg = msg.substring(msg.indexOf("Message: ")+9);
+      }
+      Location loc = e.getLocation();
+      logError(errors, ValidationMessage.NO_RULE_DATE, loc == null ? 0 : loc.getLineNumber(), loc == null ? 0 : loc.getColumnNumber(), "(xml)", IssueType.INVALID, msg.trim(), IssueSeverity.FATAL);
+      return null;
+    }
+  }
+
+  private Element parseStreamed(List<ValidationMessage> errors, XmlCursor cursor, StaxNode node, List<String> comments) throws FHIRFormatError, DefinitionException, FHIRException, IOException, XMLStreamException {
+    String path = "/"+pathPrefix(node.ns)+node.name;
+
+    StructureDefinition sd = getDefinition(errors, node.line, node.col, (node.ns == null ? "noNamespace" : node.ns), node.name);
+    if (sd == null) {
+      cursor.skip();
+      return null;
+    }
+
+    Element result = new Element(node.name, new Property(context, sd.getSnapshot().getElement().get(0), sd, getProfileUtilities(), getContextUtilities())).setFormat(FhirFormat.XML);
+    result.setPath(node.name);
+    int errorMark = errors.size();
+    checkElement(errors, node, result, path, result.getProperty(), false);
+    result.markLocation(node.line, node.col);
+    result.setType(node.name);
+    parseChildren(errors, path, cursor, node, result, comments);
+    checkContent(errors, errorMark, cursor, node, path);
+    result.numberChildren();
+    return result;
+  }
+
+  private StaxNode startNode(XmlCursor cursor) {
+    XMLStreamReader reader = cursor.reader;
+    StaxNode node = new StaxNode();
+    node.ns = nsOrNull(reader.getNamespaceURI());
+    node.name = reader.getLocalName();
+    node.nodeName = qName(reader.getPrefix(), node.name);
+    if (policy == ValidationPolicy.EVERYTHING) {
+      // without validation, the DOM based parser doesn't keep track of locations
+      node.line = reader.getLocation().getLineNumber();
+      node.col = reader.getLocation().getColumnNumber();
+    }
+    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+      String prefix = reader.getNamespacePrefix(i);
+      String uri = reader.getNamespaceURI(i);
+      node.attributes.add(new StaxAttribute(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, Utilities.noString(prefix) ? "xmlns" : prefix, Utilities.noString(prefix) ? "xmlns" : "xmlns:"+prefix, uri == null ? "" : uri));
+    }
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String name = reader.getAttributeLocalName(i);
+      node.attributes.add(new StaxAttribute(nsOrNull(reader.getAttributeNamespace(i)), name, qName(reader.getAttributePrefix(i), name), reader.getAttributeValue(i)));
+    }
+    node.hasAttributes = reader.getAttributeCount() > 0;
+    node.attributes.sort((a1, a2) -> a1.nodeName.compareTo(a2.nodeName));
+    node.textMark = cursor.text;
+    node.elementMark = cursor.elements;
+    return node;
+  }
+
+  private String nsOrNull(String ns) {
+    return Utilities.noString(ns) ? null : ns;
+  }
+
+  private String qName(String prefix, String name) {
+    return Utilities.noString(prefix) ? name : prefix+":"+name;
+  }
+
+  private int endLine(XmlCursor cursor) {
+    return policy == ValidationPolicy.EVERYTHING ? cursor.reader.getLocation().getLineNumber() : 0;
+  }
+
+  private int endCol(XmlCursor cursor) {
+    return policy == ValidationPolicy.EVERYTHING ? cursor.reader.getLocation().getColumnNumber() : 0;
+  }
+
+  private void checkElement(List<ValidationMessage> errors, StaxNode node, Element e, String path, Property prop, boolean xsiTypeChecked) throws FHIRFormatError {
+    if (policy == ValidationPolicy.EVERYTHING) {
+      // whether the element is empty is checked by checkContent, when the end of the element is reached
+      String ns = prop.getXmlNamespace();
+      String elementNs = node.ns;
+      if (elementNs == null) {
+        elementNs = "noNamespace";
+      }
+      if (!elementNs.equals(ns)) {
+        logError(errors, ValidationMessage.NO_RULE_DATE, node.line, node.col, path, IssueType.INVALID, context.formatMessage(I18nConstants.WRONG_NAMESPACE__EXPECTED_, ns), IssueSeverity.ERROR);
+      }
+      if (!xsiTypeChecked) {
+        String xsiType = node.getAttributeNS(FormatUtilities.NS_XSI, "type");
+        if (!Utilities.noString(xsiType)) {
+          String actualType = prop.getXmlTypeName();
+          if (xsiType.equals(actualType)) {
+            logError(errors, "2023-10-12", node.line, node.col, path, IssueType.INVALID, context.formatMessage(I18nConstants.XSI_TYPE_UNNECESSARY), IssueSeverity.INFORMATION);
+          } else {
+            StructureDefinition sd = findLegalConstraint(xsiType, actualType);
+            if (sd != null) {
+              e.setType(sd.getType());
+              e.setExplicitType(xsiType);
+            } else {
+              logError(errors, "2023-10-12", node.line, node.col, path, IssueType.INVALID, context.formatMessage(I18nConstants.XSI_TYPE_WRONG, xsiType, actualType), IssueSeverity.ERROR);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * The empty element check of checkElement, once the content of the element has been read. The
+   * error goes at mark, where it would have been if it had been found when the element started
+   */
+  private void checkContent(List<ValidationMessage> errors, int mark, XmlCursor cursor, StaxNode node, String path) throws FHIRFormatError {
+    if (policy == ValidationPolicy.EVERYTHING && FormatUtilities.FHIR_NS.equals(node.ns) && !node.hasAttributes && cursor.text == node.textMark && cursor.elements == node.elementMark) {
+      List<ValidationMessage> list = new ArrayList<>();
+      logError(list, ValidationMessage.NO_RULE_DATE, node.line, node.col, path, IssueType.INVALID, context.formatMessage(I18nConstants.ELEMENT_MUST_HAVE_SOME_CONTENT), IssueSeverity.ERROR);
+      errors.addAll(mark, list);
+    }
+  }
+
+  private void parseChildren(List<ValidationMessage> errors, String path, XmlCursor cursor, StaxNode node, Element element, List<String> preceding) throws FHIRFormatError, FHIRException, IOException, DefinitionException, XMLStreamException {
+    XMLStreamReader reader = cursor.reader;
+    element.getComments().addAll(preceding);
+    List<Property> properties = element.getProperty().getChildProperties(element.getName(), node.getAttributeNS(FormatUtilities.NS_XSI, "type"));
+    Property cgProp = getChoiceGroupProp(properties);
+    Property mtProp = cgProp == null ? null : getTextProp(cgProp.getChildProperties(null, null));
+
+    // the direct text, and the text nodes in it that aren't blank, with where the DOM code would say they are
+    StringBuilder direct = mtProp == null ? new StringBuilder() : null;
+    List<String> strayText = new ArrayList<>();
+    List<int[]> strayLocations = new ArrayList<>();
+
+    int errorMark = errors.size();
+    List<String> comments = new ArrayList<>();
+    int[] lastEnd = null;
+    boolean hasElements = false;
+    String lastName = null;
+    int repeatCount = 0;
+    StringBuilder textNode = null;
+    int event = cursor.next();
+    while (true) {
+      if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE) {
+        if (textNode == null) {
+          textNode = new StringBuilder();
+        }
+        textNode.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+        event = cursor.next();
+        continue;
+      }
+      if (textNode != null) {
+        String text = textNode.toString();
+        textNode = null;
+        if (!Utilities.noString(text.trim())) {
+          if (direct != null) {
+            strayText.add(text);
+            strayLocations.add(lastEnd);
+          } else {
+            if (cgProp.getName().equals(lastName)) {
+              repeatCount++;
+            } else {
+              lastName = cgProp.getName();
+              repeatCount = 0;
+            }
+
+            Element cgn = new Element(cgProp.getName(), cgProp).setFormat(FhirFormat.XML);
+            cgn.setPath(element.getPath()+"."+cgProp.getName()+"["+repeatCount+"]");
+            element.getChildren().add(cgn);
+
+            Element n = new Element(mtProp.getName(), mtProp, mtProp.getType(), text.trim()).markLocation(0, 0).setFormat(FhirFormat.XML);
+            cgn.getChildren().add(n);
+            n.setPath(element.getPath()+"."+mtProp.getName());
+          }
+        }
+        if (direct != null) {
+          direct.append(text);
+        }
+      }
+
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        break;
+      } else if (event == XMLStreamConstants.START_ELEMENT) {
+        StaxNode child = startNode(cursor);
+        for (int i = 0; i < strayLocations.size(); i++) {
+          if (strayLocations.get(i) == null) {
+            strayLocations.set(i, new int[] {child.line, child.col});
+          }
+        }
+        List<String> childComments = comments;
+        comments = new ArrayList<>();
+        hasElements = true;
+
+        Property property = getElementProp(properties, child.name, child.ns);
+        if (property != null) {
+          if (property.getName().equals(lastName)) {
+            repeatCount++;
+          } else {
+            lastName = property.getName();
+            repeatCount = 0;
+          }
+          if (!property.isChoice() && "xhtml".equals(property.getType())) {
+            org.w3c.dom.Element dom = readDom(cursor);
+            XhtmlNode xhtml;
+            if (property.getDefinition().hasRepresentation(PropertyRepresentation.CDATEXT))
+              xhtml = new CDANarrativeFormat().convert(dom);
+            else {
+              XhtmlParser xp = new XhtmlParser();
+              xhtml = xp.parseHtmlNode(dom);
+              if (policy == ValidationPolicy.EVERYTHING) {
+                for (StringPair s : xp.getValidationIssues()) {
+                  logError(errors, "2022-11-17", child.line, child.col, path, IssueType.INVALID, context.formatMessage(s.getName(), s.getValue()), IssueSeverity.ERROR);
+                }
+              }
+            }
+            Element n = new Element(property.getName(), property, "xhtml", new XhtmlComposer(XhtmlComposer.XML, false).compose(xhtml)).setXhtml(xhtml).markLocation(child.line, child.col).setFormat(FhirFormat.XML).setNativeObject(dom);
+            n.setPath(element.getPath()+"."+property.getName());
+            element.getChildren().add(n);
+          } else {
+            String npath = path+"/"+pathPrefix(child.ns)+child.name;
+            String name = child.name;
+            if (!property.isChoice() && !name.equals(property.getName())) {
+              name = property.getName();
+            }
+            Element n = new Element(name, property).markLocation(child.line, child.col).setFormat(FhirFormat.XML);
+            if (property.isList()) {
+              n.setPath(element.getPath()+"."+property.getName()+"["+repeatCount+"]");
+            } else {
+              n.setPath(element.getPath()+"."+property.getName());
+            }
+            boolean xsiTypeChecked = false;
+            boolean ok = true;
+            if (property.isChoice()) {
+              if (property.getDefinition().hasRepresentation(PropertyRepresentation.TYPEATTR)) {
+                String xsiType = child.getAttributeNS(FormatUtilities.NS_XSI, "type");
+                if (Utilities.noString(xsiType)) {
+                  if (ToolingExtensions.hasExtension(property.getDefinition(), "http://hl7.org/fhir/StructureDefinition/elementdefinition-defaulttype")) {
+                    xsiType = ToolingExtensions.readStringExtension(property.getDefinition(), "http://hl7.org/fhir/StructureDefinition/elementdefinition-defaulttype");
+                    n.setType(xsiType);
+                  } else {
+                    logError(errors, ValidationMessage.NO_RULE_DATE, child.line, child.col, path, IssueType.STRUCTURE, context.formatMessage(I18nConstants.NO_TYPE_FOUND_ON_, child.name), IssueSeverity.ERROR);
+                    ok = false;
+                  }
+                } else {
+                  if (xsiType.contains(":"))
+                    xsiType = xsiType.substring(xsiType.indexOf(":")+1);
+                  n.setType(xsiType);
+                  n.setExplicitType(xsiType);
+                }
+                xsiTypeChecked = true;
+              } else
+                n.setType(n.getType());
+            }
+            int childMark = errors.size();
+            checkElement(errors, child, n, npath, n.getProperty(), xsiTypeChecked);
+            element.getChildren().add(n);
+            if (ok) {
+              if (property.isResource())
+                parseResource(errors, npath, cursor, n, property);
+              else
+                parseChildren(errors, npath, cursor, child, n, childComments);
+            } else {
+              cursor.skip();
+            }
+            checkContent(errors, childMark, cursor, child, npath);
+          }
+        } else {
+          if (cgProp != null) {
+            property = getElementProp(cgProp.getChildProperties(null, null), child.name, child.ns);
+            if (property != null) {
+              if (cgProp.getName().equals(lastName)) {
+                repeatCount++;
+              } else {
+                lastName = cgProp.getName();
+                repeatCount = 0;
+              }
+
+              String npath = path+"/"+pathPrefix(cgProp.getXmlNamespace())+cgProp.getName();
+              Element cgn = new Element(cgProp.getName(), cgProp).setFormat(FhirFormat.XML);
+              cgn.setPath(element.getPath()+"."+cgProp.getName()+"["+repeatCount+"]");
+              element.getChildren().add(cgn);
+
+              npath = npath+"/"+pathPrefix(child.ns)+child.name;
+              Element n = new Element(child.name, property).markLocation(child.line, child.col).setFormat(FhirFormat.XML);
+              cgn.getChildren().add(n);
+              n.setPath(element.getPath()+"."+property.getName());
+              int childMark = errors.size();
+              checkElement(errors, child, n, npath, n.getProperty(), false);
+              parseChildren(errors, npath, cursor, child, n, childComments);
+              checkContent(errors, childMark, cursor, child, npath);
+            }
+          }
+          if (property == null) {
+            logError(errors, ValidationMessage.NO_RULE_DATE, child.line, child.col, path, IssueType.STRUCTURE, context.formatMessage(I18nConstants.UNDEFINED_ELEMENT_, child.name, path), IssueSeverity.ERROR);
+            cursor.skip();
+          }
+        }
+        lastEnd = new int[] {endLine(cursor), endCol(cursor)};
+      } else if (event == XMLStreamConstants.COMMENT) {
+        comments.add(reader.getText());
+      } else if (event == XMLStreamConstants.CDATA) {
+        logError(errors, ValidationMessage.NO_RULE_DATE, 0, 0, path, IssueType.STRUCTURE, context.formatMessage(I18nConstants.CDATA_IS_NOT_ALLOWED), IssueSeverity.ERROR);
+      } else if (event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+        logError(errors, ValidationMessage.NO_RULE_DATE, 0, 0, path, IssueType.STRUCTURE, context.formatMessage(I18nConstants.NODE_TYPE__IS_NOT_ALLOWED, Integer.toString(Node.PROCESSING_INSTRUCTION_NODE)), IssueSeverity.ERROR);
+      }
+      event = cursor.next();
+    }
+    if (hasElements) {
+      element.getComments().addAll(comments);
+    }
+
+    // now the text and the attributes, which the DOM code processes before any of the child elements
+    List<Element> head = new ArrayList<>();
+    List<ValidationMessage> headErrors = new ArrayList<>();
+    int line = node.line;
+    int col = node.col;
+    String text = direct == null ? null : direct.toString().trim();
+    if (!Utilities.noString(text)) {
+      Property property = getTextProp(properties);
+      if (property != null) {
+        if ("ED.data[x]".equals(property.getDefinition().getId()) || (property.getDefinition()!=null && property.getDefinition().getBase()!=null && "ED.data[x]".equals(property.getDefinition().getBase().getPath()))) {
+          if ("B64".equals(node.getAttribute("representation"))) {
+            Element n = new Element("dataBase64Binary", property, "base64Binary", text).markLocation(line, col).setFormat(FhirFormat.XML);
+            n.setPath(element.getPath()+"."+property.getName());
+            head.add(n);
+          } else {
+            Element n = new Element("dataString", property, "string", text).markLocation(line, col).setFormat(FhirFormat.XML);
+            n.setPath(element.getPath()+"."+property.getName());
+            head.add(n);
+          }
+        } else {
+          Element n = new Element(property.getName(), property, property.getType(), text).markLocation(line, col).setFormat(FhirFormat.XML);
+          n.setPath(element.getPath()+"."+property.getName());
+          head.add(n);
+        }
+      } else {
+        for (int i = 0; i < strayText.size(); i++) {
+          int[] loc = strayLocations.get(i);
+          line = loc == null ? 0 : loc[0];
+          col = loc == null ? 0 : loc[1];
+          logError(headErrors, ValidationMessage.NO_RULE_DATE, line, col, path, IssueType.STRUCTURE, context.formatMessage(I18nConstants.TEXT_SHOULD_NOT_BE_PRESENT, Utilities.makeSingleLine(strayText.get(i).trim())), IssueSeverity.ERROR);
+        }
+      }
+    }
+
+    for (StaxAttribute attr : node.attributes) {
+      if (!validAttrValue(attr.value)) {
+        logError(headErrors, ValidationMessage.NO_RULE_DATE, line, col, path, IssueType.STRUCTURE, context.formatMessage(I18nConstants.XML_ATTR_VALUE_INVALID, attr.nodeName), IssueSeverity.ERROR);
+      }
+      if (!attr.isNamespaceDeclaration()) {
+        Property property = getAttrProp(properties, attr.name, attr.ns);
+        if (property != null) {
+          String av = attr.value;
+          if (ToolingExtensions.hasExtension(property.getDefinition(), ToolingExtensions.EXT_DATE_FORMAT))
+            av = convertForDateFormatFromExternal(ToolingExtensions.readStringExtension(property.getDefinition(), ToolingExtensions.EXT_DATE_FORMAT), av);
+          if (property.getName().equals("value") && element.isPrimitive())
+            element.setValue(av);
+          else {
+            String[] vl = {av};
+            if (property.isList() && av.contains(" ")) {
+              vl = av.split(" ");
+            }
+            for (String v : vl) {
+              Element n = new Element(property.getName(), property, property.getType(), v).markLocation(line, col).setFormat(FhirFormat.XML);
+              n.setPath(element.getPath()+"."+property.getName());
+              head.add(n);
+            }
+          }
+        } else {
+          boolean ok = false;
+          if (FormatUtilities.FHIR_NS.equals(node.ns)) {
+            if (attr.name.equals("schemaLocation") && FormatUtilities.NS_XSI.equals(attr.ns)) {
+              ok = ok || allowXsiLocation;
+            }
+          } else
+            ok = ok || (attr.name.equals("schemaLocation")); // xsi:schemalocation allowed for non FHIR content
+          ok = ok || (hasTypeAttr(element, head) && attr.name.equals("type") && FormatUtilities.NS_XSI.equals(attr.ns)); // xsi:type allowed if element says so
+          if (!ok) {
+            logError(headErrors, ValidationMessage.NO_RULE_DATE, node.line, node.col, path, IssueType.STRUCTURE, context.formatMessage(I18nConstants.UNDEFINED_ATTRIBUTE__ON__FOR_TYPE__PROPERTIES__, attr.nodeName, node.nodeName, element.fhirType(), properties), IssueSeverity.ERROR);
+          }
+        }
+      }
+    }
+    for (int i = 0; i < head.size(); i++) {
+      element.getChildren().add(i, head.get(i));
+    }
+    errors.addAll(errorMark, headErrors);
+  }
+
+  /**
+   * hasTypeAttr, looking only at the children that the DOM code has when it processes the attributes
+   */
+  private boolean hasTypeAttr(Element e, List<Element> head) {
+    if (isTypeAttr(e.getProperty()))
+      return true;
+    for (Element c : head) {
+      if (hasTypeAttr(c))
+        return true;
+    }
+    return e.getType() != null && e.getType().startsWith(Constants.NS_CDA_ROOT);
+  }
+
+  private void parseResource(List<ValidationMessage> errors, String string, XmlCursor cursor, Element parent, Property elementProperty) throws FHIRFormatError, DefinitionException, FHIRException, IOException, XMLStreamException {
+    List<String> comments = new ArrayList<>();
+    int event = cursor.next();
+    while (event != XMLStreamConstants.START_ELEMENT) {
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        throw new FHIRFormatError(context.formatMessage(I18nConstants.CONTAINED_RESOURCE_DOES_NOT_APPEAR_TO_BE_A_FHIR_RESOURCE_UNKNOWN_NAME_, ""));
+      } else if (event == XMLStreamConstants.COMMENT) {
+        comments.add(cursor.reader.getText());
+      }
+      event = cursor.next();
+    }
+    StaxNode res = startNode(cursor);
+    String name = res.name;
+    StructureDefinition sd = context.fetchResource(StructureDefinition.class, ProfileUtilities.sdNs(name, null));
+    if (sd == null)
+      throw new FHIRFormatError(context.formatMessage(I18nConstants.CONTAINED_RESOURCE_DOES_NOT_APPEAR_TO_BE_A_FHIR_RESOURCE_UNKNOWN_NAME_, res.name));
+    parent.updateProperty(new Property(context, sd.getSnapshot().getElement().get(0), sd, getProfileUtilities(), getContextUtilities()), SpecialElement.fromProperty(parent.getProperty()), elementProperty);
+    parent.setType(name);
+    parseChildren(errors, res.name, cursor, res, parent, comments);
+    // anything else in the container is ignored
+    cursor.skip();
+  }
+
+  /**
+   * Read the element the cursor is on into a DOM element, for the xhtml and CDA narrative parsers
+   */
+  private org.w3c.dom.Element readDom(XmlCursor cursor) throws XMLStreamException, FHIRException {
+    Document doc = cursor.getDocument();
+    XMLStreamReader reader = cursor.reader;
+    org.w3c.dom.Element root = domElement(doc, reader);
+    Node current = root;
+    while (true) {
+      switch (cursor.next()) {
+      case XMLStreamConstants.START_ELEMENT:
+        org.w3c.dom.Element e = domElement(doc, reader);
+        current.appendChild(e);
+        current = e;
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        if (current == root) {
+          return root;
+        }
+        current = current.getParentNode();
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.SPACE:
+        Node last = current.getLastChild();
+        if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+          ((Text) last).appendData(reader.getText());
+        } else {
+          current.appendChild(doc.createTextNode(reader.getText()));
+        }
+        break;
+      case XMLStreamConstants.CDATA:
+        current.appendChild(doc.createCDATASection(reader.getText()));
+        break;
+      case XMLStreamConstants.COMMENT:
+        current.appendChild(doc.createComment(reader.getText()));
+        break;
+      case XMLStreamConstants.PROCESSING_INSTRUCTION:
+        current.appendChild(doc.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+        break;
+      default:
+        break;
+      }
+    }
+  }
+
+  private org.w3c.dom.Element domElement(Document doc, XMLStreamReader reader) {
+    org.w3c.dom.Element e = doc.createElementNS(nsOrNull(reader.getNamespaceURI()), qName(reader.getPrefix(), reader.getLocalName()));
+    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+      String prefix = reader.getNamespacePrefix(i);
+      String uri = reader.getNamespaceURI(i);
+      e.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, Utilities.noString(prefix) ? "xmlns" : "xmlns:"+prefix, uri == null ? "" : uri);
+    }
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      e.setAttributeNS(nsOrNull(reader.getAttributeNamespace(i)), qName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+    }
+    return e;
+  }
+
   private boolean isAttr(Property property) {
     for (Enumeration<PropertyRepresentation> r : property.getDefinition().getRepresentation()) {
       if (r.getValue() == PropertyRepresentation.XMLATTR) {
@@ -0,0 +1,94 @@
+package org.hl7.fhir.r5.fhirpath;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, thread safe LRU cache of parsed FHIRPath expressions.
+ *
+ * When a cache is set on a FHIRPathEngine (see FHIRPathEngine.setExpressionCache), parse(String)
+ * and all the evaluate* methods that take a path as a String look the expression up here before
+ * lexing and parsing it. A cache can be shared by several engines (e.g. one per worker thread),
+ * provided they all have the same kind of host services, since the host services decide which custom
+ * functions are valid when an expression is parsed.
+ *
+ * Expressions that fail to parse are not cached.
+ *
+ * The cache keeps its own copy of each parsed tree, and FHIRPathEngine hands out a fresh copy of it
+ * every time the expression is parsed, because checking an expression stores the types on its nodes.
+ * Copying a tree is much cheaper than lexing and parsing the expression again. Trees put in the cache
+ * directly must not be modified afterwards
+ */
+public class ExpressionCache {
+
+  public static final int DEFAULT_CAPACITY = 5000;
+
+  private final int capacity;
+  private final Map<String, ExpressionNode> map;
+  private long hits;
+  private long misses;
+
+  public ExpressionCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public ExpressionCache(int capacity) {
+    super();
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Expression cache capacity must be at least 1");
+    }
+    this.capacity = capacity;
+    this.map = new LinkedHashMap<String, ExpressionNode>(Math.min(capacity, 1024), 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ExpressionNode> eldest) {
+        return size() > ExpressionCache.this.capacity;
+      }
+    };
+  }
+
+  public synchronized ExpressionNode get(String path, boolean allowDoubleQuotes) {
+    ExpressionNode node = map.get(key(path, allowDoubleQuotes));
+    if (node == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return node;
+  }
+
+  public synchronized void put(String path, boolean allowDoubleQuotes, ExpressionNode node) {
+    map.put(key(path, allowDoubleQuotes), node);
+  }
+
+  // the same text can parse differently depending on whether double quotes are allowed
+  private String key(String path, boolean allowDoubleQuotes) {
+    return allowDoubleQuotes ? "\"" + path : "'" + path;
+  }
+
+  public synchronized void clear() {
+    map.clear();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public synchronized int size() {
+    return map.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized String summary() {
+    long total = hits + misses;
+    return "Expression Cache: " + map.size() + "/" + capacity + " entries, " + hits + " hits, " + misses + " misses" + (total == 0 ? "" : " (" + (hits * 100 / total) + "% hit rate)");
+  }
+}
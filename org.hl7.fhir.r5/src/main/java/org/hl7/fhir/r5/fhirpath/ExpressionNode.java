@@ -736,5 +736,34 @@ public class ExpressionNode {
   public boolean isNullSet() {
     return kind == Kind.Constant && constant == null;
   }
+
+  /**
+   * A copy of the tree, without the types that were worked out when it was checked. The constants
+   * are not copied; they are not changed when the expression is executed
+   */
+  public ExpressionNode copy() {
+    ExpressionNode res = new ExpressionNode(0);
+    res.uniqueId = uniqueId;
+    res.kind = kind;
+    res.name = name;
+    res.constant = constant;
+    res.function = function;
+    if (parameters != null) {
+      res.parameters = new ArrayList<ExpressionNode>(parameters.size());
+      for (ExpressionNode p : parameters) {
+        res.parameters.add(p.copy());
+      }
+    }
+    res.inner = inner == null ? null : inner.copy();
+    res.group = group == null ? null : group.copy();
+    res.operation = operation;
+    res.proximal = proximal;
+    res.opNext = opNext == null ? null : opNext.copy();
+    res.start = start;
+    res.end = end;
+    res.opStart = opStart;
+    res.opEnd = opEnd;
+    return res;
+  }
 		
 }
\ No newline at end of file
@@ -184,6 +184,7 @@ public class FHIRPathEngine {
   private boolean allowDoubleQuotes;
   private List<IssueMessage> typeWarnings = new ArrayList<>();
   private boolean emitSQLonFHIRWarning;
+  private ExpressionCache expressionCache; // if not null, parsed expressions are cached and reused (see ExpressionCache)
 
   // if the fhir path expressions are allowed to use constants beyond those defined in the specification
   // the application can implement them by providing a constant resolver 
@@ -407,6 +408,20 @@ public class FHIRPathEngine {
   }
 
   public ExpressionNode parse(String path, String name) throws FHIRLexerException {
+    if (expressionCache == null) {
+      return parseUncached(path, name);
+    }
+    // check() stores types on the tree it is given, so the cached tree is never handed out
+    ExpressionNode result = expressionCache.get(path, allowDoubleQuotes);
+    if (result == null) {
+      result = parseUncached(path, name);
+      expressionCache.put(path, allowDoubleQuotes, result.copy());
+      return result;
+    }
+    return result.copy();
+  }
+
+  private ExpressionNode parseUncached(String path, String name) throws FHIRLexerException {
     FHIRLexer lexer = new FHIRLexer(path, name, false, allowDoubleQuotes);
     if (lexer.done()) {
       throw lexer.error("Path cannot be empty");
@@ -6882,6 +6897,19 @@ public class FHIRPathEngine {
     this.allowDoubleQuotes = allowDoubleQuotes;    
   }
 
+  public ExpressionCache getExpressionCache() {
+    return expressionCache;
+  }
+
+  /**
+   * Turn on caching of parsed expressions for parse(String) and the evaluate* methods that take a 
+   * path as a String. The cache may be shared with other engines that have the same host services.
+   * Pass null to turn caching off
+   */
+  public void setExpressionCache(ExpressionCache expressionCache) {
+    this.expressionCache = expressionCache;
+  }
+
   public boolean isEmitSQLonFHIRWarning() {
     return emitSQLonFHIRWarning;
   }
@@ -59,15 +59,21 @@ POSSIBILITY OF SUCH DAMAGE.
 
 */
 
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.hl7.fhir.exceptions.FHIRFormatError;
 import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r5.model.Bundle;
 import org.hl7.fhir.r5.model.DataType;
 import org.hl7.fhir.r5.model.DomainResource;
 import org.hl7.fhir.r5.model.Element;
@@ -87,6 +93,9 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -116,6 +125,7 @@ public abstract class JsonParserBase extends ParserBase implements IParser {
   abstract protected DataType parseAnyType(JsonObject json, String type) throws IOException, FHIRFormatError;
   abstract protected DataType parseType(String prefix, JsonObject json) throws IOException, FHIRFormatError;
   abstract protected boolean hasTypeName(JsonObject json, String prefix);
+  abstract protected Bundle.BundleEntryComponent parseBundleEntryComponent(JsonObject json) throws IOException, FHIRFormatError;
   abstract protected void composeResource(Resource resource) throws IOException;
   abstract protected void composeTypeInner(DataType type) throws IOException;
 
@@ -129,6 +139,9 @@ public abstract class JsonParserBase extends ParserBase implements IParser {
    */
   @Override
   public Resource parse(InputStream input) throws IOException, FHIRFormatError {
+    if (streamBundleEntries && !allowComments && !allowUnknownContent) {
+      return parseStreamed(input);
+    }
     JsonObject json = loadJson(input);
     return parseResource(json);
   }
@@ -238,6 +251,191 @@ public abstract class JsonParserBase extends ParserBase implements IParser {
 
   protected JsonCreator json;
   private boolean htmlPretty;
+  private boolean streamBundleEntries;
+
+  public boolean isStreamBundleEntries() {
+    return streamBundleEntries;
+  }
+
+  /**
+   * Read Bundles entry by entry from a stream of JSON tokens, instead of loading the whole document 
+   * into a JSON tree first. The resource in each entry is read the same way (so the entries of 
+   * Bundles in Bundles are streamed too); the rest of an entry, and everything that isn't in an 
+   * entry, is read into a JSON tree and parsed as usual. So the biggest JSON tree held at a time is 
+   * the largest resource that isn't a Bundle, rather than the whole document. The entries are read 
+   * this way whether the resourceType comes before or after them. The resources that are produced 
+   * are the same either way.
+   *
+   * This only applies to parse(InputStream) (and the parse methods that call it), and not when
+   * comments or unknown content are allowed
+   */
+  public JsonParserBase setStreamBundleEntries(boolean streamBundleEntries) {
+    this.streamBundleEntries = streamBundleEntries;
+    return this;
+  }
+
+  private Resource parseStreamed(InputStream input) throws IOException, FHIRFormatError {
+    JsonReader reader = new JsonReader(new BomFilterReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+    reader.setLenient(true); // as com.google.gson.JsonParser is
+    try {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        throw new FHIRFormatError("Unable to parse JSON: the content is not an object");
+      }
+      Resource res = readResource(reader);
+      if (reader.peek() != JsonToken.END_DOCUMENT) {
+        throw new JsonSyntaxException("Did not consume the entire document.");
+      }
+      return res;
+    } catch (MalformedJsonException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  /**
+   * An entry of a Bundle: the resource, read from the stream, and the rest of the entry as JSON
+   */
+  private static class StreamedEntry {
+    private final JsonElement json;
+    private final Resource resource;
+
+    private StreamedEntry(JsonElement json, Resource resource) {
+      this.json = json;
+      this.resource = resource;
+    }
+  }
+
+  /**
+   * Read the resource that starts at the reader. If it's a Bundle (or might be, because the 
+   * resourceType hasn't been read yet), the entries are read one at a time, and so are the 
+   * resources in them
+   */
+  private Resource readResource(JsonReader reader) throws IOException, FHIRFormatError {
+    JsonObject json = new JsonObject();
+    List<StreamedEntry> entries = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("entry".equals(name) && mayBeBundle(json) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+        // the last entry property wins, as it does in the tree
+        json.remove(name);
+        entries = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          entries.add(readEntry(reader));
+        }
+        reader.endArray();
+      } else {
+        if ("entry".equals(name)) {
+          entries = null;
+        }
+        json.add(name, com.google.gson.JsonParser.parseReader(reader));
+      }
+    }
+    reader.endObject();
+    if (entries != null && !isBundle(json)) {
+      // the entries came before the resourceType, and it's not a Bundle after all. The resources 
+      // that were read aren't part of the other resource types, so they're left out, as in the tree
+      JsonArray array = new JsonArray();
+      for (StreamedEntry entry : entries) {
+        array.add(entry.json);
+      }
+      json.add("entry", array);
+      entries = null;
+    }
+    Resource res = parseResource(json);
+    if (entries != null) {
+      Bundle bundle = (Bundle) res;
+      for (int i = 0; i < entries.size(); i++) {
+        StreamedEntry se = entries.set(i, null);
+        Bundle.BundleEntryComponent entry = parseBundleEntryComponent(asArrayItemObject(se.json, i));
+        if (se.resource != null) {
+          entry.setResource(se.resource);
+        }
+        bundle.getEntry().add(entry);
+      }
+    }
+    return res;
+  }
+
+  private StreamedEntry readEntry(JsonReader reader) throws IOException, FHIRFormatError {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      return new StreamedEntry(com.google.gson.JsonParser.parseReader(reader), null);
+    }
+    JsonObject json = new JsonObject();
+    Resource resource = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("resource".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+        json.remove(name);
+        resource = readResource(reader);
+      } else {
+        if ("resource".equals(name)) {
+          resource = null;
+        }
+        json.add(name, com.google.gson.JsonParser.parseReader(reader));
+      }
+    }
+    reader.endObject();
+    return new StreamedEntry(json, resource);
+  }
+
+  private boolean mayBeBundle(JsonObject json) {
+    return !json.has("resourceType") || isBundle(json);
+  }
+
+  private boolean isBundle(JsonObject json) {
+    JsonElement rt = json.get("resourceType");
+    return rt != null && rt.isJsonPrimitive() && "Bundle".equals(rt.getAsString());
+  }
+
+  // as getJsonObjectFromArray
+  private JsonObject asArrayItemObject(JsonElement e, int i) throws IOException {
+    if (e.isJsonObject()) {
+      return (JsonObject) e;
+    }
+    if (e.isJsonNull()) {
+      return new JsonObject();
+    }
+    throw new IOException("Array item "+i+" is a "+e.getClass()+" looking for an Object");
+  }
+
+  /**
+   * Drops byte order marks, as TextFile.streamToString does for the tree
+   */
+  private static class BomFilterReader extends FilterReader {
+
+    protected BomFilterReader(Reader in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int c;
+      do {
+        c = super.read();
+      } while (c == '\uFEFF');
+      return c;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int n;
+      do {
+        n = super.read(cbuf, off, len);
+        int j = off;
+        for (int i = off; i < off + Math.max(n, 0); i++) {
+          if (cbuf[i] != '\uFEFF') {
+            cbuf[j++] = cbuf[i];
+          }
+        }
+        if (n > 0) {
+          n = j - off;
+        }
+      } while (n == 0 && len > 0);
+      return n;
+    }
+  }
   
   private JsonObject loadJson(InputStream input) throws JsonSyntaxException, IOException {
     // the GSON parser is the fastest, but the least robust 
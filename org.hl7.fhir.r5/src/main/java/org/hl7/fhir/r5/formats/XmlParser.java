@@ -30606,325 +30606,167 @@ public class XmlParser extends XmlParserBase {
   protected Resource parseResource(XmlPullParser xpp) throws XmlPullParserException, IOException, FHIRFormatError {
     if (xpp == null) {
       throw new IOException("xpp == null!");
-    } else if (xpp.getName().equals("Account")) {
-      return parseAccount(xpp);
-    } else if (xpp.getName().equals("ActivityDefinition")) {
-      return parseActivityDefinition(xpp);
-    } else if (xpp.getName().equals("ActorDefinition")) {
-      return parseActorDefinition(xpp);
-    } else if (xpp.getName().equals("AdministrableProductDefinition")) {
-      return parseAdministrableProductDefinition(xpp);
-    } else if (xpp.getName().equals("AdverseEvent")) {
-      return parseAdverseEvent(xpp);
-    } else if (xpp.getName().equals("AllergyIntolerance")) {
-      return parseAllergyIntolerance(xpp);
-    } else if (xpp.getName().equals("Appointment")) {
-      return parseAppointment(xpp);
-    } else if (xpp.getName().equals("AppointmentResponse")) {
-      return parseAppointmentResponse(xpp);
-    } else if (xpp.getName().equals("ArtifactAssessment")) {
-      return parseArtifactAssessment(xpp);
-    } else if (xpp.getName().equals("AuditEvent")) {
-      return parseAuditEvent(xpp);
-    } else if (xpp.getName().equals("Basic")) {
-      return parseBasic(xpp);
-    } else if (xpp.getName().equals("Binary")) {
-      return parseBinary(xpp);
-    } else if (xpp.getName().equals("BiologicallyDerivedProduct")) {
-      return parseBiologicallyDerivedProduct(xpp);
-    } else if (xpp.getName().equals("BiologicallyDerivedProductDispense")) {
-      return parseBiologicallyDerivedProductDispense(xpp);
-    } else if (xpp.getName().equals("BodyStructure")) {
-      return parseBodyStructure(xpp);
-    } else if (xpp.getName().equals("Bundle")) {
-      return parseBundle(xpp);
-    } else if (xpp.getName().equals("CapabilityStatement")) {
-      return parseCapabilityStatement(xpp);
-    } else if (xpp.getName().equals("CarePlan")) {
-      return parseCarePlan(xpp);
-    } else if (xpp.getName().equals("CareTeam")) {
-      return parseCareTeam(xpp);
-    } else if (xpp.getName().equals("ChargeItem")) {
-      return parseChargeItem(xpp);
-    } else if (xpp.getName().equals("ChargeItemDefinition")) {
-      return parseChargeItemDefinition(xpp);
-    } else if (xpp.getName().equals("Citation")) {
-      return parseCitation(xpp);
-    } else if (xpp.getName().equals("Claim")) {
-      return parseClaim(xpp);
-    } else if (xpp.getName().equals("ClaimResponse")) {
-      return parseClaimResponse(xpp);
-    } else if (xpp.getName().equals("ClinicalImpression")) {
-      return parseClinicalImpression(xpp);
-    } else if (xpp.getName().equals("ClinicalUseDefinition")) {
-      return parseClinicalUseDefinition(xpp);
-    } else if (xpp.getName().equals("CodeSystem")) {
-      return parseCodeSystem(xpp);
-    } else if (xpp.getName().equals("Communication")) {
-      return parseCommunication(xpp);
-    } else if (xpp.getName().equals("CommunicationRequest")) {
-      return parseCommunicationRequest(xpp);
-    } else if (xpp.getName().equals("CompartmentDefinition")) {
-      return parseCompartmentDefinition(xpp);
-    } else if (xpp.getName().equals("Composition")) {
-      return parseComposition(xpp);
-    } else if (xpp.getName().equals("ConceptMap")) {
-      return parseConceptMap(xpp);
-    } else if (xpp.getName().equals("Condition")) {
-      return parseCondition(xpp);
-    } else if (xpp.getName().equals("ConditionDefinition")) {
-      return parseConditionDefinition(xpp);
-    } else if (xpp.getName().equals("Consent")) {
-      return parseConsent(xpp);
-    } else if (xpp.getName().equals("Contract")) {
-      return parseContract(xpp);
-    } else if (xpp.getName().equals("Coverage")) {
-      return parseCoverage(xpp);
-    } else if (xpp.getName().equals("CoverageEligibilityRequest")) {
-      return parseCoverageEligibilityRequest(xpp);
-    } else if (xpp.getName().equals("CoverageEligibilityResponse")) {
-      return parseCoverageEligibilityResponse(xpp);
-    } else if (xpp.getName().equals("DetectedIssue")) {
-      return parseDetectedIssue(xpp);
-    } else if (xpp.getName().equals("Device")) {
-      return parseDevice(xpp);
-    } else if (xpp.getName().equals("DeviceAssociation")) {
-      return parseDeviceAssociation(xpp);
-    } else if (xpp.getName().equals("DeviceDefinition")) {
-      return parseDeviceDefinition(xpp);
-    } else if (xpp.getName().equals("DeviceDispense")) {
-      return parseDeviceDispense(xpp);
-    } else if (xpp.getName().equals("DeviceMetric")) {
-      return parseDeviceMetric(xpp);
-    } else if (xpp.getName().equals("DeviceRequest")) {
-      return parseDeviceRequest(xpp);
-    } else if (xpp.getName().equals("DeviceUsage")) {
-      return parseDeviceUsage(xpp);
-    } else if (xpp.getName().equals("DiagnosticReport")) {
-      return parseDiagnosticReport(xpp);
-    } else if (xpp.getName().equals("DocumentReference")) {
-      return parseDocumentReference(xpp);
-    } else if (xpp.getName().equals("Encounter")) {
-      return parseEncounter(xpp);
-    } else if (xpp.getName().equals("EncounterHistory")) {
-      return parseEncounterHistory(xpp);
-    } else if (xpp.getName().equals("Endpoint")) {
-      return parseEndpoint(xpp);
-    } else if (xpp.getName().equals("EnrollmentRequest")) {
-      return parseEnrollmentRequest(xpp);
-    } else if (xpp.getName().equals("EnrollmentResponse")) {
-      return parseEnrollmentResponse(xpp);
-    } else if (xpp.getName().equals("EpisodeOfCare")) {
-      return parseEpisodeOfCare(xpp);
-    } else if (xpp.getName().equals("EventDefinition")) {
-      return parseEventDefinition(xpp);
-    } else if (xpp.getName().equals("Evidence")) {
-      return parseEvidence(xpp);
-    } else if (xpp.getName().equals("EvidenceReport")) {
-      return parseEvidenceReport(xpp);
-    } else if (xpp.getName().equals("EvidenceVariable")) {
-      return parseEvidenceVariable(xpp);
-    } else if (xpp.getName().equals("ExampleScenario")) {
-      return parseExampleScenario(xpp);
-    } else if (xpp.getName().equals("ExplanationOfBenefit")) {
-      return parseExplanationOfBenefit(xpp);
-    } else if (xpp.getName().equals("FamilyMemberHistory")) {
-      return parseFamilyMemberHistory(xpp);
-    } else if (xpp.getName().equals("Flag")) {
-      return parseFlag(xpp);
-    } else if (xpp.getName().equals("FormularyItem")) {
-      return parseFormularyItem(xpp);
-    } else if (xpp.getName().equals("GenomicStudy")) {
-      return parseGenomicStudy(xpp);
-    } else if (xpp.getName().equals("Goal")) {
-      return parseGoal(xpp);
-    } else if (xpp.getName().equals("GraphDefinition")) {
-      return parseGraphDefinition(xpp);
-    } else if (xpp.getName().equals("Group")) {
-      return parseGroup(xpp);
-    } else if (xpp.getName().equals("GuidanceResponse")) {
-      return parseGuidanceResponse(xpp);
-    } else if (xpp.getName().equals("HealthcareService")) {
-      return parseHealthcareService(xpp);
-    } else if (xpp.getName().equals("ImagingSelection")) {
-      return parseImagingSelection(xpp);
-    } else if (xpp.getName().equals("ImagingStudy")) {
-      return parseImagingStudy(xpp);
-    } else if (xpp.getName().equals("Immunization")) {
-      return parseImmunization(xpp);
-    } else if (xpp.getName().equals("ImmunizationEvaluation")) {
-      return parseImmunizationEvaluation(xpp);
-    } else if (xpp.getName().equals("ImmunizationRecommendation")) {
-      return parseImmunizationRecommendation(xpp);
-    } else if (xpp.getName().equals("ImplementationGuide")) {
-      return parseImplementationGuide(xpp);
-    } else if (xpp.getName().equals("Ingredient")) {
-      return parseIngredient(xpp);
-    } else if (xpp.getName().equals("InsurancePlan")) {
-      return parseInsurancePlan(xpp);
-    } else if (xpp.getName().equals("InventoryItem")) {
-      return parseInventoryItem(xpp);
-    } else if (xpp.getName().equals("InventoryReport")) {
-      return parseInventoryReport(xpp);
-    } else if (xpp.getName().equals("Invoice")) {
-      return parseInvoice(xpp);
-    } else if (xpp.getName().equals("Library")) {
-      return parseLibrary(xpp);
-    } else if (xpp.getName().equals("Linkage")) {
-      return parseLinkage(xpp);
-    } else if (xpp.getName().equals("List")) {
-      return parseListResource(xpp);
-    } else if (xpp.getName().equals("Location")) {
-      return parseLocation(xpp);
-    } else if (xpp.getName().equals("ManufacturedItemDefinition")) {
-      return parseManufacturedItemDefinition(xpp);
-    } else if (xpp.getName().equals("Measure")) {
-      return parseMeasure(xpp);
-    } else if (xpp.getName().equals("MeasureReport")) {
-      return parseMeasureReport(xpp);
-    } else if (xpp.getName().equals("Medication")) {
-      return parseMedication(xpp);
-    } else if (xpp.getName().equals("MedicationAdministration")) {
-      return parseMedicationAdministration(xpp);
-    } else if (xpp.getName().equals("MedicationDispense")) {
-      return parseMedicationDispense(xpp);
-    } else if (xpp.getName().equals("MedicationKnowledge")) {
-      return parseMedicationKnowledge(xpp);
-    } else if (xpp.getName().equals("MedicationRequest")) {
-      return parseMedicationRequest(xpp);
-    } else if (xpp.getName().equals("MedicationStatement")) {
-      return parseMedicationStatement(xpp);
-    } else if (xpp.getName().equals("MedicinalProductDefinition")) {
-      return parseMedicinalProductDefinition(xpp);
-    } else if (xpp.getName().equals("MessageDefinition")) {
-      return parseMessageDefinition(xpp);
-    } else if (xpp.getName().equals("MessageHeader")) {
-      return parseMessageHeader(xpp);
-    } else if (xpp.getName().equals("MolecularSequence")) {
-      return parseMolecularSequence(xpp);
-    } else if (xpp.getName().equals("NamingSystem")) {
-      return parseNamingSystem(xpp);
-    } else if (xpp.getName().equals("NutritionIntake")) {
-      return parseNutritionIntake(xpp);
-    } else if (xpp.getName().equals("NutritionOrder")) {
-      return parseNutritionOrder(xpp);
-    } else if (xpp.getName().equals("NutritionProduct")) {
-      return parseNutritionProduct(xpp);
-    } else if (xpp.getName().equals("Observation")) {
-      return parseObservation(xpp);
-    } else if (xpp.getName().equals("ObservationDefinition")) {
-      return parseObservationDefinition(xpp);
-    } else if (xpp.getName().equals("OperationDefinition")) {
-      return parseOperationDefinition(xpp);
-    } else if (xpp.getName().equals("OperationOutcome")) {
-      return parseOperationOutcome(xpp);
-    } else if (xpp.getName().equals("Organization")) {
-      return parseOrganization(xpp);
-    } else if (xpp.getName().equals("OrganizationAffiliation")) {
-      return parseOrganizationAffiliation(xpp);
-    } else if (xpp.getName().equals("PackagedProductDefinition")) {
-      return parsePackagedProductDefinition(xpp);
-    } else if (xpp.getName().equals("Parameters")) {
-      return parseParameters(xpp);
-    } else if (xpp.getName().equals("Patient")) {
-      return parsePatient(xpp);
-    } else if (xpp.getName().equals("PaymentNotice")) {
-      return parsePaymentNotice(xpp);
-    } else if (xpp.getName().equals("PaymentReconciliation")) {
-      return parsePaymentReconciliation(xpp);
-    } else if (xpp.getName().equals("Permission")) {
-      return parsePermission(xpp);
-    } else if (xpp.getName().equals("Person")) {
-      return parsePerson(xpp);
-    } else if (xpp.getName().equals("PlanDefinition")) {
-      return parsePlanDefinition(xpp);
-    } else if (xpp.getName().equals("Practitioner")) {
-      return parsePractitioner(xpp);
-    } else if (xpp.getName().equals("PractitionerRole")) {
-      return parsePractitionerRole(xpp);
-    } else if (xpp.getName().equals("Procedure")) {
-      return parseProcedure(xpp);
-    } else if (xpp.getName().equals("Provenance")) {
-      return parseProvenance(xpp);
-    } else if (xpp.getName().equals("Questionnaire")) {
-      return parseQuestionnaire(xpp);
-    } else if (xpp.getName().equals("QuestionnaireResponse")) {
-      return parseQuestionnaireResponse(xpp);
-    } else if (xpp.getName().equals("RegulatedAuthorization")) {
-      return parseRegulatedAuthorization(xpp);
-    } else if (xpp.getName().equals("RelatedPerson")) {
-      return parseRelatedPerson(xpp);
-    } else if (xpp.getName().equals("RequestOrchestration")) {
-      return parseRequestOrchestration(xpp);
-    } else if (xpp.getName().equals("Requirements")) {
-      return parseRequirements(xpp);
-    } else if (xpp.getName().equals("ResearchStudy")) {
-      return parseResearchStudy(xpp);
-    } else if (xpp.getName().equals("ResearchSubject")) {
-      return parseResearchSubject(xpp);
-    } else if (xpp.getName().equals("RiskAssessment")) {
-      return parseRiskAssessment(xpp);
-    } else if (xpp.getName().equals("Schedule")) {
-      return parseSchedule(xpp);
-    } else if (xpp.getName().equals("SearchParameter")) {
-      return parseSearchParameter(xpp);
-    } else if (xpp.getName().equals("ServiceRequest")) {
-      return parseServiceRequest(xpp);
-    } else if (xpp.getName().equals("Slot")) {
-      return parseSlot(xpp);
-    } else if (xpp.getName().equals("Specimen")) {
-      return parseSpecimen(xpp);
-    } else if (xpp.getName().equals("SpecimenDefinition")) {
-      return parseSpecimenDefinition(xpp);
-    } else if (xpp.getName().equals("StructureDefinition")) {
-      return parseStructureDefinition(xpp);
-    } else if (xpp.getName().equals("StructureMap")) {
-      return parseStructureMap(xpp);
-    } else if (xpp.getName().equals("Subscription")) {
-      return parseSubscription(xpp);
-    } else if (xpp.getName().equals("SubscriptionStatus")) {
-      return parseSubscriptionStatus(xpp);
-    } else if (xpp.getName().equals("SubscriptionTopic")) {
-      return parseSubscriptionTopic(xpp);
-    } else if (xpp.getName().equals("Substance")) {
-      return parseSubstance(xpp);
-    } else if (xpp.getName().equals("SubstanceDefinition")) {
-      return parseSubstanceDefinition(xpp);
-    } else if (xpp.getName().equals("SubstanceNucleicAcid")) {
-      return parseSubstanceNucleicAcid(xpp);
-    } else if (xpp.getName().equals("SubstancePolymer")) {
-      return parseSubstancePolymer(xpp);
-    } else if (xpp.getName().equals("SubstanceProtein")) {
-      return parseSubstanceProtein(xpp);
-    } else if (xpp.getName().equals("SubstanceReferenceInformation")) {
-      return parseSubstanceReferenceInformation(xpp);
-    } else if (xpp.getName().equals("SubstanceSourceMaterial")) {
-      return parseSubstanceSourceMaterial(xpp);
-    } else if (xpp.getName().equals("SupplyDelivery")) {
-      return parseSupplyDelivery(xpp);
-    } else if (xpp.getName().equals("SupplyRequest")) {
-      return parseSupplyRequest(xpp);
-    } else if (xpp.getName().equals("Task")) {
-      return parseTask(xpp);
-    } else if (xpp.getName().equals("TerminologyCapabilities")) {
-      return parseTerminologyCapabilities(xpp);
-    } else if (xpp.getName().equals("TestPlan")) {
-      return parseTestPlan(xpp);
-    } else if (xpp.getName().equals("TestReport")) {
-      return parseTestReport(xpp);
-    } else if (xpp.getName().equals("TestScript")) {
-      return parseTestScript(xpp);
-    } else if (xpp.getName().equals("Transport")) {
-      return parseTransport(xpp);
-    } else if (xpp.getName().equals("ValueSet")) {
-      return parseValueSet(xpp);
-    } else if (xpp.getName().equals("VerificationResult")) {
-      return parseVerificationResult(xpp);
-    } else if (xpp.getName().equals("VisionPrescription")) {
-      return parseVisionPrescription(xpp);
-
-    } else {
-      throw new FHIRFormatError("Unknown resource type "+xpp.getName()+"");
+    }
+    switch (xpp.getName()) {
+      case "Account": return parseAccount(xpp);
+      case "ActivityDefinition": return parseActivityDefinition(xpp);
+      case "ActorDefinition": return parseActorDefinition(xpp);
+      case "AdministrableProductDefinition": return parseAdministrableProductDefinition(xpp);
+      case "AdverseEvent": return parseAdverseEvent(xpp);
+      case "AllergyIntolerance": return parseAllergyIntolerance(xpp);
+      case "Appointment": return parseAppointment(xpp);
+      case "AppointmentResponse": return parseAppointmentResponse(xpp);
+      case "ArtifactAssessment": return parseArtifactAssessment(xpp);
+      case "AuditEvent": return parseAuditEvent(xpp);
+      case "Basic": return parseBasic(xpp);
+      case "Binary": return parseBinary(xpp);
+      case "BiologicallyDerivedProduct": return parseBiologicallyDerivedProduct(xpp);
+      case "BiologicallyDerivedProductDispense": return parseBiologicallyDerivedProductDispense(xpp);
+      case "BodyStructure": return parseBodyStructure(xpp);
+      case "Bundle": return parseBundle(xpp);
+      case "CapabilityStatement": return parseCapabilityStatement(xpp);
+      case "CarePlan": return parseCarePlan(xpp);
+      case "CareTeam": return parseCareTeam(xpp);
+      case "ChargeItem": return parseChargeItem(xpp);
+      case "ChargeItemDefinition": return parseChargeItemDefinition(xpp);
+      case "Citation": return parseCitation(xpp);
+      case "Claim": return parseClaim(xpp);
+      case "ClaimResponse": return parseClaimResponse(xpp);
+      case "ClinicalImpression": return parseClinicalImpression(xpp);
+      case "ClinicalUseDefinition": return parseClinicalUseDefinition(xpp);
+      case "CodeSystem": return parseCodeSystem(xpp);
+      case "Communication": return parseCommunication(xpp);
+      case "CommunicationRequest": return parseCommunicationRequest(xpp);
+      case "CompartmentDefinition": return parseCompartmentDefinition(xpp);
+      case "Composition": return parseComposition(xpp);
+      case "ConceptMap": return parseConceptMap(xpp);
+      case "Condition": return parseCondition(xpp);
+      case "ConditionDefinition": return parseConditionDefinition(xpp);
+      case "Consent": return parseConsent(xpp);
+      case "Contract": return parseContract(xpp);
+      case "Coverage": return parseCoverage(xpp);
+      case "CoverageEligibilityRequest": return parseCoverageEligibilityRequest(xpp);
+      case "CoverageEligibilityResponse": return parseCoverageEligibilityResponse(xpp);
+      case "DetectedIssue": return parseDetectedIssue(xpp);
+      case "Device": return parseDevice(xpp);
+      case "DeviceAssociation": return parseDeviceAssociation(xpp);
+      case "DeviceDefinition": return parseDeviceDefinition(xpp);
+      case "DeviceDispense": return parseDeviceDispense(xpp);
+      case "DeviceMetric": return parseDeviceMetric(xpp);
+      case "DeviceRequest": return parseDeviceRequest(xpp);
+      case "DeviceUsage": return parseDeviceUsage(xpp);
+      case "DiagnosticReport": return parseDiagnosticReport(xpp);
+      case "DocumentReference": return parseDocumentReference(xpp);
+      case "Encounter": return parseEncounter(xpp);
+      case "EncounterHistory": return parseEncounterHistory(xpp);
+      case "Endpoint": return parseEndpoint(xpp);
+      case "EnrollmentRequest": return parseEnrollmentRequest(xpp);
+      case "EnrollmentResponse": return parseEnrollmentResponse(xpp);
+      case "EpisodeOfCare": return parseEpisodeOfCare(xpp);
+      case "EventDefinition": return parseEventDefinition(xpp);
+      case "Evidence": return parseEvidence(xpp);
+      case "EvidenceReport": return parseEvidenceReport(xpp);
+      case "EvidenceVariable": return parseEvidenceVariable(xpp);
+      case "ExampleScenario": return parseExampleScenario(xpp);
+      case "ExplanationOfBenefit": return parseExplanationOfBenefit(xpp);
+      case "FamilyMemberHistory": return parseFamilyMemberHistory(xpp);
+      case "Flag": return parseFlag(xpp);
+      case "FormularyItem": return parseFormularyItem(xpp);
+      case "GenomicStudy": return parseGenomicStudy(xpp);
+      case "Goal": return parseGoal(xpp);
+      case "GraphDefinition": return parseGraphDefinition(xpp);
+      case "Group": return parseGroup(xpp);
+      case "GuidanceResponse": return parseGuidanceResponse(xpp);
+      case "HealthcareService": return parseHealthcareService(xpp);
+      case "ImagingSelection": return parseImagingSelection(xpp);
+      case "ImagingStudy": return parseImagingStudy(xpp);
+      case "Immunization": return parseImmunization(xpp);
+      case "ImmunizationEvaluation": return parseImmunizationEvaluation(xpp);
+      case "ImmunizationRecommendation": return parseImmunizationRecommendation(xpp);
+      case "ImplementationGuide": return parseImplementationGuide(xpp);
+      case "Ingredient": return parseIngredient(xpp);
+      case "InsurancePlan": return parseInsurancePlan(xpp);
+      case "InventoryItem": return parseInventoryItem(xpp);
+      case "InventoryReport": return parseInventoryReport(xpp);
+      case "Invoice": return parseInvoice(xpp);
+      case "Library": return parseLibrary(xpp);
+      case "Linkage": return parseLinkage(xpp);
+      case "List": return parseListResource(xpp);
+      case "Location": return parseLocation(xpp);
+      case "ManufacturedItemDefinition": return parseManufacturedItemDefinition(xpp);
+      case "Measure": return parseMeasure(xpp);
+      case "MeasureReport": return parseMeasureReport(xpp);
+      case "Medication": return parseMedication(xpp);
+      case "MedicationAdministration": return parseMedicationAdministration(xpp);
+      case "MedicationDispense": return parseMedicationDispense(xpp);
+      case "MedicationKnowledge": return parseMedicationKnowledge(xpp);
+      case "MedicationRequest": return parseMedicationRequest(xpp);
+      case "MedicationStatement": return parseMedicationStatement(xpp);
+      case "MedicinalProductDefinition": return parseMedicinalProductDefinition(xpp);
+      case "MessageDefinition": return parseMessageDefinition(xpp);
+      case "MessageHeader": return parseMessageHeader(xpp);
+      case "MolecularSequence": return parseMolecularSequence(xpp);
+      case "NamingSystem": return parseNamingSystem(xpp);
+      case "NutritionIntake": return parseNutritionIntake(xpp);
+      case "NutritionOrder": return parseNutritionOrder(xpp);
+      case "NutritionProduct": return parseNutritionProduct(xpp);
+      case "Observation": return parseObservation(xpp);
+      case "ObservationDefinition": return parseObservationDefinition(xpp);
+      case "OperationDefinition": return parseOperationDefinition(xpp);
+      case "OperationOutcome": return parseOperationOutcome(xpp);
+      case "Organization": return parseOrganization(xpp);
+      case "OrganizationAffiliation": return parseOrganizationAffiliation(xpp);
+      case "PackagedProductDefinition": return parsePackagedProductDefinition(xpp);
+      case "Parameters": return parseParameters(xpp);
+      case "Patient": return parsePatient(xpp);
+      case "PaymentNotice": return parsePaymentNotice(xpp);
+      case "PaymentReconciliation": return parsePaymentReconciliation(xpp);
+      case "Permission": return parsePermission(xpp);
+      case "Person": return parsePerson(xpp);
+      case "PlanDefinition": return parsePlanDefinition(xpp);
+      case "Practitioner": return parsePractitioner(xpp);
+      case "PractitionerRole": return parsePractitionerRole(xpp);
+      case "Procedure": return parseProcedure(xpp);
+      case "Provenance": return parseProvenance(xpp);
+      case "Questionnaire": return parseQuestionnaire(xpp);
+      case "QuestionnaireResponse": return parseQuestionnaireResponse(xpp);
+      case "RegulatedAuthorization": return parseRegulatedAuthorization(xpp);
+      case "RelatedPerson": return parseRelatedPerson(xpp);
+      case "RequestOrchestration": return parseRequestOrchestration(xpp);
+      case "Requirements": return parseRequirements(xpp);
+      case "ResearchStudy": return parseResearchStudy(xpp);
+      case "ResearchSubject": return parseResearchSubject(xpp);
+      case "RiskAssessment": return parseRiskAssessment(xpp);
+      case "Schedule": return parseSchedule(xpp);
+      case "SearchParameter": return parseSearchParameter(xpp);
+      case "ServiceRequest": return parseServiceRequest(xpp);
+      case "Slot": return parseSlot(xpp);
+      case "Specimen": return parseSpecimen(xpp);
+      case "SpecimenDefinition": return parseSpecimenDefinition(xpp);
+      case "StructureDefinition": return parseStructureDefinition(xpp);
+      case "StructureMap": return parseStructureMap(xpp);
+      case "Subscription": return parseSubscription(xpp);
+      case "SubscriptionStatus": return parseSubscriptionStatus(xpp);
+      case "SubscriptionTopic": return parseSubscriptionTopic(xpp);
+      case "Substance": return parseSubstance(xpp);
+      case "SubstanceDefinition": return parseSubstanceDefinition(xpp);
+      case "SubstanceNucleicAcid": return parseSubstanceNucleicAcid(xpp);
+      case "SubstancePolymer": return parseSubstancePolymer(xpp);
+      case "SubstanceProtein": return parseSubstanceProtein(xpp);
+      case "SubstanceReferenceInformation": return parseSubstanceReferenceInformation(xpp);
+      case "SubstanceSourceMaterial": return parseSubstanceSourceMaterial(xpp);
+      case "SupplyDelivery": return parseSupplyDelivery(xpp);
+      case "SupplyRequest": return parseSupplyRequest(xpp);
+      case "Task": return parseTask(xpp);
+      case "TerminologyCapabilities": return parseTerminologyCapabilities(xpp);
+      case "TestPlan": return parseTestPlan(xpp);
+      case "TestReport": return parseTestReport(xpp);
+      case "TestScript": return parseTestScript(xpp);
+      case "Transport": return parseTransport(xpp);
+      case "ValueSet": return parseValueSet(xpp);
+      case "VerificationResult": return parseVerificationResult(xpp);
+      case "VisionPrescription": return parseVisionPrescription(xpp);
+      default: throw new FHIRFormatError("Unknown resource type "+xpp.getName()+"");
     }
   }
 
@@ -31068,133 +30910,71 @@ public class XmlParser extends XmlParserBase {
       throw new IOException("type == null!");
     } else if (xpp == null) {
       throw new IOException("xpp == null!");
-    } else if (type.equals("date")) {
-      return parseDate(xpp);
-    } else if (type.equals("dateTime")) {
-      return parseDateTime(xpp);
-    } else if (type.equals("code")) {
-      return parseCode(xpp);
-    } else if (type.equals("string")) {
-      return parseString(xpp);
-    } else if (type.equals("integer")) {
-      return parseInteger(xpp);
-    } else if (type.equals("integer64")) {
-      return parseInteger64(xpp);
-    } else if (type.equals("oid")) {
-      return parseOid(xpp);
-    } else if (type.equals("canonical")) {
-      return parseCanonical(xpp);
-    } else if (type.equals("uri")) {
-      return parseUri(xpp);
-    } else if (type.equals("uuid")) {
-      return parseUuid(xpp);
-    } else if (type.equals("url")) {
-      return parseUrl(xpp);
-    } else if (type.equals("instant")) {
-      return parseInstant(xpp);
-    } else if (type.equals("boolean")) {
-      return parseBoolean(xpp);
-    } else if (type.equals("base64Binary")) {
-      return parseBase64Binary(xpp);
-    } else if (type.equals("unsignedInt")) {
-      return parseUnsignedInt(xpp);
-    } else if (type.equals("markdown")) {
-      return parseMarkdown(xpp);
-    } else if (type.equals("time")) {
-      return parseTime(xpp);
-    } else if (type.equals("id")) {
-      return parseId(xpp);
-    } else if (type.equals("positiveInt")) {
-      return parsePositiveInt(xpp);
-    } else if (type.equals("decimal")) {
-      return parseDecimal(xpp);
-    } else if (type.equals("Address")) {
-      return parseAddress(xpp);
-    } else if (type.equals("Age")) {
-      return parseAge(xpp);
-    } else if (type.equals("Annotation")) {
-      return parseAnnotation(xpp);
-    } else if (type.equals("Attachment")) {
-      return parseAttachment(xpp);
-    } else if (type.equals("Availability")) {
-      return parseAvailability(xpp);
-    } else if (type.equals("CodeableConcept")) {
-      return parseCodeableConcept(xpp);
-    } else if (type.equals("CodeableReference")) {
-      return parseCodeableReference(xpp);
-    } else if (type.equals("Coding")) {
-      return parseCoding(xpp);
-    } else if (type.equals("ContactDetail")) {
-      return parseContactDetail(xpp);
-    } else if (type.equals("ContactPoint")) {
-      return parseContactPoint(xpp);
-    } else if (type.equals("Contributor")) {
-      return parseContributor(xpp);
-    } else if (type.equals("Count")) {
-      return parseCount(xpp);
-    } else if (type.equals("DataRequirement")) {
-      return parseDataRequirement(xpp);
-    } else if (type.equals("Distance")) {
-      return parseDistance(xpp);
-    } else if (type.equals("Dosage")) {
-      return parseDosage(xpp);
-    } else if (type.equals("Duration")) {
-      return parseDuration(xpp);
-    } else if (type.equals("ElementDefinition")) {
-      return parseElementDefinition(xpp);
-    } else if (type.equals("Expression")) {
-      return parseExpression(xpp);
-    } else if (type.equals("ExtendedContactDetail")) {
-      return parseExtendedContactDetail(xpp);
-    } else if (type.equals("Extension")) {
-      return parseExtension(xpp);
-    } else if (type.equals("HumanName")) {
-      return parseHumanName(xpp);
-    } else if (type.equals("Identifier")) {
-      return parseIdentifier(xpp);
-    } else if (type.equals("MarketingStatus")) {
-      return parseMarketingStatus(xpp);
-    } else if (type.equals("Meta")) {
-      return parseMeta(xpp);
-    } else if (type.equals("MonetaryComponent")) {
-      return parseMonetaryComponent(xpp);
-    } else if (type.equals("Money")) {
-      return parseMoney(xpp);
-    } else if (type.equals("Narrative")) {
-      return parseNarrative(xpp);
-    } else if (type.equals("ParameterDefinition")) {
-      return parseParameterDefinition(xpp);
-    } else if (type.equals("Period")) {
-      return parsePeriod(xpp);
-    } else if (type.equals("ProductShelfLife")) {
-      return parseProductShelfLife(xpp);
-    } else if (type.equals("Quantity")) {
-      return parseQuantity(xpp);
-    } else if (type.equals("Range")) {
-      return parseRange(xpp);
-    } else if (type.equals("Ratio")) {
-      return parseRatio(xpp);
-    } else if (type.equals("RatioRange")) {
-      return parseRatioRange(xpp);
-    } else if (type.equals("Reference")) {
-      return parseReference(xpp);
-    } else if (type.equals("RelatedArtifact")) {
-      return parseRelatedArtifact(xpp);
-    } else if (type.equals("SampledData")) {
-      return parseSampledData(xpp);
-    } else if (type.equals("Signature")) {
-      return parseSignature(xpp);
-    } else if (type.equals("Timing")) {
-      return parseTiming(xpp);
-    } else if (type.equals("TriggerDefinition")) {
-      return parseTriggerDefinition(xpp);
-    } else if (type.equals("UsageContext")) {
-      return parseUsageContext(xpp);
-    } else if (type.equals("VirtualServiceDetail")) {
-      return parseVirtualServiceDetail(xpp);
-
-    } else {
-      throw new FHIRFormatError("Unknown type "+type);
+    }
+    switch (type) {
+      case "date": return parseDate(xpp);
+      case "dateTime": return parseDateTime(xpp);
+      case "code": return parseCode(xpp);
+      case "string": return parseString(xpp);
+      case "integer": return parseInteger(xpp);
+      case "integer64": return parseInteger64(xpp);
+      case "oid": return parseOid(xpp);
+      case "canonical": return parseCanonical(xpp);
+      case "uri": return parseUri(xpp);
+      case "uuid": return parseUuid(xpp);
+      case "url": return parseUrl(xpp);
+      case "instant": return parseInstant(xpp);
+      case "boolean": return parseBoolean(xpp);
+      case "base64Binary": return parseBase64Binary(xpp);
+      case "unsignedInt": return parseUnsignedInt(xpp);
+      case "markdown": return parseMarkdown(xpp);
+      case "time": return parseTime(xpp);
+      case "id": return parseId(xpp);
+      case "positiveInt": return parsePositiveInt(xpp);
+      case "decimal": return parseDecimal(xpp);
+      case "Address": return parseAddress(xpp);
+      case "Age": return parseAge(xpp);
+      case "Annotation": return parseAnnotation(xpp);
+      case "Attachment": return parseAttachment(xpp);
+      case "Availability": return parseAvailability(xpp);
+      case "CodeableConcept": return parseCodeableConcept(xpp);
+      case "CodeableReference": return parseCodeableReference(xpp);
+      case "Coding": return parseCoding(xpp);
+      case "ContactDetail": return parseContactDetail(xpp);
+      case "ContactPoint": return parseContactPoint(xpp);
+      case "Contributor": return parseContributor(xpp);
+      case "Count": return parseCount(xpp);
+      case "DataRequirement": return parseDataRequirement(xpp);
+      case "Distance": return parseDistance(xpp);
+      case "Dosage": return parseDosage(xpp);
+      case "Duration": return parseDuration(xpp);
+      case "ElementDefinition": return parseElementDefinition(xpp);
+      case "Expression": return parseExpression(xpp);
+      case "ExtendedContactDetail": return parseExtendedContactDetail(xpp);
+      case "Extension": return parseExtension(xpp);
+      case "HumanName": return parseHumanName(xpp);
+      case "Identifier": return parseIdentifier(xpp);
+      case "MarketingStatus": return parseMarketingStatus(xpp);
+      case "Meta": return parseMeta(xpp);
+      case "MonetaryComponent": return parseMonetaryComponent(xpp);
+      case "Money": return parseMoney(xpp);
+      case "Narrative": return parseNarrative(xpp);
+      case "ParameterDefinition": return parseParameterDefinition(xpp);
+      case "Period": return parsePeriod(xpp);
+      case "ProductShelfLife": return parseProductShelfLife(xpp);
+      case "Quantity": return parseQuantity(xpp);
+      case "Range": return parseRange(xpp);
+      case "Ratio": return parseRatio(xpp);
+      case "RatioRange": return parseRatioRange(xpp);
+      case "Reference": return parseReference(xpp);
+      case "RelatedArtifact": return parseRelatedArtifact(xpp);
+      case "SampledData": return parseSampledData(xpp);
+      case "Signature": return parseSignature(xpp);
+      case "Timing": return parseTiming(xpp);
+      case "TriggerDefinition": return parseTriggerDefinition(xpp);
+      case "UsageContext": return parseUsageContext(xpp);
+      case "VirtualServiceDetail": return parseVirtualServiceDetail(xpp);
+      default: throw new FHIRFormatError("Unknown type "+type);
     }
   }
 
@@ -31203,449 +30983,229 @@ public class XmlParser extends XmlParserBase {
       throw new IOException("type == null!");
     } else if (xpp == null) {
       throw new IOException("xpp == null!");
-    } else if (type.equals("Address")) {
-      return parseAddress(xpp);
-    } else if (type.equals("Age")) {
-      return parseAge(xpp);
-    } else if (type.equals("Annotation")) {
-      return parseAnnotation(xpp);
-    } else if (type.equals("Attachment")) {
-      return parseAttachment(xpp);
-    } else if (type.equals("Availability")) {
-      return parseAvailability(xpp);
-    } else if (type.equals("CodeableConcept")) {
-      return parseCodeableConcept(xpp);
-    } else if (type.equals("CodeableReference")) {
-      return parseCodeableReference(xpp);
-    } else if (type.equals("Coding")) {
-      return parseCoding(xpp);
-    } else if (type.equals("ContactDetail")) {
-      return parseContactDetail(xpp);
-    } else if (type.equals("ContactPoint")) {
-      return parseContactPoint(xpp);
-    } else if (type.equals("Contributor")) {
-      return parseContributor(xpp);
-    } else if (type.equals("Count")) {
-      return parseCount(xpp);
-    } else if (type.equals("DataRequirement")) {
-      return parseDataRequirement(xpp);
-    } else if (type.equals("Distance")) {
-      return parseDistance(xpp);
-    } else if (type.equals("Dosage")) {
-      return parseDosage(xpp);
-    } else if (type.equals("Duration")) {
-      return parseDuration(xpp);
-    } else if (type.equals("ElementDefinition")) {
-      return parseElementDefinition(xpp);
-    } else if (type.equals("Expression")) {
-      return parseExpression(xpp);
-    } else if (type.equals("ExtendedContactDetail")) {
-      return parseExtendedContactDetail(xpp);
-    } else if (type.equals("Extension")) {
-      return parseExtension(xpp);
-    } else if (type.equals("HumanName")) {
-      return parseHumanName(xpp);
-    } else if (type.equals("Identifier")) {
-      return parseIdentifier(xpp);
-    } else if (type.equals("MarketingStatus")) {
-      return parseMarketingStatus(xpp);
-    } else if (type.equals("Meta")) {
-      return parseMeta(xpp);
-    } else if (type.equals("MonetaryComponent")) {
-      return parseMonetaryComponent(xpp);
-    } else if (type.equals("Money")) {
-      return parseMoney(xpp);
-    } else if (type.equals("Narrative")) {
-      return parseNarrative(xpp);
-    } else if (type.equals("ParameterDefinition")) {
-      return parseParameterDefinition(xpp);
-    } else if (type.equals("Period")) {
-      return parsePeriod(xpp);
-    } else if (type.equals("ProductShelfLife")) {
-      return parseProductShelfLife(xpp);
-    } else if (type.equals("Quantity")) {
-      return parseQuantity(xpp);
-    } else if (type.equals("Range")) {
-      return parseRange(xpp);
-    } else if (type.equals("Ratio")) {
-      return parseRatio(xpp);
-    } else if (type.equals("RatioRange")) {
-      return parseRatioRange(xpp);
-    } else if (type.equals("Reference")) {
-      return parseReference(xpp);
-    } else if (type.equals("RelatedArtifact")) {
-      return parseRelatedArtifact(xpp);
-    } else if (type.equals("SampledData")) {
-      return parseSampledData(xpp);
-    } else if (type.equals("Signature")) {
-      return parseSignature(xpp);
-    } else if (type.equals("Timing")) {
-      return parseTiming(xpp);
-    } else if (type.equals("TriggerDefinition")) {
-      return parseTriggerDefinition(xpp);
-    } else if (type.equals("UsageContext")) {
-      return parseUsageContext(xpp);
-    } else if (type.equals("VirtualServiceDetail")) {
-      return parseVirtualServiceDetail(xpp);
-    } else if (type.equals("Account")) {
-      return parseAccount(xpp);
-    } else if (type.equals("ActivityDefinition")) {
-      return parseActivityDefinition(xpp);
-    } else if (type.equals("ActorDefinition")) {
-      return parseActorDefinition(xpp);
-    } else if (type.equals("AdministrableProductDefinition")) {
-      return parseAdministrableProductDefinition(xpp);
-    } else if (type.equals("AdverseEvent")) {
-      return parseAdverseEvent(xpp);
-    } else if (type.equals("AllergyIntolerance")) {
-      return parseAllergyIntolerance(xpp);
-    } else if (type.equals("Appointment")) {
-      return parseAppointment(xpp);
-    } else if (type.equals("AppointmentResponse")) {
-      return parseAppointmentResponse(xpp);
-    } else if (type.equals("ArtifactAssessment")) {
-      return parseArtifactAssessment(xpp);
-    } else if (type.equals("AuditEvent")) {
-      return parseAuditEvent(xpp);
-    } else if (type.equals("Basic")) {
-      return parseBasic(xpp);
-    } else if (type.equals("Binary")) {
-      return parseBinary(xpp);
-    } else if (type.equals("BiologicallyDerivedProduct")) {
-      return parseBiologicallyDerivedProduct(xpp);
-    } else if (type.equals("BiologicallyDerivedProductDispense")) {
-      return parseBiologicallyDerivedProductDispense(xpp);
-    } else if (type.equals("BodyStructure")) {
-      return parseBodyStructure(xpp);
-    } else if (type.equals("Bundle")) {
-      return parseBundle(xpp);
-    } else if (type.equals("CapabilityStatement")) {
-      return parseCapabilityStatement(xpp);
-    } else if (type.equals("CarePlan")) {
-      return parseCarePlan(xpp);
-    } else if (type.equals("CareTeam")) {
-      return parseCareTeam(xpp);
-    } else if (type.equals("ChargeItem")) {
-      return parseChargeItem(xpp);
-    } else if (type.equals("ChargeItemDefinition")) {
-      return parseChargeItemDefinition(xpp);
-    } else if (type.equals("Citation")) {
-      return parseCitation(xpp);
-    } else if (type.equals("Claim")) {
-      return parseClaim(xpp);
-    } else if (type.equals("ClaimResponse")) {
-      return parseClaimResponse(xpp);
-    } else if (type.equals("ClinicalImpression")) {
-      return parseClinicalImpression(xpp);
-    } else if (type.equals("ClinicalUseDefinition")) {
-      return parseClinicalUseDefinition(xpp);
-    } else if (type.equals("CodeSystem")) {
-      return parseCodeSystem(xpp);
-    } else if (type.equals("Communication")) {
-      return parseCommunication(xpp);
-    } else if (type.equals("CommunicationRequest")) {
-      return parseCommunicationRequest(xpp);
-    } else if (type.equals("CompartmentDefinition")) {
-      return parseCompartmentDefinition(xpp);
-    } else if (type.equals("Composition")) {
-      return parseComposition(xpp);
-    } else if (type.equals("ConceptMap")) {
-      return parseConceptMap(xpp);
-    } else if (type.equals("Condition")) {
-      return parseCondition(xpp);
-    } else if (type.equals("ConditionDefinition")) {
-      return parseConditionDefinition(xpp);
-    } else if (type.equals("Consent")) {
-      return parseConsent(xpp);
-    } else if (type.equals("Contract")) {
-      return parseContract(xpp);
-    } else if (type.equals("Coverage")) {
-      return parseCoverage(xpp);
-    } else if (type.equals("CoverageEligibilityRequest")) {
-      return parseCoverageEligibilityRequest(xpp);
-    } else if (type.equals("CoverageEligibilityResponse")) {
-      return parseCoverageEligibilityResponse(xpp);
-    } else if (type.equals("DetectedIssue")) {
-      return parseDetectedIssue(xpp);
-    } else if (type.equals("Device")) {
-      return parseDevice(xpp);
-    } else if (type.equals("DeviceAssociation")) {
-      return parseDeviceAssociation(xpp);
-    } else if (type.equals("DeviceDefinition")) {
-      return parseDeviceDefinition(xpp);
-    } else if (type.equals("DeviceDispense")) {
-      return parseDeviceDispense(xpp);
-    } else if (type.equals("DeviceMetric")) {
-      return parseDeviceMetric(xpp);
-    } else if (type.equals("DeviceRequest")) {
-      return parseDeviceRequest(xpp);
-    } else if (type.equals("DeviceUsage")) {
-      return parseDeviceUsage(xpp);
-    } else if (type.equals("DiagnosticReport")) {
-      return parseDiagnosticReport(xpp);
-    } else if (type.equals("DocumentReference")) {
-      return parseDocumentReference(xpp);
-    } else if (type.equals("Encounter")) {
-      return parseEncounter(xpp);
-    } else if (type.equals("EncounterHistory")) {
-      return parseEncounterHistory(xpp);
-    } else if (type.equals("Endpoint")) {
-      return parseEndpoint(xpp);
-    } else if (type.equals("EnrollmentRequest")) {
-      return parseEnrollmentRequest(xpp);
-    } else if (type.equals("EnrollmentResponse")) {
-      return parseEnrollmentResponse(xpp);
-    } else if (type.equals("EpisodeOfCare")) {
-      return parseEpisodeOfCare(xpp);
-    } else if (type.equals("EventDefinition")) {
-      return parseEventDefinition(xpp);
-    } else if (type.equals("Evidence")) {
-      return parseEvidence(xpp);
-    } else if (type.equals("EvidenceReport")) {
-      return parseEvidenceReport(xpp);
-    } else if (type.equals("EvidenceVariable")) {
-      return parseEvidenceVariable(xpp);
-    } else if (type.equals("ExampleScenario")) {
-      return parseExampleScenario(xpp);
-    } else if (type.equals("ExplanationOfBenefit")) {
-      return parseExplanationOfBenefit(xpp);
-    } else if (type.equals("FamilyMemberHistory")) {
-      return parseFamilyMemberHistory(xpp);
-    } else if (type.equals("Flag")) {
-      return parseFlag(xpp);
-    } else if (type.equals("FormularyItem")) {
-      return parseFormularyItem(xpp);
-    } else if (type.equals("GenomicStudy")) {
-      return parseGenomicStudy(xpp);
-    } else if (type.equals("Goal")) {
-      return parseGoal(xpp);
-    } else if (type.equals("GraphDefinition")) {
-      return parseGraphDefinition(xpp);
-    } else if (type.equals("Group")) {
-      return parseGroup(xpp);
-    } else if (type.equals("GuidanceResponse")) {
-      return parseGuidanceResponse(xpp);
-    } else if (type.equals("HealthcareService")) {
-      return parseHealthcareService(xpp);
-    } else if (type.equals("ImagingSelection")) {
-      return parseImagingSelection(xpp);
-    } else if (type.equals("ImagingStudy")) {
-      return parseImagingStudy(xpp);
-    } else if (type.equals("Immunization")) {
-      return parseImmunization(xpp);
-    } else if (type.equals("ImmunizationEvaluation")) {
-      return parseImmunizationEvaluation(xpp);
-    } else if (type.equals("ImmunizationRecommendation")) {
-      return parseImmunizationRecommendation(xpp);
-    } else if (type.equals("ImplementationGuide")) {
-      return parseImplementationGuide(xpp);
-    } else if (type.equals("Ingredient")) {
-      return parseIngredient(xpp);
-    } else if (type.equals("InsurancePlan")) {
-      return parseInsurancePlan(xpp);
-    } else if (type.equals("InventoryItem")) {
-      return parseInventoryItem(xpp);
-    } else if (type.equals("InventoryReport")) {
-      return parseInventoryReport(xpp);
-    } else if (type.equals("Invoice")) {
-      return parseInvoice(xpp);
-    } else if (type.equals("Library")) {
-      return parseLibrary(xpp);
-    } else if (type.equals("Linkage")) {
-      return parseLinkage(xpp);
-    } else if (type.equals("List")) {
-      return parseListResource(xpp);
-    } else if (type.equals("Location")) {
-      return parseLocation(xpp);
-    } else if (type.equals("ManufacturedItemDefinition")) {
-      return parseManufacturedItemDefinition(xpp);
-    } else if (type.equals("Measure")) {
-      return parseMeasure(xpp);
-    } else if (type.equals("MeasureReport")) {
-      return parseMeasureReport(xpp);
-    } else if (type.equals("Medication")) {
-      return parseMedication(xpp);
-    } else if (type.equals("MedicationAdministration")) {
-      return parseMedicationAdministration(xpp);
-    } else if (type.equals("MedicationDispense")) {
-      return parseMedicationDispense(xpp);
-    } else if (type.equals("MedicationKnowledge")) {
-      return parseMedicationKnowledge(xpp);
-    } else if (type.equals("MedicationRequest")) {
-      return parseMedicationRequest(xpp);
-    } else if (type.equals("MedicationStatement")) {
-      return parseMedicationStatement(xpp);
-    } else if (type.equals("MedicinalProductDefinition")) {
-      return parseMedicinalProductDefinition(xpp);
-    } else if (type.equals("MessageDefinition")) {
-      return parseMessageDefinition(xpp);
-    } else if (type.equals("MessageHeader")) {
-      return parseMessageHeader(xpp);
-    } else if (type.equals("MolecularSequence")) {
-      return parseMolecularSequence(xpp);
-    } else if (type.equals("NamingSystem")) {
-      return parseNamingSystem(xpp);
-    } else if (type.equals("NutritionIntake")) {
-      return parseNutritionIntake(xpp);
-    } else if (type.equals("NutritionOrder")) {
-      return parseNutritionOrder(xpp);
-    } else if (type.equals("NutritionProduct")) {
-      return parseNutritionProduct(xpp);
-    } else if (type.equals("Observation")) {
-      return parseObservation(xpp);
-    } else if (type.equals("ObservationDefinition")) {
-      return parseObservationDefinition(xpp);
-    } else if (type.equals("OperationDefinition")) {
-      return parseOperationDefinition(xpp);
-    } else if (type.equals("OperationOutcome")) {
-      return parseOperationOutcome(xpp);
-    } else if (type.equals("Organization")) {
-      return parseOrganization(xpp);
-    } else if (type.equals("OrganizationAffiliation")) {
-      return parseOrganizationAffiliation(xpp);
-    } else if (type.equals("PackagedProductDefinition")) {
-      return parsePackagedProductDefinition(xpp);
-    } else if (type.equals("Parameters")) {
-      return parseParameters(xpp);
-    } else if (type.equals("Patient")) {
-      return parsePatient(xpp);
-    } else if (type.equals("PaymentNotice")) {
-      return parsePaymentNotice(xpp);
-    } else if (type.equals("PaymentReconciliation")) {
-      return parsePaymentReconciliation(xpp);
-    } else if (type.equals("Permission")) {
-      return parsePermission(xpp);
-    } else if (type.equals("Person")) {
-      return parsePerson(xpp);
-    } else if (type.equals("PlanDefinition")) {
-      return parsePlanDefinition(xpp);
-    } else if (type.equals("Practitioner")) {
-      return parsePractitioner(xpp);
-    } else if (type.equals("PractitionerRole")) {
-      return parsePractitionerRole(xpp);
-    } else if (type.equals("Procedure")) {
-      return parseProcedure(xpp);
-    } else if (type.equals("Provenance")) {
-      return parseProvenance(xpp);
-    } else if (type.equals("Questionnaire")) {
-      return parseQuestionnaire(xpp);
-    } else if (type.equals("QuestionnaireResponse")) {
-      return parseQuestionnaireResponse(xpp);
-    } else if (type.equals("RegulatedAuthorization")) {
-      return parseRegulatedAuthorization(xpp);
-    } else if (type.equals("RelatedPerson")) {
-      return parseRelatedPerson(xpp);
-    } else if (type.equals("RequestOrchestration")) {
-      return parseRequestOrchestration(xpp);
-    } else if (type.equals("Requirements")) {
-      return parseRequirements(xpp);
-    } else if (type.equals("ResearchStudy")) {
-      return parseResearchStudy(xpp);
-    } else if (type.equals("ResearchSubject")) {
-      return parseResearchSubject(xpp);
-    } else if (type.equals("RiskAssessment")) {
-      return parseRiskAssessment(xpp);
-    } else if (type.equals("Schedule")) {
-      return parseSchedule(xpp);
-    } else if (type.equals("SearchParameter")) {
-      return parseSearchParameter(xpp);
-    } else if (type.equals("ServiceRequest")) {
-      return parseServiceRequest(xpp);
-    } else if (type.equals("Slot")) {
-      return parseSlot(xpp);
-    } else if (type.equals("Specimen")) {
-      return parseSpecimen(xpp);
-    } else if (type.equals("SpecimenDefinition")) {
-      return parseSpecimenDefinition(xpp);
-    } else if (type.equals("StructureDefinition")) {
-      return parseStructureDefinition(xpp);
-    } else if (type.equals("StructureMap")) {
-      return parseStructureMap(xpp);
-    } else if (type.equals("Subscription")) {
-      return parseSubscription(xpp);
-    } else if (type.equals("SubscriptionStatus")) {
-      return parseSubscriptionStatus(xpp);
-    } else if (type.equals("SubscriptionTopic")) {
-      return parseSubscriptionTopic(xpp);
-    } else if (type.equals("Substance")) {
-      return parseSubstance(xpp);
-    } else if (type.equals("SubstanceDefinition")) {
-      return parseSubstanceDefinition(xpp);
-    } else if (type.equals("SubstanceNucleicAcid")) {
-      return parseSubstanceNucleicAcid(xpp);
-    } else if (type.equals("SubstancePolymer")) {
-      return parseSubstancePolymer(xpp);
-    } else if (type.equals("SubstanceProtein")) {
-      return parseSubstanceProtein(xpp);
-    } else if (type.equals("SubstanceReferenceInformation")) {
-      return parseSubstanceReferenceInformation(xpp);
-    } else if (type.equals("SubstanceSourceMaterial")) {
-      return parseSubstanceSourceMaterial(xpp);
-    } else if (type.equals("SupplyDelivery")) {
-      return parseSupplyDelivery(xpp);
-    } else if (type.equals("SupplyRequest")) {
-      return parseSupplyRequest(xpp);
-    } else if (type.equals("Task")) {
-      return parseTask(xpp);
-    } else if (type.equals("TerminologyCapabilities")) {
-      return parseTerminologyCapabilities(xpp);
-    } else if (type.equals("TestPlan")) {
-      return parseTestPlan(xpp);
-    } else if (type.equals("TestReport")) {
-      return parseTestReport(xpp);
-    } else if (type.equals("TestScript")) {
-      return parseTestScript(xpp);
-    } else if (type.equals("Transport")) {
-      return parseTransport(xpp);
-    } else if (type.equals("ValueSet")) {
-      return parseValueSet(xpp);
-    } else if (type.equals("VerificationResult")) {
-      return parseVerificationResult(xpp);
-    } else if (type.equals("VisionPrescription")) {
-      return parseVisionPrescription(xpp);
-      
-    } else if (type.equals("date")) {
-      return parseDate(xpp);
-    } else if (type.equals("dateTime")) {
-      return parseDateTime(xpp);
-    } else if (type.equals("code")) {
-      return parseCode(xpp);
-    } else if (type.equals("string")) {
-      return parseString(xpp);
-    } else if (type.equals("integer")) {
-      return parseInteger(xpp);
-    } else if (type.equals("integer64")) {
-      return parseInteger64(xpp);
-    } else if (type.equals("oid")) {
-      return parseOid(xpp);
-    } else if (type.equals("canonical")) {
-      return parseCanonical(xpp);
-    } else if (type.equals("uri")) {
-      return parseUri(xpp);
-    } else if (type.equals("uuid")) {
-      return parseUuid(xpp);
-    } else if (type.equals("url")) {
-      return parseUrl(xpp);
-    } else if (type.equals("instant")) {
-      return parseInstant(xpp);
-    } else if (type.equals("boolean")) {
-      return parseBoolean(xpp);
-    } else if (type.equals("base64Binary")) {
-      return parseBase64Binary(xpp);
-    } else if (type.equals("unsignedInt")) {
-      return parseUnsignedInt(xpp);
-    } else if (type.equals("markdown")) {
-      return parseMarkdown(xpp);
-    } else if (type.equals("time")) {
-      return parseTime(xpp);
-    } else if (type.equals("id")) {
-      return parseId(xpp);
-    } else if (type.equals("positiveInt")) {
-      return parsePositiveInt(xpp);
-    } else if (type.equals("decimal")) {
-      return parseDecimal(xpp);
-    } else {
-      throw new FHIRFormatError("Unknown type "+type);
+    }
+    switch (type) {
+      case "Address": return parseAddress(xpp);
+      case "Age": return parseAge(xpp);
+      case "Annotation": return parseAnnotation(xpp);
+      case "Attachment": return parseAttachment(xpp);
+      case "Availability": return parseAvailability(xpp);
+      case "CodeableConcept": return parseCodeableConcept(xpp);
+      case "CodeableReference": return parseCodeableReference(xpp);
+      case "Coding": return parseCoding(xpp);
+      case "ContactDetail": return parseContactDetail(xpp);
+      case "ContactPoint": return parseContactPoint(xpp);
+      case "Contributor": return parseContributor(xpp);
+      case "Count": return parseCount(xpp);
+      case "DataRequirement": return parseDataRequirement(xpp);
+      case "Distance": return parseDistance(xpp);
+      case "Dosage": return parseDosage(xpp);
+      case "Duration": return parseDuration(xpp);
+      case "ElementDefinition": return parseElementDefinition(xpp);
+      case "Expression": return parseExpression(xpp);
+      case "ExtendedContactDetail": return parseExtendedContactDetail(xpp);
+      case "Extension": return parseExtension(xpp);
+      case "HumanName": return parseHumanName(xpp);
+      case "Identifier": return parseIdentifier(xpp);
+      case "MarketingStatus": return parseMarketingStatus(xpp);
+      case "Meta": return parseMeta(xpp);
+      case "MonetaryComponent": return parseMonetaryComponent(xpp);
+      case "Money": return parseMoney(xpp);
+      case "Narrative": return parseNarrative(xpp);
+      case "ParameterDefinition": return parseParameterDefinition(xpp);
+      case "Period": return parsePeriod(xpp);
+      case "ProductShelfLife": return parseProductShelfLife(xpp);
+      case "Quantity": return parseQuantity(xpp);
+      case "Range": return parseRange(xpp);
+      case "Ratio": return parseRatio(xpp);
+      case "RatioRange": return parseRatioRange(xpp);
+      case "Reference": return parseReference(xpp);
+      case "RelatedArtifact": return parseRelatedArtifact(xpp);
+      case "SampledData": return parseSampledData(xpp);
+      case "Signature": return parseSignature(xpp);
+      case "Timing": return parseTiming(xpp);
+      case "TriggerDefinition": return parseTriggerDefinition(xpp);
+      case "UsageContext": return parseUsageContext(xpp);
+      case "VirtualServiceDetail": return parseVirtualServiceDetail(xpp);
+      case "Account": return parseAccount(xpp);
+      case "ActivityDefinition": return parseActivityDefinition(xpp);
+      case "ActorDefinition": return parseActorDefinition(xpp);
+      case "AdministrableProductDefinition": return parseAdministrableProductDefinition(xpp);
+      case "AdverseEvent": return parseAdverseEvent(xpp);
+      case "AllergyIntolerance": return parseAllergyIntolerance(xpp);
+      case "Appointment": return parseAppointment(xpp);
+      case "AppointmentResponse": return parseAppointmentResponse(xpp);
+      case "ArtifactAssessment": return parseArtifactAssessment(xpp);
+      case "AuditEvent": return parseAuditEvent(xpp);
+      case "Basic": return parseBasic(xpp);
+      case "Binary": return parseBinary(xpp);
+      case "BiologicallyDerivedProduct": return parseBiologicallyDerivedProduct(xpp);
+      case "BiologicallyDerivedProductDispense": return parseBiologicallyDerivedProductDispense(xpp);
+      case "BodyStructure": return parseBodyStructure(xpp);
+      case "Bundle": return parseBundle(xpp);
+      case "CapabilityStatement": return parseCapabilityStatement(xpp);
+      case "CarePlan": return parseCarePlan(xpp);
+      case "CareTeam": return parseCareTeam(xpp);
+      case "ChargeItem": return parseChargeItem(xpp);
+      case "ChargeItemDefinition": return parseChargeItemDefinition(xpp);
+      case "Citation": return parseCitation(xpp);
+      case "Claim": return parseClaim(xpp);
+      case "ClaimResponse": return parseClaimResponse(xpp);
+      case "ClinicalImpression": return parseClinicalImpression(xpp);
+      case "ClinicalUseDefinition": return parseClinicalUseDefinition(xpp);
+      case "CodeSystem": return parseCodeSystem(xpp);
+      case "Communication": return parseCommunication(xpp);
+      case "CommunicationRequest": return parseCommunicationRequest(xpp);
+      case "CompartmentDefinition": return parseCompartmentDefinition(xpp);
+      case "Composition": return parseComposition(xpp);
+      case "ConceptMap": return parseConceptMap(xpp);
+      case "Condition": return parseCondition(xpp);
+      case "ConditionDefinition": return parseConditionDefinition(xpp);
+      case "Consent": return parseConsent(xpp);
+      case "Contract": return parseContract(xpp);
+      case "Coverage": return parseCoverage(xpp);
+      case "CoverageEligibilityRequest": return parseCoverageEligibilityRequest(xpp);
+      case "CoverageEligibilityResponse": return parseCoverageEligibilityResponse(xpp);
+      case "DetectedIssue": return parseDetectedIssue(xpp);
+      case "Device": return parseDevice(xpp);
+      case "DeviceAssociation": return parseDeviceAssociation(xpp);
+      case "DeviceDefinition": return parseDeviceDefinition(xpp);
+      case "DeviceDispense": return parseDeviceDispense(xpp);
+      case "DeviceMetric": return parseDeviceMetric(xpp);
+      case "DeviceRequest": return parseDeviceRequest(xpp);
+      case "DeviceUsage": return parseDeviceUsage(xpp);
+      case "DiagnosticReport": return parseDiagnosticReport(xpp);
+      case "DocumentReference": return parseDocumentReference(xpp);
+      case "Encounter": return parseEncounter(xpp);
+      case "EncounterHistory": return parseEncounterHistory(xpp);
+      case "Endpoint": return parseEndpoint(xpp);
+      case "EnrollmentRequest": return parseEnrollmentRequest(xpp);
+      case "EnrollmentResponse": return parseEnrollmentResponse(xpp);
+      case "EpisodeOfCare": return parseEpisodeOfCare(xpp);
+      case "EventDefinition": return parseEventDefinition(xpp);
+      case "Evidence": return parseEvidence(xpp);
+      case "EvidenceReport": return parseEvidenceReport(xpp);
+      case "EvidenceVariable": return parseEvidenceVariable(xpp);
+      case "ExampleScenario": return parseExampleScenario(xpp);
+      case "ExplanationOfBenefit": return parseExplanationOfBenefit(xpp);
+      case "FamilyMemberHistory": return parseFamilyMemberHistory(xpp);
+      case "Flag": return parseFlag(xpp);
+      case "FormularyItem": return parseFormularyItem(xpp);
+      case "GenomicStudy": return parseGenomicStudy(xpp);
+      case "Goal": return parseGoal(xpp);
+      case "GraphDefinition": return parseGraphDefinition(xpp);
+      case "Group": return parseGroup(xpp);
+      case "GuidanceResponse": return parseGuidanceResponse(xpp);
+      case "HealthcareService": return parseHealthcareService(xpp);
+      case "ImagingSelection": return parseImagingSelection(xpp);
+      case "ImagingStudy": return parseImagingStudy(xpp);
+      case "Immunization": return parseImmunization(xpp);
+      case "ImmunizationEvaluation": return parseImmunizationEvaluation(xpp);
+      case "ImmunizationRecommendation": return parseImmunizationRecommendation(xpp);
+      case "ImplementationGuide": return parseImplementationGuide(xpp);
+      case "Ingredient": return parseIngredient(xpp);
+      case "InsurancePlan": return parseInsurancePlan(xpp);
+      case "InventoryItem": return parseInventoryItem(xpp);
+      case "InventoryReport": return parseInventoryReport(xpp);
+      case "Invoice": return parseInvoice(xpp);
+      case "Library": return parseLibrary(xpp);
+      case "Linkage": return parseLinkage(xpp);
+      case "List": return parseListResource(xpp);
+      case "Location": return parseLocation(xpp);
+      case "ManufacturedItemDefinition": return parseManufacturedItemDefinition(xpp);
+      case "Measure": return parseMeasure(xpp);
+      case "MeasureReport": return parseMeasureReport(xpp);
+      case "Medication": return parseMedication(xpp);
+      case "MedicationAdministration": return parseMedicationAdministration(xpp);
+      case "MedicationDispense": return parseMedicationDispense(xpp);
+      case "MedicationKnowledge": return parseMedicationKnowledge(xpp);
+      case "MedicationRequest": return parseMedicationRequest(xpp);
+      case "MedicationStatement": return parseMedicationStatement(xpp);
+      case "MedicinalProductDefinition": return parseMedicinalProductDefinition(xpp);
+      case "MessageDefinition": return parseMessageDefinition(xpp);
+      case "MessageHeader": return parseMessageHeader(xpp);
+      case "MolecularSequence": return parseMolecularSequence(xpp);
+      case "NamingSystem": return parseNamingSystem(xpp);
+      case "NutritionIntake": return parseNutritionIntake(xpp);
+      case "NutritionOrder": return parseNutritionOrder(xpp);
+      case "NutritionProduct": return parseNutritionProduct(xpp);
+      case "Observation": return parseObservation(xpp);
+      case "ObservationDefinition": return parseObservationDefinition(xpp);
+      case "OperationDefinition": return parseOperationDefinition(xpp);
+      case "OperationOutcome": return parseOperationOutcome(xpp);
+      case "Organization": return parseOrganization(xpp);
+      case "OrganizationAffiliation": return parseOrganizationAffiliation(xpp);
+      case "PackagedProductDefinition": return parsePackagedProductDefinition(xpp);
+      case "Parameters": return parseParameters(xpp);
+      case "Patient": return parsePatient(xpp);
+      case "PaymentNotice": return parsePaymentNotice(xpp);
+      case "PaymentReconciliation": return parsePaymentReconciliation(xpp);
+      case "Permission": return parsePermission(xpp);
+      case "Person": return parsePerson(xpp);
+      case "PlanDefinition": return parsePlanDefinition(xpp);
+      case "Practitioner": return parsePractitioner(xpp);
+      case "PractitionerRole": return parsePractitionerRole(xpp);
+      case "Procedure": return parseProcedure(xpp);
+      case "Provenance": return parseProvenance(xpp);
+      case "Questionnaire": return parseQuestionnaire(xpp);
+      case "QuestionnaireResponse": return parseQuestionnaireResponse(xpp);
+      case "RegulatedAuthorization": return parseRegulatedAuthorization(xpp);
+      case "RelatedPerson": return parseRelatedPerson(xpp);
+      case "RequestOrchestration": return parseRequestOrchestration(xpp);
+      case "Requirements": return parseRequirements(xpp);
+      case "ResearchStudy": return parseResearchStudy(xpp);
+      case "ResearchSubject": return parseResearchSubject(xpp);
+      case "RiskAssessment": return parseRiskAssessment(xpp);
+      case "Schedule": return parseSchedule(xpp);
+      case "SearchParameter": return parseSearchParameter(xpp);
+      case "ServiceRequest": return parseServiceRequest(xpp);
+      case "Slot": return parseSlot(xpp);
+      case "Specimen": return parseSpecimen(xpp);
+      case "SpecimenDefinition": return parseSpecimenDefinition(xpp);
+      case "StructureDefinition": return parseStructureDefinition(xpp);
+      case "StructureMap": return parseStructureMap(xpp);
+      case "Subscription": return parseSubscription(xpp);
+      case "SubscriptionStatus": return parseSubscriptionStatus(xpp);
+      case "SubscriptionTopic": return parseSubscriptionTopic(xpp);
+      case "Substance": return parseSubstance(xpp);
+      case "SubstanceDefinition": return parseSubstanceDefinition(xpp);
+      case "SubstanceNucleicAcid": return parseSubstanceNucleicAcid(xpp);
+      case "SubstancePolymer": return parseSubstancePolymer(xpp);
+      case "SubstanceProtein": return parseSubstanceProtein(xpp);
+      case "SubstanceReferenceInformation": return parseSubstanceReferenceInformation(xpp);
+      case "SubstanceSourceMaterial": return parseSubstanceSourceMaterial(xpp);
+      case "SupplyDelivery": return parseSupplyDelivery(xpp);
+      case "SupplyRequest": return parseSupplyRequest(xpp);
+      case "Task": return parseTask(xpp);
+      case "TerminologyCapabilities": return parseTerminologyCapabilities(xpp);
+      case "TestPlan": return parseTestPlan(xpp);
+      case "TestReport": return parseTestReport(xpp);
+      case "TestScript": return parseTestScript(xpp);
+      case "Transport": return parseTransport(xpp);
+      case "ValueSet": return parseValueSet(xpp);
+      case "VerificationResult": return parseVerificationResult(xpp);
+      case "VisionPrescription": return parseVisionPrescription(xpp);
+      case "date": return parseDate(xpp);
+      case "dateTime": return parseDateTime(xpp);
+      case "code": return parseCode(xpp);
+      case "string": return parseString(xpp);
+      case "integer": return parseInteger(xpp);
+      case "integer64": return parseInteger64(xpp);
+      case "oid": return parseOid(xpp);
+      case "canonical": return parseCanonical(xpp);
+      case "uri": return parseUri(xpp);
+      case "uuid": return parseUuid(xpp);
+      case "url": return parseUrl(xpp);
+      case "instant": return parseInstant(xpp);
+      case "boolean": return parseBoolean(xpp);
+      case "base64Binary": return parseBase64Binary(xpp);
+      case "unsignedInt": return parseUnsignedInt(xpp);
+      case "markdown": return parseMarkdown(xpp);
+      case "time": return parseTime(xpp);
+      case "id": return parseId(xpp);
+      case "positiveInt": return parsePositiveInt(xpp);
+      case "decimal": return parseDecimal(xpp);
+      default: throw new FHIRFormatError("Unknown type "+type);
     }
   }
 
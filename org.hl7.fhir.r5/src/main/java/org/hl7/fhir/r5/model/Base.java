@@ -30,9 +30,8 @@ package org.hl7.fhir.r5.model;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.instance.model.api.IBase;
@@ -131,8 +130,15 @@ public abstract class Base implements Serializable, IBase, IElement {
   
   /**
    * User appended data items - allow users to add extra information to the class
+   * 
+   * These are stored inline as name, value, name, value... rather than in a map: there's 
+   * usually only a handful of them, and there can be millions of nodes that have some. 
+   * Names are nearly always string literals, so they're compared by identity first. The pairs 
+   * are packed at the start of the array, so the first empty name marks the end of them; there's 
+   * no separate count, since that would cost every node a field, whether it has user data or not
    */
-  private transient Map<String, Object> userData; 
+  private transient Object[] userData;
+  private static final Object NULL_USER_DATA_NAME = new Object(); // stands in for a null name, so that null can mark the end
 
   /**
    * Post Validation Definition information
@@ -152,38 +158,76 @@ public abstract class Base implements Serializable, IBase, IElement {
   private List<ValidationMessage> validationMessages; 
    
   
+  private int userDataEnd() {
+    int i = 0;
+    while (i < userData.length && userData[i] != null) {
+      i = i + 2;
+    }
+    return i;
+  }
+
+  private int userDataIndex(String name) {
+    Object key = name == null ? NULL_USER_DATA_NAME : name;
+    for (int i = 0; i < userData.length && userData[i] != null; i = i + 2) {
+      if (userData[i] == key) {
+        return i;
+      }
+    }
+    if (name != null) {
+      for (int i = 0; i < userData.length && userData[i] != null; i = i + 2) {
+        if (name.equals(userData[i])) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
   public Object getUserData(String name) {
     if (userData == null)
       return null;
-    return userData.get(name);
+    int i = userDataIndex(name);
+    return i == -1 ? null : userData[i+1];
   }
   
   public void setUserData(String name, Object value) {
-    if (userData == null)
-      userData = new HashMap<String, Object>();
-    userData.put(name, value);
+    if (userData == null) {
+      userData = new Object[4];
+    }
+    int i = userDataIndex(name);
+    if (i == -1) {
+      i = userDataEnd();
+      if (i == userData.length) {
+        userData = Arrays.copyOf(userData, userData.length*2);
+      }
+      userData[i] = name == null ? NULL_USER_DATA_NAME : name;
+    }
+    userData[i+1] = value;
   }
 
   public void clearUserData(String name) {
-    if (userData != null)
-      userData.remove(name);
+    if (userData != null) {
+      int i = userDataIndex(name);
+      if (i != -1) {
+        // move the last one into the gap
+        int last = userDataEnd() - 2;
+        userData[i] = userData[last];
+        userData[i+1] = userData[last+1];
+        userData[last] = null;
+        userData[last+1] = null;
+      }
+    }
   }
  
   
   public void setUserDataINN(String name, Object value) {
     if (value == null)
       return;
-    
-    if (userData == null)
-      userData = new HashMap<String, Object>();
-    userData.put(name, value);
+    setUserData(name, value);
   }
 
   public boolean hasUserData(String name) {
-    if (userData == null)
-      return false;
-    else
-      return userData.containsKey(name) && (userData.get(name) != null);
+    return getUserData(name) != null;
   }
 
 	public String getUserString(String name) {
@@ -203,10 +247,9 @@ public abstract class Base implements Serializable, IBase, IElement {
 
   public void copyUserData(Base other) {
     if (other.userData != null) {
-      if (userData == null) {
-        userData = new HashMap<>();
+      for (int i = 0; i < other.userData.length && other.userData[i] != null; i = i + 2) {
+        setUserData(other.userData[i] == NULL_USER_DATA_NAME ? null : (String) other.userData[i], other.userData[i+1]);
       }
-      userData.putAll(other.userData);
     }
   }      
 
@@ -555,8 +598,7 @@ public abstract class Base implements Serializable, IBase, IElement {
   
   public void copyValues(Base dst) {  
     if (isCopyUserData() && userData != null) {
-      dst.userData = new HashMap<>();
-      dst.userData.putAll(userData);
+      dst.userData = userData.clone();
     }
   }
 
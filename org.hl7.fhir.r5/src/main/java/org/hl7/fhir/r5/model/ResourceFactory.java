@@ -37,455 +37,236 @@ import org.hl7.fhir.exceptions.FHIRException;
 public class ResourceFactory extends Factory {
 
     public static Resource createResource(String name) throws FHIRException {
-        if ("Account".equals(name))
-            return new Account();
-        if ("ActivityDefinition".equals(name))
-            return new ActivityDefinition();
-        if ("ActorDefinition".equals(name))
-            return new ActorDefinition();
-        if ("AdministrableProductDefinition".equals(name))
-            return new AdministrableProductDefinition();
-        if ("AdverseEvent".equals(name))
-            return new AdverseEvent();
-        if ("AllergyIntolerance".equals(name))
-            return new AllergyIntolerance();
-        if ("Appointment".equals(name))
-            return new Appointment();
-        if ("AppointmentResponse".equals(name))
-            return new AppointmentResponse();
-        if ("ArtifactAssessment".equals(name))
-            return new ArtifactAssessment();
-        if ("AuditEvent".equals(name))
-            return new AuditEvent();
-        if ("Basic".equals(name))
-            return new Basic();
-        if ("Binary".equals(name))
-            return new Binary();
-        if ("BiologicallyDerivedProduct".equals(name))
-            return new BiologicallyDerivedProduct();
-        if ("BiologicallyDerivedProductDispense".equals(name))
-            return new BiologicallyDerivedProductDispense();
-        if ("BodyStructure".equals(name))
-            return new BodyStructure();
-        if ("Bundle".equals(name))
-            return new Bundle();
-        if ("CapabilityStatement".equals(name))
-            return new CapabilityStatement();
-        if ("CarePlan".equals(name))
-            return new CarePlan();
-        if ("CareTeam".equals(name))
-            return new CareTeam();
-        if ("ChargeItem".equals(name))
-            return new ChargeItem();
-        if ("ChargeItemDefinition".equals(name))
-            return new ChargeItemDefinition();
-        if ("Citation".equals(name))
-            return new Citation();
-        if ("Claim".equals(name))
-            return new Claim();
-        if ("ClaimResponse".equals(name))
-            return new ClaimResponse();
-        if ("ClinicalImpression".equals(name))
-            return new ClinicalImpression();
-        if ("ClinicalUseDefinition".equals(name))
-            return new ClinicalUseDefinition();
-        if ("CodeSystem".equals(name))
-            return new CodeSystem();
-        if ("Communication".equals(name))
-            return new Communication();
-        if ("CommunicationRequest".equals(name))
-            return new CommunicationRequest();
-        if ("CompartmentDefinition".equals(name))
-            return new CompartmentDefinition();
-        if ("Composition".equals(name))
-            return new Composition();
-        if ("ConceptMap".equals(name))
-            return new ConceptMap();
-        if ("Condition".equals(name))
-            return new Condition();
-        if ("ConditionDefinition".equals(name))
-            return new ConditionDefinition();
-        if ("Consent".equals(name))
-            return new Consent();
-        if ("Contract".equals(name))
-            return new Contract();
-        if ("Coverage".equals(name))
-            return new Coverage();
-        if ("CoverageEligibilityRequest".equals(name))
-            return new CoverageEligibilityRequest();
-        if ("CoverageEligibilityResponse".equals(name))
-            return new CoverageEligibilityResponse();
-        if ("DetectedIssue".equals(name))
-            return new DetectedIssue();
-        if ("Device".equals(name))
-            return new Device();
-        if ("DeviceAssociation".equals(name))
-            return new DeviceAssociation();
-        if ("DeviceDefinition".equals(name))
-            return new DeviceDefinition();
-        if ("DeviceDispense".equals(name))
-            return new DeviceDispense();
-        if ("DeviceMetric".equals(name))
-            return new DeviceMetric();
-        if ("DeviceRequest".equals(name))
-            return new DeviceRequest();
-        if ("DeviceUsage".equals(name))
-            return new DeviceUsage();
-        if ("DiagnosticReport".equals(name))
-            return new DiagnosticReport();
-        if ("DocumentReference".equals(name))
-            return new DocumentReference();
-        if ("Encounter".equals(name))
-            return new Encounter();
-        if ("EncounterHistory".equals(name))
-            return new EncounterHistory();
-        if ("Endpoint".equals(name))
-            return new Endpoint();
-        if ("EnrollmentRequest".equals(name))
-            return new EnrollmentRequest();
-        if ("EnrollmentResponse".equals(name))
-            return new EnrollmentResponse();
-        if ("EpisodeOfCare".equals(name))
-            return new EpisodeOfCare();
-        if ("EventDefinition".equals(name))
-            return new EventDefinition();
-        if ("Evidence".equals(name))
-            return new Evidence();
-        if ("EvidenceReport".equals(name))
-            return new EvidenceReport();
-        if ("EvidenceVariable".equals(name))
-            return new EvidenceVariable();
-        if ("ExampleScenario".equals(name))
-            return new ExampleScenario();
-        if ("ExplanationOfBenefit".equals(name))
-            return new ExplanationOfBenefit();
-        if ("FamilyMemberHistory".equals(name))
-            return new FamilyMemberHistory();
-        if ("Flag".equals(name))
-            return new Flag();
-        if ("FormularyItem".equals(name))
-            return new FormularyItem();
-        if ("GenomicStudy".equals(name))
-            return new GenomicStudy();
-        if ("Goal".equals(name))
-            return new Goal();
-        if ("GraphDefinition".equals(name))
-            return new GraphDefinition();
-        if ("Group".equals(name))
-            return new Group();
-        if ("GuidanceResponse".equals(name))
-            return new GuidanceResponse();
-        if ("HealthcareService".equals(name))
-            return new HealthcareService();
-        if ("ImagingSelection".equals(name))
-            return new ImagingSelection();
-        if ("ImagingStudy".equals(name))
-            return new ImagingStudy();
-        if ("Immunization".equals(name))
-            return new Immunization();
-        if ("ImmunizationEvaluation".equals(name))
-            return new ImmunizationEvaluation();
-        if ("ImmunizationRecommendation".equals(name))
-            return new ImmunizationRecommendation();
-        if ("ImplementationGuide".equals(name))
-            return new ImplementationGuide();
-        if ("Ingredient".equals(name))
-            return new Ingredient();
-        if ("InsurancePlan".equals(name))
-            return new InsurancePlan();
-        if ("InventoryItem".equals(name))
-            return new InventoryItem();
-        if ("InventoryReport".equals(name))
-            return new InventoryReport();
-        if ("Invoice".equals(name))
-            return new Invoice();
-        if ("Library".equals(name))
-            return new Library();
-        if ("Linkage".equals(name))
-            return new Linkage();
-        if ("List".equals(name))
-            return new ListResource();
-        if ("Location".equals(name))
-            return new Location();
-        if ("ManufacturedItemDefinition".equals(name))
-            return new ManufacturedItemDefinition();
-        if ("Measure".equals(name))
-            return new Measure();
-        if ("MeasureReport".equals(name))
-            return new MeasureReport();
-        if ("Medication".equals(name))
-            return new Medication();
-        if ("MedicationAdministration".equals(name))
-            return new MedicationAdministration();
-        if ("MedicationDispense".equals(name))
-            return new MedicationDispense();
-        if ("MedicationKnowledge".equals(name))
-            return new MedicationKnowledge();
-        if ("MedicationRequest".equals(name))
-            return new MedicationRequest();
-        if ("MedicationStatement".equals(name))
-            return new MedicationStatement();
-        if ("MedicinalProductDefinition".equals(name))
-            return new MedicinalProductDefinition();
-        if ("MessageDefinition".equals(name))
-            return new MessageDefinition();
-        if ("MessageHeader".equals(name))
-            return new MessageHeader();
-        if ("MolecularSequence".equals(name))
-            return new MolecularSequence();
-        if ("NamingSystem".equals(name))
-            return new NamingSystem();
-        if ("NutritionIntake".equals(name))
-            return new NutritionIntake();
-        if ("NutritionOrder".equals(name))
-            return new NutritionOrder();
-        if ("NutritionProduct".equals(name))
-            return new NutritionProduct();
-        if ("Observation".equals(name))
-            return new Observation();
-        if ("ObservationDefinition".equals(name))
-            return new ObservationDefinition();
-        if ("OperationDefinition".equals(name))
-            return new OperationDefinition();
-        if ("OperationOutcome".equals(name))
-            return new OperationOutcome();
-        if ("Organization".equals(name))
-            return new Organization();
-        if ("OrganizationAffiliation".equals(name))
-            return new OrganizationAffiliation();
-        if ("PackagedProductDefinition".equals(name))
-            return new PackagedProductDefinition();
-        if ("Parameters".equals(name))
-            return new Parameters();
-        if ("Patient".equals(name))
-            return new Patient();
-        if ("PaymentNotice".equals(name))
-            return new PaymentNotice();
-        if ("PaymentReconciliation".equals(name))
-            return new PaymentReconciliation();
-        if ("Permission".equals(name))
-            return new Permission();
-        if ("Person".equals(name))
-            return new Person();
-        if ("PlanDefinition".equals(name))
-            return new PlanDefinition();
-        if ("Practitioner".equals(name))
-            return new Practitioner();
-        if ("PractitionerRole".equals(name))
-            return new PractitionerRole();
-        if ("Procedure".equals(name))
-            return new Procedure();
-        if ("Provenance".equals(name))
-            return new Provenance();
-        if ("Questionnaire".equals(name))
-            return new Questionnaire();
-        if ("QuestionnaireResponse".equals(name))
-            return new QuestionnaireResponse();
-        if ("RegulatedAuthorization".equals(name))
-            return new RegulatedAuthorization();
-        if ("RelatedPerson".equals(name))
-            return new RelatedPerson();
-        if ("RequestOrchestration".equals(name))
-            return new RequestOrchestration();
-        if ("Requirements".equals(name))
-            return new Requirements();
-        if ("ResearchStudy".equals(name))
-            return new ResearchStudy();
-        if ("ResearchSubject".equals(name))
-            return new ResearchSubject();
-        if ("RiskAssessment".equals(name))
-            return new RiskAssessment();
-        if ("Schedule".equals(name))
-            return new Schedule();
-        if ("SearchParameter".equals(name))
-            return new SearchParameter();
-        if ("ServiceRequest".equals(name))
-            return new ServiceRequest();
-        if ("Slot".equals(name))
-            return new Slot();
-        if ("Specimen".equals(name))
-            return new Specimen();
-        if ("SpecimenDefinition".equals(name))
-            return new SpecimenDefinition();
-        if ("StructureDefinition".equals(name))
-            return new StructureDefinition();
-        if ("StructureMap".equals(name))
-            return new StructureMap();
-        if ("Subscription".equals(name))
-            return new Subscription();
-        if ("SubscriptionStatus".equals(name))
-            return new SubscriptionStatus();
-        if ("SubscriptionTopic".equals(name))
-            return new SubscriptionTopic();
-        if ("Substance".equals(name))
-            return new Substance();
-        if ("SubstanceDefinition".equals(name))
-            return new SubstanceDefinition();
-        if ("SubstanceNucleicAcid".equals(name))
-            return new SubstanceNucleicAcid();
-        if ("SubstancePolymer".equals(name))
-            return new SubstancePolymer();
-        if ("SubstanceProtein".equals(name))
-            return new SubstanceProtein();
-        if ("SubstanceReferenceInformation".equals(name))
-            return new SubstanceReferenceInformation();
-        if ("SubstanceSourceMaterial".equals(name))
-            return new SubstanceSourceMaterial();
-        if ("SupplyDelivery".equals(name))
-            return new SupplyDelivery();
-        if ("SupplyRequest".equals(name))
-            return new SupplyRequest();
-        if ("Task".equals(name))
-            return new Task();
-        if ("TerminologyCapabilities".equals(name))
-            return new TerminologyCapabilities();
-        if ("TestPlan".equals(name))
-            return new TestPlan();
-        if ("TestReport".equals(name))
-            return new TestReport();
-        if ("TestScript".equals(name))
-            return new TestScript();
-        if ("Transport".equals(name))
-            return new Transport();
-        if ("ValueSet".equals(name))
-            return new ValueSet();
-        if ("VerificationResult".equals(name))
-            return new VerificationResult();
-        if ("VisionPrescription".equals(name))
-            return new VisionPrescription();
-
-        else
-            throw new FHIRException("Unknown Resource Name '"+name+"'");
+        switch (name == null ? "" : name) {
+        case "Account": return new Account();
+        case "ActivityDefinition": return new ActivityDefinition();
+        case "ActorDefinition": return new ActorDefinition();
+        case "AdministrableProductDefinition": return new AdministrableProductDefinition();
+        case "AdverseEvent": return new AdverseEvent();
+        case "AllergyIntolerance": return new AllergyIntolerance();
+        case "Appointment": return new Appointment();
+        case "AppointmentResponse": return new AppointmentResponse();
+        case "ArtifactAssessment": return new ArtifactAssessment();
+        case "AuditEvent": return new AuditEvent();
+        case "Basic": return new Basic();
+        case "Binary": return new Binary();
+        case "BiologicallyDerivedProduct": return new BiologicallyDerivedProduct();
+        case "BiologicallyDerivedProductDispense": return new BiologicallyDerivedProductDispense();
+        case "BodyStructure": return new BodyStructure();
+        case "Bundle": return new Bundle();
+        case "CapabilityStatement": return new CapabilityStatement();
+        case "CarePlan": return new CarePlan();
+        case "CareTeam": return new CareTeam();
+        case "ChargeItem": return new ChargeItem();
+        case "ChargeItemDefinition": return new ChargeItemDefinition();
+        case "Citation": return new Citation();
+        case "Claim": return new Claim();
+        case "ClaimResponse": return new ClaimResponse();
+        case "ClinicalImpression": return new ClinicalImpression();
+        case "ClinicalUseDefinition": return new ClinicalUseDefinition();
+        case "CodeSystem": return new CodeSystem();
+        case "Communication": return new Communication();
+        case "CommunicationRequest": return new CommunicationRequest();
+        case "CompartmentDefinition": return new CompartmentDefinition();
+        case "Composition": return new Composition();
+        case "ConceptMap": return new ConceptMap();
+        case "Condition": return new Condition();
+        case "ConditionDefinition": return new ConditionDefinition();
+        case "Consent": return new Consent();
+        case "Contract": return new Contract();
+        case "Coverage": return new Coverage();
+        case "CoverageEligibilityRequest": return new CoverageEligibilityRequest();
+        case "CoverageEligibilityResponse": return new CoverageEligibilityResponse();
+        case "DetectedIssue": return new DetectedIssue();
+        case "Device": return new Device();
+        case "DeviceAssociation": return new DeviceAssociation();
+        case "DeviceDefinition": return new DeviceDefinition();
+        case "DeviceDispense": return new DeviceDispense();
+        case "DeviceMetric": return new DeviceMetric();
+        case "DeviceRequest": return new DeviceRequest();
+        case "DeviceUsage": return new DeviceUsage();
+        case "DiagnosticReport": return new DiagnosticReport();
+        case "DocumentReference": return new DocumentReference();
+        case "Encounter": return new Encounter();
+        case "EncounterHistory": return new EncounterHistory();
+        case "Endpoint": return new Endpoint();
+        case "EnrollmentRequest": return new EnrollmentRequest();
+        case "EnrollmentResponse": return new EnrollmentResponse();
+        case "EpisodeOfCare": return new EpisodeOfCare();
+        case "EventDefinition": return new EventDefinition();
+        case "Evidence": return new Evidence();
+        case "EvidenceReport": return new EvidenceReport();
+        case "EvidenceVariable": return new EvidenceVariable();
+        case "ExampleScenario": return new ExampleScenario();
+        case "ExplanationOfBenefit": return new ExplanationOfBenefit();
+        case "FamilyMemberHistory": return new FamilyMemberHistory();
+        case "Flag": return new Flag();
+        case "FormularyItem": return new FormularyItem();
+        case "GenomicStudy": return new GenomicStudy();
+        case "Goal": return new Goal();
+        case "GraphDefinition": return new GraphDefinition();
+        case "Group": return new Group();
+        case "GuidanceResponse": return new GuidanceResponse();
+        case "HealthcareService": return new HealthcareService();
+        case "ImagingSelection": return new ImagingSelection();
+        case "ImagingStudy": return new ImagingStudy();
+        case "Immunization": return new Immunization();
+        case "ImmunizationEvaluation": return new ImmunizationEvaluation();
+        case "ImmunizationRecommendation": return new ImmunizationRecommendation();
+        case "ImplementationGuide": return new ImplementationGuide();
+        case "Ingredient": return new Ingredient();
+        case "InsurancePlan": return new InsurancePlan();
+        case "InventoryItem": return new InventoryItem();
+        case "InventoryReport": return new InventoryReport();
+        case "Invoice": return new Invoice();
+        case "Library": return new Library();
+        case "Linkage": return new Linkage();
+        case "List": return new ListResource();
+        case "Location": return new Location();
+        case "ManufacturedItemDefinition": return new ManufacturedItemDefinition();
+        case "Measure": return new Measure();
+        case "MeasureReport": return new MeasureReport();
+        case "Medication": return new Medication();
+        case "MedicationAdministration": return new MedicationAdministration();
+        case "MedicationDispense": return new MedicationDispense();
+        case "MedicationKnowledge": return new MedicationKnowledge();
+        case "MedicationRequest": return new MedicationRequest();
+        case "MedicationStatement": return new MedicationStatement();
+        case "MedicinalProductDefinition": return new MedicinalProductDefinition();
+        case "MessageDefinition": return new MessageDefinition();
+        case "MessageHeader": return new MessageHeader();
+        case "MolecularSequence": return new MolecularSequence();
+        case "NamingSystem": return new NamingSystem();
+        case "NutritionIntake": return new NutritionIntake();
+        case "NutritionOrder": return new NutritionOrder();
+        case "NutritionProduct": return new NutritionProduct();
+        case "Observation": return new Observation();
+        case "ObservationDefinition": return new ObservationDefinition();
+        case "OperationDefinition": return new OperationDefinition();
+        case "OperationOutcome": return new OperationOutcome();
+        case "Organization": return new Organization();
+        case "OrganizationAffiliation": return new OrganizationAffiliation();
+        case "PackagedProductDefinition": return new PackagedProductDefinition();
+        case "Parameters": return new Parameters();
+        case "Patient": return new Patient();
+        case "PaymentNotice": return new PaymentNotice();
+        case "PaymentReconciliation": return new PaymentReconciliation();
+        case "Permission": return new Permission();
+        case "Person": return new Person();
+        case "PlanDefinition": return new PlanDefinition();
+        case "Practitioner": return new Practitioner();
+        case "PractitionerRole": return new PractitionerRole();
+        case "Procedure": return new Procedure();
+        case "Provenance": return new Provenance();
+        case "Questionnaire": return new Questionnaire();
+        case "QuestionnaireResponse": return new QuestionnaireResponse();
+        case "RegulatedAuthorization": return new RegulatedAuthorization();
+        case "RelatedPerson": return new RelatedPerson();
+        case "RequestOrchestration": return new RequestOrchestration();
+        case "Requirements": return new Requirements();
+        case "ResearchStudy": return new ResearchStudy();
+        case "ResearchSubject": return new ResearchSubject();
+        case "RiskAssessment": return new RiskAssessment();
+        case "Schedule": return new Schedule();
+        case "SearchParameter": return new SearchParameter();
+        case "ServiceRequest": return new ServiceRequest();
+        case "Slot": return new Slot();
+        case "Specimen": return new Specimen();
+        case "SpecimenDefinition": return new SpecimenDefinition();
+        case "StructureDefinition": return new StructureDefinition();
+        case "StructureMap": return new StructureMap();
+        case "Subscription": return new Subscription();
+        case "SubscriptionStatus": return new SubscriptionStatus();
+        case "SubscriptionTopic": return new SubscriptionTopic();
+        case "Substance": return new Substance();
+        case "SubstanceDefinition": return new SubstanceDefinition();
+        case "SubstanceNucleicAcid": return new SubstanceNucleicAcid();
+        case "SubstancePolymer": return new SubstancePolymer();
+        case "SubstanceProtein": return new SubstanceProtein();
+        case "SubstanceReferenceInformation": return new SubstanceReferenceInformation();
+        case "SubstanceSourceMaterial": return new SubstanceSourceMaterial();
+        case "SupplyDelivery": return new SupplyDelivery();
+        case "SupplyRequest": return new SupplyRequest();
+        case "Task": return new Task();
+        case "TerminologyCapabilities": return new TerminologyCapabilities();
+        case "TestPlan": return new TestPlan();
+        case "TestReport": return new TestReport();
+        case "TestScript": return new TestScript();
+        case "Transport": return new Transport();
+        case "ValueSet": return new ValueSet();
+        case "VerificationResult": return new VerificationResult();
+        case "VisionPrescription": return new VisionPrescription();
+        default: throw new FHIRException("Unknown Resource Name '"+name+"'");
+        }
     }
 
     public static Element createType(String name) throws FHIRException {
-        if ("base64Binary".equals(name))            
-          return new Base64BinaryType();
-        if ("boolean".equals(name))            
-          return new BooleanType();
-        if ("canonical".equals(name))            
-          return new CanonicalType();
-        if ("code".equals(name))            
-          return new CodeType();
-        if ("date".equals(name))            
-          return new DateType();
-        if ("dateTime".equals(name))            
-          return new DateTimeType();
-        if ("decimal".equals(name))            
-          return new DecimalType();
-        if ("id".equals(name))            
-          return new IdType();
-        if ("instant".equals(name))            
-          return new InstantType();
-        if ("integer".equals(name))            
-          return new IntegerType();
-        if ("integer64".equals(name))            
-          return new Integer64Type();
-        if ("markdown".equals(name))            
-          return new MarkdownType();
-        if ("oid".equals(name))            
-          return new OidType();
-        if ("positiveInt".equals(name))            
-          return new PositiveIntType();
-        if ("string".equals(name))            
-          return new StringType();
-        if ("time".equals(name))            
-          return new TimeType();
-        if ("unsignedInt".equals(name))            
-          return new UnsignedIntType();
-        if ("uri".equals(name))            
-          return new UriType();
-        if ("url".equals(name))            
-          return new UrlType();
-        if ("uuid".equals(name))            
-          return new UuidType();
-        if ("Address".equals(name))
-            return new Address();
-        if ("Age".equals(name))
-            return new Age();
-        if ("Annotation".equals(name))
-            return new Annotation();
-        if ("Attachment".equals(name))
-            return new Attachment();
-        if ("Availability".equals(name))
-            return new Availability();
-        if ("CodeableConcept".equals(name))
-            return new CodeableConcept();
-        if ("CodeableReference".equals(name))
-            return new CodeableReference();
-        if ("Coding".equals(name))
-            return new Coding();
-        if ("ContactDetail".equals(name))
-            return new ContactDetail();
-        if ("ContactPoint".equals(name))
-            return new ContactPoint();
-        if ("Contributor".equals(name))
-            return new Contributor();
-        if ("Count".equals(name))
-            return new Count();
-        if ("DataRequirement".equals(name))
-            return new DataRequirement();
-        if ("Distance".equals(name))
-            return new Distance();
-        if ("Dosage".equals(name))
-            return new Dosage();
-        if ("Duration".equals(name))
-            return new Duration();
-        if ("ElementDefinition".equals(name))
-            return new ElementDefinition();
-        if ("Expression".equals(name))
-            return new Expression();
-        if ("ExtendedContactDetail".equals(name))
-            return new ExtendedContactDetail();
-        if ("Extension".equals(name))
-            return new Extension();
-        if ("HumanName".equals(name))
-            return new HumanName();
-        if ("Identifier".equals(name))
-            return new Identifier();
-        if ("MarketingStatus".equals(name))
-            return new MarketingStatus();
-        if ("Meta".equals(name))
-            return new Meta();
-        if ("MonetaryComponent".equals(name))
-            return new MonetaryComponent();
-        if ("Money".equals(name))
-            return new Money();
-        if ("Narrative".equals(name))
-            return new Narrative();
-        if ("ParameterDefinition".equals(name))
-            return new ParameterDefinition();
-        if ("Period".equals(name))
-            return new Period();
-        if ("ProductShelfLife".equals(name))
-            return new ProductShelfLife();
-        if ("Quantity".equals(name))
-            return new Quantity();
-        if ("Range".equals(name))
-            return new Range();
-        if ("Ratio".equals(name))
-            return new Ratio();
-        if ("RatioRange".equals(name))
-            return new RatioRange();
-        if ("Reference".equals(name))
-            return new Reference();
-        if ("RelatedArtifact".equals(name))
-            return new RelatedArtifact();
-        if ("SampledData".equals(name))
-            return new SampledData();
-        if ("Signature".equals(name))
-            return new Signature();
-        if ("Timing".equals(name))
-            return new Timing();
-        if ("TriggerDefinition".equals(name))
-            return new TriggerDefinition();
-        if ("UsageContext".equals(name))
-            return new UsageContext();
-        if ("VirtualServiceDetail".equals(name))
-            return new VirtualServiceDetail();
-
-        else
-            throw new FHIRException("Unknown Type Name '"+name+"'");    }
+        switch (name == null ? "" : name) {
+        case "base64Binary": return new Base64BinaryType();
+        case "boolean": return new BooleanType();
+        case "canonical": return new CanonicalType();
+        case "code": return new CodeType();
+        case "date": return new DateType();
+        case "dateTime": return new DateTimeType();
+        case "decimal": return new DecimalType();
+        case "id": return new IdType();
+        case "instant": return new InstantType();
+        case "integer": return new IntegerType();
+        case "integer64": return new Integer64Type();
+        case "markdown": return new MarkdownType();
+        case "oid": return new OidType();
+        case "positiveInt": return new PositiveIntType();
+        case "string": return new StringType();
+        case "time": return new TimeType();
+        case "unsignedInt": return new UnsignedIntType();
+        case "uri": return new UriType();
+        case "url": return new UrlType();
+        case "uuid": return new UuidType();
+        case "Address": return new Address();
+        case "Age": return new Age();
+        case "Annotation": return new Annotation();
+        case "Attachment": return new Attachment();
+        case "Availability": return new Availability();
+        case "CodeableConcept": return new CodeableConcept();
+        case "CodeableReference": return new CodeableReference();
+        case "Coding": return new Coding();
+        case "ContactDetail": return new ContactDetail();
+        case "ContactPoint": return new ContactPoint();
+        case "Contributor": return new Contributor();
+        case "Count": return new Count();
+        case "DataRequirement": return new DataRequirement();
+        case "Distance": return new Distance();
+        case "Dosage": return new Dosage();
+        case "Duration": return new Duration();
+        case "ElementDefinition": return new ElementDefinition();
+        case "Expression": return new Expression();
+        case "ExtendedContactDetail": return new ExtendedContactDetail();
+        case "Extension": return new Extension();
+        case "HumanName": return new HumanName();
+        case "Identifier": return new Identifier();
+        case "MarketingStatus": return new MarketingStatus();
+        case "Meta": return new Meta();
+        case "MonetaryComponent": return new MonetaryComponent();
+        case "Money": return new Money();
+        case "Narrative": return new Narrative();
+        case "ParameterDefinition": return new ParameterDefinition();
+        case "Period": return new Period();
+        case "ProductShelfLife": return new ProductShelfLife();
+        case "Quantity": return new Quantity();
+        case "Range": return new Range();
+        case "Ratio": return new Ratio();
+        case "RatioRange": return new RatioRange();
+        case "Reference": return new Reference();
+        case "RelatedArtifact": return new RelatedArtifact();
+        case "SampledData": return new SampledData();
+        case "Signature": return new Signature();
+        case "Timing": return new Timing();
+        case "TriggerDefinition": return new TriggerDefinition();
+        case "UsageContext": return new UsageContext();
+        case "VirtualServiceDetail": return new VirtualServiceDetail();
+        default: throw new FHIRException("Unknown Type Name '"+name+"'");
+        }
+    }
 
     public static Base createResourceOrType(String name) throws FHIRException {
       switch (name.hashCode()) {
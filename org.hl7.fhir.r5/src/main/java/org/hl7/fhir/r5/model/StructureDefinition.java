@@ -5369,7 +5369,8 @@ public String describeType() {
     } 
   }
 
-  private boolean generatedSnapshot;
+  // volatile, since the snapshot can be generated on one thread and used on others (see BaseWorkerContext.generateSnapshotOnFetch)
+  private volatile boolean generatedSnapshot;
   private boolean generatingSnapshot;
 
   public boolean isGeneratedSnapshot() {
@@ -5388,6 +5389,18 @@ public String describeType() {
     this.generatingSnapshot = generatingSnapshot;
   }
 
+  // the index of the snapshot (see SnapshotIndex). Not part of the resource, and not copied. It's kept here
+  // rather than in the user data so that validators that share the structure on other threads can read it safely
+  private volatile Object snapshotIndex;
+
+  public Object getSnapshotIndex() {
+    return snapshotIndex;
+  }
+
+  public void setSnapshotIndex(Object snapshotIndex) {
+    this.snapshotIndex = snapshotIndex;
+  }
+
 // end addition
 
 }
@@ -0,0 +1,375 @@
+package org.hl7.fhir.r5.terminologies;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hl7.fhir.r5.model.CodeSystem;
+import org.hl7.fhir.r5.model.CodeSystem.ConceptDefinitionComponent;
+import org.hl7.fhir.r5.model.CodeSystem.ConceptPropertyComponent;
+
+/**
+ * An index of the concepts in a code system (by code, by code ignoring case, by alternate code, and
+ * by property value, along with the parent of each concept), so that CodeSystemUtilities and the
+ * terminology validation and expansion code don't have to walk the whole concept hierarchy to find
+ * a code.
+ *
+ * Indexes are attached to the list of concepts of a CodeSystem (so each version of a code system
+ * has its own). An index is only built once a list has been searched a few times without the
+ * number of concepts changing, so code systems that are still being built are just walked as before.
+ *
+ * The index only answers when it finds the code. When it doesn't, the caller walks the concepts, so
+ * codes that have been added (at any level) or renamed since the index was built are still found;
+ * after enough misses the index is rebuilt. If concepts are added at the root, or a concept found
+ * through the index doesn't have the code any more, the index is thrown away. Code that removes or
+ * moves concepts after looking codes up should call clear() (CodeSystemUtilities.sortAllCodes does, and
+ * so does the worker context when code systems are added, dropped or unloaded).
+ *
+ * The answers are in the order that a depth first walk of the hierarchy would find them, so the
+ * first one is what the walk would find
+ */
+public class CodeSystemConceptIndex {
+
+  // how many times a list has to be searched (with no change in size) before it's worth indexing
+  private static final int MIN_LOOKUPS = 4;
+  // how many misses before the index is rebuilt, in case the codes were added after it was built.
+  // Each miss costs a walk of the concepts anyway, so rebuilding this often costs little more
+  private static final int MAX_MISSES = 100;
+  private static final int[] NONE = new int[0];
+
+  // the indexes, by the identity of the list they index. The lists are only weakly held, so the
+  // indexes go when the code systems do
+  private static final Map<ListKey, Holder> INDEXES = new HashMap<>();
+  private static final ReferenceQueue<List<ConceptDefinitionComponent>> COLLECTED = new ReferenceQueue<>();
+
+  private static class ListKey extends WeakReference<List<ConceptDefinitionComponent>> {
+    private final int hash;
+
+    private ListKey(List<ConceptDefinitionComponent> list, ReferenceQueue<List<ConceptDefinitionComponent>> queue) {
+      super(list, queue);
+      hash = System.identityHashCode(list);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      Object list = get();
+      return list != null && obj instanceof ListKey && ((ListKey) obj).get() == list;
+    }
+  }
+
+  private static class Holder {
+    private int size;
+    private int lookups;
+    private CodeSystemConceptIndex index;
+  }
+
+  private final int rootSize;
+  private final ConceptDefinitionComponent[] concepts;
+  private final int[] parents;
+  private final Map<ConceptDefinitionComponent, Integer> positions;
+  private final Map<String, int[]> byCode = new HashMap<>();
+  private final Map<String, int[]> byLowerCode = new HashMap<>();
+  private final Map<String, int[]> byAltCode = new HashMap<>();
+  private final Map<String, Map<String, int[]>> byProperty = new ConcurrentHashMap<>();
+  private final boolean modifiers;
+  private volatile boolean stale;
+  private final AtomicInteger misses = new AtomicInteger();
+
+  private CodeSystemConceptIndex(List<ConceptDefinitionComponent> root) {
+    rootSize = root.size();
+    List<ConceptDefinitionComponent> list = new ArrayList<>();
+    List<Integer> parentList = new ArrayList<>();
+    walk(root, -1, list, parentList);
+    concepts = list.toArray(new ConceptDefinitionComponent[list.size()]);
+    parents = new int[concepts.length];
+    positions = new IdentityHashMap<>(concepts.length);
+    boolean mods = false;
+    for (int i = 0; i < concepts.length; i++) {
+      ConceptDefinitionComponent c = concepts[i];
+      parents[i] = parentList.get(i);
+      mods = mods || c.hasModifierExtension();
+      positions.putIfAbsent(c, i);
+      if (c.hasCode()) {
+        add(byCode, c.getCode(), i);
+        add(byLowerCode, fold(c.getCode()), i);
+      }
+      for (ConceptPropertyComponent p : c.getProperty()) {
+        if ("alternateCode".equals(p.getCode()) && p.hasValue() && p.getValue().isPrimitive() && p.getValue().primitiveValue() != null) {
+          add(byAltCode, p.getValue().primitiveValue(), i);
+        }
+      }
+    }
+    modifiers = mods;
+  }
+
+  private static void walk(List<ConceptDefinitionComponent> list, int parent, List<ConceptDefinitionComponent> concepts, List<Integer> parents) {
+    for (ConceptDefinitionComponent c : list) {
+      int i = concepts.size();
+      concepts.add(c);
+      parents.add(parent);
+      walk(c.getConcept(), i, concepts, parents);
+    }
+  }
+
+  private static void add(Map<String, int[]> map, String key, int i) {
+    int[] existing = map.get(key);
+    if (existing == null) {
+      map.put(key, new int[] {i});
+    } else if (existing[existing.length - 1] != i) {
+      int[] n = Arrays.copyOf(existing, existing.length + 1);
+      n[existing.length] = i;
+      map.put(key, n);
+    }
+  }
+
+  /**
+   * Get the index for the list of concepts (usually CodeSystem.concept), if there is one, or it's
+   * time to build one. Returns null if the list should just be walked
+   */
+  public static CodeSystemConceptIndex forConcepts(List<ConceptDefinitionComponent> concepts) {
+    if (concepts == null || concepts.isEmpty()) {
+      return null;
+    }
+    Holder holder;
+    synchronized (INDEXES) {
+      expunge();
+      holder = INDEXES.get(new ListKey(concepts, null));
+      if (holder == null) {
+        holder = new Holder();
+        holder.size = concepts.size();
+        INDEXES.put(new ListKey(concepts, COLLECTED), holder);
+        return null;
+      }
+    }
+    synchronized (holder) {
+      if (holder.index != null && !holder.index.stale && holder.index.rootSize == concepts.size()) {
+        return holder.index;
+      }
+      if (holder.size != concepts.size() || holder.index != null) {
+        // it's changing, or has changed since it was indexed: wait until it's stable again
+        holder.size = concepts.size();
+        holder.lookups = 0;
+        holder.index = null;
+        return null;
+      }
+      holder.lookups++;
+      if (holder.lookups < MIN_LOOKUPS) {
+        return null;
+      }
+      holder.index = new CodeSystemConceptIndex(concepts);
+      return holder.index;
+    }
+  }
+
+  /**
+   * Discard the index of the concepts of the code system (if it has one)
+   */
+  public static void clear(CodeSystem cs) {
+    if (cs.hasConcept()) {
+      synchronized (INDEXES) {
+        expunge();
+        INDEXES.remove(new ListKey(cs.getConcept(), null));
+      }
+    }
+  }
+
+  // drop the entries for lists that have been collected. Only called holding the lock on INDEXES
+  private static void expunge() {
+    Reference<? extends List<ConceptDefinitionComponent>> ref;
+    while ((ref = COLLECTED.poll()) != null) {
+      INDEXES.remove(ref);
+    }
+  }
+
+  /**
+   * @return the concepts that have the code; null if the code isn't in the index, or the index turns
+   * out to be out of date, in which case the concepts have to be walked
+   */
+  public List<ConceptDefinitionComponent> getByCode(String code) {
+    int[] found = byCode.getOrDefault(code, NONE);
+    if (found.length == 0) {
+      return miss();
+    }
+    List<ConceptDefinitionComponent> res = new ArrayList<>(found.length);
+    for (int i : found) {
+      ConceptDefinitionComponent c = concepts[i];
+      if (!code.equals(c.getCode())) {
+        stale = true;
+        return null;
+      }
+      res.add(c);
+    }
+    return res;
+  }
+
+  /**
+   * @return the concepts that have the code, or an alternate code that is the code (of any use), or,
+   * if the code system isn't case sensitive, the code in a different case. Null if there aren't any in
+   * the index, or the index turns out to be out of date, in which case the concepts have to be walked
+   */
+  public List<ConceptDefinitionComponent> getCandidates(String code, boolean caseSensitive) {
+    int[] direct = caseSensitive ? byCode.getOrDefault(code, NONE) : byLowerCode.getOrDefault(fold(code), NONE);
+    int[] alt = byAltCode.getOrDefault(code, NONE);
+    int[] all = merge(direct, alt);
+    if (all.length == 0) {
+      return miss();
+    }
+    List<ConceptDefinitionComponent> res = new ArrayList<>(all.length);
+    for (int i : all) {
+      ConceptDefinitionComponent c = concepts[i];
+      if (!c.hasCode() || !(caseSensitive ? code.equals(c.getCode()) : code.equalsIgnoreCase(c.getCode()))) {
+        if (Arrays.binarySearch(alt, i) < 0 || !hasAltCode(c, code)) {
+          stale = true;
+          return null;
+        }
+      }
+      res.add(c);
+    }
+    return res;
+  }
+
+  /**
+   * @return the concepts where the first value of the property (by code) is the value, which is how
+   * PropertyFilter reads properties. Null if there aren't any in the index, or the index turns out
+   * to be out of date, in which case the concepts have to be walked. The values for a property are
+   * indexed the first time the property is asked for
+   */
+  public List<ConceptDefinitionComponent> getByProperty(String property, String value) {
+    int[] found = byProperty.computeIfAbsent(property, this::indexProperty).getOrDefault(value, NONE);
+    if (found.length == 0) {
+      return miss();
+    }
+    List<ConceptDefinitionComponent> res = new ArrayList<>(found.length);
+    for (int i : found) {
+      ConceptDefinitionComponent c = concepts[i];
+      if (!value.equals(firstPropertyValue(c, property))) {
+        stale = true;
+        return null;
+      }
+      res.add(c);
+    }
+    return res;
+  }
+
+  private Map<String, int[]> indexProperty(String property) {
+    Map<String, int[]> res = new HashMap<>();
+    for (int i = 0; i < concepts.length; i++) {
+      String v = firstPropertyValue(concepts[i], property);
+      if (v != null) {
+        add(res, v, i);
+      }
+    }
+    return res;
+  }
+
+  private static String firstPropertyValue(ConceptDefinitionComponent c, String property) {
+    for (ConceptPropertyComponent p : c.getProperty()) {
+      if (p.hasCode() && p.getCode().equals(property)) {
+        return p.hasValue() && p.getValue().isPrimitive() ? p.getValue().primitiveValue() : null;
+      }
+    }
+    return null;
+  }
+
+  private List<ConceptDefinitionComponent> miss() {
+    if (misses.incrementAndGet() >= MAX_MISSES) {
+      stale = true;
+    }
+    return null;
+  }
+
+  /**
+   * @return the concept, and the concepts it's nested in, starting at the root; null if the
+   * concept isn't in the index
+   */
+  public List<ConceptDefinitionComponent> getPath(ConceptDefinitionComponent concept) {
+    Integer i = positions.get(concept);
+    if (i == null) {
+      return null;
+    }
+    List<ConceptDefinitionComponent> res = new ArrayList<>();
+    for (int p = i; p != -1; p = parents[p]) {
+      res.add(0, concepts[p]);
+    }
+    return res;
+  }
+
+  /**
+   * @return the concept that the concept is nested in, or null if it's at the root (or isn't in the index)
+   */
+  public ConceptDefinitionComponent getParent(ConceptDefinitionComponent concept) {
+    Integer i = positions.get(concept);
+    return i == null || parents[i] == -1 ? null : concepts[parents[i]];
+  }
+
+  public int size() {
+    return concepts.length;
+  }
+
+  /**
+   * @return true if any of the concepts had modifier extensions when the index was built
+   */
+  public boolean hasModifiers() {
+    return modifiers;
+  }
+
+  /**
+   * A key for the code such that two codes have the same key if (and only if) String.equalsIgnoreCase
+   * says they're the same
+   */
+  private static String fold(String code) {
+    char[] chars = code.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+    }
+    return new String(chars);
+  }
+
+  private static boolean hasAltCode(ConceptDefinitionComponent c, String code) {
+    for (ConceptPropertyComponent p : c.getProperty()) {
+      if ("alternateCode".equals(p.getCode()) && p.hasValue() && p.getValue().isPrimitive() && code.equals(p.getValue().primitiveValue())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int[] merge(int[] a, int[] b) {
+    if (b.length == 0) {
+      return a;
+    }
+    if (a.length == 0) {
+      return b;
+    }
+    int[] res = new int[a.length + b.length];
+    int i = 0, j = 0, k = 0;
+    while (i < a.length || j < b.length) {
+      int v;
+      if (j == b.length || (i < a.length && a[i] <= b[j])) {
+        v = a[i++];
+      } else {
+        v = b[j++];
+      }
+      if (k == 0 || res[k-1] != v) {
+        res[k++] = v;
+      }
+    }
+    return Arrays.copyOf(res, k);
+  }
+}
@@ -454,6 +454,10 @@ public class CodeSystemUtilities extends TerminologyUtilities {
   }
 
   public static String getCodeDefinition(CodeSystem cs, String code) {
+    List<ConceptDefinitionComponent> indexed = indexedCode(cs.getConcept(), code);
+    if (indexed != null) {
+      return indexed.get(0).getDefinition();
+    }
     return getCodeDefinition(cs.getConcept(), code);
   }
 
@@ -521,10 +525,19 @@ public class CodeSystemUtilities extends TerminologyUtilities {
   }
 
   public static ConceptDefinitionComponent findCode(List<ConceptDefinitionComponent> list, String code) {
+    List<ConceptDefinitionComponent> indexed = indexedCode(list, code);
+    if (indexed != null) {
+      return indexed.get(0);
+    }
+    return walkForCode(list, code);
+  }
+
+  // the index is for the list that was asked about (the root), so the levels below are just walked
+  private static ConceptDefinitionComponent walkForCode(List<ConceptDefinitionComponent> list, String code) {
     for (ConceptDefinitionComponent c : list) {
       if (c.hasCode() && c.getCode().equals(code))
         return c;
-      ConceptDefinitionComponent s = findCode(c.getConcept(), code);
+      ConceptDefinitionComponent s = walkForCode(c.getConcept(), code);
       if (s != null)
         return s;
     }
@@ -532,7 +545,26 @@ public class CodeSystemUtilities extends TerminologyUtilities {
   }
 
 
+  /**
+   * Look the code up in the index of the concepts, if there is one. Returns null if the concepts
+   * have to be walked instead (including when the index doesn't have the code)
+   */
+  private static List<ConceptDefinitionComponent> indexedCode(List<ConceptDefinitionComponent> list, String code) {
+    if (Utilities.noString(code)) {
+      return null;
+    }
+    CodeSystemConceptIndex index = CodeSystemConceptIndex.forConcepts(list);
+    return index == null ? null : index.getByCode(code);
+  }
+
   public static List<ConceptDefinitionComponent> findCodeWithParents(List<ConceptDefinitionComponent> parents, List<ConceptDefinitionComponent> list, String code) {
+    if (parents == null) {
+      CodeSystemConceptIndex index = Utilities.noString(code) ? null : CodeSystemConceptIndex.forConcepts(list);
+      List<ConceptDefinitionComponent> indexed = index == null ? null : index.getByCode(code);
+      if (indexed != null) {
+        return index.getPath(indexed.get(0));
+      }
+    }
     for (ConceptDefinitionComponent c : list) {
       if (c.hasCode() && c.getCode().equals(code)) {
         return addToList(parents, c);
@@ -554,6 +586,20 @@ public class CodeSystemUtilities extends TerminologyUtilities {
   }
 
   public static ConceptDefinitionComponent findCodeOrAltCode(List<ConceptDefinitionComponent> list, String code, String use) {
+    CodeSystemConceptIndex index = Utilities.noString(code) ? null : CodeSystemConceptIndex.forConcepts(list);
+    List<ConceptDefinitionComponent> candidates = index == null ? null : index.getCandidates(code, true);
+    if (candidates != null) {
+      for (ConceptDefinitionComponent c : candidates) {
+        if (isCodeOrAltCode(c, code, use)) {
+          return c;
+        }
+      }
+      // none of them have the use: walk the concepts, in case one that does has been added
+    }
+    return walkForCodeOrAltCode(list, code, use);
+  }
+
+  private static ConceptDefinitionComponent walkForCodeOrAltCode(List<ConceptDefinitionComponent> list, String code, String use) {
     for (ConceptDefinitionComponent c : list) {
       if (c.hasCode() && c.getCode().equals(code))
         return c;
@@ -562,13 +608,24 @@ public class CodeSystemUtilities extends TerminologyUtilities {
           return c;
         }
       }
-      ConceptDefinitionComponent s = findCodeOrAltCode(c.getConcept(), code, use);
+      ConceptDefinitionComponent s = walkForCodeOrAltCode(c.getConcept(), code, use);
       if (s != null)
         return s;
     }
     return null;
   }
 
+  private static boolean isCodeOrAltCode(ConceptDefinitionComponent c, String code, String use) {
+    if (c.hasCode() && c.getCode().equals(code))
+      return true;
+    for (ConceptPropertyComponent p : c.getProperty()) {
+      if ("alternateCode".equals(p.getCode()) && (use == null || hasUse(p, use)) && p.hasValue() && p.getValue().isPrimitive() && code.equals(p.getValue().primitiveValue())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private static boolean hasUse(ConceptPropertyComponent p, String use) {
     for (Extension ext : p.getExtensionsByUrl(ToolingExtensions.EXT_CS_ALTERNATE_USE)) {
       if (ext.hasValueCoding() && use.equals(ext.getValueCoding().getCode())) {
@@ -667,6 +724,10 @@ public class CodeSystemUtilities extends TerminologyUtilities {
   }
 
   public static boolean hasCode(CodeSystem cs, String code) {
+    List<ConceptDefinitionComponent> indexed = indexedCode(cs.getConcept(), code);
+    if (indexed != null) {
+      return true;
+    }
     for (ConceptDefinitionComponent cc : cs.getConcept()) {
       if (hasCode(cc, code)) {
         return true;
@@ -691,6 +752,10 @@ public class CodeSystemUtilities extends TerminologyUtilities {
     if (code == null) {
       return null;
     }
+    List<ConceptDefinitionComponent> indexed = indexedCode(cs.getConcept(), code);
+    if (indexed != null) {
+      return indexed.get(0);
+    }
     for (ConceptDefinitionComponent cc : cs.getConcept()) {
       ConceptDefinitionComponent cd = getCode(cc, code);
       if (cd != null) {
@@ -760,6 +825,7 @@ public class CodeSystemUtilities extends TerminologyUtilities {
 
   public static void sortAllCodes(CodeSystem cs) {
     sortAllCodes(cs.getConcept());
+    CodeSystemConceptIndex.clear(cs);
   }
 
   private static void sortAllCodes(List<ConceptDefinitionComponent> list) {
@@ -1024,6 +1090,21 @@ public class CodeSystemUtilities extends TerminologyUtilities {
     return false;
   }
 
+  /**
+   * Find the concepts where the first value of the property (the code of its definition) is the value,
+   * in the order that walking the concepts would find them. This only answers for code systems
+   * without a hierarchy (nested or by a parent property) and without modifier extensions, where
+   * the walk would find just these concepts; otherwise (or if the index doesn't have the value, or
+   * there isn't an index yet) it returns null, and the concepts have to be walked
+   */
+  public static List<ConceptDefinitionComponent> findCodesWithProperty(CodeSystem cs, String property, String value) {
+    if (Utilities.noString(property) || value == null || hasHierarchy(cs) || getPropertyByUrl(cs, "http://hl7.org/fhir/concept-properties#parent") != null) {
+      return null;
+    }
+    CodeSystemConceptIndex index = CodeSystemConceptIndex.forConcepts(cs.getConcept());
+    return index == null || index.hasModifiers() ? null : index.getByProperty(property, value);
+  }
+
   public static Set<String> codes(CodeSystem cs) {
     Set<String> res = new HashSet<>();
     addCodes(res, cs.getConcept());
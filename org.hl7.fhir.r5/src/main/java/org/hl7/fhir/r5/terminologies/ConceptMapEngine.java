@@ -31,14 +31,20 @@ package org.hl7.fhir.r5.terminologies;
 
 
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.r5.context.SimpleWorkerContext;
 import org.hl7.fhir.r5.model.Coding;
 import org.hl7.fhir.r5.model.ConceptMap;
 import org.hl7.fhir.r5.model.ConceptMap.ConceptMapGroupComponent;
+import org.hl7.fhir.r5.model.ConceptMap.ConceptMapGroupUnmappedComponent;
 import org.hl7.fhir.r5.model.ConceptMap.SourceElementComponent;
 import org.hl7.fhir.r5.model.ConceptMap.TargetElementComponent;
 import org.hl7.fhir.r5.model.Enumerations.ConceptMapRelationship;
+import org.hl7.fhir.r5.terminologies.ConceptMapIndex.Match;
 import org.hl7.fhir.utilities.CanonicalPair;
 
 public class ConceptMapEngine {
@@ -53,27 +59,23 @@ public class ConceptMapEngine {
     ConceptMap cm = context.fetchResource(ConceptMap.class, url);
     if (cm == null)
       throw new FHIRException("Unable to find ConceptMap '"+url+"'");
-    if (source.hasSystem()) 
-      return translateBySystem(cm, source.getSystem(), source.getCode());
-    else
-      return translateByJustCode(cm, source.getCode());
+    Set<String> visited = new HashSet<>();
+    visited.add(url);
+    return translate(cm, source.hasSystem() ? source.getSystem() : null, source.getCode(), visited);
   }
 
-  private Coding translateByJustCode(ConceptMap cm, String code) throws FHIRException {
-    SourceElementComponent ct = null;
-    ConceptMapGroupComponent cg = null;
-    for (ConceptMapGroupComponent g : cm.getGroup()) {
-      for (SourceElementComponent e : g.getElement()) {
-        if (code.equals(e.getCode())) {
-          if (e != null)
-            throw new FHIRException("Unable to process translate "+code+" because multiple candidate matches were found in concept map "+cm.getUrl());
-          ct = e;
-          cg = g;
-        }
-      }
-    }
-    if (ct == null)
-      return null;
+  /**
+   * if the system is null, the code is looked for in every group (and the first group with unmapped instructions 
+   * is used if it's not found)
+   */
+  private Coding translate(ConceptMap cm, String system, String code, Set<String> visited) throws FHIRException {
+    List<Match> matches = ConceptMapIndex.find(context, cm, system, code);
+    if (matches.size() > 1)
+      throw new FHIRException("Unable to process translate "+code+" because multiple candidate matches were found in concept map "+cm.getUrl());
+    if (matches.isEmpty())
+      return translateUnmapped(cm, system, code, visited);
+    ConceptMapGroupComponent cg = matches.get(0).getGroup();
+    SourceElementComponent ct = matches.get(0).getElement();
     TargetElementComponent tt = null;
     for (TargetElementComponent t : ct.getTarget()) {
       if (!t.hasDependsOn() && !t.hasProduct() && isOkRelationship(t.getRelationship())) {
@@ -84,16 +86,43 @@ public class ConceptMapEngine {
     }
     if (tt == null)
       return null;
+    return makeCoding(cg, tt.getCode(), tt.getDisplay());      
+  }
+
+  private Coding translateUnmapped(ConceptMap cm, String system, String code, Set<String> visited) throws FHIRException {
+    for (ConceptMapGroupComponent g : ConceptMapIndex.groups(cm, system)) {
+      if (g.hasUnmapped()) {
+        ConceptMapGroupUnmappedComponent um = g.getUnmapped();
+        if (um.hasRelationship() && !isOkRelationship(um.getRelationship()))
+          return null;
+        switch (um.getMode()) {
+        case USESOURCECODE:
+          return makeCoding(g, code, null);
+        case FIXED:
+          // a value set of target codes can't be turned into a single coding
+          return um.hasCode() ? makeCoding(g, um.getCode(), um.getDisplay()) : null;
+        case OTHERMAP:
+          if (!visited.add(um.getOtherMap()))
+            throw new FHIRException("Unable to process translate "+code+" because the unmapped other maps starting at concept map "+cm.getUrl()+" form a loop");
+          ConceptMap other = context.fetchResource(ConceptMap.class, um.getOtherMap());
+          if (other == null)
+            throw new FHIRException("Unable to find ConceptMap '"+um.getOtherMap()+"' (unmapped in concept map "+cm.getUrl()+")");
+          return translate(other, system, code, visited);
+        default:
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
+  private Coding makeCoding(ConceptMapGroupComponent cg, String code, String display) {
     CanonicalPair cp = new CanonicalPair(cg.getTarget());
-    return new Coding().setSystem(cp.getUrl()).setVersion(cp.getVersion()).setCode(tt.getCode()).setDisplay(tt.getDisplay());      
+    return new Coding().setSystem(cp.getUrl()).setVersion(cp.getVersion()).setCode(code).setDisplay(display);
   }
 
   private boolean isOkRelationship(ConceptMapRelationship relationship) {
     return relationship != null && relationship != ConceptMapRelationship.NOTRELATEDTO;
   }
 
-  private Coding translateBySystem(ConceptMap cm, String system, String code) {
-    throw new Error("Not done yet");
-  }
-
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package org.hl7.fhir.r5.terminologies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hl7.fhir.r5.context.IWorkerContext;
+import org.hl7.fhir.r5.model.ConceptMap;
+import org.hl7.fhir.r5.model.ConceptMap.ConceptMapGroupComponent;
+import org.hl7.fhir.r5.model.ConceptMap.SourceElementComponent;
+
+/**
+ * An index of the source elements of a concept map, by code and by source system and code, so that
+ * translating a code doesn't mean scanning every element of every group. Used by ConceptMapEngine
+ * and StructureMapUtilities.
+ *
+ * The worker context keeps the indexes of its concept maps, by versioned URL (see
+ * IWorkerContext.getConceptMapIndex), and drops them when the maps are dropped or unloaded. Maps that
+ * the context doesn't have (such as the ones contained in a StructureMap) are indexed when they're
+ * looked up; StructureMapUtilities keeps those indexes in the plan of the StructureMap.
+ *
+ * If groups or elements are added to or removed from the map, or a match found through the index
+ * doesn't have the code any more, the index is built again; code that changes a map in other ways
+ * after translating with it should call clear() on its index.
+ *
+ * Matches are in the order that scanning the groups and their elements would find them
+ */
+public class ConceptMapIndex {
+
+  public static class Match {
+    private final ConceptMapGroupComponent group;
+    private final SourceElementComponent element;
+
+    private Match(ConceptMapGroupComponent group, SourceElementComponent element) {
+      this.group = group;
+      this.element = element;
+    }
+
+    public ConceptMapGroupComponent getGroup() {
+      return group;
+    }
+
+    public SourceElementComponent getElement() {
+      return element;
+    }
+  }
+
+  private final ConceptMap map;
+  private final int size;
+  private final Map<String, List<Match>> byCode = new HashMap<>();
+  private final Map<String, Map<String, List<Match>>> bySystem = new HashMap<>();
+  private volatile boolean stale;
+
+  private ConceptMapIndex(ConceptMap cm) {
+    map = cm;
+    size = size(cm);
+    for (ConceptMapGroupComponent g : cm.getGroup()) {
+      for (SourceElementComponent e : g.getElement()) {
+        if (e.hasCode()) {
+          Match m = new Match(g, e);
+          byCode.computeIfAbsent(e.getCode(), k -> new ArrayList<>()).add(m);
+          if (g.hasSource()) {
+            bySystem.computeIfAbsent(g.getSource(), k -> new HashMap<>()).computeIfAbsent(e.getCode(), k -> new ArrayList<>()).add(m);
+          }
+        }
+      }
+    }
+  }
+
+  private static int size(ConceptMap cm) {
+    int res = cm.getGroup().size();
+    for (ConceptMapGroupComponent g : cm.getGroup()) {
+      res += g.getElement().size();
+    }
+    return res;
+  }
+
+  /**
+   * Index the concept map now. This is for the worker context; everything else should use forMap()
+   */
+  public static ConceptMapIndex build(ConceptMap cm) {
+    return new ConceptMapIndex(cm);
+  }
+
+  /**
+   * @return the index that the context keeps for the concept map, or, if the context doesn't have the
+   * map (or there's no context), a new one
+   */
+  public static ConceptMapIndex forMap(IWorkerContext context, ConceptMap cm) {
+    ConceptMapIndex index = context == null ? null : context.getConceptMapIndex(cm);
+    return index == null ? new ConceptMapIndex(cm) : index;
+  }
+
+  /**
+   * @param system the source system of the code; if this is null, the code is looked for in all groups
+   * @return the group elements for the code, in the order they are in the map
+   */
+  public static List<Match> find(IWorkerContext context, ConceptMap cm, String system, String code) {
+    return forMap(context, cm).find(system, code);
+  }
+
+  /**
+   * @param system the source system of the code; if this is null, the code is looked for in all groups
+   * @return the group elements for the code, in the order they are in the map
+   */
+  public List<Match> find(String system, String code) {
+    if (code == null) {
+      return Collections.emptyList();
+    }
+    List<Match> res = isCurrent(map) ? lookup(system, code) : null;
+    if (res == null) {
+      // the map has changed since it was indexed. Whoever keeps this index will build it again
+      stale = true;
+      res = new ConceptMapIndex(map).lookup(system, code);
+    }
+    return res;
+  }
+
+  /**
+   * The groups that codes from the system (or, if the system is null, any code) are mapped in, in the
+   * order they are in the map - for the unmapped instructions when there's no match for a code
+   */
+  public static List<ConceptMapGroupComponent> groups(ConceptMap cm, String system) {
+    List<ConceptMapGroupComponent> res = new ArrayList<>();
+    for (ConceptMapGroupComponent g : cm.getGroup()) {
+      if (system == null || system.equals(g.getSource())) {
+        res.add(g);
+      }
+    }
+    return res;
+  }
+
+  /**
+   * @return the concept map that this is the index of
+   */
+  public ConceptMap getMap() {
+    return map;
+  }
+
+  /**
+   * @return true if this is the index of the map, and the map hasn't been changed since it was built (as
+   * far as can be told)
+   */
+  public boolean isCurrent(ConceptMap cm) {
+    return map == cm && !stale && size == size(cm);
+  }
+
+  /**
+   * Mark the index as out of date, so that it's built again the next time it's needed
+   */
+  public void clear() {
+    stale = true;
+  }
+
+  /**
+   * @return the matches, or null if the index turns out to be out of date
+   */
+  private List<Match> lookup(String system, String code) {
+    List<Match> res;
+    if (system == null) {
+      res = byCode.getOrDefault(code, Collections.emptyList());
+    } else {
+      res = bySystem.getOrDefault(system, Collections.emptyMap()).getOrDefault(code, Collections.emptyList());
+    }
+    for (Match m : res) {
+      if (!code.equals(m.element.getCode()) || (system != null && !system.equals(m.group.getSource()))) {
+        return null;
+      }
+    }
+    return res;
+  }
+}
@@ -0,0 +1,314 @@
+package org.hl7.fhir.r5.terminologies.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.hl7.fhir.exceptions.FHIRException;
+import org.hl7.fhir.r5.formats.JsonParser;
+import org.hl7.fhir.r5.model.Bundle;
+import org.hl7.fhir.r5.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.r5.model.Bundle.BundleType;
+import org.hl7.fhir.r5.model.Parameters;
+import org.hl7.fhir.r5.model.Resource;
+import org.hl7.fhir.r5.model.ValueSet;
+import org.hl7.fhir.utilities.ToolingClientLogger;
+
+/**
+ * Makes the requests of a terminology client in the background, and returns futures for the results.
+ *
+ * No more than maxConcurrentRequests requests are made to the server at once; the others wait their turn.
+ * When a request is made again while the same request is still in progress (e.g. when validations running
+ * in parallel need the same code checked), only one request goes to the server, and the callers each get
+ * their own copy of the result.
+ *
+ * This doesn't use the terminology cache: callers look in the cache before making a request, and cache the
+ * result when it comes back, as they do with ITerminologyClient. Because duplicates are only coalesced while
+ * they are in progress, a request that is made just after the same request has finished goes to the server
+ * again, unless the caller has cached the result in the meantime
+ *
+ * The requests are logged on the threads that make them, so the id that the logger gave each request is
+ * passed back with its result (see Request.getLogId())
+ */
+public class AsyncTerminologyClient {
+
+  /**
+   * batches are only split into parts if each part has at least this many entries
+   */
+  public static final int MIN_BATCH_PART_SIZE = 20;
+
+  /**
+   * The result of a request, along with the id that the client's logger gave the request
+   */
+  public static class Request<T> extends CompletableFuture<T> {
+    private volatile String logId;
+
+    /**
+     * @return the id of the request in the log, once the request is complete (or null if it wasn't logged)
+     */
+    public String getLogId() {
+      return logId;
+    }
+  }
+
+  private static class Outcome<T> {
+    private T value;
+    private Throwable error;
+    private String logId;
+  }
+
+  private final ITerminologyClient client;
+  private volatile int maxConcurrentRequests;
+  private final ThreadPoolExecutor executor;
+  private final Map<String, CompletableFuture<?>> inProgress = new ConcurrentHashMap<>();
+  private final AtomicInteger requestCount = new AtomicInteger();
+  private final AtomicInteger coalescedCount = new AtomicInteger();
+
+  public AsyncTerminologyClient(ITerminologyClient client, int maxConcurrentRequests) {
+    super();
+    if (maxConcurrentRequests < 1) {
+      throw new IllegalArgumentException("maxConcurrentRequests must be at least 1 (was "+maxConcurrentRequests+")");
+    }
+    this.client = client;
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    AtomicInteger threadCount = new AtomicInteger();
+    executor = new ThreadPoolExecutor(maxConcurrentRequests, maxConcurrentRequests, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+      Thread t = new Thread(r, "tx-client-"+client.getId()+"-"+threadCount.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  public ITerminologyClient getClient() {
+    return client;
+  }
+
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  /**
+   * Change how many requests can be made at once. Requests that are waiting their turn are made under
+   * the new limit; none are lost
+   */
+  public synchronized void setMaxConcurrentRequests(int maxConcurrentRequests) {
+    if (maxConcurrentRequests < 1) {
+      throw new IllegalArgumentException("maxConcurrentRequests must be at least 1 (was "+maxConcurrentRequests+")");
+    }
+    // the core size can never be more than the maximum size, so the order depends on the direction
+    if (maxConcurrentRequests > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(maxConcurrentRequests);
+      executor.setCorePoolSize(maxConcurrentRequests);
+    } else {
+      executor.setCorePoolSize(maxConcurrentRequests);
+      executor.setMaximumPoolSize(maxConcurrentRequests);
+    }
+    this.maxConcurrentRequests = maxConcurrentRequests;
+  }
+
+  /**
+   * @return the number of requests that have been made to the server
+   */
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * @return the number of requests that were not made to the server because the same request was in progress
+   */
+  public int getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  public Request<ValueSet> expandValueset(ValueSet vs, Parameters p) {
+    return request("expand:"+key(vs)+":"+key(p), () -> client.expandValueset(vs, p), ValueSet::copy);
+  }
+
+  public Request<Parameters> validateCS(Parameters pin) {
+    return request("validate-cs:"+key(pin), () -> client.validateCS(pin), Parameters::copy);
+  }
+
+  public Request<Parameters> validateVS(Parameters pin) {
+    return request("validate-vs:"+key(pin), () -> client.validateVS(pin), Parameters::copy);
+  }
+
+  public Request<Parameters> subsumes(Parameters pin) {
+    return request("subsumes:"+key(pin), () -> client.subsumes(pin), Parameters::copy);
+  }
+
+  public Request<Parameters> lookupCode(Parameters params) {
+    return request("lookup:"+key(params), () -> client.lookupCode(params), Parameters::copy);
+  }
+
+  public Request<Parameters> translate(Parameters params) {
+    return request("translate:"+key(params), () -> client.translate(params), Parameters::copy);
+  }
+
+  /**
+   * Batches aren't coalesced. If more than one request can be made at once, a large batch is split into
+   * parts that are sent in parallel, and the responses are put back together in order. The log id of a
+   * batch that was split is the id of the first part
+   */
+  public Request<Bundle> validateBatch(Bundle batch) {
+    int parts = Math.min(maxConcurrentRequests, batch.getEntry().size() / MIN_BATCH_PART_SIZE);
+    if (parts < 2) {
+      return answer(submit(() -> client.validateBatch(batch)), UnaryOperator.identity());
+    }
+    int size = (batch.getEntry().size() + parts - 1) / parts;
+    List<CompletableFuture<Outcome<Bundle>>> futures = new ArrayList<>();
+    for (int i = 0; i < batch.getEntry().size(); i += size) {
+      Bundle part = new Bundle();
+      part.setType(batch.getType());
+      part.getEntry().addAll(batch.getEntry().subList(i, Math.min(i + size, batch.getEntry().size())));
+      futures.add(submit(() -> client.validateBatch(part)));
+    }
+    return answer(CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+      Outcome<Bundle> res = new Outcome<>();
+      Bundle bundle = new Bundle();
+      bundle.setType(BundleType.BATCHRESPONSE);
+      for (CompletableFuture<Outcome<Bundle>> f : futures) {
+        Outcome<Bundle> resp = f.join();
+        if (res.logId == null) {
+          res.logId = resp.logId;
+        }
+        if (resp.error != null) {
+          res.error = resp.error;
+          return res;
+        }
+        if (resp.value == null) {
+          return res;
+        }
+        for (BundleEntryComponent be : resp.value.getEntry()) {
+          bundle.addEntry(be);
+        }
+      }
+      res.value = bundle;
+      return res;
+    }), UnaryOperator.identity());
+  }
+
+  /**
+   * Stop making requests. Requests that have already been made are finished, but new ones fail
+   */
+  public void close() {
+    executor.shutdown();
+  }
+
+  /**
+   * Wait for the result of a request, and throw the exception that the request failed with, if it did
+   */
+  public static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException | CancellationException e) {
+      Throwable cause = e.getCause() == null ? e : e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else {
+        throw new FHIRException(cause.getMessage(), cause);
+      }
+    }
+  }
+
+  /**
+   * The result of the request is shared by everyone who asks for it while it is in progress, so no one
+   * gets the result itself; each caller gets their own copy, which they can change
+   */
+  @SuppressWarnings("unchecked")
+  private <T> Request<T> request(String key, Supplier<T> call, UnaryOperator<T> copier) {
+    CompletableFuture<Outcome<T>> shared = new CompletableFuture<>();
+    CompletableFuture<?> existing = inProgress.putIfAbsent(key, shared);
+    if (existing != null) {
+      coalescedCount.incrementAndGet();
+      return answer((CompletableFuture<Outcome<T>>) existing, copier);
+    }
+    CompletableFuture<Outcome<T>> f;
+    try {
+      f = submit(call);
+    } catch (RuntimeException e) {
+      inProgress.remove(key, shared);
+      throw e;
+    }
+    f.whenComplete((t, e) -> {
+      inProgress.remove(key, shared);
+      if (e != null) {
+        shared.completeExceptionally(unwrap(e));
+      } else {
+        shared.complete(t);
+      }
+    });
+    return answer(shared, copier);
+  }
+
+  private <T> Request<T> answer(CompletableFuture<Outcome<T>> outcome, UnaryOperator<T> copier) {
+    Request<T> res = new Request<>();
+    outcome.whenComplete((t, e) -> {
+      if (e != null) {
+        res.completeExceptionally(unwrap(e));
+      } else {
+        res.logId = t.logId;
+        if (t.error != null) {
+          res.completeExceptionally(t.error);
+        } else {
+          try {
+            res.complete(t.value == null ? null : copier.apply(t.value));
+          } catch (Throwable ex) {
+            res.completeExceptionally(ex);
+          }
+        }
+      }
+    });
+    return res;
+  }
+
+  /**
+   * The request is made and logged on one of the executor's threads, so that's where the log id is
+   */
+  private <T> CompletableFuture<Outcome<T>> submit(Supplier<T> call) {
+    CompletableFuture<Outcome<T>> res = CompletableFuture.supplyAsync(() -> {
+      ToolingClientLogger logger = client.getLogger();
+      if (logger != null) {
+        logger.clearLastId();
+      }
+      Outcome<T> outcome = new Outcome<>();
+      try {
+        outcome.value = call.get();
+      } catch (Throwable e) {
+        outcome.error = e;
+      }
+      outcome.logId = logger == null ? null : logger.getLastId();
+      return outcome;
+    }, executor);
+    requestCount.incrementAndGet();
+    return res;
+  }
+
+  private static Throwable unwrap(Throwable e) {
+    return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+  }
+
+  private String key(Resource resource) {
+    if (resource == null) {
+      return "null";
+    }
+    try {
+      return new JsonParser().composeString(resource);
+    } catch (IOException e) {
+      throw new FHIRException(e);
+    }
+  }
+}
@@ -64,6 +64,8 @@ public class TerminologyClientContext {
   private final Set<String> cached = new HashSet<>();
   private boolean master;
   private String cacheId;
+  private int maxConcurrentRequests = 1;
+  private AsyncTerminologyClient asyncClient;
 
   protected TerminologyClientContext(ITerminologyClient client, String cacheId, boolean master) {
     super();
@@ -84,13 +86,43 @@ public class TerminologyClientContext {
     return client;
   }
 
+  /**
+   * The client to use for requests that may be made in parallel with others to the same server.
+   * Requests from all threads go through it, so that no more than maxConcurrentRequests are made
+   * to the server at once, and duplicate requests that are in progress at the same time are only
+   * made once
+   */
+  public synchronized AsyncTerminologyClient getAsyncClient() {
+    if (asyncClient == null) {
+      asyncClient = new AsyncTerminologyClient(client, maxConcurrentRequests);
+    }
+    return asyncClient;
+  }
+
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  public synchronized void setMaxConcurrentRequests(int maxConcurrentRequests) {
+    if (maxConcurrentRequests < 1) {
+      throw new IllegalArgumentException("maxConcurrentRequests must be at least 1 (was "+maxConcurrentRequests+")");
+    }
+    if (this.maxConcurrentRequests != maxConcurrentRequests) {
+      this.maxConcurrentRequests = maxConcurrentRequests;
+      // the requests in progress carry on, and still coalesce with new ones
+      if (asyncClient != null) {
+        asyncClient.setMaxConcurrentRequests(maxConcurrentRequests);
+      }
+    }
+  }
+
   public void seeUse(Set<String> systems, TerminologyClientContextUseType useType) {
     for (String s : systems) {
       seeUse(s, useType);
     }
   }
   
-  public void seeUse(String s, TerminologyClientContextUseType useType) {
+  public synchronized void seeUse(String s, TerminologyClientContextUseType useType) {
     TerminologyClientContextUseCount uc = useCounts.get(s);
     if (uc == null) {
       uc = new TerminologyClientContextUseCount();
@@ -141,6 +141,8 @@ public class TerminologyClientManager {
 
   private boolean useEcosystem;
 
+  private int maxConcurrentRequests = 1;
+
   public TerminologyClientManager(ITerminologyClientFactory factory, String cacheId) {
     super();
     this.factory = factory;
@@ -161,6 +163,7 @@ public class TerminologyClientManager {
     factory = other.factory;
     usage = other.usage;
     internalLog = other.internalLog;
+    maxConcurrentRequests = other.maxConcurrentRequests;
   }
 
 
@@ -287,6 +290,7 @@ public class TerminologyClientManager {
         throw new TerminologyServiceException(e);
       }
       client.setTxCache(cache);
+      client.setMaxConcurrentRequests(maxConcurrentRequests);
       serverList.add(client);
       serverMap.put(server, client);
     }
@@ -390,6 +394,25 @@ public class TerminologyClientManager {
     }
   }
 
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  /**
+   * How many requests can be made at once to each terminology server (default 1). Requests are
+   * made in parallel when more than one thread is using the context, and when large batches
+   * are validated
+   */
+  public void setMaxConcurrentRequests(int value) {
+    if (value < 1) {
+      throw new IllegalArgumentException("maxConcurrentRequests must be at least 1 (was "+value+")");
+    }
+    maxConcurrentRequests = value;
+    for (TerminologyClientContext t : serverList) {
+      t.setMaxConcurrentRequests(value);
+    }
+  }
+
   public void setLogger(ToolingClientLogger txLog) {
     if (hasClient()) {
       getMasterClient().setLogger(txLog);
@@ -400,6 +423,7 @@ public class TerminologyClientManager {
     this.useEcosystem = useEcosystem;
     TerminologyClientContext details = new TerminologyClientContext(client, cacheId, true);
     details.setTxCache(cache);
+    details.setMaxConcurrentRequests(maxConcurrentRequests);
     serverList.clear();
     serverList.add(details);
     serverMap.put(client.getAddress(), details);  
@@ -538,6 +562,7 @@ public class TerminologyClientManager {
           throw new TerminologyServiceException(e);
         }
         client.setTxCache(cache);
+        client.setMaxConcurrentRequests(maxConcurrentRequests);
         serverList.add(client);
         serverMap.put(server, client);
       }
@@ -618,6 +643,7 @@ public class TerminologyClientManager {
           throw new TerminologyServiceException(e);
         }
         client.setTxCache(cache);
+        client.setMaxConcurrentRequests(maxConcurrentRequests);
         serverList.add(client);
         serverMap.put(server, client);
       }
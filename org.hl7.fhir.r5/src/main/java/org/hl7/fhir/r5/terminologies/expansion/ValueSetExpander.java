@@ -70,7 +70,11 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.exceptions.FHIRFormatError;
@@ -159,6 +163,9 @@ public class ValueSetExpander extends ValueSetProcessBase {
   }
 
   private static final boolean REPORT_VERSION_ANYWAY = true;
+  // streaming: what addCode returns for a code that is only counted, so that no component is made for it. 
+  // Callers only test it for null, or pass it on as the parent, which isn't used since the expansion is flat
+  private static final ValueSetExpansionContainsComponent COUNTED_CODE = new ValueSet.ValueSetExpansionContainsComponent();
   
   private ValueSet focus;
   private List<String> allErrors = new ArrayList<>();
@@ -168,6 +175,10 @@ public class ValueSetExpander extends ValueSetProcessBase {
   private boolean checkCodesWhenExpanding;
   private boolean includeAbstract = true;
   private boolean debug;
+  private boolean streaming;
+  private long importTime;
+  // the codes in the expansions of imported value sets that are used as filters (see filterContainsCode)
+  private Map<ValueSet, Set<String>> importedCodes = new IdentityHashMap<>();
 
   private AcceptLanguageHeader langs;
   private List<Token> designations = new ArrayList<>();
@@ -195,6 +206,16 @@ public class ValueSetExpander extends ValueSetProcessBase {
     if (noInactive && inactive) {
       return null;
     }
+    if (wc.isStreaming()) {
+      // if the code is new, but not in the page that's being returned, it only needs to be counted
+      String s = key(system, code);
+      if (wc.getExcludeKeys().contains(s)) {
+        return null;
+      } else if (!wc.getMap().containsKey(s) && !wc.inPage(includeAbstract || !isAbstract)) {
+        wc.skip(s);
+        return COUNTED_CODE;
+      }
+    }
     
     ValueSetExpansionContainsComponent n = new ValueSet.ValueSetExpansionContainsComponent();
     n.setSystem(system);
@@ -414,22 +435,37 @@ public class ValueSetExpander extends ValueSetProcessBase {
   }
 
   private boolean filterContainsCode(List<ValueSet> filters, String system, String code, ValueSetExpansionComponent exp) {
+    String s = key(system, code);
     for (ValueSet vse : filters) {
-      checkCanonical(exp, vse, focus);
-      if (expansionContainsCode(vse.getExpansion().getContains(), system, code))
+      if (importedCodes(vse, exp).contains(s))
         return true;
     }
     return false;
   }
 
-  private boolean expansionContainsCode(List<ValueSetExpansionContainsComponent> contains, String system, String code) {
+  /**
+   * The codes in the expansion of an imported value set, as keys. The expansions don't change once 
+   * they've been imported, so this is only worked out once per expansion, instead of walking the 
+   * expansion for every code that is checked against it
+   */
+  private Set<String> importedCodes(ValueSet vse, ValueSetExpansionComponent exp) {
+    Set<String> codes = importedCodes.get(vse);
+    if (codes == null) {
+      checkCanonical(exp, vse, focus);
+      codes = new HashSet<>();
+      addImportedCodes(codes, vse.getExpansion().getContains());
+      importedCodes.put(vse, codes);
+    }
+    return codes;
+  }
+
+  private void addImportedCodes(Set<String> codes, List<ValueSetExpansionContainsComponent> contains) {
     for (ValueSetExpansionContainsComponent cc : contains) {
-      if (system.equals(cc.getSystem()) && code.equals(cc.getCode()))
-        return true;
-      if (expansionContainsCode(cc.getContains(), system, code))
-        return true;
+      if (cc.hasSystem() && cc.hasCode()) {
+        codes.add(key(cc));
+      }
+      addImportedCodes(codes, cc.getContains());
     }
-    return false;
   }
 
   private ConceptDefinitionDesignationComponent getMatchingLang(List<ConceptDefinitionDesignationComponent> list, AcceptLanguageHeader langs) {
@@ -655,7 +691,13 @@ public class ValueSetExpander extends ValueSetProcessBase {
   }
 
   public ValueSetExpansionOutcome expand(ValueSet source, Parameters expParams) {
-    
+    long start = System.nanoTime();
+    importTime = 0;
+    ValueSetExpansionOutcome res = doExpandSafely(source, expParams);
+    return res.setTimes((System.nanoTime() - start) / 1000000, importTime);
+  }
+
+  private ValueSetExpansionOutcome doExpandSafely(ValueSet source, Parameters expParams) {
     allErrors.clear();
     try {
       opContext.seeContext(source.getVersionedUrl());
@@ -770,7 +812,8 @@ public class ValueSetExpander extends ValueSetProcessBase {
         focus.getExpansion().getContains().add(c);
       }
     } else {
-      int i = 0;
+      // when streaming, the codes before the offset were only counted
+      int i = dwc.isStreaming() ? dwc.getOffsetParam() : 0;
       int cc = 0;
       for (ValueSetExpansionContainsComponent c : dwc.getCodes()) {
         c.getContains().clear(); // make sure any hierarchy is wiped
@@ -817,16 +860,6 @@ public class ValueSetExpander extends ValueSetProcessBase {
     return res;
   }
 
-  private ConceptDefinitionComponent getConceptForCode(List<ConceptDefinitionComponent> clist, String code) {
-    for (ConceptDefinitionComponent c : clist) {
-      if (code.equals(c.getCode()))
-        return c;
-      ConceptDefinitionComponent v = getConceptForCode(c.getConcept(), code);
-      if (v != null)
-        return v;
-    }
-    return null;
-  }
 
   private void handleCompose(ValueSetComposeComponent compose, ValueSetExpansionComponent exp, Parameters expParams, String ctxt, List<Extension> extensions, ValueSet valueSet)
       throws ETooCostly, FileNotFoundException, IOException, FHIRException, CodeSystemProviderExtension {
@@ -837,6 +870,7 @@ public class ValueSetExpander extends ValueSetProcessBase {
     }
     dwc.setCanBeHierarchy(!expParams.getParameterBool("excludeNested") && dwc.getExcludeKeys().isEmpty() && dwc.getExcludeSystems().isEmpty() && dwc.getOffsetParam() == 0);
     includeAbstract = !expParams.getParameterBool("excludeNotForUI");
+    dwc.setStreaming(streaming && !dwc.isCanBeHierarchy() && dwc.getCountParam() > 0);
     boolean first = true;
     for (ConceptSetComponent inc : compose.getInclude()) {
       if (first == true)
@@ -878,6 +912,7 @@ public class ValueSetExpander extends ValueSetProcessBase {
       expParams.addParameter("activeOnly", true);
     }
     ValueSetExpansionOutcome vso = new ValueSetExpander(context, opContext.copy(), allErrors).expand(vs, expParams);
+    importTime += vso.getTime();
     if (vso.getError() != null) {
       addErrors(vso.getAllErrors());
       throw fail("Unable to expand imported value set "+vs.getUrl()+": " + vso.getError());
@@ -932,6 +967,7 @@ public class ValueSetExpander extends ValueSetProcessBase {
       expParams.addParameter("activeOnly", true);
     }
     ValueSetExpansionOutcome vso = new ValueSetExpander(context, opContext.copy(), allErrors).expand(vs, expParams);
+    importTime += vso.getTime();
     if (vso.getError() != null) {
       addErrors(vso.getAllErrors());
       throw fail("Unable to expand imported value set "+vs.getUrl()+": " + vso.getError());
@@ -961,18 +997,21 @@ public class ValueSetExpander extends ValueSetProcessBase {
   public void copyExpansion(WorkingContext wc,List<ValueSetExpansionContainsComponent> list) {
     opContext.deadCheck("copyExpansion");
     for (ValueSetExpansionContainsComponent cc : list) {
-       ValueSetExpansionContainsComponent n = new ValueSet.ValueSetExpansionContainsComponent();
-       n.setSystem(cc.getSystem());
-       n.setCode(cc.getCode());
-       n.setAbstract(cc.getAbstract());
-       n.setInactive(cc.getInactive());
-       n.setDisplay(cc.getDisplay());
-       n.getDesignation().addAll(cc.getDesignation());
-
-       String s = key(n);
+       String s = key(cc);
        if (!wc.getMap().containsKey(s) && !wc.getExcludeKeys().contains(s)) {
-         wc.getCodes().add(n);
-         wc.getMap().put(s, n);
+         if (wc.isStreaming() && !wc.inPage(includeAbstract || !cc.getAbstract())) {
+           wc.skip(s);
+         } else {
+           ValueSetExpansionContainsComponent n = new ValueSet.ValueSetExpansionContainsComponent();
+           n.setSystem(cc.getSystem());
+           n.setCode(cc.getCode());
+           n.setAbstract(cc.getAbstract());
+           n.setInactive(cc.getInactive());
+           n.setDisplay(cc.getDisplay());
+           n.getDesignation().addAll(cc.getDesignation());
+           wc.getCodes().add(n);
+           wc.getMap().put(s, n);
+         }
        }
        copyExpansion(wc, cc.getContains());
     }
@@ -1163,7 +1202,7 @@ public class ValueSetExpander extends ValueSetProcessBase {
     opContext.deadCheck("processFilter");
     if ("concept".equals(fc.getProperty()) && fc.getOp() == FilterOperator.ISA) {
       // special: all codes in the target code system under the value
-      ConceptDefinitionComponent def = getConceptForCode(cs.getConcept(), fc.getValue());
+      ConceptDefinitionComponent def = CodeSystemUtilities.findCode(cs.getConcept(), fc.getValue());
       if (def == null)
         throw failTSE("Code '" + fc.getValue() + "' not found in system '" + inc.getSystem() + "'");
       if (exclude) {
@@ -1173,7 +1212,7 @@ public class ValueSetExpander extends ValueSetProcessBase {
       }
     } else if ("concept".equals(fc.getProperty()) && fc.getOp() == FilterOperator.ISNOTA) {
       // special: all codes in the target code system that are not under the value
-      ConceptDefinitionComponent defEx = getConceptForCode(cs.getConcept(), fc.getValue());
+      ConceptDefinitionComponent defEx = CodeSystemUtilities.findCode(cs.getConcept(), fc.getValue());
       if (defEx == null)
         throw failTSE("Code '" + fc.getValue() + "' not found in system '" + inc.getSystem() + "'");
       for (ConceptDefinitionComponent def : cs.getConcept()) {
@@ -1185,7 +1224,7 @@ public class ValueSetExpander extends ValueSetProcessBase {
       }
     } else if ("concept".equals(fc.getProperty()) && fc.getOp() == FilterOperator.DESCENDENTOF) {
       // special: all codes in the target code system under the value
-      ConceptDefinitionComponent def = getConceptForCode(cs.getConcept(), fc.getValue());
+      ConceptDefinitionComponent def = CodeSystemUtilities.findCode(cs.getConcept(), fc.getValue());
       if (def == null)
         throw failTSE("Code '" + fc.getValue() + "' not found in system '" + inc.getSystem() + "'");
       for (ConceptDefinitionComponent c : def.getConcept())
@@ -1208,7 +1247,7 @@ public class ValueSetExpander extends ValueSetProcessBase {
     } else if ("display".equals(fc.getProperty()) && fc.getOp() == FilterOperator.EQUAL) {
       // gg; note: wtf is this: if the filter is display=v, look up the code 'v', and see if it's display is 'v'?
       dwc.setCanBeHierarchy(false);
-      ConceptDefinitionComponent def = getConceptForCode(cs.getConcept(), fc.getValue());
+      ConceptDefinitionComponent def = CodeSystemUtilities.findCode(cs.getConcept(), fc.getValue());
       if (def != null) {
         if (isNotBlank(def.getDisplay()) && isNotBlank(fc.getValue())) {
           if (def.getDisplay().contains(fc.getValue()) && passesOtherFilters(filters, cs, def.getCode())) {
@@ -1225,7 +1264,9 @@ public class ValueSetExpander extends ValueSetProcessBase {
         }
       }
     } else if (CodeSystemUtilities.isDefinedProperty(cs, fc.getProperty())) {
-      for (ConceptDefinitionComponent def : cs.getConcept()) {
+      // for an equals filter, the concept index can say which concepts the walk would find
+      List<ConceptDefinitionComponent> concepts = fc.getOp() == FilterOperator.EQUAL ? CodeSystemUtilities.findCodesWithProperty(cs, CodeSystemUtilities.getPropertyDefinition(cs, fc.getProperty()).getCode(), fc.getValue()) : null;
+      for (ConceptDefinitionComponent def : concepts != null ? concepts : cs.getConcept()) {
         PropertyFilter pf = new PropertyFilter(allErrors, fc, CodeSystemUtilities.getPropertyDefinition(cs, fc.getProperty()));
         if (exclude) {
           excludeCodeAndDescendents(wc, cs, inc.getSystem(), def, null, imports, null, pf, filters, exp);
@@ -1360,6 +1401,23 @@ public class ValueSetExpander extends ValueSetProcessBase {
     this.debug = debug;
     return this;
   }
+
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  /**
+   * Streaming mode is for paging through big expansions (using the offset and count parameters). When 
+   * the expansion is flat, only the codes in the page being returned are built into the expansion; the 
+   * others are just counted. The total, and the codes in the page, are the same as without streaming, 
+   * but the expansion only declares the properties that the codes in the page use. 
+   * 
+   * Streaming doesn't apply when there's no count, or when the expansion could be hierarchical
+   */
+  public ValueSetExpander setStreaming(boolean streaming) {
+    this.streaming = streaming;
+    return this;
+  }
   
   
 }
\ No newline at end of file
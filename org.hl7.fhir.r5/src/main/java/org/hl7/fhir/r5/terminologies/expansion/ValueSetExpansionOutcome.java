@@ -20,6 +20,8 @@ public class ValueSetExpansionOutcome {
   private String txLink;
   private List<String> allErrors = new ArrayList<>();
   private boolean fromServer;
+  private long time;
+  private long importTime;
   
   public ValueSetExpansionOutcome(ValueSet valueset) {
     super();
@@ -79,6 +81,40 @@ public class ValueSetExpansionOutcome {
   public boolean isFromServer() {
     return fromServer;
   }
+  
+  /**
+   * @return how long the expansion took (milliseconds), including expanding any value sets it imports
+   */
+  public long getTime() {
+    return time;
+  }
+  
+  /**
+   * @return how much of the time was spent expanding imported value sets (milliseconds)
+   */
+  public long getImportTime() {
+    return importTime;
+  }
+  
+  public ValueSetExpansionOutcome setTimes(long time, long importTime) {
+    this.time = time;
+    this.importTime = importTime;
+    return this;
+  }
+  /**
+   * @return a copy of this outcome, with its own copy of the value set
+   */
+  public ValueSetExpansionOutcome copy() {
+    ValueSetExpansionOutcome res = new ValueSetExpansionOutcome(valueset == null ? null : valueset.copy());
+    res.error = error;
+    res.errorClass = errorClass;
+    res.txLink = txLink;
+    res.allErrors.addAll(allErrors);
+    res.fromServer = fromServer;
+    res.time = time;
+    res.importTime = importTime;
+    return res;
+  }
   public boolean isOk() {
     return (allErrors.isEmpty() || (allErrors.size() == 1 && allErrors.get(0) == null)) && error == null;
   }
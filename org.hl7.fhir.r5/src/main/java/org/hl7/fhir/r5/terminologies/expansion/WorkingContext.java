@@ -25,6 +25,10 @@ class WorkingContext {
   private int extraCount; // running count. This might be more than actually seen if we call out to an external server and only get the first 1000 codes
   private boolean noTotal; // we lost count of the correct total
   
+  private boolean streaming; // only the codes in the page (offset/count) are kept in codes; the rest are just counted
+  private int position; // streaming: how many codes that could be in the page have been seen 
+  private int skipped; // streaming: how many codes aren't in codes
+  
   public List<ValueSetExpansionContainsComponent> getCodes() {
     return codes;
   }
@@ -105,12 +109,41 @@ class WorkingContext {
     this.noTotal = noTotal;
   }
 
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  /**
+   * Streaming: a new code is being added to the expansion. Is it in the page that will be returned?
+   * 
+   * @param selectable - false if the code will be left out of the expansion anyway (e.g. abstract codes, when they're not wanted)
+   */
+  public boolean inPage(boolean selectable) {
+    if (!selectable) {
+      return false;
+    }
+    int i = position++;
+    return i >= getOffsetParam() && i < getOffsetParam() + getCountParam();
+  }
+
+  /**
+   * Streaming: the code is in the expansion, but not in the page, so it's only counted
+   */
+  public void skip(String key) {
+    map.put(key, null);
+    skipped++;
+  }
+
   public int getCount() {
-    return codes.size();
+    return codes.size() + skipped;
   }
 
   public int getStatedTotal() {
-    return codes.size() + extraCount;
+    return codes.size() + skipped + extraCount;
   }
 
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package org.hl7.fhir.r5.terminologies.utilities;
 
+import org.hl7.fhir.r5.model.CodeableConcept;
 import org.hl7.fhir.r5.model.Coding;
 import org.hl7.fhir.r5.model.ValueSet;
 import org.hl7.fhir.r5.terminologies.utilities.TerminologyCache.CacheToken;
 
 public class CodingValidationRequest {
   private Coding coding;
+  private CodeableConcept codeableConcept;
   private ValidationResult result;
   private CacheToken cacheToken;
   private String vs;
@@ -28,6 +30,15 @@ public class CodingValidationRequest {
     this.vsObj = vsObj;
   }
 
+  /**
+   * validate a CodeableConcept (as a whole), rather than a Coding. getCoding() is null
+   */
+  public CodingValidationRequest(CodeableConcept codeableConcept, ValueSet vsObj) {
+    super();
+    this.codeableConcept = codeableConcept;
+    this.vsObj = vsObj;
+  }
+
   public String getVs() {
     return vs;
   }
@@ -48,6 +59,14 @@ public class CodingValidationRequest {
     return coding;
   }
 
+  public CodeableConcept getCodeableConcept() {
+    return codeableConcept;
+  }
+
+  public boolean isCodeableConcept() {
+    return codeableConcept != null;
+  }
+
   public boolean hasResult() {
     return result != null;
   }
@@ -0,0 +1,127 @@
+package org.hl7.fhir.r5.terminologies.utilities;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hl7.fhir.r5.terminologies.expansion.ValueSetExpansionOutcome;
+
+/**
+ * validate-code and expansion results from terminology servers, shared by the TerminologyCaches that are given
+ * it and use the same folder - e.g. the sessions of a validation server, which each have their own worker
+ * context and TerminologyCache. Without it, each cache only knows the results that were on disk when it
+ * was loaded, and the ones that it asked the server for itself.
+ *
+ * Only results that came from the server (the ones that are persisted) are shared; results that a
+ * context worked out itself depend on what has been loaded into it. Once there are more than maximumSize
+ * results, the ones that haven't been used recently are dropped (from here, not from the caches that they
+ * came from). The limit applies to validations and expansions separately.
+ *
+ * Use it by passing it to the setSharedCache() of each TerminologyCache that should share results. The
+ * validator's ValidationService has one, which it gives to the terminology caches of the engines it builds
+ */
+public class SharedTerminologyCache {
+
+  public static final long DEFAULT_MAXIMUM_SIZE = 100000;
+
+  private static class LruMap<T> extends LinkedHashMap<String, T> {
+    private static final long serialVersionUID = 1L;
+    private final long maximumSize;
+
+    private LruMap(long maximumSize) {
+      super(16, 0.75f, true);
+      this.maximumSize = maximumSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+      return size() > maximumSize;
+    }
+  }
+
+  // guarded by synchronizing on the map
+  private final LruMap<ValidationResult> validations;
+  private final LruMap<ValueSetExpansionOutcome> expansions;
+
+  public SharedTerminologyCache(long maximumSize) {
+    super();
+    validations = new LruMap<>(maximumSize);
+    expansions = new LruMap<>(maximumSize);
+  }
+
+  /**
+   * @return a copy of the result, or null if there isn't one
+   */
+  public ValidationResult getValidation(String folder, String name, String key) {
+    ValidationResult res;
+    synchronized (validations) {
+      res = validations.get(key(folder, name, key));
+    }
+    return res == null ? null : new ValidationResult(res);
+  }
+
+  /**
+   * The result is kept as it is, so it mustn't be changed afterwards
+   */
+  public void cacheValidation(String folder, String name, String key, ValidationResult res) {
+    synchronized (validations) {
+      validations.put(key(folder, name, key), res);
+    }
+  }
+
+  /**
+   * @return a copy of the expansion, or null if there isn't one
+   */
+  public ValueSetExpansionOutcome getExpansion(String folder, String name, String key) {
+    ValueSetExpansionOutcome res;
+    synchronized (expansions) {
+      res = expansions.get(key(folder, name, key));
+    }
+    return res == null ? null : res.copy();
+  }
+
+  /**
+   * The expansion is copied, so the caller can keep using it
+   */
+  public void cacheExpansion(String folder, String name, String key, ValueSetExpansionOutcome res) {
+    ValueSetExpansionOutcome copy = res.copy();
+    synchronized (expansions) {
+      expansions.put(key(folder, name, key), copy);
+    }
+  }
+
+  public long size() {
+    long res;
+    synchronized (validations) {
+      res = validations.size();
+    }
+    synchronized (expansions) {
+      return res + expansions.size();
+    }
+  }
+
+  /**
+   * Drop all the results from caches that use the folder
+   */
+  public void clear(String folder) {
+    String prefix = folder+"|";
+    synchronized (validations) {
+      validations.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+    synchronized (expansions) {
+      expansions.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+  }
+
+  public void clear() {
+    synchronized (validations) {
+      validations.clear();
+    }
+    synchronized (expansions) {
+      expansions.clear();
+    }
+  }
+
+  private String key(String folder, String name, String key) {
+    return folder+"|"+name+"|"+key;
+  }
+}
@@ -37,7 +37,17 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -159,6 +169,8 @@ public class TerminologyCache {
   private static final String ENTRY_MARKER = "-------------------------------------------------------------------------------------";
   private static final String BREAK = "####";
   private static final String CACHE_FILE_EXTENSION = ".cache";
+  private static final String ENTRIES_FILE_EXTENSION = ".entries";
+  private static final String INDEX_FILE_EXTENSION = ".index";
   private static final String CAPABILITY_STATEMENT_TITLE = ".capabilityStatement";
   private static final String TERMINOLOGY_CAPABILITIES_TITLE = ".terminologyCapabilities";
   private static final String FIXED_CACHE_VERSION = "4"; // last change: change the way tx.fhir.org handles expansions
@@ -169,6 +181,7 @@ public class TerminologyCache {
   public class CacheToken {
     @Getter
     private String name;
+    @Getter
     private String key;
     @Getter
     private String request;
@@ -271,6 +284,8 @@ public class TerminologyCache {
     private ValidationResult v;
     private ValueSetExpansionOutcome e;
     private SubsumesResult s;
+    private long offset = -1; // if >= 0, the entry hasn't been read from the .entries file yet
+    private int length;
   }
 
   private class NamedCache {
@@ -295,6 +310,26 @@ public class TerminologyCache {
 
   @Getter @Setter private static boolean cacheErrors;
 
+  /**
+   * if this is true, cache keys are 128 bit digests over a normalised form of the request 
+   * (see TerminologyCacheKeyBuilder) instead of hashes of the JSON form of the request, and 
+   * persistent entries are appended to an .entries file with an .index file rather than 
+   * rewriting the named cache file every time an entry is added. Entries in the .entries 
+   * file are only read when they are first used
+   */
+  @Getter @Setter private static boolean compactKeys;
+
+  /**
+   * if this is set, validate-code and expansion results from the server are shared with the other 
+   * caches that have the same shared cache and use the same folder, so that a result that one of them 
+   * has already got from the server isn't asked for again. Results for a code system that has been 
+   * removed from this cache (see removeCS) aren't shared, since it has its own version of the 
+   * code system. The shared cache is consulted outside the lock, so sessions don't wait on each other
+   */
+  @Getter @Setter private volatile SharedTerminologyCache sharedCache;
+  private Set<String> unshared = ConcurrentHashMap.newKeySet();
+  private static final Map<String, Object> ENTRIES_LOCKS = new ConcurrentHashMap<>(); // see withEntriesLock
+
 
   // use lock from the context
   public TerminologyCache(Object lock, String folder) throws FileNotFoundException, IOException, FHIRException {
@@ -367,6 +402,9 @@ public class TerminologyCache {
   public void clear() throws IOException {
     if (folder != null) {
       Utilities.clearDirectory(folder);
+      if (sharedCache != null) {
+        sharedCache.clear(folder);
+      }
     }
     caches.clear();
     vsCache.clear();
@@ -417,6 +455,11 @@ public class TerminologyCache {
       else
         ct.name = NAME_FOR_NO_SYSTEM;
       nameCacheToken(vs, ct);
+      if (compactKeys) {
+        ct.key = new TerminologyCacheKeyBuilder("validate-code").add(options).add(code).add(vs).add(expParameters).build();
+        ct.request = compactRequest("validate-code", summary(code), vs);
+        return ct;
+      }
       JsonParser json = new JsonParser();
       json.setOutputStyle(OutputStyle.PRETTY);
       String expJS = json.composeString(expParameters);
@@ -447,6 +490,11 @@ public class TerminologyCache {
         ct.name = NAME_FOR_NO_SYSTEM;
       }
       ct.setName(vsUrl);
+      if (compactKeys) {
+        ct.key = new TerminologyCacheKeyBuilder("validate-code-url").add(options).add(code).add(vsUrl).add(expParameters).build();
+        ct.request = "validate-code "+summary(code)+" in "+vsUrl;
+        return ct;
+      }
       JsonParser json = new JsonParser();
       json.setOutputStyle(OutputStyle.PRETTY);
       String expJS = json.composeString(expParameters);
@@ -479,6 +527,11 @@ public class TerminologyCache {
         }
       }
       nameCacheToken(vs, ct);
+      if (compactKeys) {
+        ct.key = new TerminologyCacheKeyBuilder("validate-cc").add(options).add(code).add(vs).add(expParameters).build();
+        ct.request = compactRequest("validate-code", summary(code), vs);
+        return ct;
+      }
       JsonParser json = new JsonParser();
       json.setOutputStyle(OutputStyle.PRETTY);
       String expJS = json.composeString(expParameters);
@@ -513,6 +566,11 @@ public class TerminologyCache {
   public CacheToken generateExpandToken(ValueSet vs, boolean hierarchical) {
     CacheToken ct = new CacheToken();
     nameCacheToken(vs, ct);
+    if (compactKeys) {
+      ct.key = new TerminologyCacheKeyBuilder("expand").add(hierarchical).add(vs).build();
+      ct.request = compactRequest("expand"+(hierarchical ? " (hierarchical)" : ""), null, vs);
+      return ct;
+    }
     if (vs.hasUrl() && vs.hasVersion()) {
       ct.request = "{\"hierarchical\" : "+(hierarchical ? "true" : "false")+", \"url\": \""+Utilities.escapeJson(vs.getUrl())+"\", \"version\": \""+Utilities.escapeJson(vs.getVersion())+"\"}\r\n";      
     } else {
@@ -529,6 +587,29 @@ public class TerminologyCache {
     return ct;
   }
 
+  private String compactRequest(String op, String code, ValueSet vs) {
+    StringBuilder b = new StringBuilder();
+    b.append(op);
+    if (code != null) {
+      b.append(" ");
+      b.append(code);
+    }
+    if (vs != null) {
+      b.append(" in ");
+      if (vs.hasUrl()) {
+        b.append(vs.getUrl());
+        if (vs.hasVersion()) {
+          b.append("|");
+          b.append(vs.getVersion());
+        }
+      } else {
+        b.append("#");
+        b.append(TerminologyCacheKeyBuilder.contentHash(vs));
+      }
+    }
+    return b.toString().replace("\r", " ").replace("\n", " ");
+  }
+
   public void nameCacheToken(ValueSet vs, CacheToken ct) {
     if (vs != null) {
       for (ConceptSetComponent inc : vs.getCompose().getInclude()) {
@@ -573,14 +654,20 @@ public class TerminologyCache {
   }
 
   public ValueSetExpansionOutcome getExpansion(CacheToken cacheToken) {
+    NamedCache nc;
+    CacheEntry e;
     synchronized (lock) {
-      NamedCache nc = getNamedCache(cacheToken);
-      CacheEntry e = nc.map.get(cacheToken.key);
-      if (e == null)
-        return null;
-      else
+      nc = getNamedCache(cacheToken);
+      e = nc.map.get(cacheToken.key);
+      if (e != null && e.offset < 0) {
         return e.e;
+      }
+    }
+    e = resolve(nc, cacheToken.key, e);
+    if (e != null) {
+      return e.e;
     }
+    return getSharedExpansion(nc.name, cacheToken.key);
   }
 
   public void cacheExpansion(CacheToken cacheToken, ValueSetExpansionOutcome res, boolean persistent) {
@@ -608,7 +695,15 @@ public class TerminologyCache {
 
     boolean n = nc.map.containsKey(cacheToken.key);
     nc.map.put(cacheToken.key, e);
-    if (persistent) {
+    if (persistent && e.v != null) {
+      shareValidation(nc, cacheToken.key, e.v);
+    }
+    if (persistent && e.e != null) {
+      shareExpansion(nc, cacheToken.key, e.e);
+    }
+    if (persistent && compactKeys) {
+      append(nc, cacheToken.key, e);
+    } else if (persistent) {
       if (n) {
         for (int i = nc.list.size()- 1; i>= 0; i--) {
           if (nc.list.get(i).request.equals(e.request)) {
@@ -621,22 +716,61 @@ public class TerminologyCache {
     }
   }
 
+  private ValidationResult getSharedValidation(String name, String key) {
+    SharedTerminologyCache shared = sharedCache;
+    if (shared == null || folder == null || unshared.contains(name)) {
+      return null;
+    }
+    return shared.getValidation(folder, name, key);
+  }
+
+  private void shareValidation(NamedCache nc, String key, ValidationResult res) {
+    SharedTerminologyCache shared = sharedCache;
+    if (shared != null && folder != null && !unshared.contains(nc.name)) {
+      shared.cacheValidation(folder, nc.name, key, res);
+    }
+  }
+
+  private ValueSetExpansionOutcome getSharedExpansion(String name, String key) {
+    SharedTerminologyCache shared = sharedCache;
+    if (shared == null || folder == null || unshared.contains(name)) {
+      return null;
+    }
+    return shared.getExpansion(folder, name, key);
+  }
+
+  private void shareExpansion(NamedCache nc, String key, ValueSetExpansionOutcome res) {
+    SharedTerminologyCache shared = sharedCache;
+    if (shared != null && folder != null && !unshared.contains(nc.name)) {
+      shared.cacheExpansion(folder, nc.name, key, res);
+    }
+  }
+
   public ValidationResult getValidation(CacheToken cacheToken) {
     if (cacheToken.key == null) {
       return null;
     }
+    NamedCache nc;
+    CacheEntry e;
     synchronized (lock) {
       requestCount++;
-      NamedCache nc = getNamedCache(cacheToken);
-      CacheEntry e = nc.map.get(cacheToken.key);
-      if (e == null) {
-        networkCount++;
-        return null;
-      } else {
+      nc = getNamedCache(cacheToken);
+      e = nc.map.get(cacheToken.key);
+      if (e != null && e.offset < 0) {
         hitCount++;
         return new ValidationResult(e.v);
       }
     }
+    e = resolve(nc, cacheToken.key, e);
+    ValidationResult res = e != null ? new ValidationResult(e.v) : getSharedValidation(nc.name, cacheToken.key);
+    synchronized (lock) {
+      if (res != null) {
+        hitCount++;
+      } else {
+        networkCount++;
+      }
+    }
+    return res;
   }
 
   public void cacheValidation(CacheToken cacheToken, ValidationResult res, boolean persistent) {
@@ -688,75 +822,7 @@ public class TerminologyCache {
       for (CacheEntry ce : nc.list) {
         sw.write(ce.request.trim());
         sw.write(BREAK+"\r\n");
-        if (ce.e != null) {
-          sw.write("e: {\r\n");
-          if (ce.e.isFromServer())
-            sw.write("  \"from-server\" : true,\r\n");
-          if (ce.e.getValueset() != null)
-            sw.write("  \"valueSet\" : "+json.composeString(ce.e.getValueset()).trim()+",\r\n");
-          sw.write("  \"error\" : \""+Utilities.escapeJson(ce.e.getError()).trim()+"\"\r\n}\r\n");
-        } else if (ce.s != null) {
-          sw.write("s: {\r\n");
-          sw.write("  \"result\" : "+ce.s.result+"\r\n}\r\n");
-        } else {
-          sw.write("v: {\r\n");
-          boolean first = true;
-          if (ce.v.getDisplay() != null) {            
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"display\" : \""+Utilities.escapeJson(ce.v.getDisplay()).trim()+"\"");
-          }
-          if (ce.v.getCode() != null) {
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"code\" : \""+Utilities.escapeJson(ce.v.getCode()).trim()+"\"");
-          }
-          if (ce.v.getSystem() != null) {
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"system\" : \""+Utilities.escapeJson(ce.v.getSystem()).trim()+"\"");
-          }
-          if (ce.v.getVersion() != null) {
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"version\" : \""+Utilities.escapeJson(ce.v.getVersion()).trim()+"\"");
-          }
-          if (ce.v.getSeverity() != null) {
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"severity\" : "+"\""+ce.v.getSeverity().toCode().trim()+"\""+"");
-          }
-          if (ce.v.getMessage() != null) {
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"error\" : \""+Utilities.escapeJson(ce.v.getMessage()).trim()+"\"");
-          }
-          if (ce.v.getErrorClass() != null) {
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"class\" : \""+Utilities.escapeJson(ce.v.getErrorClass().toString())+"\"");
-          }
-          if (ce.v.getDefinition() != null) {
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"definition\" : \""+Utilities.escapeJson(ce.v.getDefinition()).trim()+"\"");
-          }
-          if (ce.v.getStatus() != null) {
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"status\" : \""+Utilities.escapeJson(ce.v.getStatus()).trim()+"\"");
-          }
-          if (ce.v.getServer() != null) {
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"server\" : \""+Utilities.escapeJson(ce.v.getServer()).trim()+"\"");
-          }
-          if (ce.v.isInactive()) {
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"inactive\" : true");
-          }
-          if (ce.v.getUnknownSystems() != null) {
-            if (first) first = false; else sw.write(",\r\n");
-            sw.write("  \"unknown-systems\" : \""+Utilities.escapeJson(CommaSeparatedStringBuilder.join(",", ce.v.getUnknownSystems())).trim()+"\"");
-          }
-          if (ce.v.getIssues() != null) {
-            if (first) first = false; else sw.write(",\r\n");
-            OperationOutcome oo = new OperationOutcome();
-            oo.setIssue(ce.v.getIssues());
-            sw.write("  \"issues\" : "+json.composeString(oo).trim()+"\r\n");
-          }
-          sw.write("\r\n}\r\n");
-        }
+        writeResult(sw, json, ce);
         sw.write(ENTRY_MARKER+"\r\n");
       }      
       sw.close();
@@ -765,6 +831,280 @@ public class TerminologyCache {
     }
   }
 
+  private void writeResult(Writer sw, JsonParser json, CacheEntry ce) throws IOException {
+    if (ce.e != null) {
+      sw.write("e: {\r\n");
+      if (ce.e.isFromServer())
+        sw.write("  \"from-server\" : true,\r\n");
+      if (ce.e.getValueset() != null)
+        sw.write("  \"valueSet\" : "+json.composeString(ce.e.getValueset()).trim()+",\r\n");
+      sw.write("  \"error\" : \""+Utilities.escapeJson(ce.e.getError()).trim()+"\"\r\n}\r\n");
+    } else if (ce.s != null) {
+      sw.write("s: {\r\n");
+      sw.write("  \"result\" : "+ce.s.result+"\r\n}\r\n");
+    } else {
+      sw.write("v: {\r\n");
+      boolean first = true;
+      if (ce.v.getDisplay() != null) {            
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"display\" : \""+Utilities.escapeJson(ce.v.getDisplay()).trim()+"\"");
+      }
+      if (ce.v.getCode() != null) {
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"code\" : \""+Utilities.escapeJson(ce.v.getCode()).trim()+"\"");
+      }
+      if (ce.v.getSystem() != null) {
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"system\" : \""+Utilities.escapeJson(ce.v.getSystem()).trim()+"\"");
+      }
+      if (ce.v.getVersion() != null) {
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"version\" : \""+Utilities.escapeJson(ce.v.getVersion()).trim()+"\"");
+      }
+      if (ce.v.getSeverity() != null) {
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"severity\" : "+"\""+ce.v.getSeverity().toCode().trim()+"\""+"");
+      }
+      if (ce.v.getMessage() != null) {
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"error\" : \""+Utilities.escapeJson(ce.v.getMessage()).trim()+"\"");
+      }
+      if (ce.v.getErrorClass() != null) {
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"class\" : \""+Utilities.escapeJson(ce.v.getErrorClass().toString())+"\"");
+      }
+      if (ce.v.getDefinition() != null) {
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"definition\" : \""+Utilities.escapeJson(ce.v.getDefinition()).trim()+"\"");
+      }
+      if (ce.v.getStatus() != null) {
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"status\" : \""+Utilities.escapeJson(ce.v.getStatus()).trim()+"\"");
+      }
+      if (ce.v.getServer() != null) {
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"server\" : \""+Utilities.escapeJson(ce.v.getServer()).trim()+"\"");
+      }
+      if (ce.v.isInactive()) {
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"inactive\" : true");
+      }
+      if (ce.v.getUnknownSystems() != null) {
+        if (first) first = false; else sw.write(",\r\n");
+        sw.write("  \"unknown-systems\" : \""+Utilities.escapeJson(CommaSeparatedStringBuilder.join(",", ce.v.getUnknownSystems())).trim()+"\"");
+      }
+      if (ce.v.getIssues() != null) {
+        if (first) first = false; else sw.write(",\r\n");
+        OperationOutcome oo = new OperationOutcome();
+        oo.setIssue(ce.v.getIssues());
+        sw.write("  \"issues\" : "+json.composeString(oo).trim()+"\r\n");
+      }
+      sw.write("\r\n}\r\n");
+    }
+  }
+
+  /**
+   * append a persistent entry to the .entries file for the named cache, and record where it 
+   * is in the .index file. If the key already has an entry, the new one wins when the index
+   * is loaded. Other caches - in this process or another - may be appending to the same files,
+   * so this is done holding the lock on the .entries file (see withEntriesLock)
+   */
+  private void append(NamedCache nc, String key, CacheEntry ce) {
+    if (folder == null)
+      return;
+
+    try {
+      StringWriter sw = new StringWriter();
+      sw.write(ce.request.trim());
+      sw.write(BREAK+"\r\n");
+      writeResult(sw, new JsonParser(), ce);
+      byte[] bytes = sw.toString().getBytes(StandardCharsets.UTF_8);
+      withEntriesLock(nc.name, channel -> {
+        long offset = channel.size();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer, offset + buffer.position());
+        }
+        String line = key+"\t"+offset+"\t"+bytes.length+"\r\n";
+        try (FileOutputStream fos = new FileOutputStream(ManagedFileAccess.file(Utilities.path(folder, nc.name+INDEX_FILE_EXTENSION)), true)) {
+          fos.write(line.getBytes(StandardCharsets.UTF_8));
+        }
+        return null;
+      });
+    } catch (Exception e) {
+      System.out.println("error saving "+nc.name+": "+e.getMessage());
+    }
+  }
+
+  private interface EntriesAction<T> {
+    T run(FileChannel entries) throws IOException;
+  }
+
+  /**
+   * the .entries and .index files of a named cache are only changed (or read as a whole) by
+   * whoever holds the lock on the .entries file. File locks are held by the process, so
+   * the caches in this process also synchronize on an object for the file 
+   */
+  private <T> T withEntriesLock(String name, EntriesAction<T> action) throws IOException {
+    File ef = ManagedFileAccess.file(Utilities.path(folder, name+ENTRIES_FILE_EXTENSION));
+    synchronized (ENTRIES_LOCKS.computeIfAbsent(ef.getAbsolutePath(), k -> new Object())) {
+      try (RandomAccessFile raf = new RandomAccessFile(ef, "rw");
+          FileChannel channel = raf.getChannel();
+          FileLock fl = channel.lock()) {
+        return action.run(channel);
+      }
+    }
+  }
+
+  /**
+   * entries loaded from an .index file are read from the .entries file the first time they're used.
+   * This is called without holding the lock, so the file is read (and the entry parsed) without it;
+   * the entry is filled in holding it. Two threads may both read the same entry; the first one wins
+   */
+  private CacheEntry resolve(NamedCache nc, String key, CacheEntry ce) {
+    long offset;
+    int length;
+    synchronized (lock) {
+      if (ce == null || ce.offset < 0) {
+        return ce;
+      }
+      offset = ce.offset;
+      length = ce.length;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(ManagedFileAccess.file(Utilities.path(folder, nc.name+ENTRIES_FILE_EXTENSION)), "r")) {
+      byte[] bytes = new byte[length];
+      raf.seek(offset);
+      raf.readFully(bytes);
+      String s = new String(bytes, StandardCharsets.UTF_8);
+      int j = s.indexOf(BREAK);
+      CacheEntry loaded = getCacheEntry(s.substring(0, j), s.substring(j + BREAK.length() + 1).trim());
+      synchronized (lock) {
+        if (ce.offset >= 0) {
+          ce.request = loaded.request;
+          ce.v = loaded.v;
+          ce.e = loaded.e;
+          ce.s = loaded.s;
+          ce.offset = -1;
+        }
+      }
+      return ce;
+    } catch (Exception e) {
+      System.out.println("Error loading entry "+key+" from "+nc.name+ENTRIES_FILE_EXTENSION+": "+e.getMessage()+" - ignoring it");
+      synchronized (lock) {
+        nc.map.remove(key, ce);
+      }
+      return null;
+    }
+  }
+
+  private void loadIndexedCache(String fn) {
+    try {
+      String title = fn.substring(0, fn.lastIndexOf("."));
+      NamedCache nc = caches.get(title);
+      if (nc == null) {
+        nc = new NamedCache();
+        nc.name = title;
+        caches.put(nc.name, nc);
+      }
+      // read under the lock, so that an entry that is being appended is either all there or not at all
+      for (Map.Entry<String, long[]> e : withEntriesLock(title, channel -> readIndex(title)).entrySet()) {
+        CacheEntry ce = new CacheEntry();
+        ce.persistent = true;
+        ce.offset = e.getValue()[0];
+        ce.length = (int) e.getValue()[1];
+        nc.map.put(e.getKey(), ce);
+      }
+    } catch (Exception e) {
+      System.out.println("Error loading "+fn+": "+e.getMessage()+" - ignoring it");
+    }
+  }
+
+  /**
+   * @return the offset and length of the current entry for each key in the .index file of the named cache
+   */
+  private Map<String, long[]> readIndex(String name) throws IOException {
+    Map<String, long[]> res = new LinkedHashMap<>();
+    File f = ManagedFileAccess.file(Utilities.path(folder, name+INDEX_FILE_EXTENSION));
+    if (f.exists()) {
+      for (String line : TextFile.fileToLines(f.getAbsolutePath())) {
+        String[] parts = line.split("\t");
+        if (parts.length == 3) {
+          res.put(parts[0], new long[] { Long.parseLong(parts[1]), Integer.parseInt(parts[2]) });
+        }
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Entries that are replaced are appended again, so the .entries and .index files only grow.
+   * This rewrites them with just the current entries. 
+   * 
+   * Other caches that have already loaded the folder still have the offsets of the entries
+   * in the old files, so this must only be used when nothing else is using the folder (e.g.
+   * by a maintenance task) - that's why it isn't done when the cache is loaded
+   */
+  public void compact() throws IOException {
+    if (folder == null) {
+      return;
+    }
+    synchronized (lock) {
+      for (String fn : ManagedFileAccess.file(folder).list()) {
+        if (fn.endsWith(INDEX_FILE_EXTENSION)) {
+          String name = fn.substring(0, fn.lastIndexOf("."));
+          withEntriesLock(name, channel -> {
+            compactIndexedCache(name, channel);
+            return null;
+          });
+        }
+      }
+    }
+  }
+
+  private void compactIndexedCache(String name, FileChannel entries) throws IOException {
+    // the index is read again, since other processes might have added to it since it was loaded
+    Map<String, long[]> index = readIndex(name);
+    File nef = ManagedFileAccess.file(Utilities.path(folder, name+ENTRIES_FILE_EXTENSION+".new"));
+    File nif = ManagedFileAccess.file(Utilities.path(folder, name+INDEX_FILE_EXTENSION+".new"));
+    Map<String, Long> offsets = new HashMap<>();
+    try (FileOutputStream eos = new FileOutputStream(nef);
+        FileOutputStream ios = new FileOutputStream(nif)) {
+      long offset = 0;
+      for (Map.Entry<String, long[]> e : index.entrySet()) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) e.getValue()[1]);
+        while (buffer.hasRemaining()) {
+          if (entries.read(buffer, e.getValue()[0] + buffer.position()) < 0) {
+            throw new IOException("The entry for "+e.getKey()+" is past the end of "+name+ENTRIES_FILE_EXTENSION);
+          }
+        }
+        eos.write(buffer.array());
+        ios.write((e.getKey()+"\t"+offset+"\t"+buffer.capacity()+"\r\n").getBytes(StandardCharsets.UTF_8));
+        offsets.put(e.getKey(), offset);
+        offset += buffer.capacity();
+      }
+    }
+    // the entries are written in place, since the lock belongs to the file that is already there
+    try (FileInputStream fis = new FileInputStream(nef)) {
+      entries.truncate(0);
+      long pos = 0;
+      long length = nef.length();
+      while (pos < length) {
+        pos += entries.transferFrom(fis.getChannel(), pos, length - pos);
+      }
+    }
+    Files.delete(nef.toPath());
+    Files.move(nif.toPath(), ManagedFileAccess.file(Utilities.path(folder, name+INDEX_FILE_EXTENSION)).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    NamedCache nc = caches.get(name);
+    if (nc != null) {
+      for (Map.Entry<String, Long> e : offsets.entrySet()) {
+        CacheEntry ce = nc.map.get(e.getKey());
+        if (ce != null && ce.offset >= 0) {
+          ce.offset = e.getValue();
+        }
+      }
+    }
+  }
+
   private boolean isCapabilityCache(String fn) {
     if (fn == null) {
       return false;
@@ -851,8 +1191,11 @@ public class TerminologyCache {
       String src = TextFile.fileToString(Utilities.path(folder, fn));
       String title = fn.substring(0, fn.lastIndexOf("."));
 
-      NamedCache nc = new NamedCache();
-      nc.name = title;
+      NamedCache nc = caches.get(title);
+      if (nc == null) {
+        nc = new NamedCache();
+        nc.name = title;
+      }
 
       if (src.startsWith("?"))
         src = src.substring(1);
@@ -899,6 +1242,8 @@ public class TerminologyCache {
         } catch (FHIRException e) {
           throw e;
         }
+      } else if (fn.endsWith(INDEX_FILE_EXTENSION)) {
+        loadIndexedCache(fn);
       }
     }
     try {
@@ -1008,6 +1353,7 @@ public class TerminologyCache {
       if (caches.containsKey(name)) {
         caches.remove(name);
       }
+      unshared.add(name);
     }   
   }
 
@@ -1153,6 +1499,11 @@ public class TerminologyCache {
         ct.setName(child.getSystem());
       }
       ct.hasVersion = parent.hasVersion() || child.hasVersion();
+      if (compactKeys) {
+        ct.key = new TerminologyCacheKeyBuilder("subsumes").add(options).add(parent).add(child).add(expParameters).build();
+        ct.request = "subsumes "+summary(parent)+" / "+summary(child);
+        return ct;
+      }
       JsonParser json = new JsonParser();
       json.setOutputStyle(OutputStyle.PRETTY);
       String expJS = json.composeString(expParameters);
@@ -1168,10 +1519,15 @@ public class TerminologyCache {
    if (cacheToken.key == null) {
      return null;
    }
+   NamedCache nc;
+   CacheEntry e;
    synchronized (lock) {
      requestCount++;
-     NamedCache nc = getNamedCache(cacheToken);
-     CacheEntry e = nc.map.get(cacheToken.key);
+     nc = getNamedCache(cacheToken);
+     e = nc.map.get(cacheToken.key);
+   }
+   e = resolve(nc, cacheToken.key, e);
+   synchronized (lock) {
      if (e == null) {
        networkCount++;
        return null;
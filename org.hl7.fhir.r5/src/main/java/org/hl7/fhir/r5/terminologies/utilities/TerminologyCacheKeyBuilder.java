@@ -0,0 +1,171 @@
+package org.hl7.fhir.r5.terminologies.utilities;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.hl7.fhir.r5.formats.JsonParser;
+import org.hl7.fhir.r5.model.CodeableConcept;
+import org.hl7.fhir.r5.model.Coding;
+import org.hl7.fhir.r5.model.Parameters;
+import org.hl7.fhir.r5.model.Parameters.ParametersParameterComponent;
+import org.hl7.fhir.r5.model.Resource;
+import org.hl7.fhir.r5.model.ValueSet;
+import org.hl7.fhir.utilities.validation.ValidationOptions;
+
+/**
+ * Builds the compact keys used by the terminology cache when TerminologyCache.compactKeys is set.
+ *
+ * The key is the first 128 bits of a SHA-256 digest over a normalised form of the request.
+ * Codings are fed into the digest field by field (as UTF-8), and a value set is represented
+ * by url|version plus a hash of its content (see contentHash())
+ *
+ * Keys are stable across processes (they're persisted in the cache index), so the order and
+ * separators of the fields fed into the digest must not change without changing the cache version
+ */
+public class TerminologyCacheKeyBuilder {
+
+  private static final byte SEP = 1;
+  private static final byte END = 2;
+  private static final int KEY_BYTES = 16;
+
+  private final MessageDigest digest;
+
+  public TerminologyCacheKeyBuilder(String kind) {
+    digest = newDigest();
+    put(kind);
+    digest.update(END);
+  }
+
+  public TerminologyCacheKeyBuilder add(String value) {
+    if (value != null) {
+      put(value);
+    }
+    digest.update(SEP);
+    return this;
+  }
+
+  public TerminologyCacheKeyBuilder add(boolean value) {
+    digest.update((byte) (value ? 'T' : 'F'));
+    digest.update(SEP);
+    return this;
+  }
+
+  public TerminologyCacheKeyBuilder add(Coding code) {
+    if (code == null) {
+      digest.update(END);
+    } else {
+      add(code.getSystem());
+      add(code.getVersion());
+      add(code.getCode());
+      add(code.getDisplay());
+      add(code.hasUserSelected() && code.getUserSelected());
+      digest.update(END);
+    }
+    return this;
+  }
+
+  public TerminologyCacheKeyBuilder add(CodeableConcept code) {
+    if (code != null) {
+      for (Coding c : code.getCoding()) {
+        add(c);
+      }
+      add(code.getText());
+    }
+    digest.update(END);
+    return this;
+  }
+
+  public TerminologyCacheKeyBuilder add(ValidationOptions options) {
+    add(options == null ? null : options.toJson());
+    return this;
+  }
+
+  public TerminologyCacheKeyBuilder add(ValueSet vs) {
+    if (vs != null) {
+      add(vs.getUrl());
+      add(vs.getVersion());
+      add(contentHash(vs));
+    }
+    digest.update(END);
+    return this;
+  }
+
+  public TerminologyCacheKeyBuilder add(Parameters params) {
+    if (params != null) {
+      for (ParametersParameterComponent p : params.getParameter()) {
+        add(p.getName());
+        if (p.hasValue() && p.getValue().isPrimitive()) {
+          add(p.getValue().fhirType());
+          add(p.getValue().primitiveValue());
+        } else if (p.hasValue() || p.hasResource() || p.hasPart()) {
+          Parameters wrapper = new Parameters();
+          wrapper.getParameter().add(p);
+          add(hash(wrapper));
+        }
+      }
+    }
+    digest.update(END);
+    return this;
+  }
+
+  /**
+   * @return the key, as 32 hex characters
+   */
+  public String build() {
+    return hex(digest.digest());
+  }
+
+  /**
+   * The content hash of a value set covers what matters for the outcome of an
+   * operation: the compose and the expansion parameters and contains, including their
+   * extensions. Value sets can be changed at any time and there's no way to tell that
+   * they have been, so it's worked out every time: those parts are composed as JSON
+   * straight into the digest, without keeping the JSON
+   */
+  public static String contentHash(ValueSet vs) {
+    ValueSet content = new ValueSet();
+    if (vs.hasCompose()) {
+      content.setCompose(vs.getCompose());
+    }
+    if (vs.hasExpansion()) {
+      content.getExpansion().setParameter(vs.getExpansion().getParameter());
+      content.getExpansion().setContains(vs.getExpansion().getContains());
+    }
+    return hash(content);
+  }
+
+  private void put(String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String hash(Resource resource) {
+    MessageDigest md = newDigest();
+    try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), md)) {
+      new JsonParser().compose(out, resource);
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+    return hex(md.digest());
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new Error(e); // every JVM has SHA-256
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder b = new StringBuilder(KEY_BYTES * 2);
+    for (int i = 0; i < KEY_BYTES; i++) {
+      b.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+      b.append(Character.forDigit(bytes[i] & 0xF, 16));
+    }
+    return b.toString();
+  }
+}
@@ -77,6 +77,7 @@ import org.hl7.fhir.r5.model.ValueSet.ConceptReferenceDesignationComponent;
 import org.hl7.fhir.r5.model.ValueSet.ConceptSetComponent;
 import org.hl7.fhir.r5.model.ValueSet.ConceptSetFilterComponent;
 import org.hl7.fhir.r5.model.ValueSet.ValueSetExpansionContainsComponent;
+import org.hl7.fhir.r5.terminologies.CodeSystemConceptIndex;
 import org.hl7.fhir.r5.terminologies.CodeSystemUtilities;
 import org.hl7.fhir.r5.terminologies.client.TerminologyClientManager;
 import org.hl7.fhir.r5.terminologies.expansion.ValueSetExpansionOutcome;
@@ -886,7 +887,7 @@ public class ValueSetValidator extends ValueSetProcessBase {
   }
 
   private ValidationResult validateCode(String path, Coding code, CodeSystem cs, CodeableConcept vcc, ValidationProcessInfo info) {
-    ConceptDefinitionComponent cc = cs.hasUserData("tx.cs.special") ? ((SpecialCodeSystem) cs.getUserData("tx.cs.special")).findConcept(code) : findCodeInConcept(cs.getConcept(), code.getCode(), cs.getCaseSensitive(), allAltCodes);
+    ConceptDefinitionComponent cc = cs.hasUserData("tx.cs.special") ? ((SpecialCodeSystem) cs.getUserData("tx.cs.special")).findConcept(code) : findCodeInCodeSystem(cs, code.getCode(), allAltCodes);
     if (cc == null) {
       cc = findSpecialConcept(code, cs);
     }
@@ -1116,6 +1117,24 @@ public class ValueSetValidator extends ValueSetProcessBase {
     return null;
   }
   
+  /**
+   * Find the code in the code system, using the index of its concepts if it has one. The index gives
+   * all the concepts that could match; if there's only one, it's the one walking the concepts would find.
+   * If there aren't any, the concepts are walked, in case they have changed since the index was built
+   */
+  private ConceptDefinitionComponent findCodeInCodeSystem(CodeSystem cs, String code, AlternateCodesProcessingRules altCodeRules) {
+    CodeSystemConceptIndex index = Utilities.noString(code) ? null : CodeSystemConceptIndex.forConcepts(cs.getConcept());
+    List<ConceptDefinitionComponent> candidates = index == null ? null : index.getCandidates(code, cs.getCaseSensitive());
+    if (candidates != null && candidates.size() == 1) {
+      ConceptDefinitionComponent cc = candidates.get(0);
+      if (code.equals(cc.getCode()) || (!cs.getCaseSensitive() && code.equalsIgnoreCase(cc.getCode())) || Utilities.existsInList(code, alternateCodes(cc, altCodeRules))) {
+        return cc;
+      }
+      // the candidate is an alternate code that these rules don't allow: the walk decides
+    }
+    return findCodeInConcept(cs.getConcept(), code, cs.getCaseSensitive(), altCodeRules);
+  }
+
   private ConceptDefinitionComponent findCodeInConcept(List<ConceptDefinitionComponent> concept, String code, boolean caseSensitive, AlternateCodesProcessingRules altCodeRules) {
     for (ConceptDefinitionComponent cc : concept) {
       if (code.equals(cc.getCode()) || (!caseSensitive && (code.equalsIgnoreCase(cc.getCode())))) {
@@ -1231,7 +1250,7 @@ public class ValueSetValidator extends ValueSetProcessBase {
               }
             }
           } else {
-            ConceptDefinitionComponent cc = findCodeInConcept(cs.getConcept(), code, cs.getCaseSensitive(), allAltCodes);
+            ConceptDefinitionComponent cc = findCodeInCodeSystem(cs, code, allAltCodes);
             if (cc != null) {
               sys.add(vsi.getSystem());
             }
@@ -1582,7 +1601,7 @@ public class ValueSetValidator extends ValueSetProcessBase {
     if (!excludeRoot && code.equals(f.getValue())) {
       return true;
     }
-    ConceptDefinitionComponent cc = findCodeInConcept(cs.getConcept(), f.getValue(), cs.getCaseSensitive(), altCodeParams);
+    ConceptDefinitionComponent cc = findCodeInCodeSystem(cs, f.getValue(), altCodeParams);
     if (cc == null) {
       return false;
     }
@@ -53,6 +53,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -107,7 +108,7 @@ public class FHIRToolingClient extends FHIRBaseToolingClient {
   private String contentLang;
 
 
-  private int useCount;
+  private final AtomicInteger useCount = new AtomicInteger();
 
 
   //Pass endpoint for client - URI
@@ -701,11 +702,11 @@ public class FHIRToolingClient extends FHIRBaseToolingClient {
   }
 
   private void recordUse() {
-    useCount++;    
+    useCount.incrementAndGet();
   }
 
   public int getUseCount() {
-    return useCount;
+    return useCount.get();
   }
   
 }
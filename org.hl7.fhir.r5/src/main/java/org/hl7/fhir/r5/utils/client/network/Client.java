@@ -22,7 +22,6 @@ public class Client {
   private FhirLoggingInterceptor fhirLoggingInterceptor;
   private int retryCount;
   private long timeout = DEFAULT_TIMEOUT;
-  private byte[] payload;
   private String base;
   
   public String getBase() {
@@ -62,7 +61,6 @@ public class Client {
                                                                      String resourceFormat,
                                                                      String message,
                                                                      long timeout) throws IOException {
-    this.payload = null;
     Request.Builder request = new Request.Builder()
       .method("OPTIONS", null)
       .url(optionsUri.toURL());
@@ -75,7 +73,6 @@ public class Client {
                                                                          Headers headers,
                                                                          String message,
                                                                          long timeout) throws IOException {
-    this.payload = null;
     Request.Builder request = new Request.Builder()
       .url(resourceUri.toURL());
 
@@ -100,7 +97,6 @@ public class Client {
                                                                  String message,
                                                                  long timeout) throws IOException {
     if (payload == null) throw new EFhirClientException(0, "PUT requests require a non-null payload");
-    this.payload = payload;
     RequestBody body = RequestBody.create(payload);
     Request.Builder request = new Request.Builder()
       .url(resourceUri.toURL())
@@ -124,7 +120,6 @@ public class Client {
                                                                   String message,
                                                                   long timeout) throws IOException {
     if (payload == null) throw new EFhirClientException(0, "POST requests require a non-null payload");
-    this.payload = payload;
     RequestBody body = RequestBody.create(MediaType.parse(resourceFormat + ";charset=" + DEFAULT_CHARSET), payload);
     Request.Builder request = new Request.Builder()
       .url(resourceUri.toURL())
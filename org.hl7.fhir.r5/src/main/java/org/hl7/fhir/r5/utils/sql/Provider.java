@@ -1,11 +1,23 @@
 package org.hl7.fhir.r5.utils.sql;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.hl7.fhir.r5.model.Base;
 
 public interface Provider {
   List<Base> fetch(String resourceType);
 
+  /**
+   * Pass the resources of the type to the handler one at a time, as they are read. This is what the 
+   * Runner uses; the default just goes through fetch(), so providers for big data sets should 
+   * read the resources as they go instead
+   */
+  default void fetch(String resourceType, Consumer<Base> handler) {
+    for (Base b : fetch(resourceType)) {
+      handler.accept(b);
+    }
+  }
+
   Base resolveReference(Base rootResource, String ref, String specifiedResourceType);
 }
@@ -1,8 +1,17 @@
 package org.hl7.fhir.r5.utils.sql;
 
 import java.math.BigDecimal;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import org.apache.commons.codec.binary.Base64;
 import org.hl7.fhir.exceptions.FHIRException;
@@ -42,6 +51,10 @@ import org.hl7.fhir.utilities.validation.ValidationMessage;
  *    * provide a provider 
  *    * call execute() with a ViewDefinition
  *    * wait... (watch with an observer if you want to track progress)
+ *    
+ *    The resources are streamed from the provider, and the rows are written to the storage in batches. 
+ *    With setThreads(n), the resources are evaluated on n threads; the rows are still written from 
+ *    the thread that called execute(), in the order of the resources unless setOrdered(false) is used
  *   
  *   (2) Trickle Mode
  *    * call 'prepare', and keep the WorkContext that's returned
@@ -52,9 +65,17 @@ import org.hl7.fhir.utilities.validation.ValidationMessage;
 public class Runner implements IEvaluationContext {
   
   public interface IRunnerObserver {
+    /**
+     * @param total - the number of resources, or -1 if it's not known
+     */
     public void handleRow(Base resource, int total, int cursor);
   }
   
+  // how many rows to collect before they're written to the storage in batch mode
+  private static final int ROW_BATCH_SIZE = 1000;
+  // how many resources can be waiting or in progress for each thread
+  private static final int RESOURCES_PER_THREAD = 4;
+  
   public class WorkContext {
     private JsonObject vd;
     private Store store;
@@ -69,7 +90,9 @@ public class Runner implements IEvaluationContext {
   private Storage storage;
   private IRunnerObserver observer;
   private List<String> prohibitedNames = new ArrayList<String>();
-  private FHIRPathEngine fpe;
+  private ThreadLocal<FHIRPathEngine> engines;
+  private int threads = 1;
+  private boolean ordered = true;
 
   private String resourceName;
   private List<ValidationMessage> issues;
@@ -101,6 +124,31 @@ public class Runner implements IEvaluationContext {
     return prohibitedNames;
   }
 
+  public int getThreads() {
+    return threads;
+  }
+  
+  /**
+   * How many threads to evaluate the resources on in batch mode. If this is more than 1, the 
+   * storage's getKeyFor* methods and the provider's resolveReference are called from several 
+   * threads at once
+   */
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  public boolean isOrdered() {
+    return ordered;
+  }
+  
+  /**
+   * When more than one thread is used, whether the rows are written in the order of the resources 
+   * (the default), or as soon as they're ready
+   */
+  public void setOrdered(boolean ordered) {
+    this.ordered = ordered;
+  }
+
   public void execute(JsonObject viewDefinition) {
     execute("$", viewDefinition);
   }
@@ -115,15 +163,116 @@ public class Runner implements IEvaluationContext {
   }
 
   private void evaluate(WorkContext wc) {
-    List<Base> data = provider.fetch(resourceName);
+    RowBatch batch = new RowBatch(wc.store);
+    if (threads <= 1) {
+      provider.fetch(resourceName, b -> {
+        if (observer != null) {
+          observer.handleRow(b, -1, resCount);
+        }
+        batch.add(evaluateResource(wc.vd, b));
+        resCount++;
+      });
+    } else {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        ParallelEvaluator evaluator = new ParallelEvaluator(executor, wc.vd, batch);
+        provider.fetch(resourceName, evaluator);
+        evaluator.finish();
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    batch.flush();
+  }
+
+  /**
+   * Rows waiting to be written to the storage
+   */
+  private class RowBatch {
+    private final Store store;
+    private final List<List<Cell>> rows = new ArrayList<>();
+
+    private RowBatch(Store store) {
+      this.store = store;
+    }
+
+    private void add(List<List<Cell>> list) {
+      rows.addAll(list);
+      if (rows.size() >= ROW_BATCH_SIZE) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      if (!rows.isEmpty()) {
+        storage.addRows(store, rows);
+        rows.clear();
+      }
+    }
+  }
+
+  /**
+   * Takes the resources from the provider, and evaluates them on the executor. No more than
+   * RESOURCES_PER_THREAD resources per thread are waiting or in progress at once; once there are
+   * that many, the provider is held up until the next one is done and its rows are added to the batch
+   */
+  private class ParallelEvaluator implements Consumer<Base> {
+    private final JsonObject vd;
+    private final RowBatch batch;
+    private final int limit;
+    private final ExecutorService executor;
+    private final CompletionService<List<List<Cell>>> completion;
+    private final Deque<Future<List<List<Cell>>>> pending = new ArrayDeque<>();
+    private int inProgress;
 
-    int i = 0;
-    for (Base b : data) {
+    private ParallelEvaluator(ExecutorService executor, JsonObject vd, RowBatch batch) {
+      this.executor = executor;
+      this.vd = vd;
+      this.batch = batch;
+      this.limit = threads * RESOURCES_PER_THREAD;
+      this.completion = ordered ? null : new ExecutorCompletionService<>(executor);
+    }
+
+    @Override
+    public void accept(Base b) {
       if (observer != null) {
-        observer.handleRow(b, data.size(), i);
+        observer.handleRow(b, -1, resCount);
+      }
+      resCount++;
+      if (ordered) {
+        pending.add(executor.submit(() -> evaluateResource(vd, b)));
+      } else {
+        completion.submit(() -> evaluateResource(vd, b));
+      }
+      inProgress++;
+      while (inProgress >= limit) {
+        next();
+      }
+    }
+
+    private void finish() {
+      while (inProgress > 0) {
+        next();
+      }
+    }
+
+    private void next() {
+      try {
+        Future<List<List<Cell>>> f = ordered ? pending.remove() : completion.take();
+        inProgress--;
+        batch.add(f.get());
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw new FHIRException(e.getCause().getMessage(), e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new FHIRException("Interrupted evaluating "+vd.asString("name"), e);
       }
-      processResource(wc.vd, wc.store, b);
-      i++;
     }
   }
 
@@ -132,9 +281,10 @@ public class Runner implements IEvaluationContext {
     if (context == null) {
       throw new FHIRException("No context provided");
     }
-    fpe = new FHIRPathEngine(context);
-    fpe.setHostServices(this);
-    fpe.setEmitSQLonFHIRWarning(true);
+    // the engines aren't thread safe, so each thread gets its own. The expressions are parsed once, 
+    // by the validator, and shared
+    engines = ThreadLocal.withInitial(this::makeEngine);
+    FHIRPathEngine fpe = engines.get();
     if (viewDefinition == null) {
       throw new FHIRException("No viewDefinition provided");
     }
@@ -153,38 +303,45 @@ public class Runner implements IEvaluationContext {
     wc.store = storage.createStore(wc.vd.asString("name"), (List<Column>) wc.vd.getUserData("columns"));
     return wc;
   }
+
+  private FHIRPathEngine makeEngine() {
+    FHIRPathEngine fpe = new FHIRPathEngine(context);
+    fpe.setHostServices(this);
+    fpe.setEmitSQLonFHIRWarning(true);
+    return fpe;
+  }
   
   public void processResource(WorkContext wc, Base b) {
     if (observer != null) {
       observer.handleRow(b, -1, resCount);
     }
-    processResource(wc.vd, wc.store, b);
+    List<List<Cell>> rows = evaluateResource(wc.vd, b);
+    if (!rows.isEmpty()) {
+      storage.addRows(wc.store, rows);
+    }
     resCount++;
     wc.store.flush();
   }
   
-  private void processResource(JsonObject vd, Store store, Base b) {
-    boolean ok = true;
+  private List<List<Cell>> evaluateResource(JsonObject vd, Base b) {
+    FHIRPathEngine fpe = engines.get();
     for (JsonObject w : vd.getJsonObjects("where")) {
-      String expr = w.asString("path");
-      ExpressionNode node = fpe.parse(expr);
+      ExpressionNode node = (ExpressionNode) w.getUserData("path");
+      if (node == null) {
+        node = fpe.parse(w.asString("path"));
+      }
       boolean pass = fpe.evaluateToBoolean(vd, b, b, b, node);
       if (!pass) {
-        ok = false;
-        break;
+        return new ArrayList<>();
       }  
     }
-    if (ok) {
-      List<List<Cell>> rows = new ArrayList<>();
-      rows.add(new ArrayList<Cell>());
+    List<List<Cell>> rows = new ArrayList<>();
+    rows.add(new ArrayList<Cell>());
 
-      for (JsonObject select : vd.getJsonObjects("select")) {
-        executeSelect(vd, select, b, rows);
-      }
-      for (List<Cell> row : rows) {
-        storage.addRow(store, row);
-      }
+    for (JsonObject select : vd.getJsonObjects("select")) {
+      executeSelect(vd, select, b, rows);
     }
+    return rows;
   }
   
   public void finish(WorkContext wc) {
@@ -274,14 +431,14 @@ public class Runner implements IEvaluationContext {
   private List<Base> executeForEach(JsonObject vd, JsonObject focus, Base b) {
     ExpressionNode n = (ExpressionNode) focus.getUserData("forEach");
     List<Base> result = new ArrayList<>();
-    result.addAll(fpe.evaluate(vd, b, n));
+    result.addAll(engines.get().evaluate(vd, b, n));
     return result;  
   }
 
   private List<Base> executeForEachOrNull(JsonObject vd, JsonObject focus, Base b) {
     ExpressionNode n = (ExpressionNode) focus.getUserData("forEachOrNull");
     List<Base> result = new ArrayList<>();
-    result.addAll(fpe.evaluate(vd, b, n));
+    result.addAll(engines.get().evaluate(vd, b, n));
     return result;  
   }
 
@@ -289,7 +446,7 @@ public class Runner implements IEvaluationContext {
     ExpressionNode n = (ExpressionNode) column.getUserData("path");
     List<Base> bl2 = new ArrayList<>();
     if (b != null) {
-      bl2.addAll(fpe.evaluate(vd, b, n));
+      bl2.addAll(engines.get().evaluate(vd, b, n));
     }
     Column col = (Column) column.getUserData("column");
     if (col == null) {
@@ -12,6 +12,15 @@ public interface Storage {
   
   Store createStore(String name, List<Column> columns);
   void addRow(Store store, List<Cell> cells);
+  
+  /**
+   * Add a batch of rows. The list is reused once this returns, so don't keep it
+   */
+  default void addRows(Store store, List<List<Cell>> rows) {
+    for (List<Cell> row : rows) {
+      addRow(store, row);
+    }
+  }
   void finish(Store store);
   TrueFalseOrUnknown needsName();
   String getKeyForSourceResource(Base res);
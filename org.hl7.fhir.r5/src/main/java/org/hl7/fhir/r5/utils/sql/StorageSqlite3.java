@@ -2,6 +2,7 @@ package org.hl7.fhir.r5.utils.sql;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.SQLType;
 import java.util.List;
 
@@ -77,41 +78,59 @@ public class StorageSqlite3 implements Storage {
     try {
       SQLiteStore sqls = (SQLiteStore) store;
       PreparedStatement p = sqls.getP();
-      p.setInt(1, ++nextKey);
-      for (int i = 0; i < cells.size(); i++) {
-        Cell c = cells.get(i);
-        switch (c.getColumn().getKind()) {
-        case Null: 
-          p.setNull(i+2, java.sql.Types.NVARCHAR);
-        case Binary:
-          p.setBytes(i+2, c.getValues().size() == 0 ? null : c.getValues().get(0).getValueBinary());
-          break;
-        case Boolean:
-          p.setBoolean(i+2, c.getValues().size() == 0 ? false : c.getValues().get(0).getValueBoolean().booleanValue());
-          break;
-        case DateTime:
-          p.setDate(i+2, c.getValues().size() == 0 ? null : new java.sql.Date(c.getValues().get(0).getValueDate().getTime()));
-          break;
-        case Decimal:
-          p.setString(i+2, c.getValues().size() == 0 ? null : c.getValues().get(0).getValueString());
-          break;
-        case Integer:
-          p.setInt(i+2, c.getValues().size() == 0 ? 0 : c.getValues().get(0).getValueInt().intValue());
-          break;
-        case String:
-          p.setString(i+2, c.getValues().size() == 0 ? null : c.getValues().get(0).getValueString());
-          break;
-        case Time:
-          p.setString(i+2, c.getValues().size() == 0 ? null : c.getValues().get(0).getValueString());
-          break;    
-        case Complex: throw new FHIRException("SQLite runner does not handle complexes");
-        }
-      }
+      setRow(p, cells);
       p.execute();
     } catch (Exception e) {
       throw new FHIRException(e);
     }
-    
+  }
+
+  @Override
+  public void addRows(Store store, List<List<Cell>> rows) {
+    try {
+      SQLiteStore sqls = (SQLiteStore) store;
+      PreparedStatement p = sqls.getP();
+      for (List<Cell> cells : rows) {
+        setRow(p, cells);
+        p.addBatch();
+      }
+      p.executeBatch();
+    } catch (Exception e) {
+      throw new FHIRException(e);
+    }
+  }
+
+  private void setRow(PreparedStatement p, List<Cell> cells) throws SQLException {
+    p.setInt(1, ++nextKey);
+    for (int i = 0; i < cells.size(); i++) {
+      Cell c = cells.get(i);
+      switch (c.getColumn().getKind()) {
+      case Null: 
+        p.setNull(i+2, java.sql.Types.NVARCHAR);
+      case Binary:
+        p.setBytes(i+2, c.getValues().size() == 0 ? null : c.getValues().get(0).getValueBinary());
+        break;
+      case Boolean:
+        p.setBoolean(i+2, c.getValues().size() == 0 ? false : c.getValues().get(0).getValueBoolean().booleanValue());
+        break;
+      case DateTime:
+        p.setDate(i+2, c.getValues().size() == 0 ? null : new java.sql.Date(c.getValues().get(0).getValueDate().getTime()));
+        break;
+      case Decimal:
+        p.setString(i+2, c.getValues().size() == 0 ? null : c.getValues().get(0).getValueString());
+        break;
+      case Integer:
+        p.setInt(i+2, c.getValues().size() == 0 ? 0 : c.getValues().get(0).getValueInt().intValue());
+        break;
+      case String:
+        p.setString(i+2, c.getValues().size() == 0 ? null : c.getValues().get(0).getValueString());
+        break;
+      case Time:
+        p.setString(i+2, c.getValues().size() == 0 ? null : c.getValues().get(0).getValueString());
+        break;    
+      case Complex: throw new FHIRException("SQLite runner does not handle complexes");
+      }
+    }
   }
 
   @Override
@@ -0,0 +1,89 @@
+package org.hl7.fhir.r5.utils.structuremap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hl7.fhir.r5.model.Base;
+import org.hl7.fhir.r5.model.StructureMap;
+
+/**
+ * A StructureMap (and the maps it imports) made ready to run: see StructureMapUtilities.compile().
+ *
+ * The plan holds what StructureMapUtilities otherwise works out as it goes and keeps in the user data of
+ * the map - the groups that rules and extends refer to, the parsed FHIRPath expressions, and the concept
+ * maps for translate (which are indexed when the plan is compiled). Transforms that use a plan never change
+ * the maps, so a plan can be used by many transforms at once. Things that depend on the content being
+ * transformed (groups found by type) are worked out the first time they're needed and kept in the plan.
+ *
+ * If the map (or a map it imports) is changed, it has to be compiled again
+ */
+public class StructureMapPlan {
+
+  private static class Key {
+    private final Base owner;
+    private final String name;
+
+    private Key(Base owner, String name) {
+      this.owner = owner;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Key && ((Key) obj).owner == owner && ((Key) obj).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(owner) * 31 + name.hashCode();
+    }
+  }
+
+  private final StructureMap map;
+  private final List<StructureMap> maps = new ArrayList<>();
+  private final Map<Key, Object> entries = new ConcurrentHashMap<>();
+
+  StructureMapPlan(StructureMap map) {
+    this.map = map;
+  }
+
+  /**
+   * @return the map that the plan is for
+   */
+  public StructureMap getMap() {
+    return map;
+  }
+
+  /**
+   * @return the map that the plan is for, followed by the maps that it imports (directly or indirectly)
+   */
+  public List<StructureMap> getMaps() {
+    return Collections.unmodifiableList(maps);
+  }
+
+  /**
+   * @return how many things have been worked out for the plan so far
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  void addMap(StructureMap map) {
+    maps.add(map);
+  }
+
+  Object get(Base owner, String name) {
+    return entries.get(new Key(owner, name));
+  }
+
+  void put(Base owner, String name, Object value) {
+    entries.putIfAbsent(new Key(owner, name), value);
+  }
+
+  void replace(Base owner, String name, Object value) {
+    entries.put(new Key(owner, name), value);
+  }
+}
@@ -52,6 +52,7 @@ import org.hl7.fhir.r5.fhirpath.FHIRLexer.FHIRLexerException;
 import org.hl7.fhir.r5.fhirpath.TypeDetails.ProfiledType;
 import org.hl7.fhir.r5.model.*;
 import org.hl7.fhir.r5.model.ConceptMap.ConceptMapGroupComponent;
+import org.hl7.fhir.r5.model.ConceptMap.ConceptMapGroupUnmappedComponent;
 import org.hl7.fhir.r5.model.ConceptMap.ConceptMapGroupUnmappedMode;
 import org.hl7.fhir.r5.model.ConceptMap.SourceElementComponent;
 import org.hl7.fhir.r5.model.ConceptMap.TargetElementComponent;
@@ -67,6 +68,7 @@ import org.hl7.fhir.r5.model.StructureDefinition.TypeDerivationRule;
 import org.hl7.fhir.r5.model.StructureMap.*;
 import org.hl7.fhir.r5.model.ValueSet.ValueSetExpansionContainsComponent;
 import org.hl7.fhir.r5.renderers.TerminologyRenderer;
+import org.hl7.fhir.r5.terminologies.ConceptMapIndex;
 import org.hl7.fhir.r5.terminologies.expansion.ValueSetExpansionOutcome;
 import org.hl7.fhir.r5.terminologies.utilities.ValidationResult;
 import org.hl7.fhir.r5.utils.ToolingExtensions;
@@ -79,6 +81,12 @@ import org.hl7.fhir.utilities.xhtml.XhtmlNode;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Services in this class:
@@ -100,6 +108,8 @@ public class StructureMapUtilities {
   public static final String MAP_SEARCH_EXPRESSION = "map.search.expression";
   public static final String MAP_EXPRESSION = "map.transform.expression";
   private static final boolean MULTIPLE_TARGETS_ONELINE = true;
+  // how many sources can be waiting or in progress for each thread in a batch transform
+  private static final int BATCH_SOURCES_PER_THREAD = 4;
   public static final String AUTO_VAR_NAME = "vvv";
   public static final String DEF_GROUP_NAME = "DefaultMappingGroupAnonymousAlias";
   
@@ -1259,7 +1269,176 @@ public class StructureMapUtilities {
   }
 
   public void transform(Object appInfo, Base source, StructureMap map, Base target) throws FHIRException {
-    TransformContext context = new TransformContext(appInfo);
+    transform(new TransformContext(appInfo), source, map, target);
+  }
+
+  /**
+   * Transform the source using a plan from compile(). Many threads can use the same plan at once, 
+   * but each thread needs its own StructureMapUtilities
+   */
+  public void transform(Object appInfo, Base source, StructureMapPlan plan, Base target) throws FHIRException {
+    transform(new TransformContext(appInfo, plan), source, plan.getMap(), target);
+  }
+
+  /**
+   * Transform a series of sources using a plan from compile(), across a pool of threads. 
+   * 
+   * The target for each source is made by the targetFactory (on the worker threads), and each 
+   * source and its target are passed to the consumer on the calling thread, in the order of the 
+   * sources. Sources are only read from the iterator as threads become free, so they can be read or 
+   * parsed as they go. The first transform that fails ends the batch, and its exception is thrown. 
+   * 
+   * Each worker thread uses its own copy of this StructureMapUtilities, with the same worker 
+   * context, services and settings, so the services have to be safe to use from several threads at once
+   */
+  public void transform(Object appInfo, Iterator<? extends Base> sources, StructureMapPlan plan, Function<Base, Base> targetFactory, BiConsumer<Base, Base> consumer, int threads) throws FHIRException {
+    if (threads <= 1) {
+      while (sources.hasNext()) {
+        Base source = sources.next();
+        Base target = targetFactory.apply(source);
+        transform(appInfo, source, plan, target);
+        consumer.accept(source, target);
+      }
+      return;
+    }
+    ThreadLocal<StructureMapUtilities> local = ThreadLocal.withInitial(this::copyForThread);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      Deque<Base> inProgress = new ArrayDeque<>();
+      Deque<Future<Base>> results = new ArrayDeque<>();
+      while (sources.hasNext() || !results.isEmpty()) {
+        while (sources.hasNext() && results.size() < threads * BATCH_SOURCES_PER_THREAD) {
+          Base source = sources.next();
+          inProgress.add(source);
+          results.add(executor.submit(() -> {
+            Base target = targetFactory.apply(source);
+            local.get().transform(appInfo, source, plan, target);
+            return target;
+          }));
+        }
+        Base target;
+        try {
+          target = results.remove().get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof FHIRException)
+            throw (FHIRException) e.getCause();
+          throw new FHIRException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new FHIRException("Interrupted transforming " + plan.getMap().getUrl(), e);
+        }
+        consumer.accept(inProgress.remove(), target);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private StructureMapUtilities copyForThread() {
+    StructureMapUtilities res = new StructureMapUtilities(worker, services, pkp);
+    res.terminologyServiceOptions = terminologyServiceOptions;
+    res.exceptionsForChecks = exceptionsForChecks;
+    res.debug = debug;
+    return res;
+  }
+
+  /**
+   * Prepare a map, and the maps it imports, for transforming many sources: group references are resolved, 
+   * FHIRPath expressions parsed, and the concept maps for translate found and indexed, once. The plan can 
+   * then be used by transform() on many threads at once.  
+   * 
+   * Anything in the maps that would fail when the rule that uses it is run (a group or a contained concept map
+   * that doesn't exist, or an expression that doesn't parse) fails here instead
+   */
+  public StructureMapPlan compile(StructureMap map) throws FHIRException {
+    StructureMapPlan plan = new StructureMapPlan(map);
+    TransformContext context = new TransformContext(null, plan);
+    List<StructureMap> todo = new ArrayList<>();
+    Set<String> seen = new HashSet<>();
+    todo.add(map);
+    seen.add(map.getUrl());
+    while (!todo.isEmpty()) {
+      StructureMap sm = todo.remove(0);
+      plan.addMap(sm);
+      for (StructureMapGroupComponent g : sm.getGroup()) {
+        compileGroup(context, sm, g);
+      }
+      for (UriType imp : sm.getImport()) {
+        for (StructureMap impMap : findMatchingMaps(imp.getValue())) {
+          if (seen.add(impMap.getUrl()))
+            todo.add(impMap);
+        }
+      }
+    }
+    return plan;
+  }
+
+  private void compileGroup(TransformContext context, StructureMap map, StructureMapGroupComponent group) throws FHIRException {
+    if (group.hasExtends())
+      resolveGroupReference(context, map, group, group.getExtends());
+    for (StructureMapGroupRuleComponent r : group.getRule()) {
+      compileRule(context, map, group, r);
+    }
+  }
+
+  private void compileRule(TransformContext context, StructureMap map, StructureMapGroupComponent group, StructureMapGroupRuleComponent rule) throws FHIRException {
+    for (StructureMapGroupRuleSourceComponent src : rule.getSource()) {
+      if ("@search".equals(src.getContext()))
+        getExpression(context, src, MAP_SEARCH_EXPRESSION, src.getElement());
+      if (src.hasCondition())
+        getExpression(context, src, MAP_WHERE_EXPRESSION, src.getCondition());
+      if (src.hasCheck())
+        getExpression(context, src, MAP_WHERE_CHECK, src.getCheck());
+      if (src.hasLogMessage())
+        getExpression(context, src, MAP_WHERE_LOG, src.getLogMessage());
+    }
+    for (StructureMapGroupRuleTargetComponent tgt : rule.getTarget()) {
+      // parameters that are variables can only be known when the rule is run 
+      if (tgt.getTransform() == StructureMapTransform.EVALUATE && tgt.hasParameter()) {
+        DataType p = tgt.getParameter().get(tgt.getParameter().size() - 1).getValue();
+        if (!(p instanceof IdType) && p != null && p.hasPrimitiveValue())
+          getExpression(context, tgt, MAP_EXPRESSION, p.primitiveValue());
+      } else if (tgt.getTransform() == StructureMapTransform.TRANSLATE && tgt.getParameter().size() > 1) {
+        DataType p = tgt.getParameter().get(1).getValue();
+        if (!(p instanceof IdType) && p != null && p.hasPrimitiveValue() && !p.primitiveValue().equals("http://hl7.org/fhir/ConceptMap/special-oid2uri")) {
+          ConceptMap cmap = resolveConceptMap(context, map, p.primitiveValue());
+          if (cmap != null)
+            conceptMapIndex(context, map, p.primitiveValue(), cmap);
+        }
+      }
+    }
+    for (StructureMapGroupRuleComponent childrule : rule.getRule()) {
+      compileRule(context, map, group, childrule);
+    }
+    for (StructureMapGroupRuleDependentComponent dependent : rule.getDependent()) {
+      resolveGroupReference(context, map, group, dependent.getName());
+    }
+  }
+
+  /**
+   * Without a plan, what the transform works out is kept in the user data of the map
+   */
+  private Object getCached(TransformContext context, Base owner, String name) {
+    return context.getPlan() != null ? context.getPlan().get(owner, name) : owner.getUserData(name);
+  }
+
+  private void putCached(TransformContext context, Base owner, String name, Object value) {
+    if (context.getPlan() != null)
+      context.getPlan().put(owner, name, value);
+    else
+      owner.setUserData(name, value);
+  }
+
+  private ExpressionNode getExpression(TransformContext context, Base owner, String name, String expression) throws FHIRException {
+    ExpressionNode expr = (ExpressionNode) getCached(context, owner, name);
+    if (expr == null) {
+      expr = fpe.parse(expression);
+      putCached(context, owner, name, expr);
+    }
+    return expr;
+  }
+
+  private void transform(TransformContext context, Base source, StructureMap map, Base target) throws FHIRException {
     log("Start Transform " + map.getUrl());
     StructureMapGroupComponent g = map.getGroup().get(0);
 
@@ -1305,7 +1484,7 @@ public class StructureMapUtilities {
     log(indent + "Group : " + group.getName() + "; vars = " + vars.summary());
     // todo: check inputs
     if (group.hasExtends()) {
-      ResolvedGroup rg = resolveGroupReference(map, group, group.getExtends());
+      ResolvedGroup rg = resolveGroupReference(context, map, group, group.getExtends());
       executeGroup(indent + " ", context, rg.getTargetMap(), vars, rg.getTargetGroup(), false);
     }
 
@@ -1342,7 +1521,7 @@ public class StructureMapUtilities {
           Base tgt = v.get(VariableMode.OUTPUT, rule.getTargetFirstRep().getVariable());
           String srcType = src.fhirType();
           String tgtType = tgt.fhirType();
-          ResolvedGroup defGroup = resolveGroupByTypes(map, rule.getName(), group, srcType, tgtType);
+          ResolvedGroup defGroup = resolveGroupByTypes(context, map, rule.getName(), group, srcType, tgtType);
           Variables vdef = new Variables();
           vdef.add(VariableMode.INPUT, defGroup.getTargetGroup().getInput().get(0).getName(), src);
           vdef.add(VariableMode.OUTPUT, defGroup.getTargetGroup().getInput().get(1).getName(), tgt);
@@ -1353,7 +1532,7 @@ public class StructureMapUtilities {
   }
 
   private void executeDependency(String indent, TransformContext context, StructureMap map, Variables vin, StructureMapGroupComponent group, StructureMapGroupRuleDependentComponent dependent) throws FHIRException {
-    ResolvedGroup rg = resolveGroupReference(map, group, dependent.getName());
+    ResolvedGroup rg = resolveGroupReference(context, map, group, dependent.getName());
 
     if (rg.getTargetGroup().getInput().size() != dependent.getParameter().size()) {
       throw new FHIRException("Rule '" + dependent.getName() + "' has " + rg.getTargetGroup().getInput().size() + " but the invocation has " + dependent.getParameter().size() + " variables");
@@ -1374,11 +1553,12 @@ public class StructureMapUtilities {
     executeGroup(indent + "  ", context, rg.getTargetMap(), v, rg.getTargetGroup(), false);
   }
 
-  private String determineTypeFromSourceType(StructureMap map, StructureMapGroupComponent source, Base base, String[] types) throws FHIRException {
+  private String determineTypeFromSourceType(TransformContext context, StructureMap map, StructureMapGroupComponent source, Base base, String[] types) throws FHIRException {
     String type = base.fhirType();
     String kn = "type^" + type;
-    if (source.hasUserData(kn))
-      return source.getUserString(kn);
+    String cached = (String) getCached(context, source, kn);
+    if (cached != null)
+      return cached;
 
     ResolvedGroup res = new ResolvedGroup(null, null);
     for (StructureMapGroupComponent grp : map.getGroup()) {
@@ -1392,7 +1572,7 @@ public class StructureMapUtilities {
     }
     if (res.getTargetMap() != null) {
       String result = getActualType(res.getTargetMap(), res.getTargetGroup().getInput().get(1).getType());
-      source.setUserData(kn, result);
+      putCached(context, source, kn, result);
       return result;
     }
 
@@ -1417,7 +1597,7 @@ public class StructureMapUtilities {
     if (res.getTargetGroup() == null)
       throw new FHIRException("No matches found for default rule for '" + type + "' from " + map.getUrl());
     String result = getActualType(res.getTargetMap(), res.getTargetGroup().getInput().get(1).getType()); // should be .getType, but R2...
-    source.setUserData(kn, result);
+    putCached(context, source, kn, result);
     return result;
   }
 
@@ -1448,10 +1628,11 @@ public class StructureMapUtilities {
     return url.length() > mask.length() && url.startsWith(mask.substring(0, mask.indexOf("*"))) && url.endsWith(mask.substring(mask.indexOf("*") + 1));
   }
 
-  private ResolvedGroup resolveGroupByTypes(StructureMap map, String ruleid, StructureMapGroupComponent source, String srcType, String tgtType) throws FHIRException {
+  private ResolvedGroup resolveGroupByTypes(TransformContext context, StructureMap map, String ruleid, StructureMapGroupComponent source, String srcType, String tgtType) throws FHIRException {
     String kn = "types^" + srcType + ":" + tgtType;
-    if (source.hasUserData(kn))
-      return (ResolvedGroup) source.getUserData(kn);
+    ResolvedGroup cached = (ResolvedGroup) getCached(context, source, kn);
+    if (cached != null)
+      return cached;
 
     ResolvedGroup res = new ResolvedGroup(null, null);
     for (StructureMapGroupComponent grp : map.getGroup()) {
@@ -1464,7 +1645,7 @@ public class StructureMapUtilities {
       }
     }
     if (res.getTargetMap() != null) {
-      source.setUserData(kn, res);
+      putCached(context, source, kn, res);
       return res;
     }
 
@@ -1488,7 +1669,7 @@ public class StructureMapUtilities {
     }
     if (res.getTargetGroup() == null)
       throw new FHIRException("No matches found for rule for '" + srcType + " to " + tgtType + "' from " + map.getUrl() + ", from rule '" + ruleid + "'");
-    source.setUserData(kn, res);
+    putCached(context, source, kn, res);
     return res;
   }
 
@@ -1549,10 +1730,11 @@ public class StructureMapUtilities {
   }
 
 
-  private ResolvedGroup resolveGroupReference(StructureMap map, StructureMapGroupComponent source, String name) throws FHIRException {
+  private ResolvedGroup resolveGroupReference(TransformContext context, StructureMap map, StructureMapGroupComponent source, String name) throws FHIRException {
     String kn = "ref^" + name;
-    if (source.hasUserData(kn))
-      return (ResolvedGroup) source.getUserData(kn);
+    ResolvedGroup cached = (ResolvedGroup) getCached(context, source, kn);
+    if (cached != null)
+      return cached;
 
     ResolvedGroup res = new ResolvedGroup(null, null);
     for (StructureMapGroupComponent grp : map.getGroup()) {
@@ -1565,7 +1747,7 @@ public class StructureMapUtilities {
       }
     }
     if (res.getTargetMap() != null) {
-      source.setUserData(kn, res);
+      putCached(context, source, kn, res);
       return res;
     }
 
@@ -1591,18 +1773,14 @@ public class StructureMapUtilities {
     }
     if (res.getTargetGroup() == null)
       throw new FHIRException("No matches found for rule '" + name + "'. Reference found in " + map.getUrl());
-    source.setUserData(kn, res);
+    putCached(context, source, kn, res);
     return res;
   }
 
   private List<Variables> processSource(String ruleId, TransformContext context, Variables vars, StructureMapGroupRuleSourceComponent src, String pathForErrors, String indent) throws FHIRException {
     List<Base> items;
     if (src.getContext().equals("@search")) {
-      ExpressionNode expr = (ExpressionNode) src.getUserData(MAP_SEARCH_EXPRESSION);
-      if (expr == null) {
-        expr = fpe.parse(src.getElement());
-        src.setUserData(MAP_SEARCH_EXPRESSION, expr);
-      }
+      ExpressionNode expr = getExpression(context, src, MAP_SEARCH_EXPRESSION, src.getElement());
       String search = fpe.evaluateToString(vars, null, null, new StringType(), expr); // string is a holder of nothing to ensure that variables are processed correctly 
       items = services.performSearch(context.getAppInfo(), search);
     } else {
@@ -1631,11 +1809,7 @@ public class StructureMapUtilities {
     }
     
     if (src.hasCondition()) {
-      ExpressionNode expr = (ExpressionNode) src.getUserData(MAP_WHERE_EXPRESSION);
-      if (expr == null) {
-        expr = fpe.parse(src.getCondition());
-        src.setUserData(MAP_WHERE_EXPRESSION, expr);
-      }
+      ExpressionNode expr = getExpression(context, src, MAP_WHERE_EXPRESSION, src.getCondition());
       List<Base> remove = new ArrayList<Base>();
       for (Base item : items) {
         Variables varsForSource = vars.copy();
@@ -1652,11 +1826,7 @@ public class StructureMapUtilities {
     }
 
     if (src.hasCheck()) {
-      ExpressionNode expr = (ExpressionNode) src.getUserData(MAP_WHERE_CHECK);
-      if (expr == null) {
-        expr = fpe.parse(src.getCheck());
-        src.setUserData(MAP_WHERE_CHECK, expr);
-      }
+      ExpressionNode expr = getExpression(context, src, MAP_WHERE_CHECK, src.getCheck());
       for (Base item : items) {
         Variables varsForSource = vars.copy();
         if (src.hasVariable()) {
@@ -1668,11 +1838,7 @@ public class StructureMapUtilities {
     }
 
     if (src.hasLogMessage()) {
-      ExpressionNode expr = (ExpressionNode) src.getUserData(MAP_WHERE_LOG);
-      if (expr == null) {
-        expr = fpe.parse(src.getLogMessage());
-        src.setUserData(MAP_WHERE_LOG, expr);
-      }
+      ExpressionNode expr = getExpression(context, src, MAP_WHERE_LOG, src.getLogMessage());
       CommaSeparatedStringBuilder b = new CommaSeparatedStringBuilder();
       for (Base item : items) {
         Variables varsForSource = vars.copy();
@@ -1774,7 +1940,7 @@ public class StructureMapUtilities {
             if (types.length == 1 && !"*".equals(types[0]) && !types[0].equals("Resource"))
               tn = types[0];
             else if (srcVar != null) {
-              tn = determineTypeFromSourceType(map, group, vars.get(VariableMode.INPUT, srcVar), types);
+              tn = determineTypeFromSourceType(context, map, group, vars.get(VariableMode.INPUT, srcVar), types);
             } else
               throw new FHIRException("Cannot determine type implicitly because there is no single input variable");
           } else {
@@ -1799,10 +1965,10 @@ public class StructureMapUtilities {
         case COPY:
           return getParam(vars, tgt.getParameter().get(0));
         case EVALUATE:
-          ExpressionNode expr = (ExpressionNode) tgt.getUserData(MAP_EXPRESSION);
+          ExpressionNode expr = (ExpressionNode) getCached(context, tgt, MAP_EXPRESSION);
           if (expr == null) {
             expr = fpe.parse(getParamStringNoNull(vars, tgt.getParameter().get(tgt.getParameter().size() - 1), tgt.toString()));
-            tgt.setUserData(MAP_EXPRESSION, expr);
+            putCached(context, tgt, MAP_EXPRESSION, expr);
           }
           List<Base> v = fpe.evaluate(vars, null, null, tgt.getParameter().size() == 2 ? getParam(vars, tgt.getParameter().get(0)) : new BooleanType(false), expr);
           if (v.size() == 0)
@@ -2046,72 +2212,7 @@ public class StructureMapUtilities {
       else
         throw new FHIRException("Error in return code");
     } else {
-      ConceptMap cmap = null;
-      if (conceptMapUrl.startsWith("#")) {
-        for (Resource r : map.getContained()) {
-          if (r instanceof ConceptMap && r.getId().equals(conceptMapUrl.substring(1))) {
-            cmap = (ConceptMap) r;
-            su = map.getUrl() + "#" + conceptMapUrl;
-          }
-        }
-        if (cmap == null)
-          throw new FHIRException("Unable to translate - cannot find map " + conceptMapUrl);
-      } else {
-        if (conceptMapUrl.contains("#")) {
-          String[] p = conceptMapUrl.split("\\#");
-          StructureMap mapU = worker.fetchResource(StructureMap.class, p[0]);
-          for (Resource r : mapU.getContained()) {
-            if (r instanceof ConceptMap && r.getId().equals(p[1])) {
-              cmap = (ConceptMap) r;
-              su = conceptMapUrl;
-            }
-          }
-        }
-        if (cmap == null)
-          cmap = worker.fetchResource(ConceptMap.class, conceptMapUrl);
-      }
-      Coding outcome = null;
-      boolean done = false;
-      String message = null;
-      if (cmap == null) {
-        if (services == null)
-          message = "No map found for " + conceptMapUrl;
-        else {
-          outcome = services.translate(context.getAppInfo(), src, conceptMapUrl);
-          done = true;
-        }
-      } else {
-        List<SourceElementComponentWrapper> list = new ArrayList<SourceElementComponentWrapper>();
-        for (ConceptMapGroupComponent g : cmap.getGroup()) {
-          for (SourceElementComponent e : g.getElement()) {
-            if (!src.hasSystem() && src.getCode().equals(e.getCode()))
-              list.add(new SourceElementComponentWrapper(g, e));
-            else if (src.hasSystem() && src.getSystem().equals(g.getSource()) && src.getCode().equals(e.getCode()))
-              list.add(new SourceElementComponentWrapper(g, e));
-          }
-        }
-        if (list.size() == 0)
-          done = true;
-        else if (list.get(0).getComp().getTarget().size() == 0)
-          message = "Concept map " + su + " found no translation for " + src.getCode();
-        else {
-          for (TargetElementComponent tgt : list.get(0).getComp().getTarget()) {
-            if (tgt.getRelationship() == null || EnumSet.of(ConceptMapRelationship.RELATEDTO, ConceptMapRelationship.EQUIVALENT, ConceptMapRelationship.SOURCEISNARROWERTHANTARGET).contains(tgt.getRelationship())) {
-              if (done) {
-                message = "Concept map " + su + " found multiple matches for " + src.getCode();
-                done = false;
-              } else {
-                done = true;
-                outcome = new Coding().setCode(tgt.getCode()).setSystem(list.get(0).getGroup().getTarget());
-              }
-            }
-          }
-          if (!done)
-            message = "Concept map " + su + " found no usable translation for " + src.getCode();
-        }
-      }
-      if (!done)
-        throw new FHIRException(message);
+      Coding outcome = translateCoding(context, map, src, conceptMapUrl, new HashSet<>());
       if (outcome == null)
         return null;
       if ("code".equals(fieldToReturn))
@@ -2121,6 +2222,140 @@ public class StructureMapUtilities {
     }
   }
 
+  private Coding translateCoding(TransformContext context, StructureMap map, Coding src, String conceptMapUrl, Set<String> visited) throws FHIRException {
+    String su = conceptMapUrl.startsWith("#") ? map.getUrl() + "#" + conceptMapUrl : conceptMapUrl;
+    ConceptMap cmap = resolveConceptMap(context, map, conceptMapUrl);
+    Coding outcome = null;
+    boolean done = false;
+    String message = null;
+    if (cmap == null) {
+      if (services == null)
+        message = "No map found for " + conceptMapUrl;
+      else {
+        outcome = services.translate(context.getAppInfo(), src, conceptMapUrl);
+        done = true;
+      }
+    } else {
+      List<ConceptMapIndex.Match> list = conceptMapIndex(context, map, conceptMapUrl, cmap).find(src.hasSystem() ? src.getSystem() : null, src.getCode());
+      if (list.size() == 0) {
+        return translateUnmapped(context, map, cmap, su, src, visited);
+      } else if (list.get(0).getElement().getTarget().size() == 0)
+        message = "Concept map " + su + " found no translation for " + src.getCode();
+      else {
+        for (TargetElementComponent tgt : list.get(0).getElement().getTarget()) {
+          if (tgt.getRelationship() == null || EnumSet.of(ConceptMapRelationship.RELATEDTO, ConceptMapRelationship.EQUIVALENT, ConceptMapRelationship.SOURCEISNARROWERTHANTARGET).contains(tgt.getRelationship())) {
+            if (done) {
+              message = "Concept map " + su + " found multiple matches for " + src.getCode();
+              done = false;
+            } else {
+              done = true;
+              outcome = new Coding().setCode(tgt.getCode()).setSystem(list.get(0).getGroup().getTarget());
+            }
+          }
+        }
+        if (!done)
+          message = "Concept map " + su + " found no usable translation for " + src.getCode();
+      }
+    }
+    if (!done)
+      throw new FHIRException(message);
+    return outcome;
+  }
+
+  /**
+   * No group has the code: use the unmapped instructions of the first group for the source system (if there is one)
+   */
+  private Coding translateUnmapped(TransformContext context, StructureMap map, ConceptMap cmap, String su, Coding src, Set<String> visited) throws FHIRException {
+    for (ConceptMapGroupComponent g : ConceptMapIndex.groups(cmap, src.hasSystem() ? src.getSystem() : null)) {
+      if (g.hasUnmapped()) {
+        ConceptMapGroupUnmappedComponent um = g.getUnmapped();
+        if (um.getRelationship() == ConceptMapRelationship.NOTRELATEDTO)
+          return null;
+        switch (um.getMode()) {
+        case USESOURCECODE:
+          return new Coding().setCode(src.getCode()).setSystem(g.getTarget());
+        case FIXED:
+          if (!um.hasCode())
+            throw new FHIRException("Concept map " + su + " has no fixed code for unmapped " + src.getCode());
+          return new Coding().setCode(um.getCode()).setSystem(g.getTarget());
+        case OTHERMAP:
+          if (!visited.add(su))
+            throw new FHIRException("Concept map " + su + " is in a loop of unmapped other maps");
+          return translateCoding(context, map, src, um.getOtherMap(), visited);
+        default:
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Contained maps ("#id" or "url#id") are looked up once for each structure map (and when there's a plan,
+   * all maps are looked up once for each plan)
+   */
+  private ConceptMap resolveConceptMap(TransformContext context, StructureMap map, String conceptMapUrl) throws FHIRException {
+    StructureMapPlan plan = context.getPlan();
+    ConceptMap cmap = plan == null ? null : (ConceptMap) plan.get(map, "conceptmap-url^" + conceptMapUrl);
+    if (cmap == null) {
+      cmap = fetchConceptMap(context, map, conceptMapUrl);
+      if (plan != null && cmap != null)
+        plan.put(map, "conceptmap-url^" + conceptMapUrl, cmap);
+    }
+    return cmap;
+  }
+
+  /**
+   * The worker keeps the indexes of its own concept maps; the indexes of the others (e.g. contained maps) are
+   * kept in the plan, if there is one
+   */
+  private ConceptMapIndex conceptMapIndex(TransformContext context, StructureMap map, String conceptMapUrl, ConceptMap cmap) {
+    ConceptMapIndex index = worker.getConceptMapIndex(cmap);
+    if (index != null)
+      return index;
+    StructureMapPlan plan = context.getPlan();
+    index = plan == null ? null : (ConceptMapIndex) plan.get(map, "conceptmap-index^" + conceptMapUrl);
+    if (index == null || !index.isCurrent(cmap)) {
+      index = ConceptMapIndex.forMap(null, cmap);
+      if (plan != null)
+        plan.replace(map, "conceptmap-index^" + conceptMapUrl, index);
+    }
+    return index;
+  }
+
+  private ConceptMap fetchConceptMap(TransformContext context, StructureMap map, String conceptMapUrl) throws FHIRException {
+    if (conceptMapUrl.startsWith("#")) {
+      ConceptMap cmap = findContainedConceptMap(context, map, conceptMapUrl.substring(1));
+      if (cmap == null)
+        throw new FHIRException("Unable to translate - cannot find map " + conceptMapUrl);
+      return cmap;
+    }
+    if (conceptMapUrl.contains("#")) {
+      String[] p = conceptMapUrl.split("\\#");
+      StructureMap mapU = worker.fetchResource(StructureMap.class, p[0]);
+      ConceptMap cmap = mapU == null ? null : findContainedConceptMap(context, mapU, p[1]);
+      if (cmap != null)
+        return cmap;
+    }
+    return worker.fetchResource(ConceptMap.class, conceptMapUrl);
+  }
+
+  private ConceptMap findContainedConceptMap(TransformContext context, StructureMap map, String id) {
+    String kn = "conceptmap^" + id;
+    ConceptMap cached = (ConceptMap) getCached(context, map, kn);
+    if (cached != null)
+      return cached;
+    ConceptMap res = null;
+    for (Resource r : map.getContained()) {
+      if (r instanceof ConceptMap && r.getId().equals(id)) {
+        res = (ConceptMap) r;
+      }
+    }
+    if (res != null)
+      putCached(context, map, kn, res);
+    return res;
+  }
+
 
   /**
    * Given a structure map, return a set of analyses on it.
@@ -2,14 +2,25 @@ package org.hl7.fhir.r5.utils.structuremap;
 
 public class TransformContext {
   private Object appInfo;
+  private StructureMapPlan plan;
 
   public TransformContext(Object appInfo) {
     super();
     this.appInfo = appInfo;
   }
 
+  public TransformContext(Object appInfo, StructureMapPlan plan) {
+    super();
+    this.appInfo = appInfo;
+    this.plan = plan;
+  }
+
   public Object getAppInfo() {
     return appInfo;
   }
 
+  public StructureMapPlan getPlan() {
+    return plan;
+  }
+
 }
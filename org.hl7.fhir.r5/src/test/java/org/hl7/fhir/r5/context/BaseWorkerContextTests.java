@@ -6,8 +6,12 @@ import org.hl7.fhir.r5.terminologies.client.ITerminologyClient;
 import org.hl7.fhir.r5.terminologies.client.TerminologyClientContext;
 import org.hl7.fhir.r5.terminologies.expansion.ValueSetExpander;
 import org.hl7.fhir.r5.terminologies.expansion.ValueSetExpansionOutcome;
+import org.hl7.fhir.r5.terminologies.utilities.CodingValidationRequest;
 import org.hl7.fhir.r5.terminologies.utilities.TerminologyCache;
+import org.hl7.fhir.r5.terminologies.utilities.TerminologyOperationContext.TerminologyServiceProtectionException;
+import org.hl7.fhir.r5.terminologies.utilities.TerminologyServiceErrorClass;
 import org.hl7.fhir.r5.terminologies.utilities.ValidationResult;
+import org.hl7.fhir.r5.terminologies.validation.VSCheckerException;
 import org.hl7.fhir.r5.terminologies.validation.ValueSetValidator;
 import org.hl7.fhir.r5.utils.validation.IResourceValidator;
 import org.hl7.fhir.r5.utils.validation.ValidationContextCarrier;
@@ -585,4 +589,90 @@ public class BaseWorkerContextTests {
     Mockito.verify(terminologyCache).getExpansion(cacheToken);
     Mockito.verify(terminologyCache).cacheExpansion(cacheToken, actualExpansionResult, true);
   }
+
+  private void answerFromServer() {
+    Mockito.doReturn(new Parameters()).when(terminologyClient).validateVS(any());
+    Mockito.doAnswer(inv -> {
+      Bundle resp = new Bundle();
+      for (int i = 0; i < ((Bundle) inv.getArgument(0)).getEntry().size(); i++) {
+        resp.addEntry().setResource(new Parameters());
+      }
+      return resp;
+    }).when(terminologyClient).validateBatch(any());
+    Mockito.doAnswer(inv -> new ValidationResult(ValidationMessage.IssueSeverity.ERROR, "dummyServerMessage", TerminologyServiceErrorClass.CODESYSTEM_UNSUPPORTED, new ArrayList<>()))
+      .when(context).processValidationResult(any(), any(), any());
+  }
+
+  /**
+   * prefetchValidateCode and validateCode share cache entries, so they have to come up with the same result
+   */
+  private ValidationResult checkBatchMatchesSingle(ValidationOptions validationOptions, Coding coding, ValueSet valueSet) {
+    ValidationResult single = context.validateCode(validationOptions, coding, valueSet, new ValidationContextCarrier());
+    CodingValidationRequest request = new CodingValidationRequest(coding);
+    context.prefetchValidateCode(validationOptions, List.of(request), valueSet);
+    ValidationResult batched = request.getResult();
+
+    assertEquals(single.getSeverity(), batched.getSeverity());
+    assertEquals(single.getMessage(), batched.getMessage());
+    assertEquals(single.getErrorClass(), batched.getErrorClass());
+    assertEquals(single.getDiagnostics(), batched.getDiagnostics());
+    assertEquals(single.getIssues().size(), batched.getIssues().size());
+    return batched;
+  }
+
+  @Test
+  public void testPrefetchValidateCodeMergesLocalError() throws IOException {
+    ValidationOptions validationOptions = new ValidationOptions(FhirPublication.R5).withVersionFlexible(false);
+    ValueSet valueSet = new ValueSet();
+    Coding coding = new Coding("http://dummy.org/cs", "dummyCode", null).setVersion("1.0");
+
+    Mockito.doReturn(valueSetCheckerSimple).when(context).constructValueSetCheckerSimple(any(), any(), any());
+    Mockito.doThrow(new VSCheckerException("dummyLocalError", new ArrayList<>(), TerminologyServiceErrorClass.UNKNOWN)).when(valueSetCheckerSimple).validateCode(eq("Coding"), any(Coding.class));
+    answerFromServer();
+
+    ValidationResult res = checkBatchMatchesSingle(validationOptions, coding, valueSet);
+    assertEquals("dummyLocalError", res.getMessage());
+    assertEquals("Local Error: dummyLocalError. Server Error: dummyLocalError", res.getDiagnostics());
+    Mockito.verify(terminologyClient).validateVS(any());
+    Mockito.verify(terminologyClient).validateBatch(any());
+    Mockito.verify(terminologyCache, times(2)).cacheValidation(any(), any(), eq(true));
+  }
+
+  @Test
+  public void testPrefetchValidateCodeProtectionException() throws IOException {
+    ValidationOptions validationOptions = new ValidationOptions(FhirPublication.R5).withVersionFlexible(false);
+    ValueSet valueSet = new ValueSet();
+    Coding coding = new Coding("http://dummy.org/cs", "dummyCode", null);
+
+    Mockito.doReturn(valueSetCheckerSimple).when(context).constructValueSetCheckerSimple(any(), any(), any());
+    Mockito.doThrow(new TerminologyServiceProtectionException("dummyProtection", TerminologyServiceErrorClass.TOO_COSTLY, OperationOutcome.IssueType.TOOCOSTLY)).when(valueSetCheckerSimple).validateCode(eq("Coding"), any(Coding.class));
+
+    ValidationResult res = checkBatchMatchesSingle(validationOptions, coding, valueSet);
+    assertEquals(ValidationMessage.IssueSeverity.FATAL, res.getSeverity());
+    Mockito.verify(terminologyClient, times(0)).validateBatch(any());
+    Mockito.verify(terminologyCache, times(0)).cacheValidation(any(), any(), anyBoolean());
+  }
+
+  @Test
+  public void testPrefetchValidateCodeServerSideSystem() throws IOException {
+    ValidationOptions validationOptions = new ValidationOptions(FhirPublication.R5).withVersionFlexible(false);
+    ValueSet valueSet = new ValueSet();
+    Coding coding = new Coding("http://hl7.org/fhir/sid/cvx", "08", null).setVersion("1.0");
+
+    Mockito.doReturn(valueSetCheckerSimple).when(context).constructValueSetCheckerSimple(any(), any(), any());
+    answerFromServer();
+
+    ValidationResult res = checkBatchMatchesSingle(validationOptions, coding, valueSet);
+    assertEquals("dummyServerMessage", res.getMessage());
+    Mockito.verify(valueSetCheckerSimple, times(0)).validateCode(any(), any(Coding.class));
+    Mockito.verify(terminologyCache, times(2)).cacheValidation(any(), any(), eq(true));
+  }
+
+  @Test
+  public void testValidateCodeBatchNeedsExpansionParameters() {
+    context.expParameters = null;
+    ValidationOptions validationOptions = new ValidationOptions(FhirPublication.R5).withNoClient();
+    CodingValidationRequest request = new CodingValidationRequest(new Coding("http://dummy.org/cs", "dummyCode", null));
+    assertThrows(Error.class, () -> context.validateCodeBatch(validationOptions, List.of(request), new ValueSet()));
+  }
 }
@@ -0,0 +1,116 @@
+package org.hl7.fhir.r5.context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class LayeredMapTests {
+
+  @Test
+  public void testCopy() {
+    LayeredMap<String, String> source = new LayeredMap<>();
+    source.put("a", "1");
+    source.put("b", "2");
+
+    LayeredMap<String, String> copy = new LayeredMap<>();
+    copy.copy(source);
+    assertEquals(0, copy.localSize());
+    assertEquals(0, source.localSize());
+    assertEquals(2, copy.size());
+    assertEquals("1", copy.get("a"));
+    assertFalse(copy.isLocal("a"));
+
+    // changes to either don't show in the other
+    copy.put("a", "3");
+    copy.put("c", "4");
+    assertEquals("2", copy.remove("b"));
+    source.put("d", "5");
+    assertEquals(map("a", "3", "c", "4"), new HashMap<>(copy));
+    assertEquals(map("a", "1", "b", "2", "d", "5"), new HashMap<>(source));
+    assertTrue(copy.isLocal("a"));
+    assertFalse(copy.containsKey("b"));
+    assertNull(copy.get("b"));
+    assertEquals(2, copy.size());
+
+    // something removed can be put back
+    copy.put("b", "6");
+    assertEquals("6", copy.get("b"));
+
+    // a copy of a copy
+    LayeredMap<String, String> copy2 = new LayeredMap<>();
+    copy2.copy(copy);
+    copy2.keySet().remove("c");
+    assertEquals(map("a", "3", "b", "6"), new HashMap<>(copy2));
+    assertEquals(map("a", "3", "b", "6", "c", "4"), new HashMap<>(copy));
+
+    copy2.clear();
+    assertTrue(copy2.isEmpty());
+    assertEquals(3, copy.size());
+  }
+
+  @Test
+  public void testEntriesCanBeChanged() {
+    LayeredMap<String, String> source = new LayeredMap<>();
+    source.put("a", "1");
+    LayeredMap<String, String> copy = new LayeredMap<>();
+    copy.copy(source);
+    for (Map.Entry<String, String> e : copy.entrySet()) {
+      e.setValue("2");
+    }
+    assertEquals("2", copy.get("a"));
+    assertEquals("1", source.get("a"));
+  }
+
+  @Test
+  public void testSizeAndIterationAcrossLayers() {
+    LayeredMap<String, String> source = new LayeredMap<>();
+    source.put("a", "1");
+    source.put("b", "2");
+    LayeredMap<String, String> copy = new LayeredMap<>();
+    copy.copy(source);
+    copy.put("c", "3");
+    LayeredMap<String, String> copy2 = new LayeredMap<>();
+    copy2.copy(copy);
+    assertEquals(3, copy2.size());
+
+    copy2.put("a", "4"); // replaced, so still 3
+    copy2.put("d", "5");
+    assertNull(copy2.remove("x"));
+    assertEquals("2", copy2.remove("b"));
+    assertNull(copy2.remove("b"));
+    assertEquals(3, copy2.size());
+    assertEquals(map("a", "4", "c", "3", "d", "5"), new HashMap<>(copy2));
+
+    // removing while iterating, from this layer and from the frozen ones
+    Iterator<Map.Entry<String, String>> it = copy2.entrySet().iterator();
+    int count = 0;
+    while (it.hasNext()) {
+      Map.Entry<String, String> e = it.next();
+      count++;
+      if (!e.getKey().equals("c")) {
+        it.remove();
+      }
+    }
+    assertEquals(3, count);
+    assertEquals(map("c", "3"), new HashMap<>(copy2));
+    assertEquals(1, copy2.size());
+    assertEquals(map("a", "1", "b", "2", "c", "3"), new HashMap<>(copy));
+    assertEquals(3, copy.size());
+    assertEquals(2, source.size());
+  }
+
+  private Map<String, String> map(String... kv) {
+    Map<String, String> res = new HashMap<>();
+    for (int i = 0; i < kv.length; i += 2) {
+      res.put(kv[i], kv[i+1]);
+    }
+    return res;
+  }
+}
@@ -0,0 +1,91 @@
+package org.hl7.fhir.r5.context;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.hl7.fhir.r5.formats.JsonParser;
+import org.hl7.fhir.r5.model.StructureDefinition;
+import org.hl7.fhir.r5.test.utils.TestingUtilities;
+import org.hl7.fhir.utilities.filesystem.ManagedFileAccess;
+import org.junit.jupiter.api.Test;
+
+public class SnapshotStoreTests {
+
+  private StructureDefinition makeProfile() {
+    StructureDefinition sd = TestingUtilities.getSharedWorkerContext().fetchResource(StructureDefinition.class, "http://hl7.org/fhir/StructureDefinition/bp").copy();
+    sd.setUrl("http://example.org/fhir/StructureDefinition/bp-test");
+    sd.setSnapshot(null);
+    return sd;
+  }
+
+  @Test
+  public void testStoredSnapshotIsReused() throws Exception {
+    Path tmp = Files.createTempDirectory("snapshotStore");
+    ManagedFileAccess.fromPath(tmp).deleteOnExit();
+    SimpleWorkerContext context = new SimpleWorkerContext((SimpleWorkerContext) TestingUtilities.getSharedWorkerContext());
+    SnapshotStore store = new SnapshotStore(tmp.toString());
+    context.setSnapshotStore(store);
+
+    StructureDefinition generated = makeProfile();
+    new ContextUtilities(context).generateSnapshot(generated);
+    assertTrue(generated.hasSnapshot());
+    assertEquals(0, store.getHits());
+    assertEquals(1, store.getMisses());
+
+    // a new store on the same folder is what the next process sees
+    store = new SnapshotStore(tmp.toString());
+    context.setSnapshotStore(store);
+    StructureDefinition loaded = makeProfile();
+    new ContextUtilities(context).generateSnapshot(loaded);
+    assertEquals(1, store.getHits());
+    assertTrue(loaded.isGeneratedSnapshot());
+    assertEquals(new JsonParser().composeString(generated), new JsonParser().composeString(loaded));
+
+    // any change to the profile means the snapshot is generated again
+    StructureDefinition changed = makeProfile();
+    changed.getDifferential().getElementFirstRep().setShort("Changed");
+    new ContextUtilities(context).generateSnapshot(changed);
+    assertEquals(1, store.getHits());
+    assertEquals(1, store.getMisses());
+    assertEquals("Changed", changed.getSnapshot().getElementFirstRep().getShort());
+  }
+
+  @Test
+  public void testDamagedEntryIsReplaced() throws Exception {
+    Path tmp = Files.createTempDirectory("snapshotStore");
+    ManagedFileAccess.fromPath(tmp).deleteOnExit();
+    SimpleWorkerContext context = new SimpleWorkerContext((SimpleWorkerContext) TestingUtilities.getSharedWorkerContext());
+    SnapshotStore store = new SnapshotStore(tmp.toString());
+    context.setSnapshotStore(store);
+
+    StructureDefinition sd = makeProfile();
+    String key = store.key(context, sd, context.fetchResource(StructureDefinition.class, sd.getBaseDefinition()));
+    Files.write(tmp.resolve(key+".json"), "{ not json".getBytes());
+    new ContextUtilities(context).generateSnapshot(sd);
+    assertTrue(sd.hasSnapshot());
+    assertEquals(0, store.getHits());
+
+    assertTrue(store.load(key, makeProfile()));
+  }
+
+  @Test
+  public void testNotUsedForPublication() throws Exception {
+    Path tmp = Files.createTempDirectory("snapshotStore");
+    ManagedFileAccess.fromPath(tmp).deleteOnExit();
+    SimpleWorkerContext context = new SimpleWorkerContext((SimpleWorkerContext) TestingUtilities.getSharedWorkerContext());
+    SnapshotStore store = new SnapshotStore(tmp.toString());
+    context.setSnapshotStore(store);
+    context.setForPublication(true);
+
+    // the renderers need the user data that generating the snapshot leaves behind
+    StructureDefinition sd = makeProfile();
+    new ContextUtilities(context).generateSnapshot(sd);
+    assertTrue(sd.hasSnapshot());
+    assertFalse(sd.hasUserData(SnapshotStore.USER_DATA_KEY));
+    assertEquals(0, store.getHits());
+    assertEquals(0, store.getMisses());
+    assertEquals(0, tmp.toFile().list().length);
+  }
+}
@@ -22,10 +22,13 @@ import org.hl7.fhir.r5.model.CodeableConcept;
 import org.hl7.fhir.r5.model.Coding;
 import org.hl7.fhir.r5.model.Parameters;
 import org.hl7.fhir.r5.model.TerminologyCapabilities;
+import org.hl7.fhir.r5.model.StringType;
 import org.hl7.fhir.r5.model.ValueSet;
 import org.hl7.fhir.r5.terminologies.expansion.ValueSetExpansionOutcome;
+import org.hl7.fhir.r5.terminologies.utilities.SharedTerminologyCache;
 import org.hl7.fhir.r5.terminologies.utilities.TerminologyCache;
 import org.hl7.fhir.r5.terminologies.utilities.ValidationResult;
+import org.hl7.fhir.utilities.TextFile;
 import org.hl7.fhir.utilities.Utilities;
 import org.hl7.fhir.utilities.filesystem.ManagedFileAccess;
 import org.hl7.fhir.utilities.tests.ResourceLoaderTests;
@@ -213,6 +216,201 @@ public class TerminologyCacheTests implements ResourceLoaderTests {
     assertEquals("dummyInfo", retrievedCodeableConceptResult.getMessage());
   }
 
+  @Test
+  public void testCompactKeyPersistence() throws IOException {
+    Object lock = new Object();
+    Path tempCacheDirectory = createTempCacheDirectory();
+    TerminologyCache.setCompactKeys(true);
+    try {
+      ValueSet valueSet = new ValueSet();
+      valueSet.setUrl("dummyValueSetURL");
+      valueSet.setVersion("1.0.0");
+      Coding coding = new Coding().setSystem("http://loinc.org").setCode("1234-5");
+      Coding other = new Coding().setSystem("http://loinc.org").setCode("1234-6");
+
+      TerminologyCache terminologyCacheA = new TerminologyCache(lock, tempCacheDirectory.toString());
+      TerminologyCache.CacheToken tokenA = terminologyCacheA.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters());
+      TerminologyCache.CacheToken tokenB = terminologyCacheA.generateValidationToken(CacheTestUtils.validationOptions, other, valueSet, new Parameters());
+      assertNotEquals(tokenA.getRequest(), tokenB.getRequest());
+
+      ValidationResult resultA = new ValidationResult(ValidationMessage.IssueSeverity.INFORMATION, "first", null);
+      ValidationResult resultB = new ValidationResult(ValidationMessage.IssueSeverity.ERROR, "second", null);
+      terminologyCacheA.cacheValidation(tokenA, resultA, true);
+      terminologyCacheA.cacheValidation(tokenB, resultB, true);
+      terminologyCacheA.cacheValidation(tokenB, new ValidationResult(ValidationMessage.IssueSeverity.WARNING, "replaced", null), true);
+
+      assertTrue(ManagedFileAccess.file(Utilities.path(tempCacheDirectory.toString(), "loinc.index")).exists());
+      assertFalse(ManagedFileAccess.file(Utilities.path(tempCacheDirectory.toString(), "loinc.cache")).exists());
+
+      TerminologyCache terminologyCacheB = new TerminologyCache(lock, tempCacheDirectory.toString());
+      assertValidationResultEquals(resultA, terminologyCacheB.getValidation(terminologyCacheB.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters())));
+      ValidationResult retrievedB = terminologyCacheB.getValidation(terminologyCacheB.generateValidationToken(CacheTestUtils.validationOptions, other, valueSet, new Parameters()));
+      assertEquals("replaced", retrievedB.getMessage());
+
+      // the value set has changed since its content was hashed
+      valueSet.getCompose().addInclude().setSystem("http://loinc.org");
+      assertNull(terminologyCacheB.getValidation(terminologyCacheB.generateValidationToken(CacheTestUtils.validationOptions, new Coding().setSystem("http://loinc.org").setCode("1234-5"), valueSet, new Parameters())));
+    } finally {
+      TerminologyCache.setCompactKeys(false);
+      deleteTempCacheDirectory(tempCacheDirectory);
+    }
+  }
+
+  @Test
+  public void testCompactKeyContentChanges() throws IOException {
+    TerminologyCache.setCompactKeys(true);
+    try {
+      TerminologyCache terminologyCache = createTerminologyCache();
+      ValueSet valueSet = new ValueSet();
+      valueSet.setUrl("dummyValueSetURL");
+      valueSet.getCompose().addInclude().setSystem("http://loinc.org").addConcept().setCode("1234-5");
+      Coding coding = new Coding().setSystem("http://loinc.org").setCode("1234-5");
+      String key = terminologyCache.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters()).getKey();
+      assertEquals(key, terminologyCache.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters()).getKey());
+
+      valueSet.getCompose().getIncludeFirstRep().getConceptFirstRep().setCode("1234-6");
+      String changed = terminologyCache.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters()).getKey();
+      assertNotEquals(key, changed);
+
+      valueSet.getExpansion().addContains().setSystem("http://loinc.org").setCode("1234-6");
+      String expanded = terminologyCache.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters()).getKey();
+      assertNotEquals(changed, expanded);
+
+      // values that are deeper in the content count too: designations, extensions, and expansion properties
+      valueSet.getCompose().getIncludeFirstRep().getConceptFirstRep().addDesignation().setValue("one");
+      String designated = terminologyCache.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters()).getKey();
+      assertNotEquals(expanded, designated);
+      valueSet.getCompose().getIncludeFirstRep().getConceptFirstRep().getDesignationFirstRep().setValue("two");
+      String redesignated = terminologyCache.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters()).getKey();
+      assertNotEquals(designated, redesignated);
+      valueSet.getCompose().getIncludeFirstRep().addExtension("http://example.org/ext", new StringType("a"));
+      String extended = terminologyCache.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters()).getKey();
+      assertNotEquals(redesignated, extended);
+      valueSet.getCompose().getIncludeFirstRep().getExtensionFirstRep().setValue(new StringType("b"));
+      String reextended = terminologyCache.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters()).getKey();
+      assertNotEquals(extended, reextended);
+      valueSet.getExpansion().getContainsFirstRep().addProperty().setCode("prop").setValue(new StringType("x"));
+      assertNotEquals(reextended, terminologyCache.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters()).getKey());
+    } finally {
+      TerminologyCache.setCompactKeys(false);
+    }
+  }
+
+  @Test
+  public void testCompactKeyIndexIsCompacted() throws IOException {
+    Path tempCacheDirectory = createTempCacheDirectory();
+    TerminologyCache.setCompactKeys(true);
+    try {
+      ValueSet valueSet = new ValueSet();
+      valueSet.setUrl("dummyValueSetURL");
+      Coding coding = new Coding().setSystem("http://loinc.org").setCode("1234-5");
+      Coding other = new Coding().setSystem("http://loinc.org").setCode("1234-6");
+
+      TerminologyCache terminologyCacheA = new TerminologyCache(new Object(), tempCacheDirectory.toString());
+      TerminologyCache.CacheToken tokenA = terminologyCacheA.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters());
+      TerminologyCache.CacheToken tokenB = terminologyCacheA.generateValidationToken(CacheTestUtils.validationOptions, other, valueSet, new Parameters());
+      terminologyCacheA.cacheValidation(tokenB, new ValidationResult(ValidationMessage.IssueSeverity.ERROR, "other", null), true);
+      for (int i = 0; i < 5; i++) {
+        terminologyCacheA.cacheValidation(tokenA, new ValidationResult(ValidationMessage.IssueSeverity.INFORMATION, "version "+i, null), true);
+      }
+      String index = Utilities.path(tempCacheDirectory.toString(), "loinc.index");
+      String entries = Utilities.path(tempCacheDirectory.toString(), "loinc.entries");
+      assertEquals(6, TextFile.fileToLines(index).length);
+      long size = ManagedFileAccess.file(entries).length();
+
+      // loading doesn't compact, since other caches might be using the files
+      TerminologyCache terminologyCacheB = new TerminologyCache(new Object(), tempCacheDirectory.toString());
+      assertEquals(6, TextFile.fileToLines(index).length);
+      assertEquals(size, ManagedFileAccess.file(entries).length());
+
+      terminologyCacheB.compact();
+      assertEquals(2, TextFile.fileToLines(index).length);
+      assertTrue(ManagedFileAccess.file(entries).length() < size);
+      assertEquals("version 4", terminologyCacheB.getValidation(terminologyCacheB.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters())).getMessage());
+      assertEquals("other", terminologyCacheB.getValidation(terminologyCacheB.generateValidationToken(CacheTestUtils.validationOptions, other, valueSet, new Parameters())).getMessage());
+
+      // and entries are appended after the compacted ones
+      terminologyCacheB.cacheValidation(tokenB, new ValidationResult(ValidationMessage.IssueSeverity.ERROR, "other again", null), true);
+      assertEquals(3, TextFile.fileToLines(index).length);
+
+      // and the compacted files load again
+      TerminologyCache terminologyCacheC = new TerminologyCache(new Object(), tempCacheDirectory.toString());
+      assertEquals("version 4", terminologyCacheC.getValidation(terminologyCacheC.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters())).getMessage());
+      assertEquals("other again", terminologyCacheC.getValidation(terminologyCacheC.generateValidationToken(CacheTestUtils.validationOptions, other, valueSet, new Parameters())).getMessage());
+    } finally {
+      TerminologyCache.setCompactKeys(false);
+      deleteTempCacheDirectory(tempCacheDirectory);
+    }
+  }
+
+  @Test
+  public void testSharedCache() throws IOException {
+    Path tempCacheDirectory = createTempCacheDirectory();
+    Path otherCacheDirectory = createTempCacheDirectory();
+    SharedTerminologyCache sharedCache = new SharedTerminologyCache(100);
+    try {
+      ValueSet valueSet = new ValueSet();
+      valueSet.setUrl("dummyValueSetURL");
+      Coding coding = new Coding().setSystem("http://loinc.org").setCode("1234-5");
+      Coding other = new Coding().setSystem("http://loinc.org").setCode("1234-6");
+
+      // sessions with their own lock, loaded before anything was cached
+      TerminologyCache terminologyCacheA = new TerminologyCache(new Object(), tempCacheDirectory.toString());
+      TerminologyCache terminologyCacheB = new TerminologyCache(new Object(), tempCacheDirectory.toString());
+      TerminologyCache terminologyCacheC = new TerminologyCache(new Object(), otherCacheDirectory.toString());
+      // and one that isn't given the shared cache
+      TerminologyCache terminologyCacheD = new TerminologyCache(new Object(), tempCacheDirectory.toString());
+      terminologyCacheA.setSharedCache(sharedCache);
+      terminologyCacheB.setSharedCache(sharedCache);
+      terminologyCacheC.setSharedCache(sharedCache);
+
+      ValidationResult result = new ValidationResult(ValidationMessage.IssueSeverity.INFORMATION, "shared", null);
+      terminologyCacheA.cacheValidation(terminologyCacheA.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters()), result, true);
+      terminologyCacheA.cacheValidation(terminologyCacheA.generateValidationToken(CacheTestUtils.validationOptions, other, valueSet, new Parameters()), result, false);
+
+      TerminologyCache.CacheToken token = terminologyCacheB.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters());
+      ValidationResult retrieved = terminologyCacheB.getValidation(token);
+      assertValidationResultEquals(result, retrieved);
+      assertNotSame(retrieved, terminologyCacheB.getValidation(token));
+      assertEquals(2, terminologyCacheB.getHitCount());
+      // only results from the server are shared
+      assertNull(terminologyCacheB.getValidation(terminologyCacheB.generateValidationToken(CacheTestUtils.validationOptions, other, valueSet, new Parameters())));
+      // and only with caches that use the same folder
+      assertNull(terminologyCacheC.getValidation(terminologyCacheC.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters())));
+      assertNull(terminologyCacheD.getValidation(terminologyCacheD.generateValidationToken(CacheTestUtils.validationOptions, coding, valueSet, new Parameters())));
+
+      // expansions are shared too, and each cache gets its own copy
+      ValueSet expanded = new ValueSet();
+      expanded.setUrl("http://example.org/ValueSet/expanded");
+      expanded.getCompose().addInclude().setSystem("http://snomed.info/sct");
+      expanded.getExpansion().addContains().setSystem("http://snomed.info/sct").setCode("123");
+      ValueSetExpansionOutcome expansion = new ValueSetExpansionOutcome(expanded);
+      terminologyCacheA.cacheExpansion(terminologyCacheA.generateExpandToken(expanded, true), expansion, true);
+      TerminologyCache.CacheToken expansionToken = terminologyCacheB.generateExpandToken(expanded, true);
+      ValueSetExpansionOutcome sharedExpansion = terminologyCacheB.getExpansion(expansionToken);
+      assertExpansionOutcomeEquals(expansion, sharedExpansion);
+      assertNotSame(expansion.getValueset(), sharedExpansion.getValueset());
+      assertNotSame(sharedExpansion.getValueset(), terminologyCacheB.getExpansion(expansionToken).getValueset());
+      assertNull(terminologyCacheC.getExpansion(terminologyCacheC.generateExpandToken(expanded, true)));
+      ValueSet transientVs = expanded.copy();
+      transientVs.setUrl("http://example.org/ValueSet/transient");
+      terminologyCacheA.cacheExpansion(terminologyCacheA.generateExpandToken(transientVs, true), new ValueSetExpansionOutcome(transientVs), false);
+      assertNull(terminologyCacheB.getExpansion(terminologyCacheB.generateExpandToken(transientVs, true)));
+
+      terminologyCacheB.removeCS("http://loinc.org");
+      assertNull(terminologyCacheB.getValidation(token));
+      assertNotNull(terminologyCacheA.getValidation(token));
+      terminologyCacheB.removeCS("http://snomed.info/sct");
+      assertNull(terminologyCacheB.getExpansion(expansionToken));
+
+      terminologyCacheA.clear();
+      assertEquals(0, sharedCache.size());
+    } finally {
+      deleteTempCacheDirectory(tempCacheDirectory);
+      deleteTempCacheDirectory(otherCacheDirectory);
+    }
+  }
+
   private void assertCanonicalResourceEquals(CanonicalResource a, CanonicalResource b) {
     assertTrue(a.equalsDeep(b));
   }
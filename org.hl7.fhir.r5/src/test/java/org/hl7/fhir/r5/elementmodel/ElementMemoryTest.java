@@ -0,0 +1,53 @@
+package org.hl7.fhir.r5.elementmodel;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.hl7.fhir.r5.context.IWorkerContext;
+import org.hl7.fhir.r5.test.utils.TestingUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The rarely used state of {@link Element} is kept in a side structure that is only created when it's
+ * set. The heap retained per element is measured by HeapFootprint in org.hl7.fhir.benchmarks
+ */
+class ElementMemoryTest {
+
+  @Test
+  void testRareValuesSurviveCopy() throws Exception {
+    IWorkerContext context = TestingUtilities.getSharedWorkerContext();
+    Element bundle = new JsonParser(context).parseSingle(new ByteArrayInputStream(makeBundle(1).getBytes(StandardCharsets.UTF_8)), null);
+    Element obs = bundle.getNamedChild("entry").getNamedChild("resource");
+    Assertions.assertEquals(SpecialElement.BUNDLE_ENTRY, obs.getSpecial());
+    Assertions.assertFalse(obs.isNull());
+    Assertions.assertNull(obs.getExplicitType());
+
+    obs.setExplicitType("Observation");
+    obs.setRequired(true);
+    obs.getComments().add("a comment");
+    Element copy = (Element) obs.copy();
+    Assertions.assertEquals(SpecialElement.BUNDLE_ENTRY, copy.getSpecial());
+    Assertions.assertEquals("Observation", copy.getExplicitType());
+    Assertions.assertTrue(copy.isRequired());
+    Assertions.assertFalse(copy.isProhibited());
+    Assertions.assertEquals(1, copy.getComments().size());
+    copy.getComments().add("another comment");
+    Assertions.assertEquals(1, obs.getComments().size());
+  }
+
+  private String makeBundle(int count) {
+    StringBuilder b = new StringBuilder();
+    b.append("{\"resourceType\":\"Bundle\",\"type\":\"collection\",\"entry\":[");
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        b.append(",");
+      }
+      b.append("{\"fullUrl\":\"http://example.org/fhir/Observation/o"+i+"\",\"resource\":{\"resourceType\":\"Observation\",\"id\":\"o"+i+"\",\"status\":\"final\","
+          + "\"code\":{\"coding\":[{\"system\":\"http://loinc.org\",\"code\":\"8867-4\"}]},\"subject\":{\"reference\":\"Patient/p"+(i % 50)+"\"},"
+          + "\"valueQuantity\":{\"value\":"+(60 + i % 40)+",\"unit\":\"/min\"}}}");
+    }
+    b.append("]}");
+    return b.toString();
+  }
+}
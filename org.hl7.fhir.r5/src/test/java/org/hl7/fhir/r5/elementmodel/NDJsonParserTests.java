@@ -0,0 +1,116 @@
+package org.hl7.fhir.r5.elementmodel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hl7.fhir.r5.elementmodel.ParserBase.ValidationPolicy;
+import org.hl7.fhir.r5.test.utils.TestingUtilities;
+import org.hl7.fhir.utilities.Utilities;
+import org.hl7.fhir.utilities.i18n.I18nConstants;
+import org.hl7.fhir.utilities.validation.ValidationMessage;
+import org.hl7.fhir.utilities.validation.ValidationMessage.IssueSeverity;
+import org.junit.jupiter.api.Test;
+
+public class NDJsonParserTests {
+
+  private static final String PATIENT = "{\"resourceType\" : \"Patient\", \"id\" : \"p1\"}";
+  private static final String OBSERVATION = "{\"resourceType\" : \"Observation\", \"id\" : \"o1\", \"status\" : \"final\"}";
+
+  private List<Integer> lines = new ArrayList<>();
+  private List<ValidatedFragment> fragments = new ArrayList<>();
+
+  private NDJsonParser parser() {
+    NDJsonParser parser = new NDJsonParser(TestingUtilities.getSharedWorkerContext());
+    parser.setupValidation(ValidationPolicy.EVERYTHING);
+    return parser;
+  }
+
+  private void parse(String source) throws Exception {
+    lines.clear();
+    fragments.clear();
+    parser().parse(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), (line, fragment) -> {
+      lines.add(line);
+      fragments.add(fragment);
+    });
+  }
+
+  private boolean hasMessage(ValidatedFragment fragment, IssueSeverity level, String message) {
+    for (ValidationMessage msg : fragment.getErrors()) {
+      if (msg.getLevel() == level && (message == null || message.equals(msg.getMessage()))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Test
+  public void testLines() throws Exception {
+    // CRLF and LF line ends, blank lines, a line that isn't JSON, and no line end at the end
+    parse(PATIENT+"\r\n\r\n"+OBSERVATION+"\n{\"resourceType\" : \n  \n"+PATIENT);
+    assertEquals(List.of(0, 1, 2, 3, 4, 5), lines);
+
+    assertEquals("Patient", fragments.get(0).getElement().fhirType());
+    assertEquals(1, fragments.get(0).getElement().line());
+    assertTrue(fragments.get(0).getErrors().isEmpty());
+
+    String blank = TestingUtilities.getSharedWorkerContext().formatMessage(I18nConstants.NDJSON_EMPTY_LINE_WARNING);
+    assertNull(fragments.get(1).getElement());
+    assertTrue(hasMessage(fragments.get(1), IssueSeverity.WARNING, blank));
+    assertEquals(2, fragments.get(1).getErrors().get(0).getLine());
+
+    assertEquals("Observation", fragments.get(2).getElement().fhirType());
+    assertEquals(3, fragments.get(2).getElement().line());
+
+    // a line that isn't JSON is reported, and the lines after it are still read
+    assertNull(fragments.get(3).getElement());
+    assertTrue(hasMessage(fragments.get(3), IssueSeverity.FATAL, null));
+
+    assertNull(fragments.get(4).getElement());
+    assertTrue(hasMessage(fragments.get(4), IssueSeverity.WARNING, blank));
+    assertEquals(5, fragments.get(4).getErrors().get(0).getLine());
+
+    assertEquals("Patient", fragments.get(5).getElement().fhirType());
+    assertEquals(6, fragments.get(5).getElement().line());
+  }
+
+  @Test
+  public void testLineEnds() throws Exception {
+    // a trailing line end doesn't make another line
+    parse(PATIENT+"\n"+OBSERVATION+"\n");
+    assertEquals(List.of(0, 1), lines);
+    parse("");
+    assertTrue(lines.isEmpty());
+
+    // only \n ends a line; \r is whitespace inside one
+    parse("{\"resourceType\" : \"Patient\",\r\"id\" : \"p1\"}\n"+OBSERVATION);
+    assertEquals(List.of(0, 1), lines);
+    assertEquals("p1", fragments.get(0).getElement().getIdBase());
+  }
+
+  @Test
+  public void testLongLines() throws Exception {
+    // lines that are longer than the reader's buffer
+    String text = Utilities.padLeft("", 'x', 20000);
+    String patient = "{\"resourceType\" : \"Patient\", \"id\" : \"p1\", \"text\" : {\"status\" : \"generated\", \"div\" : \"<div xmlns=\\\"http://www.w3.org/1999/xhtml\\\">"+text+"</div>\"}}";
+    parse(patient+"\n"+OBSERVATION+"\n"+patient);
+    assertEquals(List.of(0, 1, 2), lines);
+    assertEquals("Patient", fragments.get(0).getElement().fhirType());
+    assertEquals("Observation", fragments.get(1).getElement().fhirType());
+    assertEquals("Patient", fragments.get(2).getElement().fhirType());
+    assertEquals(3, fragments.get(2).getElement().line());
+  }
+
+  @Test
+  public void testParseAll() throws Exception {
+    String source = PATIENT+"\n\n"+OBSERVATION;
+    List<ValidatedFragment> res = parser().parse(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(3, res.size());
+    assertEquals("Patient", res.get(0).getElement().fhirType());
+    assertNull(res.get(1).getElement());
+    assertEquals("Observation", res.get(2).getElement().fhirType());
+  }
+}
@@ -0,0 +1,119 @@
+package org.hl7.fhir.r5.elementmodel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.hl7.fhir.r5.context.IWorkerContext;
+import org.hl7.fhir.r5.elementmodel.ParserBase.ValidationPolicy;
+import org.hl7.fhir.r5.test.utils.TestingUtilities;
+import org.hl7.fhir.utilities.VersionUtilities;
+import org.hl7.fhir.utilities.json.model.JsonObject;
+import org.hl7.fhir.utilities.validation.ValidationMessage;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * The streaming XML parser has to produce the same elements and messages as the DOM based one
+ */
+public class XmlParserStreamingTests {
+
+  private static final String[] SOURCES = {
+      // a bundle with comments, a narrative and a contained resource
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- before -->\n<Bundle xmlns=\"http://hl7.org/fhir\">\n  <id value=\"b1\"/>\n  <type value=\"collection\"/>\n"
+        + "  <entry>\n    <fullUrl value=\"http://example.org/fhir/Patient/p1\"/>\n    <resource>\n      <!-- the patient -->\n      <Patient>\n        <id value=\"p1\"/>\n"
+        + "        <text>\n          <status value=\"generated\"/>\n          <div xmlns=\"http://www.w3.org/1999/xhtml\"><p>Some <b>bold</b> text<!-- c --></p></div>\n        </text>\n"
+        + "        <contained>\n          <Organization>\n            <id value=\"o1\"/>\n            <name value=\"Org\"/>\n          </Organization>\n        </contained>\n"
+        + "        <name>\n          <family value=\"Smith\"/>\n          <given value=\"John\"/>\n          <given value=\"Q\"/>\n        </name>\n        <!-- after name -->\n"
+        + "        <managingOrganization>\n          <reference value=\"#o1\"/>\n        </managingOrganization>\n      </Patient>\n    </resource>\n  </entry>\n</Bundle>\n",
+      // things that are wrong
+      "<Observation xmlns=\"http://hl7.org/fhir\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"x\">stray text\n  <status value=\"final\" other=\"x\"/>\n"
+        + "  <code/>\n  <unknown><a/></unknown>\n  more text<![CDATA[data]]>\n  <?pi data?>\n  <valueString value=\"v\"/>\n  <note><text value=\"a\"/>trailing</note>\n</Observation>\n",
+      // not well formed
+      "<Patient xmlns=\"http://hl7.org/fhir\">\n  <id value=\"p1\"/>\n  <active value=\"true\">\n</Patient>\n",
+      // not allowed
+      "<?xml version=\"1.0\"?>\n<!DOCTYPE Patient [<!ENTITY x \"y\">]>\n<Patient xmlns=\"http://hl7.org/fhir\"><id value=\"p1\"/></Patient>\n",
+      // not FHIR
+      "<Thing xmlns=\"http://example.org\"><id value=\"p1\"/></Thing>\n"
+  };
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1, 2, 3, 4})
+  public void testSameAsDom(int index) throws Exception {
+    checkSameAsDom(SOURCES[index]);
+  }
+
+  /**
+   * The R5 XML examples in the validator test cases
+   */
+  public static Stream<Arguments> examples() throws IOException {
+    List<Arguments> res = new ArrayList<>();
+    Set<String> files = new HashSet<>();
+    JsonObject manifest = org.hl7.fhir.utilities.json.parser.JsonParser.parseObject(TestingUtilities.loadTestResource("validator", "manifest.json"));
+    for (JsonObject test : manifest.getJsonObjects("test-cases")) {
+      String file = test.asString("file");
+      String version = test.asString("version");
+      if (file != null && file.endsWith(".xml") && (version == null || VersionUtilities.isR5Plus(version)) && files.add(file)) {
+        res.add(Arguments.of(file));
+      }
+    }
+    return res.stream();
+  }
+
+  @ParameterizedTest(name = "{0}")
+  @MethodSource("examples")
+  public void testExampleSameAsDom(String file) throws Exception {
+    checkSameAsDom(TestingUtilities.loadTestResource("validator", file));
+  }
+
+  private void checkSameAsDom(String source) throws Exception {
+    for (ValidationPolicy policy : new ValidationPolicy[] {ValidationPolicy.EVERYTHING, ValidationPolicy.NONE}) {
+      String dom = parse(source, policy, false);
+      String streamed = parse(source, policy, true);
+      assertEquals(dom, streamed, policy.toString());
+    }
+  }
+
+  private String parse(String source, ValidationPolicy policy, boolean streaming) throws Exception {
+    IWorkerContext context = TestingUtilities.getSharedWorkerContext();
+    XmlParser xp = new XmlParser(context);
+    xp.setupValidation(policy);
+    xp.setStreaming(streaming);
+    StringBuilder b = new StringBuilder();
+    try {
+      List<ValidatedFragment> res = xp.parse(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+      for (ValidationMessage msg : res.get(0).getErrors()) {
+        if (msg.getLevel() == ValidationMessage.IssueSeverity.FATAL && "(xml)".equals(msg.getLocation())) {
+          // the parsers word (and place) the well formedness errors differently
+          b.append("(not well formed)\r\n");
+        } else {
+          b.append(msg.getLine()+":"+msg.getCol()+" "+msg.getLocation()+" "+msg.getLevel()+" "+msg.getMessage()+"\r\n");
+        }
+      }
+      if (res.get(0).getElement() != null) {
+        dump(b, res.get(0).getElement(), "");
+      }
+    } catch (Exception e) {
+      b.append("exception: "+e.getClass().getName());
+    }
+    return b.toString();
+  }
+
+  private void dump(StringBuilder b, Element e, String indent) {
+    b.append(indent+e.getName()+" "+e.getType()+" "+e.getPath()+" "+e.line()+":"+e.col()+" "+e.getValue()+" "+e.getComments()+"\r\n");
+    if (e.hasChildren()) {
+      for (Element c : e.getChildren()) {
+        dump(b, c, indent+"  ");
+      }
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package org.hl7.fhir.r5.fhirpath;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.hl7.fhir.r5.test.utils.TestingUtilities;
+import org.junit.jupiter.api.Test;
+
+public class ExpressionCacheTests {
+
+  @Test
+  public void testHitsAndMisses() {
+    ExpressionCache cache = new ExpressionCache(10);
+    ExpressionNode node = new ExpressionNode(0);
+    assertNull(cache.get("name.given", false));
+    cache.put("name.given", false, node);
+    assertSame(node, cache.get("name.given", false));
+    assertSame(node, cache.get("name.given", false));
+    assertEquals(2, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testDoubleQuotesAreSeparate() {
+    ExpressionCache cache = new ExpressionCache(10);
+    cache.put("'a'", false, new ExpressionNode(0));
+    assertNull(cache.get("'a'", true));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() {
+    ExpressionCache cache = new ExpressionCache(2);
+    ExpressionNode a = new ExpressionNode(0);
+    cache.put("a", false, a);
+    cache.put("b", false, new ExpressionNode(1));
+    cache.get("a", false);
+    cache.put("c", false, new ExpressionNode(2));
+    assertEquals(2, cache.size());
+    assertSame(a, cache.get("a", false));
+    assertNull(cache.get("b", false));
+  }
+
+  @Test
+  public void testCopyLeavesOutTypes() {
+    FHIRPathEngine fp = new FHIRPathEngine(TestingUtilities.getSharedWorkerContext());
+    ExpressionNode node = fp.parse("name.where(use = 'official').given.first()");
+    fp.check(null, "Patient", "Patient", node);
+    assertNotNull(node.getTypes());
+    ExpressionNode copy = node.copy();
+    assertEquals(node.toString(), copy.toString());
+    assertNull(copy.getTypes());
+    assertNotSame(node.getInner(), copy.getInner());
+  }
+
+  @Test
+  public void testCachedTreesAreNotHandedOut() {
+    FHIRPathEngine fp = new FHIRPathEngine(TestingUtilities.getSharedWorkerContext());
+    ExpressionCache cache = new ExpressionCache(10);
+    fp.setExpressionCache(cache);
+    ExpressionNode first = fp.parse("name.given");
+    fp.check(null, "Patient", "Patient", first);
+    ExpressionNode second = fp.parse("name.given");
+    assertEquals(1, cache.getHits());
+    assertNotSame(first, second);
+    assertNotSame(cache.get("name.given", false), second);
+    // checking one copy doesn't change what the others see
+    assertNull(second.getTypes());
+    assertNull(second.getInner().getTypes());
+    assertNull(cache.get("name.given", false).getTypes());
+  }
+
+  @Test
+  public void testCapacityMustBePositive() {
+    assertThrows(IllegalArgumentException.class, () -> new ExpressionCache(0));
+  }
+}
@@ -0,0 +1,115 @@
+package org.hl7.fhir.r5.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class BaseUserDataTest {
+
+  @Test
+  public void testSetGetClear() {
+    StringType s = new StringType("test");
+    assertNull(s.getUserData("a"));
+    assertFalse(s.hasUserData("a"));
+
+    s.setUserData("a", "1");
+    s.setUserData("b", 2);
+    assertEquals("1", s.getUserData("a"));
+    assertEquals("1", s.getUserString("a"));
+    assertEquals(2, s.getUserInt("b"));
+    assertTrue(s.hasUserData("b"));
+
+    s.setUserData("a", "3");
+    assertEquals("3", s.getUserData("a"));
+
+    s.setUserData("a", null);
+    assertFalse(s.hasUserData("a"));
+    s.setUserDataINN("a", null);
+    assertFalse(s.hasUserData("a"));
+
+    s.clearUserData("a");
+    s.clearUserData("x");
+    assertNull(s.getUserData("a"));
+    assertEquals(2, s.getUserData("b"));
+  }
+
+  @Test
+  public void testNamesAreComparedByValue() {
+    StringType s = new StringType("test");
+    s.setUserData("name", "v");
+    String name = new StringBuilder("na").append("me").toString();
+    assertEquals("v", s.getUserData(name));
+    s.setUserData(name, "w");
+    assertEquals("w", s.getUserData("name"));
+    s.clearUserData(name);
+    assertFalse(s.hasUserData("name"));
+  }
+
+  @Test
+  public void testNullName() {
+    StringType s = new StringType("test");
+    s.setUserData("a", "1");
+    s.setUserData(null, "n");
+    s.setUserData("b", "2");
+    assertEquals("n", s.getUserData(null));
+    assertEquals("2", s.getUserData("b"));
+
+    StringType t = new StringType("other");
+    t.copyUserData(s);
+    assertEquals("n", t.getUserData(null));
+
+    s.clearUserData(null);
+    assertNull(s.getUserData(null));
+    assertEquals("1", s.getUserData("a"));
+    assertEquals("2", s.getUserData("b"));
+  }
+
+  @Test
+  public void testManyEntries() {
+    StringType s = new StringType("test");
+    for (int i = 0; i < 50; i++) {
+      s.setUserData("k" + i, i);
+    }
+    for (int i = 0; i < 50; i += 2) {
+      s.clearUserData("k" + i);
+    }
+    for (int i = 0; i < 50; i++) {
+      if (i % 2 == 0) {
+        assertFalse(s.hasUserData("k" + i));
+      } else {
+        assertEquals(i, s.getUserData("k" + i));
+      }
+    }
+  }
+
+  @Test
+  public void testCopy() {
+    StringType s = new StringType("test");
+    s.setUserData("a", "1");
+    s.setUserData("b", "2");
+
+    StringType t = new StringType("other");
+    t.setUserData("b", "x");
+    t.setUserData("c", "3");
+    t.copyUserData(s);
+    assertEquals("1", t.getUserData("a"));
+    assertEquals("2", t.getUserData("b"));
+    assertEquals("3", t.getUserData("c"));
+
+    Base.setCopyUserData(true);
+    try {
+      StringType c = s.copy();
+      assertEquals("1", c.getUserData("a"));
+      c.setUserData("a", "changed");
+      c.setUserData("d", "4");
+      assertEquals("1", s.getUserData("a"));
+      assertFalse(s.hasUserData("d"));
+    } finally {
+      Base.setCopyUserData(false);
+    }
+    assertFalse(s.copy().hasUserData("a"));
+  }
+}
@@ -149,6 +149,48 @@ public class SQLOnFhirTests {
   }
 
 
+  @ParameterizedTest(name = "{index}: file {0}")
+  @MethodSource("data")
+  public void testParallel(String name, TestDetails test) throws IOException {
+    this.details = test;
+    String serial = run(test, 1, true);
+    if (serial == null) {
+      // the view is expected to fail, and it must fail the same way on more than one thread
+      Assertions.assertNull(run(test, 4, true));
+      Assertions.assertNull(run(test, 4, false));
+      return;
+    }
+    Assertions.assertEquals(serial, run(test, 4, true));
+    String unordered = run(test, 4, false);
+    JsonObject rows = JsonParser.parseObject(unordered);
+    JsonObject exp = JsonParser.parseObject(serial);
+    sortResults(exp);
+    sortResults(rows);
+    Assertions.assertEquals(JsonParser.compose(exp, true), JsonParser.compose(rows, true));
+  }
+
+  /**
+   * @return the rows, or null if the view failed, which is only allowed when the test expects an error
+   */
+  private String run(TestDetails test, int threads, boolean ordered) {
+    Runner runner = new Runner();
+    runner.setContext(TestingUtilities.getSharedWorkerContext());
+    runner.setProvider(new TestProvider());
+    runner.setThreads(threads);
+    runner.setOrdered(ordered);
+    StorageJson store = new StorageJson();
+    runner.setStorage(store);
+    try {
+      runner.execute(test.path+".view", test.testCase.getJsonObject("view"));
+    } catch (Exception e) {
+      Assertions.assertTrue(test.testCase.has("expectError"), e.getMessage());
+      return null;
+    }
+    JsonObject rows = new JsonObject();
+    rows.add("rows", store.getRows());
+    return JsonParser.compose(rows, true);
+  }
+
   public class RowSorter implements Comparator<JsonElement> {
 
     @Override
@@ -0,0 +1,209 @@
+package org.hl7.fhir.r5.terminologies;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hl7.fhir.r5.model.CodeSystem;
+import org.hl7.fhir.r5.model.CodeSystem.ConceptDefinitionComponent;
+import org.hl7.fhir.r5.model.CodeType;
+import org.hl7.fhir.r5.model.Enumerations.FilterOperator;
+import org.hl7.fhir.r5.model.StringType;
+import org.hl7.fhir.r5.model.ValueSet;
+import org.hl7.fhir.r5.model.ValueSet.ConceptSetFilterComponent;
+import org.hl7.fhir.r5.terminologies.expansion.PropertyFilter;
+import org.junit.jupiter.api.Test;
+
+public class CodeSystemConceptIndexTests {
+
+  private CodeSystem makeCodeSystem() {
+    CodeSystem cs = new CodeSystem();
+    cs.setUrl("http://example.org/fhir/CodeSystem/index-test");
+    for (int i = 0; i < 50; i++) {
+      ConceptDefinitionComponent c = cs.addConcept().setCode("c"+i).setDisplay("Concept "+i);
+      for (int j = 0; j < 10; j++) {
+        ConceptDefinitionComponent cc = c.addConcept().setCode("c"+i+"."+j).setDefinition("Child "+j+" of "+i);
+        cc.addConcept().setCode("c"+i+"."+j+".x");
+      }
+    }
+    cs.getConceptFirstRep().addProperty().setCode("alternateCode").setValue(new CodeType("alt0"));
+    // an alternate code that's also a real code later on: the earlier concept wins
+    cs.getConcept().get(1).addProperty().setCode("alternateCode").setValue(new CodeType("c2"));
+    return cs;
+  }
+
+  @Test
+  public void testLookupsMatchWalking() {
+    CodeSystem cs = makeCodeSystem();
+    for (int n = 0; n < 10; n++) {
+      assertNotNull(CodeSystemUtilities.findCode(cs.getConcept(), "c7.3.x"));
+    }
+    assertNotNull(CodeSystemConceptIndex.forConcepts(cs.getConcept()));
+
+    assertEquals("c49.9", CodeSystemUtilities.getCode(cs, "c49.9").getCode());
+    assertTrue(CodeSystemUtilities.hasCode(cs, "c12.1.x"));
+    assertFalse(CodeSystemUtilities.hasCode(cs, "c12.10"));
+    assertNull(CodeSystemUtilities.findCode(cs.getConcept(), "C1"));
+    assertEquals("Child 4 of 3", CodeSystemUtilities.getCodeDefinition(cs, "c3.4"));
+
+    assertEquals("c0", CodeSystemUtilities.findCodeOrAltCode(cs.getConcept(), "alt0", null).getCode());
+    assertEquals("c1", CodeSystemUtilities.findCodeOrAltCode(cs.getConcept(), "c2", null).getCode());
+    assertNull(CodeSystemUtilities.findCodeOrAltCode(cs.getConcept(), "alt0", "other-use"));
+    assertEquals("c2", CodeSystemUtilities.findCode(cs.getConcept(), "c2").getCode());
+
+    List<ConceptDefinitionComponent> path = CodeSystemUtilities.findCodeWithParents(null, cs.getConcept(), "c5.6.x");
+    assertEquals(3, path.size());
+    assertEquals("c5", path.get(0).getCode());
+    assertEquals("c5.6", path.get(1).getCode());
+    assertEquals("c5.6.x", path.get(2).getCode());
+  }
+
+  @Test
+  public void testChangesAreSeen() {
+    CodeSystem cs = makeCodeSystem();
+    for (int n = 0; n < 10; n++) {
+      assertNull(CodeSystemUtilities.getCode(cs, "new"));
+    }
+    assertNotNull(CodeSystemConceptIndex.forConcepts(cs.getConcept()));
+
+    // added at the root: the index is dropped
+    cs.addConcept().setCode("new");
+    assertNotNull(CodeSystemUtilities.getCode(cs, "new"));
+
+    // a code changed in place: the index notices when it finds the concept
+    for (int n = 0; n < 10; n++) {
+      CodeSystemUtilities.getCode(cs, "c3");
+    }
+    CodeSystemUtilities.getCode(cs, "c3").setCode("c3-changed");
+    assertNull(CodeSystemUtilities.getCode(cs, "c3"));
+
+    // removing concepts: the index has to be cleared
+    for (int n = 0; n < 10; n++) {
+      CodeSystemUtilities.getCode(cs, "c4");
+    }
+    cs.getConcept().get(4).getConcept().remove(0);
+    CodeSystemConceptIndex.clear(cs);
+    assertNull(CodeSystemUtilities.getCode(cs, "c4.0"));
+
+    // sorting moves the concepts: the index is cleared
+    for (int n = 0; n < 10; n++) {
+      CodeSystemUtilities.getCode(cs, "c4");
+    }
+    CodeSystemConceptIndex index = CodeSystemConceptIndex.forConcepts(cs.getConcept());
+    assertNotNull(index);
+    CodeSystemUtilities.sortAllCodes(cs);
+    assertNotSame(index, CodeSystemConceptIndex.forConcepts(cs.getConcept()));
+  }
+
+  @Test
+  public void testPropertyLookups() {
+    CodeSystem cs = new CodeSystem();
+    cs.addProperty().setCode("colour");
+    for (int i = 0; i < 50; i++) {
+      ConceptDefinitionComponent c = cs.addConcept().setCode("c"+i);
+      c.addProperty().setCode("colour").setValue(new StringType(i % 3 == 0 ? "red" : "blue"));
+      // only the first value counts, as it does for PropertyFilter
+      c.addProperty().setCode("colour").setValue(new StringType("green"));
+    }
+    assertNull(CodeSystemUtilities.findCodesWithProperty(cs, "colour", "red"));
+    for (int n = 0; n < 10; n++) {
+      CodeSystemUtilities.getCode(cs, "c1");
+    }
+    assertNotNull(CodeSystemConceptIndex.forConcepts(cs.getConcept()));
+
+    // the same concepts in the same order as the walk the expander does with a PropertyFilter
+    ConceptSetFilterComponent fc = new ValueSet().getCompose().addInclude().addFilter().setProperty("colour").setOp(FilterOperator.EQUAL).setValue("red");
+    PropertyFilter pf = new PropertyFilter(new ArrayList<>(), fc, cs.getPropertyFirstRep());
+    List<ConceptDefinitionComponent> walked = new ArrayList<>();
+    for (ConceptDefinitionComponent c : cs.getConcept()) {
+      if (pf.includeConcept(cs, c)) {
+        walked.add(c);
+      }
+    }
+    assertEquals(17, walked.size());
+    assertEquals(walked, CodeSystemUtilities.findCodesWithProperty(cs, "colour", "red"));
+    assertNull(CodeSystemUtilities.findCodesWithProperty(cs, "colour", "green"));
+
+    // a value that changed since the index was built: walk
+    cs.getConcept().get(3).getProperty().get(0).setValue(new StringType("blue"));
+    assertNull(CodeSystemUtilities.findCodesWithProperty(cs, "colour", "red"));
+
+    // with a hierarchy, the walk finds more than the concepts, so the index doesn't answer
+    CodeSystemConceptIndex.clear(cs);
+    cs.getConcept().get(5).addConcept().setCode("c5.1");
+    for (int n = 0; n < 10; n++) {
+      CodeSystemUtilities.getCode(cs, "c1");
+    }
+    assertNotNull(CodeSystemConceptIndex.forConcepts(cs.getConcept()));
+    assertNull(CodeSystemUtilities.findCodesWithProperty(cs, "colour", "blue"));
+  }
+
+  private CodeSystem makeIndexedCodeSystem() {
+    CodeSystem cs = makeCodeSystem();
+    for (int n = 0; n < 10; n++) {
+      assertNotNull(CodeSystemUtilities.getCode(cs, "c5"));
+    }
+    assertNotNull(CodeSystemConceptIndex.forConcepts(cs.getConcept()));
+    return cs;
+  }
+
+  @Test
+  public void testNestedAddIsSeen() {
+    CodeSystem cs = makeIndexedCodeSystem();
+    cs.getConcept().get(4).getConcept().get(2).addConcept().setCode("c4.2.new").setDefinition("new one");
+    assertEquals("c4.2.new", CodeSystemUtilities.findCode(cs.getConcept(), "c4.2.new").getCode());
+    assertTrue(CodeSystemUtilities.hasCode(cs, "c4.2.new"));
+    assertEquals("new one", CodeSystemUtilities.getCodeDefinition(cs, "c4.2.new"));
+    assertEquals(3, CodeSystemUtilities.findCodeWithParents(null, cs.getConcept(), "c4.2.new").size());
+    assertEquals("c4.2.new", CodeSystemUtilities.findCodeOrAltCode(cs.getConcept(), "c4.2.new", null).getCode());
+
+    // the codes that were there all along still come from the index; the new one doesn't, so
+    // the callers (including ValueSetValidator) walk the concepts
+    CodeSystemConceptIndex index = CodeSystemConceptIndex.forConcepts(cs.getConcept());
+    assertNotNull(index);
+    assertNotNull(index.getByCode("c4.2"));
+    assertNull(index.getByCode("c4.2.new"));
+    assertNull(index.getCandidates("c4.2.new", true));
+  }
+
+  @Test
+  public void testRenameIsSeen() {
+    CodeSystem cs = makeIndexedCodeSystem();
+    cs.getConcept().get(7).getConcept().get(1).setCode("c7.1-renamed");
+    assertNotNull(CodeSystemUtilities.findCode(cs.getConcept(), "c7.1-renamed"));
+    assertTrue(CodeSystemUtilities.hasCode(cs, "c7.1-renamed"));
+    assertEquals("c7.1-renamed", CodeSystemUtilities.getCode(cs, "c7.1-renamed").getCode());
+    assertNull(CodeSystemConceptIndex.forConcepts(cs.getConcept()).getCandidates("c7.1-renamed", false));
+    assertNull(CodeSystemUtilities.findCode(cs.getConcept(), "c7.1"));
+    assertFalse(CodeSystemUtilities.hasCode(cs, "c7.1"));
+  }
+
+  @Test
+  public void testRebuiltAfterMisses() {
+    CodeSystem cs = makeIndexedCodeSystem();
+    CodeSystemConceptIndex index = CodeSystemConceptIndex.forConcepts(cs.getConcept());
+    cs.getConcept().get(1).addConcept().setCode("c1.new");
+    for (int n = 0; n < 200; n++) {
+      assertNotNull(CodeSystemUtilities.findCode(cs.getConcept(), "c1.new"));
+    }
+    CodeSystemConceptIndex rebuilt = CodeSystemConceptIndex.forConcepts(cs.getConcept());
+    assertNotNull(rebuilt);
+    assertNotSame(index, rebuilt);
+    assertEquals("c1.new", rebuilt.getByCode("c1.new").get(0).getCode());
+  }
+
+  @Test
+  public void testOnlyTheRootIsIndexed() {
+    CodeSystem cs = makeCodeSystem();
+    for (int n = 0; n < 10; n++) {
+      assertNull(CodeSystemUtilities.findCode(cs.getConcept(), "missing"));
+      assertNull(CodeSystemUtilities.findCodeOrAltCode(cs.getConcept(), "missing", null));
+      assertNull(CodeSystemUtilities.getCodeDefinition(cs, "missing"));
+    }
+    assertNotNull(CodeSystemConceptIndex.forConcepts(cs.getConcept()));
+    // the walks below the root haven't been counted towards indexes of their own
+    assertNull(CodeSystemConceptIndex.forConcepts(cs.getConcept().get(3).getConcept()));
+    assertNull(CodeSystemConceptIndex.forConcepts(cs.getConcept().get(3).getConcept().get(2).getConcept()));
+  }
+}
@@ -0,0 +1,169 @@
+package org.hl7.fhir.r5.terminologies;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.hl7.fhir.exceptions.FHIRException;
+import org.hl7.fhir.r5.context.SimpleWorkerContext;
+import org.hl7.fhir.r5.model.Base;
+import org.hl7.fhir.r5.model.CodeType;
+import org.hl7.fhir.r5.model.Coding;
+import org.hl7.fhir.r5.model.ConceptMap;
+import org.hl7.fhir.r5.model.ConceptMap.ConceptMapGroupComponent;
+import org.hl7.fhir.r5.model.ConceptMap.ConceptMapGroupUnmappedMode;
+import org.hl7.fhir.r5.model.Enumerations.ConceptMapRelationship;
+import org.hl7.fhir.r5.model.Enumerations.PublicationStatus;
+import org.hl7.fhir.r5.model.StructureMap;
+import org.hl7.fhir.r5.test.utils.TestingUtilities;
+import org.hl7.fhir.r5.utils.structuremap.StructureMapUtilities;
+import org.hl7.fhir.r5.utils.structuremap.TransformContext;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class ConceptMapIndexTests {
+
+  private static final String SRC1 = "http://example.org/fhir/CodeSystem/src1";
+  private static final String SRC2 = "http://example.org/fhir/CodeSystem/src2";
+  private static final String TGT = "http://example.org/fhir/CodeSystem/tgt";
+  private static SimpleWorkerContext context;
+
+  @BeforeAll
+  public static void setUp() throws Exception {
+    context = new SimpleWorkerContext((SimpleWorkerContext) TestingUtilities.getSharedWorkerContext());
+    context.cacheResource(makeMap("http://example.org/fhir/ConceptMap/index-test", "http://example.org/fhir/ConceptMap/index-other"));
+    ConceptMap other = new ConceptMap();
+    other.setUrl("http://example.org/fhir/ConceptMap/index-other");
+    other.setStatus(PublicationStatus.ACTIVE);
+    ConceptMapGroupComponent g = other.addGroup().setSource(SRC2).setTarget(TGT);
+    g.addElement().setCode("x").addTarget().setCode("X").setRelationship(ConceptMapRelationship.EQUIVALENT);
+    g.getUnmapped().setMode(ConceptMapGroupUnmappedMode.FIXED).setCode("fixed");
+    context.cacheResource(other);
+  }
+
+  private static ConceptMap makeMap(String url, String otherMap) {
+    ConceptMap cm = new ConceptMap();
+    cm.setUrl(url);
+    cm.setId("cm");
+    cm.setStatus(PublicationStatus.ACTIVE);
+    ConceptMapGroupComponent g1 = cm.addGroup().setSource(SRC1).setTarget(TGT);
+    for (int i = 0; i < 100; i++) {
+      g1.addElement().setCode("c"+i).addTarget().setCode("T"+i).setRelationship(ConceptMapRelationship.EQUIVALENT);
+    }
+    g1.addElement().setCode("none").addTarget().setCode("N").setRelationship(ConceptMapRelationship.NOTRELATEDTO);
+    g1.getUnmapped().setMode(ConceptMapGroupUnmappedMode.USESOURCECODE);
+    ConceptMapGroupComponent g2 = cm.addGroup().setSource(SRC2).setTarget(TGT);
+    g2.addElement().setCode("c1").addTarget().setCode("U1").setRelationship(ConceptMapRelationship.EQUIVALENT);
+    g2.getUnmapped().setMode(ConceptMapGroupUnmappedMode.OTHERMAP).setOtherMap(otherMap);
+    return cm;
+  }
+
+  @Test
+  public void testFind() {
+    ConceptMap cm = makeMap("http://example.org/fhir/ConceptMap/find-test", null);
+    assertEquals(1, ConceptMapIndex.find(null, cm, SRC1, "c5").size());
+    assertEquals("T5", ConceptMapIndex.find(null, cm, SRC1, "c5").get(0).getElement().getTargetFirstRep().getCode());
+    assertEquals(0, ConceptMapIndex.find(null, cm, SRC2, "c5").size());
+    assertEquals(0, ConceptMapIndex.find(null, cm, "http://example.org/other", "c5").size());
+    // without a system, all the groups, in order
+    assertEquals(2, ConceptMapIndex.find(null, cm, null, "c1").size());
+    assertEquals(SRC1, ConceptMapIndex.find(null, cm, null, "c1").get(0).getGroup().getSource());
+    assertEquals(SRC2, ConceptMapIndex.find(null, cm, null, "c1").get(1).getGroup().getSource());
+    assertEquals(0, ConceptMapIndex.find(null, cm, null, null).size());
+  }
+
+  @Test
+  public void testChangesAreSeen() {
+    ConceptMap cm = makeMap("http://example.org/fhir/ConceptMap/change-test", null);
+    ConceptMapIndex index = ConceptMapIndex.forMap(null, cm);
+    assertEquals(0, index.find(SRC1, "new").size());
+    cm.getGroupFirstRep().addElement().setCode("new");
+    assertEquals(1, index.find(SRC1, "new").size());
+    assertFalse(index.isCurrent(cm));
+
+    index = ConceptMapIndex.forMap(null, cm);
+    cm.getGroupFirstRep().getElement().get(3).setCode("c3-changed");
+    assertEquals(0, index.find(SRC1, "c3").size());
+    assertFalse(index.isCurrent(cm));
+
+    index = ConceptMapIndex.forMap(null, cm);
+    cm.getGroupFirstRep().getElement().get(4).setCode("c4-changed");
+    index.clear();
+    assertEquals(1, index.find(SRC1, "c4-changed").size());
+  }
+
+  @Test
+  public void testKeptByContext() throws Exception {
+    SimpleWorkerContext ctxt = new SimpleWorkerContext(context);
+    ctxt.setAllowLoadingDuplicates(true);
+    ConceptMap cm = makeMap("http://example.org/fhir/ConceptMap/context-test", null);
+    cm.setId("context-test");
+    cm.setVersion("1.0.0");
+    // not one of the context's maps
+    assertNull(ctxt.getConceptMapIndex(cm));
+    assertEquals(1, ConceptMapIndex.find(ctxt, cm, SRC1, "c5").size());
+
+    ctxt.cacheResource(cm);
+    ConceptMapIndex index = ctxt.getConceptMapIndex(cm);
+    assertNotNull(index);
+    assertSame(index, ctxt.getConceptMapIndex(cm));
+    assertSame(index, ConceptMapIndex.forMap(ctxt, cm));
+    assertSame(cm, index.getMap());
+
+    // another version of the map gets its own index
+    ConceptMap cm2 = makeMap("http://example.org/fhir/ConceptMap/context-test", null);
+    cm2.setId("context-test-2");
+    cm2.setVersion("2.0.0");
+    ctxt.cacheResource(cm2);
+    assertNotSame(index, ctxt.getConceptMapIndex(cm2));
+    assertSame(index, ctxt.getConceptMapIndex(cm));
+
+    // changes are seen, and the index is built again
+    cm.getGroupFirstRep().addElement().setCode("new");
+    assertEquals(1, ConceptMapIndex.find(ctxt, cm, SRC1, "new").size());
+    assertNotSame(index, ctxt.getConceptMapIndex(cm));
+
+    // dropped with the map
+    ctxt.dropResource("ConceptMap", "context-test");
+    assertNull(ctxt.getConceptMapIndex(cm));
+    assertNotNull(ctxt.getConceptMapIndex(cm2));
+  }
+
+  @Test
+  public void testEngine() {
+    ConceptMapEngine engine = new ConceptMapEngine(context);
+    String url = "http://example.org/fhir/ConceptMap/index-test";
+    Coding c = engine.translate(new Coding(SRC1, "c7", null), url);
+    assertEquals(TGT, c.getSystem());
+    assertEquals("T7", c.getCode());
+    assertNull(engine.translate(new Coding(SRC1, "none", null), url));
+    assertEquals("T8", engine.translate(new Coding(null, "c8", null), url).getCode());
+    assertThrows(FHIRException.class, () -> engine.translate(new Coding(null, "c1", null), url));
+
+    // unmapped
+    assertEquals("unknown", engine.translate(new Coding(SRC1, "unknown", null), url).getCode());
+    assertEquals("X", engine.translate(new Coding(SRC2, "x", null), url).getCode());
+    assertEquals("fixed", engine.translate(new Coding(SRC2, "unknown", null), url).getCode());
+    assertNull(engine.translate(new Coding("http://example.org/other", "c1", null), url));
+  }
+
+  @Test
+  public void testStructureMap() {
+    StructureMap map = new StructureMap();
+    map.setUrl("http://example.org/fhir/StructureMap/index-test");
+    map.addContained(makeMap("http://example.org/fhir/ConceptMap/contained", "http://example.org/fhir/ConceptMap/index-other"));
+    StructureMapUtilities smu = new StructureMapUtilities(context);
+    TransformContext tc = new TransformContext(null);
+
+    Base b = smu.translate(tc, map, new Coding(SRC1, "c9", null), "#cm", "code");
+    assertEquals("T9", ((CodeType) b).getCode());
+    b = smu.translate(tc, map, new CodeType("c10"), "#cm", null);
+    assertEquals("T10", ((Coding) b).getCode());
+    assertEquals(TGT, ((Coding) b).getSystem());
+    assertThrows(FHIRException.class, () -> smu.translate(tc, map, new Coding(SRC1, "none", null), "#cm", "code"));
+    assertThrows(FHIRException.class, () -> smu.translate(tc, map, new Coding(SRC1, "c1", null), "#missing", "code"));
+
+    // unmapped
+    assertEquals("unknown", ((CodeType) smu.translate(tc, map, new Coding(SRC1, "unknown", null), "#cm", "code")).getCode());
+    assertEquals("fixed", ((CodeType) smu.translate(tc, map, new Coding(SRC2, "unknown", null), "#cm", "code")).getCode());
+    assertNull(smu.translate(tc, map, new Coding("http://example.org/other", "unknown", null), "#cm", "code"));
+  }
+}
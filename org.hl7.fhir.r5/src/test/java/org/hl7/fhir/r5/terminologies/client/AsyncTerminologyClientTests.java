@@ -0,0 +1,269 @@
+package org.hl7.fhir.r5.terminologies.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hl7.fhir.r5.context.HTMLClientLogger;
+import org.hl7.fhir.r5.formats.JsonParser;
+import org.hl7.fhir.r5.model.BooleanType;
+import org.hl7.fhir.r5.model.Bundle;
+import org.hl7.fhir.r5.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.r5.model.Bundle.BundleType;
+import org.hl7.fhir.r5.model.Bundle.HTTPVerb;
+import org.hl7.fhir.r5.model.CodeType;
+import org.hl7.fhir.r5.model.OperationOutcome;
+import org.hl7.fhir.r5.model.OperationOutcome.IssueSeverity;
+import org.hl7.fhir.r5.model.OperationOutcome.IssueType;
+import org.hl7.fhir.r5.model.Parameters;
+import org.hl7.fhir.r5.model.Resource;
+import org.hl7.fhir.r5.model.UriType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Runs the async client against a local server that is slow enough for requests to overlap
+ */
+public class AsyncTerminologyClientTests {
+
+  private static final long DELAY = 200;
+
+  private MockWebServer server;
+  private ITerminologyClient client;
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger maxActive = new AtomicInteger();
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(DELAY);
+          return respond(request);
+        } catch (IOException e) {
+          return new MockResponse().setResponseCode(400);
+        } finally {
+          active.decrementAndGet();
+        }
+      }
+    });
+    server.start();
+    client = new TerminologyClientR5("tx", server.url("/fhir").toString(), "test");
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    server.shutdown();
+  }
+
+  /**
+   * $validate-code says whether the code is "ok"; an error if the code is "error". A batch gets
+   * back the code of each entry
+   */
+  private MockResponse respond(RecordedRequest request) throws IOException {
+    Resource res;
+    if ("POST".equals(request.getMethod()) && !request.getPath().contains("$")) {
+      Bundle batch = (Bundle) new JsonParser().parse(request.getBody().readUtf8());
+      Bundle resp = new Bundle();
+      resp.setType(BundleType.BATCHRESPONSE);
+      for (BundleEntryComponent be : batch.getEntry()) {
+        Parameters p = new Parameters();
+        p.addParameter("code", new CodeType(((Parameters) be.getResource()).getParameterValue("code").primitiveValue()));
+        resp.addEntry().setResource(p);
+      }
+      res = resp;
+    } else if (request.getPath().contains("code=error")) {
+      OperationOutcome oo = new OperationOutcome();
+      oo.addIssue().setSeverity(IssueSeverity.ERROR).setCode(IssueType.EXCEPTION).getDetails().setText("failed");
+      return new MockResponse().setResponseCode(500).setHeader("Content-Type", "application/fhir+json").setBody(new JsonParser().composeString(oo));
+    } else {
+      Parameters p = new Parameters();
+      p.addParameter("result", new BooleanType(request.getPath().contains("code=ok")));
+      res = p;
+    }
+    return new MockResponse().setHeader("Content-Type", "application/fhir+json").setBody(new JsonParser().composeString(res));
+  }
+
+  private Parameters validate(String code) {
+    Parameters p = new Parameters();
+    p.addParameter("url", new UriType("http://example.org/fhir/ValueSet/test"));
+    p.addParameter("code", new CodeType(code));
+    return p;
+  }
+
+  @Test
+  public void testDuplicatesAreCoalesced() {
+    AsyncTerminologyClient async = new AsyncTerminologyClient(client, 4);
+    List<CompletableFuture<Parameters>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(async.validateVS(validate("ok")));
+    }
+    futures.add(async.validateVS(validate("other")));
+    for (int i = 0; i < 5; i++) {
+      Parameters p = AsyncTerminologyClient.await(futures.get(i));
+      assertTrue(p.getParameterBool("result"));
+      // everyone gets their own copy
+      for (int j = 0; j < i; j++) {
+        assertNotSame(p, futures.get(j).join());
+      }
+    }
+    assertFalse(AsyncTerminologyClient.await(futures.get(5)).getParameterBool("result"));
+    assertEquals(2, server.getRequestCount());
+    assertEquals(2, async.getRequestCount());
+    assertEquals(4, async.getCoalescedCount());
+
+    // once a request is finished, it is made again
+    assertTrue(AsyncTerminologyClient.await(async.validateVS(validate("ok"))).getParameterBool("result"));
+    assertEquals(3, server.getRequestCount());
+    async.close();
+  }
+
+  @Test
+  public void testConcurrencyIsCapped() {
+    AsyncTerminologyClient async = new AsyncTerminologyClient(client, 2);
+    List<CompletableFuture<Parameters>> futures = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      futures.add(async.validateVS(validate("ok"+i)));
+    }
+    for (CompletableFuture<Parameters> f : futures) {
+      AsyncTerminologyClient.await(f);
+    }
+    assertEquals(6, server.getRequestCount());
+    assertTrue(maxActive.get() <= 2, "max active was "+maxActive.get());
+    async.close();
+  }
+
+  @Test
+  public void testBatchIsSplit() {
+    AsyncTerminologyClient async = new AsyncTerminologyClient(client, 3);
+    Bundle batch = new Bundle();
+    batch.setType(BundleType.BATCH);
+    for (int i = 0; i < 70; i++) {
+      BundleEntryComponent be = batch.addEntry();
+      be.setResource(validate("c"+i));
+      be.getRequest().setMethod(HTTPVerb.POST).setUrl("ValueSet/$validate-code");
+    }
+    Bundle resp = AsyncTerminologyClient.await(async.validateBatch(batch));
+    assertEquals(3, server.getRequestCount());
+    assertEquals(70, resp.getEntry().size());
+    for (int i = 0; i < 70; i++) {
+      assertEquals("c"+i, ((Parameters) resp.getEntry().get(i).getResource()).getParameterValue("code").primitiveValue());
+    }
+
+    // too small to split
+    batch.getEntry().subList(30, 70).clear();
+    assertEquals(30, AsyncTerminologyClient.await(async.validateBatch(batch)).getEntry().size());
+    assertEquals(4, server.getRequestCount());
+    async.close();
+  }
+
+  @Test
+  public void testErrors() {
+    AsyncTerminologyClient async = new AsyncTerminologyClient(client, 2);
+    CompletableFuture<Parameters> f1 = async.validateVS(validate("error"));
+    CompletableFuture<Parameters> f2 = async.validateVS(validate("error"));
+    assertThrows(RuntimeException.class, () -> AsyncTerminologyClient.await(f1));
+    assertThrows(RuntimeException.class, () -> AsyncTerminologyClient.await(f2));
+    assertEquals(1, async.getCoalescedCount());
+    // a failed request isn't remembered
+    assertTrue(AsyncTerminologyClient.await(async.validateVS(validate("ok"))).getParameterBool("result"));
+    assertThrows(RuntimeException.class, () -> AsyncTerminologyClient.await(async.validateVS(validate("error"))));
+    assertEquals(1, async.getCoalescedCount());
+    async.close();
+  }
+
+  @Test
+  public void testResize() {
+    AsyncTerminologyClient async = new AsyncTerminologyClient(client, 1);
+    List<CompletableFuture<Parameters>> futures = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      futures.add(async.validateVS(validate("ok"+i)));
+    }
+    // the requests waiting their turn are made under the new limit
+    async.setMaxConcurrentRequests(3);
+    for (CompletableFuture<Parameters> f : futures) {
+      assertTrue(AsyncTerminologyClient.await(f).getParameterBool("result"));
+    }
+    assertEquals(6, server.getRequestCount());
+    assertTrue(maxActive.get() > 1 && maxActive.get() <= 3, "max active was "+maxActive.get());
+
+    maxActive.set(0);
+    async.setMaxConcurrentRequests(1);
+    futures.clear();
+    for (int i = 0; i < 3; i++) {
+      futures.add(async.validateVS(validate("ok"+i)));
+    }
+    for (CompletableFuture<Parameters> f : futures) {
+      AsyncTerminologyClient.await(f);
+    }
+    assertEquals(1, maxActive.get());
+    assertThrows(IllegalArgumentException.class, () -> async.setMaxConcurrentRequests(0));
+    async.close();
+  }
+
+  @Test
+  public void testLogIds() throws IOException {
+    Path log = Files.createTempFile("tx-log", ".html");
+    HTMLClientLogger logger = new HTMLClientLogger(log.toString());
+    client.setLogger(logger);
+    AsyncTerminologyClient async = new AsyncTerminologyClient(client, 4);
+    List<AsyncTerminologyClient.Request<Parameters>> futures = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      futures.add(async.validateVS(validate("ok"+i)));
+    }
+    Set<String> ids = new HashSet<>();
+    for (AsyncTerminologyClient.Request<Parameters> f : futures) {
+      AsyncTerminologyClient.await(f);
+      assertNotNull(f.getLogId());
+      ids.add(f.getLogId());
+    }
+    // each request has its own id, even though they were all in progress at once
+    assertEquals(4, ids.size());
+    assertTrue(maxActive.get() > 1, "max active was "+maxActive.get());
+    // and is logged with its response, not mixed up with the others
+    async.close();
+    String content = new String(Files.readAllBytes(log), StandardCharsets.UTF_8);
+    for (int i = 0; i < 4; i++) {
+      String id = futures.get(i).getLogId();
+      int start = content.indexOf("<p>#"+id+"</p>");
+      assertTrue(start > 0);
+      int end = content.indexOf("<hr/>", start);
+      String entry = end < 0 ? content.substring(start) : content.substring(start, end);
+      assertTrue(entry.contains("code=ok"+i), entry);
+      assertEquals(2, entry.split("<pre>", -1).length - 1, entry);
+    }
+    Files.delete(log);
+  }
+
+  @Test
+  public void testContextSharesClient() throws Exception {
+    TerminologyClientManager manager = new TerminologyClientManager(new TerminologyClientR5.TerminologyClientR5Factory(), "test");
+    TerminologyClientContext tc = manager.setMasterClient(client, false);
+    AsyncTerminologyClient async = tc.getAsyncClient();
+    assertSame(async, tc.getAsyncClient());
+    assertEquals(1, async.getMaxConcurrentRequests());
+    manager.setMaxConcurrentRequests(4);
+    // the client is resized, not replaced
+    assertSame(async, tc.getAsyncClient());
+    assertEquals(4, async.getMaxConcurrentRequests());
+    assertThrows(IllegalArgumentException.class, () -> manager.setMaxConcurrentRequests(0));
+  }
+}
@@ -0,0 +1,125 @@
+package org.hl7.fhir.r5.terminologies.expansion;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hl7.fhir.r5.context.SimpleWorkerContext;
+import org.hl7.fhir.r5.model.CodeSystem;
+import org.hl7.fhir.r5.model.CodeSystem.ConceptDefinitionComponent;
+import org.hl7.fhir.r5.model.Enumerations.CodeSystemContentMode;
+import org.hl7.fhir.r5.model.Enumerations.PublicationStatus;
+import org.hl7.fhir.r5.model.Parameters;
+import org.hl7.fhir.r5.model.ValueSet;
+import org.hl7.fhir.r5.model.ValueSet.ValueSetExpansionContainsComponent;
+import org.hl7.fhir.r5.terminologies.utilities.TerminologyOperationContext;
+import org.hl7.fhir.r5.test.utils.TestingUtilities;
+import org.hl7.fhir.utilities.validation.ValidationOptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class ValueSetExpanderStreamingTests {
+
+  private static final String CS_URL = "http://example.org/fhir/CodeSystem/streaming-test";
+  private static SimpleWorkerContext context;
+
+  @BeforeAll
+  public static void setUp() throws Exception {
+    context = new SimpleWorkerContext((SimpleWorkerContext) TestingUtilities.getSharedWorkerContext());
+    CodeSystem cs = new CodeSystem();
+    cs.setUrl(CS_URL);
+    cs.setVersion("1.0.0");
+    cs.setStatus(PublicationStatus.ACTIVE);
+    cs.setContent(CodeSystemContentMode.COMPLETE);
+    for (int i = 0; i < 20; i++) {
+      ConceptDefinitionComponent c = cs.addConcept().setCode("c"+i).setDisplay("Concept "+i);
+      for (int j = 0; j < 5; j++) {
+        c.addConcept().setCode("c"+i+"."+j).setDisplay("Child "+j+" of "+i);
+      }
+    }
+    context.cacheResource(cs);
+
+    // every third code, for use as an import
+    ValueSet some = new ValueSet();
+    some.setUrl("http://example.org/fhir/ValueSet/streaming-some");
+    some.setStatus(PublicationStatus.ACTIVE);
+    for (int i = 0; i < 20; i += 3) {
+      some.getCompose().addInclude().setSystem(CS_URL).addConcept().setCode("c"+i);
+      some.getCompose().addInclude().setSystem(CS_URL).addConcept().setCode("c"+i+".1");
+    }
+    context.cacheResource(some);
+  }
+
+  private ValueSet all() {
+    ValueSet vs = new ValueSet();
+    vs.setUrl("http://example.org/fhir/ValueSet/streaming-all");
+    vs.setStatus(PublicationStatus.ACTIVE);
+    vs.getCompose().addInclude().setSystem(CS_URL);
+    return vs;
+  }
+
+  private ValueSetExpansionOutcome expand(ValueSet vs, boolean streaming, Integer offset, Integer count) {
+    Parameters p = new Parameters();
+    p.addParameter("excludeNested", true);
+    if (offset != null) {
+      p.addParameter("offset", offset);
+    }
+    if (count != null) {
+      p.addParameter("count", count);
+    }
+    ValueSetExpander exp = new ValueSetExpander(context, new TerminologyOperationContext(context, new ValidationOptions(), "expansion"));
+    exp.setStreaming(streaming);
+    ValueSetExpansionOutcome vso = exp.expand(vs, p);
+    assertNull(vso.getError(), vso.getError());
+    return vso;
+  }
+
+  private List<String> codes(ValueSetExpansionOutcome vso) {
+    List<String> res = new ArrayList<>();
+    for (ValueSetExpansionContainsComponent c : vso.getValueset().getExpansion().getContains()) {
+      res.add(c.getCode());
+    }
+    return res;
+  }
+
+  @Test
+  public void testStreamingPagesMatch() {
+    for (int offset : new int[] {0, 7, 50, 115}) {
+      ValueSetExpansionOutcome full = expand(all(), false, offset, 10);
+      ValueSetExpansionOutcome streamed = expand(all(), true, offset, 10);
+      assertEquals(codes(full), codes(streamed), "offset "+offset);
+      assertEquals(120, streamed.getValueset().getExpansion().getTotal());
+      assertEquals(full.getValueset().getExpansion().getTotal(), streamed.getValueset().getExpansion().getTotal());
+    }
+  }
+
+  @Test
+  public void testContextSetting() throws Exception {
+    SimpleWorkerContext ctxt = new SimpleWorkerContext(context);
+    assertFalse(ctxt.isStreamingExpansions());
+    ctxt.setStreamingExpansions(true);
+    assertTrue(new SimpleWorkerContext(ctxt).isStreamingExpansions());
+
+    Parameters p = new Parameters();
+    p.addParameter("offset", 7);
+    p.addParameter("count", 10);
+    ValueSetExpansionOutcome vso = ctxt.expandVS(all(), false, false, false, p, true);
+    assertNull(vso.getError(), vso.getError());
+    assertEquals(codes(expand(all(), false, 7, 10)), codes(vso));
+    assertEquals(120, vso.getValueset().getExpansion().getTotal());
+  }
+
+  @Test
+  public void testImportedFilter() {
+    ValueSet vs = all();
+    vs.getCompose().getIncludeFirstRep().addValueSet("http://example.org/fhir/ValueSet/streaming-some");
+    ValueSetExpansionOutcome vso = expand(vs, false, null, null);
+    assertEquals(List.of("c0", "c0.1", "c3", "c3.1", "c6", "c6.1", "c9", "c9.1", "c12", "c12.1", "c15", "c15.1", "c18", "c18.1"), codes(vso));
+    assertTrue(vso.getTime() >= vso.getImportTime());
+
+    ValueSetExpansionOutcome streamed = expand(vs, true, 2, 3);
+    assertEquals(List.of("c3", "c3.1", "c6"), codes(streamed));
+    assertEquals(14, streamed.getValueset().getExpansion().getTotal());
+  }
+}
@@ -927,4 +927,106 @@ public class CanonicalResourceManagerTests {
     sl = mrm.getSupplements("http://url/CodeSystem/s234");
     Assertions.assertEquals(0, sl.size());
   }
+
+  @Test
+  public void testCopy() {
+    CanonicalResourceManager<ValueSet> mrm = new CanonicalResourceManager<>(true, false);
+    ValueSet vs1 = new ValueSet();
+    vs1.setId("2345");
+    vs1.setUrl("http://url/ValueSet/234");
+    vs1.setVersion("4.0.0");
+    mrm.see(vs1, null);
+
+    CanonicalResourceManager<ValueSet> copy = new CanonicalResourceManager<>(true, false);
+    copy.copy(mrm);
+    Assertions.assertEquals(1, copy.size());
+    Assertions.assertEquals(0, copy.localSize()); // it's all shared with the source
+    Assertions.assertEquals("4.0.0", copy.get("http://url/ValueSet/234").getVersion());
+
+    // changes to the copy don't show in the source
+    ValueSet vs2 = new ValueSet();
+    vs2.setId("2346");
+    vs2.setUrl("http://url/ValueSet/234");
+    vs2.setVersion("4.0.1");
+    copy.see(vs2, null);
+    Assertions.assertEquals(2, copy.size());
+    Assertions.assertEquals(1, copy.localSize());
+    Assertions.assertEquals("4.0.1", copy.get("http://url/ValueSet/234").getVersion());
+    Assertions.assertEquals("4.0.0", copy.get("http://url/ValueSet/234", "4.0.0").getVersion());
+    Assertions.assertEquals(2, copy.getForUrl("http://url/ValueSet/234").size());
+    Assertions.assertEquals(1, mrm.size());
+    Assertions.assertEquals("4.0.0", mrm.get("http://url/ValueSet/234").getVersion());
+    Assertions.assertNull(mrm.get("2346"));
+
+    // dropping shared content from the copy doesn't drop it from the source
+    copy.drop("2345");
+    Assertions.assertEquals(1, copy.size());
+    Assertions.assertNull(copy.get("2345"));
+    Assertions.assertEquals("4.0.1", copy.get("http://url/ValueSet/234").getVersion());
+    Assertions.assertNotNull(mrm.get("2345"));
+    Assertions.assertEquals(1, mrm.getList().size());
+
+    // and changes to the source don't show in the copy
+    ValueSet vs3 = new ValueSet();
+    vs3.setId("2347");
+    vs3.setUrl("http://url/ValueSet/235");
+    mrm.see(vs3, null);
+    Assertions.assertEquals(2, mrm.size());
+    Assertions.assertNull(copy.get("http://url/ValueSet/235"));
+
+    // a copy of a copy
+    CanonicalResourceManager<ValueSet> copy2 = new CanonicalResourceManager<>(true, false);
+    copy2.copy(copy);
+    Assertions.assertEquals(1, copy2.size());
+    Assertions.assertNull(copy2.get("2345"));
+    Assertions.assertNotNull(copy2.get("2346"));
+    Assertions.assertTrue(copy2.keys().contains("http://url/ValueSet/234|4.0.1"));
+    Assertions.assertFalse(copy2.keys().contains("http://url/ValueSet/234|4.0.0"));
+  }
+
+  @Test
+  public void testCopyAndUnload() {
+    int[] loads = new int[1];
+    CanonicalResourceManager<ValueSet> mrm = new CanonicalResourceManager<>(true, false);
+    mrm.register(new CanonicalResourceProxy("ValueSet", "2345", "http://url/ValueSet/234", "4.0.0", null, null, null) {
+      @Override
+      public CanonicalResource loadResource() {
+        loads[0]++;
+        ValueSet vs = new ValueSet();
+        vs.setId("2345");
+        vs.setUrl("http://url/ValueSet/234");
+        vs.setVersion("4.0.0");
+        return vs;
+      }
+    }, null);
+    Assertions.assertNotNull(mrm.get("http://url/ValueSet/234"));
+    Assertions.assertEquals(1, loads[0]);
+
+    CanonicalResourceManager<ValueSet> copy = new CanonicalResourceManager<>(true, false);
+    copy.copy(mrm);
+    Assertions.assertNotNull(copy.get("http://url/ValueSet/234"));
+    Assertions.assertEquals(1, loads[0]);
+
+    // the resource is in the frozen layer now, which is shared, so unloading the copy leaves it alone
+    copy.unload();
+    mrm.unload();
+    Assertions.assertEquals("4.0.0", copy.get("http://url/ValueSet/234").getVersion());
+    Assertions.assertNotNull(mrm.get("http://url/ValueSet/234"));
+    Assertions.assertEquals(1, loads[0]);
+    Assertions.assertEquals(1, copy.size());
+
+    // dropped from the copy, so hidden from everything that reads it, but not from the source
+    copy.drop("2345");
+    Assertions.assertFalse(copy.has("http://url/ValueSet/234"));
+    Assertions.assertNull(copy.get("http://url/ValueSet/234", "4.0.0"));
+    Assertions.assertTrue(copy.getList().isEmpty());
+    Assertions.assertEquals(0, copy.size());
+    Assertions.assertFalse(copy.keys().contains("http://url/ValueSet/234"));
+    copy.drop("2345"); // already gone
+    Assertions.assertEquals(0, copy.size());
+    Assertions.assertTrue(mrm.has("http://url/ValueSet/234"));
+    Assertions.assertEquals(1, mrm.getList().size());
+    Assertions.assertEquals(1, mrm.size());
+    Assertions.assertTrue(mrm.keys().contains("http://url/ValueSet/234"));
+  }
 }
\ No newline at end of file
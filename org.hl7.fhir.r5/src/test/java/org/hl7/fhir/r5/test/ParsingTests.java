@@ -1,6 +1,7 @@
 package org.hl7.fhir.r5.test;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
@@ -10,7 +11,10 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.hl7.fhir.exceptions.FHIRFormatError;
 import org.hl7.fhir.r5.formats.IParser.OutputStyle;
 import org.hl7.fhir.r5.formats.JsonParser;
+import org.hl7.fhir.r5.formats.ParserFactory;
 import org.hl7.fhir.r5.formats.XmlParser;
+import org.hl7.fhir.r5.model.Bundle;
+import org.hl7.fhir.r5.model.ListResource;
 import org.hl7.fhir.r5.model.Resource;
 import org.hl7.fhir.r5.test.utils.CompareUtilities;
 import org.hl7.fhir.r5.test.utils.TestingUtilities;
@@ -19,6 +23,7 @@ import org.hl7.fhir.utilities.npm.FilesystemPackageCacheManager;
 import org.hl7.fhir.utilities.npm.NpmPackage;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -62,4 +67,55 @@ public class ParsingTests {
     Assertions.assertTrue(msg == null, msg);
   }
 
-}
\ No newline at end of file
+  @ParameterizedTest(name = "{index}: file {0}")
+  @MethodSource("data")
+  public void testStreaming(String name) throws Exception {
+    byte[] b = TextFile.streamToBytes(npm.load("package", name));
+    Resource tree = new JsonParser().parse(b);
+    Resource streamed = new JsonParser().setStreamBundleEntries(true).parse(b);
+    Assertions.assertEquals(new JsonParser().composeString(tree), new JsonParser().composeString(streamed));
+  }
+
+  private static final String NESTED_BUNDLE = "{\"resourceType\":\"Bundle\",\"type\":\"collection\",\"entry\":["
+      + "{\"fullUrl\":\"http://example.org/Observation/1\",\"resource\":{\"resourceType\":\"Observation\",\"status\":\"final\","
+      + "\"code\":{\"text\":\"weight\"},\"valueQuantity\":{\"value\":1.50,\"unit\":\"kg\"}}},"
+      + "{\"resource\":{\"resourceType\":\"Bundle\",\"type\":\"collection\",\"entry\":[{\"resource\":{\"resourceType\":\"Patient\",\"active\":true}}]},"
+      + "\"search\":{\"mode\":\"match\"}}]}";
+
+  @Test
+  public void testStreamingNestedBundle() throws Exception {
+    byte[] b = NESTED_BUNDLE.getBytes(StandardCharsets.UTF_8);
+    Resource tree = new JsonParser().parse(b);
+    Bundle streamed = (Bundle) new JsonParser().setStreamBundleEntries(true).parse(b);
+    Assertions.assertEquals(new JsonParser().composeString(tree), new JsonParser().composeString(streamed));
+    Bundle inner = (Bundle) streamed.getEntry().get(1).getResource();
+    Assertions.assertEquals("Patient", inner.getEntryFirstRep().getResource().fhirType());
+  }
+
+  // the resourceType doesn't have to come first
+  private static final String ENTRIES_FIRST_BUNDLE = "{\"entry\":["
+      + "{\"resource\":{\"status\":\"final\",\"code\":{\"text\":\"weight\"},\"resourceType\":\"Observation\"},\"fullUrl\":\"http://example.org/Observation/1\"},"
+      + "{\"search\":{\"mode\":\"match\"},\"resource\":{\"entry\":[{\"resource\":{\"resourceType\":\"Patient\",\"active\":true}}],\"type\":\"collection\",\"resourceType\":\"Bundle\"}}],"
+      + "\"type\":\"collection\",\"resourceType\":\"Bundle\",\"id\":\"b1\"}";
+  private static final String ENTRIES_FIRST_LIST = "{\"entry\":[{\"item\":{\"reference\":\"Patient/1\"},\"resource\":{\"resourceType\":\"Patient\"}}],"
+      + "\"status\":\"current\",\"mode\":\"working\",\"resourceType\":\"List\"}";
+
+  @Test
+  public void testStreamingEntriesBeforeResourceType() throws Exception {
+    byte[] b = ENTRIES_FIRST_BUNDLE.getBytes(StandardCharsets.UTF_8);
+    Resource tree = new JsonParser().parse(b);
+    Bundle streamed = (Bundle) ParserFactory.bundleEntryStreamingParser().parse(b);
+    Assertions.assertEquals(new JsonParser().composeString(tree), new JsonParser().composeString(streamed));
+    Assertions.assertEquals(2, streamed.getEntry().size());
+    Bundle inner = (Bundle) streamed.getEntry().get(1).getResource();
+    Assertions.assertEquals("Patient", inner.getEntryFirstRep().getResource().fhirType());
+
+    // and when it turns out not to be a Bundle
+    b = ENTRIES_FIRST_LIST.getBytes(StandardCharsets.UTF_8);
+    tree = new JsonParser().parse(b);
+    Resource list = ParserFactory.bundleEntryStreamingParser().parse(b);
+    Assertions.assertEquals(new JsonParser().composeString(tree), new JsonParser().composeString(list));
+    Assertions.assertEquals("Patient/1", ((ListResource) list).getEntryFirstRep().getItem().getReference());
+  }
+
+}
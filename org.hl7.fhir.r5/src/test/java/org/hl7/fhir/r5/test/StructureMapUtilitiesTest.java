@@ -3,6 +3,7 @@ package org.hl7.fhir.r5.test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.hl7.fhir.exceptions.FHIRException;
@@ -13,10 +14,14 @@ import org.hl7.fhir.r5.elementmodel.Manager.FhirFormat;
 import org.hl7.fhir.r5.fhirpath.FHIRPathEngine;
 import org.hl7.fhir.r5.model.Base;
 import org.hl7.fhir.r5.model.Coding;
+import org.hl7.fhir.r5.model.DateType;
+import org.hl7.fhir.r5.model.Enumerations.AdministrativeGender;
+import org.hl7.fhir.r5.model.Patient;
 import org.hl7.fhir.r5.model.StructureMap;
 import org.hl7.fhir.r5.model.StructureMap.StructureMapGroupRuleTargetComponent;
 import org.hl7.fhir.r5.test.utils.TestingUtilities;
 import org.hl7.fhir.r5.utils.structuremap.ITransformerServices;
+import org.hl7.fhir.r5.utils.structuremap.StructureMapPlan;
 import org.hl7.fhir.r5.utils.structuremap.StructureMapUtilities;
 import org.hl7.fhir.utilities.npm.FilesystemPackageCacheManager;
 import org.junit.jupiter.api.Assertions;
@@ -135,6 +140,54 @@ public class StructureMapUtilitiesTest implements ITransformerServices {
     Assertions.assertEquals("-backtick", structureMap.getGroup().get(0).getRule().get(2).getSourceFirstRep().getElement());
   }
 
+  @Test
+  public void testCompiledPlan() throws IOException, FHIRException {
+    StructureMapUtilities scu = new StructureMapUtilities(context, this);
+    String fileMap = "map \"http://github.com/FHIR/testCompiledPlan\" = \"testCompiledPlan\"\r\n"
+      + "uses \"http://hl7.org/fhir/StructureDefinition/Patient\" alias Patient as source\r\n"
+      + "uses \"http://hl7.org/fhir/StructureDefinition/Patient\" alias PatientOut as target\r\n"
+      + "group Patient(source src : Patient, target tgt : PatientOut) {\r\n"
+      + "  src.gender as g -> tgt.gender = g;\r\n"
+      + "  src.birthDate as b where b.toString().startsWith('19') -> tgt.birthDate = b;\r\n"
+      + "  src.id as i -> tgt.id = (i + '-copy');\r\n"
+      + "}";
+    StructureMap structureMap = scu.parse(fileMap, "testCompiledPlan");
+    StructureMapPlan plan = scu.compile(structureMap);
+    Assertions.assertEquals(1, plan.getMaps().size());
+    Assertions.assertTrue(plan.size() > 0);
+
+    List<Base> sources = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      sources.add(new Patient().setGender(i % 2 == 0 ? AdministrativeGender.MALE : AdministrativeGender.FEMALE).setBirthDateElement(new DateType((1950 + i) + "-01-01")).setId("p" + i));
+    }
+    List<Base> targets = new ArrayList<>();
+    scu.transform(null, sources.iterator(), plan, s -> new Patient(), (s, t) -> targets.add(t), 4);
+    Assertions.assertEquals(100, targets.size());
+    for (int i = 0; i < 100; i++) {
+      Patient single = new Patient();
+      scu.transform(null, sources.get(i), structureMap, single);
+      Patient p = (Patient) targets.get(i);
+      Assertions.assertEquals("p" + i + "-copy", p.getIdBase());
+      Assertions.assertEquals(single.getIdBase(), p.getIdBase());
+      Assertions.assertEquals(single.getGender(), p.getGender());
+      Assertions.assertEquals(i < 50, p.hasBirthDate());
+      Assertions.assertEquals(single.hasBirthDate(), p.hasBirthDate());
+    }
+  }
+
+  @Test
+  public void testCompileMissingGroup() throws IOException, FHIRException {
+    StructureMapUtilities scu = new StructureMapUtilities(context, this);
+    String fileMap = "map \"http://github.com/FHIR/testCompileMissingGroup\" = \"testCompileMissingGroup\"\r\n"
+      + "uses \"http://hl7.org/fhir/StructureDefinition/Patient\" alias Patient as source\r\n"
+      + "uses \"http://hl7.org/fhir/StructureDefinition/Patient\" alias PatientOut as target\r\n"
+      + "group Patient(source src : Patient, target tgt : PatientOut) {\r\n"
+      + "  src.name as n -> tgt.name as tn then missing(n, tn);\r\n"
+      + "}";
+    StructureMap structureMap = scu.parse(fileMap, "testCompileMissingGroup");
+    Assertions.assertThrows(FHIRException.class, () -> scu.compile(structureMap));
+  }
+
   @Override
   public void log(String message) {
   }
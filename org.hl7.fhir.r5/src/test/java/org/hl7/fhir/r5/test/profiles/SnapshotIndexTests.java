@@ -0,0 +1,75 @@
+package org.hl7.fhir.r5.test.profiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hl7.fhir.r5.conformance.profile.ProfileUtilities;
+import org.hl7.fhir.r5.conformance.profile.SnapshotIndex;
+import org.hl7.fhir.r5.context.IWorkerContext;
+import org.hl7.fhir.r5.model.ElementDefinition;
+import org.hl7.fhir.r5.model.StructureDefinition;
+import org.hl7.fhir.r5.test.utils.TestingUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class SnapshotIndexTests {
+
+  /**
+   * The indexed answers must be the same as the linear scans; the scans are used for a copy
+   * of the structure that claims to be generating its snapshot
+   */
+  @ParameterizedTest
+  @ValueSource(strings = {"Bundle", "Questionnaire", "Observation", "bp", "Extension", "ElementDefinition"})
+  public void testSameAsScan(String name) {
+    IWorkerContext context = TestingUtilities.getSharedWorkerContext();
+    StructureDefinition sd = context.fetchResource(StructureDefinition.class, "http://hl7.org/fhir/StructureDefinition/"+name);
+    Assertions.assertNotNull(sd);
+    StructureDefinition scanned = sd.copy();
+    scanned.setUserData("profileutils.snapshot.generating", true);
+
+    ProfileUtilities indexed = new ProfileUtilities(context, new ArrayList<>(), null);
+    ProfileUtilities scanning = new ProfileUtilities(context, new ArrayList<>(), null);
+    List<ElementDefinition> elements = sd.getSnapshot().getElement();
+    List<ElementDefinition> copies = scanned.getSnapshot().getElement();
+    for (int i = 0; i < elements.size(); i++) {
+      ElementDefinition ed = elements.get(i);
+      ElementDefinition copy = copies.get(i);
+      Assertions.assertEquals(ids(scanning.getChildList(scanned, copy)), ids(indexed.getChildList(sd, ed)), ed.getId());
+      Assertions.assertEquals(ids(scanning.getChildList(scanned, copy.getPath(), null)), ids(indexed.getChildList(sd, ed.getPath(), null)), ed.getPath());
+      Assertions.assertEquals(ids(scanning.getChildMap(scanned, copy).getList()), ids(indexed.getChildMap(sd, ed).getList()), ed.getId());
+      if (ed.hasSlicing()) {
+        Assertions.assertEquals(ids(scanning.getSliceList(scanned, copy)), ids(indexed.getSliceList(sd, ed)), ed.getId());
+      }
+    }
+    Assertions.assertTrue(sd.getSnapshotIndex() instanceof SnapshotIndex);
+    Assertions.assertNull(scanned.getSnapshotIndex());
+    Assertions.assertNull(sd.copy().getSnapshotIndex());
+  }
+
+  @Test
+  public void testRebuiltWhenSnapshotChanges() {
+    String name = "Patient";
+    IWorkerContext context = TestingUtilities.getSharedWorkerContext();
+    StructureDefinition sd = context.fetchResource(StructureDefinition.class, "http://hl7.org/fhir/StructureDefinition/"+name).copy();
+    ProfileUtilities pu = new ProfileUtilities(context, new ArrayList<>(), null);
+    int count = pu.getChildList(sd, sd.getSnapshot().getElementFirstRep()).size();
+
+    ElementDefinition extra = new ElementDefinition(name+".extra");
+    extra.setId(name+".extra");
+    sd.getSnapshot().getElement().add(extra);
+    Assertions.assertEquals(count + 1, pu.getChildList(sd, sd.getSnapshot().getElementFirstRep()).size());
+
+    extra.setPath(name+".extra.child");
+    Assertions.assertEquals(count, pu.getChildList(sd, sd.getSnapshot().getElementFirstRep()).size());
+  }
+
+  private List<String> ids(List<ElementDefinition> list) {
+    List<String> res = new ArrayList<>();
+    for (ElementDefinition ed : list) {
+      res.add(ed.getId());
+    }
+    return res;
+  }
+}
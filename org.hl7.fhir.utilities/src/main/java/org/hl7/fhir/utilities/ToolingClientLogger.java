@@ -40,4 +40,11 @@ public interface ToolingClientLogger {
   String getLastId();
   void clearLastId();
 
+  /**
+   * Requests may be logged on another thread than the one that uses the result (e.g. when they are
+   * made in the background); this makes the id of the request that was logged there the last id here
+   */
+  default void setLastId(String id) {
+  }
+
 }
\ No newline at end of file
@@ -2,10 +2,15 @@ package org.hl7.fhir.utilities.i18n;
 
 import java.text.MessageFormat;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
@@ -22,7 +27,11 @@ public abstract class I18nBase {
   public static final String PLURAL_SUFFIX = "PLURAL";
   public static final String KEY_DELIMITER = "_";
   protected Locale locale;
-  private ResourceBundle messages;
+  // the parsed messages of each bundle. Kept by bundle rather than by context, so that a message formatted
+  // later (see formatMessageLater) uses the bundle that was in use when it was created
+  private static final Map<ResourceBundle, Map<String, MessageFormat>> FORMATS = Collections.synchronizedMap(new WeakHashMap<>());
+
+  private volatile ResourceBundle messages;
   private PluralRules pluralRules;
   private boolean warnAboutMissingMessages = true;
 
@@ -120,15 +129,72 @@ public abstract class I18nBase {
     return null;
   }
   private String formatMessageForLocale(String theMessage, Object... theMessageArguments) {
-    String message = theMessage;
     if (messageExistsForLocale(theMessage, (theMessageArguments != null && theMessageArguments.length > 0))) {
+      return formatMessage(messages, theMessage, theMessageArguments);
+    } else {
+      return theMessage;
+    }
+  }
+
+  private static String formatMessage(ResourceBundle bundle, String theMessage, Object... theMessageArguments) {
+    MessageFormat format = getMessageFormat(bundle, theMessage);
+    // a MessageFormat can't be used by more than one thread at a time
+    synchronized (format) {
       if (Objects.nonNull(theMessageArguments) && theMessageArguments.length > 0) {
-        message = MessageFormat.format(messages.getString(theMessage).trim(), theMessageArguments);
+        return format.format(theMessageArguments);
       } else {
-        message = MessageFormat.format(messages.getString(theMessage).trim(), (Object) null);
+        return format.format(new Object[] { null });
       }
     }
-    return message;
+  }
+
+  /**
+   * Parsing the pattern of a message is most of the cost of formatting it, so each message is only
+   * parsed the first time it is used (in a locale)
+   */
+  private static MessageFormat getMessageFormat(ResourceBundle bundle, String theMessage) {
+    Map<String, MessageFormat> bundleFormats = FORMATS.computeIfAbsent(bundle, b -> new ConcurrentHashMap<>());
+    MessageFormat format = bundleFormats.get(theMessage);
+    if (format == null) {
+      format = new MessageFormat(bundle.getString(theMessage).trim());
+      bundleFormats.put(theMessage, format);
+    }
+    return format;
+  }
+
+  /**
+   * Like formatMessage, but the message is only formatted when (and if) the supplier is called. It is
+   * formatted with the messages of the locale that is in use now, and the arguments are turned into
+   * strings now (except for numbers and dates, which the message may format), so the message is the same
+   * whenever it's formatted, and doesn't keep the arguments alive
+   */
+  public Supplier<String> formatMessageLater(String theMessage, Object... theMessageArguments) {
+    if (!messageExistsForLocale(theMessage, (theMessageArguments != null && theMessageArguments.length > 0))) {
+      return () -> theMessage;
+    }
+    ResourceBundle bundle = messages;
+    Object[] args = snapshotArguments(theMessageArguments);
+    return () -> formatMessage(bundle, theMessage, args);
+  }
+
+  /**
+   * Like formatMessagePlural, but the message is only formatted when (and if) the supplier is called - see formatMessageLater
+   */
+  public Supplier<String> formatMessagePluralLater(Integer plural, String theMessage, Object... theMessageArguments) {
+    checkPluralRulesAreLoaded();
+    return formatMessageLater(getPluralKey(plural, theMessage), pluralArguments(plural, theMessageArguments));
+  }
+
+  private static Object[] snapshotArguments(Object[] theMessageArguments) {
+    if (theMessageArguments == null) {
+      return null;
+    }
+    Object[] res = new Object[theMessageArguments.length];
+    for (int i = 0; i < theMessageArguments.length; i++) {
+      Object arg = theMessageArguments[i];
+      res[i] = arg == null || arg instanceof Number || arg instanceof Date ? arg : String.valueOf(arg);
+    }
+    return res;
   }
 
   /**
@@ -146,15 +212,18 @@ public abstract class I18nBase {
    * @return The formatted, internationalized, {@link String}
    */
   public String formatMessagePlural(Integer plural, String theMessage, Object... theMessageArguments) {
+    checkPluralRulesAreLoaded();
+    String pluralKey = getPluralKey(plural, theMessage);
+    return formatMessageForLocale(pluralKey, pluralArguments(plural, theMessageArguments));
+  }
 
+  private static Object[] pluralArguments(Integer plural, Object... theMessageArguments) {
     Object[] args = new Object[theMessageArguments.length+1];
     args[0] = plural;
     for (int i = 0; i < theMessageArguments.length; i++) {
       args[i+1] = theMessageArguments[i];
     }
-    checkPluralRulesAreLoaded();
-    String pluralKey = getPluralKey(plural, theMessage);
-    return formatMessageForLocale(pluralKey, args);
+    return args;
   }
 
   /**
@@ -75,7 +75,6 @@ import org.hl7.fhir.utilities.http.HTTPResult;
 import org.hl7.fhir.utilities.http.ManagedWebAccess;
 import org.hl7.fhir.utilities.json.JsonException;
 import org.hl7.fhir.utilities.json.model.JsonArray;
-import org.hl7.fhir.utilities.json.model.JsonElement;
 import org.hl7.fhir.utilities.json.model.JsonObject;
 import org.hl7.fhir.utilities.json.model.JsonProperty;
 import org.hl7.fhir.utilities.json.parser.JsonParser;
@@ -185,6 +184,9 @@ public class NpmPackage {
     private Map<String, byte[]> content;
     private JsonObject cachedIndex;
     private File folder;
+    private NpmPackageIndexDatabase indexDb;
+    private boolean indexDbChecked;
+    private boolean typesFromDb;
 
     public NpmPackageFolder(String folderName) {
       super();
@@ -200,7 +202,17 @@ public class NpmPackage {
     }
 
     public Map<String, List<String>> getTypes() throws JsonException, IOException {
-      if (minimalMemory) {
+      if (indexDatabase() != null) {
+        if (minimalMemory) {
+          return indexDatabase().getTypes();
+        }
+        if (!typesFromDb) {
+          types.clear();
+          types.putAll(indexDatabase().getTypes());
+          typesFromDb = true;
+        }
+        return types;
+      } else if (minimalMemory) {
         Map<String, List<String>> typeMap = new HashMap<>();
         readIndex(JsonParser.parseObjectFromFile(fn(".index.json")), typeMap);
         return typeMap;
@@ -221,7 +233,7 @@ public class NpmPackage {
       if (!index.has("index-version") || (index.asInteger("index-version") != NpmPackageIndexBuilder.CURRENT_INDEX_VERSION)) {
         return false;
       }
-      if (!minimalMemory) {
+      if (!minimalMemory && indexDatabase() == null) {
         this.cachedIndex = index;
       }
       for (JsonObject file : index.getJsonObjects("files")) {
@@ -234,6 +246,137 @@ public class NpmPackage {
       return true;
     }
 
+    /**
+     * @return the .index.db for this folder, if it has a usable one. Only folders on disk can have one
+     */
+    public NpmPackageIndexDatabase indexDatabase() {
+      if (!indexDbChecked && folder != null) {
+        indexDbChecked = true;
+        indexDb = NpmPackageIndexDatabase.open(folder);
+      }
+      return indexDb;
+    }
+
+    /**
+     * check for the .index.db again (after it's been written). If there's one now, 
+     * there's no need to keep the index in memory
+     */
+    private void reopenIndexDatabase() {
+      closeIndexDatabase();
+      indexDbChecked = false;
+      indexDb = null;
+      if (indexDatabase() != null) {
+        cachedIndex = null;
+        typesFromDb = false;
+        if (types != null) {
+          types.clear();
+        }
+      }
+    }
+
+    /**
+     * stop using the .index.db, if there is one, until reopenIndexDatabase() is called
+     */
+    private void detachIndexDatabase() {
+      closeIndexDatabase();
+      indexDbChecked = true;
+      indexDb = null;
+    }
+
+    /**
+     * release the connection to the .index.db. It's opened again if there are more queries 
+     */
+    public void closeIndexDatabase() {
+      if (indexDb != null) {
+        indexDb.close();
+      }
+    }
+
+    /**
+     * @return the types map, for changing. The .index.db doesn't know about files that are added 
+     * to the folder, so once the folder is changed, it's not used any more (the index queries go 
+     * back to .index.json)
+     */
+    private Map<String, List<String>> typesForUpdate() {
+      if (indexDatabase() != null) {
+        try {
+          getTypes();
+          detachIndexDatabase();
+          // read the .index.json once, rather than for every query  
+          cachedIndex = index();
+        } catch (IOException e) {
+          throw new FHIRException(e.getMessage(), e);
+        }
+      }
+      return types;
+    }
+
+    public boolean isIndexed() throws IOException {
+      if (indexDatabase() != null) {
+        return indexDatabase().count() > 0;
+      } else {
+        JsonObject index = index();
+        return index != null && index.forceArray("files").size() > 0;
+      }
+    }
+
+    /**
+     * @return the index entries for the resources of the given types (or all the resources, if types is empty)
+     */
+    public List<JsonObject> listIndexedFiles(List<String> types) throws IOException {
+      if (indexDatabase() != null) {
+        return indexDatabase().listFiles(types);
+      }
+      List<JsonObject> res = new ArrayList<>();
+      JsonObject index = index();
+      if (index != null) {
+        for (JsonObject fi : index.getJsonObjects("files")) {
+          if (types.isEmpty() || Utilities.existsInList(fi.asString("resourceType"), types)) {
+            res.add(fi);
+          }
+        }
+      }
+      return res;
+    }
+
+    /**
+     * @return the index entries for the resources with the given canonical URL
+     */
+    public List<JsonObject> findByUrl(String url) throws IOException {
+      if (indexDatabase() != null) {
+        return indexDatabase().findByUrl(url);
+      }
+      List<JsonObject> res = new ArrayList<>();
+      JsonObject index = index();
+      if (index != null) {
+        for (JsonObject fi : index.getJsonObjects("files")) {
+          if (url.equals(fi.asString("url"))) {
+            res.add(fi);
+          }
+        }
+      }
+      return res;
+    }
+
+    /**
+     * @return the index entries for the resources with the given type and id
+     */
+    public List<JsonObject> findById(String type, String id) throws IOException {
+      if (indexDatabase() != null) {
+        return indexDatabase().findById(type, id);
+      }
+      List<JsonObject> res = new ArrayList<>();
+      JsonObject index = index();
+      if (index != null) {
+        for (JsonObject fi : index.getJsonObjects("files")) {
+          if (type.equals(fi.asString("resourceType")) && id.equals(fi.asString("id"))) {
+            res.add(fi);
+          }
+        }
+      }
+      return res;
+    }
+
     public List<String> listFiles() {
       List<String> res = new ArrayList<>();
       if (folder != null) {
@@ -429,13 +572,7 @@ public class NpmPackage {
           this.folders.put(d, folder);
           if (ij.exists() || !minimalMemory) {
             if (!minimalMemory) {
-              try {
-                if (!ij.exists() || !folder.readIndex(JsonParser.parseObject(ij), folder.getTypes())) {
-                  indexFolder(folder.getFolderName(), folder);
-                }
-              } catch (Exception e) {
-                throw new IOException("Error parsing "+ij.getAbsolutePath()+": "+e.getMessage(), e);
-              }
+              readFolderIndex(folder, ij);
             }
           }
           loadSubFolders(dir.getAbsolutePath(), f);
@@ -465,19 +602,34 @@ public class NpmPackage {
         this.folders.put(d, folder);
         File ij = ManagedFileAccess.file(Utilities.path(f.getAbsolutePath(), ".index.json"));
         if (ij.exists() || !minimalMemory) {
-          try {
-            if (!ij.exists() || !folder.readIndex(JsonParser.parseObject(ij), folder.getTypes())) {
-              indexFolder(folder.getFolderName(), folder);
-            }
-          } catch (Exception e) {
-            throw new IOException("Error parsing "+ij.getAbsolutePath()+": "+e.getMessage(), e);
-          }
+          readFolderIndex(folder, ij);
         }
         loadSubFolders(rootPath, f);        
       }
     }    
   }
 
+  /**
+   * If the folder has a usable .index.db, there's nothing to read - queries will go to it. 
+   * Otherwise, read the .index.json (or index the folder if there isn't one), and build the 
+   * .index.db from it, so that next time the package is loaded, it doesn't need to be read
+   */
+  private void readFolderIndex(NpmPackageFolder folder, File ij) throws IOException {
+    try {
+      if (folder.indexDatabase() != null) {
+        return;
+      }
+      JsonObject index = ij.exists() ? JsonParser.parseObject(ij) : null;
+      if (index == null || !folder.readIndex(index, folder.getTypes())) {
+        indexFolder(folder.getFolderName(), folder);
+      } else if (NpmPackageIndexBuilder.buildDatabase(index, Utilities.path(folder.folder.getAbsolutePath(), ".index.db"))) {
+        folder.reopenIndexDatabase();
+      }
+    } catch (Exception e) {
+      throw new IOException("Error parsing "+ij.getAbsolutePath()+": "+e.getMessage(), e);
+    }
+  }
+
   public static NpmPackage fromFolder(String folder, PackageType defType, String... exemptions) throws IOException {
     NpmPackage res = new NpmPackage();
     res.loadFiles(folder, ManagedFileAccess.file(folder), exemptions);
@@ -631,8 +783,7 @@ public class NpmPackage {
 
   public boolean isIndexed() throws IOException {
     for (NpmPackageFolder folder : folders.values()) {
-      JsonObject index = folder.index();
-      if (folder.index() == null || index.forceArray("files").size() == 0) {
+      if (!folder.isIndexed()) {
         return false;
       }
     }
@@ -642,8 +793,7 @@ public class NpmPackage {
 
   public void checkIndexed(String desc) throws IOException {
     for (NpmPackageFolder folder : folders.values()) {
-      JsonObject index = folder.index();
-      if (index == null || index.forceArray("files").size() == 0) {
+      if (!folder.isIndexed()) {
         indexFolder(desc, folder);
       }  
     }
@@ -674,10 +824,13 @@ public class NpmPackage {
       folder.removeFile(n);
     }
     String json = indexer.build();
+    folder.detachIndexDatabase();
     
     try {
       if (!minimalMemory) {
-        folder.readIndex(JsonParser.parseObject(json), folder.getTypes());
+        Map<String, List<String>> typeMap = new HashMap<>();
+        folder.readIndex(JsonParser.parseObject(json), typeMap);
+        folder.types = typeMap;
       }
       if (folder.folder != null) {
         TextFile.stringToFile(json, Utilities.path(folder.folder.getAbsolutePath(), ".index.json"));
@@ -686,6 +839,7 @@ public class NpmPackage {
       TextFile.stringToFile(json, Utilities.path("[tmp]", ".index.json"));
       throw new IOException("Error parsing "+(desc == null ? "" : desc+"#")+"package/"+folder.folderName+"/.index.json: "+e.getMessage(), e);
     }
+    folder.reopenIndexDatabase();
   }
 
 
@@ -757,16 +911,17 @@ public class NpmPackage {
   public List<String> listResources(List<String> types) throws IOException {
     List<String> res = new ArrayList<String>();
     NpmPackageFolder folder = folders.get("package");
+    Map<String, List<String>> folderTypes = folder.getTypes();
     if (types.size() == 0) {
-      for (String s : folder.types.keySet()) {
-        if (folder.types.containsKey(s)) {
-          res.addAll(folder.types.get(s));
+      for (String s : folderTypes.keySet()) {
+        if (folderTypes.containsKey(s)) {
+          res.addAll(folderTypes.get(s));
         }
       }
     } else {
       for (String s : types) {
-        if (folder.types.containsKey(s)) {
-          res.addAll(folder.types.get(s));
+        if (folderTypes.containsKey(s)) {
+          res.addAll(folderTypes.get(s));
         }
       }
     }
@@ -781,13 +936,8 @@ public class NpmPackage {
   public List<PackageResourceInformation> listIndexedResources(List<String> types) throws IOException {
     List<PackageResourceInformation> res = new ArrayList<PackageResourceInformation>();
     for (NpmPackageFolder folder : folders.values()) {
-      JsonObject index = folder.index();
-      if (index != null) {
-        for (JsonObject fi : index.getJsonObjects("files")) {
-          if (Utilities.existsInList(fi.asString("resourceType"), types) || types.isEmpty()) {
-            res.add(new PackageResourceInformation(folder.folder == null ? "@"+folder.getFolderName() : folder.folder.getAbsolutePath(), fi));
-          }
-        }
+      for (JsonObject fi : folder.listIndexedFiles(types)) {
+        res.add(new PackageResourceInformation(folder.folder == null ? "@"+folder.getFolderName() : folder.folder.getAbsolutePath(), fi));
       }
     } 
     //    Collections.sort(res, new PackageResourceInformationSorter());
@@ -855,21 +1005,19 @@ public class NpmPackage {
   public InputStream loadByCanonicalVersion(String folder, String canonical, String version) throws IOException {
     NpmPackageFolder f = folders.get(folder);
     List<JsonObject> matches = new ArrayList<>();
-    for (JsonObject file : f.index().getJsonObjects("files")) {
-      if (canonical.equals(file.asString("url"))) {
-        if (version != null && version.equals(file.asString("version"))) {
-          return load("package", file.asString("filename"));
-        } else if (version == null) {
-          matches.add(file);
-        }
+    for (JsonObject file : f.findByUrl(canonical)) {
+      if (version != null && version.equals(file.asString("version"))) {
+        return load("package", file.asString("filename"));
+      } else if (version == null) {
+        matches.add(file);
       }
-      if (matches.size() > 0) {
-        if (matches.size() == 1) {
-          return load("package", matches.get(0).asString("filename"));          
-        } else {
-          Collections.sort(matches, new IndexVersionSorter());
-          return load("package", matches.get(matches.size()-1).asString("filename"));          
-        }
+    }
+    if (matches.size() > 0) {
+      if (matches.size() == 1) {
+        return load("package", matches.get(0).asString("filename"));          
+      } else {
+        Collections.sort(matches, new IndexVersionSorter());
+        return load("package", matches.get(matches.size()-1).asString("filename"));          
       }
     }
     return null;        
@@ -1103,12 +1251,8 @@ public class NpmPackage {
 
   public InputStream loadResource(String type, String id) throws IOException {
     NpmPackageFolder f = folders.get("package");
-    JsonArray files = f.index().getJsonArray("files");
-    for (JsonElement e : files.getItems()) {
-      JsonObject i = (JsonObject) e;
-      if (type.equals(i.asString("resourceType")) && id.equals(i.asString("id"))) {
-        return load("package", i.asString("filename"));
-      }
+    for (JsonObject i : f.findById(type, id)) {
+      return load("package", i.asString("filename"));
     }
     return null;
   }
@@ -1119,12 +1263,8 @@ public class NpmPackage {
       f = folders.get("package/example");      
     }
     if (f != null) {
-      JsonArray files = f.index().getJsonArray("files");
-      for (JsonElement e : files.getItems()) {
-        JsonObject i = (JsonObject) e;
-        if (type.equals(i.asString("resourceType")) && id.equals(i.asString("id"))) {
-          return load("example", i.asString("filename"));
-        }
+      for (JsonObject i : f.findById(type, id)) {
+        return load("example", i.asString("filename"));
       }
     }
     return null;
@@ -1239,11 +1379,25 @@ public class NpmPackage {
 //    stream.write(b);
   }
 
+  /**
+   * Release the connections to the .index.db files in the package folders, so that the files 
+   * aren't held open (which matters on Windows). They are opened again if there are more queries
+   */
+  public void closeIndexDatabases() {
+    for (NpmPackageFolder folder : folders.values()) {
+      folder.closeIndexDatabase();
+    }
+  }
+
   /**
    * Keys are resource type names, values are filenames
    */
   public Map<String, List<String>> getTypes() {
-    return folders.get("package").types;
+    try {
+      return folders.get("package").getTypes();
+    } catch (IOException e) {
+      throw new FHIRException(e.getMessage(), e);
+    }
   }
 
   public String fhirVersionList() {
@@ -1337,7 +1491,7 @@ public class NpmPackage {
   public void clearFolder(String folderName) {
     NpmPackageFolder folder = folders.get(folderName);
     folder.content.clear();
-    folder.types.clear();    
+    folder.typesForUpdate().clear();    
   }
 
   public void deleteFolder(String folderName) {
@@ -1352,9 +1506,10 @@ public class NpmPackage {
     }
     NpmPackageFolder folder = folders.get(folderName);
     folder.content.put(name, cnt);
-    if (!folder.types.containsKey(type))
-      folder.types.put(type, new ArrayList<>());
-    folder.types.get(type).add(name);
+    Map<String, List<String>> types = folder.typesForUpdate();
+    if (!types.containsKey(type))
+      types.put(type, new ArrayList<>());
+    types.get(type).add(name);
     if ("package".equals(folderName) && "package.json".equals(name)) {
       try {
         npm = JsonParser.parseObject(cnt);
@@ -1415,11 +1570,9 @@ public class NpmPackage {
     String v = url.contains("|") ?  url.substring(url.indexOf("|")+1) : null;
     NpmPackageFolder folder = folders.get("package");
     if (folder != null) {
-      for (JsonObject o : folder.index().getJsonObjects("files")) {
-        if (u.equals(o.asString("url"))) {
-          if (v == null || v.equals(o.asString("version"))) {
-            return true;
-          }
+      for (JsonObject o : folder.findByUrl(u)) {
+        if (v == null || v.equals(o.asString("version"))) {
+          return true;
         }
       }
     }
@@ -1438,7 +1591,7 @@ public class NpmPackage {
     if (npm.asBoolean("lazy-load")) {
       return true;
     }
-    if (!hasFile("other", "spec.internals") && folders.get("package").cachedIndex == null) {
+    if (!hasFile("other", "spec.internals") && folders.get("package").cachedIndex == null && folders.get("package").indexDatabase() == null) {
       return false;
     }
     return true;
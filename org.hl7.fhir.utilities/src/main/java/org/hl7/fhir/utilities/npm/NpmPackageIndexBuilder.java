@@ -2,6 +2,8 @@ package org.hl7.fhir.utilities.npm;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -9,6 +11,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 
 import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.utilities.CommaSeparatedStringBuilder;
@@ -30,6 +33,11 @@ import org.hl7.fhir.utilities.json.parser.JsonParser;
 public class NpmPackageIndexBuilder {
   
   public static final Integer CURRENT_INDEX_VERSION = 2;
+  /**
+   * stored as the user_version of the .index.db. Databases with any other version are 
+   * ignored (and rebuilt from the .index.json) by NpmPackageIndexDatabase
+   */
+  public static final int CURRENT_DB_VERSION = 1;
   private JsonObject index;
   private JsonArray files;
   private Connection conn;
@@ -61,8 +69,11 @@ public class NpmPackageIndexBuilder {
             "ValueSet       nvarchar NULL,\r\n"+
             "Derivation     nvarchar NULL,\r\n"+
             "PRIMARY KEY (FileName))\r\n");
+        stmt.execute("CREATE INDEX ResourceListType ON ResourceList (ResourceType, Id)");
+        stmt.execute("CREATE INDEX ResourceListUrl ON ResourceList (Url)");
+        conn.setAutoCommit(false);
 
-        psql = conn.prepareStatement("Insert into ResourceList (FileName, ResourceType, Id, Url, Version, Kind, Type, Supplements, Content, ValueSet) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        psql = conn.prepareStatement("Insert into ResourceList (FileName, ResourceType, Id, Url, Version, Kind, Type, Supplements, Content, ValueSet, Derivation) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
       } catch (Exception e) {
         if (conn != null) { 
           try {
@@ -113,20 +124,7 @@ public class NpmPackageIndexBuilder {
             fi.add("derivation", json.asString("derivation"));
           }
           
-          if (psql != null) {
-            psql.setString(1, name); // FileName); 
-            psql.setString(2, json.asString("resourceType")); // ResourceType"); 
-            psql.setString(3, json.asString("id")); // Id"); 
-            psql.setString(4, json.asString("url")); // Url"); 
-            psql.setString(5, json.asString("version")); // Version"); 
-            psql.setString(6, json.asString("kind")); // Kind");
-            psql.setString(7, json.asString("type")); // Type"); 
-            psql.setString(8, json.asString("supplements")); // Supplements"); 
-            psql.setString(9, json.asString("content")); // Content");
-            psql.setString(10, json.asString("valueSet")); // ValueSet");
-            psql.setString(10, json.asString("derivation")); // ValueSet");
-            psql.execute();
-          }
+          addToDatabase(name, json);
         }
       } catch (Exception e) {
 //        System.out.println("Error parsing "+name+": "+e.getMessage());
@@ -138,9 +136,28 @@ public class NpmPackageIndexBuilder {
     return true;
   }
 
+  private void addToDatabase(String name, JsonObject json) throws SQLException {
+    if (psql != null) {
+      psql.setString(1, name); // FileName); 
+      psql.setString(2, json.asString("resourceType")); // ResourceType"); 
+      psql.setString(3, json.asString("id")); // Id"); 
+      psql.setString(4, json.asString("url")); // Url"); 
+      psql.setString(5, json.asString("version")); // Version"); 
+      psql.setString(6, json.asString("kind")); // Kind");
+      psql.setString(7, json.asString("type")); // Type"); 
+      psql.setString(8, json.asString("supplements")); // Supplements"); 
+      psql.setString(9, json.asString("content")); // Content");
+      psql.setString(10, json.asString("valueSet")); // ValueSet");
+      psql.setString(11, json.asString("derivation")); // Derivation");
+      psql.execute();
+    }
+  }
+
   public String build() {
     try {
       if (conn != null) {
+        conn.createStatement().execute("PRAGMA user_version = "+CURRENT_DB_VERSION);
+        conn.commit();
         conn.close();
       }
     } catch (Exception e) {
@@ -215,6 +232,38 @@ public class NpmPackageIndexBuilder {
     new NpmPackageIndexBuilder().executeWithStatus("C:\\work\\org.hl7.fhir\\packages\\hl7.fhir.rX\\hl7.fhir.core#4.0.1");
   }
 
+  /**
+   * Build a .index.db from an existing .index.json, for packages that were indexed before the 
+   * database existed (or by an older version of it). The database is built under a temporary 
+   * name and then moved into place, so readers never see a partial one
+   * 
+   * @return false if the database couldn't be built (e.g. the folder is read only)
+   */
+  public static boolean buildDatabase(JsonObject index, String filename) {
+    String tmp = filename+"."+UUID.randomUUID().toString()+".tmp";
+    NpmPackageIndexBuilder builder = new NpmPackageIndexBuilder();
+    builder.start(tmp);
+    if (builder.conn == null) {
+      return false;
+    }
+    try {
+      for (JsonObject fi : index.getJsonObjects("files")) {
+        builder.addToDatabase(fi.asString("filename"), fi);
+      }
+      builder.build();
+      Files.move(ManagedFileAccess.file(tmp).toPath(), ManagedFileAccess.file(filename).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    } catch (Exception e) {
+      try {
+        builder.conn.close();
+        ManagedFileAccess.file(tmp).delete();
+      } catch (Exception e1) {
+        // nothing
+      }
+      return false;
+    }
+  }
+
   public String getDbFilename() {
     return dbFilename;
   }
@@ -0,0 +1,189 @@
+package org.hl7.fhir.utilities.npm;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hl7.fhir.utilities.Utilities;
+import org.hl7.fhir.utilities.filesystem.ManagedFileAccess;
+import org.hl7.fhir.utilities.json.model.JsonObject;
+
+/**
+ * Read access to the .index.db that {@link NpmPackageIndexBuilder} writes next to the .index.json
+ * in a package folder.
+ *
+ * Queries go to the database, so a package folder can answer questions about the resources
+ * it contains - by type, canonical URL, or id - without parsing the .index.json or holding it in memory.
+ * The answers are in the same form as the entries in .index.json. The database doesn't change once it's
+ * written, so the map of types (which is asked for a lot) is only read once.
+ *
+ * One connection is kept open, and shared by all the queries (one at a time). close() closes it,
+ * and it is opened again if there are more queries
+ *
+ * @author grahame
+ *
+ */
+public class NpmPackageIndexDatabase implements Closeable {
+
+  private static final String COLUMNS = "FileName, ResourceType, Id, Url, Version, Kind, Type, Supplements, Content, ValueSet, Derivation";
+
+  private String filename;
+  private Connection connection;
+  private Map<String, List<String>> types;
+
+  private NpmPackageIndexDatabase(String filename) {
+    super();
+    this.filename = filename;
+  }
+
+  /**
+   * @return null if the folder has no usable .index.db - it doesn't exist, it was built by a
+   *   different version of the builder, or there's no sqlite driver available
+   */
+  public static NpmPackageIndexDatabase open(File folder) {
+    try {
+      File f = ManagedFileAccess.file(Utilities.path(folder.getAbsolutePath(), ".index.db"));
+      if (!f.exists()) {
+        return null;
+      }
+      NpmPackageIndexDatabase db = new NpmPackageIndexDatabase(f.getAbsolutePath());
+      boolean ok = false;
+      try {
+        Statement stmt = db.connection().createStatement();
+        ResultSet rs = stmt.executeQuery("PRAGMA user_version");
+        ok = rs.next() && rs.getInt(1) == NpmPackageIndexBuilder.CURRENT_DB_VERSION;
+      } finally {
+        if (!ok) {
+          db.close();
+        }
+      }
+      return ok ? db : null;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private synchronized Connection connection() throws SQLException {
+    if (connection == null) {
+      connection = DriverManager.getConnection("jdbc:sqlite:"+filename);
+    }
+    return connection;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (connection != null) {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        // nothing to do
+      }
+      connection = null;
+    }
+  }
+
+  public String getFilename() {
+    return filename;
+  }
+
+  public synchronized int count() throws IOException {
+    try (Statement stmt = connection().createStatement()) {
+      ResultSet rs = stmt.executeQuery("Select count(*) from ResourceList");
+      return rs.next() ? rs.getInt(1) : 0;
+    } catch (SQLException e) {
+      throw new IOException("Error reading "+filename+": "+e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Keys are resource type names, values are filenames. This is a new map each time, 
+   * which the caller can change
+   */
+  public synchronized Map<String, List<String>> getTypes() throws IOException {
+    if (types == null) {
+      Map<String, List<String>> res = new HashMap<>();
+      try (Statement stmt = connection().createStatement()) {
+        ResultSet rs = stmt.executeQuery("Select ResourceType, FileName from ResourceList");
+        while (rs.next()) {
+          res.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(rs.getString(2));
+        }
+      } catch (SQLException e) {
+        throw new IOException("Error reading "+filename+": "+e.getMessage(), e);
+      }
+      types = res;
+    }
+    Map<String, List<String>> res = new HashMap<>();
+    for (Map.Entry<String, List<String>> e : types.entrySet()) {
+      res.put(e.getKey(), new ArrayList<>(e.getValue()));
+    }
+    return res;
+  }
+
+  /**
+   * @param types the resource types of interest. If empty, all resources are listed
+   */
+  public List<JsonObject> listFiles(List<String> types) throws IOException {
+    if (types.isEmpty()) {
+      return query("Select "+COLUMNS+" from ResourceList");
+    } else {
+      StringBuilder b = new StringBuilder();
+      for (int i = 0; i < types.size(); i++) {
+        b.append(i == 0 ? "?" : ", ?");
+      }
+      return query("Select "+COLUMNS+" from ResourceList where ResourceType in ("+b.toString()+")", types.toArray(new String[0]));
+    }
+  }
+
+  public List<JsonObject> findByUrl(String url) throws IOException {
+    return query("Select "+COLUMNS+" from ResourceList where Url = ?", url);
+  }
+
+  public List<JsonObject> findById(String type, String id) throws IOException {
+    return query("Select "+COLUMNS+" from ResourceList where ResourceType = ? and Id = ?", type, id);
+  }
+
+  private synchronized List<JsonObject> query(String sql, String... params) throws IOException {
+    List<JsonObject> res = new ArrayList<>();
+    try (PreparedStatement psql = connection().prepareStatement(sql)) {
+      for (int i = 0; i < params.length; i++) {
+        psql.setString(i+1, params[i]);
+      }
+      ResultSet rs = psql.executeQuery();
+      while (rs.next()) {
+        JsonObject fi = new JsonObject();
+        fi.add("filename", rs.getString(1));
+        fi.add("resourceType", rs.getString(2));
+        add(fi, "id", rs.getString(3));
+        add(fi, "url", rs.getString(4));
+        add(fi, "version", rs.getString(5));
+        add(fi, "kind", rs.getString(6));
+        add(fi, "type", rs.getString(7));
+        add(fi, "supplements", rs.getString(8));
+        add(fi, "content", rs.getString(9));
+        add(fi, "valueSet", rs.getString(10));
+        add(fi, "derivation", rs.getString(11));
+        res.add(fi);
+      }
+    } catch (SQLException e) {
+      throw new IOException("Error reading "+filename+": "+e.getMessage(), e);
+    }
+    return res;
+  }
+
+  private void add(JsonObject fi, String name, String value) {
+    if (value != null) {
+      fi.add(name, value);
+    }
+  }
+
+}
@@ -13,7 +13,7 @@ public class CacheVerificationLogger implements ToolingClientLogger {
   int requests = 0;
 
   @Override
-  public void logRequest(String method, String url, List<String> headers, byte[] body) {
+  public synchronized void logRequest(String method, String url, List<String> headers, byte[] body) {
     if (!TestConfig.getInstance().isRebuildCache()) {
       System.err.println("Unexpected request to server");
       System.err.println(method);
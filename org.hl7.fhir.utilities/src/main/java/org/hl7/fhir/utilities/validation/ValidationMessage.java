@@ -66,6 +66,7 @@ import java.text.SimpleDateFormat;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -526,6 +527,7 @@ public class ValidationMessage implements Comparator<ValidationMessage>, Compara
   private int col;
   private String location; // fhirPath
   private String message;
+  private volatile Supplier<String> messageSupplier; // if the message hasn't been formatted yet
   private String messageId; // source, for grouping
   private IssueType type;
   private IssueSeverity level;
@@ -623,6 +625,40 @@ public class ValidationMessage implements Comparator<ValidationMessage>, Compara
       throw new Error("A type must be provided");
   }
 
+  /**
+   * A message that isn't formatted until it's used. Validators produce many messages that are filtered
+   * or counted but never shown, and formatting them is a significant part of the cost of validation
+   */
+  public ValidationMessage(Source source, IssueType type, int line, int col, String path, IssueSeverity level, Supplier<String> message) {
+    this();
+    this.line = line;
+    this.col = col;
+    this.location = path;
+    if (message == null)
+      throw new Error("message is null");
+    this.messageSupplier = message;
+    this.level = level;
+    this.source = source;
+    this.type = type;
+    if (level == IssueSeverity.NULL)
+      determineLevel(path);
+    if (type == null)
+      throw new Error("A type must be provided");
+  }
+
+  private String message() {
+    if (messageSupplier != null) {
+      synchronized (this) {
+        Supplier<String> supplier = messageSupplier;
+        if (supplier != null) {
+          message = supplier.get();
+          messageSupplier = null; // after message is set, so anyone who sees this sees the message
+        }
+      }
+    }
+    return message;
+  }
+
   private IssueSeverity determineLevel(String path) {
     if (isGrandfathered(path))
       return IssueSeverity.WARNING;
@@ -662,15 +698,16 @@ public class ValidationMessage implements Comparator<ValidationMessage>, Compara
   }
 
   public String getMessage() {
-    return message+showCount();
+    return message()+showCount();
   }
   
   private String showCount() {
     return count == 0 ? "" : " (also in "+count+" other files)";
   }
 
-  public ValidationMessage setMessage(String message) {
+  public synchronized ValidationMessage setMessage(String message) {
     this.message = message;
+    this.messageSupplier = null;
     return this;
   }
 
@@ -724,20 +761,20 @@ public class ValidationMessage implements Comparator<ValidationMessage>, Compara
   }
 
   public String summary() {
-    return level.toString()+" @ "+location+(line>= 0 && col >= 0 ? " (line "+Integer.toString(line)+", col"+Integer.toString(col)+"): " : ": ") +message+showCount() +(server != null ? " (src = "+server+")" : "");
+    return level.toString()+" @ "+location+(line>= 0 && col >= 0 ? " (line "+Integer.toString(line)+", col"+Integer.toString(col)+"): " : ": ") +message()+showCount() +(server != null ? " (src = "+server+")" : "");
   }
 
 
   public String toXML() {
-    return "<message source=\"" + source + "\" line=\"" + line + "\" col=\"" + col + "\" location=\"" + Utilities.escapeXml(location) + "\" type=\"" + type + "\" level=\"" + level + "\" display=\"" + Utilities.escapeXml(getDisplay()) + "\" ><plain>" + Utilities.escapeXml(message)+showCount() + "</plain><html>" + html + "</html></message>";
+    return "<message source=\"" + source + "\" line=\"" + line + "\" col=\"" + col + "\" location=\"" + Utilities.escapeXml(location) + "\" type=\"" + type + "\" level=\"" + level + "\" display=\"" + Utilities.escapeXml(getDisplay()) + "\" ><plain>" + Utilities.escapeXml(message())+showCount() + "</plain><html>" + (html == null ? Utilities.escapeXml(message()) : html) + "</html></message>";
   }
 
   public String getHtml() {
-    return (html == null ? Utilities.escapeXml(message) : html)+showCount();
+    return (html == null ? Utilities.escapeXml(message()) : html)+showCount();
   }
 
   public String getDisplay() {
-    return level + ": " + (location==null || location.isEmpty() ? "" : (location + ": ")) + message+showCount();
+    return level + ": " + (location==null || location.isEmpty() ? "" : (location + ": ")) + message()+showCount();
   }
 
   /**
@@ -751,7 +788,7 @@ public class ValidationMessage implements Comparator<ValidationMessage>, Compara
     b.append("level", level);
     b.append("type", type);
     b.append("location", location);
-    b.append("message", message+showCount());
+    b.append("message", message()+showCount());
     return b.build();
   }
 
@@ -900,11 +937,11 @@ public class ValidationMessage implements Comparator<ValidationMessage>, Compara
         return false;
       }
     }
-    if (message == null) {
-      if (other.message != null) {
+    if (message() == null) {
+      if (other.message() != null) {
         return false;
       }
-    } else if (!message.equals(other.message)) {
+    } else if (!message().equals(other.message())) {
       return false;
     }
     if (messageId == null) {
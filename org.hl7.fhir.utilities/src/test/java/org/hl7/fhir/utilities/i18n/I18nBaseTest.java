@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -14,7 +15,12 @@ import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.hl7.fhir.utilities.validation.ValidationMessage;
+import org.hl7.fhir.utilities.validation.ValidationMessage.IssueSeverity;
+import org.hl7.fhir.utilities.validation.ValidationMessage.IssueType;
+import org.hl7.fhir.utilities.validation.ValidationMessage.Source;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -177,4 +183,63 @@ class I18nBaseTest {
     assertEquals("Error parsing JSON: test", enMessage);
 
   }
+
+  @Test
+  public void testFormatMessageRepeatedly() {
+    I18nTestClass i18nInstance = new I18nTestClass();
+    i18nInstance.setLocale(Locale.forLanguageTag("en"));
+    for (int i = 0; i < 3; i++) {
+      assertEquals("Error parsing JSON: test"+i, i18nInstance.formatMessage(I18nConstants.ERROR_PARSING_JSON_, "test"+i));
+    }
+  }
+
+  @Test
+  public void testValidationMessageIsFormattedWhenUsed() {
+    I18nTestClass i18nInstance = new I18nTestClass();
+    i18nInstance.setLocale(Locale.forLanguageTag("en"));
+    AtomicInteger count = new AtomicInteger();
+    ValidationMessage vm = new ValidationMessage(Source.InstanceValidator, IssueType.INVALID, 1, 2, "Patient", IssueSeverity.ERROR,
+      () -> { count.incrementAndGet(); return i18nInstance.formatMessage(I18nConstants.ERROR_PARSING_JSON_, "test"); });
+    assertEquals(0, count.get());
+    assertEquals("Error parsing JSON: test", vm.getMessage());
+    assertEquals("Error parsing JSON: test", vm.getHtml());
+    assertEquals("ERROR: Patient: Error parsing JSON: test", vm.getDisplay());
+    assertEquals(1, count.get());
+  }
+
+  @Test
+  public void testFormatMessageLaterUsesLocaleAndArgumentsAtCreation() {
+    I18nTestClass i18nInstance = new I18nTestClass();
+    i18nInstance.setLocale(Locale.forLanguageTag("de"));
+    StringBuilder arg = new StringBuilder("test");
+    ValidationMessage vm = new ValidationMessage(Source.InstanceValidator, IssueType.INVALID, 1, 2, "Patient", IssueSeverity.ERROR,
+      i18nInstance.formatMessageLater(I18nConstants.ERROR_PARSING_JSON_, arg));
+    // another request changes the locale of the shared context, and the argument changes
+    i18nInstance.setLocale(Locale.forLanguageTag("en"));
+    arg.append("-changed");
+    assertEquals("Fehler beim Parsen von JSON: test", vm.getMessage());
+    assertEquals("Error parsing JSON: test-changed", i18nInstance.formatMessageLater(I18nConstants.ERROR_PARSING_JSON_, arg).get());
+  }
+
+  @Test
+  public void testValidationMessageIsFormattedOnce() throws InterruptedException {
+    AtomicInteger count = new AtomicInteger();
+    ValidationMessage vm = new ValidationMessage(Source.InstanceValidator, IssueType.INVALID, 1, 2, "Patient", IssueSeverity.ERROR,
+      () -> { count.incrementAndGet(); return "message"; });
+    Thread[] threads = new Thread[8];
+    String[] results = new String[threads.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread(() -> results[index] = vm.getMessage());
+      threads[i].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    for (String result : results) {
+      assertEquals("message", result);
+    }
+    assertEquals(1, count.get());
+    assertTrue(vm.toXML().contains("<html>message</html>"));
+  }
 }
\ No newline at end of file
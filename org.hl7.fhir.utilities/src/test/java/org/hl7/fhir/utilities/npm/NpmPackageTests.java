@@ -3,11 +3,15 @@ package org.hl7.fhir.utilities.npm;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 
 import org.apache.commons.io.IOUtils;
+import org.hl7.fhir.utilities.TextFile;
+import org.hl7.fhir.utilities.Utilities;
+import org.hl7.fhir.utilities.filesystem.ManagedFileAccess;
 import org.hl7.fhir.utilities.tests.ResourceLoaderTests;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -32,4 +36,64 @@ public class NpmPackageTests implements ResourceLoaderTests {
     assertNotNull(thrown);
     assertEquals("Entry with an illegal name: ../evil.txt", thrown.getMessage());
   }
+
+  @Test
+  public void testFolderIndexDatabase() throws IOException {
+    File folder = ManagedFileAccess.file(Utilities.path("[tmp]", "npm-index-db"));
+    if (folder.exists()) {
+      Utilities.clearDirectory(folder.getAbsolutePath());
+    }
+    String pf = Utilities.path(folder.getAbsolutePath(), "package");
+    Utilities.createDirectory(pf);
+    TextFile.stringToFile("{\"name\" : \"test.pkg\", \"version\" : \"1.0.0\"}", Utilities.path(pf, "package.json"));
+    TextFile.stringToFile("{\"resourceType\" : \"ValueSet\", \"id\" : \"vs1\", \"url\" : \"http://test/vs\", \"version\" : \"1.0.0\"}", Utilities.path(pf, "ValueSet-vs1.json"));
+    TextFile.stringToFile("{\"resourceType\" : \"ValueSet\", \"id\" : \"vs2\", \"url\" : \"http://test/vs\", \"version\" : \"2.0.0\"}", Utilities.path(pf, "ValueSet-vs2.json"));
+    TextFile.stringToFile("{\"resourceType\" : \"CodeSystem\", \"id\" : \"cs\", \"url\" : \"http://test/cs\"}", Utilities.path(pf, "CodeSystem-cs.json"));
+
+    // the folder has no .index.json, so it's indexed (and the database built) on load 
+    NpmPackage first = NpmPackage.fromFolder(folder.getAbsolutePath());
+    checkIndexedFolder(first);
+    Assertions.assertTrue(ManagedFileAccess.file(Utilities.path(pf, ".index.json")).exists());
+    first.closeIndexDatabases();
+    // the connection is opened again when it's needed
+    assertEquals(2, first.listIndexedResources("ValueSet").size());
+    first.closeIndexDatabases();
+
+    // a package indexed before there was a database gets one from its .index.json
+    ManagedFileAccess.file(Utilities.path(pf, ".index.db")).delete();
+    NpmPackage npm = NpmPackage.fromFolder(folder.getAbsolutePath());
+    Assertions.assertTrue(ManagedFileAccess.file(Utilities.path(pf, ".index.db")).exists());
+    checkIndexedFolder(npm);
+
+    // the types are only read from the database once
+    Assertions.assertSame(npm.getTypes(), npm.getTypes());
+
+    // files added to the folder aren't in the database, so it's not used any more
+    npm.addFile("package", "Patient-p.json", "{\"resourceType\" : \"Patient\", \"id\" : \"p\"}".getBytes(StandardCharsets.UTF_8), "Patient");
+    Assertions.assertNull(npm.getFolders().get("package").indexDatabase());
+    // the .index.json is only read once after that 
+    Assertions.assertSame(npm.getFolders().get("package").index(), npm.getFolders().get("package").index());
+    assertEquals(2, npm.getTypes().get("ValueSet").size());
+    assertEquals(1, npm.getTypes().get("Patient").size());
+    assertEquals(4, npm.listResources().size());
+    assertEquals(1, npm.listResources("Patient").size());
+    npm.clearFolder("package");
+    Assertions.assertTrue(npm.getTypes().isEmpty());
+    assertEquals(0, npm.listResources().size());
+  }
+
+  private void checkIndexedFolder(NpmPackage npm) throws IOException {
+    Assertions.assertNotNull(npm.getFolders().get("package").indexDatabase());
+    Assertions.assertTrue(npm.isIndexed());
+    assertEquals(2, npm.getTypes().get("ValueSet").size());
+    assertEquals(3, npm.listResources().size());
+    assertEquals(1, npm.listIndexedResources("CodeSystem").size());
+    assertEquals("2.0.0", npm.listIndexedResources("ValueSet", "CodeSystem").stream().filter(r -> "vs2".equals(r.getId())).findFirst().get().getVersion());
+    Assertions.assertTrue(npm.hasCanonical("http://test/vs|1.0.0"));
+    Assertions.assertFalse(npm.hasCanonical("http://test/vs|3.0.0"));
+    Assertions.assertTrue(IOUtils.toString(npm.loadByCanonical("http://test/vs"), StandardCharsets.UTF_8).contains("\"vs2\""));
+    Assertions.assertTrue(IOUtils.toString(npm.loadByCanonicalVersion("http://test/vs", "1.0.0"), StandardCharsets.UTF_8).contains("\"vs1\""));
+    Assertions.assertTrue(IOUtils.toString(npm.loadResource("CodeSystem", "cs"), StandardCharsets.UTF_8).contains("http://test/cs"));
+    Assertions.assertNull(npm.loadResource("CodeSystem", "vs1"));
+  }
 }
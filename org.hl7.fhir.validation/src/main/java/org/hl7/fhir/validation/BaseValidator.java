@@ -11,6 +11,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /*
   Copyright (c) 2011+, HL7, Inc.
@@ -257,7 +258,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
     return doingLevel(IssueSeverity.WARNING);
   }
   
-  private boolean doingHints() {
+  protected boolean doingHints() {
     return doingLevel(IssueSeverity.INFORMATION);
   }
   
@@ -284,8 +285,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
 
   protected boolean fail(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, boolean thePass, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingErrors() && !suppressMsg(path, theMessage)) {
-      String msg = context.formatMessage(theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, line, col, path, msg, IssueSeverity.FATAL, theMessage);
+      addValidationMessage(errors, ruleDate, type, line, col, path, IssueSeverity.FATAL, theMessage, context.formatMessageLater(theMessage, theMessageArguments));
     }
     return thePass;
   }
@@ -304,8 +304,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
    */
   protected boolean hint(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, boolean thePass, String msg) {
     if (!thePass && doingHints() && !suppressMsg(path, msg)) {
-      String message = context.formatMessage(msg);
-      addValidationMessage(errors, ruleDate, type, line, col, path, message, IssueSeverity.INFORMATION, msg);
+      addValidationMessage(errors, ruleDate, type, line, col, path, IssueSeverity.INFORMATION, msg, context.formatMessageLater(msg));
     }
     return thePass;
   }
@@ -319,8 +318,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
    */
   protected boolean hintInv(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, boolean thePass, String msg, String invId) {
     if (!thePass && doingHints() && !suppressMsg(path, invId)) {
-      String message = context.formatMessage(msg);
-      addValidationMessage(errors, ruleDate, type, line, col, path, message, IssueSeverity.INFORMATION, msg).setInvId(invId);
+      addValidationMessage(errors, ruleDate, type, line, col, path, IssueSeverity.INFORMATION, msg, context.formatMessageLater(msg)).setInvId(invId);
     }
     return thePass;
   }
@@ -358,23 +356,20 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
    */
   protected boolean hint(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, boolean thePass, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingHints() && !suppressMsg(path, theMessage)) {
-      String message = context.formatMessage(theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, line, col, path, message, IssueSeverity.INFORMATION, theMessage);
+      addValidationMessage(errors, ruleDate, type, line, col, path, IssueSeverity.INFORMATION, theMessage, context.formatMessageLater(theMessage, theMessageArguments));
     }
     return thePass;
   }
 
   protected boolean hintPlural(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, boolean thePass, int num, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingHints() && !suppressMsg(path, theMessage)) {
-      String message = context.formatMessagePlural(num, theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, line, col, path, message, IssueSeverity.INFORMATION, theMessage);
+      addValidationMessage(errors, ruleDate, type, line, col, path, IssueSeverity.INFORMATION, theMessage, context.formatMessagePluralLater(num, theMessage, theMessageArguments));
     }
     return thePass;
   }
 
   public ValidationMessage signpost(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, String theMessage, Object... theMessageArguments) {
-    String message = context.formatMessage(theMessage, theMessageArguments);
-    return addValidationMessage(errors, ruleDate, type, line, col, path, message, IssueSeverity.INFORMATION, theMessage).setSignpost(true);
+    return addValidationMessage(errors, ruleDate, type, line, col, path, IssueSeverity.INFORMATION, theMessage, context.formatMessageLater(theMessage, theMessageArguments)).setSignpost(true);
   }
 
   protected boolean txHint(List<ValidationMessage> errors, String ruleDate, String txLink, IssueType type, int line, int col, String path, boolean thePass, String theMessage, Object... theMessageArguments) {
@@ -395,8 +390,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
   protected boolean hint(List<ValidationMessage> errors, String ruleDate, IssueType type, List<String> pathParts, boolean thePass, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingHints() && !suppressMsg(CommaSeparatedStringBuilder.join(".", pathParts), theMessage)) {
       String path = toPath(pathParts);
-      String message = context.formatMessage(theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, -1, -1, path, message, IssueSeverity.INFORMATION, theMessage);
+      addValidationMessage(errors, ruleDate, type, -1, -1, path, IssueSeverity.INFORMATION, theMessage, context.formatMessageLater(theMessage, theMessageArguments));
     }
     return thePass;
   }
@@ -410,8 +404,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
    */
   protected boolean hint(List<ValidationMessage> errors, String ruleDate, IssueType type, String path, boolean thePass, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingHints() && !suppressMsg(path, theMessage)) {
-      String message = context.formatMessage(theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, -1, -1, path, message, IssueSeverity.INFORMATION, null);
+      addValidationMessage(errors, ruleDate, type, -1, -1, path, IssueSeverity.INFORMATION, null, context.formatMessageLater(theMessage, theMessageArguments));
     }
     return thePass;
   }
@@ -425,24 +418,21 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
    */
   protected boolean rule(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, boolean thePass, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingErrors() && !suppressMsg(path, theMessage)) {
-      String message = context.formatMessage(theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, line, col, path, message, IssueSeverity.ERROR, theMessage);
+      addValidationMessage(errors, ruleDate, type, line, col, path, IssueSeverity.ERROR, theMessage, context.formatMessageLater(theMessage, theMessageArguments));
     }
     return thePass;
   }
 
   protected boolean ruleInv(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, boolean thePass, String theMessage, String invId, Object... theMessageArguments) {
     if (!thePass && doingErrors() && !suppressMsg(path, theMessage)) {
-      String message = context.formatMessage(theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, line, col, path, message, IssueSeverity.ERROR, invId).setInvId(invId);
+      addValidationMessage(errors, ruleDate, type, line, col, path, IssueSeverity.ERROR, invId, context.formatMessageLater(theMessage, theMessageArguments)).setInvId(invId);
     }
     return thePass;
   }
 
   protected boolean rule(List<ValidationMessage> errors, String ruleDate, IssueType type, NodeStack stack, boolean thePass, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingErrors() && !suppressMsg(stack.getLiteralPath(), theMessage)) {
-      String message = context.formatMessage(theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, stack.line(), stack.col(), stack.getLiteralPath(), message, IssueSeverity.ERROR, theMessage);
+      addValidationMessage(errors, ruleDate, type, stack.line(), stack.col(), stack.getLiteralPath(), IssueSeverity.ERROR, theMessage, context.formatMessageLater(theMessage, theMessageArguments));
     }
     return thePass;
   }
@@ -453,8 +443,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
   
   protected boolean rulePlural(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, boolean thePass, int num, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingErrors() && !suppressMsg(path, theMessage)) {
-      String message = context.formatMessagePlural(num, theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, line, col, path, message, IssueSeverity.ERROR, theMessage);
+      addValidationMessage(errors, ruleDate, type, line, col, path, IssueSeverity.ERROR, theMessage, context.formatMessagePluralLater(num, theMessage, theMessageArguments));
     }
     return thePass;
   }
@@ -500,8 +489,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
   protected boolean rule(List<ValidationMessage> errors, String ruleDate, IssueType type, List<String> pathParts, boolean thePass, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingErrors() && !suppressMsg(CommaSeparatedStringBuilder.join(".", pathParts), theMessage)) {
       String path = toPath(pathParts);
-      String message = context.formatMessage(theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, -1, -1, path, message, IssueSeverity.ERROR, theMessage);
+      addValidationMessage(errors, ruleDate, type, -1, -1, path, IssueSeverity.ERROR, theMessage, context.formatMessageLater(theMessage, theMessageArguments));
     }
     return thePass;
   }
@@ -517,16 +505,14 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
 
   protected boolean rule(List<ValidationMessage> errors, String ruleDate, IssueType type, String path, boolean thePass, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingErrors() && !suppressMsg(path, theMessage)) {
-      String message = context.formatMessage(theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, -1, -1, path, message, IssueSeverity.ERROR, theMessage);
+      addValidationMessage(errors, ruleDate, type, -1, -1, path, IssueSeverity.ERROR, theMessage, context.formatMessageLater(theMessage, theMessageArguments));
     }
     return thePass;
   }
 
   protected boolean rulePlural(List<ValidationMessage> errors, String ruleDate, IssueType type, String path, boolean thePass, int num, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingErrors() && !suppressMsg(path, theMessage)) {
-      String message = context.formatMessagePlural(num, theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, -1, -1, path, message, IssueSeverity.ERROR, theMessage);
+      addValidationMessage(errors, ruleDate, type, -1, -1, path, IssueSeverity.ERROR, theMessage, context.formatMessagePluralLater(num, theMessage, theMessageArguments));
     }
     return thePass;
   }
@@ -591,9 +577,8 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
    */
   protected boolean warning(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, boolean thePass, String msg, Object... theMessageArguments) {
     if (!thePass && doingWarnings() && !suppressMsg(path, msg)) {
-      String nmsg = context.formatMessage(msg, theMessageArguments);
       IssueSeverity severity = IssueSeverity.WARNING;
-      addValidationMessage(errors, ruleDate, type, line, col, path, nmsg, severity, msg);
+      addValidationMessage(errors, ruleDate, type, line, col, path, severity, msg, context.formatMessageLater(msg, theMessageArguments));
     }
     return thePass;
 
@@ -601,9 +586,8 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
   
   protected boolean warning(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, String id, boolean thePass, String msg, Object... theMessageArguments) {
     if (!thePass && doingWarnings() && !suppressMsg(path, msg)) {
-      String nmsg = context.formatMessage(msg, theMessageArguments);
       IssueSeverity severity = IssueSeverity.WARNING;
-      addValidationMessage(errors, ruleDate, type, line, col, path, nmsg, severity, id);
+      addValidationMessage(errors, ruleDate, type, line, col, path, severity, id, context.formatMessageLater(msg, theMessageArguments));
     }
     return thePass;
 
@@ -630,9 +614,8 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
 
   protected boolean warningPlural(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, boolean thePass, int num, String msg, Object... theMessageArguments) {
     if (!thePass && doingWarnings() && !suppressMsg(path, msg)) {
-      String nmsg = context.formatMessagePlural(num, msg, theMessageArguments);
       IssueSeverity severity = IssueSeverity.WARNING;
-      addValidationMessage(errors, ruleDate, type, line, col, path, nmsg, severity, msg);
+      addValidationMessage(errors, ruleDate, type, line, col, path, severity, msg, context.formatMessagePluralLater(num, msg, theMessageArguments));
     }
     return thePass;
 
@@ -643,6 +626,18 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
     return addValidationMessage(errors, ruleDate, type, line, col, path, msg, theSeverity, source, id);
   }
 
+  /**
+   * The message is only formatted if it's used
+   */
+  protected ValidationMessage addValidationMessage(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, IssueSeverity theSeverity, String id, Supplier<String> msg) {
+    ValidationMessage validationMessage = new ValidationMessage(source, type, line, col, path, theSeverity, msg).setMessageId(id);
+    validationMessage.setRuleDate(ruleDate);
+    if (doingLevel(theSeverity) && checkMsgId(id, validationMessage)) {
+      errors.add(validationMessage);
+    }
+    return validationMessage;
+  }
+
   protected ValidationMessage addValidationMessage(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, String msg, IssueSeverity theSeverity, Source theSource, String id) {
     ValidationMessage validationMessage = new ValidationMessage(theSource, type, line, col, path, msg, theSeverity).setMessageId(id);
     validationMessage.setRuleDate(ruleDate);
@@ -788,8 +783,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
   protected boolean warning(List<ValidationMessage> errors, String ruleDate, IssueType type, List<String> pathParts, boolean thePass, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingWarnings() && !suppressMsg(CommaSeparatedStringBuilder.join(".", pathParts), theMessage)) {
       String path = toPath(pathParts);
-      String message = context.formatMessage(theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, -1, -1, path, message, IssueSeverity.WARNING, theMessage);
+      addValidationMessage(errors, ruleDate, type, -1, -1, path, IssueSeverity.WARNING, theMessage, context.formatMessageLater(theMessage, theMessageArguments));
     }
     return thePass;
   }
@@ -803,8 +797,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
    */
   protected boolean warning(List<ValidationMessage> errors, String ruleDate, IssueType type, String path, boolean thePass, String msg, Object... theMessageArguments) {
     if (!thePass && doingWarnings() && !suppressMsg(path, msg)) {
-      String message = context.formatMessage(msg, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, -1, -1, path, message, IssueSeverity.WARNING, null);
+      addValidationMessage(errors, ruleDate, type, -1, -1, path, IssueSeverity.WARNING, null, context.formatMessageLater(msg, theMessageArguments));
     }
     return thePass;
   }
@@ -866,8 +859,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
    */
   protected boolean suppressedwarning(List<ValidationMessage> errors, String ruleDate, IssueType type, int line, int col, String path, boolean thePass, String msg, Object... theMessageArguments) {
     if (!thePass && doingWarnings() && !suppressMsg(path, msg)) { 
-      String nmsg = context.formatMessage(msg, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, line, col, path, nmsg, IssueSeverity.INFORMATION, msg);
+      addValidationMessage(errors, ruleDate, type, line, col, path, IssueSeverity.INFORMATION, msg, context.formatMessageLater(msg, theMessageArguments));
     }
     return thePass;
 
@@ -883,8 +875,7 @@ public class BaseValidator implements IValidationContextResourceLoader, IMessagi
   protected boolean suppressedwarning(List<ValidationMessage> errors, String ruleDate, IssueType type, List<String> pathParts, boolean thePass, String theMessage, Object... theMessageArguments) {
     if (!thePass && doingWarnings() && !suppressMsg(CommaSeparatedStringBuilder.join(".", pathParts), theMessage)) {
       String path = toPath(pathParts);
-      String message = context.formatMessage(theMessage, theMessageArguments);
-      addValidationMessage(errors, ruleDate, type, -1, -1, path, message, IssueSeverity.INFORMATION, theMessage);
+      addValidationMessage(errors, ruleDate, type, -1, -1, path, IssueSeverity.INFORMATION, theMessage, context.formatMessageLater(theMessage, theMessageArguments));
     }
     return thePass;
   }
@@ -9,9 +9,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -20,6 +22,12 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.fhir.ucum.UcumEssenceService;
 import org.hl7.fhir.convertors.factory.VersionConvertorFactory_10_50;
@@ -37,6 +45,8 @@ import org.hl7.fhir.r5.context.SimpleWorkerContext;
 import org.hl7.fhir.r5.context.SystemOutLoggingService;
 import org.hl7.fhir.r5.elementmodel.*;
 import org.hl7.fhir.r5.elementmodel.Manager.FhirFormat;
+import org.hl7.fhir.r5.elementmodel.ParserBase.ValidationPolicy;
+import org.hl7.fhir.r5.fhirpath.ExpressionCache;
 import org.hl7.fhir.r5.fhirpath.ExpressionNode;
 import org.hl7.fhir.r5.fhirpath.FHIRPathEngine;
 import org.hl7.fhir.r5.formats.FormatUtilities;
@@ -81,6 +91,7 @@ import org.hl7.fhir.r5.utils.validation.constants.CodedContentValidationPolicy;
 import org.hl7.fhir.r5.utils.validation.constants.ContainedReferenceValidationPolicy;
 import org.hl7.fhir.r5.utils.validation.constants.IdStatus;
 import org.hl7.fhir.r5.utils.validation.constants.ReferenceValidationPolicy;
+import org.hl7.fhir.utilities.DurationUtil;
 import org.hl7.fhir.utilities.FhirPublication;
 import org.hl7.fhir.utilities.IniFile;
 import org.hl7.fhir.utilities.SIDUtilities;
@@ -226,18 +237,23 @@ public class ValidationEngine implements IValidatorResourceFetcher, IValidationP
   @Getter @Setter private HtmlInMarkdownCheck htmlInMarkdownCheck;
   @Getter @Setter private boolean allowDoubleQuotesInFHIRPath;
   @Getter @Setter private boolean checkIPSCodes;
+  @Getter @Setter private boolean streamingXml;
   @Getter @Setter private BestPracticeWarningLevel bestPracticeLevel;
   @Getter @Setter private boolean unknownCodeSystemsCauseErrors;
   @Getter @Setter private boolean noExperimentalContent;
+  @Getter @Setter private int terminologyBatchSize;
+  @Getter private int terminologyConcurrency = 1;
   @Getter @Setter private Locale locale;
   @Getter @Setter private List<ImplementationGuide> igs = new ArrayList<>();
   @Getter @Setter private List<String> extensionDomains = new ArrayList<>();
 
   @Getter @Setter private boolean showTimes;
+  @Getter @Setter private int threads = 1;
   @Getter @Setter private List<BundleValidationRule> bundleValidationRules = new ArrayList<>();
   @Getter @Setter private QuestionnaireMode questionnaireMode;
   @Getter @Setter private ValidationLevel level = ValidationLevel.HINTS;
   @Getter @Setter private FHIRPathEngine fhirPathEngine;
+  @Getter @Setter private ExpressionCache expressionCache;
   @Getter @Setter private IgLoader igLoader;
   @Getter @Setter private Coding jurisdiction;
 
@@ -282,17 +298,23 @@ public class ValidationEngine implements IValidatorResourceFetcher, IValidationP
     htmlInMarkdownCheck = other.htmlInMarkdownCheck;
     allowDoubleQuotesInFHIRPath = other.allowDoubleQuotesInFHIRPath;
     checkIPSCodes = other.checkIPSCodes;
+    streamingXml = other.streamingXml;
     locale = other.locale;
     igs.addAll(other.igs);
     extensionDomains.addAll(other.extensionDomains);
     showTimes = other.showTimes;
+    threads = other.threads;
     bundleValidationRules.addAll(other.bundleValidationRules);
     questionnaireMode = other.questionnaireMode;
     level = other.level;
     fhirPathEngine = other.fhirPathEngine;
+    expressionCache = other.expressionCache;
     igLoader = other.igLoader;
     jurisdiction = other.jurisdiction;
     unknownCodeSystemsCauseErrors = other.unknownCodeSystemsCauseErrors;
+    terminologyBatchSize = other.terminologyBatchSize;
+    terminologyConcurrency = other.terminologyConcurrency;
+    context.getTxClientManager().setMaxConcurrentRequests(terminologyConcurrency);
   }
   
   /**
@@ -490,6 +512,7 @@ public class ValidationEngine implements IValidatorResourceFetcher, IValidationP
       context = contextBuilder.fromDefinitions(source, ValidatorUtils.loaderForVersion(version), new PackageInformation(src, version, new Date()));
       ValidatorUtils.grabNatives(getBinaries(), source, "http://hl7.org/fhir");
     }
+    context.getTxClientManager().setMaxConcurrentRequests(terminologyConcurrency);
     // ucum-essence.xml should be in the class path. if it's not, ask about how to sort this out 
     // on https://chat.fhir.org/#narrow/stream/179167-hapi
     try {
@@ -640,12 +663,20 @@ public class ValidationEngine implements IValidatorResourceFetcher, IValidationP
       }
     }
     
+    List<SourceFile> todo = new ArrayList<>();
     for (SourceFile ref : refs) {
       if ((ref.isProcess() || all) && ref.getCnt() != null) {
+        todo.add(ref);
+      }
+    }
+    if (threads > 1 && todo.size() > 1) {
+      validateInParallel(todo, profiles, record, results);
+    } else {
+      for (SourceFile ref : todo) {
         TimeTracker.Session tts = context.clock().start("validation");
         context.clock().milestone();
         System.out.println("  Validate " + ref.getRef());
-        
+
         try {
           OperationOutcome outcome = validate(ref.getRef(), ref.getCnt().getFocus(), ref.getCnt().getCntType(), profiles, record);
           ToolingExtensions.addStringExtension(outcome, ToolingExtensions.EXT_OO_FILE, ref.getRef());
@@ -667,6 +698,159 @@ public class ValidationEngine implements IValidatorResourceFetcher, IValidationP
   }
 
 
+  /**
+   * Round two of validate(List<String>...), fanned out across {@link #threads} workers. 
+   * 
+   * Each source gets its own InstanceValidator, and its own validation record. The validators 
+   * are made here, on the calling thread, since getValidator() sets up the shared context (and 
+   * may load packages); the workers only validate. The snapshots of the structures in the context
+   * are generated here too (see prepare()), so that the workers don't generate them while others
+   * are using them. The outcomes and records are assembled in the order of the sources, so the 
+   * result is the same as for a single threaded run
+   */
+  private void validateInParallel(List<SourceFile> todo, List<String> profiles, List<ValidationRecord> record, Bundle results) throws InterruptedException, IOException {
+    TimeTracker.Session tts = context.clock().start("validation");
+    System.out.println("  Validate " + todo.size() + " sources using " + threads + " threads");
+    List<StructureDefinition> sdl = asSdList(profiles);
+    // the workers share the context, so the snapshots they'll use are generated here, before they start
+    prepare();
+    List<InstanceValidator> validators = new ArrayList<>();
+    for (SourceFile ref : todo) {
+      validators.add(getValidator(ref.getCnt().getCntType()));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, todo.size()));
+    try {
+      List<Future<OperationOutcome>> futures = new ArrayList<>();
+      List<List<ValidationRecord>> records = new ArrayList<>();
+      for (int i = 0; i < todo.size(); i++) {
+        SourceFile ref = todo.get(i);
+        InstanceValidator validator = validators.get(i);
+        List<ValidationRecord> local = record == null ? null : new ArrayList<>();
+        records.add(local);
+        futures.add(executor.submit(() -> {
+          long start = System.nanoTime();
+          OperationOutcome outcome = validate(validator, ref.getRef(), ref.getCnt().getFocus(), ref.getCnt().getCntType(), sdl, local);
+          ToolingExtensions.addStringExtension(outcome, ToolingExtensions.EXT_OO_FILE, ref.getRef());
+          System.out.println("  Validated " + ref.getRef() + " " + DurationUtil.presentDuration(System.nanoTime() - start));
+          return outcome;
+        }));
+      }
+      for (int i = 0; i < todo.size(); i++) {
+        SourceFile ref = todo.get(i);
+        try {
+          results.addEntry().setResource(futures.get(i).get());
+        } catch (ExecutionException e) {
+          System.out.println("Validation Infrastructure fail validating " + ref + ": " + e.getCause().getMessage());
+          throw new FHIRException(e.getCause());
+        }
+        if (record != null) {
+          for (ValidationRecord vr : records.get(i)) {
+            addToRecord(record, vr.getLocation(), vr.getMessages());
+          }
+        }
+        ref.setProcess(false);
+      }
+    } finally {
+      executor.shutdownNow();
+      tts.end();
+    }
+  }
+
+  /**
+   * Called with the outcome for each line of an NDJSON source, in the order of the source
+   */
+  public interface INDJsonOutcomeHandler {
+    void handle(int line, OperationOutcome outcome) throws IOException;
+  }
+
+  /**
+   * Validate an NDJSON source (e.g. a bulk data export file) resource by resource, as it's read.
+   * 
+   * The outcome for each line is passed to the handler as soon as it's known, and nothing is kept 
+   * once it's been handled, so memory use doesn't depend on the size of the source. If {@link #threads}
+   * is more than 1, the lines are parsed on the calling thread and validated by that many workers, 
+   * with a bounded number of lines in flight; the handler is still called in order, on the calling thread.
+   * The workers share a pool of validators that are made up front on the calling thread, and the 
+   * snapshots are generated up front, as they are for validateInParallel
+   * 
+   * @param location - the name of the source, used to identify the outcomes (as location:line)
+   * @return the number of lines validated
+   */
+  public int validateNDJson(String location, InputStream stream, List<String> profiles, INDJsonOutcomeHandler handler) throws FHIRException, IOException {
+    List<StructureDefinition> sdl = asSdList(profiles);
+    NDJsonParser parser = new NDJsonParser(context);
+    parser.setupValidation(ValidationPolicy.EVERYTHING);
+    int[] count = { 0 };
+    if (threads <= 1) {
+      InstanceValidator validator = getValidator(FhirFormat.NDJSON);
+      parser.parse(stream, (line, fragment) -> {
+        handler.handle(line, validateFragment(validator, location, line, fragment, sdl));
+        count[0]++;
+      });
+    } else {
+      prepare();
+      BlockingQueue<InstanceValidator> validators = new ArrayBlockingQueue<>(threads);
+      for (int i = 0; i < threads; i++) {
+        validators.add(getValidator(FhirFormat.NDJSON));
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      Deque<Integer> lines = new ArrayDeque<>();
+      Deque<Future<OperationOutcome>> pending = new ArrayDeque<>();
+      try {
+        parser.parse(stream, (line, fragment) -> {
+          lines.add(line);
+          pending.add(executor.submit(() -> {
+            // there are as many validators as workers, so there's always one free
+            InstanceValidator validator = validators.take();
+            try {
+              return validateFragment(validator, location, line, fragment, sdl);
+            } finally {
+              validators.add(validator);
+            }
+          }));
+          // don't let the reader get too far ahead of the workers
+          while (pending.size() >= threads * 4) {
+            handleNext(lines, pending, handler);
+            count[0]++;
+          }
+        });
+        while (!pending.isEmpty()) {
+          handleNext(lines, pending, handler);
+          count[0]++;
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    return count[0];
+  }
+
+  private OperationOutcome validateFragment(InstanceValidator validator, String location, int line, ValidatedFragment fragment, List<StructureDefinition> profiles) throws FHIRException, IOException {
+    if (fragment.getElement() != null) {
+      validator.validate(null, fragment.getErrors(), null, fragment.getElement(), new ArrayList<>(profiles));
+    }
+    try {
+      OperationOutcome outcome = ValidatorUtils.messagesToOutcome(fragment.getErrors(), context, fhirPathEngine);
+      ToolingExtensions.addStringExtension(outcome, ToolingExtensions.EXT_OO_FILE, location+":"+(line+1));
+      return outcome;
+    } catch (EOperationOutcome e) {
+      throw new FHIRException(e);
+    }
+  }
+
+  private void handleNext(Deque<Integer> lines, Deque<Future<OperationOutcome>> pending, INDJsonOutcomeHandler handler) throws IOException {
+    int line = lines.remove();
+    try {
+      handler.handle(line, pending.remove().get());
+    } catch (ExecutionException e) {
+      System.out.println("Validation Infrastructure fail validating line " + (line+1) + ": " + e.getCause().getMessage());
+      throw new FHIRException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new FHIRException(e);
+    }
+  }
+
   public ValidatedFragments validateAsFragments(byte[] source, FhirFormat cntType, List<String> profiles, List<ValidationMessage> messages) throws FHIRException, IOException, EOperationOutcome {
     InstanceValidator validator = getValidator(cntType);
     validator.validate(null, messages, new ByteArrayInputStream(source), cntType, asSdList(profiles));
@@ -682,30 +866,38 @@ public class ValidationEngine implements IValidatorResourceFetcher, IValidationP
   }
 
   public OperationOutcome validate(String location, ByteProvider source, FhirFormat cntType, List<String> profiles, List<ValidationRecord> record) throws FHIRException, IOException, EOperationOutcome, SAXException {
+    InstanceValidator validator = getValidator(cntType);
+    return validate(validator, location, source, cntType, asSdList(profiles), record);
+  }
+
+  private OperationOutcome validate(InstanceValidator validator, String location, ByteProvider source, FhirFormat cntType, List<StructureDefinition> profiles, List<ValidationRecord> record) throws FHIRException, IOException, EOperationOutcome, SAXException {
     List<ValidationMessage> messages = new ArrayList<ValidationMessage>();
     if (doNative) {
       SchemaValidator.validateSchema(location, cntType, messages);
     }
-    InstanceValidator validator = getValidator(cntType);
-    validator.validate(null, messages, new ByteArrayInputStream(source.getBytes()), cntType, asSdList(profiles));
+    validator.validate(null, messages, new ByteArrayInputStream(source.getBytes()), cntType, new ArrayList<>(profiles));
     if (showTimes) {
       System.out.println(location + ": " + validator.reportTimes());
     }
     if (record != null) {
-      boolean found = false;
-      for (ValidationRecord t : record) {
-        if (t.getLocation().equals(location)) {
-          found = true;
-          t.setMessages(messages);
-        }
-      }
-      if (!found) {
-        record.add(new ValidationRecord(location, messages));
-      }
+      addToRecord(record, location, messages);
     }
     return ValidatorUtils.messagesToOutcome(messages, context, fhirPathEngine);
   }
 
+  private void addToRecord(List<ValidationRecord> record, String location, List<ValidationMessage> messages) {
+    boolean found = false;
+    for (ValidationRecord t : record) {
+      if (t.getLocation().equals(location)) {
+        found = true;
+        t.setMessages(messages);
+      }
+    }
+    if (!found) {
+      record.add(new ValidationRecord(location, messages));
+    }
+  }
+
   public OperationOutcome validate(String location, byte[] source, FhirFormat cntType, List<String> profiles, IdStatus resourceIdRule, boolean anyExtensionsAllowed, BestPracticeWarningLevel bpWarnings, CheckDisplayOption displayOption) throws FHIRException, IOException, EOperationOutcome, SAXException {
     List<ValidationMessage> messages = new ArrayList<ValidationMessage>();
     if (doNative) {
@@ -902,6 +1094,7 @@ public class ValidationEngine implements IValidatorResourceFetcher, IValidationP
     validator.setNoUnicodeBiDiControlChars(noUnicodeBiDiControlChars);
     validator.setDoImplicitFHIRPathStringConversion(doImplicitFHIRPathStringConversion);
     validator.setCheckIPSCodes(checkIPSCodes);
+    validator.setStreamingXml(streamingXml);
     if (format == FhirFormat.SHC) {
       igLoader.loadIg(getIgs(), getBinaries(), SHCParser.CURRENT_PACKAGE, true);      
     }
@@ -912,6 +1105,10 @@ public class ValidationEngine implements IValidatorResourceFetcher, IValidationP
     }
     validator.setUnknownCodeSystemsCauseErrors(unknownCodeSystemsCauseErrors);
     validator.setNoExperimentalContent(noExperimentalContent);
+    validator.setTerminologyBatchSize(terminologyBatchSize);
+    if (expressionCache != null) {
+      validator.getFHIRPathEngine().setExpressionCache(expressionCache);
+    }
     return validator;
   }
 
@@ -1084,6 +1281,18 @@ public class ValidationEngine implements IValidatorResourceFetcher, IValidationP
     return this;
   }
 
+  /**
+   * How many requests can be made at once to each terminology server (default 1). This is set on the
+   * context, so it applies to all the validators, and can be changed while they are running
+   */
+  public ValidationEngine setTerminologyConcurrency(int terminologyConcurrency) {
+    if (context != null) {
+      context.getTxClientManager().setMaxConcurrentRequests(terminologyConcurrency);
+    }
+    this.terminologyConcurrency = terminologyConcurrency;
+    return this;
+  }
+
   public ValidationEngine setSnomedExtension(String sct) {
     getContext().getExpansionParameters().addParameter("system-version", new CanonicalType("http://snomed.info/sct|http://snomed.info/sct/" + sct));
     return this;
@@ -136,6 +136,7 @@ public class ValidatorCli {
       new TransformTask(),
       new VersionTask(),
       new CodeGenTask(),
+      new StreamNDJsonTask(),
       defaultCliTask);
   }
 
@@ -62,6 +62,8 @@ public class CliContext {
   private boolean disableDefaultResourceFetcher = false;
   @JsonProperty("checkIPSCodes")  
   private boolean checkIPSCodes;
+  @JsonProperty("streamingXml")  
+  private boolean streamingXml;
   @JsonProperty("langTransform")
   private String langTransform = null;
   @JsonProperty("map")
@@ -80,6 +82,8 @@ public class CliContext {
   private String txLog = null;
   @JsonProperty("txCache")
   private String txCache = null;
+  @JsonProperty("snapshotCache")
+  private String snapshotCache = null;
   @JsonProperty("mapLog")
   private String mapLog = null;
   @JsonProperty("lang")
@@ -172,6 +176,15 @@ public class CliContext {
   
   @JsonProperty("watchSettleTime")
   private int watchSettleTime = 100;
+
+  @JsonProperty("threads")
+  private int threads = 1;
+
+  @JsonProperty("terminologyBatchSize")
+  private int terminologyBatchSize = 0;
+
+  @JsonProperty("terminologyConcurrency")
+  private int terminologyConcurrency = 1;
   
   @JsonProperty("bestPracticeLevel")
   private BestPracticeWarningLevel bestPracticeLevel = BestPracticeWarningLevel.Warning;
@@ -399,6 +412,17 @@ public class CliContext {
     return this;
   }
 
+  @JsonProperty("streamingXml")
+  public boolean isStreamingXml() {
+    return streamingXml;
+  }
+
+  @JsonProperty("streamingXml")
+  public CliContext setStreamingXml(boolean streamingXml) {
+    this.streamingXml = streamingXml;
+    return this;
+  }
+
 
   @JsonProperty("locale")
   public String getLanguageCode() {
@@ -596,6 +620,17 @@ public class CliContext {
     return this;
   }
 
+  @JsonProperty("snapshotCache")
+  public String getSnapshotCache() {
+    return snapshotCache;
+  }
+
+  @JsonProperty("snapshotCache")
+  public CliContext setSnapshotCache(String snapshotCache) {
+    this.snapshotCache = snapshotCache;
+    return this;
+  }
+
   @JsonProperty("mapLog")
   public String getMapLog() {
     return mapLog;
@@ -874,6 +909,7 @@ public class CliContext {
       wantInvariantsInMessages == that.wantInvariantsInMessages &&
       allowDoubleQuotesInFHIRPath == that.allowDoubleQuotesInFHIRPath &&
       checkIPSCodes == that.checkIPSCodes &&
+      streamingXml == that.streamingXml &&
       Objects.equals(extensions, that.extensions) &&
       Objects.equals(map, that.map) &&
       Objects.equals(htmlInMarkdownCheck, that.htmlInMarkdownCheck) &&
@@ -884,6 +920,7 @@ public class CliContext {
       Objects.equals(sv, that.sv) &&
       Objects.equals(txLog, that.txLog) &&
       Objects.equals(txCache, that.txCache) &&
+      Objects.equals(snapshotCache, that.snapshotCache) &&
       Objects.equals(mapLog, that.mapLog) &&
       Objects.equals(lang, that.lang) &&
       Objects.equals(srcLang, that.srcLang) &&
@@ -914,15 +951,18 @@ public class CliContext {
       Objects.equals(unknownCodeSystemsCauseErrors, that.unknownCodeSystemsCauseErrors) &&
       Objects.equals(noExperimentalContent, that.noExperimentalContent) &&
       Objects.equals(advisorFile, that.advisorFile) &&
-      Objects.equals(watchSettleTime, that.watchSettleTime) ;
+      Objects.equals(watchSettleTime, that.watchSettleTime) &&
+      threads == that.threads &&
+      terminologyBatchSize == that.terminologyBatchSize &&
+      terminologyConcurrency == that.terminologyConcurrency;
   }
 
   @Override
   public int hashCode() {
     return Objects.hash(baseEngine, doNative, extensions, hintAboutNonMustSupport, recursive, doDebug, assumeValidRestReferences, canDoNative, noInternalCaching,
-            noExtensibleBindingMessages, noInvariants, displayWarnings, wantInvariantsInMessages, map, output, outputSuffix, htmlOutput, txServer, sv, txLog, txCache, mapLog, lang, srcLang, tgtLang, fhirpath, snomedCT,
+            noExtensibleBindingMessages, noInvariants, displayWarnings, wantInvariantsInMessages, map, output, outputSuffix, htmlOutput, txServer, sv, txLog, txCache, snapshotCache, mapLog, lang, srcLang, tgtLang, fhirpath, snomedCT,
             targetVer, packageName, igs, questionnaireMode, level, profiles, options, sources, inputs, mode, locale, locations, crumbTrails, showMessageIds, forPublication, showTimes, allowExampleUrls, outputStyle, jurisdiction, noUnicodeBiDiControlChars,
-            watchMode, watchScanDelay, watchSettleTime, bestPracticeLevel, unknownCodeSystemsCauseErrors, noExperimentalContent, advisorFile, htmlInMarkdownCheck, allowDoubleQuotesInFHIRPath, checkIPSCodes);
+            watchMode, watchScanDelay, watchSettleTime, bestPracticeLevel, unknownCodeSystemsCauseErrors, noExperimentalContent, advisorFile, htmlInMarkdownCheck, allowDoubleQuotesInFHIRPath, checkIPSCodes, streamingXml, threads, terminologyBatchSize, terminologyConcurrency);
   }
 
   @Override
@@ -950,6 +990,7 @@ public class CliContext {
       ", sv='" + sv + '\'' +
       ", txLog='" + txLog + '\'' +
       ", txCache='" + txCache + '\'' +
+      ", snapshotCache='" + snapshotCache + '\'' +
       ", mapLog='" + mapLog + '\'' +
       ", lang='" + lang + '\'' +
       ", srcLang='" + srcLang + '\'' +
@@ -980,10 +1021,14 @@ public class CliContext {
       ", htmlInMarkdownCheck=" + htmlInMarkdownCheck +
       ", allowDoubleQuotesInFHIRPath=" + allowDoubleQuotesInFHIRPath +
       ", checkIPSCodes=" + checkIPSCodes +
+      ", streamingXml=" + streamingXml +
       ", watchMode=" + watchMode +
       ", bestPracticeLevel=" + bestPracticeLevel +
       ", watchSettleTime=" + watchSettleTime +
       ", watchScanDelay=" + watchScanDelay +
+      ", threads=" + threads +
+      ", terminologyBatchSize=" + terminologyBatchSize +
+      ", terminologyConcurrency=" + terminologyConcurrency +
       ", unknownCodeSystemsCauseErrors=" + unknownCodeSystemsCauseErrors +
       ", noExperimentalContent=" + noExperimentalContent +
       ", advisorFile=" + advisorFile +
@@ -1031,6 +1076,39 @@ public class CliContext {
   public void setWatchSettleTime(int watchSettleTime) {
     this.watchSettleTime = watchSettleTime;
   }
+
+  @JsonProperty("threads")
+  public int getThreads() {
+    return threads;
+  }
+
+  @JsonProperty("threads")
+  public CliContext setThreads(int threads) {
+    this.threads = threads;
+    return this;
+  }
+
+  @JsonProperty("terminologyBatchSize")
+  public int getTerminologyBatchSize() {
+    return terminologyBatchSize;
+  }
+
+  @JsonProperty("terminologyBatchSize")
+  public CliContext setTerminologyBatchSize(int terminologyBatchSize) {
+    this.terminologyBatchSize = terminologyBatchSize;
+    return this;
+  }
+
+  @JsonProperty("terminologyConcurrency")
+  public int getTerminologyConcurrency() {
+    return terminologyConcurrency;
+  }
+
+  @JsonProperty("terminologyConcurrency")
+  public CliContext setTerminologyConcurrency(int terminologyConcurrency) {
+    this.terminologyConcurrency = terminologyConcurrency;
+    return this;
+  }
   
 
   @JsonProperty("bestPracticeLevel")
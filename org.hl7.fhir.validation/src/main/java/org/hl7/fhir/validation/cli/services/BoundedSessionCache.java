@@ -0,0 +1,412 @@
+package org.hl7.fhir.validation.cli.services;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+import org.hl7.fhir.utilities.DurationUtil;
+import org.hl7.fhir.utilities.Utilities;
+import org.hl7.fhir.validation.ValidationEngine;
+
+/**
+ * SessionCache for storing and retrieving ValidationEngine instances that, unlike {@link PassiveExpiringSessionCache},
+ * bounds both the number of sessions it holds and their total estimated size. When either bound is exceeded, sessions
+ * are evicted, least recently used (LRU) or least frequently used (LFU) first.
+ *
+ * Sessions can be pinned, in which case they are never evicted or expired. {@link #warmSession(String, Callable)}
+ * creates a session ahead of time for a known configuration, and pins it.
+ *
+ * The cache keeps statistics: hits and misses (as seen by {@link #sessionExists(String)}), evictions, expiries, and
+ * how long it took to create the sessions that were cached (see {@link #recordSessionCreation(long)}).
+ *
+ * The bounds, the eviction policy, the size estimate and the clock can all be changed after construction, e.g.
+ * <pre>new BoundedSessionCache().setMaxSessions(50).setMaxSize(4L * 1024 * 1024 * 1024).setEvictionPolicy(EvictionPolicy.LFU)</pre>
+ */
+public class BoundedSessionCache implements SessionCache {
+
+  public enum EvictionPolicy {
+    LRU, LFU
+  }
+
+  public static final int DEFAULT_MAX_SESSIONS = 20;
+  public static final long DEFAULT_MAX_SIZE = Long.MAX_VALUE;
+  public static final long TIME_TO_LIVE = 60;
+  public static final TimeUnit TIME_UNIT = TimeUnit.MINUTES;
+
+  /**
+   * A rough figure for the memory retained per loaded resource, used by the default size estimate
+   */
+  public static final long ESTIMATED_BYTES_PER_RESOURCE = 16 * 1024;
+
+  private class CachedSession {
+    private final ValidationEngine engine;
+    private final long size;
+    private long lastAccess;
+    private long accessCount;
+    private boolean pinned;
+
+    private CachedSession(ValidationEngine engine, long size) {
+      this.engine = engine;
+      this.size = size;
+      this.lastAccess = ticker.getAsLong();
+    }
+
+    private void access() {
+      lastAccess = ticker.getAsLong();
+      accessCount++;
+    }
+
+    private boolean isExpired(long now) {
+      return !pinned && timeToLive >= 0 && now - lastAccess > timeToLive;
+    }
+  }
+
+  private final Map<String, CachedSession> cachedSessions = new HashMap<>();
+  private int maxSessions;
+  private long maxSize;
+  private long timeToLive; // nanoseconds; negative means never expire
+  private EvictionPolicy evictionPolicy;
+  private ToLongFunction<ValidationEngine> sizeEstimator = BoundedSessionCache::estimateSize;
+  private LongSupplier ticker = System::nanoTime;
+
+  private long totalSize;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long expiries;
+  private long creations;
+  private long creationTime; // nanoseconds, total
+  private long maxCreationTime; // nanoseconds
+
+  public BoundedSessionCache() {
+    this(DEFAULT_MAX_SESSIONS, DEFAULT_MAX_SIZE, TIME_TO_LIVE, TIME_UNIT, EvictionPolicy.LRU);
+  }
+
+  /**
+   * @param maxSessions the most sessions the cache will hold, not counting pinned sessions
+   * @param maxSize the most estimated bytes the cached sessions will retain, not counting pinned sessions
+   * @param sessionLength how long an unused session is kept. A negative value results in sessions that never expire
+   * @param sessionLengthUnit the unit of time for sessionLength, must not be null
+   * @param evictionPolicy which session to evict first when the cache is full
+   */
+  public BoundedSessionCache(int maxSessions, long maxSize, long sessionLength, TimeUnit sessionLengthUnit, EvictionPolicy evictionPolicy) {
+    setMaxSessions(maxSessions);
+    setMaxSize(maxSize);
+    setSessionLength(sessionLength, sessionLengthUnit);
+    setEvictionPolicy(evictionPolicy);
+  }
+
+  /**
+   * @param maxSessions the most sessions the cache will hold, not counting pinned sessions. If the cache holds more
+   * than this, sessions are evicted now
+   */
+  public synchronized BoundedSessionCache setMaxSessions(int maxSessions) {
+    if (maxSessions < 1) {
+      throw new IllegalArgumentException("A session cache must be able to hold at least one session");
+    }
+    this.maxSessions = maxSessions;
+    evict(null);
+    return this;
+  }
+
+  /**
+   * @param maxSize the most estimated bytes the cached sessions will retain, not counting pinned sessions. If the
+   * cache holds more than this, sessions are evicted now
+   */
+  public synchronized BoundedSessionCache setMaxSize(long maxSize) {
+    this.maxSize = maxSize;
+    evict(null);
+    return this;
+  }
+
+  /**
+   * @param sessionLength how long an unused session is kept. A negative value results in sessions that never expire
+   * @param sessionLengthUnit the unit of time for sessionLength, must not be null
+   */
+  public synchronized BoundedSessionCache setSessionLength(long sessionLength, TimeUnit sessionLengthUnit) {
+    this.timeToLive = sessionLength < 0 ? -1 : sessionLengthUnit.toNanos(sessionLength);
+    return this;
+  }
+
+  public synchronized BoundedSessionCache setEvictionPolicy(EvictionPolicy evictionPolicy) {
+    this.evictionPolicy = evictionPolicy == null ? EvictionPolicy.LRU : evictionPolicy;
+    return this;
+  }
+
+  public synchronized int getMaxSessions() {
+    return maxSessions;
+  }
+
+  public synchronized long getMaxSize() {
+    return maxSize;
+  }
+
+  public synchronized EvictionPolicy getEvictionPolicy() {
+    return evictionPolicy;
+  }
+
+  /**
+   * Replace the clock the cache uses for expiry, LRU order and creation times. It returns nanoseconds, like 
+   * {@link System#nanoTime()}, which is the default
+   */
+  public synchronized BoundedSessionCache setTicker(LongSupplier ticker) {
+    this.ticker = ticker;
+    return this;
+  }
+
+  /**
+   * Replace the function that estimates how much memory a session retains. The estimate is made once, when the
+   * session is cached
+   */
+  public synchronized BoundedSessionCache setSizeEstimator(ToLongFunction<ValidationEngine> sizeEstimator) {
+    this.sizeEstimator = sizeEstimator;
+    return this;
+  }
+
+  /**
+   * The default size estimate. Only the resources the session's context holds itself are counted: a session forked
+   * from a base engine shares the base engine's content (see {@link ValidationEngine#ValidationEngine(ValidationEngine)}), 
+   * and that isn't released when the session is evicted
+   */
+  public static long estimateSize(ValidationEngine engine) {
+    return engine.getContext() == null ? 0 : engine.getContext().countLocalCaches() * ESTIMATED_BYTES_PER_RESOURCE;
+  }
+
+  @Override
+  public String cacheSession(ValidationEngine validationEngine) {
+    return cacheSession(generateID(), validationEngine, false);
+  }
+
+  @Override
+  public String cacheSession(String sessionId, ValidationEngine validationEngine) {
+    return cacheSession(sessionId == null ? generateID() : sessionId, validationEngine, false);
+  }
+
+  private synchronized String cacheSession(String sessionId, ValidationEngine validationEngine, boolean pinned) {
+    CachedSession session = new CachedSession(validationEngine, sizeEstimator.applyAsLong(validationEngine));
+    session.pinned = pinned;
+    remove(sessionId);
+    cachedSessions.put(sessionId, session);
+    totalSize += session.size;
+    evict(sessionId);
+    return sessionId;
+  }
+
+  /**
+   * Create a session now, using the factory, and pin it, so that the first request for it doesn't pay for
+   * creating it, and it's never evicted. The time taken to create it is recorded
+   *
+   * @return the session id
+   */
+  public String warmSession(String sessionId, Callable<ValidationEngine> factory) throws Exception {
+    long start = ticker.getAsLong();
+    ValidationEngine engine = factory.call();
+    recordSessionCreation(ticker.getAsLong() - start);
+    return cacheSession(sessionId == null ? generateID() : sessionId, engine, true);
+  }
+
+  /**
+   * @return false if there is no such session
+   */
+  public synchronized boolean pinSession(String sessionId) {
+    CachedSession session = cachedSessions.get(sessionId);
+    if (session != null) {
+      session.pinned = true;
+    }
+    return session != null;
+  }
+
+  /**
+   * Make a pinned session subject to eviction and expiry again
+   */
+  public synchronized void unpinSession(String sessionId) {
+    CachedSession session = cachedSessions.get(sessionId);
+    if (session != null) {
+      session.pinned = false;
+      evict(null);
+    }
+  }
+
+  public synchronized boolean isPinned(String sessionId) {
+    CachedSession session = cachedSessions.get(sessionId);
+    return session != null && session.pinned;
+  }
+
+  @Override
+  public synchronized boolean sessionExists(String sessionId) {
+    removeExpiredSessions();
+    if (sessionId == null) {
+      return false;
+    }
+    boolean exists = cachedSessions.containsKey(sessionId);
+    if (exists) {
+      hits++;
+    } else {
+      misses++;
+    }
+    return exists;
+  }
+
+  @Override
+  public synchronized ValidationEngine fetchSessionValidatorEngine(String sessionId) {
+    CachedSession session = cachedSessions.get(sessionId);
+    if (session == null) {
+      return null;
+    }
+    if (session.isExpired(ticker.getAsLong())) {
+      expiries++;
+      remove(sessionId);
+      return null;
+    }
+    session.access();
+    return session.engine;
+  }
+
+  @Override
+  public synchronized Set<String> getSessionIds() {
+    removeExpiredSessions();
+    return new HashSet<>(cachedSessions.keySet());
+  }
+
+  @Override
+  public synchronized void cleanUp() {
+    removeExpiredSessions();
+  }
+
+  @Override
+  public synchronized void recordSessionCreation(long nanos) {
+    creations++;
+    creationTime += nanos;
+    maxCreationTime = Math.max(maxCreationTime, nanos);
+  }
+
+  protected synchronized void removeExpiredSessions() {
+    long now = ticker.getAsLong();
+    Set<String> expired = new HashSet<>();
+    for (Map.Entry<String, CachedSession> e : cachedSessions.entrySet()) {
+      if (e.getValue().isExpired(now)) {
+        expired.add(e.getKey());
+      }
+    }
+    for (String id : expired) {
+      remove(id);
+      expiries++;
+    }
+  }
+
+  private void remove(String sessionId) {
+    CachedSession session = cachedSessions.remove(sessionId);
+    if (session != null) {
+      totalSize -= session.size;
+    }
+  }
+
+  /**
+   * evict sessions until the unpinned sessions are within bounds. The session that was just
+   * cached (keep) is evicted last, and only if it's too big to fit on its own
+   */
+  private void evict(String keep) {
+    while (isOverBounds()) {
+      String victim = chooseVictim(keep);
+      if (victim == null) {
+        victim = keep != null && !cachedSessions.get(keep).pinned && isOverBounds() ? keep : null;
+        if (victim == null) {
+          return;
+        }
+      }
+      remove(victim);
+      evictions++;
+    }
+  }
+
+  private boolean isOverBounds() {
+    int count = 0;
+    long size = 0;
+    for (CachedSession session : cachedSessions.values()) {
+      if (!session.pinned) {
+        count++;
+        size += session.size;
+      }
+    }
+    return count > maxSessions || size > maxSize;
+  }
+
+  private String chooseVictim(String keep) {
+    String victim = null;
+    CachedSession worst = null;
+    for (Map.Entry<String, CachedSession> e : cachedSessions.entrySet()) {
+      CachedSession session = e.getValue();
+      if (!session.pinned && !e.getKey().equals(keep) && (worst == null || isWorse(session, worst))) {
+        victim = e.getKey();
+        worst = session;
+      }
+    }
+    return victim;
+  }
+
+  private boolean isWorse(CachedSession session, CachedSession other) {
+    if (evictionPolicy == EvictionPolicy.LFU && session.accessCount != other.accessCount) {
+      return session.accessCount < other.accessCount;
+    }
+    return session.lastAccess < other.lastAccess;
+  }
+
+  public synchronized int getSize() {
+    return cachedSessions.size();
+  }
+
+  public synchronized long getTotalSize() {
+    return totalSize;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized long getExpiries() {
+    return expiries;
+  }
+
+  public synchronized long getCreations() {
+    return creations;
+  }
+
+  /**
+   * @return the average time taken to create a session, in nanoseconds
+   */
+  public synchronized long getAverageCreationTime() {
+    return creations == 0 ? 0 : creationTime / creations;
+  }
+
+  public synchronized long getMaxCreationTime() {
+    return maxCreationTime;
+  }
+
+  public synchronized String summary() {
+    return "Session Cache: " + cachedSessions.size() + " sessions (" + Utilities.describeSize(totalSize) + "), " + hits + " hits, " + misses + " misses, "
+      + evictions + " evictions, " + expiries + " expiries, " + creations + " creations"
+      + (creations == 0 ? "" : " (avg " + DurationUtil.presentDuration(getAverageCreationTime()) + ", max " + DurationUtil.presentDuration(maxCreationTime) + ")");
+  }
+
+  /**
+   * Session ids generated internally are UUID {@link String}.
+   * @return A new {@link String} session id.
+   */
+  private String generateID() {
+    return UUID.randomUUID().toString();
+  }
+}
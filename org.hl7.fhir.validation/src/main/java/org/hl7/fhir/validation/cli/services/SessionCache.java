@@ -48,4 +48,12 @@ public interface SessionCache {
    * */
   public void cleanUp();
 
+  /**
+   * Records how long it took to create a session that is about to be cached. Caches that keep statistics
+   * (e.g. {@link BoundedSessionCache}) can use this; by default, it's ignored.
+   * @param nanos The time taken to create the session, in nanoseconds.
+   */
+  default void recordSessionCreation(long nanos) {
+  }
+
 }
\ No newline at end of file
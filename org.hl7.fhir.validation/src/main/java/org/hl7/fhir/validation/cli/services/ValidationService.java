@@ -4,6 +4,7 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
@@ -18,6 +19,7 @@ import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.r5.conformance.profile.ProfileUtilities;
 import org.hl7.fhir.r5.context.ContextUtilities;
 import org.hl7.fhir.r5.context.SimpleWorkerContext;
+import org.hl7.fhir.r5.context.SnapshotStore;
 import org.hl7.fhir.r5.context.SystemOutLoggingService;
 import org.hl7.fhir.r5.elementmodel.Element;
 import org.hl7.fhir.r5.elementmodel.LanguageUtils;
@@ -43,7 +45,9 @@ import org.hl7.fhir.r5.renderers.spreadsheets.StructureDefinitionSpreadsheetGene
 import org.hl7.fhir.r5.renderers.spreadsheets.ValueSetSpreadsheetGenerator;
 import org.hl7.fhir.r5.terminologies.CodeSystemUtilities;
 import org.hl7.fhir.r5.terminologies.client.TerminologyClientManager.InternalLogEvent;
+import org.hl7.fhir.r5.terminologies.utilities.SharedTerminologyCache;
 import org.hl7.fhir.r5.terminologies.utilities.TerminologyCache;
+import org.hl7.fhir.utilities.DurationUtil;
 import org.hl7.fhir.utilities.FhirPublication;
 import org.hl7.fhir.utilities.SystemExitManager;
 import org.hl7.fhir.utilities.TextFile;
@@ -84,6 +88,13 @@ public class ValidationService {
 
   private final Map<String, ValidationEngine> baseEngines = new ConcurrentHashMap<>();
 
+  /**
+   * The engines this service builds share the validate-code and expansion results that they get from 
+   * terminology servers (see {@link SharedTerminologyCache}), so that a result is asked for once per 
+   * service rather than once per session
+   */
+  private final SharedTerminologyCache sharedTerminologyCache = new SharedTerminologyCache(SharedTerminologyCache.DEFAULT_MAXIMUM_SIZE);
+
   public void putBaseEngine(String key, CliContext cliContext) throws IOException, URISyntaxException {
     if (cliContext.getSv() == null) {
       throw new IllegalArgumentException("Cannot create a base engine without an explicit version");
@@ -91,9 +102,25 @@ public class ValidationService {
     String definitions = VersionUtilities.packageForVersion(cliContext.getSv()) + "#" + VersionUtilities.getCurrentVersion(cliContext.getSv());
 
     ValidationEngine baseEngine = buildValidationEngine(cliContext, definitions, new TimeTracker());
+    shareTerminologyCache(baseEngine);
     baseEngines.put(key, baseEngine);
   }
 
+  /**
+   * Give the engine's terminology cache, if it has a folder, the cache that this service's engines share. 
+   * Engines copied from a base engine use the base engine's terminology cache, so they share it too
+   */
+  private void shareTerminologyCache(ValidationEngine validationEngine) {
+    TerminologyCache txCache = validationEngine.getContext() == null ? null : validationEngine.getContext().getTxCache();
+    if (txCache != null && txCache.getFolder() != null && txCache.getSharedCache() == null) {
+      txCache.setSharedCache(sharedTerminologyCache);
+    }
+  }
+
+  public SharedTerminologyCache getSharedTerminologyCache() {
+    return sharedTerminologyCache;
+  }
+
   public ValidationEngine getBaseEngine(String key) {
     return baseEngines.get(key);
   }
@@ -102,8 +129,12 @@ public class ValidationService {
 
   public boolean hasBaseEngineForKey(String key) { return baseEngines.containsKey(key); }
 
+  /**
+   * Sessions are held in a {@link BoundedSessionCache} with the default bounds; use {@link #getSessionCache()} 
+   * to change them, or pass a different cache to {@link #ValidationService(SessionCache)}
+   */
   public ValidationService() {
-    sessionCache = new PassiveExpiringSessionCache();
+    sessionCache = new BoundedSessionCache();
     runDate = new SimpleDateFormat("hh:mm:ss", new Locale("en", "US")).format(new Date());
   }
 
@@ -113,6 +144,10 @@ public class ValidationService {
     this.sessionCache = cache;
   }
 
+  public SessionCache getSessionCache() {
+    return sessionCache;
+  }
+
   public ValidationResponse validateSources(ValidationRequest request) throws Exception {
 
     TimeTracker timeTracker = new TimeTracker();
@@ -323,6 +358,63 @@ public class ValidationService {
     }
   }
 
+  /**
+   * Validate NDJSON sources (e.g. bulk data exports) resource by resource, writing the outcomes out 
+   * as each resource is validated, so that the size of the sources doesn't matter. If the -output 
+   * is an .ndjson file, the outcomes are written to it one per line; otherwise they're rendered
+   * using the -output-style as for normal validation 
+   */
+  public void validateNDJsonSources(CliContext cliContext, ValidationEngine validator) throws Exception {
+    if (cliContext.getProfiles().size() > 0) {
+      System.out.println("  Profiles: " + cliContext.getProfiles());
+    }
+    int[] ec = { 0 };
+    PrintStream dst = cliContext.getOutput() == null ? System.out : new PrintStream(ManagedFileAccess.outStream(cliContext.getOutput()));
+    try {
+      ValidationOutputRenderer renderer = null;
+      if (cliContext.getOutput() == null || !cliContext.getOutput().endsWith(".ndjson") || !Utilities.noString(cliContext.getOutputStyle())) {
+        renderer = makeValidationOutputRenderer(cliContext);
+        if (!renderer.isSingleFile()) {
+          throw new Error("The output style "+renderer.getStyleCode()+" can't be used when streaming NDJSON");
+        }
+        renderer.setCrumbTrails(validator.isCrumbTrails());
+        renderer.setShowMessageIds(validator.isShowMessageIds());
+        renderer.setRunDate(runDate);
+        renderer.setOutput(dst);
+        renderer.start(true);
+      }
+      ValidationOutputRenderer r = renderer;
+      org.hl7.fhir.r5.formats.JsonParser json = new org.hl7.fhir.r5.formats.JsonParser();
+      json.setOutputStyle(OutputStyle.NORMAL);
+      for (String source : cliContext.getSources()) {
+        long start = System.nanoTime();
+        System.out.println("  Validate " + source);
+        int count;
+        try (InputStream stream = ManagedFileAccess.inStream(source)) {
+          count = validator.validateNDJson(source, stream, cliContext.getProfiles(), (line, op) -> {
+            ec[0] = ec[0] + countErrors(op);
+            if (r != null) {
+              r.render(op);
+            } else {
+              dst.println(json.composeString(op));
+            }
+          });
+        }
+        System.out.println("  Validated " + count + " lines in " + source + " " + DurationUtil.presentDuration(System.nanoTime() - start));
+      }
+      if (renderer != null) {
+        renderer.finish();
+      }
+    } finally {
+      if (cliContext.getOutput() != null) {
+        dst.close();
+      }
+    }
+    if (ec[0] > 0) {
+      SystemExitManager.setError(1);
+    }
+  }
+
   private int countErrors(OperationOutcome oo) {
     int error = 0;
     for (OperationOutcome.OperationOutcomeIssueComponent issue : oo.getIssue()) {
@@ -523,7 +615,9 @@ public class ValidationService {
       }
       final String engineDefinitions = definitions != null ? definitions : VersionUtilities.packageForVersion(cliContext.getSv()) + "#" + VersionUtilities.getCurrentVersion(cliContext.getSv());
 
+      long start = System.nanoTime();
       ValidationEngine validationEngine = getValidationEngineFromCliContext(cliContext, engineDefinitions, tt);
+      sessionCache.recordSessionCreation(System.nanoTime() - start);
       sessionId = sessionCache.cacheSession(validationEngine);
       System.out.println("Cached new session. Cache size = " + sessionCache.getSessionIds().size());
 
@@ -533,6 +627,28 @@ public class ValidationService {
     return sessionId;
   }
 
+  /**
+   * Create a session for a known configuration ahead of time, so that the first request that uses it doesn't 
+   * pay for creating it. If the session cache is a {@link BoundedSessionCache}, the session is pinned, so it's
+   * never evicted.
+   * 
+   * @return the session id
+   */
+  public String warmSession(CliContext cliContext, String sessionId) throws Exception {
+    if (cliContext.getSv() == null) {
+      cliContext.setSv(determineVersion(cliContext));
+    }
+    final String engineDefinitions = VersionUtilities.packageForVersion(cliContext.getSv()) + "#" + VersionUtilities.getCurrentVersion(cliContext.getSv());
+    if (sessionCache instanceof BoundedSessionCache) {
+      return ((BoundedSessionCache) sessionCache).warmSession(sessionId, () -> getValidationEngineFromCliContext(cliContext, engineDefinitions, new TimeTracker()));
+    } else {
+      long start = System.nanoTime();
+      ValidationEngine validationEngine = getValidationEngineFromCliContext(cliContext, engineDefinitions, new TimeTracker());
+      sessionCache.recordSessionCreation(System.nanoTime() - start);
+      return sessionCache.cacheSession(sessionId, validationEngine);
+    }
+  }
+
   private ValidationEngine getValidationEngineFromCliContext(CliContext cliContext, String definitions, TimeTracker tt) throws Exception {
     ValidationEngine validationEngine;
     if (cliContext.getBaseEngine() != null && hasBaseEngineForKey(cliContext.getBaseEngine())) {
@@ -543,6 +659,7 @@ public class ValidationService {
       }
       validationEngine = buildValidationEngine(cliContext, definitions, tt);
     }
+    shareTerminologyCache(validationEngine);
     return validationEngine;
   }
 
@@ -557,6 +674,10 @@ public class ValidationService {
 
     System.out.println(" - " + validationEngine.getContext().countAllCaches() + " resources (" + timeTracker.milestone() + ")");
 
+    if (cliContext.getSnapshotCache() != null) {
+      validationEngine.getContext().setSnapshotStore(new SnapshotStore(cliContext.getSnapshotCache()));
+      System.out.println("  Snapshot Cache at "+validationEngine.getContext().getSnapshotStore().getFolder());
+    }
     loadIgsAndExtensions(validationEngine, cliContext, timeTracker);
     if (cliContext.getTxCache() != null) {
       TerminologyCache cache = new TerminologyCache(new Object(), cliContext.getTxCache());
@@ -597,12 +718,16 @@ public class ValidationService {
     validationEngine.setDisplayWarnings(cliContext.isDisplayWarnings());
     validationEngine.setBestPracticeLevel(cliContext.getBestPracticeLevel());
     validationEngine.setCheckIPSCodes(cliContext.isCheckIPSCodes());
+    validationEngine.setStreamingXml(cliContext.isStreamingXml());
     validationEngine.setWantInvariantInMessage(cliContext.isWantInvariantsInMessages());
     validationEngine.setSecurityChecks(cliContext.isSecurityChecks());
     validationEngine.setCrumbTrails(cliContext.isCrumbTrails());
     validationEngine.setShowMessageIds(cliContext.isShowMessageIds());
     validationEngine.setForPublication(cliContext.isForPublication());
     validationEngine.setShowTimes(cliContext.isShowTimes());
+    validationEngine.setThreads(cliContext.getThreads());
+    validationEngine.setTerminologyBatchSize(cliContext.getTerminologyBatchSize());
+    validationEngine.setTerminologyConcurrency(cliContext.getTerminologyConcurrency());
     validationEngine.setAllowExampleUrls(cliContext.isAllowExampleUrls());
     if (!cliContext.isDisableDefaultResourceFetcher()) {
       StandAloneValidatorFetcher fetcher = new StandAloneValidatorFetcher(validationEngine.getPcm(), validationEngine.getContext(), validationEngine);
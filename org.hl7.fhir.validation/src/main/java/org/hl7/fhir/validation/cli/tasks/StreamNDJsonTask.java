@@ -0,0 +1,44 @@
+package org.hl7.fhir.validation.cli.tasks;
+
+import java.io.PrintStream;
+
+import org.hl7.fhir.utilities.TimeTracker;
+import org.hl7.fhir.validation.ValidationEngine;
+import org.hl7.fhir.validation.cli.model.CliContext;
+import org.hl7.fhir.validation.cli.services.ValidationService;
+import org.hl7.fhir.validation.cli.utils.Display;
+import org.hl7.fhir.validation.cli.utils.EngineMode;
+
+public class StreamNDJsonTask extends ValidationEngineTask {
+
+  @Override
+  public String getName() {
+    return "stream-ndjson";
+  }
+
+  @Override
+  public String getDisplayName() {
+    return "Stream NDJSON";
+  }
+
+  @Override
+  public boolean isHidden() {
+    return false;
+  }
+
+  @Override
+  public boolean shouldExecuteTask(CliContext cliContext, String[] args) {
+    return cliContext.getMode() == EngineMode.STREAM_NDJSON;
+  }
+
+  @Override
+  public void printHelp(PrintStream out) {
+    Display.displayHelpDetails(out,"help/stream-ndjson.txt");
+  }
+
+  @Override
+  public void executeTask(ValidationService validationService, ValidationEngine validationEngine, CliContext cliContext, String[] args, TimeTracker tt, TimeTracker.Session tts) throws Exception {
+    validationService.validateNDJsonSources(cliContext, validationEngine);
+  }
+
+}
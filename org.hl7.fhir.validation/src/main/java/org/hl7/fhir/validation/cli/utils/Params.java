@@ -56,9 +56,11 @@ public class Params {
   public static final String SNAPSHOT = "-snapshot";
   public static final String INSTALL = "-install";
   public static final String SCAN = "-scan";
+  public static final String STREAM_NDJSON = "-stream-ndjson";
   public static final String TERMINOLOGY = "-tx";
   public static final String TERMINOLOGY_LOG = "-txLog";
   public static final String TERMINOLOGY_CACHE = "-txCache";
+  public static final String SNAPSHOT_CACHE = "-snapshot-cache";
   public static final String TERMINOLOGY_ROUTING = "-tx-routing";
   public static final String TERMINOLOGY_CACHE_CLEAR = "-clear-tx-cache";
   public static final String LOG = "-log";
@@ -102,6 +104,7 @@ public class Params {
   public static final String ALLOW_DOUBLE_QUOTES = "-allow-double-quotes-in-fhirpath";
   public static final String DISABLE_DEFAULT_RESOURCE_FETCHER = "-disable-default-resource-fetcher";
   public static final String CHECK_IPS_CODES = "-check-ips-codes";
+  public static final String STREAMING_XML = "-streaming-xml";
   public static final String BEST_PRACTICE = "-best-practice";
   public static final String UNKNOWN_CODESYSTEMS_CAUSE_ERROR = "-unknown-codesystems-cause-errors";
   public static final String NO_EXPERIMENTAL_CONTENT = "-no-experimental-content";
@@ -122,6 +125,9 @@ public class Params {
   private static final String WATCH_MODE_PARAM = "-watch-mode";
   private static final String WATCH_SCAN_DELAY = "-watch-scan-delay";
   private static final String WATCH_SETTLE_TIME = "-watch-settle-time";
+  public static final String THREADS = "-threads";
+  public static final String TX_BATCH_SIZE = "-tx-batch-size";
+  public static final String TX_CONCURRENCY = "-tx-concurrency";
 
   /**
    * Checks the list of passed in params to see if it contains the passed in param.
@@ -314,6 +320,8 @@ public class Params {
         cliContext.setDisableDefaultResourceFetcher(true);
       } else if (args[i].equals(CHECK_IPS_CODES)) {
         cliContext.setCheckIPSCodes(true);       
+      } else if (args[i].equals(STREAMING_XML)) {
+        cliContext.setStreamingXml(true);
       } else if (args[i].equals(NO_UNICODE_BIDI_CONTROL_CHARS)) {
         cliContext.setNoUnicodeBiDiControlChars(true);
       } else if (args[i].equals(NO_INVARIANTS)) {
@@ -398,6 +406,8 @@ public class Params {
         }
       } else if (args[i].equals(SCAN)) {
         cliContext.setMode(EngineMode.SCAN);
+      } else if (args[i].equals(STREAM_NDJSON)) {
+        cliContext.setMode(EngineMode.STREAM_NDJSON);
       } else if (args[i].equals(TERMINOLOGY)) {
         if (i + 1 == args.length)
           throw new Error("Specified -tx without indicating terminology server");
@@ -415,6 +425,11 @@ public class Params {
           throw new Error("Specified -txCache without indicating file");
         else
           cliContext.setTxCache(args[++i]);
+      } else if (args[i].equals(SNAPSHOT_CACHE)) {
+        if (i + 1 == args.length)
+          throw new Error("Specified -snapshot-cache without indicating folder");
+        else
+          cliContext.setSnapshotCache(args[++i]);
       } else if (args[i].equals(LOG)) {
         if (i + 1 == args.length)
           throw new Error("Specified -log without indicating file");
@@ -498,7 +513,30 @@ public class Params {
             throw new Error("Specified -watch-mode without indicating mode value");
           } else {
             cliContext.setWatchSettleTime(readInteger(WATCH_SETTLE_TIME, args[++i]));
-          }      } else if (args[i].startsWith(X)) {
+          }
+      } else if (args[i].equals(THREADS)) {
+        if (i + 1 == args.length) {
+          throw new Error("Specified -threads without indicating the number of threads");
+        } else {
+          cliContext.setThreads(readInteger(THREADS, args[++i]));
+        }
+      } else if (args[i].equals(TX_BATCH_SIZE)) {
+        if (i + 1 == args.length) {
+          throw new Error("Specified -tx-batch-size without indicating the batch size");
+        } else {
+          cliContext.setTerminologyBatchSize(readInteger(TX_BATCH_SIZE, args[++i]));
+        }
+      } else if (args[i].equals(TX_CONCURRENCY)) {
+        if (i + 1 == args.length) {
+          throw new Error("Specified -tx-concurrency without indicating the number of requests");
+        } else {
+          int n = readInteger(TX_CONCURRENCY, args[++i]);
+          if (n < 1) {
+            throw new Error("Specified -tx-concurrency with a value less than 1 ("+n+")");
+          }
+          cliContext.setTerminologyConcurrency(n);
+        }
+      } else if (args[i].startsWith(X)) {
         i++;
       } else if (args[i].equals(CONVERT)) {
         cliContext.setMode(EngineMode.CONVERT);
@@ -46,6 +46,8 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -63,6 +65,7 @@ import org.hl7.fhir.exceptions.PathEngineException;
 import org.hl7.fhir.exceptions.TerminologyServiceException;
 import org.hl7.fhir.r5.conformance.profile.ProfileUtilities;
 import org.hl7.fhir.r5.conformance.profile.ProfileUtilities.SourcedChildDefinitions;
+import org.hl7.fhir.r5.context.BaseWorkerContext;
 import org.hl7.fhir.r5.context.ContextUtilities;
 import org.hl7.fhir.r5.context.IWorkerContext;
 import org.hl7.fhir.r5.context.IWorkerContext.OIDSummary;
@@ -156,6 +159,7 @@ import org.hl7.fhir.r5.model.UrlType;
 import org.hl7.fhir.r5.model.UsageContext;
 import org.hl7.fhir.r5.model.ValueSet;
 import org.hl7.fhir.r5.model.ValueSet.ValueSetExpansionContainsComponent;
+import org.hl7.fhir.r5.terminologies.utilities.CodingValidationRequest;
 import org.hl7.fhir.r5.terminologies.utilities.TerminologyServiceErrorClass;
 import org.hl7.fhir.r5.terminologies.utilities.ValidationResult;
 import org.hl7.fhir.r5.utils.BuildExtensions;
@@ -579,6 +583,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
 
   private IdStatus resourceIdRule;
   private boolean allowXsiLocation;
+  private boolean streamingXml;
 
   // used during the build process to keep the overall volume of messages down
   private boolean suppressLoincSnomedMessages;
@@ -615,6 +620,8 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
   private ContextUtilities cu;
   private boolean unknownCodeSystemsCauseErrors;
   private boolean noExperimentalContent;
+  private int terminologyBatchSize;
+  private boolean indexSlices = true;
 
   public InstanceValidator(@Nonnull IWorkerContext theContext, @Nonnull IEvaluationContext hostServices, @Nonnull XVerExtensionManager xverManager) {
     super(theContext, xverManager, false);
@@ -710,6 +717,18 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
     this.allowComments = allowComments;
   }
 
+  public boolean isIndexSlices() {
+    return indexSlices;
+  }
+
+  /**
+   * Whether elements are only matched against the slices that the values of their first discriminator 
+   * allow (see SliceIndex). Without the index, every slice is evaluated; the results are the same either way
+   */
+  public void setIndexSlices(boolean indexSlices) {
+    this.indexSlices = indexSlices;
+  }
+
   public boolean isCrumbTrails() {
     return crumbTrails;
   }
@@ -789,6 +808,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
     parser.setupValidation(ValidationPolicy.EVERYTHING);
     if (parser instanceof XmlParser) {
       ((XmlParser) parser).setAllowXsiLocation(allowXsiLocation);
+      ((XmlParser) parser).setStreaming(streamingXml);
     }
     if (parser instanceof JsonParser) {
       ((JsonParser) parser).setAllowComments(allowComments);
@@ -983,6 +1003,9 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
     setParents(element);
 
     long t = System.nanoTime();
+    if (terminologyBatchSize > 0 && !noTerminologyChecks && isCachingAllowed()) {
+      prefetchTerminology(element);
+    }
     NodeStack stack = new NodeStack(context, null, element, validationLanguage);
     if (profiles == null || profiles.isEmpty()) {
       validateResource(new ValidationContext(appContext, element), errors, element, element, null, resourceIdRule, stack.resetIds(), null, new ValidationMode(ValidationReason.Validation, ProfileSource.BaseDefinition), false, false);
@@ -5093,6 +5116,19 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
     this.allowXsiLocation = allowXsiLocation;
   }
 
+  public boolean isStreamingXml() {
+    return streamingXml;
+  }
+
+  /**
+   * @param streamingXml if this is true, XML content is read with the streaming (StAX) parser, which 
+   * doesn't load the document into a DOM first (see XmlParser.setStreaming). The elements and messages 
+   * are the same either way
+   */
+  public void setStreamingXml(boolean streamingXml) {
+    this.streamingXml = streamingXml;
+  }
+
   /**
    * @param element - the candidate that might be in the slice
    * @param path    - for reporting any errors. the XPath for the element
@@ -5101,23 +5137,57 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
    * @param errors
    * @param stack
    * @param srcProfile 
+   * @param candidate - false if the slice index has ruled the element out of the slice; then it doesn't match, but it's reported the same way
    * @return
    * @throws DefinitionException
    * @throws DefinitionException
    * @throws IOException
    * @throws FHIRException
    */
-  private boolean sliceMatches(ValidationContext valContext, Element element, String path, ElementDefinition slicer, List<ElementDefinition> slicerSlices, ElementDefinition ed, StructureDefinition profile, List<ValidationMessage> errors, List<ValidationMessage> sliceInfo, NodeStack stack, StructureDefinition srcProfile) throws DefinitionException, FHIRException {
+  private boolean sliceMatches(ValidationContext valContext, Element element, String path, ElementDefinition slicer, List<ElementDefinition> slicerSlices, ElementDefinition ed, StructureDefinition profile, List<ValidationMessage> errors, List<ValidationMessage> sliceInfo, NodeStack stack, StructureDefinition srcProfile, boolean candidate) throws DefinitionException, FHIRException {
     if (!slicer.getSlicing().hasDiscriminator())
       return false; // cannot validate in this case
 
-    ExpressionNode n = (ExpressionNode) ed.getUserData("slice.expression.cache");
+    ExpressionNode n = getSliceExpression(path, slicer, slicerSlices, ed, profile, srcProfile);
+    if (n == null) {
+      return matchesSlicePosition(path, slicer, slicerSlices, ed, profile);
+    }
+
+    ValidationContext shc = valContext.forSlicing();
+    boolean pass = candidate && evaluateSlicingExpression(shc, element, path, profile, n);
+    if (!pass && doingHints()) {
+      String expression = (String) getProfileUserData(ed, "slice.expression.text");
+      if (expression == null) {
+        expression = n.toString();
+        setProfileUserData(ed, "slice.expression.text", expression);
+      }
+      slicingHint(sliceInfo, NO_RULE_DATE, IssueType.STRUCTURE, element.line(), element.col(), path, false, isProfile(slicer), (context.formatMessage(I18nConstants.DOES_NOT_MATCH_SLICE_, ed.getSliceName(), expression.substring(8).trim())), "discriminator = " + Utilities.escapeXml(expression), null);
+      for (String url : shc.getSliceRecords().keySet()) {
+        StructureDefinition sdt = context.fetchResource(StructureDefinition.class, url);
+        slicingHint(sliceInfo, NO_RULE_DATE, IssueType.STRUCTURE, element.line(), element.col(), path, false, isProfile(slicer), 
+         context.formatMessage(I18nConstants.DETAILS_FOR__MATCHING_AGAINST_PROFILE_, stack.getLiteralPath(), sdt == null ?  url : sdt.getVersionedUrl()),
+          context.formatMessage(I18nConstants.PROFILE__DOES_NOT_MATCH_FOR__BECAUSE_OF_THE_FOLLOWING_PROFILE_ISSUES__,
+              url,
+              stack.getLiteralPath(), errorSummaryForSlicingAsHtml(shc.getSliceRecords().get(url))), errorSummaryForSlicingAsText(shc.getSliceRecords().get(url)));
+      }
+    }
+    return pass;
+  }
+
+  /**
+   * @return the (cached) expression that an element has to meet to be in the slice, or null if the slice is by position
+   */
+  private ExpressionNode getSliceExpression(String path, ElementDefinition slicer, List<ElementDefinition> slicerSlices, ElementDefinition ed, StructureDefinition profile, StructureDefinition srcProfile) throws DefinitionException, FHIRException {
+    ExpressionNode n = (ExpressionNode) getProfileUserData(ed, "slice.expression.cache");
     if (n == null) {
       long t = System.nanoTime();
       // GG: this approach is flawed because it treats discriminators individually rather than collectively
       StringBuilder expression = new StringBuilder("true");
       boolean anyFound = false;
       Set<String> discriminators = new HashSet<>();
+      // the slice is indexed by the first discriminator, since that's evaluated first
+      SliceKey key = null;
+      boolean keyable = true;
       for (ElementDefinitionSlicingDiscriminatorComponent s : slicer.getSlicing().getDiscriminator()) {
         String discriminator = s.getPath();
         discriminators.add(discriminator);
@@ -5128,6 +5198,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
           found = true;
           if ("0".equals(criteriaElement.getMax())) {
             expression.append(" and " + discriminator + ".empty()");            
+            key = keyable ? SliceKey.make(discriminator, SliceKey.EXISTS, "0") : key;
           } else if (s.getType() == DiscriminatorType.TYPE) {
             String type = null;
             if (!criteriaElement.getPath().contains("[") && discriminator.contains("[")) {
@@ -5152,6 +5223,9 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
               expression.append(" and $this is " + type);
             } else {
               expression.append(" and " + discriminator + " is " + type);
+              if (keyable && discriminator.equals(s.getPath()) && isConcreteResourceType(type)) {
+                key = SliceKey.make(discriminator, SliceKey.TYPE, type);
+              }
             }
           } else if (s.getType() == DiscriminatorType.PROFILE) {
             if (criteriaElement.getType().size() == 0) {
@@ -5176,34 +5250,22 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
           } else if (s.getType() == DiscriminatorType.EXISTS) {
             if (criteriaElement.hasMin() && criteriaElement.getMin() >= 1) {
               expression.append(" and (" + discriminator + ".exists())");
+              key = keyable ? SliceKey.make(discriminator, SliceKey.EXISTS, "1") : key;
             } else if (criteriaElement.hasMax() && criteriaElement.getMax().equals("0")) {
               expression.append(" and (" + discriminator + ".exists().not())");
+              key = keyable ? SliceKey.make(discriminator, SliceKey.EXISTS, "0") : key;
             } else {
               throw new FHIRException(context.formatMessage(I18nConstants.DISCRIMINATOR__IS_BASED_ON_ELEMENT_EXISTENCE_BUT_SLICE__NEITHER_SETS_MIN1_OR_MAX0, discriminator, ed.getId()));
             }
           } else if (s.getType() == DiscriminatorType.POSITION) {
-            // we don't evaluate this one using FHIRPath, and it can't share 
-            if (slicer.getSlicing().getDiscriminator().size() != 1) {
-              throw new DefinitionException(context.formatMessagePlural(slicer.getSlicing().getDiscriminator().size(), I18nConstants.Could_not_match_discriminator_for_slice_in_profile, discriminators, ed.getId(), profile.getVersionedUrl(), discriminators));
-            } else {
-              int offset = 0;
-              for (ElementDefinition ts : slicerSlices) {
-                if (ts == ed) {
-                  break;
-                } else if (!ts.getMax().equals(Integer.toString(ts.getMin()))) {
-                  throw new DefinitionException(context.formatMessagePlural(slicer.getSlicing().getDiscriminator().size(), I18nConstants.Could_not_match_discriminator_for_slice_in_profile, discriminators, ed.getId(), profile.getVersionedUrl(), discriminators));                  
-                } else {
-                  offset = offset + ts.getMin();
-                }
-              }
-              int maxPos = (ed.getMax().equals("*") ? Integer.MAX_VALUE : offset + Integer.parseInt(ed.getMax()));
-              int position = path.endsWith("]") ? Integer.parseInt(path.substring(path.lastIndexOf("[")+1).replace("]", "")) : 0;
-              return position >= offset && position < maxPos;
-            }                        
+            // we don't evaluate this one using FHIRPath
+            return null;
           } else if (criteriaElement.hasFixed()) {
             buildFixedExpression(ed, expression, discriminator, criteriaElement);
+            key = keyable ? SliceKey.forValue(discriminator, criteriaElement.getFixed(), true) : key;
           } else if (criteriaElement.hasPattern()) {
             buildPattternExpression(ed, expression, discriminator, criteriaElement);
+            key = keyable ? SliceKey.forValue(discriminator, criteriaElement.getPattern(), false) : key;
           } else if (criteriaElement.hasBinding() && criteriaElement.getBinding().hasStrength() && criteriaElement.getBinding().getStrength().equals(BindingStrength.REQUIRED) && criteriaElement.getBinding().hasValueSet()) {
             expression.append(" and (" + discriminator + " memberOf '" + criteriaElement.getBinding().getValueSet() + "')");
           } else {
@@ -5214,6 +5276,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
         }
         if (found)
           anyFound = true;
+        keyable = false;
       }
       if (!anyFound) {
           throw new DefinitionException(context.formatMessagePlural(slicer.getSlicing().getDiscriminator().size(), I18nConstants.Could_not_match_discriminator_for_slice_in_profile, discriminators, ed.getId(), profile.getVersionedUrl(), discriminators));
@@ -5226,24 +5289,281 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
         throw new FHIRException(context.formatMessage(I18nConstants.PROBLEM_PROCESSING_EXPRESSION__IN_PROFILE__PATH__, expression, profile.getVersionedUrl(), path, e.getMessage()));
       }
       timeTracker.fpe(t);
-      ed.setUserData("slice.expression.cache", n);
-    } else {
+      if (key != null) {
+        setProfileUserData(ed, "slice.index.key", key);
+      }
+      setProfileUserData(ed, "slice.expression.cache", n);
     }
+    return n;
+  }
 
-    ValidationContext shc = valContext.forSlicing();
-    boolean pass = evaluateSlicingExpression(shc, element, path, profile, n);
-    if (!pass) {
-      slicingHint(sliceInfo, NO_RULE_DATE, IssueType.STRUCTURE, element.line(), element.col(), path, false, isProfile(slicer), (context.formatMessage(I18nConstants.DOES_NOT_MATCH_SLICE_, ed.getSliceName(), n.toString().substring(8).trim())), "discriminator = " + Utilities.escapeXml(n.toString()), null);
-      for (String url : shc.getSliceRecords().keySet()) {
-        StructureDefinition sdt = context.fetchResource(StructureDefinition.class, url);
-        slicingHint(sliceInfo, NO_RULE_DATE, IssueType.STRUCTURE, element.line(), element.col(), path, false, isProfile(slicer), 
-         context.formatMessage(I18nConstants.DETAILS_FOR__MATCHING_AGAINST_PROFILE_, stack.getLiteralPath(), sdt == null ?  url : sdt.getVersionedUrl()),
-          context.formatMessage(I18nConstants.PROFILE__DOES_NOT_MATCH_FOR__BECAUSE_OF_THE_FOLLOWING_PROFILE_ISSUES__,
-              url,
-              stack.getLiteralPath(), errorSummaryForSlicingAsHtml(shc.getSliceRecords().get(url))), errorSummaryForSlicingAsText(shc.getSliceRecords().get(url)));
+  private boolean matchesSlicePosition(String path, ElementDefinition slicer, List<ElementDefinition> slicerSlices, ElementDefinition ed, StructureDefinition profile) throws DefinitionException {
+    // it can't share with other discriminators
+    Set<String> discriminators = new HashSet<>();
+    for (ElementDefinitionSlicingDiscriminatorComponent s : slicer.getSlicing().getDiscriminator()) {
+      discriminators.add(s.getPath());
+    }
+    if (slicer.getSlicing().getDiscriminator().size() != 1) {
+      throw new DefinitionException(context.formatMessagePlural(slicer.getSlicing().getDiscriminator().size(), I18nConstants.Could_not_match_discriminator_for_slice_in_profile, discriminators, ed.getId(), profile.getVersionedUrl(), discriminators));
+    }
+    int offset = 0;
+    for (ElementDefinition ts : slicerSlices) {
+      if (ts == ed) {
+        break;
+      } else if (!ts.getMax().equals(Integer.toString(ts.getMin()))) {
+        throw new DefinitionException(context.formatMessagePlural(slicer.getSlicing().getDiscriminator().size(), I18nConstants.Could_not_match_discriminator_for_slice_in_profile, discriminators, ed.getId(), profile.getVersionedUrl(), discriminators));                  
+      } else {
+        offset = offset + ts.getMin();
       }
     }
-    return pass;
+    int maxPos = (ed.getMax().equals("*") ? Integer.MAX_VALUE : offset + Integer.parseInt(ed.getMax()));
+    int position = path.endsWith("]") ? Integer.parseInt(path.substring(path.lastIndexOf("[")+1).replace("]", "")) : 0;
+    return position >= offset && position < maxPos;
+  }
+
+  /**
+   * A value that an element has to have at one of the discriminator paths to be in a slice. The key of a
+   * slice is worked out when its expression is built, and the slices of a slicer are indexed by their keys
+   * (see SliceIndex). The key is only a test that rules elements out; elements that have the value still
+   * have the expression evaluated
+   */
+  private static class SliceKey {
+    private static final int EXISTS = 0; // "1" if there's something at the path, "0" if there isn't
+    private static final int TYPE = 1; // the type of resource at the path
+    private static final int VALUE = 2; // a string value at the path
+    private static final int CODING = 3; // system|code of a Coding at the path
+    private static final int CODEABLECONCEPT = 4; // system|code of a Coding in a CodeableConcept at the path
+    private static final int IDENTIFIER = 5; // system|value of an Identifier at the path
+
+    private final String[] path;
+    private final int kind;
+    private final String value;
+    private final String cacheKey;
+
+    private SliceKey(String path, int kind, String value) {
+      this.path = path.split("\\.");
+      this.kind = kind;
+      this.value = value;
+      this.cacheKey = "slice.index.values:" + kind + ":" + path;
+    }
+
+    /**
+     * @return null if the path isn't one that can be followed without evaluating it as FHIRPath
+     */
+    private static SliceKey make(String path, int kind, String value) {
+      return path.matches("[a-zA-Z][a-zA-Z0-9]*(\\.[a-zA-Z][a-zA-Z0-9]*)*") ? new SliceKey(path, kind, value) : null;
+    }
+
+    private static SliceKey forValue(String path, DataType value, boolean fixed) {
+      if (value instanceof CodeableConcept) {
+        for (Coding c : ((CodeableConcept) value).getCoding()) {
+          if (c.hasSystem() && c.hasCode()) {
+            return make(path, CODEABLECONCEPT, c.getSystem() + "|" + c.getCode());
+          }
+        }
+      } else if (value instanceof Coding) {
+        Coding c = (Coding) value;
+        if (c.hasSystem() && c.hasCode()) {
+          return make(path, CODING, c.getSystem() + "|" + c.getCode());
+        }
+      } else if (value instanceof Identifier) {
+        Identifier ii = (Identifier) value;
+        if (ii.hasSystem() && ii.hasValue()) {
+          return make(path, IDENTIFIER, ii.getSystem() + "|" + ii.getValue());
+        }
+      } else if (fixed && (value instanceof StringType || value instanceof UriType) && value.hasPrimitiveValue()) {
+        return make(path, VALUE, value.primitiveValue());
+      }
+      return null;
+    }
+  }
+
+  private boolean isConcreteResourceType(String type) {
+    StructureDefinition sd = context.fetchTypeDefinition(type);
+    return sd != null && sd.getKind() == StructureDefinitionKind.RESOURCE && !sd.getAbstract() && type.equals(sd.getType());
+  }
+
+  /**
+   * The slices of a slicer, by the values that their keys need. Each element is routed through this to the
+   * slices that it could be in, and the expressions of the other slices aren't evaluated for it
+   */
+  private static class SliceIndex {
+    private final Map<String, SliceKey> keys = new HashMap<>(); // one for each path and kind, by cache key
+    private final Map<String, Map<String, Set<ElementDefinition>>> slices = new HashMap<>(); // by cache key, then value
+    private final Set<ElementDefinition> unkeyed = Collections.newSetFromMap(new IdentityHashMap<>()); // always candidates
+
+    private void add(ElementDefinition ed, SliceKey key) {
+      if (key == null) {
+        unkeyed.add(ed);
+      } else {
+        keys.putIfAbsent(key.cacheKey, key);
+        slices.computeIfAbsent(key.cacheKey, k -> new HashMap<>()).computeIfAbsent(key.value, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(ed);
+      }
+    }
+  }
+
+  /**
+   * @return the index of the slices of the slicer, or null if the slices can't be indexed
+   */
+  private SliceIndex getSliceIndex(String path, ElementDefinition slicer, List<ElementDefinition> slicerSlices, StructureDefinition profile, StructureDefinition srcProfile) {
+    if (!indexSlices || !slicer.getSlicing().hasDiscriminator() || fpe.isAllowPolymorphicNames()) {
+      return null;
+    }
+    for (ElementDefinitionSlicingDiscriminatorComponent s : slicer.getSlicing().getDiscriminator()) {
+      if (s.getType() == DiscriminatorType.POSITION) {
+        return null;
+      }
+    }
+    SliceIndex index = (SliceIndex) getProfileUserData(slicer, "slice.index");
+    if (index == null) {
+      index = new SliceIndex();
+      for (ElementDefinition ed : slicerSlices) {
+        SliceKey key = null;
+        try {
+          getSliceExpression(path, slicer, slicerSlices, ed, profile, srcProfile);
+          key = (SliceKey) getProfileUserData(ed, "slice.index.key");
+        } catch (FHIRException e) {
+          // it's reported when the slice is matched
+        }
+        index.add(ed, key);
+      }
+      setProfileUserData(slicer, "slice.index", index);
+    }
+    return index;
+  }
+
+  /**
+   * @return false if the element can't be in the slice (and true if it might be, or the slices aren't indexed)
+   */
+  private boolean isSliceCandidate(ElementInfo ei, ElementDefinition slicer, List<ElementDefinition> slicerSlices, ElementDefinition ed, StructureDefinition profile) {
+    if (ei.candidatesSlicer != slicer) {
+      SliceIndex index = getSliceIndex(ei.getPath(), slicer, slicerSlices, profile, profile);
+      ei.sliceCandidates = index == null ? null : sliceCandidates(ei.getElement(), index);
+      ei.candidatesSlicer = slicer;
+    }
+    return ei.sliceCandidates == null || ei.sliceCandidates.contains(ed);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Set<ElementDefinition> sliceCandidates(Element element, SliceIndex index) {
+    Set<ElementDefinition> res = Collections.newSetFromMap(new IdentityHashMap<>());
+    res.addAll(index.unkeyed);
+    for (SliceKey key : index.keys.values()) {
+      Map<String, Set<ElementDefinition>> slices = index.slices.get(key.cacheKey);
+      Set<String> values = null;
+      if (!key.path[0].equals(element.fhirType())) {
+        values = (Set<String>) element.getUserData(key.cacheKey);
+        if (values == null) {
+          values = sliceKeyValues(element, key);
+          element.setUserData(key.cacheKey, values);
+        }
+      }
+      if (values == null || values.contains(null)) {
+        for (Set<ElementDefinition> set : slices.values()) {
+          res.addAll(set);
+        }
+      } else {
+        for (String value : values) {
+          Set<ElementDefinition> set = slices.get(value);
+          if (set != null) {
+            res.addAll(set);
+          }
+        }
+      }
+    }
+    return res;
+  }
+
+  /**
+   * The values (of the kind of the key) that the element has at the key's path. If there's something there
+   * that the value can't be worked out for, the set contains null, so that no slice is ruled out
+   */
+  private Set<String> sliceKeyValues(Element element, SliceKey key) {
+    List<Base> nodes = new ArrayList<>();
+    nodes.add(element);
+    for (String name : key.path) {
+      List<Base> next = new ArrayList<>();
+      for (Base node : nodes) {
+        Base[] children = node.listChildrenByName(name, false);
+        if (children != null) {
+          for (Base child : children) {
+            if (child != null) {
+              next.add(child);
+            }
+          }
+        }
+      }
+      nodes = next;
+    }
+    Set<String> values = new HashSet<>();
+    switch (key.kind) {
+    case SliceKey.EXISTS:
+      values.add(nodes.isEmpty() ? "0" : "1");
+      break;
+    case SliceKey.TYPE:
+      // 'is' is only true or false for a single item
+      values.add(nodes.size() == 1 && nodes.get(0) instanceof Element && ((Element) nodes.get(0)).isResource() ? nodes.get(0).fhirType() : null);
+      break;
+    case SliceKey.VALUE:
+      for (Base node : nodes) {
+        values.add(sliceKeyValue(node));
+      }
+      break;
+    case SliceKey.CODING:
+      for (Base node : nodes) {
+        values.add(sliceKeyValue(node, "system", "code"));
+      }
+      break;
+    case SliceKey.CODEABLECONCEPT:
+      for (Base node : nodes) {
+        Base[] codings = node.listChildrenByName("coding", false);
+        if (codings != null) {
+          for (Base coding : codings) {
+            values.add(sliceKeyValue(coding, "system", "code"));
+          }
+        }
+      }
+      break;
+    case SliceKey.IDENTIFIER:
+      for (Base node : nodes) {
+        values.add(sliceKeyValue(node, "system", "value"));
+      }
+      break;
+    default:
+      values.add(null);
+    }
+    values.remove("");
+    return values;
+  }
+
+  /**
+   * @return the string value of the node, "" if it has no value, or null if it's not a string
+   */
+  private String sliceKeyValue(Base node) {
+    if (!(node instanceof Element) || !Utilities.existsInList(node.fhirType(), "string", "code", "id", "oid", "uuid", "uri", "url", "canonical", "markdown")) {
+      return null;
+    }
+    return node.hasPrimitiveValue() ? node.primitiveValue() : "";
+  }
+
+  /**
+   * @return first|second, for the values of the first and second properties of the node, "" if it doesn't have them both, or null if they can't be worked out
+   */
+  private String sliceKeyValue(Base node, String first, String second) {
+    Base[] f = node.listChildrenByName(first, false);
+    Base[] s = node.listChildrenByName(second, false);
+    if (f == null || s == null || f.length == 0 || s.length == 0) {
+      return "";
+    }
+    if (f.length > 1 || s.length > 1) {
+      return null;
+    }
+    String fv = sliceKeyValue(f[0]);
+    String sv = sliceKeyValue(s[0]);
+    if (fv == null || sv == null) {
+      return null;
+    }
+    return fv.isEmpty() || sv.isEmpty() ? "" : fv + "|" + sv;
   }
 
   private String makeTypeForFHIRPath(String type) {
@@ -6916,8 +7236,26 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
     return res;
   }
 
+  /**
+   * The profiles are shared with validators on other threads (see ValidationEngine.validateInParallel),
+   * so the things the validator caches on them are read and written holding the lock of the object they're
+   * on. Two threads may work the same thing out, which does no harm; what matters is that the user data
+   * isn't corrupted
+   */
+  private static Object getProfileUserData(Base b, String name) {
+    synchronized (b) {
+      return b.getUserData(name);
+    }
+  }
+
+  private static void setProfileUserData(Base b, String name, Object value) {
+    synchronized (b) {
+      b.setUserData(name, value);
+    }
+  }
+
   public void checkMustSupport(StructureDefinition profile, ElementInfo ei) {
-    String usesMustSupport = profile.getUserString("usesMustSupport");
+    String usesMustSupport = (String) getProfileUserData(profile, "usesMustSupport");
     if (usesMustSupport == null) {
       usesMustSupport = "N";
       for (ElementDefinition pe : profile.getSnapshot().getElement()) {
@@ -6926,7 +7264,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
           break;
         }
       }
-      profile.setUserData("usesMustSupport", usesMustSupport);
+      setProfileUserData(profile, "usesMustSupport", usesMustSupport);
     }
     String elementSupported = ei.getElement().getUserString("elementSupported");
     String fixedValue = ei.getElement().getUserString("hasFixed");
@@ -7156,7 +7494,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
       if (nameMatches(ei.getName(), tail(ed.getPath())))
         try {
 //          System.out.println("match slices for "+stack.getLiteralPath()+": "+slicer.getId()+" = "+slicingSummary(slicer.getSlicing()));
-          match = sliceMatches(valContext, ei.getElement(), ei.getPath(), slicer, slicerSlices, ed, profile, errors, sliceInfo, stack, profile);
+          match = sliceMatches(valContext, ei.getElement(), ei.getPath(), slicer, slicerSlices, ed, profile, errors, sliceInfo, stack, profile, isSliceCandidate(ei, slicer, slicerSlices, ed, profile));
           if (match) {
             ei.slice = slicer;
 
@@ -7348,7 +7686,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
     if ("dom-3".equals(inv.getKey())) {
       return true;
     }
-    ExpressionNode n = (ExpressionNode) inv.getUserData("validator.expression.cache");
+    ExpressionNode n = (ExpressionNode) getProfileUserData(inv, "validator.expression.cache");
     if (n == null) {
       long t = System.nanoTime();
       try {
@@ -7359,7 +7697,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
         return false;
       }
       timeTracker.fpe(t);
-      inv.setUserData("validator.expression.cache", n);
+      setProfileUserData(inv, "validator.expression.cache", n);
     }
     
     valContext.setProfile(profile);
@@ -7661,10 +7999,10 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
           for (ElementDefinitionConstraintComponent inv : ed.getConstraint()) {
             if (inv.hasExpression()) {
               try {
-                ExpressionNode n = (ExpressionNode) inv.getUserData("validator.expression.cache");
+                ExpressionNode n = (ExpressionNode) getProfileUserData(inv, "validator.expression.cache");
                 if (n == null) {
                   n = fpe.parse(FHIRPathExpressionFixer.fixExpr(inv.getExpression(), inv.getKey(), context.getVersion()));
-                  inv.setUserData("validator.expression.cache", n);
+                  setProfileUserData(inv, "validator.expression.cache", n);
                 }
                 fpe.check(null, sd.getKind() == StructureDefinitionKind.RESOURCE ? sd.getType() : "DomainResource", ed.getPath(), n);
               } catch (Exception e) {
@@ -7731,8 +8069,12 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
   }
 
   public String getValidationOptionsLanguage(NodeStack stack) {
-    if (stack.getWorkingLang() != null) {
-      return stack.getWorkingLang();
+    return getValidationOptionsLanguage(stack.getWorkingLang());
+  }
+
+  private String getValidationOptionsLanguage(String workingLang) {
+    if (workingLang != null) {
+      return workingLang;
     }
     if (validationLanguage != null) {
       return validationLanguage;
@@ -7755,6 +8097,117 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
     return checkForInactive(filterOutSpecials(stack.getLiteralPath(), valueset, context.validateCode(baseOptions.withLanguage(lang), c, valueset)), c);
   }
 
+  private static class TerminologyBatch {
+    private final ValidationOptions options;
+    private final ValueSet valueset;
+    private final List<CodingValidationRequest> codes = new ArrayList<>();
+
+    private TerminologyBatch(ValidationOptions options, ValueSet valueset) {
+      this.options = options;
+      this.valueset = valueset;
+    }
+  }
+
+  /**
+   * Batch terminology mode: before the resource is validated, find the codes and CodeableConcepts in it that will 
+   * be checked on the terminology server (going by the bindings in the base definitions), and check them in batches of
+   * terminologyBatchSize. The worker context builds batch results the same way as single ones, and the results go 
+   * in the terminology cache, where checkCodeOnServer finds them as the resource is validated, so the messages are 
+   * the same (and in the same order) as without batching.
+   *
+   * Codes that this doesn't find (bindings in profiles) are checked one at a time as usual
+   */
+  private void prefetchTerminology(Element element) {
+    long t = System.nanoTime();
+    Map<String, TerminologyBatch> batches = new LinkedHashMap<>();
+    collectCodes(batches, new HashSet<>(), element, validationLanguage);
+    for (TerminologyBatch batch : batches.values()) {
+      for (int i = 0; i < batch.codes.size(); i += terminologyBatchSize) {
+        try {
+          context.prefetchValidateCode(batch.options, batch.codes.subList(i, Math.min(i + terminologyBatchSize, batch.codes.size())), batch.valueset);
+        } catch (Exception e) {
+          if (STACK_TRACE) e.printStackTrace();
+        }
+      }
+    }
+    timeTracker.tx(t, "batch");
+  }
+
+  /**
+   * the batch results are only any use if they are cached
+   */
+  private boolean isCachingAllowed() {
+    return !(context instanceof BaseWorkerContext) || ((BaseWorkerContext) context).isCachingAllowed();
+  }
+
+  private void collectCodes(Map<String, TerminologyBatch> batches, Set<String> seen, Element element, String lang) {
+    if (element.isResource()) {
+      String l = element.getNamedChildValue("language", false);
+      if (!Utilities.noString(l)) {
+        lang = l;
+      }
+    }
+    ElementDefinition ed = element.getProperty() == null ? null : element.getProperty().getDefinition();
+    if (ed != null && ed.hasBinding() && ed.getBinding().hasValueSet() && ed.getBinding().getStrength() != BindingStrength.EXAMPLE) {
+      StructureDefinition profile = element.getProperty().getStructure();
+      String vsLang = getValidationOptionsLanguage(lang);
+      if ("CodeableConcept".equals(element.fhirType())) {
+        CodeableConcept cc = ObjectConverter.readAsCodeableConcept(element);
+        if (cc.hasCoding()) {
+          ValueSet vs = resolveBindingReference(profile, ed.getBinding().getValueSet(), profile.getUrl(), profile);
+          addCode(batches, seen, baseOptions.withLanguage(vsLang), vs, cc);
+        }
+      } else if ("Coding".equals(element.fhirType())) {
+        String code = element.getNamedChildValue("code", false);
+        String system = element.getNamedChildValue("system", false);
+        if (code != null && system != null && context.supportsSystem(system, baseOptions.getFhirVersion())) {
+          ValidationOptions options = baseOptions.withLanguage(vsLang);
+          Coding c = new Coding(system, element.getNamedChildValue("version", false), code, element.getNamedChildValue("display", false));
+          addCode(batches, seen, options, null, c);
+          ValueSet vs = resolveBindingReference(profile, ed.getBinding().getValueSet(), profile.getUrl(), profile);
+          if (vs != null) {
+            addCode(batches, seen, options, vs, ObjectConverter.readAsCoding(element));
+          }
+        }
+      } else if ("code".equals(element.fhirType()) && element.hasPrimitiveValue()) {
+        ValueSet vs = resolveBindingReference(profile, ed.getBinding().getValueSet(), profile.getUrl(), profile);
+        if (vs != null) {
+          addCode(batches, seen, baseOptions.withGuessSystem().withLanguage(vsLang), vs, new Coding(null, element.primitiveValue(), null));
+        }
+      }
+    } else if (ed != null && "CodeableConcept".equals(element.fhirType())) {
+      // no binding that can be checked, so the CodeableConcept is checked generally  
+      CodeableConcept cc = ObjectConverter.readAsCodeableConcept(element);
+      if (cc.hasCoding()) {
+        addCode(batches, seen, baseOptions.withLanguage(getValidationOptionsLanguage(lang)), null, cc);
+      }
+    }
+    if (element.hasChildren()) {
+      for (Element child : element.getChildren()) {
+        collectCodes(batches, seen, child, lang);
+      }
+    }
+  }
+
+  private void addCode(Map<String, TerminologyBatch> batches, Set<String> seen, ValidationOptions options, ValueSet vs, CodeableConcept cc) {
+    String batchKey = options.toJson() + "|" + (vs == null ? "" : vs.getVersionedUrl());
+    StringBuilder b = new StringBuilder(batchKey).append("|cc");
+    for (Coding c : cc.getCoding()) {
+      b.append("|" + c.getSystem() + "|" + c.getVersion() + "|" + c.getCode() + "|" + c.getDisplay());
+    }
+    b.append("|" + cc.getText());
+    if (seen.add(b.toString())) {
+      batches.computeIfAbsent(batchKey, k -> new TerminologyBatch(options, vs)).codes.add(new CodingValidationRequest(cc, null));
+    }
+  }
+
+  private void addCode(Map<String, TerminologyBatch> batches, Set<String> seen, ValidationOptions options, ValueSet vs, Coding c) {
+    String batchKey = options.toJson() + "|" + (vs == null ? "" : vs.getVersionedUrl());
+    if (seen.add(batchKey + "|" + c.getSystem() + "|" + c.getVersion() + "|" + c.getCode() + "|" + c.getDisplay())) {
+      batches.computeIfAbsent(batchKey, k -> new TerminologyBatch(options, vs)).codes.add(new CodingValidationRequest(c));
+    }
+  }
+
   public ValidationResult checkCodeOnServer(NodeStack stack, ValueSet valueset, CodeableConcept cc) throws CheckCodeOnServerException {
     codingObserver.seeCode(stack, cc);
     try {
@@ -8043,6 +8496,18 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
     this.noExperimentalContent = noExperimentalContent;
   }
 
+  public int getTerminologyBatchSize() {
+    return terminologyBatchSize;
+  }
+
+  /**
+   * @param terminologyBatchSize if this is more than 0, codes are checked on the terminology server in batches
+   *   of this size before the resource is validated, rather than one at a time as the validation finds them
+   */
+  public void setTerminologyBatchSize(int terminologyBatchSize) {
+    this.terminologyBatchSize = terminologyBatchSize;
+  }
+
   public void resetTimes() {
     timeTracker.reset();   
   }
@@ -1,6 +1,7 @@
 package org.hl7.fhir.validation.instance.utils;
 
 import java.util.List;
+import java.util.Set;
 
 import org.hl7.fhir.r5.elementmodel.Element;
 import org.hl7.fhir.r5.model.ElementDefinition;
@@ -15,6 +16,8 @@ public class ElementInfo {
   public ElementDefinition definition;
   public ElementDefinition slice;
   public boolean additionalSlice; // If true, indicates that this element is an additional slice
+  public ElementDefinition candidatesSlicer; // the slicer that sliceCandidates is for
+  public Set<ElementDefinition> sliceCandidates; // the slices of candidatesSlicer that the element could be in, or null if they could all be
   private Element element;
   private String name;
   private String path;
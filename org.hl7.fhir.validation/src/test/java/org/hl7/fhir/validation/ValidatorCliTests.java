@@ -86,6 +86,9 @@ public class ValidatorCliTests {
   @Spy
   CodeGenTask codeGenTask;
 
+  @Spy
+  StreamNDJsonTask streamNDJsonTask;
+
   @Spy
   ScanTask scanTask = new ScanTask() {
     @Override
@@ -122,6 +125,7 @@ public class ValidatorCliTests {
           transformTask,
           versionTask,
           codeGenTask,
+          streamNDJsonTask,
           //validate is the default
           validateTask
         );
@@ -167,6 +171,16 @@ public class ValidatorCliTests {
     Mockito.verify(validationService).transform(same(cliContext), same(validationEngine));
   }
 
+  @Test
+  public void streamNDJsonTest() throws Exception {
+    final String[] args = new String[]{"-stream-ndjson", "dummySource.ndjson"};
+    CliContext cliContext = Params.loadCliContext(args);
+    ValidatorCli cli = mockValidatorCliWithService(cliContext);
+    cli.readParamsAndExecuteTask(cliContext, args);
+    Mockito.verify(validationService).determineVersion(same(cliContext));
+    Mockito.verify(validationService).validateNDJsonSources(same(cliContext), same(validationEngine));
+  }
+
   @Test
   public void narrativeTest() throws Exception {
     final String[] args = new String[]{"-narrative"};
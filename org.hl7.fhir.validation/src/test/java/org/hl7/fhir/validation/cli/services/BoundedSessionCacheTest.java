@@ -0,0 +1,147 @@
+package org.hl7.fhir.validation.cli.services;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r5.model.ValueSet;
+import org.hl7.fhir.validation.ValidationEngine;
+import org.hl7.fhir.validation.cli.services.BoundedSessionCache.EvictionPolicy;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class BoundedSessionCacheTest {
+
+  private ValidationEngine engine() throws IOException {
+    return new ValidationEngine.ValidationEngineBuilder().fromNothing();
+  }
+
+  private ValueSet valueSet(String id) {
+    ValueSet vs = new ValueSet();
+    vs.setId(id);
+    vs.setUrl("http://example.org/ValueSet/"+id);
+    return vs;
+  }
+
+  @Test
+  @DisplayName("test least recently used session is evicted")
+  void lruEviction() throws IOException {
+    BoundedSessionCache cache = new BoundedSessionCache(2, Long.MAX_VALUE, -1, TimeUnit.SECONDS, EvictionPolicy.LRU).setSizeEstimator(e -> 100);
+    String s1 = cache.cacheSession(engine());
+    String s2 = cache.cacheSession(engine());
+    Assertions.assertNotNull(cache.fetchSessionValidatorEngine(s1));
+    String s3 = cache.cacheSession(engine());
+    Assertions.assertTrue(cache.sessionExists(s1));
+    Assertions.assertFalse(cache.sessionExists(s2));
+    Assertions.assertTrue(cache.sessionExists(s3));
+    Assertions.assertEquals(1, cache.getEvictions());
+    Assertions.assertEquals(2, cache.getHits());
+    Assertions.assertEquals(1, cache.getMisses());
+    Assertions.assertEquals(200, cache.getTotalSize());
+  }
+
+  @Test
+  @DisplayName("test least frequently used session is evicted")
+  void lfuEviction() throws IOException {
+    BoundedSessionCache cache = new BoundedSessionCache(2, Long.MAX_VALUE, -1, TimeUnit.SECONDS, EvictionPolicy.LFU).setSizeEstimator(e -> 100);
+    String s1 = cache.cacheSession(engine());
+    String s2 = cache.cacheSession(engine());
+    cache.fetchSessionValidatorEngine(s1);
+    cache.fetchSessionValidatorEngine(s1);
+    cache.fetchSessionValidatorEngine(s2);
+    String s3 = cache.cacheSession(engine());
+    Assertions.assertTrue(cache.sessionExists(s1));
+    Assertions.assertFalse(cache.sessionExists(s2));
+    Assertions.assertTrue(cache.sessionExists(s3));
+  }
+
+  @Test
+  @DisplayName("test sessions are evicted when the estimated size is exceeded")
+  void sizeEviction() throws IOException {
+    BoundedSessionCache cache = new BoundedSessionCache(10, 250, -1, TimeUnit.SECONDS, EvictionPolicy.LRU).setSizeEstimator(e -> 100);
+    String s1 = cache.cacheSession(engine());
+    String s2 = cache.cacheSession(engine());
+    String s3 = cache.cacheSession(engine());
+    Assertions.assertEquals(2, cache.getSize());
+    Assertions.assertFalse(cache.sessionExists(s1));
+    Assertions.assertTrue(cache.sessionExists(s2));
+    Assertions.assertTrue(cache.sessionExists(s3));
+  }
+
+  @Test
+  @DisplayName("test pinned sessions are not evicted or expired")
+  void pinnedSession() throws Exception {
+    final long EXPIRE_TIME = 2L;
+    long[] now = new long[1];
+    BoundedSessionCache cache = new BoundedSessionCache(1, Long.MAX_VALUE, EXPIRE_TIME, TimeUnit.SECONDS, EvictionPolicy.LRU).setSizeEstimator(e -> 100).setTicker(() -> now[0]);
+    String warm = cache.warmSession("warm", this::engine);
+    Assertions.assertEquals("warm", warm);
+    Assertions.assertTrue(cache.isPinned(warm));
+    Assertions.assertEquals(1, cache.getCreations());
+    String s1 = cache.cacheSession(engine());
+    String s2 = cache.cacheSession(engine());
+    Assertions.assertTrue(cache.sessionExists(warm));
+    Assertions.assertFalse(cache.sessionExists(s1));
+    Assertions.assertTrue(cache.sessionExists(s2));
+    now[0] += TimeUnit.SECONDS.toNanos(EXPIRE_TIME + 1L);
+    Assertions.assertTrue(cache.sessionExists(warm));
+    Assertions.assertFalse(cache.sessionExists(s2));
+    Assertions.assertEquals(1, cache.getExpiries());
+  }
+
+  @Test
+  @DisplayName("test sessions expire when they haven't been used for the session length")
+  void expiry() throws IOException {
+    long[] now = new long[1];
+    BoundedSessionCache cache = new BoundedSessionCache(10, Long.MAX_VALUE, 60, TimeUnit.SECONDS, EvictionPolicy.LRU).setSizeEstimator(e -> 100).setTicker(() -> now[0]);
+    String s1 = cache.cacheSession(engine());
+    String s2 = cache.cacheSession(engine());
+    now[0] += TimeUnit.SECONDS.toNanos(50);
+    Assertions.assertNotNull(cache.fetchSessionValidatorEngine(s1));
+    now[0] += TimeUnit.SECONDS.toNanos(20);
+    Assertions.assertTrue(cache.sessionExists(s1));
+    Assertions.assertFalse(cache.sessionExists(s2));
+    Assertions.assertEquals(1, cache.getExpiries());
+    now[0] += TimeUnit.SECONDS.toNanos(61);
+    Assertions.assertNull(cache.fetchSessionValidatorEngine(s1));
+    Assertions.assertEquals(2, cache.getExpiries());
+    Assertions.assertEquals(0, cache.getTotalSize());
+  }
+
+  @Test
+  @DisplayName("test the bounds can be changed after construction")
+  void reconfigure() throws IOException {
+    BoundedSessionCache cache = new BoundedSessionCache().setSizeEstimator(e -> 100);
+    String s1 = cache.cacheSession(engine());
+    String s2 = cache.cacheSession(engine());
+    String s3 = cache.cacheSession(engine());
+    cache.setMaxSessions(2);
+    Assertions.assertEquals(2, cache.getSize());
+    Assertions.assertFalse(cache.sessionExists(s1));
+    cache.setMaxSize(100);
+    Assertions.assertEquals(1, cache.getSize());
+    Assertions.assertFalse(cache.sessionExists(s2));
+    Assertions.assertTrue(cache.sessionExists(s3));
+    Assertions.assertEquals(2, cache.getEvictions());
+  }
+
+  @Test
+  @DisplayName("test the default size estimate leaves out content shared with a base engine")
+  void sharedContentNotCounted() throws Exception {
+    ValidationEngine base = engine();
+    base.getContext().cacheResource(valueSet("base"));
+    long baseSize = BoundedSessionCache.estimateSize(base);
+    Assertions.assertTrue(baseSize > 0);
+    ValidationEngine session = new ValidationEngine(base);
+    Assertions.assertEquals(0, BoundedSessionCache.estimateSize(session));
+    session.getContext().cacheResource(valueSet("session"));
+    Assertions.assertEquals(baseSize, BoundedSessionCache.estimateSize(session));
+  }
+
+  @Test
+  @DisplayName("test null session test id returns false")
+  void testNullSessionExists() {
+    SessionCache cache = new BoundedSessionCache();
+    Assertions.assertFalse(cache.sessionExists(null));
+  }
+}
@@ -29,6 +29,7 @@ import org.apache.commons.io.IOUtils;
 import org.hl7.fhir.r5.context.SimpleWorkerContext;
 import org.hl7.fhir.r5.elementmodel.Manager;
 import org.hl7.fhir.r5.model.StructureDefinition;
+import org.hl7.fhir.r5.terminologies.utilities.TerminologyCache;
 import org.hl7.fhir.r5.test.utils.TestingUtilities;
 import org.hl7.fhir.utilities.TimeTracker;
 import org.hl7.fhir.utilities.VersionUtil;
@@ -112,6 +113,38 @@ class ValidationServiceTests {
     }
   }
 
+  @DisplayName("Test a warmed session is pinned and reused without building another engine")
+  @Test
+  void warmSessionTest() throws Exception {
+    ValidationService myService = Mockito.spy(new ValidationService());
+    assertInstanceOf(BoundedSessionCache.class, myService.getSessionCache());
+    BoundedSessionCache sessionCache = (BoundedSessionCache) myService.getSessionCache();
+    sessionCache.setMaxSessions(1);
+    ValidationEngine engine = mock(ValidationEngine.class);
+    SimpleWorkerContext context = mock(SimpleWorkerContext.class);
+    TerminologyCache txCache = mock(TerminologyCache.class);
+    when(engine.getContext()).thenReturn(context);
+    when(context.getTxCache()).thenReturn(txCache);
+    when(txCache.getFolder()).thenReturn("txCache");
+    Mockito.doReturn(engine).when(myService).buildValidationEngine(any(), any(), any());
+
+    CliContext cliContext = new CliContext().setSv("4.0.1");
+    assertEquals("warm", myService.warmSession(cliContext, "warm"));
+    assertTrue(sessionCache.isPinned("warm"));
+    assertEquals(1, sessionCache.getCreations());
+
+    // another session doesn't push out the warmed one
+    String other = myService.initializeValidator(cliContext, null, new TimeTracker(), null);
+    assertEquals("warm", myService.initializeValidator(cliContext, null, new TimeTracker(), "warm"));
+    assertTrue(sessionCache.sessionExists(other));
+    assertTrue(sessionCache.sessionExists("warm"));
+    verify(myService, Mockito.times(2)).buildValidationEngine(any(), any(), any());
+    // and the sessions share their terminology server results
+    verify(txCache, Mockito.atLeastOnce()).setSharedCache(myService.getSharedTerminologyCache());
+    // which aren't shared with other services
+    assertNotSame(myService.getSharedTerminologyCache(), new ValidationService().getSharedTerminologyCache());
+  }
+
   private List<FileInfo> getFilesToValidate() throws IOException {
     List<FileInfo> filesToValidate = new ArrayList<>();
     String resource = IOUtils.toString(getFileFromResourceAsStream("detected_issues.json"), StandardCharsets.UTF_8);
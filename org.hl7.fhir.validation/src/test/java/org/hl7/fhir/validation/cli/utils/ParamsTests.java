@@ -2,6 +2,8 @@ package org.hl7.fhir.validation.cli.utils;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.nio.file.Files;
@@ -34,4 +36,48 @@ public class ParamsTests {
     });
     assertThat(error.getMessage()).contains("this-does-not-exist.json");
   }
-}
\ No newline at end of file
+
+  @Test
+  void testThreads() throws Exception {
+    CliContext cliContext = Params.loadCliContext(new String[]{"-threads", "8"});
+    assertEquals(8, cliContext.getThreads());
+  }
+
+  @Test
+  void testThreadsNotInteger() {
+    java.lang.Error error = Assertions.assertThrows(java.lang.Error.class, () -> {
+      Params.loadCliContext(new String[]{"-threads", "many"});
+    });
+    assertThat(error.getMessage()).contains("-threads");
+  }
+
+  @Test
+  void testTerminologyBatchSize() throws Exception {
+    assertEquals(0, Params.loadCliContext(new String[]{}).getTerminologyBatchSize());
+    CliContext cliContext = Params.loadCliContext(new String[]{"-tx-batch-size", "50"});
+    assertEquals(50, cliContext.getTerminologyBatchSize());
+  }
+
+  @Test
+  void testTerminologyConcurrency() throws Exception {
+    assertEquals(1, Params.loadCliContext(new String[]{}).getTerminologyConcurrency());
+    CliContext cliContext = Params.loadCliContext(new String[]{"-tx-concurrency", "4"});
+    assertEquals(4, cliContext.getTerminologyConcurrency());
+    java.lang.Error error = Assertions.assertThrows(java.lang.Error.class, () -> {
+      Params.loadCliContext(new String[]{"-tx-concurrency", "0"});
+    });
+    assertThat(error.getMessage()).contains("-tx-concurrency");
+  }
+
+  @Test
+  void testStreamingXml() throws Exception {
+    assertFalse(Params.loadCliContext(new String[]{}).isStreamingXml());
+    assertTrue(Params.loadCliContext(new String[]{"-streaming-xml"}).isStreamingXml());
+  }
+
+  @Test
+  void testSnapshotCache() throws Exception {
+    CliContext cliContext = Params.loadCliContext(new String[]{"-snapshot-cache", "/tmp/snapshots"});
+    assertEquals("/tmp/snapshots", cliContext.getSnapshotCache());
+  }
+}
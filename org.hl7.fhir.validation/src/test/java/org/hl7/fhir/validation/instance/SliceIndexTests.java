@@ -0,0 +1,150 @@
+package org.hl7.fhir.validation.instance;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hl7.fhir.r5.conformance.profile.ProfileUtilities;
+import org.hl7.fhir.r5.elementmodel.Manager.FhirFormat;
+import org.hl7.fhir.r5.formats.JsonParser;
+import org.hl7.fhir.r5.model.StructureDefinition;
+import org.hl7.fhir.utilities.FhirPublication;
+import org.hl7.fhir.utilities.validation.ValidationMessage;
+import org.hl7.fhir.validation.ValidationEngine;
+import org.hl7.fhir.validation.cli.utils.ValidationLevel;
+import org.hl7.fhir.validation.tests.utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Matching elements to slices through the slice index gives the same messages as evaluating every slice
+ */
+public class SliceIndexTests {
+
+  private static final String OBSERVATION_PROFILE = "{\"resourceType\" : \"StructureDefinition\", \"url\" : \"http://example.org/StructureDefinition/slice-obs\", "
+      + "\"name\" : \"SliceObs\", \"status\" : \"active\", \"fhirVersion\" : \"4.0.1\", \"kind\" : \"resource\", \"abstract\" : false, \"type\" : \"Observation\", "
+      + "\"baseDefinition\" : \"http://hl7.org/fhir/StructureDefinition/Observation\", \"derivation\" : \"constraint\", \"differential\" : { \"element\" : ["
+      // fixed uri
+      + "{\"id\" : \"Observation.identifier\", \"path\" : \"Observation.identifier\", \"slicing\" : {\"discriminator\" : [{\"type\" : \"value\", \"path\" : \"system\"}], \"rules\" : \"open\"}},"
+      + "{\"id\" : \"Observation.identifier:mrn\", \"path\" : \"Observation.identifier\", \"sliceName\" : \"mrn\", \"max\" : \"1\"},"
+      + "{\"id\" : \"Observation.identifier:mrn.system\", \"path\" : \"Observation.identifier.system\", \"min\" : 1, \"fixedUri\" : \"http://example.org/mrn\"},"
+      + "{\"id\" : \"Observation.identifier:other\", \"path\" : \"Observation.identifier\", \"sliceName\" : \"other\"},"
+      + "{\"id\" : \"Observation.identifier:other.system\", \"path\" : \"Observation.identifier.system\", \"min\" : 1, \"fixedUri\" : \"http://example.org/other\"},"
+      // Identifier
+      + "{\"id\" : \"Observation.basedOn\", \"path\" : \"Observation.basedOn\", \"slicing\" : {\"discriminator\" : [{\"type\" : \"pattern\", \"path\" : \"identifier\"}], \"rules\" : \"open\"}},"
+      + "{\"id\" : \"Observation.basedOn:order\", \"path\" : \"Observation.basedOn\", \"sliceName\" : \"order\"},"
+      + "{\"id\" : \"Observation.basedOn:order.identifier\", \"path\" : \"Observation.basedOn.identifier\", \"patternIdentifier\" : {\"system\" : \"http://example.org/orders\", \"value\" : \"123\"}},"
+      // exists
+      + "{\"id\" : \"Observation.category\", \"path\" : \"Observation.category\", \"slicing\" : {\"discriminator\" : [{\"type\" : \"exists\", \"path\" : \"text\"}], \"rules\" : \"closed\"}},"
+      + "{\"id\" : \"Observation.category:withText\", \"path\" : \"Observation.category\", \"sliceName\" : \"withText\"},"
+      + "{\"id\" : \"Observation.category:withText.text\", \"path\" : \"Observation.category.text\", \"min\" : 1},"
+      + "{\"id\" : \"Observation.category:noText\", \"path\" : \"Observation.category\", \"sliceName\" : \"noText\", \"max\" : \"1\"},"
+      + "{\"id\" : \"Observation.category:noText.text\", \"path\" : \"Observation.category.text\", \"max\" : \"0\"},"
+      // pattern CodeableConcept, and a slice without a key
+      + "{\"id\" : \"Observation.component\", \"path\" : \"Observation.component\", \"slicing\" : {\"discriminator\" : [{\"type\" : \"pattern\", \"path\" : \"code\"}], \"rules\" : \"open\"}},"
+      + "{\"id\" : \"Observation.component:systolic\", \"path\" : \"Observation.component\", \"sliceName\" : \"systolic\", \"max\" : \"1\"},"
+      + "{\"id\" : \"Observation.component:systolic.code\", \"path\" : \"Observation.component.code\", \"patternCodeableConcept\" : {\"coding\" : [{\"system\" : \"http://loinc.org\", \"code\" : \"8480-6\"}]}},"
+      + "{\"id\" : \"Observation.component:diastolic\", \"path\" : \"Observation.component\", \"sliceName\" : \"diastolic\", \"max\" : \"1\"},"
+      + "{\"id\" : \"Observation.component:diastolic.code\", \"path\" : \"Observation.component.code\", \"patternCodeableConcept\" : {\"coding\" : [{\"system\" : \"http://loinc.org\", \"code\" : \"8462-4\"}]}},"
+      + "{\"id\" : \"Observation.component:note\", \"path\" : \"Observation.component\", \"sliceName\" : \"note\"},"
+      + "{\"id\" : \"Observation.component:note.code\", \"path\" : \"Observation.component.code\", \"patternCodeableConcept\" : {\"text\" : \"note\"}}"
+      + "]}}";
+
+  private static final String BUNDLE_PROFILE = "{\"resourceType\" : \"StructureDefinition\", \"url\" : \"http://example.org/StructureDefinition/slice-bundle\", "
+      + "\"name\" : \"SliceBundle\", \"status\" : \"active\", \"fhirVersion\" : \"4.0.1\", \"kind\" : \"resource\", \"abstract\" : false, \"type\" : \"Bundle\", "
+      + "\"baseDefinition\" : \"http://hl7.org/fhir/StructureDefinition/Bundle\", \"derivation\" : \"constraint\", \"differential\" : { \"element\" : ["
+      // type
+      + "{\"id\" : \"Bundle.entry\", \"path\" : \"Bundle.entry\", \"slicing\" : {\"discriminator\" : [{\"type\" : \"type\", \"path\" : \"resource\"}], \"rules\" : \"open\"}},"
+      + "{\"id\" : \"Bundle.entry:patient\", \"path\" : \"Bundle.entry\", \"sliceName\" : \"patient\", \"max\" : \"1\"},"
+      + "{\"id\" : \"Bundle.entry:patient.resource\", \"path\" : \"Bundle.entry.resource\", \"type\" : [{\"code\" : \"Patient\"}]},"
+      + "{\"id\" : \"Bundle.entry:obs\", \"path\" : \"Bundle.entry\", \"sliceName\" : \"obs\"},"
+      + "{\"id\" : \"Bundle.entry:obs.resource\", \"path\" : \"Bundle.entry.resource\", \"type\" : [{\"code\" : \"Observation\"}]}"
+      + "]}}";
+
+  private static final String OBSERVATION = "{\"resourceType\" : \"Observation\", \"id\" : \"o1\", "
+      + "\"identifier\" : [{\"system\" : \"http://example.org/mrn\", \"value\" : \"1\"}, {\"system\" : \"http://example.org/other\", \"value\" : \"2\"}, "
+      + "{\"system\" : \"http://example.org/mrn\", \"value\" : \"3\"}, {\"system\" : \"http://example.org/unknown\", \"value\" : \"4\"}, {\"value\" : \"5\"}], "
+      + "\"basedOn\" : [{\"identifier\" : {\"system\" : \"http://example.org/orders\", \"value\" : \"123\"}}, "
+      + "{\"identifier\" : {\"system\" : \"http://example.org/orders\", \"value\" : \"456\"}}, {\"reference\" : \"ServiceRequest/1\"}], "
+      + "\"status\" : \"final\", "
+      + "\"category\" : [{\"text\" : \"a\"}, {\"text\" : \"b\"}, {\"coding\" : [{\"system\" : \"http://terminology.hl7.org/CodeSystem/observation-category\", \"code\" : \"vital-signs\"}]}, "
+      + "{\"coding\" : [{\"system\" : \"http://terminology.hl7.org/CodeSystem/observation-category\", \"code\" : \"laboratory\"}]}], "
+      + "\"code\" : {\"text\" : \"blood pressure\"}, "
+      + "\"component\" : [{\"code\" : {\"coding\" : [{\"system\" : \"http://loinc.org\", \"code\" : \"8480-6\"}]}, \"valueQuantity\" : {\"value\" : 120}}, "
+      + "{\"code\" : {\"coding\" : [{\"system\" : \"http://loinc.org\", \"code\" : \"8462-4\"}]}, \"valueQuantity\" : {\"value\" : 80}}, "
+      + "{\"code\" : {\"text\" : \"note\"}, \"valueString\" : \"sitting\"}, "
+      + "{\"code\" : {\"coding\" : [{\"system\" : \"http://loinc.org\", \"code\" : \"8867-4\"}]}, \"valueQuantity\" : {\"value\" : 60}}, "
+      + "{\"code\" : {\"coding\" : [{\"system\" : \"http://loinc.org\", \"code\" : \"8480-6\"}, {\"system\" : \"http://loinc.org\", \"code\" : \"8462-4\"}]}, \"valueQuantity\" : {\"value\" : 1}}]}";
+
+  private static final String BUNDLE = "{\"resourceType\" : \"Bundle\", \"id\" : \"b1\", \"type\" : \"collection\", \"entry\" : ["
+      + "{\"fullUrl\" : \"http://example.org/Patient/p1\", \"resource\" : {\"resourceType\" : \"Patient\", \"id\" : \"p1\"}}, "
+      + "{\"fullUrl\" : \"http://example.org/Observation/o1\", \"resource\" : {\"resourceType\" : \"Observation\", \"id\" : \"o1\", \"status\" : \"final\", \"code\" : {\"text\" : \"x\"}}}, "
+      + "{\"fullUrl\" : \"http://example.org/Condition/c1\", \"resource\" : {\"resourceType\" : \"Condition\", \"id\" : \"c1\", \"subject\" : {\"reference\" : \"Patient/p1\"}}}, "
+      + "{\"fullUrl\" : \"http://example.org/Patient/p2\", \"resource\" : {\"resourceType\" : \"Patient\", \"id\" : \"p2\"}}]}";
+
+  private static ValidationEngine engine;
+
+  @BeforeAll
+  public static void setUp() throws Exception {
+    engine = TestUtilities.getValidationEngineNoTxServer("hl7.fhir.r4.core#4.0.1", FhirPublication.R4, "4.0.1");
+    for (String src : new String[] { OBSERVATION_PROFILE, BUNDLE_PROFILE }) {
+      StructureDefinition sd = (StructureDefinition) new JsonParser().parse(src);
+      StructureDefinition base = engine.getContext().fetchResource(StructureDefinition.class, sd.getBaseDefinition());
+      new ProfileUtilities(engine.getContext(), new ArrayList<>(), null).generateSnapshot(base, sd, sd.getUrl(), null, sd.getName());
+      engine.seeResource(sd);
+    }
+  }
+
+  private List<String> validate(String source, String profile, boolean indexSlices, boolean hints) throws Exception {
+    engine.setLevel(hints ? ValidationLevel.HINTS : ValidationLevel.ERRORS);
+    InstanceValidator validator = engine.getValidator(FhirFormat.JSON);
+    validator.setIndexSlices(indexSlices);
+    List<ValidationMessage> messages = new ArrayList<>();
+    validator.validate(null, messages, new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), FhirFormat.JSON, engine.asSdList(List.of(profile)));
+    List<String> res = new ArrayList<>();
+    for (ValidationMessage m : messages) {
+      describe(res, m, "");
+    }
+    return res;
+  }
+
+  private void describe(List<String> res, ValidationMessage m, String indent) {
+    res.add(indent + m.summary() + (m.isSlicingHint() ? " [slicing hint]" : ""));
+    if (m.getSliceInfo() != null) {
+      for (ValidationMessage s : m.getSliceInfo()) {
+        describe(res, s, indent + "  ");
+      }
+    }
+  }
+
+  private void checkSame(String source, String profile, boolean hints) throws Exception {
+    List<String> expected = validate(source, profile, false, hints);
+    List<String> actual = validate(source, profile, true, hints);
+    Assertions.assertEquals(expected, actual);
+    // and again, now that the index has been built
+    Assertions.assertEquals(expected, validate(source, profile, true, hints));
+    if (hints) {
+      Assertions.assertTrue(actual.stream().anyMatch(s -> s.startsWith("  ")), "expected slicing details: "+actual);
+    } else {
+      Assertions.assertTrue(actual.stream().noneMatch(s -> s.contains("[slicing hint]")), "expected no slicing hints: "+actual);
+    }
+  }
+
+  @ParameterizedTest(name = "hints: {0}")
+  @ValueSource(booleans = { true, false })
+  @DisplayName("Observation slices by fixed uri, Identifier, exists and CodeableConcept pattern, with and without keys")
+  public void testObservation(boolean hints) throws Exception {
+    checkSame(OBSERVATION, "http://example.org/StructureDefinition/slice-obs", hints);
+  }
+
+  @ParameterizedTest(name = "hints: {0}")
+  @ValueSource(booleans = { true, false })
+  @DisplayName("Bundle entries sliced by resource type")
+  public void testBundle(boolean hints) throws Exception {
+    checkSame(BUNDLE, "http://example.org/StructureDefinition/slice-bundle", hints);
+  }
+}
@@ -3,16 +3,31 @@ package org.hl7.fhir.validation.tests;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.hl7.fhir.r5.context.SimpleWorkerContext;
 import org.hl7.fhir.r5.elementmodel.Manager.FhirFormat;
+import org.hl7.fhir.r5.formats.JsonParser;
+import org.hl7.fhir.r5.model.Bundle;
+import org.hl7.fhir.r5.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.r5.model.CodeableConcept;
+import org.hl7.fhir.r5.model.Coding;
 import org.hl7.fhir.r5.model.OperationOutcome;
 import org.hl7.fhir.r5.model.OperationOutcome.IssueSeverity;
 import org.hl7.fhir.r5.model.OperationOutcome.OperationOutcomeIssueComponent;
+import org.hl7.fhir.r5.model.Parameters;
+import org.hl7.fhir.r5.model.Parameters.ParametersParameterComponent;
+import org.hl7.fhir.r5.model.StructureDefinition;
+import org.hl7.fhir.r5.terminologies.client.ITerminologyClient;
 import org.hl7.fhir.r5.test.utils.TestingUtilities;
+import org.hl7.fhir.r5.utils.ToolingExtensions;
 import org.hl7.fhir.utilities.CommaSeparatedStringBuilder;
 import org.hl7.fhir.utilities.FhirPublication;
+import org.hl7.fhir.utilities.TextFile;
+import org.hl7.fhir.utilities.Utilities;
 import org.hl7.fhir.utilities.settings.FhirSettings;
 import org.hl7.fhir.utilities.tests.CacheVerificationLogger;
 import org.hl7.fhir.validation.IgLoader;
@@ -21,6 +36,7 @@ import org.hl7.fhir.validation.tests.utilities.TestUtilities;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 
 public class ValidationEngineTests {
 
@@ -315,6 +331,242 @@ public class ValidationEngineTests {
   }
 
 
+  private static final String IMMUNIZATIONS = "{\"resourceType\" : \"Bundle\", \"type\" : \"collection\", \"entry\" : [" +
+      immunization("1", "08") + "," + immunization("2", "20") + "," + immunization("3", "08") + "," + immunization("4", "bad") + "," + immunization("5", "20") + "]}";
+
+  private static String immunization(String id, String code) {
+    return "{\"fullUrl\" : \"http://example.org/Immunization/"+id+"\", \"resource\" : {\"resourceType\" : \"Immunization\", \"id\" : \""+id+"\", \"status\" : \"completed\", " +
+      "\"vaccineCode\" : {\"coding\" : [{\"system\" : \"http://hl7.org/fhir/sid/cvx\", \"code\" : \""+code+"\"}]}, " +
+      "\"patient\" : {\"reference\" : \"Patient/p\"}, \"occurrenceDateTime\" : \"2020-01-01\"}}";
+  }
+
+  /**
+   * a terminology server that knows every cvx code except 'bad'
+   */
+  private static Parameters txAnswer(Parameters pin) {
+    String code = null;
+    for (ParametersParameterComponent p : pin.getParameter()) {
+      if ("coding".equals(p.getName())) {
+        code = ((Coding) p.getValue()).getCode();
+      } else if ("codeableConcept".equals(p.getName())) {
+        code = ((CodeableConcept) p.getValue()).getCodingFirstRep().getCode();
+      }
+    }
+    Parameters res = new Parameters();
+    res.addParameter("result", !"bad".equals(code));
+    if ("bad".equals(code)) {
+      res.addParameter("message", "Unknown code 'bad' in the CodeSystem 'http://hl7.org/fhir/sid/cvx'");
+    }
+    return res;
+  }
+
+  private static int countRequests(ITerminologyClient client) {
+    return (int) Mockito.mockingDetails(client).getInvocations().stream()
+      .filter(i -> Utilities.existsInList(i.getMethod().getName(), "validateCS", "validateVS", "validateBatch")).count();
+  }
+
+  private OperationOutcome validateImmunizations(int batchSize, ITerminologyClient client) throws Exception {
+    ValidationEngine ve = TestUtilities.getValidationEngineNoTxServer("hl7.fhir.r4.core#4.0.1", FhirPublication.R4, "4.0.1");
+    ve.setTerminologyBatchSize(batchSize);
+    String cache = Utilities.path("[tmp]", "tx-batch-"+batchSize);
+    Utilities.createDirectory(cache);
+    Utilities.clearDirectory(cache);
+    SimpleWorkerContext context = ve.getContext();
+    context.initTxCache(cache);
+    context.setNoTerminologyServer(false);
+    context.getTxClientManager().setMasterClient(client, false);
+    return ve.validate(FhirFormat.JSON, new ByteArrayInputStream(IMMUNIZATIONS.getBytes(StandardCharsets.UTF_8)), null);
+  }
+
+  private ITerminologyClient fakeTerminologyServer() {
+    ITerminologyClient client = Mockito.mock(ITerminologyClient.class);
+    Mockito.when(client.getAddress()).thenReturn("http://tx.example.org/r4");
+    Mockito.when(client.validateCS(Mockito.any())).thenAnswer(inv -> txAnswer(inv.getArgument(0)));
+    Mockito.when(client.validateVS(Mockito.any())).thenAnswer(inv -> txAnswer(inv.getArgument(0)));
+    Mockito.when(client.validateBatch(Mockito.any())).thenAnswer(inv -> {
+      Bundle resp = new Bundle();
+      for (BundleEntryComponent be : ((Bundle) inv.getArgument(0)).getEntry()) {
+        resp.addEntry().setResource(txAnswer((Parameters) be.getResource()));
+      }
+      return resp;
+    });
+    return client;
+  }
+
+  @Test
+  @DisplayName("Validating with terminology batches gives the same messages as validating without them, with fewer requests")
+  void validateWithTerminologyBatches() throws Exception {
+    ITerminologyClient single = fakeTerminologyServer();
+    OperationOutcome expected = validateImmunizations(0, single);
+    ITerminologyClient batched = fakeTerminologyServer();
+    OperationOutcome actual = validateImmunizations(10, batched);
+
+    assertEquals(expected.getIssue().size(), actual.getIssue().size());
+    for (int i = 0; i < expected.getIssue().size(); i++) {
+      assertEquals(expected.getIssue().get(i).toString(), actual.getIssue().get(i).toString());
+    }
+    Mockito.verify(batched, Mockito.atLeastOnce()).validateBatch(Mockito.any());
+    Assertions.assertTrue(countRequests(batched) < countRequests(single), "batched: "+countRequests(batched)+", single: "+countRequests(single));
+  }
+
+  private static final String[] PATIENTS = {
+    "{\"resourceType\" : \"Patient\", \"id\" : \"p1\", \"gender\" : \"male\"}",
+    "{\"resourceType\" : \"Patient\", \"id\" : \"p2\", \"gender\" : \"unknown-gender\"}",
+    "{\"resourceType\" : \"Patient\", \"id\" : \"p 3\", \"birthDate\" : \"2000-13-01\"}",
+    "{\"resourceType\" : \"Patient\", \"id\" : \"p4\", \"unknownElement\" : true}",
+    "{\"resourceType\" : \"Patient\", \"id\" : \"p5\", \"active\" : \"yes\", \"gender\" : \"female\"}",
+    "{\"resourceType\" : \"Observation\", \"id\" : \"o6\", \"status\" : \"final\"}"
+  };
+
+  private List<String> validateOnThreads(List<String> sources, int threads) throws Exception {
+    ValidationEngine ve = TestUtilities.getValidationEngineNoTxServer("hl7.fhir.r4.core#4.0.1", FhirPublication.R4, "4.0.1");
+    ve.setThreads(threads);
+    Bundle bundle = (Bundle) ve.validate(sources, null, new ArrayList<>(), null, null, false, 0, true);
+    List<String> res = new ArrayList<>();
+    for (BundleEntryComponent be : bundle.getEntry()) {
+      OperationOutcome oo = (OperationOutcome) be.getResource();
+      res.add("-- "+ToolingExtensions.readStringExtension(oo, ToolingExtensions.EXT_OO_FILE));
+      for (OperationOutcomeIssueComponent issue : oo.getIssue()) {
+        res.add(issue.toString());
+      }
+    }
+    return res;
+  }
+
+  @Test
+  @DisplayName("Validating with several threads gives the same outcomes, in the same order, as validating with one")
+  void validateOnSeveralThreads() throws Exception {
+    String folder = Utilities.path("[tmp]", "validate-threads");
+    Utilities.createDirectory(folder);
+    Utilities.clearDirectory(folder);
+    List<String> sources = new ArrayList<>();
+    for (int i = 0; i < PATIENTS.length; i++) {
+      String fn = Utilities.path(folder, "resource-"+i+".json");
+      TextFile.stringToFile(PATIENTS[i], fn);
+      sources.add(fn);
+    }
+    List<String> expected = validateOnThreads(sources, 1);
+    assertEquals(PATIENTS.length, expected.stream().filter(s -> s.startsWith("-- ")).count());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(expected, validateOnThreads(sources, 4));
+    }
+  }
+
+  // differential only, so the snapshots are generated while validating, unless they're generated before the work is shared out
+  private static final String[] PROFILES = {
+    "{\"resourceType\" : \"StructureDefinition\", \"id\" : \"test-patient\", \"url\" : \"http://example.org/fhir/StructureDefinition/test-patient\", "
+      + "\"name\" : \"TestPatient\", \"status\" : \"draft\", \"fhirVersion\" : \"4.0.1\", \"kind\" : \"resource\", \"abstract\" : false, \"type\" : \"Patient\", "
+      + "\"baseDefinition\" : \"http://hl7.org/fhir/StructureDefinition/Patient\", \"derivation\" : \"constraint\", \"differential\" : { \"element\" : ["
+      + "{\"id\" : \"Patient.identifier\", \"path\" : \"Patient.identifier\", \"slicing\" : { \"discriminator\" : [{\"type\" : \"value\", \"path\" : \"system\"}], \"rules\" : \"open\"}, \"min\" : 1}, "
+      + "{\"id\" : \"Patient.identifier:mrn\", \"path\" : \"Patient.identifier\", \"sliceName\" : \"mrn\", \"min\" : 1, \"max\" : \"1\"}, "
+      + "{\"id\" : \"Patient.identifier:mrn.system\", \"path\" : \"Patient.identifier.system\", \"min\" : 1, \"fixedUri\" : \"http://example.org/mrn\"}]}}",
+    "{\"resourceType\" : \"StructureDefinition\", \"id\" : \"test-patient-gender\", \"url\" : \"http://example.org/fhir/StructureDefinition/test-patient-gender\", "
+      + "\"name\" : \"TestPatientGender\", \"status\" : \"draft\", \"fhirVersion\" : \"4.0.1\", \"kind\" : \"resource\", \"abstract\" : false, \"type\" : \"Patient\", "
+      + "\"baseDefinition\" : \"http://example.org/fhir/StructureDefinition/test-patient\", \"derivation\" : \"constraint\", \"differential\" : { \"element\" : ["
+      + "{\"id\" : \"Patient.gender\", \"path\" : \"Patient.gender\", \"min\" : 1}]}}"
+  };
+
+  private static final String PROFILED_PATIENT = "{\"resourceType\" : \"Patient\", \"id\" : \"%s\", \"meta\" : { \"profile\" : [\"http://example.org/fhir/StructureDefinition/test-patient-gender\"]}%s}";
+
+  private static final String[] PROFILED_PATIENT_CONTENT = {
+    ", \"identifier\" : [{\"system\" : \"http://example.org/mrn\", \"value\" : \"1\"}], \"gender\" : \"male\"",
+    ", \"identifier\" : [{\"system\" : \"http://example.org/other\", \"value\" : \"2\"}], \"gender\" : \"female\"",
+    ", \"identifier\" : [{\"system\" : \"http://example.org/mrn\", \"value\" : \"3\"}]",
+    ", \"identifier\" : [{\"system\" : \"http://example.org/mrn\", \"value\" : \"4\"}, {\"system\" : \"http://example.org/mrn\", \"value\" : \"5\"}], \"gender\" : \"other\""
+  };
+
+  private List<String> validateProfiledOnThreads(List<String> sources, int threads) throws Exception {
+    ValidationEngine ve = TestUtilities.getValidationEngineNoTxServer("hl7.fhir.r4.core#4.0.1", FhirPublication.R4, "4.0.1");
+    List<StructureDefinition> profiles = new ArrayList<>();
+    for (String json : PROFILES) {
+      StructureDefinition sd = (StructureDefinition) new JsonParser().parse(json);
+      ve.getContext().cacheResource(sd);
+      profiles.add(sd);
+    }
+    ve.setThreads(threads);
+    Bundle bundle = (Bundle) ve.validate(sources, null, new ArrayList<>(), null, null, false, 0, true);
+    for (StructureDefinition sd : profiles) {
+      assertTrue(sd.hasSnapshot(), sd.getUrl());
+    }
+    List<String> res = new ArrayList<>();
+    for (BundleEntryComponent be : bundle.getEntry()) {
+      OperationOutcome oo = (OperationOutcome) be.getResource();
+      res.add("-- "+ToolingExtensions.readStringExtension(oo, ToolingExtensions.EXT_OO_FILE));
+      for (OperationOutcomeIssueComponent issue : oo.getIssue()) {
+        res.add(issue.getSeverity().toCode()+" "+issue.toString());
+      }
+    }
+    return res;
+  }
+
+  @Test
+  @DisplayName("Validating against profiles that only have differentials gives the same outcomes on several threads as on one")
+  void validateProfiledOnSeveralThreads() throws Exception {
+    String folder = Utilities.path("[tmp]", "validate-threads-profiled");
+    Utilities.createDirectory(folder);
+    Utilities.clearDirectory(folder);
+    List<String> sources = new ArrayList<>();
+    for (int i = 0; i < PROFILED_PATIENT_CONTENT.length * 3; i++) {
+      String fn = Utilities.path(folder, "patient-"+i+".json");
+      TextFile.stringToFile(String.format(PROFILED_PATIENT, "p"+i, PROFILED_PATIENT_CONTENT[i % PROFILED_PATIENT_CONTENT.length]), fn);
+      sources.add(fn);
+    }
+    List<String> expected = validateProfiledOnThreads(sources, 1);
+    assertEquals(sources.size(), expected.stream().filter(s -> s.startsWith("-- ")).count());
+    // the profiles were applied: all but the first kind of patient break them
+    assertTrue(expected.stream().filter(s -> s.startsWith("error ")).count() >= (PROFILED_PATIENT_CONTENT.length - 1) * 3, String.join("\n", expected));
+    for (int i = 0; i < 3; i++) {
+      assertEquals(expected, validateProfiledOnThreads(sources, 4));
+    }
+  }
+
+  private List<String> validateNDJson(String source, int threads) throws Exception {
+    ValidationEngine ve = TestUtilities.getValidationEngineNoTxServer("hl7.fhir.r4.core#4.0.1", FhirPublication.R4, "4.0.1");
+    ve.setThreads(threads);
+    List<String> res = new ArrayList<>();
+    int count = ve.validateNDJson("test.ndjson", new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), new ArrayList<>(), (line, oo) -> {
+      res.add("-- "+line+" "+ToolingExtensions.readStringExtension(oo, ToolingExtensions.EXT_OO_FILE));
+      for (OperationOutcomeIssueComponent issue : oo.getIssue()) {
+        res.add(issue.getSeverity().toCode()+" "+issue.toString());
+      }
+    });
+    assertEquals(res.stream().filter(s -> s.startsWith("-- ")).count(), count);
+    return res;
+  }
+
+  @Test
+  @DisplayName("Validating NDJSON gives an outcome for each line, in order, on one thread or several")
+  void validateNDJson() throws Exception {
+    StringBuilder b = new StringBuilder();
+    for (String patient : PATIENTS) {
+      b.append(patient).append("\n");
+    }
+    // a blank line, and a line that isn't JSON
+    b.append("\r\n{\"resourceType\" : \n").append(PATIENTS[0]);
+    int lineCount = PATIENTS.length + 3;
+
+    List<String> expected = validateNDJson(b.toString(), 1);
+    List<String> headers = new ArrayList<>();
+    for (String s : expected) {
+      if (s.startsWith("-- ")) {
+        headers.add(s);
+      }
+    }
+    assertEquals(lineCount, headers.size());
+    for (int i = 0; i < lineCount; i++) {
+      assertEquals("-- "+i+" test.ndjson:"+(i+1), headers.get(i));
+    }
+    // each line's issues follow its header
+    int blank = expected.indexOf(headers.get(PATIENTS.length));
+    assertTrue(expected.get(blank + 1).startsWith("warning "), expected.get(blank + 1));
+    int notJson = expected.indexOf(headers.get(PATIENTS.length + 1));
+    assertTrue(expected.get(notJson + 1).startsWith("fatal "), expected.get(notJson + 1));
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(expected, validateNDJson(b.toString(), 4));
+    }
+  }
+
   public static void execute() throws Exception {
     ValidationEngineTests self = new ValidationEngineTests();
     self.test401Xml();